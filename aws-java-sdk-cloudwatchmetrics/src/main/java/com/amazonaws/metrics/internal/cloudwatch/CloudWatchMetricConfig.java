@@ -65,9 +65,9 @@ public class CloudWatchMetricConfig {
      */
     static final int MAX_METRICS_DATUM_SIZE = 20;
     /**
-     * Default metrics queue size. If the queue size
-     * exceeds this value, then excessive metrics will be dropped to prevent
-     * resource exhaustion.
+     * Default metrics queue size, which is the maximum number of unique
+     * metrics summarized in memory between two uploads. Data points of
+     * additional metrics will be dropped to prevent resource exhaustion.
      */
     public static final int DEFAULT_METRICS_QSIZE = 1000;
     /**
@@ -80,8 +80,8 @@ public class CloudWatchMetricConfig {
     private AWSCredentialsProvider credentialsProvider;
 
     /**
-     * Number of milliseconds to wait before the polling of the metrics queue
-     * times out.
+     * Number of milliseconds to wait between two uploads of the metrics
+     * summarized in memory.
      */
     private long queuePollTimeoutMilli = DEFAULT_QUEUE_POLL_TIMEOUT_MILLI;
 
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics.internal.cloudwatch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.http.annotation.NotThreadSafe;
+
+import com.amazonaws.metrics.AwsSdkMetrics;
+import com.amazonaws.metrics.LatencyHistogram;
+import com.amazonaws.metrics.MetricType;
+import com.amazonaws.metrics.RequestLatencyHistograms;
+import com.amazonaws.metrics.internal.cloudwatch.spi.Dimensions;
+import com.amazonaws.services.cloudwatch.model.Dimension;
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import com.amazonaws.services.cloudwatch.model.StandardUnit;
+import com.amazonaws.services.cloudwatch.model.StatisticSet;
+
+/**
+ * Transforms the latencies recorded in the given {@link RequestLatencyHistograms}
+ * since the last transformation into metric data, for the latency metrics
+ * that are enabled.
+ * <p>
+ * For each histogram with new latencies, the statistic set of these latencies
+ * is included, as well as one datum per percentile with an additional
+ * {@link Dimensions#Percentile} dimension.
+ */
+@NotThreadSafe
+class LatencyHistogramTransformer {
+    private static final double MICROS_PER_MILLI = 1000.0;
+    private static final double[] PERCENTILES = {50, 99, 99.9};
+
+    private final RequestLatencyHistograms histograms;
+
+    /** The snapshots taken by the last transformation. */
+    private Map<RequestLatencyHistograms.Key, LatencyHistogram.Snapshot> previous =
+        new HashMap<RequestLatencyHistograms.Key, LatencyHistogram.Snapshot>();
+
+    LatencyHistogramTransformer(RequestLatencyHistograms histograms) {
+        this.histograms = histograms;
+    }
+
+    /**
+     * Returns the metric data of the latencies recorded since the last call.
+     */
+    List<MetricDatum> toMetricData() {
+        final Set<MetricType> metrics = AwsSdkMetrics.getPredefinedMetrics();
+        Map<RequestLatencyHistograms.Key, LatencyHistogram.Snapshot> current =
+            new HashMap<RequestLatencyHistograms.Key, LatencyHistogram.Snapshot>();
+        List<MetricDatum> data = new ArrayList<MetricDatum>();
+        for (Map.Entry<RequestLatencyHistograms.Key, LatencyHistogram> entry:
+                histograms.getHistograms().entrySet()) {
+            RequestLatencyHistograms.Key key = entry.getKey();
+            LatencyHistogram.Snapshot snapshot = entry.getValue().snapshot();
+            current.put(key, snapshot);
+            if (!metrics.contains(key.getMetricType())) {
+                continue;
+            }
+            LatencyHistogram.Snapshot last = previous.get(key);
+            // A smaller count means the histograms have been reset since
+            LatencyHistogram.Snapshot interval =
+                last == null || last.getCount() > snapshot.getCount()
+                ? snapshot
+                : snapshot.minus(last);
+            if (interval.getCount() > 0) {
+                addMetricData(key, interval, data);
+            }
+        }
+        previous = current;
+        return data;
+    }
+
+    private void addMetricData(RequestLatencyHistograms.Key key,
+            LatencyHistogram.Snapshot interval, List<MetricDatum> data) {
+        data.add(newMetricDatum(key)
+            .withStatisticValues(new StatisticSet()
+                .withSampleCount((double) interval.getCount())
+                .withSum(interval.getSum() / MICROS_PER_MILLI)
+                .withMinimum(interval.getMin() / MICROS_PER_MILLI)
+                .withMaximum(interval.getMax() / MICROS_PER_MILLI)));
+        for (double percentile: PERCENTILES) {
+            data.add(newMetricDatum(key)
+                .withDimensions(new Dimension()
+                    .withName(Dimensions.Percentile.name())
+                    .withValue(percentileName(percentile)))
+                .withValue(interval.getValueAtPercentile(percentile) / MICROS_PER_MILLI));
+        }
+    }
+
+    private MetricDatum newMetricDatum(RequestLatencyHistograms.Key key) {
+        return new MetricDatum()
+            .withMetricName(key.getServiceName())
+            .withDimensions(
+                new Dimension()
+                    .withName(Dimensions.MetricType.name())
+                    .withValue(key.getMetricType().name()),
+                new Dimension()
+                    .withName(Dimensions.RequestType.name())
+                    .withValue(key.getRequestType()),
+                new Dimension()
+                    .withName(Dimensions.Scope.name())
+                    .withValue(key.getScope().name()))
+            .withUnit(StandardUnit.Milliseconds);
+    }
+
+    /** Returns the name of the given percentile, such as p99 or p99.9. */
+    private static String percentileName(double percentile) {
+        return percentile == Math.rint(percentile)
+            ? "p" + (long) percentile
+            : "p" + percentile;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics.internal.cloudwatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.amazonaws.services.cloudwatch.model.Dimension;
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import com.amazonaws.services.cloudwatch.model.StatisticSet;
+
+/**
+ * Identifies a unique metric by its name, unit and dimensions, irrespective
+ * of the order of the dimensions.
+ * <p>
+ * A key is either interned, in which case it owns a sorted copy of the
+ * dimensions and is used as a key of {@link MetricRegistry}, or a probe, which
+ * is reset to view the fields of a metric datum to look up its interned key
+ * without copying, sorting or serializing anything.
+ */
+final class MetricKey {
+    private String metricName;
+    private String unit;
+    private List<Dimension> dimensions;
+    private int hash;
+
+    private MetricKey() {}
+
+    /** Returns a new probe, to be reset before each lookup. */
+    static MetricKey newProbe() {
+        return new MetricKey();
+    }
+
+    /** Resets this probe to view the given datum, and returns it. */
+    MetricKey reset(MetricDatum datum) {
+        this.metricName = datum.getMetricName();
+        this.unit = datum.getUnit();
+        this.dimensions = datum.getDimensions();
+        this.hash = computeHash();
+        return this;
+    }
+
+    /** Returns the interned key of the metric currently viewed by this probe. */
+    MetricKey intern() {
+        MetricKey key = new MetricKey();
+        key.metricName = metricName;
+        key.unit = unit;
+        List<Dimension> dims = new ArrayList<Dimension>(dimensions.size());
+        for (Dimension dim: dimensions) {
+            dims.add(new Dimension().withName(dim.getName()).withValue(dim.getValue()));
+        }
+        Collections.sort(dims, DimensionComparator.INSTANCE);
+        key.dimensions = Collections.unmodifiableList(dims);
+        key.hash = hash;
+        return key;
+    }
+
+    /**
+     * Returns a new metric datum of this metric, with the given statistics.
+     */
+    MetricDatum toMetricDatum(StatisticSet stat) {
+        return new MetricDatum()
+            .withMetricName(metricName)
+            .withUnit(unit)
+            .withDimensions(dimensions)
+            .withStatisticValues(stat);
+    }
+
+    /**
+     * The hash code of the dimensions is their sum, so that it doesn't depend
+     * on their order.
+     */
+    private int computeHash() {
+        int h = 0;
+        for (int i = 0, size = dimensions.size(); i < size; i++) {
+            h += dimensions.get(i).hashCode();
+        }
+        h = 31 * h + (metricName == null ? 0 : metricName.hashCode());
+        return 31 * h + (unit == null ? 0 : unit.hashCode());
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof MetricKey)) {
+            return false;
+        }
+        MetricKey that = (MetricKey) obj;
+        if (hash != that.hash
+                || !equals(metricName, that.metricName)
+                || !equals(unit, that.unit)
+                || dimensions.size() != that.dimensions.size()) {
+            return false;
+        }
+        // Metrics have few dimensions, each with a distinct name
+        for (int i = 0, size = dimensions.size(); i < size; i++) {
+            if (!contains(that.dimensions, dimensions.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean contains(List<Dimension> dims, Dimension dim) {
+        for (int i = 0, size = dims.size(); i < size; i++) {
+            if (dim.equals(dims.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean equals(String first, String second) {
+        return first == null ? second == null : first.equals(second);
+    }
+
+    @Override
+    public String toString() {
+        return metricName + dimensions;
+    }
+}
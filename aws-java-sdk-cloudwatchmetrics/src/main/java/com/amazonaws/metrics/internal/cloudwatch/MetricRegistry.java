@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics.internal.cloudwatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import com.amazonaws.services.cloudwatch.model.StatisticSet;
+
+/**
+ * Summarizes the metric data points collected by the request and service
+ * metric collectors into per-metric statistics, until the
+ * {@link MetricUploaderThread} drains them.
+ * <p>
+ * Each unique metric is interned once, with its own
+ * {@link StatisticAccumulator}; recording a data point of a known metric looks
+ * up its accumulator with a per-thread probe key and updates it without
+ * allocating or locking. Metrics that have not been recorded since the last
+ * drain are forgotten, so that the number of metrics held in memory stays
+ * within {@link CloudWatchMetricConfig#getMetricQueueSize()}.
+ */
+@ThreadSafe
+public final class MetricRegistry {
+    private static final ThreadLocal<MetricKey> PROBE = new ThreadLocal<MetricKey>() {
+        @Override
+        protected MetricKey initialValue() {
+            return MetricKey.newProbe();
+        }
+    };
+
+    private final ConcurrentMap<MetricKey, StatisticAccumulator> accumulators =
+        new ConcurrentHashMap<MetricKey, StatisticAccumulator>();
+    private final int maxMetrics;
+
+    /**
+     * @param maxMetrics
+     *            the maximum number of unique metrics held in memory
+     */
+    MetricRegistry(int maxMetrics) {
+        if (maxMetrics < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.maxMetrics = maxMetrics;
+    }
+
+    /**
+     * Summarizes the value of the given datum into the statistics of the
+     * respective unique metric, returning true if successful or false if no
+     * space is available for a new metric. A datum without a value is ignored.
+     */
+    boolean record(MetricDatum datum) {
+        Double value = datum.getValue();
+        if (value == null) {
+            return true;
+        }
+        MetricKey probe = PROBE.get().reset(datum);
+        StatisticAccumulator accumulator = accumulators.get(probe);
+        if (accumulator == null) {
+            if (accumulators.size() >= maxMetrics) {
+                return false;
+            }
+            StatisticAccumulator newAccumulator = new StatisticAccumulator();
+            accumulator = accumulators.putIfAbsent(probe.intern(), newAccumulator);
+            if (accumulator == null) {
+                accumulator = newAccumulator;
+            }
+        }
+        accumulator.record(value.doubleValue());
+        return true;
+    }
+
+    /**
+     * Returns a snapshot of the statistics of every metric recorded since the
+     * last drain, as one metric datum per unique metric, and resets them.
+     */
+    List<MetricDatum> drain() {
+        List<MetricDatum> data = new ArrayList<MetricDatum>();
+        for (Map.Entry<MetricKey, StatisticAccumulator> entry: accumulators.entrySet()) {
+            StatisticSet stat = entry.getValue().snapshot();
+            if (stat == null) {
+                // Idle since the last drain; a value racing with this removal
+                // is dropped
+                accumulators.remove(entry.getKey(), entry.getValue());
+            } else {
+                data.add(entry.getKey().toMetricDatum(stat));
+            }
+        }
+        return data;
+    }
+}
@@ -14,13 +14,11 @@
  */
 package com.amazonaws.metrics.internal.cloudwatch;
 
-import java.util.concurrent.BlockingQueue;
-
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.amazonaws.metrics.RequestLatencyHistograms;
 import com.amazonaws.services.cloudwatch.AmazonCloudWatchClient;
-import com.amazonaws.services.cloudwatch.model.MetricDatum;
 import com.amazonaws.services.cloudwatch.model.PutMetricDataRequest;
 import com.amazonaws.util.VersionInfoUtils;
 
@@ -36,24 +34,27 @@ class MetricUploaderThread extends Thread {
     private final BlockingRequestBuilder qIterator;
 
     MetricUploaderThread(CloudWatchMetricConfig config,
-            BlockingQueue<MetricDatum> queue) {
+            MetricRegistry registry,
+            RequestLatencyHistograms latencyHistograms) {
         this(config,
-             queue,
+             registry,
+             latencyHistograms,
              config.getCredentialsProvider() == null
              ? new AmazonCloudWatchClient()
              : new AmazonCloudWatchClient(config.getCredentialsProvider()));
     }
 
     MetricUploaderThread(CloudWatchMetricConfig config,
-        BlockingQueue<MetricDatum> queue,
+        MetricRegistry registry,
+        RequestLatencyHistograms latencyHistograms,
         AmazonCloudWatchClient client)
     {
         super(THREAD_NAME);
-        if (config == null || queue == null) {
+        if (config == null || registry == null) {
             throw new IllegalArgumentException();
         }
         this.cloudwatchClient = client;
-        this.qIterator = new BlockingRequestBuilder(config, queue);
+        this.qIterator = new BlockingRequestBuilder(config, registry, latencyHistograms);
         String endpoint = config.getCloudWatchEndPoint();
         if (endpoint != null)
             cloudwatchClient.setEndpoint(endpoint);
@@ -72,6 +72,7 @@ public class PredefinedMetricTransformer {
                 case HttpClientPoolAvailableCount:
                 case HttpClientPoolLeasedCount:
                 case HttpClientPoolPendingCount:
+                case HttpClientPoolReusedConnectionCount:
                     return metricOfCount(predefined, request, response);
                 case RequestCount:  // intentionally fall thru to reuse the same routine as RetryCount
                 case RetryCount:
@@ -83,6 +84,7 @@ public class PredefinedMetricTransformer {
                     return latencyOfClientExecuteTime(request, response);
                 case HttpClientSendRequestTime:
                 case HttpClientReceiveResponseTime:
+                case HttpClientPoolLeaseWaitTime:
                 case HttpRequestTime:
                     return latencyMetricOf(predefined, request, response, INCLUDE_REQUEST_TYPE);
                 case Exception:
@@ -14,8 +14,6 @@
  */
 package com.amazonaws.metrics.internal.cloudwatch;
 
-import java.util.concurrent.BlockingQueue;
-
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.annotation.ThreadSafe;
@@ -24,6 +22,7 @@ import com.amazonaws.Request;
 import com.amazonaws.Response;
 import com.amazonaws.metrics.AwsSdkMetrics;
 import com.amazonaws.metrics.MetricType;
+import com.amazonaws.metrics.RequestLatencyHistograms;
 import com.amazonaws.metrics.RequestMetricCollector;
 import com.amazonaws.metrics.RequestMetricType;
 import com.amazonaws.services.cloudwatch.model.MetricDatum;
@@ -39,18 +38,19 @@ import com.amazonaws.util.AWSRequestMetrics;
 public class RequestMetricCollectorSupport extends RequestMetricCollector 
 {
     protected final static Log log = LogFactory.getLog(RequestMetricCollectorSupport.class);
-    private final BlockingQueue<MetricDatum> queue;
+    private final MetricRegistry registry;
     private final PredefinedMetricTransformer transformer = new PredefinedMetricTransformer();
+    private final RequestLatencyHistograms latencyHistograms = new RequestLatencyHistograms();
 
-    protected RequestMetricCollectorSupport(BlockingQueue<MetricDatum> queue) {
-        this.queue = queue;
+    protected RequestMetricCollectorSupport(MetricRegistry registry) {
+        this.registry = registry;
     }
 
     /**
      * Collects the metrics at the end of a request/response cycle, transforms
      * the metric data points into a cloud watch metric datum representation,
-     * and then adds it to a memory queue so it will get summarized into the
-     * necessary statistics and uploaded to Amazon CloudWatch.
+     * and then summarizes it into the necessary statistics in memory, to be
+     * uploaded to Amazon CloudWatch.
      */
     @Override
     public void collectMetrics(Request<?> request, Response<?> response) {
@@ -67,6 +67,7 @@ public class RequestMetricCollectorSupport extends RequestMetricCollector
         if (arm == null || !arm.isEnabled()) {
             return;
         }
+        latencyHistograms.record(request);
         for (MetricType type: AwsSdkMetrics.getPredefinedMetrics()) {
             if (!(type instanceof RequestMetricType))
                 continue;
@@ -75,14 +76,14 @@ public class RequestMetricCollectorSupport extends RequestMetricCollector
                 try {
                     if (!addMetricsToQueue(datum)) {
                         if (log.isDebugEnabled()) {
-                            log.debug("Failed to add to the metrics queue (due to no space available) for "
+                            log.debug("Failed to add to the metric registry (due to no space available) for "
                                     + type.name()
                                     + ":"
                                     + request.getServiceName());
                         }
                     }
                 } catch(RuntimeException ex) {
-                    log.warn("Failed to add to the metrics queue for "
+                    log.warn("Failed to add to the metric registry for "
                         + type.name() + ":" + request.getServiceName(),
                         ex);
                 }
@@ -91,12 +92,21 @@ public class RequestMetricCollectorSupport extends RequestMetricCollector
     }
 
     /**
-     * Adds the given metric to the queue, returning true if successful or false
-     * if no space available.
+     * Summarizes the given metric into the metric registry, returning true if
+     * successful or false if no space available.
      */
     protected boolean addMetricsToQueue(MetricDatum metric) {
-        return queue.offer(metric); 
+        return registry.record(metric);
+    }
+    /**
+     * Returns the latency histograms of the requests collected, which are
+     * uploaded along with the other metrics.
+     */
+    @Override
+    public RequestLatencyHistograms getLatencyHistograms() {
+        return latencyHistograms;
     }
+
     /** Returns the predefined metrics transformer. */
     protected PredefinedMetricTransformer getTransformer() { return transformer; }
 }
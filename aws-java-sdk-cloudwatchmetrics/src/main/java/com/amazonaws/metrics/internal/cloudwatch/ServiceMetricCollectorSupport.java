@@ -15,7 +15,6 @@
 package com.amazonaws.metrics.internal.cloudwatch;
 
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
@@ -46,10 +45,10 @@ public class ServiceMetricCollectorSupport extends ServiceMetricCollector
 {
     static final double NANO_PER_SEC = TimeUnit.SECONDS.toNanos(1);
     protected final static Log log = LogFactory.getLog(ServiceMetricCollectorSupport.class);
-    private final BlockingQueue<MetricDatum> queue;
+    private final MetricRegistry registry;
 
-    protected ServiceMetricCollectorSupport(BlockingQueue<MetricDatum> queue) {
-        this.queue = queue;
+    protected ServiceMetricCollectorSupport(MetricRegistry registry) {
+        this.registry = registry;
     }
 
     @Override
@@ -140,20 +139,20 @@ public class ServiceMetricCollectorSupport extends ServiceMetricCollector
         try {
             if (!addMetricsToQueue(metric)) {
                 if (log.isDebugEnabled()) {
-                    log.debug("Failed to add to the metrics queue (due to no space available) for "
+                    log.debug("Failed to add to the metric registry (due to no space available) for "
                             + metric.getMetricName());
                 }
             }
         } catch (RuntimeException ex) {
-            log.warn("Failed to add to the metrics queue for metric: " + metric,
+            log.warn("Failed to add to the metric registry for metric: " + metric,
                     ex);
         }
     }
     /**
-     * Adds the given metric to the queue, returning true if successful or false
-     * if no space available.
+     * Summarizes the given metric into the metric registry, returning true if
+     * successful or false if no space available.
      */
     protected boolean addMetricsToQueue(MetricDatum metric) {
-        return queue.offer(metric); 
+        return registry.record(metric);
     }
 }
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics.internal.cloudwatch;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.services.cloudwatch.model.StatisticSet;
+
+/**
+ * Accumulates the sample count, sum, minimum and maximum of the values of a
+ * metric, without allocating or locking.
+ * <p>
+ * The statistics are striped over a few cells, each padded to its own cache
+ * line, so that threads recording the same metric concurrently mostly update
+ * different cells. There are two banks of cells: values are recorded into the
+ * current bank, and a snapshot switches to the other bank before combining and
+ * resetting the previous one, once the values being recorded into it are
+ * complete. So every value counted by a snapshot is also part of its sum,
+ * minimum and maximum, and vice versa.
+ */
+@ThreadSafe
+final class StatisticAccumulator {
+    private static final int COUNT = 0;
+    private static final int SUM = 1;
+    private static final int MIN = 2;
+    private static final int MAX = 3;
+    /** The number of values being recorded into the cell. */
+    private static final int WRITERS = 4;
+    /** Number of longs per cell: the statistics padded to 64 bytes. */
+    private static final int CELL_SIZE = 8;
+    private static final int CELLS = cellCount();
+    /** Number of longs per bank of cells. */
+    private static final int BANK_SIZE = CELLS * CELL_SIZE;
+
+    private static final long ZERO = Double.doubleToRawLongBits(0.0);
+    private static final long POSITIVE_INFINITY = Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+    private static final long NEGATIVE_INFINITY = Double.doubleToRawLongBits(Double.NEGATIVE_INFINITY);
+
+    private final AtomicLongArray cells = new AtomicLongArray(2 * BANK_SIZE);
+    /** The offset of the bank values are recorded into. */
+    private volatile int bank;
+
+    StatisticAccumulator() {
+        for (int i = 0; i < 2 * CELLS; i++) {
+            reset(i * CELL_SIZE);
+        }
+    }
+
+    /** Returns the smallest power of two not less than the number of processors. */
+    private static int cellCount() {
+        int processors = Math.min(Runtime.getRuntime().availableProcessors(), 64);
+        int count = 1;
+        while (count < processors) {
+            count <<= 1;
+        }
+        return count;
+    }
+
+    /** Records the given value. */
+    void record(double value) {
+        final int cell = ((int) Thread.currentThread().getId() & (CELLS - 1)) * CELL_SIZE;
+        int base;
+        while (true) {
+            int current = bank;
+            base = current + cell;
+            cells.incrementAndGet(base + WRITERS);
+            if (bank == current) {
+                break;
+            }
+            // Raced with a snapshot switching banks
+            cells.decrementAndGet(base + WRITERS);
+        }
+        try {
+            cells.incrementAndGet(base + COUNT);
+            add(base + SUM, value);
+            min(base + MIN, value);
+            max(base + MAX, value);
+        } finally {
+            cells.decrementAndGet(base + WRITERS);
+        }
+    }
+
+    /**
+     * Returns the statistics of the values recorded since the last snapshot,
+     * and resets them; or null if no value has been recorded since.
+     */
+    synchronized StatisticSet snapshot() {
+        final int previous = bank;
+        bank = BANK_SIZE - previous;
+        long count = 0;
+        double sum = 0.0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < CELLS; i++) {
+            int base = previous + i * CELL_SIZE;
+            // Waits for the values still being recorded into the previous bank
+            while (cells.get(base + WRITERS) != 0) {
+                Thread.yield();
+            }
+            count += cells.get(base + COUNT);
+            sum += Double.longBitsToDouble(cells.get(base + SUM));
+            min = Math.min(min, Double.longBitsToDouble(cells.get(base + MIN)));
+            max = Math.max(max, Double.longBitsToDouble(cells.get(base + MAX)));
+            reset(base);
+        }
+        if (count == 0) {
+            return null;
+        }
+        return new StatisticSet()
+            .withSampleCount((double) count)
+            .withSum(sum)
+            .withMinimum(min)
+            .withMaximum(max);
+    }
+
+    private void reset(int base) {
+        cells.set(base + COUNT, 0);
+        cells.set(base + SUM, ZERO);
+        cells.set(base + MIN, POSITIVE_INFINITY);
+        cells.set(base + MAX, NEGATIVE_INFINITY);
+    }
+
+    private void add(int index, double value) {
+        while (true) {
+            long current = cells.get(index);
+            long updated = Double.doubleToRawLongBits(Double.longBitsToDouble(current) + value);
+            if (cells.compareAndSet(index, current, updated)) {
+                return;
+            }
+        }
+    }
+
+    private void min(int index, double value) {
+        while (true) {
+            long current = cells.get(index);
+            if (Double.longBitsToDouble(current) <= value
+                    || cells.compareAndSet(index, current, Double.doubleToRawLongBits(value))) {
+                return;
+            }
+        }
+    }
+
+    private void max(int index, double value) {
+        while (true) {
+            long current = cells.get(index);
+            if (Double.longBitsToDouble(current) >= value
+                    || cells.compareAndSet(index, current, Double.doubleToRawLongBits(value))) {
+                return;
+            }
+        }
+    }
+}
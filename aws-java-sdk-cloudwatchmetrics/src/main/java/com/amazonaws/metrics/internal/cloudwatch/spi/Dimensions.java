@@ -38,5 +38,14 @@ public enum Dimensions {
      * JVM used for per-JVM level metrics with a single metric namespace.
      */
     JVM,
+    /**
+     * Scope of a latency histogram: per attempt, or per request including
+     * the retries.
+     */
+    Scope,
+    /**
+     * Percentile of a latency histogram such as p50, p99 or p99.9.
+     */
+    Percentile,
     ;
 }
\ No newline at end of file
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics.internal.cloudwatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.amazonaws.services.cloudwatch.model.Dimension;
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import com.amazonaws.services.cloudwatch.model.StandardUnit;
+
+public class MetricRegistryTest {
+
+    private static final Dimension SERVICE = new Dimension().withName("ServiceName").withValue("AmazonS3");
+    private static final Dimension REQUEST = new Dimension().withName("RequestType").withValue("GetObject");
+
+    @Test
+    public void testDimensionOrderIgnored() {
+        MetricRegistry registry = new MetricRegistry(10);
+        assertTrue(registry.record(datum("Latency", 10.0, SERVICE, REQUEST)));
+        assertTrue(registry.record(datum("Latency", 30.0, REQUEST, SERVICE)));
+        List<MetricDatum> data = registry.drain();
+        assertEquals(1, data.size());
+        MetricDatum datum = data.get(0);
+        assertEquals("Latency", datum.getMetricName());
+        assertEquals(StandardUnit.Milliseconds.toString(), datum.getUnit());
+        // Interned with sorted dimensions
+        assertEquals(Arrays.asList(REQUEST, SERVICE), datum.getDimensions());
+        assertEquals(2.0, datum.getStatisticValues().getSampleCount(), 0.0);
+        assertEquals(40.0, datum.getStatisticValues().getSum(), 0.0);
+        assertEquals(10.0, datum.getStatisticValues().getMinimum(), 0.0);
+        assertEquals(30.0, datum.getStatisticValues().getMaximum(), 0.0);
+    }
+
+    @Test
+    public void testDistinctMetrics() {
+        MetricRegistry registry = new MetricRegistry(10);
+        registry.record(datum("Latency", 10.0, SERVICE, REQUEST));
+        registry.record(datum("Latency", 20.0, SERVICE));
+        registry.record(datum("ClientExecuteTime", 30.0, SERVICE, REQUEST));
+        registry.record(datum("Latency", 40.0, SERVICE).withUnit(StandardUnit.Seconds));
+        Map<String, Double> sums = new HashMap<String, Double>();
+        for (MetricDatum datum : registry.drain()) {
+            sums.put(datum.getMetricName() + datum.getUnit() + datum.getDimensions().size(),
+                    datum.getStatisticValues().getSum());
+        }
+        assertEquals(4, sums.size());
+        assertEquals(Double.valueOf(10.0), sums.get("LatencyMilliseconds2"));
+        assertEquals(Double.valueOf(20.0), sums.get("LatencyMilliseconds1"));
+        assertEquals(Double.valueOf(30.0), sums.get("ClientExecuteTimeMilliseconds2"));
+        assertEquals(Double.valueOf(40.0), sums.get("LatencySeconds1"));
+    }
+
+    @Test
+    public void testDatumWithoutValueIgnored() {
+        MetricRegistry registry = new MetricRegistry(10);
+        assertTrue(registry.record(datum("Latency", null, SERVICE)));
+        assertTrue(registry.drain().isEmpty());
+    }
+
+    @Test
+    public void testInternedKeyUnaffectedByLaterChanges() {
+        MetricRegistry registry = new MetricRegistry(10);
+        List<Dimension> dims = new ArrayList<Dimension>();
+        dims.add(new Dimension().withName("ServiceName").withValue("AmazonS3"));
+        MetricDatum datum = new MetricDatum().withMetricName("Latency")
+            .withUnit(StandardUnit.Milliseconds).withDimensions(dims).withValue(1.0);
+        registry.record(datum);
+        dims.get(0).setValue("AmazonSQS");
+        List<MetricDatum> data = registry.drain();
+        assertEquals(Arrays.asList(SERVICE), data.get(0).getDimensions());
+    }
+
+    @Test
+    public void testMaxMetrics() {
+        MetricRegistry registry = new MetricRegistry(2);
+        assertTrue(registry.record(datum("A", 1.0)));
+        assertTrue(registry.record(datum("B", 1.0)));
+        assertFalse(registry.record(datum("C", 1.0)));
+        // Known metrics are still recorded
+        assertTrue(registry.record(datum("A", 1.0)));
+        assertEquals(2, registry.drain().size());
+    }
+
+    @Test
+    public void testIdleMetricsForgotten() {
+        MetricRegistry registry = new MetricRegistry(2);
+        registry.record(datum("A", 1.0));
+        registry.record(datum("B", 1.0));
+        assertEquals(2, registry.drain().size());
+        registry.record(datum("A", 2.0));
+        List<MetricDatum> data = registry.drain();
+        assertEquals(1, data.size());
+        assertEquals("A", data.get(0).getMetricName());
+        // B was idle for a whole period, which made room for C
+        assertTrue(registry.record(datum("C", 1.0)));
+        data = registry.drain();
+        assertEquals(1, data.size());
+        assertEquals("C", data.get(0).getMetricName());
+    }
+
+    private static MetricDatum datum(String name, Double value, Dimension... dims) {
+        return new MetricDatum()
+            .withMetricName(name)
+            .withUnit(StandardUnit.Milliseconds)
+            .withDimensions(dims)
+            .withValue(value);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics.internal.cloudwatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.amazonaws.services.cloudwatch.model.StatisticSet;
+
+public class StatisticAccumulatorTest {
+
+    @Test
+    public void testEmpty() {
+        assertNull(new StatisticAccumulator().snapshot());
+    }
+
+    @Test
+    public void testStatistics() {
+        StatisticAccumulator accumulator = new StatisticAccumulator();
+        accumulator.record(2.0);
+        accumulator.record(-1.5);
+        accumulator.record(7.0);
+        StatisticSet stat = accumulator.snapshot();
+        assertEquals(3.0, stat.getSampleCount(), 0.0);
+        assertEquals(7.5, stat.getSum(), 0.0);
+        assertEquals(-1.5, stat.getMinimum(), 0.0);
+        assertEquals(7.0, stat.getMaximum(), 0.0);
+        // Reset by the snapshot
+        assertNull(accumulator.snapshot());
+        accumulator.record(3.0);
+        stat = accumulator.snapshot();
+        assertEquals(1.0, stat.getSampleCount(), 0.0);
+        assertEquals(3.0, stat.getMinimum(), 0.0);
+        assertEquals(3.0, stat.getMaximum(), 0.0);
+    }
+
+    @Test
+    public void testRecordedFromManyThreads() throws InterruptedException {
+        final StatisticAccumulator accumulator = new StatisticAccumulator();
+        final int threadCount = 8;
+        final int recordsPerThread = 10000;
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < threadCount; i++) {
+            final double value = i;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < recordsPerThread; j++) {
+                        accumulator.record(value);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        StatisticSet stat = accumulator.snapshot();
+        assertEquals(threadCount * recordsPerThread, stat.getSampleCount(), 0.0);
+        assertEquals(28.0 * recordsPerThread, stat.getSum(), 0.0);
+        assertEquals(0.0, stat.getMinimum(), 0.0);
+        assertEquals(7.0, stat.getMaximum(), 0.0);
+    }
+
+    /**
+     * Every snapshot taken while values are recorded must have a sum, minimum
+     * and maximum consistent with its count, and no value may be lost.
+     */
+    @Test
+    public void testSnapshotsConsistentWithConcurrentRecords() throws InterruptedException {
+        final StatisticAccumulator accumulator = new StatisticAccumulator();
+        final int threadCount = 4;
+        final int recordsPerThread = 200000;
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        final AtomicBoolean failed = new AtomicBoolean();
+        for (int i = 0; i < threadCount; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < recordsPerThread; j++) {
+                            accumulator.record(1.0);
+                        }
+                    } catch (RuntimeException e) {
+                        failed.set(true);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        double total = 0;
+        while (done.getCount() > 0) {
+            StatisticSet stat = accumulator.snapshot();
+            if (stat != null) {
+                assertConsistent(stat);
+                total += stat.getSampleCount();
+            }
+        }
+        done.await();
+        StatisticSet stat = accumulator.snapshot();
+        if (stat != null) {
+            assertConsistent(stat);
+            total += stat.getSampleCount();
+        }
+        assertEquals(false, failed.get());
+        assertEquals((double) threadCount * recordsPerThread, total, 0.0);
+    }
+
+    private static void assertConsistent(StatisticSet stat) {
+        assertEquals(stat.getSampleCount(), stat.getSum(), 0.0);
+        assertEquals(1.0, stat.getMinimum(), 0.0);
+        assertEquals(1.0, stat.getMaximum(), 0.0);
+    }
+}
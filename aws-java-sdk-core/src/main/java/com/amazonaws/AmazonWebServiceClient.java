@@ -19,24 +19,38 @@ import static com.amazonaws.SDKGlobalConfiguration.PROFILING_SYSTEM_PROPERTY;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.auth.RegionAwareSigner;
 import com.amazonaws.auth.Signer;
 import com.amazonaws.auth.SignerFactory;
+import com.amazonaws.handlers.AsyncHandler;
 import com.amazonaws.handlers.RequestHandler;
 import com.amazonaws.handlers.RequestHandler2;
 import com.amazonaws.http.AmazonHttpClient;
+import com.amazonaws.http.AsyncResponseCallback;
 import com.amazonaws.http.ExecutionContext;
+import com.amazonaws.http.HttpResponseHandler;
+import com.amazonaws.http.JsonResponseHandler;
 import com.amazonaws.internal.DefaultServiceEndpointBuilder;
 import com.amazonaws.log.CommonsLogFactory;
 import com.amazonaws.metrics.AwsSdkMetrics;
 import com.amazonaws.metrics.RequestMetricCollector;
 import com.amazonaws.regions.Region;
 import com.amazonaws.regions.Regions;
+import com.amazonaws.transform.JsonUnmarshallerContext;
+import com.amazonaws.transform.Marshaller;
+import com.amazonaws.transform.Unmarshaller;
 import com.amazonaws.util.AWSRequestMetrics;
 import com.amazonaws.util.AWSRequestMetrics.Field;
 import com.amazonaws.util.AwsHostNameUtils;
@@ -103,6 +117,19 @@ public abstract class AmazonWebServiceClient {
      * Thread safe so it's backward compatible.
      */
     private volatile String serviceName;
+
+    /**
+     * The provider of the credentials of the requests sent through the
+     * non-blocking HTTP transport; null until the transport is initialized.
+     */
+    private volatile AWSCredentialsProvider nonBlockingCredentialsProvider;
+
+    /**
+     * The handler of the error responses to the requests sent through the
+     * non-blocking HTTP transport; null until the transport is initialized.
+     */
+    private volatile HttpResponseHandler<AmazonServiceException> nonBlockingErrorResponseHandler;
+
     /**
      * Constructs a new AmazonWebServiceClient object using the specified
      * configuration.
@@ -127,6 +154,12 @@ public abstract class AmazonWebServiceClient {
     public AmazonWebServiceClient(ClientConfiguration clientConfiguration,
             RequestMetricCollector requestMetricCollector) {
         this.clientConfiguration = clientConfiguration;
+        if (clientConfiguration != null
+                && clientConfiguration.useNonBlockingTransport()
+                && !supportsNonBlockingTransport()) {
+            throw new IllegalArgumentException(getClass().getName()
+                    + " doesn't support the non-blocking transport enabled in the client configuration");
+        }
         client = new AmazonHttpClient(clientConfiguration, requestMetricCollector);
         requestHandler2s = new CopyOnWriteArrayList<RequestHandler2>();
     }
@@ -602,6 +635,248 @@ public abstract class AmazonWebServiceClient {
         }
     }
 
+    /**
+     * Returns whether this client can send the requests of its asynchronous
+     * operations through the non-blocking HTTP transport, once it has called
+     * {@link #initNonBlockingTransport}. A client that doesn't can't be
+     * created with a client configuration enabling the transport.
+     * <p>
+     * This method is called by the constructor, before the subclass is
+     * initialized.
+     *
+     * @see ClientConfiguration#setUseNonBlockingTransport(boolean)
+     */
+    protected boolean supportsNonBlockingTransport() {
+        return false;
+    }
+
+    /**
+     * Sets how the requests of this client are sent through the non-blocking
+     * HTTP transport by {@link #executeAsync}. Called once by the clients
+     * that support the transport, when they are initialized.
+     *
+     * @param credentialsProvider
+     *            the provider of the credentials used to sign the requests,
+     *            unless specified in the original request
+     * @param errorResponseHandler
+     *            the handler of the error responses, used for every request
+     */
+    protected final void initNonBlockingTransport(
+            AWSCredentialsProvider credentialsProvider,
+            HttpResponseHandler<AmazonServiceException> errorResponseHandler) {
+        this.nonBlockingCredentialsProvider = credentialsProvider;
+        this.nonBlockingErrorResponseHandler = errorResponseHandler;
+    }
+
+    /**
+     * Executes an operation of an asynchronous JSON client, whose successful
+     * responses are unmarshalled by the given unmarshaller.
+     *
+     * @see #executeAsync(AmazonWebServiceRequest, Marshaller, HttpResponseHandler, AsyncHandler, ExecutorService, Callable)
+     */
+    protected final <X, Y extends AmazonWebServiceRequest> Future<X> executeAsync(
+            Y originalRequest,
+            Marshaller<Request<Y>, Y> marshaller,
+            Unmarshaller<X, JsonUnmarshallerContext> unmarshaller,
+            AsyncHandler<Y, X> asyncHandler,
+            ExecutorService executorService,
+            Callable<X> blockingCall) {
+        return executeAsync(originalRequest, marshaller,
+                new JsonResponseHandler<X>(unmarshaller), asyncHandler,
+                executorService, blockingCall);
+    }
+
+    /**
+     * Executes an operation of an asynchronous client. If the non-blocking
+     * HTTP transport is enabled in the client configuration, the request is
+     * marshalled on the calling thread and sent through it, so that no thread
+     * is held while it is in flight; otherwise, or if the response handlers
+     * need the HTTP connection left open, the blocking call is submitted to
+     * the executor service. Either way, the async handler, if any, is
+     * notified on the executor service before the returned future completes.
+     * <p>
+     * Cancelling the returned future aborts the HTTP exchange in flight
+     * through the non-blocking transport.
+     *
+     * @param originalRequest
+     *            the request passed in from the user
+     * @param marshaller
+     *            the marshaller of the request
+     * @param responseHandler
+     *            the handler unmarshalling a successful response
+     * @param asyncHandler
+     *            the async handler to notify; or null if there is none
+     * @param executorService
+     *            the executor service of the asynchronous client
+     * @param blockingCall
+     *            the call to the blocking operation, used when the
+     *            non-blocking transport is disabled or can't be used
+     * @return a future for the result of the operation
+     * @see ClientConfiguration#setUseNonBlockingTransport(boolean)
+     */
+    protected final <X, Y extends AmazonWebServiceRequest> Future<X> executeAsync(
+            final Y originalRequest,
+            final Marshaller<Request<Y>, Y> marshaller,
+            final HttpResponseHandler<AmazonWebServiceResponse<X>> responseHandler,
+            final AsyncHandler<Y, X> asyncHandler,
+            final ExecutorService executorService,
+            final Callable<X> blockingCall) {
+        HttpResponseHandler<AmazonServiceException> errorResponseHandler =
+            nonBlockingErrorResponseHandler;
+        if (!clientConfiguration.useNonBlockingTransport()
+                || errorResponseHandler == null
+                || responseHandler.needsConnectionLeftOpen()
+                || errorResponseHandler.needsConnectionLeftOpen()) {
+            return executorService.submit(new Callable<X>() {
+                @Override
+                public X call() throws Exception {
+                    X result;
+                    try {
+                        result = blockingCall.call();
+                    } catch (Exception ex) {
+                        if (asyncHandler != null)
+                            asyncHandler.onError(ex);
+                        throw ex;
+                    }
+                    if (asyncHandler != null)
+                        asyncHandler.onSuccess(originalRequest, result);
+                    return result;
+                }
+            });
+        }
+        NonBlockingExecution<X, Y> execution = new NonBlockingExecution<X, Y>(
+                originalRequest, asyncHandler);
+        execution.start(marshaller, responseHandler, errorResponseHandler,
+                executorService);
+        return execution;
+    }
+
+    /**
+     * Sends a request marshalled by {@link #executeAsync} through the
+     * non-blocking HTTP transport, once it is bound to the endpoint and the
+     * credentials of this client.
+     */
+    private <X> Future<Response<X>> invokeNonBlocking(Request<?> request,
+            HttpResponseHandler<AmazonWebServiceResponse<X>> responseHandler,
+            HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+            ExecutionContext executionContext, Executor responseExecutor,
+            AsyncResponseCallback<X> callback) {
+        request.setEndpoint(endpoint);
+        request.setTimeOffset(timeOffset);
+
+        AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
+        AWSCredentials credentials;
+        awsRequestMetrics.startEvent(Field.CredentialsRequestTime);
+        try {
+            credentials = nonBlockingCredentialsProvider.getCredentials();
+        } finally {
+            awsRequestMetrics.endEvent(Field.CredentialsRequestTime);
+        }
+
+        AmazonWebServiceRequest originalRequest = request.getOriginalRequest();
+        if (originalRequest != null && originalRequest.getRequestCredentials() != null) {
+            credentials = originalRequest.getRequestCredentials();
+        }
+        executionContext.setCredentials(credentials);
+
+        return client.executeAsync(request, responseHandler, errorResponseHandler,
+                executionContext, responseExecutor, callback);
+    }
+
+    /**
+     * An operation executed through the non-blocking HTTP transport by
+     * {@link #executeAsync}, whose future is completed by the callback of the
+     * transport on the executor service.
+     */
+    private final class NonBlockingExecution<X, Y extends AmazonWebServiceRequest>
+            extends FutureTask<X> implements AsyncResponseCallback<X> {
+        private final Y originalRequest;
+        private final AsyncHandler<Y, X> asyncHandler;
+        private final ExecutionContext executionContext;
+        private final AWSRequestMetrics awsRequestMetrics;
+        private volatile Request<Y> request;
+        private volatile Future<Response<X>> exchange;
+
+        NonBlockingExecution(Y originalRequest, AsyncHandler<Y, X> asyncHandler) {
+            super(new Runnable() {
+                @Override
+                public void run() {
+                    // Never run; completed by the callback
+                }
+            }, null);
+            this.originalRequest = originalRequest;
+            this.asyncHandler = asyncHandler;
+            this.executionContext = createExecutionContext(originalRequest);
+            this.awsRequestMetrics = executionContext.getAwsRequestMetrics();
+        }
+
+        void start(Marshaller<Request<Y>, Y> marshaller,
+                HttpResponseHandler<AmazonWebServiceResponse<X>> responseHandler,
+                HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+                Executor responseExecutor) {
+            awsRequestMetrics.startEvent(Field.ClientExecuteTime);
+            try {
+                awsRequestMetrics.startEvent(Field.RequestMarshallTime);
+                try {
+                    request = marshaller.marshall(beforeMarshalling(originalRequest));
+                    // Binds the request metrics to the current request.
+                    request.setAWSRequestMetrics(awsRequestMetrics);
+                } finally {
+                    awsRequestMetrics.endEvent(Field.RequestMarshallTime);
+                }
+                exchange = invokeNonBlocking(request, responseHandler,
+                        errorResponseHandler, executionContext, responseExecutor,
+                        this);
+            } catch (Exception e) {
+                onError(e);
+            }
+            Future<Response<X>> current = exchange;
+            if (current != null && isCancelled()) {
+                // Cancelled before the exchange was known
+                current.cancel(true);
+            }
+        }
+
+        @Override
+        public void onSuccess(Response<X> response) {
+            endClientExecution(awsRequestMetrics, request, response);
+            X result = response.getAwsResponse();
+            if (asyncHandler != null && !isCancelled()) {
+                try {
+                    asyncHandler.onSuccess(originalRequest, result);
+                } catch (Exception e) {
+                    setException(e);
+                    return;
+                }
+            }
+            set(result);
+        }
+
+        @Override
+        public void onError(Exception exception) {
+            endClientExecution(awsRequestMetrics, request, null);
+            if (asyncHandler != null && !isCancelled()) {
+                try {
+                    asyncHandler.onError(exception);
+                } catch (Exception e) {
+                    setException(e);
+                    return;
+                }
+            }
+            setException(exception);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!super.cancel(mayInterruptIfRunning))
+                return false;
+            Future<Response<X>> current = exchange;
+            if (current != null)
+                current.cancel(true);
+            return true;
+        }
+    }
+
     /**
      * @deprecated by {@link #getServiceName()}.
      */
@@ -15,6 +15,9 @@
 package com.amazonaws;
 
 import java.net.InetAddress;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.http.annotation.NotThreadSafe;
 
@@ -84,6 +87,12 @@ public class ClientConfiguration {
      */
     public static final int DEFAULT_RESPONSE_METADATA_CACHE_SIZE = 50;
 
+    /**
+     * The default on whether asynchronous clients use the non-blocking HTTP
+     * transport.
+     */
+    public static final boolean DEFAULT_USE_NON_BLOCKING_TRANSPORT = false;
+
     /** The HTTP user agent header passed with all HTTP requests. */
     private String userAgent = DEFAULT_USER_AGENT;
 
@@ -136,6 +145,18 @@ public class ClientConfiguration {
     /** The maximum number of open HTTP connections. */
     private int maxConnections = DEFAULT_MAX_CONNECTIONS;
 
+    /**
+     * Optional maximum number of open HTTP connections to specific hosts,
+     * overriding the maximum number of open HTTP connections for those hosts.
+     */
+    private final Map<String, Integer> maxConnectionsPerHost = new HashMap<String, Integer>();
+
+    /**
+     * Optional number of HTTP connections to open to specific hosts when the
+     * client is created, rather than on first use.
+     */
+    private final Map<String, Integer> prewarmedConnectionsPerHost = new HashMap<String, Integer>();
+
     /**
      * The amount of time to wait (in milliseconds) for data to be transfered
      * over an established, open connection before the connection is timed out.
@@ -209,6 +230,14 @@ public class ClientConfiguration {
      */
     private int responseMetadataCacheSize = DEFAULT_RESPONSE_METADATA_CACHE_SIZE;
 
+    /**
+     * Optional whether asynchronous clients should send requests through a
+     * non-blocking HTTP transport, rather than executing each request on a
+     * thread of the client's executor service for the whole duration of the
+     * request.
+     */
+    private boolean useNonBlockingTransport = DEFAULT_USE_NON_BLOCKING_TRANSPORT;
+
     /**
      * Can be used to specify custom specific Apache HTTP client configurations.
      */
@@ -221,6 +250,8 @@ public class ClientConfiguration {
     public ClientConfiguration(ClientConfiguration other) {
         this.connectionTimeout           = other.connectionTimeout;
         this.maxConnections              = other.maxConnections;
+        this.maxConnectionsPerHost.putAll(other.maxConnectionsPerHost);
+        this.prewarmedConnectionsPerHost.putAll(other.prewarmedConnectionsPerHost);
         this.maxErrorRetry               = other.maxErrorRetry;
         this.retryPolicy                 = other.retryPolicy;
         this.localAddress                = other.localAddress;
@@ -240,6 +271,7 @@ public class ClientConfiguration {
         this.socketSendBufferSizeHint    = other.socketSendBufferSizeHint;
         this.signerOverride              = other.signerOverride;
         this.responseMetadataCacheSize   = other.responseMetadataCacheSize;
+        this.useNonBlockingTransport     = other.useNonBlockingTransport;
         this.apacheHttpClientConfig =
             new ApacheHttpClientConfig(other.apacheHttpClientConfig);
     }
@@ -335,6 +367,134 @@ public class ClientConfiguration {
         return this;
     }
 
+    /**
+     * Returns the maximum number of allowed open HTTP connections to the
+     * specified host. Unless overridden for the host, this is the maximum
+     * number of allowed open HTTP connections.
+     *
+     * @param host
+     *            The host name, such as "s3.amazonaws.com", optionally
+     *            followed by a port, such as "localhost:8000".
+     * @return The maximum number of allowed open HTTP connections to the host.
+     */
+    public int getMaxConnectionsPerHost(String host) {
+        Integer max = maxConnectionsPerHost.get(host);
+        return max == null ? maxConnections : max;
+    }
+
+    /**
+     * Returns the hosts for which the maximum number of allowed open HTTP
+     * connections has been overridden, mapped to their maximum.
+     *
+     * @return An unmodifiable map of host names to their maximum number of
+     *         allowed open HTTP connections.
+     */
+    public Map<String, Integer> getMaxConnectionsPerHost() {
+        return Collections.unmodifiableMap(maxConnectionsPerHost);
+    }
+
+    /**
+     * Sets the maximum number of allowed open HTTP connections to the
+     * specified host, overriding the maximum number of allowed open HTTP
+     * connections for that host. This allows a client to give more
+     * connections to a heavily used endpoint without raising the limit for
+     * every other endpoint.
+     * <p>
+     * The total number of connections of the client's connection pool is
+     * raised by the connections a host is allowed beyond the maximum number
+     * of allowed open HTTP connections.
+     *
+     * @param host
+     *            The host name, such as "s3.amazonaws.com", optionally
+     *            followed by a port, such as "localhost:8000".
+     * @param maxConnections
+     *            The maximum number of allowed open HTTP connections to the
+     *            host.
+     */
+    public void setMaxConnectionsPerHost(String host, int maxConnections) {
+        if (host == null) {
+            throw new IllegalArgumentException("host must not be null");
+        }
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("maxConnections " + maxConnections
+                    + " must be at least 1");
+        }
+        maxConnectionsPerHost.put(host, maxConnections);
+    }
+
+    /**
+     * Sets the maximum number of allowed open HTTP connections to the
+     * specified host, and returns the updated ClientConfiguration object.
+     *
+     * @param host
+     *            The host name, such as "s3.amazonaws.com", optionally
+     *            followed by a port, such as "localhost:8000".
+     * @param maxConnections
+     *            The maximum number of allowed open HTTP connections to the
+     *            host.
+     * @return The updated ClientConfiguration object.
+     * @see #setMaxConnectionsPerHost(String, int)
+     */
+    public ClientConfiguration withMaxConnectionsPerHost(String host, int maxConnections) {
+        setMaxConnectionsPerHost(host, maxConnections);
+        return this;
+    }
+
+    /**
+     * Returns the hosts to which HTTP connections are opened when the client
+     * is created, mapped to the number of connections opened to them.
+     *
+     * @return An unmodifiable map of host names to their number of pre-warmed
+     *         connections.
+     */
+    public Map<String, Integer> getPrewarmedConnectionsPerHost() {
+        return Collections.unmodifiableMap(prewarmedConnectionsPerHost);
+    }
+
+    /**
+     * Sets the number of HTTP connections to open to the specified host when
+     * the client is created, so that the first requests to the host don't pay
+     * for establishing connections. The connections are opened in the
+     * background, using the protocol of this configuration and, unless the
+     * host specifies one, the default port of the protocol, and are limited
+     * by the maximum number of allowed open HTTP connections to the host.
+     * Pre-warming is skipped when an HTTPS host is reached through a proxy.
+     *
+     * @param host
+     *            The host name, such as "s3.amazonaws.com", optionally
+     *            followed by a port, such as "localhost:8000".
+     * @param connections
+     *            The number of connections to open to the host.
+     */
+    public void setPrewarmedConnectionsPerHost(String host, int connections) {
+        if (host == null) {
+            throw new IllegalArgumentException("host must not be null");
+        }
+        if (connections < 0) {
+            throw new IllegalArgumentException("connections " + connections
+                    + " must not be negative");
+        }
+        prewarmedConnectionsPerHost.put(host, connections);
+    }
+
+    /**
+     * Sets the number of HTTP connections to open to the specified host when
+     * the client is created, and returns the updated ClientConfiguration
+     * object.
+     *
+     * @param host
+     *            The host name, such as "s3.amazonaws.com", optionally
+     *            followed by a port, such as "localhost:8000".
+     * @param connections
+     *            The number of connections to open to the host.
+     * @return The updated ClientConfiguration object.
+     * @see #setPrewarmedConnectionsPerHost(String, int)
+     */
+    public ClientConfiguration withPrewarmedConnectionsPerHost(String host, int connections) {
+        setPrewarmedConnectionsPerHost(host, connections);
+        return this;
+    }
+
     /**
      * Returns the HTTP user agent header to send with all requests.
      *
@@ -1181,6 +1341,56 @@ public class ClientConfiguration {
         return this;
     }
 
+    /**
+     * Returns whether asynchronous clients send requests through a
+     * non-blocking HTTP transport.
+     */
+    public boolean useNonBlockingTransport() {
+        return useNonBlockingTransport;
+    }
+
+    /**
+     * Sets whether asynchronous clients should send requests through a
+     * non-blocking HTTP transport. When enabled, requests that support it are
+     * sent and received on a small number of I/O threads, so that an
+     * asynchronous client doesn't need one thread per in-flight request; the
+     * retry policy, request signing and request handlers still apply. By
+     * default, it is set to {@value #DEFAULT_USE_NON_BLOCKING_TRANSPORT}.
+     * <p>
+     * Response handlers that need the HTTP connection left open, such as
+     * those streaming an object's content, always use the blocking transport.
+     * <p>
+     * Only the Amazon DynamoDB and Amazon Kinesis clients support the
+     * non-blocking transport; creating another client with a configuration
+     * enabling it fails with an {@link IllegalArgumentException}. The
+     * transport limits connections per host and enforces the preferred TLS
+     * protocol as the blocking transport does, but doesn't support a custom
+     * SSL socket factory.
+     * <p>
+     * The non-blocking transport requires Apache HttpAsyncClient, which is an
+     * optional dependency of the SDK and must be added to the class path.
+     *
+     * @param use
+     *            whether the non-blocking HTTP transport should be used
+     */
+    public void setUseNonBlockingTransport(boolean use) {
+        this.useNonBlockingTransport = use;
+    }
+
+    /**
+     * Sets whether asynchronous clients should send requests through a
+     * non-blocking HTTP transport.
+     *
+     * @param use
+     *            whether the non-blocking HTTP transport should be used
+     * @return The updated ClientConfiguration object.
+     * @see #setUseNonBlockingTransport(boolean)
+     */
+    public ClientConfiguration withNonBlockingTransport(boolean use) {
+        setUseNonBlockingTransport(use);
+        return this;
+    }
+
     /**
      * Returns a non-null object that can be used to specify Apache HTTP client
      * specific custom configurations.
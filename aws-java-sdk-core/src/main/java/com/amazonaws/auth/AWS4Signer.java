@@ -33,6 +33,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.nio.charset.Charset;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -46,7 +47,8 @@ import com.amazonaws.SignableRequest;
 import com.amazonaws.auth.internal.AWS4SignerRequestParams;
 import com.amazonaws.auth.internal.AWS4SignerUtils;
 import com.amazonaws.auth.internal.SignerKey;
-import com.amazonaws.internal.FIFOCache;
+import com.amazonaws.internal.ConcurrentLRUCache;
+import com.amazonaws.internal.FileRegionInputStream;
 import com.amazonaws.log.InternalLogApi;
 import com.amazonaws.log.InternalLogFactory;
 import com.amazonaws.util.BinaryUtils;
@@ -61,7 +63,35 @@ public class AWS4Signer extends AbstractAWSSigner implements
 
     protected static final InternalLogApi log = InternalLogFactory.getLog(AWS4Signer.class);
     private static final int SIGNER_CACHE_MAX_SIZE = 300;
-    private static final FIFOCache<SignerKey> signerCache = new FIFOCache<SignerKey>(SIGNER_CACHE_MAX_SIZE);
+    /** Large enough for the canonical request of most requests. */
+    private static final int CANONICAL_REQUEST_INITIAL_CAPACITY = 512;
+    /** Larger builders are dropped once used, rather than held by the thread. */
+    private static final int CANONICAL_REQUEST_MAX_RETAINED_CAPACITY = 16 * 1024;
+    /**
+     * Per-thread builder of canonical requests, so that a new buffer isn't
+     * allocated and grown for every request.
+     */
+    private static final ThreadLocal<StringBuilder> canonicalRequestBuffer = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(CANONICAL_REQUEST_INITIAL_CAPACITY);
+        }
+    };
+    private static final ConcurrentLRUCache<SigningCacheKey, SignerKey> signerCache =
+            new ConcurrentLRUCache<SigningCacheKey, SignerKey>(SIGNER_CACHE_MAX_SIZE);
+
+    /**
+     * Per-thread key used to look up the signer cache, so that signing a
+     * request doesn't allocate a new cache key unless a new signing key has to
+     * be derived.
+     */
+    private static final ThreadLocal<SigningCacheKey> signerCacheLookupKey =
+            new ThreadLocal<SigningCacheKey>() {
+                @Override
+                protected SigningCacheKey initialValue() {
+                    return new SigningCacheKey();
+                }
+            };
 
     /**
      * Service name override for use when the endpoint can't be used to
@@ -279,10 +309,11 @@ public class AWS4Signer extends AbstractAWSSigner implements
         final String path = SdkHttpUtils.appendUri(
                 request.getEndpoint().getPath(), request.getResourcePath());
 
-        final StringBuilder canonicalRequestBuilder = new StringBuilder(request
-                .getHttpMethod().toString());
+        final StringBuilder canonicalRequestBuilder = canonicalRequestBuffer.get();
+        canonicalRequestBuilder.setLength(0);
 
-        canonicalRequestBuilder.append(LINE_SEPARATOR)
+        canonicalRequestBuilder.append(request.getHttpMethod().toString())
+                .append(LINE_SEPARATOR)
                 // This would optionally double url-encode the resource path
                 .append(getCanonicalizedResourcePath(path, doubleUrlEncode))
                 .append(LINE_SEPARATOR)
@@ -294,6 +325,9 @@ public class AWS4Signer extends AbstractAWSSigner implements
                 .append(contentSha256);
 
         final String canonicalRequest = canonicalRequestBuilder.toString();
+        if (canonicalRequestBuilder.capacity() > CANONICAL_REQUEST_MAX_RETAINED_CAPACITY) {
+            canonicalRequestBuffer.remove();
+        }
 
         if (log.isDebugEnabled())
             log.debug("AWS4 Canonical Request: '\"" + canonicalRequest + "\"");
@@ -335,13 +369,21 @@ public class AWS4Signer extends AbstractAWSSigner implements
     private final byte[] deriveSigningKey(AWSCredentials credentials,
             AWS4SignerRequestParams signerRequestParams) {
 
-        final String cacheKey = computeSigningCacheKeyName(credentials,
-                signerRequestParams);
+        final SigningCacheKey lookupKey = signerCacheLookupKey.get().set(
+                credentials.getAWSSecretKey(),
+                signerRequestParams.getRegionName(),
+                signerRequestParams.getServiceName());
         final long daysSinceEpochSigningDate = DateUtils
                 .numberOfDaysSinceEpoch(signerRequestParams
                         .getSigningDateTimeMilli());
 
-        SignerKey signerKey = signerCache.get(cacheKey);
+        SignerKey signerKey;
+        try {
+            signerKey = signerCache.get(lookupKey);
+        } finally {
+            // so that the thread doesn't keep a reference to the secret key
+            lookupKey.clear();
+        }
 
         if (signerKey != null) {
             if (daysSinceEpochSigningDate == signerKey
@@ -357,23 +399,69 @@ public class AWS4Signer extends AbstractAWSSigner implements
                 signerRequestParams.getFormattedSigningDate(),
                 signerRequestParams.getRegionName(),
                 signerRequestParams.getServiceName());
-        signerCache.add(cacheKey, new SignerKey(
+        signerCache.add(new SigningCacheKey().set(
+                credentials.getAWSSecretKey(),
+                signerRequestParams.getRegionName(),
+                signerRequestParams.getServiceName()), new SignerKey(
                 daysSinceEpochSigningDate, signingKey));
         return signingKey;
     }
 
     /**
-     * Computes the name to be used to reference the signing key in the cache.
+     * The key used to reference the signing key in the cache, made up of the
+     * secret key, region name and service name. Instances used for lookups
+     * are mutable, confined to a thread and cleared after each lookup;
+     * instances stored in the cache are never modified.
      */
-    private final String computeSigningCacheKeyName(AWSCredentials credentials,
-            AWS4SignerRequestParams signerRequestParams) {
-        final StringBuilder hashKeyBuilder = new StringBuilder(
-                credentials.getAWSSecretKey());
+    static final class SigningCacheKey {
+        private String secretKey;
+        private String regionName;
+        private String serviceName;
+        private int hashCode;
+
+        SigningCacheKey set(String secretKey, String regionName,
+                String serviceName) {
+            this.secretKey = secretKey;
+            this.regionName = regionName;
+            this.serviceName = serviceName;
+            int h = secretKey == null ? 0 : secretKey.hashCode();
+            h = 31 * h + (regionName == null ? 0 : regionName.hashCode());
+            h = 31 * h + (serviceName == null ? 0 : serviceName.hashCode());
+            this.hashCode = h;
+            return this;
+        }
+
+        void clear() {
+            set(null, null, null);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof SigningCacheKey))
+                return false;
+            SigningCacheKey that = (SigningCacheKey) obj;
+            return hashCode == that.hashCode
+                    && equal(secretKey, that.secretKey)
+                    && equal(regionName, that.regionName)
+                    && equal(serviceName, that.serviceName);
+        }
+
+        private static boolean equal(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
 
-        return hashKeyBuilder.append("-")
-                .append(signerRequestParams.getRegionName())
-                .append("-")
-                .append(signerRequestParams.getServiceName()).toString();
+        @Override
+        public String toString() {
+            // Never expose the secret key
+            return regionName + "-" + serviceName;
+        }
     }
 
     /**
@@ -384,8 +472,7 @@ public class AWS4Signer extends AbstractAWSSigner implements
      */
     protected final byte[] computeSignature(String stringToSign,
             byte[] signingKey, AWS4SignerRequestParams signerRequestParams) {
-        return sign(stringToSign.getBytes(Charset.forName("UTF-8")), signingKey,
-                SigningAlgorithm.HmacSHA256);
+        return sign(stringToSign, signingKey, SigningAlgorithm.HmacSHA256);
     }
 
     /**
@@ -448,14 +535,14 @@ public class AWS4Signer extends AbstractAWSSigner implements
         Collections.sort(sortedHeaders, String.CASE_INSENSITIVE_ORDER);
 
         final Map<String, String> requestHeaders = request.getHeaders();
-        StringBuilder buffer = new StringBuilder();
+        StringBuilder buffer = new StringBuilder(sortedHeaders.size() * 64);
         for (String header : sortedHeaders) {
-            String key = header.toLowerCase().replaceAll("\\s+", " ");
             String value = requestHeaders.get(header);
 
-            buffer.append(key).append(":");
+            appendCompactedString(buffer, header.toLowerCase());
+            buffer.append(":");
             if (value != null) {
-                buffer.append(value.replaceAll("\\s+", " "));
+                appendCompactedString(buffer, value);
             }
 
             buffer.append("\n");
@@ -464,12 +551,47 @@ public class AWS4Signer extends AbstractAWSSigner implements
         return buffer.toString();
     }
 
+    /**
+     * Appends the given string to the buffer with each run of whitespace
+     * replaced by a single space. This is equivalent to
+     * <code>source.replaceAll("\\s+", " ")</code>, but avoids compiling a
+     * regular expression and allocating an intermediate string for every
+     * header of every request.
+     */
+    private static void appendCompactedString(final StringBuilder destination,
+            final String source) {
+        boolean previousIsWhiteSpace = false;
+        final int length = source.length();
+
+        for (int i = 0; i < length; i++) {
+            char ch = source.charAt(i);
+            if (isWhiteSpace(ch)) {
+                if (!previousIsWhiteSpace) {
+                    destination.append(' ');
+                    previousIsWhiteSpace = true;
+                }
+            } else {
+                destination.append(ch);
+                previousIsWhiteSpace = false;
+            }
+        }
+    }
+
+    /**
+     * Returns true if the given character is matched by the regular expression
+     * <code>\s</code>, ie one of <code>[ \t\n\x0B\f\r]</code>.
+     */
+    private static boolean isWhiteSpace(final char ch) {
+        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000b'
+                || ch == '\r' || ch == '\f';
+    }
+
     protected String getSignedHeadersString(SignableRequest<?> request) {
         final List<String> sortedHeaders = new ArrayList<String>(request
                 .getHeaders().keySet());
         Collections.sort(sortedHeaders, String.CASE_INSENSITIVE_ORDER);
 
-        StringBuilder buffer = new StringBuilder();
+        StringBuilder buffer = new StringBuilder(sortedHeaders.size() * 16);
         for (String header : sortedHeaders) {
             if (buffer.length() > 0)
                 buffer.append(";");
@@ -502,6 +624,17 @@ public class AWS4Signer extends AbstractAWSSigner implements
      */
     protected String calculateContentHash(SignableRequest<?> request) {
         InputStream payloadStream = getBinaryRequestPayloadStream(request);
+        FileRegionInputStream region = FileRegionInputStream.unwrap(payloadStream);
+        if (region != null) {
+            // hashed from a memory mapping of the file, without reading the stream
+            try {
+                return BinaryUtils.toHex(region.digest(MessageDigest.getInstance("SHA-256")));
+            } catch (Exception e) {
+                throw new AmazonClientException(
+                        "Unable to compute hash while signing request: "
+                                + e.getMessage(), e);
+            }
+        }
         ReadLimitInfo info = request.getReadLimitInfo();
         payloadStream.mark(info == null ? -1 : info.getReadLimit());
         String contentSha256 = BinaryUtils.toHex(hash(payloadStream));
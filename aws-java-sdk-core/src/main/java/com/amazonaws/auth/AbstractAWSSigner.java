@@ -20,16 +20,22 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.SortedMap;
-import java.util.TreeMap;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
@@ -53,7 +59,47 @@ import com.amazonaws.util.SdkHttpUtils;
 public abstract class AbstractAWSSigner implements Signer {
     public static final String EMPTY_STRING_SHA256_HEX;
 
+    /**
+     * Per-thread SHA-256 message digest, so that hashing doesn't look up a new
+     * crypto provider implementation for every request.
+     */
+    private static final ThreadLocal<MessageDigest> SHA256_MESSAGE_DIGEST;
+
+    /**
+     * Per-thread UTF-8 encoder, so that the strings that are hashed and signed
+     * aren't copied into a new byte array every time.
+     */
+    private static final ThreadLocal<Utf8Encoder> UTF8_ENCODER = new ThreadLocal<Utf8Encoder>() {
+        @Override
+        protected Utf8Encoder initialValue() {
+            return new Utf8Encoder();
+        }
+    };
+
+    /**
+     * Orders URL encoded query string parameters by name, then by value.
+     */
+    private static final Comparator<String[]> ENCODED_PARAMETER_ORDER = new Comparator<String[]>() {
+        @Override
+        public int compare(String[] parameter1, String[] parameter2) {
+            int result = parameter1[0].compareTo(parameter2[0]);
+            return result != 0 ? result : parameter1[1].compareTo(parameter2[1]);
+        }
+    };
+
     static {
+        SHA256_MESSAGE_DIGEST = new ThreadLocal<MessageDigest>() {
+            @Override
+            protected MessageDigest initialValue() {
+                try {
+                    return MessageDigest.getInstance("SHA-256");
+                } catch (NoSuchAlgorithmException e) {
+                    throw new AmazonClientException(
+                            "Unable to get SHA256 Function: " + e.getMessage(),
+                            e);
+                }
+            }
+        };
         EMPTY_STRING_SHA256_HEX = BinaryUtils.toHex(doHash(""));
     }
 
@@ -85,8 +131,10 @@ public abstract class AbstractAWSSigner implements Signer {
     public byte[] sign(String stringData, byte[] key,
             SigningAlgorithm algorithm) throws AmazonClientException {
         try {
-            byte[] data = stringData.getBytes(UTF8);
-            return sign(data, key, algorithm);
+            Mac mac = algorithm.getMac();
+            mac.init(new SecretKeySpec(key, algorithm.toString()));
+            mac.update(UTF8_ENCODER.get().encode(stringData));
+            return mac.doFinal();
         } catch (Exception e) {
             throw new AmazonClientException(
                     "Unable to calculate a request signature: "
@@ -96,7 +144,8 @@ public abstract class AbstractAWSSigner implements Signer {
 
     public byte[] signWithMac(String stringData, Mac mac) {
         try {
-            return mac.doFinal(stringData.getBytes(UTF8));
+            mac.update(UTF8_ENCODER.get().encode(stringData));
+            return mac.doFinal();
         } catch (Exception e) {
             throw new AmazonClientException(
                     "Unable to calculate a request signature: "
@@ -107,7 +156,7 @@ public abstract class AbstractAWSSigner implements Signer {
     protected byte[] sign(byte[] data, byte[] key,
             SigningAlgorithm algorithm) throws AmazonClientException {
         try {
-            Mac mac = Mac.getInstance(algorithm.toString());
+            Mac mac = algorithm.getMac();
             mac.init(new SecretKeySpec(key, algorithm.toString()));
             return mac.doFinal(data);
         } catch (Exception e) {
@@ -135,8 +184,8 @@ public abstract class AbstractAWSSigner implements Signer {
 
     private static byte[] doHash(String text) throws AmazonClientException {
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            md.update(text.getBytes(UTF8));
+            MessageDigest md = getMessageDigestInstance();
+            md.update(UTF8_ENCODER.get().encode(text));
             return md.digest();
         } catch (Exception e) {
             throw new AmazonClientException(
@@ -147,7 +196,7 @@ public abstract class AbstractAWSSigner implements Signer {
 
     protected byte[] hash(InputStream input) throws AmazonClientException {
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            MessageDigest md = getMessageDigestInstance();
             @SuppressWarnings("resource")
             DigestInputStream digestInputStream = new SdkDigestInputStream(
                     input, md);
@@ -175,7 +224,7 @@ public abstract class AbstractAWSSigner implements Signer {
      */
     public byte[] hash(byte[] data) throws AmazonClientException {
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            MessageDigest md = getMessageDigestInstance();
             md.update(data);
             return md.digest();
         } catch (Exception e) {
@@ -184,6 +233,60 @@ public abstract class AbstractAWSSigner implements Signer {
                             + e.getMessage(), e);
         }
     }
+
+    /**
+     * Returns the SHA-256 message digest confined to the current thread,
+     * reset so that no state is left over from a previously failed use.
+     */
+    private static MessageDigest getMessageDigestInstance() {
+        MessageDigest messageDigest = SHA256_MESSAGE_DIGEST.get();
+        messageDigest.reset();
+        return messageDigest;
+    }
+
+    /**
+     * Encodes strings to UTF-8 into a buffer reused for each string, with the
+     * same replacement of malformed input as {@link String#getBytes}.
+     */
+    private static final class Utf8Encoder {
+
+        /** Larger buffers are only used for the string that needs them. */
+        private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+
+        private final CharsetEncoder encoder = UTF8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        private ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+        /**
+         * Returns the encoded bytes of the given string, valid until the next
+         * call.
+         */
+        ByteBuffer encode(String text) throws CharacterCodingException {
+            final int maxLength = (int) Math.ceil(text.length()
+                    * (double) encoder.maxBytesPerChar());
+            ByteBuffer out = buffer;
+            if (maxLength > out.capacity()) {
+                out = ByteBuffer.allocate(maxLength);
+                if (maxLength <= MAX_RETAINED_CAPACITY) {
+                    buffer = out;
+                }
+            }
+            out.clear();
+            encoder.reset();
+            CoderResult result = encoder.encode(CharBuffer.wrap(text), out, true);
+            if (result.isUnderflow()) {
+                result = encoder.flush(out);
+            }
+            if (!result.isUnderflow()) {
+                result.throwException();
+            }
+            out.flip();
+            return out;
+        }
+    }
+
     /**
      * Examines the specified query string parameters and returns a
      * canonicalized form.
@@ -198,42 +301,61 @@ public abstract class AbstractAWSSigner implements Signer {
      * @return A canonicalized form for the specified query string parameters.
      */
     protected String getCanonicalizedQueryString(Map<String, List<String>> parameters) {
-
-        final SortedMap<String, List<String>> sorted = new TreeMap<String, List<String>>();
+        if (parameters.isEmpty()) {
+            return "";
+        }
 
         /**
          * Signing protocol expects the param values also to be sorted after url
          * encoding in addition to sorted parameter names.
          */
+        final List<String[]> encodedParameters = new ArrayList<String[]>(
+                parameters.size());
+        int length = 0;
         for (Map.Entry<String, List<String>> entry : parameters.entrySet()) {
-            final String encodedParamName = SdkHttpUtils.urlEncode(
-                    entry.getKey(), false);
-            final List<String> paramValues = entry.getValue();
-            final List<String> encodedValues = new ArrayList<String>(
-                    paramValues.size());
-            for (String value : paramValues) {
-                encodedValues.add(SdkHttpUtils.urlEncode(value, false));
+            final String encodedParamName = urlEncodeQueryComponent(entry.getKey());
+            for (String value : entry.getValue()) {
+                final String encodedValue = urlEncodeQueryComponent(value);
+                encodedParameters.add(new String[] { encodedParamName, encodedValue });
+                length += encodedParamName.length() + encodedValue.length() + 2;
             }
-            Collections.sort(encodedValues);
-            sorted.put(encodedParamName, encodedValues);
-
         }
+        Collections.sort(encodedParameters, ENCODED_PARAMETER_ORDER);
 
-        final StringBuilder result = new StringBuilder();
-        for(Map.Entry<String, List<String>> entry : sorted.entrySet()) {
-            for(String value : entry.getValue()) {
-                if (result.length() > 0) {
-                    result.append("&");
-                }
-                result.append(entry.getKey())
-                      .append("=")
-                      .append(value);
+        final StringBuilder result = new StringBuilder(length);
+        for (String[] parameter : encodedParameters) {
+            if (result.length() > 0) {
+                result.append("&");
             }
+            result.append(parameter[0])
+                  .append("=")
+                  .append(parameter[1]);
         }
 
         return result.toString();
     }
 
+    /**
+     * URL encodes a query string parameter name or value as
+     * {@link SdkHttpUtils#urlEncode(String, boolean)} does, returning it as is
+     * when it only has characters that are never encoded, as most do.
+     */
+    private static String urlEncodeQueryComponent(String value) {
+        if (value == null) {
+            return "";
+        }
+        final int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char ch = value.charAt(i);
+            if (!((ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z')
+                    || (ch >= '0' && ch <= '9') || ch == '-' || ch == '_'
+                    || ch == '.' || ch == '~')) {
+                return SdkHttpUtils.urlEncode(value, false);
+            }
+        }
+        return value;
+    }
+
     protected String getCanonicalizedQueryString(SignableRequest<?> request) {
         /*
          * If we're using POST and we don't have any request payload content,
@@ -14,9 +14,44 @@
  */
 package com.amazonaws.auth;
 
+import java.security.NoSuchAlgorithmException;
+
+import javax.crypto.Mac;
+
+import com.amazonaws.AmazonClientException;
+
 public enum SigningAlgorithm {
     
     HmacSHA1,
     HmacSHA256;
 
+    /**
+     * Per-thread Mac instance for this algorithm, so that signing a request
+     * doesn't look up a new crypto provider implementation every time.
+     */
+    private final ThreadLocal<Mac> macReference;
+
+    private SigningAlgorithm() {
+        final String algorithmName = this.toString();
+        macReference = new ThreadLocal<Mac>() {
+            @Override
+            protected Mac initialValue() {
+                try {
+                    return Mac.getInstance(algorithmName);
+                } catch (NoSuchAlgorithmException e) {
+                    throw new AmazonClientException(
+                            "Unable to fetch Mac instance for Algorithm "
+                                    + algorithmName + ": " + e.getMessage(), e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the Mac instance of this algorithm confined to the current
+     * thread. Callers must initialize it with a key before use.
+     */
+    Mac getMac() {
+        return macReference.get();
+    }
 }
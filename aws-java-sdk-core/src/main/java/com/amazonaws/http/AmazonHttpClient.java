@@ -22,8 +22,10 @@ import static com.amazonaws.util.AWSRequestMetrics.Field.AWSErrorCode;
 import static com.amazonaws.util.AWSRequestMetrics.Field.AWSRequestID;
 import static com.amazonaws.util.AWSRequestMetrics.Field.Exception;
 import static com.amazonaws.util.AWSRequestMetrics.Field.HttpClientPoolAvailableCount;
+import static com.amazonaws.util.AWSRequestMetrics.Field.HttpClientPoolLeaseWaitTime;
 import static com.amazonaws.util.AWSRequestMetrics.Field.HttpClientPoolLeasedCount;
 import static com.amazonaws.util.AWSRequestMetrics.Field.HttpClientPoolPendingCount;
+import static com.amazonaws.util.AWSRequestMetrics.Field.HttpClientPoolReusedConnectionCount;
 import static com.amazonaws.util.AWSRequestMetrics.Field.HttpRequestTime;
 import static com.amazonaws.util.AWSRequestMetrics.Field.RedirectLocation;
 import static com.amazonaws.util.AWSRequestMetrics.Field.RequestCount;
@@ -48,6 +50,14 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.net.ssl.SSLContext;
 
@@ -55,20 +65,32 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpConnection;
 import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
 import org.apache.http.HttpStatus;
 import org.apache.http.StatusLine;
 import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.conn.ClientConnectionManager;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
 import org.apache.http.pool.ConnPoolControl;
 import org.apache.http.pool.PoolStats;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
@@ -153,6 +175,12 @@ public class AmazonHttpClient {
     /** Internal client for sending HTTP requests */
     private final HttpClient httpClient;
 
+    /**
+     * Internal non-blocking client for sending HTTP requests through
+     * {@link #executeAsync}; created on first use.
+     */
+    private volatile CloseableHttpAsyncClient httpAsyncClient;
+
     /** Client configuration options, such as proxy settings, max retries, etc. */
     private final ClientConfiguration config;
 
@@ -285,16 +313,7 @@ public class AmazonHttpClient {
         final List<RequestHandler2> requestHandler2s = requestHandler2s(request, executionContext);
         AmazonWebServiceRequest awsreq = request.getOriginalRequest();
         ProgressListener listener = awsreq.getGeneralProgressListener();
-        // add custom headers
-        Map<String, String> customHeaders = awsreq.getCustomRequestHeaders();
-        if (customHeaders != null) {
-            request.getHeaders().putAll(customHeaders);
-        }
-        // add custom query parameters
-        Map<String, List<String>> customQueryParams = awsreq.getCustomQueryParameters();
-        if (customQueryParams != null) {
-            mergeQueryParameters(request, customQueryParams);
-        }
+        addCustomHeadersAndParameters(request);
         final AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
         Response<T> response = null;
         final InputStream origContent = request.getContent();
@@ -324,6 +343,85 @@ public class AmazonHttpClient {
         }
     }
 
+    /**
+     * Executes the request through the non-blocking HTTP transport, without
+     * holding a thread while waiting for the response, and returns a future
+     * for the result. The request is retried, signed, and passed to request
+     * handlers exactly as in {@link #execute}; retries are scheduled after the
+     * backoff delay instead of sleeping.
+     * <p>
+     * The response content is buffered in memory by an I/O dispatcher
+     * thread, and then passed to the response handler on the given response
+     * executor, which also runs the retries and the callback. Cancelling the
+     * returned future aborts the HTTP exchange in flight. This method is only
+     * available if {@link ClientConfiguration#useNonBlockingTransport()} is
+     * enabled and Apache HttpAsyncClient is on the class path. Response
+     * handlers that need the HTTP connection left open are rejected with an
+     * {@link IllegalArgumentException}; their requests must be sent through
+     * {@link #execute} instead, as
+     * {@link com.amazonaws.AmazonWebServiceClient} does.
+     *
+     * @param request
+     *            The AmazonWebServices request to send to the remote server
+     * @param responseHandler
+     *            A response handler to accept a successful response from the
+     *            remote server
+     * @param errorResponseHandler
+     *            A response handler to accept an unsuccessful response from the
+     *            remote server
+     * @param executionContext
+     *            Additional information about the context of this web service
+     *            call
+     * @param responseExecutor
+     *            The executor on which responses are handled and retries are
+     *            sent
+     * @param callback
+     *            Callback to notify before the returned future is completed;
+     *            or null if there is none.
+     * @return a future for the response, which fails with the same exceptions
+     *         as would be thrown by {@link #execute}.
+     */
+    public <T> Future<Response<T>> executeAsync(Request<?> request,
+            HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+            HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+            ExecutionContext executionContext,
+            Executor responseExecutor,
+            AsyncResponseCallback<T> callback) {
+        if (executionContext == null)
+            throw new AmazonClientException("Internal SDK Error: No execution context parameter specified.");
+        if (!config.useNonBlockingTransport())
+            throw new IllegalStateException("The non-blocking transport is not enabled in the client configuration");
+        if (responseExecutor == null)
+            throw new IllegalArgumentException("No response executor specified");
+        if (responseHandler.needsConnectionLeftOpen()
+                || errorResponseHandler.needsConnectionLeftOpen())
+            throw new IllegalArgumentException("The non-blocking transport doesn't support "
+                    + "response handlers that need the connection left open");
+        final NonBlockingExecution<T> execution = new NonBlockingExecution<T>(
+                request, responseHandler, errorResponseHandler,
+                executionContext, responseExecutor, callback);
+        execution.start();
+        return execution.future;
+    }
+
+    /**
+     * Adds the custom headers and query parameters of the original request, if
+     * any, to the given request.
+     */
+    private void addCustomHeadersAndParameters(Request<?> request) {
+        AmazonWebServiceRequest awsreq = request.getOriginalRequest();
+        // add custom headers
+        Map<String, String> customHeaders = awsreq.getCustomRequestHeaders();
+        if (customHeaders != null) {
+            request.getHeaders().putAll(customHeaders);
+        }
+        // add custom query parameters
+        Map<String, List<String>> customQueryParams = awsreq.getCustomQueryParameters();
+        if (customQueryParams != null) {
+            mergeQueryParameters(request, customQueryParams);
+        }
+    }
+
     /**
      * Merge query parameters into the given request.
      */
@@ -440,51 +538,11 @@ public class AmazonHttpClient {
          * add the service endpoint to the logs. You can infer service name from
          * service endpoint
          */
-        final AWSRequestMetrics awsRequestMetrics =
-            executionContext.getAwsRequestMetrics()
-            .addPropertyWith(ServiceName, request.getServiceName())
-            .addPropertyWith(ServiceEndpoint, request.getEndpoint())
-            ;
-        // Apply whatever request options we know how to handle, such as
-        // user-agent.
-        setUserAgent(request);
-        // Make a copy of the original request params and headers so that we can
-        // permute it in this loop and start over with the original every time.
-        final Map<String, List<String>> originalParameters =
-            new LinkedHashMap<String, List<String>>(request.getParameters());
-        final Map<String, String> originalHeaders =
-            new HashMap<String, String>(request.getHeaders());
-        // Always mark the input stream before execution.
-        final InputStream originalContent = request.getContent();
-        if (originalContent != null && originalContent.markSupported()) {
-            AmazonWebServiceRequest awsreq = request.getOriginalRequest();
-            final int readLimit = awsreq.getRequestClientOptions().getReadLimit();
-            originalContent.mark(readLimit);
-        }
-        final ExecOneRequestParams p = new ExecOneRequestParams();
+        final AWSRequestMetrics awsRequestMetrics = beforeExecution(request,
+                executionContext);
+        final ExecOneRequestParams p = new ExecOneRequestParams(request);
         while (true) {
-            p.initPerRetry();
-            if (p.redirectedURI != null) {
-                /*
-                 * [scheme:][//authority][path][?query][#fragment]
-                 */
-                String scheme = p.redirectedURI.getScheme();
-                String beforeAuthority = scheme == null ? "" : scheme + "://";
-                String authority = p.redirectedURI.getAuthority();
-                String path = p.redirectedURI.getPath();
-
-                request.setEndpoint(URI.create(beforeAuthority + authority));
-                request.setResourcePath(path);
-            }
-            if (p.authRetryParam != null) {
-                request.setEndpoint(p.authRetryParam.getEndpointForRetry());
-            }
-            awsRequestMetrics.setCounter(RequestCount, p.requestCount);
-            if (p.isRetry()) {
-                request.setParameters(originalParameters);
-                request.setHeaders(originalHeaders);
-                request.setContent(originalContent);
-            }
+            beforeAttempt(request, awsRequestMetrics, p);
             try {
                 Response<T> response = executeOneRequest(request, responseHandler,
                     errorResponseHandler, executionContext, awsRequestMetrics,
@@ -492,23 +550,11 @@ public class AmazonHttpClient {
                 if (response != null)
                     return response;
             } catch (IOException ioe) {
-                if (log.isInfoEnabled()) {
-                    log.info("Unable to execute HTTP request: " + ioe.getMessage(), ioe);
-                }
-                captureExceptionMetrics(ioe, awsRequestMetrics);
-                awsRequestMetrics.addProperty(AWSRequestID, null);
-                AmazonClientException ace = new AmazonClientException(
-                        "Unable to execute HTTP request: " + ioe.getMessage(),
-                        ioe);
-                if (!shouldRetry(request.getOriginalRequest(),
-                                p.apacheRequest,
-                                ace,
-                                p.requestCount,
-                                config.getRetryPolicy())) {
+                AmazonClientException ace = handleIOException(request, ioe,
+                        awsRequestMetrics, p);
+                if (ace != null) {
                     throw lastReset(ace, request);
                 }
-                // Cache the retryable exception
-                p.retriedException = ace;
             } catch(RuntimeException e) {
                 throw lastReset(
                         captureExceptionMetrics(e, awsRequestMetrics),
@@ -526,21 +572,116 @@ public class AmazonHttpClient {
                  * up resources.
                  */
                 if (!p.leaveHttpConnectionOpen) {
-                    if (p.apacheResponse != null) {
-                        HttpEntity entity = p.apacheResponse.getEntity();
-                        if (entity != null) {
-                            try {
-                                closeQuietly(entity.getContent(), log);
-                            } catch (IOException e) {
-                                log.warn("Cannot close the response content.", e);
-                            }
-                        }
-                    }
+                    closeResponseContent(p);
                 }
             }
         } /* end while (true) */
     }
 
+    /**
+     * Prepares the given request for its first attempt, and returns the
+     * request metrics of the execution.
+     */
+    private AWSRequestMetrics beforeExecution(final Request<?> request,
+            final ExecutionContext executionContext) {
+        /*
+         * add the service endpoint to the logs. You can infer service name from
+         * service endpoint
+         */
+        final AWSRequestMetrics awsRequestMetrics =
+            executionContext.getAwsRequestMetrics()
+            .addPropertyWith(ServiceName, request.getServiceName())
+            .addPropertyWith(ServiceEndpoint, request.getEndpoint())
+            ;
+        // Apply whatever request options we know how to handle, such as
+        // user-agent.
+        setUserAgent(request);
+        // Always mark the input stream before execution.
+        final InputStream originalContent = request.getContent();
+        if (originalContent != null && originalContent.markSupported()) {
+            AmazonWebServiceRequest awsreq = request.getOriginalRequest();
+            final int readLimit = awsreq.getRequestClientOptions().getReadLimit();
+            originalContent.mark(readLimit);
+        }
+        return awsRequestMetrics;
+    }
+
+    /**
+     * Prepares the given request for the next attempt, restoring its original
+     * parameters, headers and content if it is a retry.
+     */
+    private void beforeAttempt(final Request<?> request,
+            final AWSRequestMetrics awsRequestMetrics,
+            final ExecOneRequestParams p) {
+        p.initPerRetry();
+        if (p.redirectedURI != null) {
+            /*
+             * [scheme:][//authority][path][?query][#fragment]
+             */
+            String scheme = p.redirectedURI.getScheme();
+            String beforeAuthority = scheme == null ? "" : scheme + "://";
+            String authority = p.redirectedURI.getAuthority();
+            String path = p.redirectedURI.getPath();
+
+            request.setEndpoint(URI.create(beforeAuthority + authority));
+            request.setResourcePath(path);
+        }
+        if (p.authRetryParam != null) {
+            request.setEndpoint(p.authRetryParam.getEndpointForRetry());
+        }
+        awsRequestMetrics.setCounter(RequestCount, p.requestCount);
+        if (p.isRetry()) {
+            request.setParameters(p.originalParameters);
+            request.setHeaders(p.originalHeaders);
+            request.setContent(p.originalContent);
+        }
+    }
+
+    /**
+     * Records an I/O failure of the current attempt.
+     *
+     * @return the failure to be thrown if the request should not be retried;
+     *         or null if it should be retried.
+     */
+    private AmazonClientException handleIOException(final Request<?> request,
+            final IOException ioe, final AWSRequestMetrics awsRequestMetrics,
+            final ExecOneRequestParams p) {
+        if (log.isInfoEnabled()) {
+            log.info("Unable to execute HTTP request: " + ioe.getMessage(), ioe);
+        }
+        captureExceptionMetrics(ioe, awsRequestMetrics);
+        awsRequestMetrics.addProperty(AWSRequestID, null);
+        AmazonClientException ace = new AmazonClientException(
+                "Unable to execute HTTP request: " + ioe.getMessage(),
+                ioe);
+        if (!shouldRetry(request.getOriginalRequest(),
+                        p.apacheRequest,
+                        ace,
+                        p.requestCount,
+                        config.getRetryPolicy())) {
+            return ace;
+        }
+        // Cache the retryable exception
+        p.retriedException = ace;
+        return null;
+    }
+
+    /**
+     * Closes the content of the response to the current attempt, if any.
+     */
+    private static void closeResponseContent(final ExecOneRequestParams p) {
+        if (p.apacheResponse != null) {
+            HttpEntity entity = p.apacheResponse.getEntity();
+            if (entity != null) {
+                try {
+                    closeQuietly(entity.getContent(), log);
+                } catch (IOException e) {
+                    log.warn("Cannot close the response content.", e);
+                }
+            }
+        }
+    }
+
     /**
      * Used to perform a last reset on the content input stream (if
      * mark-supported); this is so that, for backward compatibility reason, any
@@ -575,6 +716,11 @@ public class AmazonHttpClient {
     private static class ExecOneRequestParams {
         private Signer signer;    // cached
         private URI signerURI;
+        // Copies of the original request params and headers, so that each
+        // retry can permute them and start over with the original every time.
+        final Map<String, List<String>> originalParameters;
+        final Map<String, String> originalHeaders;
+        final InputStream originalContent;
         int requestCount; // monotonic increasing
         AmazonClientException retriedException; // last retryable exception
 
@@ -592,6 +738,13 @@ public class AmazonHttpClient {
          */
         boolean leaveHttpConnectionOpen;
 
+        ExecOneRequestParams(final Request<?> request) {
+            originalParameters =
+                new LinkedHashMap<String, List<String>>(request.getParameters());
+            originalHeaders = new HashMap<String, String>(request.getHeaders());
+            originalContent = request.getContent();
+        }
+
         boolean isRetry() {
             return requestCount > 1 ||
                    redirectedURI != null ||
@@ -656,20 +809,10 @@ public class AmazonHttpClient {
             throws IOException {
         // Reset the request input stream
         if (execParams.isRetry()) {
-            InputStream requestInputStream = request.getContent();
-            if (requestInputStream != null) {
-                if (requestInputStream.markSupported()) {
-                    try {
-                        requestInputStream.reset();
-                    } catch(IOException ex) {
-                        throw new ResetException("Failed to reset the request input stream", ex);
-                    }
-                }
-            }
+            resetRequestContent(request);
         }
         if (requestLog.isDebugEnabled())
             requestLog.debug("Sending Request: " + request);
-        final AWSCredentials credentials = execContext.getCredentials();
         final AmazonWebServiceRequest awsreq = request.getOriginalRequest();
         final ProgressListener listener = awsreq.getGeneralProgressListener();
 
@@ -690,6 +833,61 @@ public class AmazonHttpClient {
             }
         }
 
+        signAndCreateApacheRequest(request, execContext, awsRequestMetrics,
+                execParams);
+
+        captureConnectionPoolMetrics(httpClient.getConnectionManager(), awsRequestMetrics);
+        HttpContext httpContext = new BasicHttpContext();
+        httpContext.setAttribute(
+            AWSRequestMetrics.class.getSimpleName(),
+            awsRequestMetrics);
+        execParams.resetBeforeHttpRequest();
+        publishProgress(listener, ProgressEventType.HTTP_REQUEST_STARTED_EVENT);
+        awsRequestMetrics.startEvent(HttpRequestTime);
+
+        /////////// Send HTTP request ////////////
+        final boolean isHeaderReqIdAvail;
+        SdkPoolingClientConnectionManager.clearLastLease();
+        try {
+            execParams.apacheResponse = httpClient.execute(execParams.apacheRequest, httpContext);
+            isHeaderReqIdAvail = logHeaderRequestId(execParams.apacheResponse);
+        } finally {
+            awsRequestMetrics.endEvent(HttpRequestTime);
+            captureConnectionLeaseMetrics(awsRequestMetrics);
+        }
+
+        return handleApacheResponse(request, responseHandler,
+                errorResponseHandler, execContext, awsRequestMetrics,
+                execParams, isHeaderReqIdAvail);
+    }
+
+    /**
+     * Resets the request input stream in preparation for a retry.
+     */
+    private static void resetRequestContent(final Request<?> request) {
+        InputStream requestInputStream = request.getContent();
+        if (requestInputStream != null) {
+            if (requestInputStream.markSupported()) {
+                try {
+                    requestInputStream.reset();
+                } catch(IOException ex) {
+                    throw new ResetException("Failed to reset the request input stream", ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Signs the request if a signer was provided, and creates the Apache HTTP
+     * request of the current attempt.
+     *
+     * @throws FakeIOException thrown only during test simulation
+     */
+    private void signAndCreateApacheRequest(final Request<?> request,
+            final ExecutionContext execContext,
+            final AWSRequestMetrics awsRequestMetrics,
+            final ExecOneRequestParams execParams) throws FakeIOException {
+        final AWSCredentials credentials = execContext.getCredentials();
         // Sign the request if a signer was provided
         execParams.newSigner(request, execContext);
         if (execParams.signer != null && credentials != null) {
@@ -712,25 +910,23 @@ public class AmazonHttpClient {
             }
         }
         execParams.newApacheRequest(httpRequestFactory, request, config, execContext);
+    }
 
-        captureConnectionPoolMetrics(httpClient.getConnectionManager(), awsRequestMetrics);
-        HttpContext httpContext = new BasicHttpContext();
-        httpContext.setAttribute(
-            AWSRequestMetrics.class.getSimpleName(),
-            awsRequestMetrics);
-        execParams.resetBeforeHttpRequest();
-        publishProgress(listener, ProgressEventType.HTTP_REQUEST_STARTED_EVENT);
-        awsRequestMetrics.startEvent(HttpRequestTime);
-
-        /////////// Send HTTP request ////////////
-        final boolean isHeaderReqIdAvail;
-        try {
-            execParams.apacheResponse = httpClient.execute(execParams.apacheRequest, httpContext);
-            isHeaderReqIdAvail = logHeaderRequestId(execParams.apacheResponse);
-        } finally {
-            awsRequestMetrics.endEvent(HttpRequestTime);
-        }
-
+    /**
+     * Handles the HTTP response to the current attempt.
+     *
+     * @return the response; or null for retry.
+     */
+    private <T> Response<T> handleApacheResponse(final Request<?> request,
+            final HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+            final HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+            final ExecutionContext execContext,
+            final AWSRequestMetrics awsRequestMetrics,
+            final ExecOneRequestParams execParams,
+            final boolean isHeaderReqIdAvail)
+            throws IOException {
+        final ProgressListener listener =
+            request.getOriginalRequest().getGeneralProgressListener();
         publishProgress(listener, ProgressEventType.HTTP_REQUEST_COMPLETED_EVENT);
         final StatusLine statusLine = execParams.apacheResponse.getStatusLine();
         final int statusCode = statusLine == null ? -1 : statusLine.getStatusCode();
@@ -874,6 +1070,26 @@ public class AmazonHttpClient {
         }
     }
 
+    /**
+     * Captures the metrics of the connection lease of the request just
+     * executed on the current thread, if any.
+     */
+    private void captureConnectionLeaseMetrics(AWSRequestMetrics awsRequestMetrics) {
+        if (!awsRequestMetrics.isEnabled()) {
+            return;
+        }
+        SdkPoolingClientConnectionManager.Lease lease = SdkPoolingClientConnectionManager.lastLease();
+        if (lease.isLeased()) {
+            awsRequestMetrics.getTimingInfo().addSubMeasurement(
+                    HttpClientPoolLeaseWaitTime.name(),
+                    TimingInfo.unmodifiableTimingInfo(lease.getStartNano(),
+                            lease.getEndNano()));
+            if (lease.isReused()) {
+                awsRequestMetrics.incrementCounter(HttpClientPoolReusedConnectionCount);
+            }
+        }
+    }
+
     /**
      * Capture the metrics for the given throwable.
      */
@@ -934,6 +1150,31 @@ public class AmazonHttpClient {
     public void shutdown() {
         IdleConnectionReaper.removeConnectionManager(httpClient.getConnectionManager());
         httpClient.getConnectionManager().shutdown();
+        synchronized (this) {
+            if (httpAsyncClient != null) {
+                closeQuietly(httpAsyncClient, log);
+            }
+        }
+    }
+
+    /**
+     * Returns the non-blocking HTTP client, creating and starting it on first
+     * use.
+     */
+    private CloseableHttpAsyncClient getHttpAsyncClient() {
+        CloseableHttpAsyncClient client = httpAsyncClient;
+        if (client == null) {
+            synchronized (this) {
+                client = httpAsyncClient;
+                if (client == null) {
+                    // Only created on first use, as HttpAsyncClient is an
+                    // optional dependency
+                    httpAsyncClient = client =
+                        new AsyncHttpClientFactory().createHttpAsyncClient(config);
+                }
+            }
+        }
+        return client;
     }
 
     /**
@@ -1232,6 +1473,27 @@ public class AmazonHttpClient {
                                     AmazonClientException previousException,
                                     int requestCount,
                                     RetryPolicy retryPolicy) {
+        long delay = delayBeforeNextRetry(originalRequest, previousException,
+                requestCount, retryPolicy);
+
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the delay in milliseconds before the next retry, as decided by
+     * the backoff strategy of the retry policy.
+     *
+     * @see #pauseBeforeNextRetry
+     */
+    private long delayBeforeNextRetry(AmazonWebServiceRequest originalRequest,
+                                      AmazonClientException previousException,
+                                      int requestCount,
+                                      RetryPolicy retryPolicy) {
         final int retries = requestCount // including next attempt
                             - 1          // number of attempted requests
                             - 1;         // number of attempted retries
@@ -1243,13 +1505,7 @@ public class AmazonHttpClient {
             log.debug("Retriable error detected, " +
                     "will retry in " + delay + "ms, attempt number: " + retries);
         }
-
-        try {
-            Thread.sleep(delay);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new AmazonClientException(e.getMessage(), e);
-        }
+        return delay;
     }
 
     // SWF: Signature not yet current: 20140819T173921Z is still later than 20140819T173829Z (20140819T173329Z + 5 min.)
@@ -1311,6 +1567,433 @@ public class AmazonHttpClient {
         return (int)(diff / 1000);
     }
 
+    /**
+     * The state of a request executed through the non-blocking HTTP transport.
+     * The first attempt is sent on the caller thread; responses, failures and
+     * retries after a backoff delay are handled on the response executor, so
+     * that no unmarshalling, signing or callback runs on an I/O dispatcher
+     * thread.
+     */
+    private final class NonBlockingExecution<T>
+            implements FutureCallback<org.apache.http.HttpResponse> {
+        private final Request<?> request;
+        private final HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler;
+        private final HttpResponseHandler<AmazonServiceException> errorResponseHandler;
+        private final ExecutionContext executionContext;
+        private final Executor responseExecutor;
+        private final AsyncResponseCallback<T> callback;
+        private final BasicFuture<Response<T>> future;
+        private final ProgressListener listener;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private List<RequestHandler2> requestHandler2s = Collections.emptyList();
+        private AWSRequestMetrics awsRequestMetrics;
+        private ExecOneRequestParams execParams;
+        private InputStream origContent;
+        private InputStream toBeClosed;
+
+        /** The HTTP exchange in flight, if any; guarded by this. */
+        private Future<org.apache.http.HttpResponse> exchange;
+        /** The context of the HTTP exchange in flight; guarded by this. */
+        private HttpContext exchangeContext;
+        /** Whether the returned future was cancelled. */
+        private volatile boolean cancelled;
+
+        NonBlockingExecution(Request<?> request,
+                HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+                HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+                ExecutionContext executionContext,
+                Executor responseExecutor,
+                AsyncResponseCallback<T> callback) {
+            this.request = request;
+            this.responseHandler = responseHandler;
+            this.errorResponseHandler = errorResponseHandler;
+            this.executionContext = executionContext;
+            this.responseExecutor = responseExecutor;
+            this.callback = callback;
+            this.listener = request.getOriginalRequest().getGeneralProgressListener();
+            this.future = new BasicFuture<Response<T>>(new FutureCallback<Response<T>>() {
+                @Override
+                public void completed(Response<T> result) {
+                }
+
+                @Override
+                public void failed(Exception ex) {
+                }
+
+                @Override
+                public void cancelled() {
+                    cancel();
+                }
+            });
+        }
+
+        /** Same as the preparation done by {@link AmazonHttpClient#execute}. */
+        void start() {
+            origContent = request.getContent();
+            try {
+                requestHandler2s = requestHandler2s(request, executionContext);
+                addCustomHeadersAndParameters(request);
+                toBeClosed = beforeRequest(request); // for progress tracking
+                // make "notCloseable", so reset would work with retries
+                final InputStream notCloseable = (toBeClosed == null)
+                    ? null
+                    : ReleasableInputStream.wrap(toBeClosed).disableClose()
+                    ;
+                request.setContent(notCloseable);
+                publishProgress(listener, ProgressEventType.CLIENT_REQUEST_STARTED_EVENT);
+                awsRequestMetrics = beforeExecution(request, executionContext);
+                execParams = new ExecOneRequestParams(request);
+            } catch (Throwable t) {
+                fail(t);
+                return;
+            }
+            nextAttempt();
+        }
+
+        /**
+         * Same as an iteration of {@link AmazonHttpClient#executeHelper} up to
+         * the retry pause, which is scheduled rather than slept.
+         */
+        private void nextAttempt() {
+            try {
+                beforeAttempt(request, awsRequestMetrics, execParams);
+                if (execParams.isRetry()) {
+                    resetRequestContent(request);
+                }
+                if (requestLog.isDebugEnabled())
+                    requestLog.debug("Sending Request: " + request);
+                if (execParams.isRetry()) {
+                    publishProgress(listener, ProgressEventType.CLIENT_REQUEST_RETRY_EVENT);
+                    awsRequestMetrics.startEvent(RetryPauseTime);
+                    // don't pause if the retry was not due to a redirection
+                    // ie when retried exception is null
+                    if (execParams.retriedException != null) {
+                        long delay = delayBeforeNextRetry(
+                                request.getOriginalRequest(),
+                                execParams.retriedException,
+                                execParams.requestCount,
+                                config.getRetryPolicy());
+                        RetryScheduler.INSTANCE.schedule(new Runnable() {
+                            @Override
+                            public void run() {
+                                dispatch(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        resume();
+                                    }
+                                });
+                            }
+                        }, delay, TimeUnit.MILLISECONDS);
+                        return;
+                    }
+                    awsRequestMetrics.endEvent(RetryPauseTime);
+                }
+                send();
+            } catch (Throwable t) {
+                attemptFailed(t);
+            }
+        }
+
+        /** Resumes the execution after the retry pause. */
+        private void resume() {
+            try {
+                awsRequestMetrics.endEvent(RetryPauseTime);
+                send();
+            } catch (Throwable t) {
+                attemptFailed(t);
+            }
+        }
+
+        private void send() throws IOException {
+            signAndCreateApacheRequest(request, executionContext,
+                    awsRequestMetrics, execParams);
+            HttpContext httpContext = new BasicHttpContext();
+            httpContext.setAttribute(
+                AWSRequestMetrics.class.getSimpleName(),
+                awsRequestMetrics);
+            execParams.resetBeforeHttpRequest();
+            synchronized (this) {
+                if (cancelled) {
+                    fail(new AmazonClientException("The request was cancelled"));
+                    return;
+                }
+                publishProgress(listener, ProgressEventType.HTTP_REQUEST_STARTED_EVENT);
+                awsRequestMetrics.startEvent(HttpRequestTime);
+                exchangeContext = httpContext;
+                exchange = getHttpAsyncClient().execute(
+                        new CancellableRequestProducer(
+                                HttpAsyncMethods.create(execParams.apacheRequest)),
+                        HttpAsyncMethods.createConsumer(), httpContext, this);
+            }
+        }
+
+        /**
+         * Hands off the response to the response executor; the content has
+         * already been buffered by the I/O dispatcher thread.
+         */
+        @Override
+        public void completed(final org.apache.http.HttpResponse apacheResponse) {
+            exchangeDone();
+            dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    handle(apacheResponse);
+                }
+            });
+        }
+
+        private void handle(org.apache.http.HttpResponse apacheResponse) {
+            execParams.apacheResponse = apacheResponse;
+            final Response<T> response;
+            try {
+                final boolean isHeaderReqIdAvail = logHeaderRequestId(apacheResponse);
+                response = handleApacheResponse(request, responseHandler,
+                        errorResponseHandler, executionContext,
+                        awsRequestMetrics, execParams, isHeaderReqIdAvail);
+            } catch (Throwable t) {
+                attemptFailed(t);
+                return;
+            } finally {
+                closeResponseContent(execParams);
+            }
+            if (response == null) {
+                nextAttempt();
+            } else {
+                succeed(response);
+            }
+        }
+
+        @Override
+        public void failed(final Exception ex) {
+            exchangeDone();
+            dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    if (cancelled) {
+                        fail(new AmazonClientException("The request was cancelled", ex));
+                    } else if (ex instanceof HttpException) {
+                        // As would be thrown by the blocking client
+                        attemptFailed(new ClientProtocolException(ex));
+                    } else {
+                        attemptFailed(ex);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void cancelled() {
+            exchangeDone();
+            dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    fail(new AmazonClientException("The request was cancelled"));
+                }
+            });
+        }
+
+        /** Forgets the HTTP exchange that just completed. */
+        private void exchangeDone() {
+            awsRequestMetrics.endEvent(HttpRequestTime);
+            synchronized (this) {
+                exchange = null;
+                exchangeContext = null;
+            }
+        }
+
+        /**
+         * Runs the given step of the execution on the response executor, or
+         * fails the execution if the executor rejects it.
+         */
+        private void dispatch(Runnable step) {
+            try {
+                responseExecutor.execute(step);
+            } catch (RejectedExecutionException e) {
+                fail(new AmazonClientException(
+                        "Unable to handle the response: " + e.getMessage(), e));
+            }
+        }
+
+        /**
+         * Aborts the HTTP exchange in flight, if any, by shutting down its
+         * connection; an exchange still waiting for a connection fails before
+         * sending its request.
+         */
+        private void cancel() {
+            cancelled = true;
+            final Future<org.apache.http.HttpResponse> current;
+            final Object connection;
+            synchronized (this) {
+                current = exchange;
+                connection = exchangeContext == null
+                    ? null
+                    : exchangeContext.getAttribute(HttpCoreContext.HTTP_CONNECTION);
+            }
+            if (connection instanceof HttpConnection) {
+                try {
+                    ((HttpConnection) connection).shutdown();
+                } catch (IOException e) {
+                    log.debug("Unable to shut down the connection of a cancelled request", e);
+                }
+            }
+            if (current != null)
+                current.cancel(true);
+        }
+
+        /**
+         * Same as the exception handling of
+         * {@link AmazonHttpClient#executeHelper}.
+         */
+        private void attemptFailed(Throwable t) {
+            if (t instanceof IOException) {
+                AmazonClientException ace;
+                try {
+                    ace = handleIOException(request, (IOException) t,
+                            awsRequestMetrics, execParams);
+                } catch (Throwable e) {
+                    ace = new AmazonClientException(e.getMessage(), e);
+                }
+                if (ace == null) {
+                    nextAttempt();
+                } else {
+                    fail(lastReset(ace, request));
+                }
+            } else {
+                if (awsRequestMetrics != null)
+                    captureExceptionMetrics(t, awsRequestMetrics);
+                fail(lastReset(t, request));
+            }
+        }
+
+        /** Same as the completion of {@link AmazonHttpClient#execute}. */
+        private void succeed(Response<T> response) {
+            try {
+                publishProgress(listener, ProgressEventType.CLIENT_REQUEST_SUCCESS_EVENT);
+                TimingInfo timingInfo = awsRequestMetrics.getTimingInfo().endTiming();
+                afterResponse(request, requestHandler2s, response, timingInfo);
+            } catch (Throwable t) {
+                fail(t);
+                return;
+            }
+            if (!completed.compareAndSet(false, true))
+                return;
+            restoreContent();
+            if (callback != null) {
+                try {
+                    callback.onSuccess(response);
+                } catch (RuntimeException e) {
+                    log.warn("Response callback failed", e);
+                }
+            }
+            future.completed(response);
+        }
+
+        private void fail(Throwable t) {
+            if (!completed.compareAndSet(false, true))
+                return;
+            Exception exception = (t instanceof Exception)
+                ? (Exception) t
+                : new AmazonClientException(t.getMessage(), t);
+            if (exception instanceof AmazonClientException) {
+                try {
+                    publishProgress(listener, ProgressEventType.CLIENT_REQUEST_FAILED_EVENT);
+                    afterError(request, null, requestHandler2s,
+                            (AmazonClientException) exception);
+                } catch (RuntimeException e) {
+                    exception = e;
+                }
+            }
+            restoreContent();
+            if (callback != null) {
+                try {
+                    callback.onError(exception);
+                } catch (RuntimeException e) {
+                    log.warn("Response callback failed", e);
+                }
+            }
+            future.failed(exception);
+        }
+
+        private void restoreContent() {
+            // Always close so any progress tracking would get the final events propagated.
+            closeQuietly(toBeClosed, log);
+            request.setContent(origContent); // restore the original content
+        }
+
+        /**
+         * Produces the request of an attempt, unless the execution was
+         * cancelled while the attempt was waiting for a connection.
+         */
+        private final class CancellableRequestProducer implements HttpAsyncRequestProducer {
+            private final HttpAsyncRequestProducer producer;
+
+            CancellableRequestProducer(HttpAsyncRequestProducer producer) {
+                this.producer = producer;
+            }
+
+            @Override
+            public HttpHost getTarget() {
+                return producer.getTarget();
+            }
+
+            @Override
+            public org.apache.http.HttpRequest generateRequest() throws IOException, HttpException {
+                if (cancelled)
+                    throw new IOException("The request was cancelled");
+                return producer.generateRequest();
+            }
+
+            @Override
+            public void produceContent(ContentEncoder encoder, IOControl ioctrl) throws IOException {
+                if (cancelled)
+                    throw new IOException("The request was cancelled");
+                producer.produceContent(encoder, ioctrl);
+            }
+
+            @Override
+            public void requestCompleted(HttpContext context) {
+                producer.requestCompleted(context);
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                producer.failed(ex);
+            }
+
+            @Override
+            public boolean isRepeatable() {
+                return producer.isRepeatable();
+            }
+
+            @Override
+            public void resetRequest() throws IOException {
+                producer.resetRequest();
+            }
+
+            @Override
+            public void close() throws IOException {
+                producer.close();
+            }
+        }
+    }
+
+    /**
+     * Schedules the retries of requests executed through the non-blocking
+     * HTTP transport, on a daemon thread shared by all clients.
+     */
+    private static final class RetryScheduler {
+        static final ScheduledExecutorService INSTANCE =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "java-sdk-http-retry-scheduler");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+    }
+
     @Override
     protected void finalize() throws Throwable {
         this.shutdown();
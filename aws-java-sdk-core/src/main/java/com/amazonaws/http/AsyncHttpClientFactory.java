@@ -0,0 +1,233 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import static com.amazonaws.SDKGlobalConfiguration.DISABLE_CERT_CHECKING_SYSTEM_PROPERTY;
+
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+
+import org.apache.http.HttpHost;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.NTCredentials;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.NHttpClientConnection;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.ConnectingIOReactor;
+import org.apache.http.nio.reactor.IOReactorException;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.http.HttpClientFactory.GzipRequestInterceptor;
+import com.amazonaws.http.HttpClientFactory.GzipResponseInterceptor;
+import com.amazonaws.http.HttpClientFactory.NeverFollowRedirectStrategy;
+import com.amazonaws.http.HttpClientFactory.PreemptiveProxyAuth;
+import com.amazonaws.http.HttpClientFactory.TrustingX509TrustManager;
+import com.amazonaws.http.conn.ssl.SdkTLSIOSessionStrategy;
+
+/**
+ * Responsible for creating and configuring instances of Apache
+ * HttpAsyncClient, which sends requests on a small number of NIO event loop
+ * threads.
+ */
+class AsyncHttpClientFactory {
+
+    /**
+     * Creates and starts a new non-blocking HttpAsyncClient object using the
+     * specified AWS ClientConfiguration to configure the client.
+     *
+     * @param config
+     *            Client configuration options (ex: proxy settings, connection
+     *            limits, etc).
+     *
+     * @return The new, configured and started HttpAsyncClient.
+     */
+    public CloseableHttpAsyncClient createHttpAsyncClient(ClientConfiguration config) {
+        IOReactorConfig.Builder ioReactorConfig = IOReactorConfig.custom()
+                .setConnectTimeout(config.getConnectionTimeout())
+                .setSoTimeout(config.getSocketTimeout())
+                .setTcpNoDelay(true)
+                .setSoKeepAlive(config.useTcpKeepAlive());
+        int socketSendBufferSizeHint = config.getSocketBufferSizeHints()[0];
+        int socketReceiveBufferSizeHint = config.getSocketBufferSizeHints()[1];
+        if (socketSendBufferSizeHint > 0)
+            ioReactorConfig.setSndBufSize(socketSendBufferSizeHint);
+        if (socketReceiveBufferSizeHint > 0)
+            ioReactorConfig.setRcvBufSize(socketReceiveBufferSizeHint);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(config.getConnectionTimeout())
+                .setSocketTimeout(config.getSocketTimeout())
+                .setLocalAddress(config.getLocalAddress())
+                .setRedirectsEnabled(false)
+                .build();
+
+        PoolingNHttpClientConnectionManager connectionManager =
+                createConnectionManager(config, ioReactorConfig.build());
+        HttpAsyncClientBuilder builder = HttpAsyncClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setRedirectStrategy(new NeverFollowRedirectStrategy())
+                .setThreadFactory(new DaemonThreadFactory("java-sdk-http-reactor-"))
+                .disableCookieManagement();
+
+        /* Set proxy if configured */
+        String proxyHost = config.getProxyHost();
+        int proxyPort = config.getProxyPort();
+        if (proxyHost != null && proxyPort > 0) {
+            AmazonHttpClient.log.info("Configuring Proxy. Proxy Host: " + proxyHost + " " + "Proxy Port: " + proxyPort);
+            HttpHost proxyHttpHost = new HttpHost(proxyHost, proxyPort);
+            builder.setProxy(proxyHttpHost);
+
+            String proxyUsername    = config.getProxyUsername();
+            String proxyPassword    = config.getProxyPassword();
+            String proxyDomain      = config.getProxyDomain();
+            String proxyWorkstation = config.getProxyWorkstation();
+
+            if (proxyUsername != null && proxyPassword != null) {
+                BasicCredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+                credentialsProvider.setCredentials(
+                        new AuthScope(proxyHost, proxyPort),
+                        new NTCredentials(proxyUsername, proxyPassword, proxyWorkstation, proxyDomain));
+                builder.setDefaultCredentialsProvider(credentialsProvider);
+            }
+
+            if (config.isPreemptiveBasicProxyAuth()) {
+                builder.addInterceptorFirst(new PreemptiveProxyAuth(proxyHttpHost));
+            }
+        }
+
+        /* Accept Gzip response if configured */
+        if (config.useGzip()) {
+            builder.addInterceptorLast(new GzipRequestInterceptor());
+            builder.addInterceptorLast(new GzipResponseInterceptor());
+        }
+
+        CloseableHttpAsyncClient httpAsyncClient = builder.build();
+        httpAsyncClient.start();
+        return httpAsyncClient;
+    }
+
+    /**
+     * Creates the pool of non-blocking connections, whose I/O dispatcher
+     * threads are daemon threads so that an unclosed client doesn't prevent
+     * the JVM from exiting. Its connections are limited per host as in the
+     * pool of the blocking transport.
+     */
+    private PoolingNHttpClientConnectionManager createConnectionManager(
+            ClientConfiguration config, IOReactorConfig ioReactorConfig) {
+        ConnectingIOReactor ioReactor;
+        try {
+            ioReactor = new DefaultConnectingIOReactor(ioReactorConfig,
+                    new DaemonThreadFactory("java-sdk-http-dispatcher-"));
+        } catch (IOReactorException e) {
+            throw new AmazonClientException("Unable to create I/O reactor: "
+                    + e.getMessage(), e);
+        }
+        Registry<SchemeIOSessionStrategy> sessionStrategies =
+            RegistryBuilder.<SchemeIOSessionStrategy>create()
+                .register("http", NoopIOSessionStrategy.INSTANCE)
+                .register("https", createSSLStrategy(config))
+                .build();
+        Map<String, Integer> maxConnectionsPerHost = config.getMaxConnectionsPerHost();
+        final HostConnectionLimits hostLimits = new HostConnectionLimits(
+                new HashMap<String, Integer>(maxConnectionsPerHost));
+        PoolingNHttpClientConnectionManager connectionManager =
+            new PoolingNHttpClientConnectionManager(ioReactor, null,
+                sessionStrategies, null, null, config.getConnectionTTL(),
+                TimeUnit.MILLISECONDS) {
+                @Override
+                public Future<NHttpClientConnection> requestConnection(
+                        HttpRoute route, Object state, long connectTimeout,
+                        long leaseTimeout, TimeUnit tunit,
+                        FutureCallback<NHttpClientConnection> callback) {
+                    hostLimits.apply(route, this);
+                    return super.requestConnection(route, state,
+                            connectTimeout, leaseTimeout, tunit, callback);
+                }
+            };
+        connectionManager.setDefaultMaxPerRoute(config.getMaxConnections());
+        connectionManager.setMaxTotal(ConnectionManagerFactory.getMaxTotalConnections(
+                config.getMaxConnections(), maxConnectionsPerHost));
+        return connectionManager;
+    }
+
+    /**
+     * Returns the strategy used to establish TLS sessions, which enforces the
+     * preferred TLS protocol as the blocking transport does, and bypasses
+     * certificate checks if they have been explicitly disabled for testing. A
+     * custom SSL socket factory can't be used by the non-blocking transport.
+     */
+    private SSLIOSessionStrategy createSSLStrategy(ClientConfiguration config) {
+        if (config.getApacheHttpClientConfig().getSslSocketFactory() != null) {
+            throw new AmazonClientException("The non-blocking transport doesn't "
+                    + "support a custom SSL socket factory");
+        }
+        try {
+            if (System.getProperty(DISABLE_CERT_CHECKING_SYSTEM_PROPERTY) != null) {
+                SSLContext context = SSLContext.getInstance("TLS");
+                context.init(null, new TrustManager[] { new TrustingX509TrustManager() }, null);
+                return new SdkTLSIOSessionStrategy(context,
+                        SSLIOSessionStrategy.ALLOW_ALL_HOSTNAME_VERIFIER);
+            }
+            return new SdkTLSIOSessionStrategy(SSLContext.getDefault(),
+                    SSLIOSessionStrategy.STRICT_HOSTNAME_VERIFIER);
+        } catch (NoSuchAlgorithmException e) {
+            throw new AmazonClientException("Unable to access default SSL context", e);
+        } catch (KeyManagementException e) {
+            throw new AmazonClientException("Unable to initialize SSL context", e);
+        }
+    }
+
+    /**
+     * Creates named daemon threads.
+     */
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        private final String namePrefix;
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        DaemonThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, namePrefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import com.amazonaws.Response;
+
+/**
+ * Callback notified when a request executed through
+ * {@link AmazonHttpClient#executeAsync} completes, after all retries.
+ * <p>
+ * Callbacks are invoked on the response executor given to
+ * {@link AmazonHttpClient#executeAsync}, or on the calling thread if the
+ * request fails before it is first sent, and before the returned future is
+ * completed.
+ *
+ * @param <T>
+ *            The type of the unmarshalled response.
+ */
+public interface AsyncResponseCallback<T> {
+
+    /**
+     * Invoked when the request completes successfully.
+     *
+     * @param response
+     *            The unmarshalled response.
+     */
+    public void onSuccess(Response<T> response);
+
+    /**
+     * Invoked when the request fails, including when it is cancelled.
+     *
+     * @param exception
+     *            The exception that caused the request to fail; typically an
+     *            {@link com.amazonaws.AmazonClientException}.
+     */
+    public void onError(Exception exception);
+}
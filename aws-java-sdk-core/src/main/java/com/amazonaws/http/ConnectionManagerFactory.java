@@ -14,9 +14,10 @@
  */
 package com.amazonaws.http;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
-import org.apache.http.impl.conn.PoolingClientConnectionManager;
 import org.apache.http.impl.conn.SchemeRegistryFactory;
 import org.apache.http.params.HttpParams;
 
@@ -25,15 +26,30 @@ import com.amazonaws.ClientConfiguration;
 /** Responsible for creating and configuring instances of Apache HttpClient4's Connection Manager. */
 class ConnectionManagerFactory {
 
-    public static PoolingClientConnectionManager createPoolingClientConnManager( ClientConfiguration config, HttpParams httpClientParams ) {
-        PoolingClientConnectionManager connectionManager = new PoolingClientConnectionManager(
+    public static SdkPoolingClientConnectionManager createPoolingClientConnManager( ClientConfiguration config, HttpParams httpClientParams ) {
+        Map<String, Integer> maxConnectionsPerHost = config.getMaxConnectionsPerHost();
+        SdkPoolingClientConnectionManager connectionManager = new SdkPoolingClientConnectionManager(
                 SchemeRegistryFactory.createDefault(),
-                config.getConnectionTTL(), TimeUnit.MILLISECONDS);
+                config.getConnectionTTL(), TimeUnit.MILLISECONDS,
+                new HashMap<String, Integer>(maxConnectionsPerHost));
         connectionManager.setDefaultMaxPerRoute(config.getMaxConnections());
-        connectionManager.setMaxTotal(config.getMaxConnections());
+        connectionManager.setMaxTotal(getMaxTotalConnections(config.getMaxConnections(), maxConnectionsPerHost));
         if (config.useReaper()) {
             IdleConnectionReaper.registerConnectionManager(connectionManager);
         }
         return connectionManager;
     }
+
+    /**
+     * Returns the size of the whole pool: the maximum number of connections,
+     * raised by the connections each host is allowed beyond it, so that a
+     * host given a higher limit can use it without starving the other hosts.
+     */
+    static int getMaxTotalConnections(int maxConnections, Map<String, Integer> maxConnectionsPerHost) {
+        long total = maxConnections;
+        for (int maxForHost : maxConnectionsPerHost.values()) {
+            total += Math.max(0, maxForHost - maxConnections);
+        }
+        return (int) Math.min(total, Integer.MAX_VALUE);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import static com.amazonaws.event.SDKProgressPublisher.publishRequestBytesTransferred;
+import static com.amazonaws.event.SDKProgressPublisher.publishRequestReset;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+import com.amazonaws.Request;
+import com.amazonaws.event.ProgressListener;
+import com.amazonaws.internal.FileRegionInputStream;
+
+/**
+ * Request entity writing the content of a file region to the connection with
+ * large positional reads of the file, straight into the connection output
+ * stream. Unlike {@link RepeatableInputStreamRequestEntity}, the content
+ * doesn't go through the input stream wrappers added for progress reporting
+ * and closing; progress is reported by this entity instead.
+ * <p>
+ * The entity is repeatable: every attempt after the first resets the file
+ * region to its marked position.
+ */
+class FileRegionRequestEntity extends AbstractHttpEntity {
+
+    /** The size of the reads of the file. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileRegionInputStream region;
+    private final long contentLength;
+    private final ProgressListener listener;
+
+    /** True if the request entity hasn't been written out yet */
+    private boolean firstAttempt = true;
+
+    /** The number of bytes written by the last attempt */
+    private long bytesWritten;
+
+    /**
+     * The exception of the first failed attempt, reported by any failing
+     * retry so that the real cause isn't masked.
+     */
+    private IOException originalException;
+
+    /**
+     * @param request
+     *            the request being written out
+     * @param region
+     *            the file region underlying the content of the request
+     * @param contentLength
+     *            the value of the Content-Length header of the request
+     */
+    FileRegionRequestEntity(Request<?> request, FileRegionInputStream region,
+            long contentLength) {
+        this.region = region;
+        this.contentLength = contentLength;
+        this.listener = request.getOriginalRequest().getGeneralProgressListener();
+        setChunked(false);
+        setContentType(request.getHeaders().get("Content-Type"));
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public InputStream getContent() {
+        return region;
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    @Override
+    public void writeTo(OutputStream output) throws IOException {
+        try {
+            if (!firstAttempt) {
+                region.reset();
+                publishRequestReset(listener, bytesWritten);
+                bytesWritten = 0;
+            }
+            firstAttempt = false;
+            byte[] buffer = new byte[(int) Math.max(1, Math.min(BUFFER_SIZE, contentLength))];
+            for (long remaining = contentLength; remaining > 0;) {
+                int read = region.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read == -1) {
+                    throw new IOException("Unexpected end of file " + region.getFile()
+                            + ": " + remaining + " more bytes were expected");
+                }
+                output.write(buffer, 0, read);
+                remaining -= read;
+                bytesWritten += read;
+                publishRequestBytesTransferred(listener, read);
+            }
+            output.flush();
+        } catch (IOException ioe) {
+            if (originalException == null) originalException = ioe;
+            throw originalException;
+        }
+    }
+}
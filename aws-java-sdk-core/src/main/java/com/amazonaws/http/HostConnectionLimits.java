@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.ConnPoolControl;
+
+/**
+ * The maximum number of connections to specific hosts, applied to a pool of
+ * blocking or non-blocking connections.
+ * <p>
+ * Apache HttpClient limits connections per route, which is only known once a
+ * request is executed, so the limit of a host is applied to each route to the
+ * host the first time a connection is requested for it.
+ */
+class HostConnectionLimits {
+
+    /** The maximum number of connections to specific hosts. */
+    private final Map<String, Integer> maxConnectionsPerHost;
+
+    /** The routes whose limit has been set from their host's limit. */
+    private final ConcurrentMap<HttpRoute, Boolean> limitedRoutes =
+        new ConcurrentHashMap<HttpRoute, Boolean>();
+
+    HostConnectionLimits(Map<String, Integer> maxConnectionsPerHost) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    /**
+     * Sets the limit of the given route in the given pool from its host's
+     * limit, if there is one and it hasn't already been set.
+     */
+    void apply(HttpRoute route, ConnPoolControl<HttpRoute> pool) {
+        if (maxConnectionsPerHost.isEmpty() || limitedRoutes.containsKey(route)) {
+            return;
+        }
+        HttpHost target = route.getTargetHost();
+        Integer max = maxConnectionsPerHost.get(target.toHostString());
+        if (max == null) {
+            max = maxConnectionsPerHost.get(target.getHostName());
+        }
+        if (max != null && limitedRoutes.putIfAbsent(route, Boolean.TRUE) == null) {
+            pool.setMaxPerRoute(route, max);
+        }
+    }
+}
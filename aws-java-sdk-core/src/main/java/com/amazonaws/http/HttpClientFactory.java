@@ -59,7 +59,6 @@ import org.apache.http.conn.scheme.SchemeSocketFactory;
 import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.impl.auth.BasicScheme;
 import org.apache.http.impl.client.BasicAuthCache;
-import org.apache.http.impl.conn.PoolingClientConnectionManager;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
@@ -101,7 +100,7 @@ class HttpClientFactory {
                     Math.max(socketSendBufferSizeHint, socketReceiveBufferSizeHint));
         }
 
-        PoolingClientConnectionManager connectionManager = ConnectionManagerFactory
+        SdkPoolingClientConnectionManager connectionManager = ConnectionManagerFactory
                 .createPoolingClientConnManager(config, httpClientParams);
         SdkHttpClient httpClient = new SdkHttpClient(connectionManager, httpClientParams);
         httpClient.setHttpRequestRetryHandler(HttpRequestNoRetryHandler.Singleton);
@@ -164,52 +163,66 @@ class HttpClientFactory {
 
         /* Accept Gzip response if configured */
         if (config.useGzip()) {
+            httpClient.addRequestInterceptor(new GzipRequestInterceptor());
+            httpClient.addResponseInterceptor(new GzipResponseInterceptor());
+        }
 
-            httpClient.addRequestInterceptor(new HttpRequestInterceptor() {
+        /* Open connections ahead of the first requests if configured */
+        if (!config.getPrewarmedConnectionsPerHost().isEmpty()) {
+            connectionManager.prewarmConnections(config, httpClient);
+        }
 
-                public void process(final HttpRequest request,
-                        final HttpContext context) throws HttpException,
-                        IOException {
-                    if (!request.containsHeader("Accept-Encoding")) {
-                        request.addHeader("Accept-Encoding", "gzip");
-                    }
-                }
+        return httpClient;
+    }
 
-            });
-
-            httpClient.addResponseInterceptor(new HttpResponseInterceptor() {
-
-                public void process(final HttpResponse response,
-                        final HttpContext context) throws HttpException,
-                        IOException {
-                    HttpEntity entity = response.getEntity();
-                    if (entity != null) {
-                        Header ceheader = entity.getContentEncoding();
-                        if (ceheader != null) {
-                            HeaderElement[] codecs = ceheader.getElements();
-                            for (int i = 0; i < codecs.length; i++) {
-                                if (codecs[i].getName()
-                                        .equalsIgnoreCase("gzip")) {
-                                    response.setEntity(new GzipDecompressingEntity(
-                                            response.getEntity()));
-                                    return;
-                                }
-                            }
+
+    /**
+     * Asks for a gzip encoded response, unless the request already specifies
+     * an accepted encoding.
+     */
+    static final class GzipRequestInterceptor implements HttpRequestInterceptor {
+
+        public void process(final HttpRequest request,
+                final HttpContext context) throws HttpException,
+                IOException {
+            if (!request.containsHeader("Accept-Encoding")) {
+                request.addHeader("Accept-Encoding", "gzip");
+            }
+        }
+
+    }
+
+    /**
+     * Decompresses the entity of a gzip encoded response.
+     */
+    static final class GzipResponseInterceptor implements HttpResponseInterceptor {
+
+        public void process(final HttpResponse response,
+                final HttpContext context) throws HttpException,
+                IOException {
+            HttpEntity entity = response.getEntity();
+            if (entity != null) {
+                Header ceheader = entity.getContentEncoding();
+                if (ceheader != null) {
+                    HeaderElement[] codecs = ceheader.getElements();
+                    for (int i = 0; i < codecs.length; i++) {
+                        if (codecs[i].getName()
+                                .equalsIgnoreCase("gzip")) {
+                            response.setEntity(new GzipDecompressingEntity(
+                                    response.getEntity()));
+                            return;
                         }
                     }
                 }
-
-            });
+            }
         }
 
-        return httpClient;
     }
 
-
     /**
      * Disable http redirect inside Apache HttpClient.
      */
-    private static final class NeverFollowRedirectStrategy implements RedirectStrategy {
+    static final class NeverFollowRedirectStrategy implements RedirectStrategy {
 
         @Override
         public boolean isRedirected(HttpRequest request, HttpResponse response,
@@ -284,7 +297,7 @@ class HttpClientFactory {
      * Simple implementation of X509TrustManager that trusts all certificates.
      * This class is only intended to be used for testing purposes.
      */
-    private static class TrustingX509TrustManager implements X509TrustManager {
+    static class TrustingX509TrustManager implements X509TrustManager {
         private static final X509Certificate[] X509_CERTIFICATES = new X509Certificate[0];
 
         public X509Certificate[] getAcceptedIssuers() {
@@ -306,7 +319,7 @@ class HttpClientFactory {
      * HttpRequestInterceptor implementation to set up pre-emptive
      * authentication against a defined basic proxy server.
      */
-    private static class PreemptiveProxyAuth implements HttpRequestInterceptor {
+    static class PreemptiveProxyAuth implements HttpRequestInterceptor {
         private final HttpHost proxyHost;
 
         public PreemptiveProxyAuth(HttpHost proxyHost) {
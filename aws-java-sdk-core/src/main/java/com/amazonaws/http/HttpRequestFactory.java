@@ -34,6 +34,9 @@ import org.apache.http.params.CoreProtocolPNames;
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.Request;
+import com.amazonaws.internal.FileRegionInputStream;
+import com.amazonaws.metrics.ServiceMetricType;
+import com.amazonaws.metrics.internal.ServiceMetricTypeGuesser;
 import com.amazonaws.util.FakeIOException;
 import com.amazonaws.util.HttpUtils;
 
@@ -94,7 +97,7 @@ class HttpRequestFactory {
             if (request.getContent() == null && encodedParams != null) {
                 postMethod.setEntity(newStringEntity(encodedParams));
             } else {
-                postMethod.setEntity(new RepeatableInputStreamRequestEntity(request));
+                postMethod.setEntity(newRequestEntity(request));
             }
             httpRequest = postMethod;
         } else if (request.getHttpMethod() == HttpMethodName.PUT) {
@@ -121,7 +124,7 @@ class HttpRequestFactory {
              * return incorrect validation result.
              */
             if (request.getContent() != null) {
-                HttpEntity entity = new RepeatableInputStreamRequestEntity(request);
+                HttpEntity entity = newRequestEntity(request);
                 if (request.getHeaders().get("Content-Length") == null) {
                     entity = newBufferedHttpEntity(entity);
                 }
@@ -142,7 +145,7 @@ class HttpRequestFactory {
              * return incorrect validation result.
              */
             if (request.getContent() != null) {
-                HttpEntity entity = new RepeatableInputStreamRequestEntity(request);
+                HttpEntity entity = newRequestEntity(request);
                 if (request.getHeaders().get("Content-Length") == null) {
                     entity = newBufferedHttpEntity(entity);
                 }
@@ -215,6 +218,30 @@ class HttpRequestFactory {
         }
     }
 
+    /**
+     * Creates the entity of a request with content. When the content is a
+     * file region of known length, and no throughput metrics are collected for
+     * the request, it is written directly from the file by a
+     * {@link FileRegionRequestEntity}; otherwise it is read through its
+     * input stream by a {@link RepeatableInputStreamRequestEntity}.
+     */
+    private HttpEntity newRequestEntity(Request<?> request) {
+        FileRegionInputStream region = FileRegionInputStream.unwrap(request.getContent());
+        String contentLength = request.getHeaders().get("Content-Length");
+        if (region != null && contentLength != null
+                && ServiceMetricTypeGuesser.guessThroughputMetricType(request,
+                        ServiceMetricType.UPLOAD_THROUGHPUT_NAME_SUFFIX,
+                        ServiceMetricType.UPLOAD_BYTE_COUNT_NAME_SUFFIX) == null) {
+            try {
+                return new FileRegionRequestEntity(request, region,
+                        Long.parseLong(contentLength));
+            } catch (NumberFormatException ignore) {
+                // handled by RepeatableInputStreamRequestEntity
+            }
+        }
+        return new RepeatableInputStreamRequestEntity(request);
+    }
+
     /**
      * Utility function for creating a new StringEntity and wrapping any errors
      * as an AmazonClientException.
@@ -47,7 +47,14 @@ public class JsonResponseHandler<T> implements HttpResponseHandler<AmazonWebServ
     /** Shared logger for profiling information */
     private static final Log log = LogFactory.getLog("com.amazonaws.request");
 
-    private static JsonFactory jsonFactory = new JsonFactory();
+    /**
+     * Shared factory of the JSON parsers, which stream the response content
+     * straight into the unmarshallers. Parsers created by the factory recycle
+     * their buffers, and by default canonicalize and intern field names, so
+     * that the field names repeated throughout a response are only allocated
+     * once.
+     */
+    private static final JsonFactory jsonFactory = new JsonFactory();
 
     public boolean needsConnectionLeftOpen = false;
 
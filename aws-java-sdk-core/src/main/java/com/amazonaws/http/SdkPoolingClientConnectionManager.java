@@ -0,0 +1,246 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.client.AbstractHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.BasicHttpContext;
+
+import com.amazonaws.ClientConfiguration;
+
+/**
+ * Pooling connection manager that supports a maximum number of connections
+ * per host, pre-warming of the connections to a host, and measuring how
+ * connections are leased.
+ * <p>
+ * The connection of a request is leased on the thread executing the request,
+ * so the wait for the lease and whether the leased connection was reused are
+ * recorded for that thread, and are available through {@link #lastLease()}
+ * once the request has been executed.
+ */
+class SdkPoolingClientConnectionManager extends PoolingClientConnectionManager {
+
+    private static final Log log = LogFactory.getLog(SdkPoolingClientConnectionManager.class);
+
+    /** The last connection lease of each thread. */
+    private static final ThreadLocal<Lease> lastLease = new ThreadLocal<Lease>() {
+        @Override
+        protected Lease initialValue() {
+            return new Lease();
+        }
+    };
+
+    /** The maximum number of connections to specific hosts. */
+    private final HostConnectionLimits hostLimits;
+
+    SdkPoolingClientConnectionManager(SchemeRegistry schemeRegistry,
+            long connTTL, TimeUnit connTTLTimeUnit,
+            Map<String, Integer> maxConnectionsPerHost) {
+        super(schemeRegistry, connTTL, connTTLTimeUnit);
+        this.hostLimits = new HostConnectionLimits(maxConnectionsPerHost);
+    }
+
+    @Override
+    public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+        hostLimits.apply(route, this);
+        final ClientConnectionRequest request = super.requestConnection(route, state);
+        return new ClientConnectionRequest() {
+            @Override
+            public ManagedClientConnection getConnection(long timeout, TimeUnit tunit)
+                    throws InterruptedException, ConnectionPoolTimeoutException {
+                Lease lease = lastLease.get();
+                lease.reset();
+                long startNano = System.nanoTime();
+                ManagedClientConnection conn = request.getConnection(timeout, tunit);
+                // A connection is only open once leased if it was pooled
+                lease.set(startNano, System.nanoTime(), conn.isOpen());
+                return conn;
+            }
+
+            @Override
+            public void abortRequest() {
+                request.abortRequest();
+            }
+        };
+    }
+
+    /**
+     * Returns the last connection lease of the current thread; it is reset
+     * by {@link #clearLastLease()}.
+     */
+    static Lease lastLease() {
+        return lastLease.get();
+    }
+
+    /**
+     * Resets the last connection lease of the current thread, before
+     * executing a request.
+     */
+    static void clearLastLease() {
+        lastLease.get().reset();
+    }
+
+    /**
+     * Opens the configured number of connections to each of the configured
+     * hosts in the background, through the same routes as the requests of the
+     * given client.
+     */
+    void prewarmConnections(ClientConfiguration config, AbstractHttpClient httpClient) {
+        final List<HttpRoute> routes = new ArrayList<HttpRoute>();
+        final List<Integer> counts = new ArrayList<Integer>();
+        for (Map.Entry<String, Integer> entry : config.getPrewarmedConnectionsPerHost().entrySet()) {
+            HttpHost target = toHttpHost(entry.getKey(), config.getProtocol().toString());
+            BasicHttpRequest request = new BasicHttpRequest("GET", "/");
+            request.setParams(httpClient.getParams());
+            HttpRoute route;
+            try {
+                route = httpClient.getRoutePlanner().determineRoute(
+                        target, request, new BasicHttpContext());
+            } catch (Exception e) {
+                log.warn("Unable to pre-warm connections to " + target, e);
+                continue;
+            }
+            if (route.isTunnelled()) {
+                log.debug("Not pre-warming connections to " + target + " through a proxy");
+                continue;
+            }
+            hostLimits.apply(route, this);
+            int count = Math.min(entry.getValue(), getMaxPerRoute(route));
+            if (count > 0) {
+                routes.add(route);
+                counts.add(count);
+            }
+        }
+        if (routes.isEmpty()) {
+            return;
+        }
+
+        final HttpParams params = httpClient.getParams();
+        Thread thread = new Thread("java-sdk-http-prewarm") {
+            @Override
+            public void run() {
+                for (int i = 0; i < routes.size(); i++) {
+                    prewarmConnections(routes.get(i), counts.get(i), params);
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the host of the given host name, optionally followed by a port.
+     */
+    private static HttpHost toHttpHost(String host, String scheme) {
+        int colon = host.lastIndexOf(':');
+        if (colon > 0 && host.indexOf(':') == colon) {
+            try {
+                return new HttpHost(host.substring(0, colon),
+                        Integer.parseInt(host.substring(colon + 1)), scheme);
+            } catch (NumberFormatException e) {
+                // Not a port; fall through
+            }
+        }
+        return new HttpHost(host, -1, scheme);
+    }
+
+    /**
+     * Opens the given number of connections through the given route, and
+     * returns them to the pool. The connections are all leased before any of
+     * them is returned, so that none is leased twice.
+     */
+    private void prewarmConnections(HttpRoute route, int count, HttpParams params) {
+        List<ManagedClientConnection> connections = new ArrayList<ManagedClientConnection>(count);
+        try {
+            long timeout = HttpConnectionParams.getConnectionTimeout(params);
+            for (int i = 0; i < count; i++) {
+                ManagedClientConnection conn = super.requestConnection(route, null)
+                        .getConnection(timeout, TimeUnit.MILLISECONDS);
+                connections.add(conn);
+                if (!conn.isOpen()) {
+                    conn.open(route, new BasicHttpContext(), params);
+                }
+                conn.markReusable();
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Pre-warmed " + count + " connections to " + route);
+            }
+        } catch (Exception e) {
+            log.warn("Unable to pre-warm connections to " + route, e);
+        } finally {
+            for (ManagedClientConnection conn : connections) {
+                if (!conn.isOpen()) {
+                    conn.unmarkReusable();
+                }
+                releaseConnection(conn, 0, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * The wait for a connection lease, and whether the leased connection was
+     * reused from the pool.
+     */
+    static final class Lease {
+        private long startNano;
+        private long endNano;
+        private boolean reused;
+        private boolean leased;
+
+        void reset() {
+            leased = false;
+        }
+
+        void set(long startNano, long endNano, boolean reused) {
+            this.startNano = startNano;
+            this.endNano = endNano;
+            this.reused = reused;
+            this.leased = true;
+        }
+
+        /** Returns true if a connection has been leased since the last reset. */
+        boolean isLeased() {
+            return leased;
+        }
+
+        long getStartNano() {
+            return startNano;
+        }
+
+        long getEndNano() {
+            return endNano;
+        }
+
+        boolean isReused() {
+            return reused;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn.ssl;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+
+import org.apache.http.conn.ssl.X509HostnameVerifier;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+
+/**
+ * Strategy used by the non-blocking HTTP transport to establish TLS sessions,
+ * which enforces the preferred TLS protocol during SSL handshake as
+ * {@link SdkTLSSocketFactory} does for the blocking transport.
+ */
+public class SdkTLSIOSessionStrategy extends SSLIOSessionStrategy {
+
+    public SdkTLSIOSessionStrategy(final SSLContext sslContext,
+            final X509HostnameVerifier hostnameVerifier) {
+        super(sslContext, hostnameVerifier);
+    }
+
+    @Override
+    protected void initializeEngine(final SSLEngine engine) {
+        String[] enabling = SdkTLSSocketFactory.preferredProtocols(
+                engine.getSupportedProtocols(), engine.getEnabledProtocols());
+        if (enabling != null) {
+            engine.setEnabledProtocols(enabling);
+        }
+    }
+}
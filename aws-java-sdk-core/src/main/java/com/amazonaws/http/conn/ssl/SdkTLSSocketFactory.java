@@ -74,6 +74,22 @@ public class SdkTLSSocketFactory extends SSLSocketFactory {
                     + ", socket.getEnabledProtocols(): "
                     + Arrays.toString(enabled));
         }
+        String[] enabling = preferredProtocols(supported, enabled);
+        if (enabling != null) {
+            socket.setEnabledProtocols(enabling);
+            if (log.isDebugEnabled()) {
+                log.debug("TLS protocol enabled for SSL handshake: "
+                        + Arrays.toString(enabling));
+            }
+        }
+    }
+
+    /**
+     * Returns the protocols to enable for an SSL handshake: the supported
+     * TLS protocols in descending order of preference, followed by the rest
+     * of the already enabled protocols; or null if there are none.
+     */
+    static String[] preferredProtocols(String[] supported, String[] enabled) {
         List<String> target = new ArrayList<String>();
         if (supported != null) {
             // Append the preferred protocols in descending order of preference
@@ -94,19 +110,16 @@ public class SdkTLSSocketFactory extends SSLSocketFactory {
             }
         }
         if (target.size() > 0) {
-            String[] enabling = target.toArray(new String[target.size()]);
-            socket.setEnabledProtocols(enabling);
-            if (log.isDebugEnabled()) {
-                log.debug("TLS protocol enabled for SSL handshake: "
-                        + Arrays.toString(enabling));
-            }
+            return target.toArray(new String[target.size()]);
         }
+        return null;
     }
+
     /**
      * Returns true if the given element exists in the given array;
      * false otherwise.
      */
-    private boolean existsIn(String element, String[] a) {
+    private static boolean existsIn(String element, String[] a) {
         for (String s: a) {
             if (element.equals(s))
                 return true;
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.annotation.ThreadSafe;
+
+/**
+ * A bounded cache that evicts the least recently used entry when the cache is
+ * full.
+ * <p>
+ * Unlike {@link FIFOCache}, lookups never take a lock and never allocate:
+ * entries are held in a lock-striped {@link ConcurrentHashMap}, and the
+ * recency of each entry is tracked as the number of entries added to the
+ * cache when it was last accessed. That number is only written when it
+ * changes, so concurrent readers of a hot entry don't contend on its cache
+ * line, and lookups don't read the system clock. Eviction, which only happens
+ * when a new entry is added to a full cache, scans the entries for the one
+ * least recently accessed, so the eviction order is approximate among entries
+ * accessed between the same two additions.
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ */
+@ThreadSafe
+public final class ConcurrentLRUCache<K, V> {
+    private final ConcurrentMap<K, Entry<V>> map;
+    private final AtomicInteger size = new AtomicInteger();
+    /**
+     * The number of entries added so far, used as a logical clock: an entry
+     * added at tick n is stamped 2n, and an entry looked up after it 2n+1, so
+     * that a lookup counts as more recent than the last addition.
+     */
+    private final AtomicLong clock = new AtomicLong();
+    private final int maxSize;
+
+    /**
+     * @param maxSize
+     *            the maximum number of entries of the cache
+     */
+    public ConcurrentLRUCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize " + maxSize
+                    + " must be at least 1");
+        }
+        this.maxSize = maxSize;
+        this.map = new ConcurrentHashMap<K, Entry<V>>(
+                (int) Math.min((maxSize + 1) / 0.75f + 1, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Adds an entry to the cache, evicting the least recently used entry if
+     * necessary.
+     *
+     * @return the previous value of the given key; or null if no such entry
+     *         existed.
+     */
+    public V add(K key, V value) {
+        Entry<V> previous = map.put(key, new Entry<V>(value, clock.incrementAndGet() << 1));
+        if (previous != null)
+            return previous.value;
+        if (size.incrementAndGet() > maxSize)
+            evict(key);
+        return null;
+    }
+
+    /**
+     * Returns the value of the given key; or null of no such entry exists.
+     */
+    public V get(K key) {
+        Entry<V> entry = map.get(key);
+        if (entry == null)
+            return null;
+        entry.touch((clock.get() << 1) | 1);
+        return entry.value;
+    }
+
+    /**
+     * Returns the current size of the cache.
+     */
+    public int size() {
+        return Math.min(size.get(), maxSize);
+    }
+
+    /**
+     * Returns the maximum size of the cache.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Removes least recently used entries, other than the one just added,
+     * until the cache is back to its maximum size.
+     */
+    private void evict(K addedKey) {
+        for (;;) {
+            // Claim an eviction first, so that concurrent evictions never
+            // remove more entries than needed.
+            int current = size.get();
+            if (current <= maxSize)
+                return;
+            if (!size.compareAndSet(current, current - 1))
+                continue;
+            if (!removeEldest(addedKey)) {
+                size.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes the least recently accessed entry other than the given one.
+     *
+     * @return true if an entry was removed; false if there was none.
+     */
+    private boolean removeEldest(K addedKey) {
+        for (;;) {
+            K eldestKey = null;
+            Entry<V> eldest = null;
+            Iterator<Map.Entry<K, Entry<V>>> it = map.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<K, Entry<V>> e = it.next();
+                if (e.getKey().equals(addedKey))
+                    continue;
+                Entry<V> entry = e.getValue();
+                if (eldest == null || entry.lastAccessed < eldest.lastAccessed) {
+                    eldestKey = e.getKey();
+                    eldest = entry;
+                }
+            }
+            if (eldest == null)
+                return false;
+            if (map.remove(eldestKey, eldest))
+                return true;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return map.toString();
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private volatile long lastAccessed;
+
+        Entry(V value, long now) {
+            this.value = value;
+            this.lastAccessed = now;
+        }
+
+        void touch(long now) {
+            if (lastAccessed != now)
+                lastAccessed = now;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.security.MessageDigest;
+
+import org.apache.http.annotation.NotThreadSafe;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.event.ProgressInputStream;
+
+/**
+ * A releasable input stream over a region of a file, read with positional
+ * reads on the channel of the file. Mark and reset are supported as long as
+ * the file has not been closed, so that a request with this stream as its
+ * content can be retried.
+ * <p>
+ * The stream either opens the file itself, or reads a channel shared with
+ * other streams; since positional reads don't move the position of the
+ * channel, any number of streams can read different regions of the same
+ * channel concurrently, and releasing them leaves the channel open.
+ * <p>
+ * Since the content is known to be a file region, the http client writes it
+ * to the connection directly from the file, and its digest can be computed
+ * from a memory mapping of the file rather than by reading the stream; see
+ * {@link #unwrap(InputStream)}.
+ * <p>
+ * Note the creation of a {@link FileRegionInputStream} from a file would
+ * entail physically opening the file, so its creator should call
+ * {@link #release()} in a finally block, having disabled the accidental
+ * closing via {@link #disableClose()} if necessary.
+ */
+@NotThreadSafe
+public class FileRegionInputStream extends ReleasableInputStream {
+    /** The maximum size of the memory mappings used to compute digests. */
+    private static final int MAX_MAPPING_SIZE = 16 * 1024 * 1024;
+
+    private final File file;
+    private final FileChannel fileChannel;
+    private final long end;
+
+    private long position;
+    private long markPos;
+
+    /**
+     * @param file
+     *            the file to read from; must not be null
+     * @param offset
+     *            the position in the file of the first byte of the region
+     * @param length
+     *            the length of the region
+     */
+    public FileRegionInputStream(File file, long offset, long length) throws IOException {
+        this(new FileInputStream(file), file, offset, length);
+    }
+
+    /**
+     * Constructs a stream over a region of a channel shared with other
+     * streams; the channel is not closed when this stream is released.
+     *
+     * @param channel
+     *            the channel to read from; must not be null
+     * @param offset
+     *            the position in the file of the first byte of the region
+     * @param length
+     *            the length of the region
+     */
+    public FileRegionInputStream(FileChannel channel, long offset, long length) {
+        // Nothing to close; the channel is owned by the caller
+        this(new ByteArrayInputStream(new byte[0]), null, channel, offset, length);
+    }
+
+    private FileRegionInputStream(FileInputStream fis, File file, long offset, long length) {
+        this(fis, file, fis.getChannel(), offset, length);
+    }
+
+    private FileRegionInputStream(InputStream in, File file, FileChannel channel,
+            long offset, long length) {
+        super(in);
+        if (offset < 0 || length < 0) {
+            try {
+                in.close();
+            } catch (IOException ignore) {
+            }
+            throw new IllegalArgumentException("Invalid region of "
+                    + (file == null ? "file" : file)
+                    + ": offset=" + offset + ", length=" + length);
+        }
+        this.file = file;
+        this.fileChannel = channel;
+        this.end = offset + length;
+        this.position = offset;
+        this.markPos = offset;
+    }
+
+    @Override
+    public final boolean markSupported() {
+        return true;
+    }
+
+    /**
+     * Marks the current position in the region.
+     *
+     * @param readlimit
+     *            ignored
+     */
+    @Override
+    public void mark(int readlimit) {
+        abortIfNeeded();
+        markPos = position;
+    }
+
+    @Override
+    public void reset() {
+        abortIfNeeded();
+        position = markPos;
+    }
+
+    @Override
+    public int available() {
+        abortIfNeeded();
+        return (int) Math.min(Integer.MAX_VALUE, end - position);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int read = read(b, 0, 1);
+        return read < 0 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        abortIfNeeded();
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= end) {
+            return -1;
+        }
+        int read = fileChannel.read(
+                ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+        if (read < 0) {
+            throw new IOException("Unexpected end of file at position " + position
+                    + ", expected " + (end - position) + " more bytes");
+        }
+        position += read;
+        return read;
+    }
+
+    @Override
+    public long skip(long n) {
+        abortIfNeeded();
+        long skipped = Math.max(0, Math.min(n, end - position));
+        position += skipped;
+        return skipped;
+    }
+
+    /**
+     * Returns the underlying file; or null if this stream reads a shared
+     * channel.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of bytes between the current position and the end of
+     * the region.
+     */
+    public long getRemainingLength() {
+        return end - position;
+    }
+
+    /**
+     * Updates the given message digest with the bytes between the current
+     * position and the end of the region, and returns the resulting digest.
+     * The bytes are read from memory mappings of the file, so the position of
+     * this stream is unchanged and the content is not copied through the
+     * stream buffers.
+     *
+     * @throws IOException
+     *             if the file ends before the region
+     */
+    public byte[] digest(MessageDigest md) throws IOException {
+        abortIfNeeded();
+        if (fileChannel.size() < end) {
+            throw new IOException("Unexpected end of file " + file + ": region ends at "
+                    + end + " but file size is " + fileChannel.size());
+        }
+        for (long pos = position; pos < end;) {
+            long size = Math.min(MAX_MAPPING_SIZE, end - pos);
+            MappedByteBuffer mapped = fileChannel.map(MapMode.READ_ONLY, pos, size);
+            md.update(mapped);
+            pos += size;
+        }
+        return md.digest();
+    }
+
+    /**
+     * Returns the underlying file region stream of the given request content,
+     * looking through the wrappers added by the http client for progress
+     * reporting and closing; or null if the content is not a file region or
+     * is filtered by any other stream.
+     */
+    public static FileRegionInputStream unwrap(InputStream is) {
+        while (is != null) {
+            if (is instanceof FileRegionInputStream) {
+                return (FileRegionInputStream) is;
+            } else if (is instanceof ProgressInputStream) {
+                is = ((ProgressInputStream) is).getWrappedInputStream();
+            } else if (is.getClass() == ReleasableInputStream.class) {
+                is = ((ReleasableInputStream) is).getWrappedInputStream();
+            } else {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Convenient factory method to construct a new file region input stream,
+     * converting any IOException into AmazonClientException with the given
+     * error message.
+     */
+    public static FileRegionInputStream newFileRegionInputStream(File file,
+            long offset, long length, String errmsg) {
+        try {
+            return new FileRegionInputStream(file, offset, length);
+        } catch (IOException e) {
+            throw errmsg == null
+                ? new AmazonClientException(e)
+                : new AmazonClientException(errmsg, e);
+        }
+    }
+}
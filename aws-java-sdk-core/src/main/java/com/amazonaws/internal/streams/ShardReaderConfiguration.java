@@ -0,0 +1,258 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal.streams;
+
+/**
+ * Configuration of the reading of the shards of a stream by a
+ * {@link ShardReaderEngine}, shared by the Kinesis and DynamoDB Streams shard
+ * readers.
+ */
+public class ShardReaderConfiguration {
+
+    /** Where the reading of the shards of a stream starts. */
+    public enum InitialPosition {
+        /** The oldest records of all the shards, following their lineage. */
+        TRIM_HORIZON,
+        /** The records added after the reader started, to the open shards. */
+        LATEST
+    }
+
+    /** Where the reading of the shards starts. */
+    private InitialPosition initialPosition;
+
+    /** Trim horizon */
+    public static final InitialPosition INITIAL_POSITION_DEFAULT = InitialPosition.TRIM_HORIZON;
+
+    /**
+     * The maximum number of records returned by a GetRecords call; at most
+     * 10000 for Kinesis and 1000 for DynamoDB Streams.
+     */
+    private int maxRecordsPerCall;
+
+    /** 1000 records */
+    public static final int MAX_RECORDS_PER_CALL_DEFAULT = 1000;
+
+    /**
+     * The maximum number of batches of records read from a shard and not yet
+     * processed. The next batch of a shard is read while the previous ones are
+     * processed, until this number is reached.
+     */
+    private int prefetchBatches;
+
+    /** 2 batches */
+    public static final int PREFETCH_BATCHES_DEFAULT = 2;
+
+    /**
+     * The minimum time (milliseconds) between two GetRecords calls on the same
+     * shard; Kinesis allows 5 calls per second per shard.
+     */
+    private long minTimeBetweenReadsMs;
+
+    /** 200 milliseconds */
+    public static final long MIN_TIME_BETWEEN_READS_MS_DEFAULT = 200;
+
+    /**
+     * The time (milliseconds) to wait before reading a shard again after a
+     * GetRecords call returned no record.
+     */
+    private long idleTimeBetweenReadsMs;
+
+    /** 1 second */
+    public static final long IDLE_TIME_BETWEEN_READS_MS_DEFAULT = 1000;
+
+    /**
+     * The interval (milliseconds) at which the shards of the stream are
+     * listed, to discover the shards created by splits and merges.
+     */
+    private long shardSyncIntervalMs;
+
+    /** 10 seconds */
+    public static final long SHARD_SYNC_INTERVAL_MS_DEFAULT = 10000;
+
+    /**
+     * The number of threads processing the records of all the shards; the
+     * records of a shard are processed by one thread at a time.
+     */
+    private int processingThreads;
+
+    /** 2 threads */
+    public static final int PROCESSING_THREADS_DEFAULT = 2;
+
+    public ShardReaderConfiguration() {
+        initialPosition = INITIAL_POSITION_DEFAULT;
+        maxRecordsPerCall = MAX_RECORDS_PER_CALL_DEFAULT;
+        prefetchBatches = PREFETCH_BATCHES_DEFAULT;
+        minTimeBetweenReadsMs = MIN_TIME_BETWEEN_READS_MS_DEFAULT;
+        idleTimeBetweenReadsMs = IDLE_TIME_BETWEEN_READS_MS_DEFAULT;
+        shardSyncIntervalMs = SHARD_SYNC_INTERVAL_MS_DEFAULT;
+        processingThreads = PROCESSING_THREADS_DEFAULT;
+    }
+
+    public ShardReaderConfiguration(ShardReaderConfiguration other) {
+        this.initialPosition = other.initialPosition;
+        this.maxRecordsPerCall = other.maxRecordsPerCall;
+        this.prefetchBatches = other.prefetchBatches;
+        this.minTimeBetweenReadsMs = other.minTimeBetweenReadsMs;
+        this.idleTimeBetweenReadsMs = other.idleTimeBetweenReadsMs;
+        this.shardSyncIntervalMs = other.shardSyncIntervalMs;
+        this.processingThreads = other.processingThreads;
+    }
+
+    @Override
+    public String toString() {
+        return "ShardReaderConfiguration [initialPosition=" + initialPosition + ", maxRecordsPerCall="
+                + maxRecordsPerCall + ", prefetchBatches=" + prefetchBatches + ", minTimeBetweenReadsMs="
+                + minTimeBetweenReadsMs + ", idleTimeBetweenReadsMs=" + idleTimeBetweenReadsMs
+                + ", shardSyncIntervalMs=" + shardSyncIntervalMs + ", processingThreads="
+                + processingThreads + "]";
+    }
+
+    /** Where the reading of the shards starts. */
+    public InitialPosition getInitialPosition() {
+        return initialPosition;
+    }
+
+    /**
+     * Sets where the reading of the shards starts. With
+     * {@link InitialPosition#LATEST}, the shards closed when the reader starts
+     * are not read. The shards created afterwards are always read from their
+     * first record.
+     */
+    public void setInitialPosition(InitialPosition initialPosition) {
+        if (initialPosition == null) {
+            throw new IllegalArgumentException("initialPosition must be specified");
+        }
+        this.initialPosition = initialPosition;
+    }
+
+    public ShardReaderConfiguration withInitialPosition(InitialPosition initialPosition) {
+        setInitialPosition(initialPosition);
+        return this;
+    }
+
+    /** The maximum number of records returned by a GetRecords call. */
+    public int getMaxRecordsPerCall() {
+        return maxRecordsPerCall;
+    }
+
+    /**
+     * Sets the maximum number of records returned by a GetRecords call; at
+     * most 10000 for Kinesis and 1000 for DynamoDB Streams.
+     */
+    public void setMaxRecordsPerCall(int maxRecordsPerCall) {
+        if (maxRecordsPerCall < 1) {
+            throw new IllegalArgumentException("maxRecordsPerCall must be at least 1");
+        }
+        this.maxRecordsPerCall = maxRecordsPerCall;
+    }
+
+    public ShardReaderConfiguration withMaxRecordsPerCall(int maxRecordsPerCall) {
+        setMaxRecordsPerCall(maxRecordsPerCall);
+        return this;
+    }
+
+    /** The maximum number of batches read from a shard and not yet processed. */
+    public int getPrefetchBatches() {
+        return prefetchBatches;
+    }
+
+    /**
+     * Sets the maximum number of batches read from a shard and not yet
+     * processed, which bounds the records buffered per shard to this number
+     * times the maximum number of records per call.
+     */
+    public void setPrefetchBatches(int prefetchBatches) {
+        if (prefetchBatches < 1) {
+            throw new IllegalArgumentException("prefetchBatches must be at least 1");
+        }
+        this.prefetchBatches = prefetchBatches;
+    }
+
+    public ShardReaderConfiguration withPrefetchBatches(int prefetchBatches) {
+        setPrefetchBatches(prefetchBatches);
+        return this;
+    }
+
+    /** The minimum time (milliseconds) between two GetRecords calls on a shard. */
+    public long getMinTimeBetweenReadsMs() {
+        return minTimeBetweenReadsMs;
+    }
+
+    public void setMinTimeBetweenReadsMs(long minTimeBetweenReadsMs) {
+        if (minTimeBetweenReadsMs < 0) {
+            throw new IllegalArgumentException("minTimeBetweenReadsMs must not be negative");
+        }
+        this.minTimeBetweenReadsMs = minTimeBetweenReadsMs;
+    }
+
+    public ShardReaderConfiguration withMinTimeBetweenReadsMs(long minTimeBetweenReadsMs) {
+        setMinTimeBetweenReadsMs(minTimeBetweenReadsMs);
+        return this;
+    }
+
+    /**
+     * The time (milliseconds) to wait before reading a shard again after a
+     * GetRecords call returned no record.
+     */
+    public long getIdleTimeBetweenReadsMs() {
+        return idleTimeBetweenReadsMs;
+    }
+
+    public void setIdleTimeBetweenReadsMs(long idleTimeBetweenReadsMs) {
+        if (idleTimeBetweenReadsMs < 0) {
+            throw new IllegalArgumentException("idleTimeBetweenReadsMs must not be negative");
+        }
+        this.idleTimeBetweenReadsMs = idleTimeBetweenReadsMs;
+    }
+
+    public ShardReaderConfiguration withIdleTimeBetweenReadsMs(long idleTimeBetweenReadsMs) {
+        setIdleTimeBetweenReadsMs(idleTimeBetweenReadsMs);
+        return this;
+    }
+
+    /** The interval (milliseconds) at which the shards of the stream are listed. */
+    public long getShardSyncIntervalMs() {
+        return shardSyncIntervalMs;
+    }
+
+    public void setShardSyncIntervalMs(long shardSyncIntervalMs) {
+        if (shardSyncIntervalMs < 1) {
+            throw new IllegalArgumentException("shardSyncIntervalMs must be at least 1");
+        }
+        this.shardSyncIntervalMs = shardSyncIntervalMs;
+    }
+
+    public ShardReaderConfiguration withShardSyncIntervalMs(long shardSyncIntervalMs) {
+        setShardSyncIntervalMs(shardSyncIntervalMs);
+        return this;
+    }
+
+    /** The number of threads processing the records of all the shards. */
+    public int getProcessingThreads() {
+        return processingThreads;
+    }
+
+    public void setProcessingThreads(int processingThreads) {
+        if (processingThreads < 1) {
+            throw new IllegalArgumentException("processingThreads must be at least 1");
+        }
+        this.processingThreads = processingThreads;
+    }
+
+    public ShardReaderConfiguration withProcessingThreads(int processingThreads) {
+        setProcessingThreads(processingThreads);
+        return this;
+    }
+}
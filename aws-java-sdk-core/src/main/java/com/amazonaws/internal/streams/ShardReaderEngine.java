@@ -0,0 +1,539 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal.streams;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.internal.streams.ShardReaderConfiguration.InitialPosition;
+import com.amazonaws.retry.RetryUtils;
+
+/**
+ * Reads all the shards of a stream concurrently, with at most one
+ * GetShardIterator or GetRecords call outstanding per shard, made
+ * asynchronously so that no thread is held per shard.
+ * <p>
+ * The next batch of records of a shard is read while the previous ones are
+ * processed, up to {@link ShardReaderConfiguration#getPrefetchBatches()}
+ * batches. The batches of a shard are processed in order, one at a time, by a
+ * small pool of threads shared by all the shards. The shards are listed
+ * periodically, and a shard created by a split or a merge is read once all its
+ * parent shards have been read to their end, so that the records of a key are
+ * processed in order across resharding.
+ * <p>
+ * Expired shard iterators are acquired again after the last record read, and
+ * failed calls retried with an exponential backoff, for ever: the shard
+ * readers of the Kinesis and DynamoDB Streams clients implement the calls to
+ * their service.
+ * <p>
+ * This class is only intended for internal use inside the AWS client
+ * libraries: it is public so that the Kinesis and DynamoDB Streams modules,
+ * which don't depend on each other, can share it.
+ *
+ * @param <R>
+ *            the type of the records of the stream
+ */
+public abstract class ShardReaderEngine<R> {
+    private static final Log log = LogFactory.getLog(ShardReaderEngine.class);
+
+    private static final String TRIM_HORIZON = "TRIM_HORIZON";
+    private static final String LATEST = "LATEST";
+    private static final String AFTER_SEQUENCE_NUMBER = "AFTER_SEQUENCE_NUMBER";
+
+    private static final long MIN_RETRY_DELAY_MS = 100;
+    private static final long MAX_RETRY_DELAY_MS = 30000;
+
+    /** Called back with the result of a GetShardIterator call. */
+    protected interface IteratorCallback {
+        void onIterator(String shardIterator);
+
+        void onError(Exception exception);
+    }
+
+    /** Called back with the result of a GetRecords call. */
+    protected interface RecordsCallback<R> {
+        /**
+         * @param records
+         *            the records read, possibly none
+         * @param nextShardIterator
+         *            the iterator of the next call, or null if the end of the
+         *            closed shard was reached
+         */
+        void onRecords(List<R> records, String nextShardIterator);
+
+        void onError(Exception exception);
+    }
+
+    private final String streamName;
+    private final ShardReaderConfiguration config;
+
+    /** Runs the listing of the shards and the delayed calls. */
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService processors;
+
+    /** The shards of the last listing, by id. */
+    private Map<String, StreamShard> listedShards = new LinkedHashMap<String, StreamShard>();
+    /** The shards being read, by id. */
+    private final Map<String, ShardState> readers = new HashMap<String, ShardState>();
+    /** The listed shards read to their end, or skipped. */
+    private final Set<String> completedShards = new HashSet<String>();
+    private boolean listed;
+
+    private volatile boolean shutdown;
+
+    protected ShardReaderEngine(String streamName, ShardReaderConfiguration config) {
+        if (streamName == null || config == null) {
+            throw new IllegalArgumentException("The stream name and configuration must be specified");
+        }
+        this.streamName = streamName;
+        this.config = new ShardReaderConfiguration(config);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(newThreadFactory("shard-reader-" + streamName));
+        this.processors = Executors.newFixedThreadPool(this.config.getProcessingThreads(),
+                newThreadFactory("shard-processor-" + streamName));
+    }
+
+    private static ThreadFactory newThreadFactory(final String prefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, prefix + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Lists all the shards of the stream, open and closed.
+     */
+    protected abstract List<StreamShard> listShards();
+
+    /**
+     * Gets a shard iterator asynchronously.
+     *
+     * @param iteratorType
+     *            TRIM_HORIZON, LATEST or AFTER_SEQUENCE_NUMBER
+     * @param sequenceNumber
+     *            the sequence number after which to read, or null
+     */
+    protected abstract void getShardIterator(String shardId, String iteratorType, String sequenceNumber,
+            IteratorCallback callback);
+
+    /**
+     * Gets the records of a shard asynchronously.
+     */
+    protected abstract void getRecords(String shardIterator, int limit, RecordsCallback<R> callback);
+
+    protected abstract String getSequenceNumber(R record);
+
+    /**
+     * Processes a batch of records of a shard; called for one batch of a shard
+     * at a time, in order. An exception is logged, and the next batch
+     * processed.
+     */
+    protected abstract void processRecords(String shardId, List<R> records) throws Exception;
+
+    /**
+     * Called after the last batch of a closed shard has been processed, before
+     * its child shards are read.
+     */
+    protected abstract void shardEnded(String shardId) throws Exception;
+
+    /**
+     * Starts listing and reading the shards of the stream.
+     */
+    public void start() {
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                syncShards();
+            }
+        }, 0, config.getShardSyncIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops reading the shards. The batch being processed, if any, completes;
+     * the records read and not yet processed are discarded.
+     */
+    public void shutdown() {
+        shutdown = true;
+        scheduler.shutdownNow();
+        processors.shutdown();
+    }
+
+    /**
+     * Waits until the batches being processed complete after a shutdown.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return processors.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Returns the ids of the shards being read.
+     */
+    public synchronized Set<String> getShardsBeingRead() {
+        return Collections.unmodifiableSet(new HashSet<String>(readers.keySet()));
+    }
+
+    private void syncShards() {
+        List<StreamShard> shards;
+        try {
+            shards = listShards();
+        } catch (RuntimeException e) {
+            log.warn("Unable to list the shards of stream " + streamName, e);
+            return;
+        }
+        List<ShardState> started;
+        synchronized (this) {
+            listedShards = new LinkedHashMap<String, StreamShard>();
+            for (StreamShard shard : shards) {
+                listedShards.put(shard.getShardId(), shard);
+            }
+            completedShards.retainAll(listedShards.keySet());
+            started = startReadableShards();
+            listed = true;
+        }
+        for (ShardState state : started) {
+            fetch(state);
+        }
+    }
+
+    /**
+     * Starts reading the listed shards not read yet whose parents have been
+     * read, and returns them.
+     */
+    private List<ShardState> startReadableShards() {
+        boolean fromLatest = !listed && config.getInitialPosition() == InitialPosition.LATEST;
+        List<ShardState> started = new ArrayList<ShardState>();
+        for (StreamShard shard : listedShards.values()) {
+            String shardId = shard.getShardId();
+            if (readers.containsKey(shardId) || completedShards.contains(shardId)) {
+                continue;
+            }
+            if (fromLatest) {
+                if (shard.isClosed()) {
+                    completedShards.add(shardId);
+                } else {
+                    started.add(startReading(shardId, LATEST));
+                }
+            } else if (parentsCompleted(shard)) {
+                started.add(startReading(shardId, TRIM_HORIZON));
+            }
+        }
+        return started;
+    }
+
+    /**
+     * Returns true if the parents of the given shard have been read to their
+     * end, or are past the retention period of the stream.
+     */
+    private boolean parentsCompleted(StreamShard shard) {
+        for (String parentShardId : shard.getParentShardIds()) {
+            if (readers.containsKey(parentShardId)
+                    || (listedShards.containsKey(parentShardId) && !completedShards.contains(parentShardId))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ShardState startReading(String shardId, String iteratorType) {
+        ShardState state = new ShardState(shardId, iteratorType);
+        readers.put(shardId, state);
+        return state;
+    }
+
+    /**
+     * Reads the next batch of the given shard, unless a call is already
+     * outstanding, its end was reached or enough batches are buffered.
+     */
+    private void fetch(final ShardState state) {
+        String shardIterator;
+        String iteratorType = null;
+        String sequenceNumber = null;
+        long delayMs;
+        synchronized (state) {
+            if (shutdown || state.fetching || state.endReached
+                    || state.batches.size() >= config.getPrefetchBatches()) {
+                return;
+            }
+            state.fetching = true;
+            long now = System.nanoTime();
+            delayMs = TimeUnit.NANOSECONDS.toMillis(state.nextFetchNanos - now);
+            if (delayMs <= 0) {
+                state.nextFetchNanos = now + TimeUnit.MILLISECONDS.toNanos(config.getMinTimeBetweenReadsMs());
+            }
+            shardIterator = state.shardIterator;
+            if (shardIterator == null) {
+                if (state.lastSequenceNumber != null) {
+                    iteratorType = AFTER_SEQUENCE_NUMBER;
+                    sequenceNumber = state.lastSequenceNumber;
+                } else {
+                    iteratorType = state.initialIteratorType;
+                }
+            }
+        }
+        if (delayMs > 0) {
+            fetchLater(state, delayMs);
+        } else if (shardIterator != null) {
+            readRecords(state, shardIterator);
+        } else {
+            try {
+                getShardIterator(state.shardId, iteratorType, sequenceNumber, new IteratorCallback() {
+                    @Override
+                    public void onIterator(String shardIterator) {
+                        if (shardIterator == null) {
+                            recordsRead(state, Collections.<R>emptyList(), null);
+                        } else {
+                            readRecords(state, shardIterator);
+                        }
+                    }
+
+                    @Override
+                    public void onError(Exception exception) {
+                        readFailed(state, exception);
+                    }
+                });
+            } catch (RuntimeException e) {
+                readFailed(state, e);
+            }
+        }
+    }
+
+    /**
+     * Fetches the next batch of the given shard after a delay; the shard is
+     * considered fetching until then.
+     */
+    private void fetchLater(final ShardState state, long delayMs) {
+        try {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (state) {
+                        state.fetching = false;
+                    }
+                    fetch(state);
+                }
+            }, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // shut down
+        }
+    }
+
+    private void readRecords(final ShardState state, String shardIterator) {
+        try {
+            getRecords(shardIterator, config.getMaxRecordsPerCall(), new RecordsCallback<R>() {
+                @Override
+                public void onRecords(List<R> records, String nextShardIterator) {
+                    recordsRead(state, records, nextShardIterator);
+                }
+
+                @Override
+                public void onError(Exception exception) {
+                    readFailed(state, exception);
+                }
+            });
+        } catch (RuntimeException e) {
+            readFailed(state, e);
+        }
+    }
+
+    private void recordsRead(ShardState state, List<R> records, String nextShardIterator) {
+        long delayMs = 0;
+        synchronized (state) {
+            state.failures = 0;
+            state.shardIterator = nextShardIterator;
+            if (!records.isEmpty()) {
+                state.lastSequenceNumber = getSequenceNumber(records.get(records.size() - 1));
+                state.batches.add(records);
+            }
+            if (nextShardIterator == null) {
+                state.endReached = true;
+            } else if (records.isEmpty()) {
+                delayMs = config.getIdleTimeBetweenReadsMs();
+            }
+            if (delayMs <= 0) {
+                state.fetching = false;
+            }
+        }
+        deliver(state);
+        if (delayMs > 0) {
+            fetchLater(state, delayMs);
+        } else {
+            fetch(state);
+        }
+    }
+
+    private void readFailed(ShardState state, Exception exception) {
+        String errorCode = exception instanceof AmazonServiceException
+                ? ((AmazonServiceException) exception).getErrorCode()
+                : null;
+        long delayMs = 0;
+        synchronized (state) {
+            if ("ExpiredIteratorException".equals(errorCode)) {
+                // acquired again after the last record read
+                state.shardIterator = null;
+            } else if ("TrimmedDataAccessException".equals(errorCode)) {
+                log.warn("Records of shard " + state.shardId + " of stream " + streamName
+                        + " were trimmed before being read; reading from the trim horizon");
+                state.shardIterator = null;
+                state.lastSequenceNumber = null;
+                state.initialIteratorType = TRIM_HORIZON;
+            } else {
+                state.failures++;
+                delayMs = Math.min(MAX_RETRY_DELAY_MS,
+                        Math.max(MIN_RETRY_DELAY_MS, config.getMinTimeBetweenReadsMs())
+                                << Math.min(state.failures - 1, 16));
+                if (isThrottling(exception, errorCode)) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Reads of shard " + state.shardId + " of stream " + streamName
+                                + " throttled; retrying in " + delayMs + " ms");
+                    }
+                } else {
+                    log.warn("Unable to read shard " + state.shardId + " of stream " + streamName
+                            + "; retrying in " + delayMs + " ms", exception);
+                }
+            }
+            if (delayMs == 0) {
+                state.fetching = false;
+            }
+        }
+        if (delayMs > 0) {
+            fetchLater(state, delayMs);
+        } else {
+            fetch(state);
+        }
+    }
+
+    private static boolean isThrottling(Exception exception, String errorCode) {
+        return "ProvisionedThroughputExceededException".equals(errorCode)
+                || "LimitExceededException".equals(errorCode)
+                || (exception instanceof AmazonServiceException
+                        && RetryUtils.isThrottlingException((AmazonServiceException) exception));
+    }
+
+    /**
+     * Processes the next batch of the given shard on the processing pool,
+     * unless one is being processed, or completes the shard once its end was
+     * reached and all its batches processed.
+     */
+    private void deliver(final ShardState state) {
+        final boolean ended;
+        synchronized (state) {
+            if (state.processing || (state.batches.isEmpty() && !state.endReached)) {
+                return;
+            }
+            state.processing = true;
+            ended = state.batches.isEmpty();
+        }
+        try {
+            processors.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (ended) {
+                        completeShard(state);
+                    } else {
+                        processNextBatch(state);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // shut down
+        }
+    }
+
+    private void processNextBatch(ShardState state) {
+        List<R> batch;
+        synchronized (state) {
+            batch = state.batches.poll();
+        }
+        try {
+            processRecords(state.shardId, batch);
+        } catch (Exception e) {
+            log.warn("Unable to process " + batch.size() + " records of shard " + state.shardId
+                    + " of stream " + streamName, e);
+        }
+        synchronized (state) {
+            state.processing = false;
+        }
+        fetch(state);
+        deliver(state);
+    }
+
+    private void completeShard(ShardState state) {
+        try {
+            shardEnded(state.shardId);
+        } catch (Exception e) {
+            log.warn("Unable to complete shard " + state.shardId + " of stream " + streamName, e);
+        }
+        List<ShardState> started;
+        synchronized (this) {
+            readers.remove(state.shardId);
+            completedShards.add(state.shardId);
+            started = startReadableShards();
+        }
+        for (ShardState child : started) {
+            fetch(child);
+        }
+    }
+
+    /**
+     * The reading of a shard; guarded by itself.
+     */
+    private final class ShardState {
+        final String shardId;
+
+        /** The type of the iterator read from when no record was read yet. */
+        String initialIteratorType;
+        String shardIterator;
+        String lastSequenceNumber;
+
+        /** The batches read and not yet processed, in order. */
+        final ArrayDeque<List<R>> batches = new ArrayDeque<List<R>>();
+
+        /** True while a call is outstanding or scheduled. */
+        boolean fetching;
+        boolean processing;
+        boolean endReached;
+        long nextFetchNanos;
+        int failures;
+
+        ShardState(String shardId, String initialIteratorType) {
+            this.shardId = shardId;
+            this.initialIteratorType = initialIteratorType;
+            this.nextFetchNanos = System.nanoTime();
+        }
+    }
+}
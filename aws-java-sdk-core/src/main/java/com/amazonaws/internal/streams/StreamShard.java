@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal.streams;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A shard of a stream, with the shards it was split or merged from, as listed
+ * by the shard readers for the {@link ShardReaderEngine}. For internal use only.
+ */
+public final class StreamShard {
+    private final String shardId;
+    private final List<String> parentShardIds;
+    private final boolean closed;
+
+    /**
+     * @param shardId
+     *            the id of the shard
+     * @param parentShardId
+     *            the id of the shard this shard was split or merged from, or
+     *            null
+     * @param adjacentParentShardId
+     *            the id of the other shard this shard was merged from, or null
+     * @param closed
+     *            true if the shard has an ending sequence number, and no record
+     *            is added to it anymore
+     */
+    public StreamShard(String shardId, String parentShardId, String adjacentParentShardId, boolean closed) {
+        if (shardId == null) {
+            throw new IllegalArgumentException("The shard id must be specified");
+        }
+        List<String> parents = new ArrayList<String>(2);
+        if (parentShardId != null) {
+            parents.add(parentShardId);
+        }
+        if (adjacentParentShardId != null) {
+            parents.add(adjacentParentShardId);
+        }
+        this.shardId = shardId;
+        this.parentShardIds = Collections.unmodifiableList(parents);
+        this.closed = closed;
+    }
+
+    public String getShardId() {
+        return shardId;
+    }
+
+    /** The ids of the shards this shard was split or merged from. */
+    public List<String> getParentShardIds() {
+        return parentShardIds;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamShard [shardId=" + shardId + ", parentShardIds=" + parentShardIds + ", closed="
+                + closed + "]";
+    }
+}
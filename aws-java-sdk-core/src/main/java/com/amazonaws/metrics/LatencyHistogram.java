@@ -0,0 +1,197 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.http.annotation.Immutable;
+import org.apache.http.annotation.ThreadSafe;
+
+/**
+ * A histogram of non-negative values, such as latencies in microseconds, in a
+ * fixed amount of memory, from which percentiles can be computed.
+ * <p>
+ * Values below 64 are counted exactly. Each power of two range above is split
+ * into 32 buckets of equal width, so that any recorded value is reported with
+ * a relative error of at most 1/32, rounded up. Values above
+ * {@link #MAX_TRACKABLE_VALUE} are counted as that value.
+ * <p>
+ * Recording a value is two atomic increments; it neither allocates nor locks.
+ */
+@ThreadSafe
+public class LatencyHistogram {
+    /** The number of bits of precision of each bucket. */
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** The highest bit of the largest trackable value. */
+    private static final int MAX_HIGHEST_BIT = 40;
+    /** The number of buckets, including the 2 * SUB_BUCKETS exact ones. */
+    static final int BUCKETS = 2 * SUB_BUCKETS + (MAX_HIGHEST_BIT - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    /**
+     * The largest value tracked with the precision of the histogram; about 25
+     * days in microseconds.
+     */
+    public static final long MAX_TRACKABLE_VALUE = (1L << (MAX_HIGHEST_BIT + 1)) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     * Records the given value; negative values are recorded as zero.
+     */
+    public void recordValue(long value) {
+        value = Math.min(Math.max(value, 0), MAX_TRACKABLE_VALUE);
+        counts.incrementAndGet(indexOf(value));
+        sum.addAndGet(value);
+    }
+
+    /**
+     * Returns a snapshot of the values recorded so far. Values recorded
+     * concurrently may or may not be part of the snapshot.
+     */
+    public Snapshot snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return new Snapshot(snapshot, sum.get());
+    }
+
+    /** Returns the index of the bucket counting the given value. */
+    static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return 2 * SUB_BUCKETS + (shift - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /** Returns the lowest value counted by the given bucket. */
+    static long lowestValueOf(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int i = index - 2 * SUB_BUCKETS;
+        int shift = i / SUB_BUCKETS + 1;
+        return (long) (i % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+
+    /** Returns the highest value counted by the given bucket. */
+    static long highestValueOf(int index) {
+        return index + 1 < BUCKETS ? lowestValueOf(index + 1) - 1 : MAX_TRACKABLE_VALUE;
+    }
+
+    /**
+     * An immutable snapshot of a {@link LatencyHistogram}.
+     */
+    @Immutable
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+
+        Snapshot(long[] counts, long sum) {
+            this.counts = counts;
+            this.sum = sum;
+            long count = 0;
+            for (long c: counts) {
+                count += c;
+            }
+            this.count = count;
+        }
+
+        /** Returns the number of values recorded. */
+        public long getCount() {
+            return count;
+        }
+
+        /** Returns the sum of the values recorded. */
+        public long getSum() {
+            return sum;
+        }
+
+        /** Returns the mean of the values recorded, or zero if there is none. */
+        public double getMean() {
+            return count == 0 ? 0.0 : (double) sum / count;
+        }
+
+        /** Returns the smallest value recorded, or zero if there is none. */
+        public long getMin() {
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    return lowestValueOf(i);
+                }
+            }
+            return 0;
+        }
+
+        /** Returns the largest value recorded, or zero if there is none. */
+        public long getMax() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] > 0) {
+                    return highestValueOf(i);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Returns the value below or at which the given percentage of the
+         * recorded values fall, or zero if there is none.
+         *
+         * @param percentile
+         *            the percentile, between 0 and 100; for example 99.9
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("percentile must be between 0 and 100: " + percentile);
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return highestValueOf(i);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Returns a snapshot of the values recorded after the given earlier
+         * snapshot of the same histogram was taken.
+         */
+        public Snapshot minus(Snapshot earlier) {
+            long[] diff = new long[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                diff[i] = Math.max(0, counts[i] - earlier.counts[i]);
+            }
+            return new Snapshot(diff, Math.max(0, sum - earlier.sum));
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count
+                + ", mean=" + getMean()
+                + ", p50=" + getValueAtPercentile(50)
+                + ", p99=" + getValueAtPercentile(99)
+                + ", p999=" + getValueAtPercentile(99.9)
+                + ", max=" + getMax();
+        }
+    }
+}
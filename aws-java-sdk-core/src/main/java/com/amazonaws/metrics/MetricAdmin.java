@@ -16,6 +16,10 @@ package com.amazonaws.metrics;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import com.amazonaws.regions.Regions;
 
@@ -144,4 +148,29 @@ public class MetricAdmin implements MetricAdminMBean {
     public void setSingleMetricNamespace(boolean singleMetricNamespace) {
         AwsSdkMetrics.setSingleMetricNamespace(singleMetricNamespace);
     }
+    @Override
+    public String[] getLatencyPercentiles() {
+        List<String> lines = new ArrayList<String>();
+        RequestLatencyHistograms histograms = getLatencyHistograms();
+        if (histograms == null) {
+            return new String[0];
+        }
+        for (Map.Entry<RequestLatencyHistograms.Key, LatencyHistogram> entry:
+                histograms.getHistograms().entrySet()) {
+            lines.add(entry.getKey() + ": " + entry.getValue().snapshot());
+        }
+        Collections.sort(lines);
+        return lines.toArray(new String[lines.size()]);
+    }
+    @Override
+    public void resetLatencyHistograms() {
+        RequestLatencyHistograms histograms = getLatencyHistograms();
+        if (histograms != null) {
+            histograms.reset();
+        }
+    }
+    private static RequestLatencyHistograms getLatencyHistograms() {
+        RequestMetricCollector collector = AwsSdkMetrics.getRequestMetricCollector();
+        return collector.getLatencyHistograms();
+    }
 }
\ No newline at end of file
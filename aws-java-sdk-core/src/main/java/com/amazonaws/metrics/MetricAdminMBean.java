@@ -184,4 +184,21 @@ public interface MetricAdminMBean {
      * Used to set whether a single metric name space is to be used.
      */
     public void setSingleMetricNamespace(boolean singleMetricNamespace);
+
+    /**
+     * Returns the count, mean, 50th, 99th and 99.9th percentiles and maximum
+     * of the latencies, in microseconds, recorded by the current request
+     * metric collector since its start or the last reset, one line per
+     * service, request type, latency metric and scope; none if the collector
+     * doesn't record latency histograms.
+     *
+     * @see RequestMetricCollector#getLatencyHistograms()
+     */
+    public String[] getLatencyPercentiles();
+
+    /**
+     * Forgets all the latencies recorded so far by the current request metric
+     * collector.
+     */
+    public void resetLatencyHistograms();
 }
\ No newline at end of file
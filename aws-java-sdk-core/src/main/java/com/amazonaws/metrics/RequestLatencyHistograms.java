@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.annotation.Immutable;
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.Request;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.TimingInfo;
+
+/**
+ * Latency histograms of requests sent by the AWS SDK, in microseconds, per
+ * service, request type, latency metric and {@link Scope}.
+ * <p>
+ * A {@link RequestMetricCollector} can record the latencies of the requests
+ * it collects the metrics of into its own histograms, and return them from
+ * {@link RequestMetricCollector#getLatencyHistograms()}, so that those of the
+ * current collector are exposed through {@link MetricAdmin}.
+ */
+@ThreadSafe
+public final class RequestLatencyHistograms {
+    /**
+     * Whether a latency is measured per attempt to send a request, or summed
+     * over all the attempts, including the retries, of a request.
+     */
+    public static enum Scope {
+        Attempt,
+        Request,
+        ;
+    }
+
+    /** The latency metrics for which histograms are recorded. */
+    private static final Field[] LATENCY_METRICS = {
+        Field.ClientExecuteTime,
+        Field.HttpRequestTime,
+        Field.RequestSigningTime,
+    };
+
+    private final ConcurrentMap<Key, LatencyHistogram> histograms =
+        new ConcurrentHashMap<Key, LatencyHistogram>();
+
+    /**
+     * Records the latencies measured for the given request, if its request
+     * metrics are enabled.
+     *
+     * @see #record(String, String, TimingInfo)
+     */
+    public void record(Request<?> request) {
+        AWSRequestMetrics metrics = request.getAWSRequestMetrics();
+        if (metrics == null || !metrics.isEnabled()) {
+            return;
+        }
+        record(request.getServiceName(),
+                request.getOriginalRequest().getClass().getSimpleName(),
+                metrics.getTimingInfo());
+    }
+
+    /**
+     * Records the latencies measured in the given timing info of a request
+     * into the respective histograms. Every measurement of a latency metric
+     * is recorded with the {@link Scope#Attempt} scope, and their total with
+     * the {@link Scope#Request} scope.
+     *
+     * @param serviceName
+     *            the name of the service the request was sent to
+     * @param requestType
+     *            the type of request, such as PutItemRequest
+     * @param timingInfo
+     *            the timing info of the request
+     */
+    public void record(String serviceName, String requestType, TimingInfo timingInfo) {
+        for (Field metric: LATENCY_METRICS) {
+            List<TimingInfo> measurements = timingInfo.getAllSubMeasurements(metric.name());
+            if (measurements == null || measurements.isEmpty()) {
+                continue;
+            }
+            LatencyHistogram perAttempt = null;
+            long total = 0;
+            int measured = 0;
+            for (TimingInfo measurement: measurements) {
+                if (!measurement.isEndTimeKnown()) {
+                    continue;
+                }
+                long micros = TimeUnit.NANOSECONDS.toMicros(
+                    measurement.getEndTimeNano() - measurement.getStartTimeNano());
+                if (perAttempt == null) {
+                    perAttempt = histogram(serviceName, requestType, metric, Scope.Attempt);
+                }
+                perAttempt.recordValue(micros);
+                total += micros;
+                measured++;
+            }
+            if (measured > 0) {
+                histogram(serviceName, requestType, metric, Scope.Request).recordValue(total);
+            }
+        }
+    }
+
+    private LatencyHistogram histogram(String serviceName,
+            String requestType, MetricType metricType, Scope scope) {
+        Key key = new Key(serviceName, requestType, metricType, scope);
+        LatencyHistogram histogram = histograms.get(key);
+        if (histogram == null) {
+            LatencyHistogram newHistogram = new LatencyHistogram();
+            histogram = histograms.putIfAbsent(key, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Returns a read-only live view of the histograms recorded so far.
+     */
+    public Map<Key, LatencyHistogram> getHistograms() {
+        return Collections.unmodifiableMap(histograms);
+    }
+
+    /** Forgets all the histograms recorded so far. */
+    public void reset() {
+        histograms.clear();
+    }
+
+    /**
+     * Identifies a latency histogram.
+     */
+    @Immutable
+    public static final class Key {
+        private final String serviceName;
+        private final String requestType;
+        private final MetricType metricType;
+        private final Scope scope;
+
+        Key(String serviceName, String requestType, MetricType metricType, Scope scope) {
+            this.serviceName = serviceName;
+            this.requestType = requestType;
+            this.metricType = metricType;
+            this.scope = scope;
+        }
+
+        public String getServiceName() {
+            return serviceName;
+        }
+
+        public String getRequestType() {
+            return requestType;
+        }
+
+        public MetricType getMetricType() {
+            return metricType;
+        }
+
+        public Scope getScope() {
+            return scope;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = serviceName == null ? 0 : serviceName.hashCode();
+            h = 31 * h + (requestType == null ? 0 : requestType.hashCode());
+            h = 31 * h + metricType.hashCode();
+            return 31 * h + scope.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) obj;
+            return scope == that.scope
+                && metricType.equals(that.metricType)
+                && (serviceName == null ? that.serviceName == null : serviceName.equals(that.serviceName))
+                && (requestType == null ? that.requestType == null : requestType.equals(that.requestType));
+        }
+
+        @Override
+        public String toString() {
+            return serviceName + "/" + requestType + "/" + metricType.name() + "/" + scope;
+        }
+    }
+}
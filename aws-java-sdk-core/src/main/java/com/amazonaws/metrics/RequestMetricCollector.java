@@ -43,6 +43,12 @@ public abstract class RequestMetricCollector {
     public abstract void collectMetrics(Request<?> request, Response<?> response);
     public boolean isEnabled() { return true; }
 
+    /**
+     * Returns the latency histograms of the requests this collector has
+     * collected the metrics of; or null if it doesn't record any.
+     */
+    public RequestLatencyHistograms getLatencyHistograms() { return null; }
+
     /** A convenient instance of a no-op request metric collector. */
     public static final RequestMetricCollector NONE = new RequestMetricCollector() {
         @Override public void collectMetrics(Request<?> request, Response<?> response) {}
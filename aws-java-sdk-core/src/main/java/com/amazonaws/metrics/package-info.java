@@ -53,6 +53,12 @@
  * This metric is collected from the respective <a 
  * href="https://hc.apache.org/httpcomponents-core-ga/httpcore/apidocs/org/apache/http/pool/PoolStats.html"
  * >PoolStats</a>. before the connection of a request is obtained</li>
+ * <li>HttpClientPoolLeaseWaitTime - Number of milliseconds taken to lease a
+ * connection from the connection pool of the underlying httpclient, including
+ * any wait for a free connection. Captured on a per request type level.</li>
+ * <li>HttpClientPoolReusedConnectionCount - Number of physical requests sent
+ * over a pooled connection rather than a newly opened one. Divided by the
+ * number of physical requests, it gives the connection reuse ratio.</li>
  * <li>HttpRequestTime - Number of milliseconds taken for a logical request/response 
  * round trip to AWS. Captured on a per request type level.</li>
  * <li>HttpClientSendRequestTime - Number of milliseconds taken for a physical request
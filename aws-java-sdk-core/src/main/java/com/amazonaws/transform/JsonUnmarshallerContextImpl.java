@@ -21,16 +21,27 @@ import static com.fasterxml.jackson.core.JsonToken.START_ARRAY;
 import static com.fasterxml.jackson.core.JsonToken.START_OBJECT;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Stack;
 
 import com.amazonaws.http.HttpResponse;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 
+/**
+ * Unmarshaller context that streams tokens from a Jackson {@link JsonParser}.
+ * <p>
+ * Field names are returned by the parser as canonical, interned strings, so
+ * neither recurring field names (such as DynamoDB attribute names) nor the
+ * fields and values skipped by the unmarshallers are materialized as new
+ * strings; and the position in the document is tracked without allocating
+ * per nested object or array.
+ */
 public class JsonUnmarshallerContextImpl extends JsonUnmarshallerContext {
 
+    private static final int INITIAL_STACK_CAPACITY = 16;
+
     /** The current JsonToken that the private JsonParser is currently pointing to. **/
     private JsonToken currentToken;
 
@@ -42,7 +53,8 @@ public class JsonUnmarshallerContextImpl extends JsonUnmarshallerContext {
     private String currentHeader;
 
     /**
-     * A stack of JsonFieldTokenPair objects that indicates the current state of the context.
+     * A stack of (field, token) pairs that indicates the current state of the
+     * context, held in the parallel arrays stackFields and stackTokens.
      * For example, if we have a JSON object:
      * {
      *   A :
@@ -59,7 +71,9 @@ public class JsonUnmarshallerContextImpl extends JsonUnmarshallerContext {
      * When the parser points to "D", the state of this stack should be (from top to bottom):
      *  [ (C, START_OBJECT), (B, START_ARRAY), (A, START_OBJECT) ]
      */
-    private final Stack<JsonFieldTokenPair> stack = new Stack<JsonFieldTokenPair>();
+    private String[] stackFields = new String[INITIAL_STACK_CAPACITY];
+    private JsonToken[] stackTokens = new JsonToken[INITIAL_STACK_CAPACITY];
+    private int stackSize;
 
     /**
      * The name of the field that is currently being parsed. This value is
@@ -109,7 +123,7 @@ public class JsonUnmarshallerContextImpl extends JsonUnmarshallerContext {
 
     @Override
     public int getCurrentDepth() {
-        int depth = stack.size();
+        int depth = stackSize;
         if (currentField != null) depth++;
         return depth;
     }
@@ -131,8 +145,11 @@ public class JsonUnmarshallerContextImpl extends JsonUnmarshallerContext {
         case VALUE_FALSE: return "false";
         case VALUE_TRUE: return "true";
         case VALUE_NULL: return null;
-        case VALUE_NUMBER_FLOAT:
         case VALUE_NUMBER_INT:
+            // The text of an integer is already in canonical form, so there
+            // is no need to materialize the number first.
+            return jsonParser.getText();
+        case VALUE_NUMBER_FLOAT:
             return jsonParser.getNumberValue().toString();
         case FIELD_NAME:
             return jsonParser.getText();
@@ -157,12 +174,12 @@ public class JsonUnmarshallerContextImpl extends JsonUnmarshallerContext {
         if (expression.equals(".")) {
             return true;
         } else {
-            if (currentField != null) {
-                return currentField.equals(expression);
-            } else {
-                return (!stack.isEmpty())
-                        && stack.peek().getField().equals(expression);
-            }
+            String field = (currentField != null) ? currentField : peekField();
+            // Field names are interned by the parser, as are the constant
+            // expressions of the unmarshallers, so this is usually an
+            // identity check.
+            return field != null
+                    && (field == expression || field.equals(expression));
         }
     }
 
@@ -171,8 +188,8 @@ public class JsonUnmarshallerContextImpl extends JsonUnmarshallerContext {
         String parentElement;
         if (currentField != null) {
             parentElement = currentField;
-        } else if ( !stack.isEmpty() ) {
-            parentElement = stack.peek().getField();
+        } else if (stackSize > 0) {
+            parentElement = peekField();
         } else {
             parentElement = "";
         }
@@ -184,8 +201,10 @@ public class JsonUnmarshallerContextImpl extends JsonUnmarshallerContext {
         if (expression.equals(".")) {
             return true;
         } else {
-            return testExpression(expression)
-                    && stackDepth == getCurrentDepth();
+            // Checking the depth first is cheap, and rules out most
+            // expressions while skipping over fields that are not modeled.
+            return stackDepth == getCurrentDepth()
+                    && testExpression(expression);
         }
     }
 
@@ -237,31 +256,53 @@ public class JsonUnmarshallerContextImpl extends JsonUnmarshallerContext {
 
         if (currentToken == START_OBJECT || currentToken == START_ARRAY) {
             if (currentField != null) {
-                stack.push(new JsonFieldTokenPair(currentField, currentToken));
+                push(currentField, currentToken);
                 currentField = null;
             }
         } else if (currentToken == END_OBJECT || currentToken == END_ARRAY) {
-            if (!stack.isEmpty()) {
-                boolean squareBracketsMatch = currentToken == END_ARRAY && stack.peek().getToken() == START_ARRAY;
-                boolean curlyBracketsMatch = currentToken == END_OBJECT && stack.peek().getToken() == START_OBJECT;
+            if (stackSize > 0) {
+                JsonToken startToken = stackTokens[stackSize - 1];
+                boolean squareBracketsMatch = currentToken == END_ARRAY && startToken == START_ARRAY;
+                boolean curlyBracketsMatch = currentToken == END_OBJECT && startToken == START_OBJECT;
                 if (squareBracketsMatch || curlyBracketsMatch) {
-                    lastParsedParentElement = stack.pop().getField();
+                    lastParsedParentElement = pop();
                 }
             }
             currentField = null;
         } else if (currentToken == FIELD_NAME) {
-            String t = jsonParser.getText();
-            currentField = t;
+            currentField = jsonParser.getCurrentName();
         }
     }
 
+    private void push(String field, JsonToken token) {
+        if (stackSize == stackFields.length) {
+            stackFields = Arrays.copyOf(stackFields, stackSize * 2);
+            stackTokens = Arrays.copyOf(stackTokens, stackSize * 2);
+        }
+        stackFields[stackSize] = field;
+        stackTokens[stackSize] = token;
+        stackSize++;
+    }
+
+    private String pop() {
+        stackSize--;
+        String field = stackFields[stackSize];
+        stackFields[stackSize] = null;
+        stackTokens[stackSize] = null;
+        return field;
+    }
+
+    private String peekField() {
+        return stackSize > 0 ? stackFields[stackSize - 1] : null;
+    }
+
     @Override
     public String toString() {
         StringBuilder stackString = new StringBuilder();
 
-        for (JsonFieldTokenPair jsonFieldTokenPair : stack) {
+        for (int i = 0; i < stackSize; i++) {
             stackString.append("/")
-                       .append(jsonFieldTokenPair.getField());
+                       .append(stackFields[i]);
         }
 
         if (currentField != null) {
@@ -276,37 +317,4 @@ public class JsonUnmarshallerContextImpl extends JsonUnmarshallerContext {
     public String getLastParsedParentElement() {
         return lastParsedParentElement;
     }
-
-    /**
-     * An immutable class used to indicate a JSON field value followed by a
-     * subsequent JSON token. This inner class should only be used by the
-     * private stack to indicate the current state of the context.
-     */
-    private static class JsonFieldTokenPair {
-        private final String field;
-        private final JsonToken jsonToken;
-
-        /**
-         * @param fieldString
-         *            Not null.
-         * @param token
-         *            Not null.
-         */
-        public JsonFieldTokenPair(String fieldString, JsonToken token) {
-            field = fieldString;
-            jsonToken = token;
-        }
-
-        public String getField() {
-            return field;
-        }
-
-        public JsonToken getToken() {
-            return jsonToken;
-        }
-
-        public String toString() {
-            return field + ": " + jsonToken.asString();
-        }
-    }
 }
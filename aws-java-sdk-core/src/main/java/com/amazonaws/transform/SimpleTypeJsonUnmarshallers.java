@@ -21,6 +21,8 @@ import java.util.Date;
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.util.Base64;
 import com.amazonaws.util.DateUtils;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 
 public class SimpleTypeJsonUnmarshallers {
     /**
@@ -182,6 +184,13 @@ public class SimpleTypeJsonUnmarshallers {
      */
     public static class ByteBufferJsonUnmarshaller implements Unmarshaller<ByteBuffer, JsonUnmarshallerContext> {
         public ByteBuffer unmarshall(JsonUnmarshallerContext unmarshallerContext) throws Exception {
+            JsonParser jsonParser = unmarshallerContext.getJsonParser();
+            if (jsonParser != null && !unmarshallerContext.isInsideResponseHeader()
+                    && unmarshallerContext.getCurrentToken() == JsonToken.VALUE_STRING) {
+                // Decode straight from the parser's buffer, rather than
+                // materializing the base64 encoded string first.
+                return ByteBuffer.wrap(jsonParser.getBinaryValue());
+            }
             String base64EncodedString = unmarshallerContext.readText();
             byte[] decodedBytes = Base64.decode(base64EncodedString);
             return ByteBuffer.wrap(decodedBytes);
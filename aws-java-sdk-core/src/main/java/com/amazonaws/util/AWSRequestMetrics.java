@@ -130,6 +130,17 @@ public class AWSRequestMetrics {
          * /apidocs/org/apache/http/pool/PoolStats.html
          */
         HttpClientPoolPendingCount,
+        /**
+         * Time taken to lease a connection from the connection pool, including
+         * any wait for a free connection.
+         */
+        HttpClientPoolLeaseWaitTime,
+        /**
+         * The number of connections leased from the connection pool that were
+         * reused rather than newly opened; together with the number of
+         * requests sent, it gives the connection reuse ratio.
+         */
+        HttpClientPoolReusedConnectionCount,
         RetryPauseTime,
 //      S3DownloadThroughput, // migrated to S3RequestMetric in the S3 clint library
 //      S3UploadThroughput,   // migrated to S3RequestMetric in the S3 clint library
@@ -17,14 +17,38 @@ package com.amazonaws.util;
 import java.io.IOException;
 import java.io.InputStream;
 
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
 import org.xml.sax.ContentHandler;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 import org.xml.sax.helpers.XMLReaderFactory;
 
 public class XmlUtils {
 
+    /**
+     * The XMLInputFactory of each thread. Factories are expensive to create,
+     * and not guaranteed to be thread safe; confining each one to a thread
+     * avoids both the cost and synchronizing on a shared factory.
+     */
+    private static final ThreadLocal<XMLInputFactory> xmlInputFactory = new ThreadLocal<XMLInputFactory>() {
+        @Override
+        protected XMLInputFactory initialValue() {
+            return XMLInputFactory.newInstance();
+        }
+    };
+
+    /** The SAX reader of each thread that is not currently parsing. */
+    private static final ThreadLocal<XMLReader> idleXmlReader = new ThreadLocal<XMLReader>();
+
+    /** Handler set on idle readers, so that they don't hold on to the last one used. */
+    private static final DefaultHandler NO_OP_HANDLER = new DefaultHandler();
+
     public static XMLReader parse(InputStream in, ContentHandler handler)
             throws SAXException, IOException {
 
@@ -35,4 +59,50 @@ public class XmlUtils {
         return reader;
     }
 
+    /**
+     * Creates an event reader for the given XML document, with the
+     * XMLInputFactory of the current thread.
+     */
+    public static XMLEventReader createXMLEventReader(InputStream in) throws XMLStreamException {
+        return xmlInputFactory.get().createXMLEventReader(in);
+    }
+
+    /**
+     * Creates a stream reader for the given XML document, with the
+     * XMLInputFactory of the current thread.
+     */
+    public static XMLStreamReader createXMLStreamReader(InputStream in) throws XMLStreamException {
+        return xmlInputFactory.get().createXMLStreamReader(in);
+    }
+
+    /**
+     * Returns a SAX reader for the exclusive use of the caller, reusing the
+     * one last released on the current thread if there is one. Pass it to
+     * {@link #releaseXMLReader(XMLReader)} once done parsing to make it
+     * available for reuse. Readers are reused as they are, so callers should
+     * not change their features or properties.
+     */
+    public static XMLReader acquireXMLReader() throws SAXException {
+        XMLReader reader = idleXmlReader.get();
+        if (reader == null) {
+            return XMLReaderFactory.createXMLReader();
+        }
+        // taken out, so that a nested parse on this thread gets a reader of its own
+        idleXmlReader.remove();
+        return reader;
+    }
+
+    /**
+     * Makes a reader returned by {@link #acquireXMLReader()} available for
+     * reuse on the current thread. Only release readers whose last parse
+     * completed normally; a reader abandoned in the middle of a document
+     * should be discarded instead.
+     */
+    public static void releaseXMLReader(XMLReader reader) {
+        reader.setContentHandler(NO_OP_HANDLER);
+        reader.setErrorHandler(NO_OP_HANDLER);
+        reader.setDTDHandler(NO_OP_HANDLER);
+        reader.setEntityResolver(NO_OP_HANDLER);
+        idleXmlReader.set(reader);
+    }
 }
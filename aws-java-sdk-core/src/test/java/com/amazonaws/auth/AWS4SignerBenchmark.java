@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Request;
+import com.amazonaws.http.HttpMethodName;
+import com.amazonaws.util.StringUtils;
+
+/**
+ * Measures the time and the memory allocated to sign S3, DynamoDB and SQS
+ * style requests with {@link AWS4Signer}. Not run as part of the tests; run
+ * its main method with the test classpath, optionally giving the number of
+ * requests signed in each measured round.
+ * <p>
+ * The allocated bytes are only reported on JVMs that count them per thread.
+ */
+public class AWS4SignerBenchmark {
+
+    private static final int WARMUP_ROUNDS = 10;
+
+    private static final int MEASURED_ROUNDS = 10;
+
+    private static final AWSCredentials CREDENTIALS = new BasicAWSCredentials("access", "secret");
+
+    private abstract static class RequestFactory {
+
+        final String name;
+
+        final AWS4Signer signer;
+
+        RequestFactory(String name, AWS4Signer signer, String serviceName, String regionName) {
+            this.name = name;
+            this.signer = signer;
+            signer.setServiceName(serviceName);
+            signer.setRegionName(regionName);
+        }
+
+        abstract Request<?> newRequest();
+    }
+
+    public static void main(String[] args) {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        RequestFactory[] factories = new RequestFactory[] {
+                new RequestFactory("S3 GET", new AWS4Signer(false), "s3", "us-west-2") {
+                    @Override
+                    Request<?> newRequest() {
+                        Request<?> request = new DefaultRequest<Void>("Amazon S3");
+                        request.setHttpMethod(HttpMethodName.GET);
+                        request.setEndpoint(URI.create("https://my-bucket.s3-us-west-2.amazonaws.com"));
+                        request.setResourcePath("photos/2015/ch\u00e2teau & caf\u00e9.jpg");
+                        request.addParameter("prefix", "photos/");
+                        request.addParameter("max-keys", "100");
+                        request.addHeader("x-amz-content-sha256", "required");
+                        request.addHeader("Range", "bytes=0-1023");
+                        return request;
+                    }
+                },
+                new RequestFactory("DynamoDB Query", new AWS4Signer(), "dynamodb", "us-east-1") {
+                    @Override
+                    Request<?> newRequest() {
+                        Request<?> request = new DefaultRequest<Void>("AmazonDynamoDBv2");
+                        request.setHttpMethod(HttpMethodName.POST);
+                        request.setEndpoint(URI.create("https://dynamodb.us-east-1.amazonaws.com"));
+                        request.setResourcePath("/");
+                        request.addHeader("X-Amz-Target", "DynamoDB_20120810.Query");
+                        request.addHeader("Content-Type", "application/x-amz-json-1.0");
+                        request.setContent(new ByteArrayInputStream(("{\"TableName\":\"Thread\","
+                                + "\"KeyConditionExpression\":\"ForumName = :name\","
+                                + "\"ExpressionAttributeValues\":{\":name\":{\"S\":\"Amazon DynamoDB\"}}}")
+                                .getBytes(StringUtils.UTF8)));
+                        return request;
+                    }
+                },
+                new RequestFactory("SQS SendMessageBatch", new AWS4Signer(), "sqs", "eu-west-1") {
+                    @Override
+                    Request<?> newRequest() {
+                        Request<?> request = new DefaultRequest<Void>("AmazonSQS");
+                        request.setHttpMethod(HttpMethodName.POST);
+                        request.setEndpoint(URI.create("https://sqs.eu-west-1.amazonaws.com"));
+                        request.setResourcePath("/123456789012/my-queue");
+                        request.addParameter("Action", "SendMessageBatch");
+                        request.addParameter("Version", "2012-11-05");
+                        for (int i = 1; i <= 10; i++) {
+                            request.addParameter("SendMessageBatchRequestEntry." + i + ".Id", "msg" + i);
+                            request.addParameter("SendMessageBatchRequestEntry." + i + ".MessageBody",
+                                    "hello world " + i);
+                        }
+                        return request;
+                    }
+                } };
+
+        for (RequestFactory factory : factories) {
+            for (int round = 0; round < WARMUP_ROUNDS; round++) {
+                signAll(factory, requests);
+            }
+            long nanos = 0;
+            long bytes = 0;
+            for (int round = 0; round < MEASURED_ROUNDS; round++) {
+                long[] result = signAll(factory, requests);
+                nanos += result[0];
+                bytes += result[1];
+            }
+            long ops = (long) requests * MEASURED_ROUNDS;
+            System.out.println(factory.name + ": " + nanos / ops + " ns/op, "
+                    + (bytes < 0 ? "unknown" : String.valueOf(bytes / ops)) + " bytes allocated/op");
+        }
+    }
+
+    /**
+     * Signs new requests, created before the measurement starts.
+     *
+     * @return the time elapsed and the bytes allocated, or a negative count
+     *         of bytes if unknown
+     */
+    private static long[] signAll(RequestFactory factory, int count) {
+        Request<?>[] requests = new Request<?>[count];
+        for (int i = 0; i < count; i++) {
+            requests[i] = factory.newRequest();
+        }
+        long startBytes = allocatedBytes();
+        long startNanos = System.nanoTime();
+        for (Request<?> request : requests) {
+            factory.signer.sign(request, CREDENTIALS);
+        }
+        long nanos = System.nanoTime() - startNanos;
+        long endBytes = allocatedBytes();
+        return new long[] { nanos, startBytes < 0 ? -1 : endBytes - startBytes };
+    }
+
+    /**
+     * @return the bytes allocated by the current thread so far, or -1 if the
+     *         JVM doesn't tell
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspotThreads = (com.sun.management.ThreadMXBean) threads;
+            if (hotspotThreads.isThreadAllocatedMemorySupported()
+                    && hotspotThreads.isThreadAllocatedMemoryEnabled()) {
+                return hotspotThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
@@ -36,6 +36,8 @@ import org.junit.Test;
 import com.amazonaws.DefaultRequest;
 import com.amazonaws.Request;
 import com.amazonaws.auth.internal.AWS4SignerUtils;
+import com.amazonaws.http.HttpMethodName;
+import com.amazonaws.util.StringUtils;
 
 /**
  * Unit tests for the
@@ -137,6 +139,95 @@ public class AWS4SignerTest {
         assertNull(request.getHeaders().get("Authorization"));
     }
 
+    /**
+     * Golden signatures for representative S3, DynamoDB and SQS style
+     * requests, so that any optimization of the signing path is verified to
+     * produce byte-identical results.
+     */
+    @Test
+    public void testGoldenSignatures() throws Exception {
+        AWSCredentials credentials = new BasicAWSCredentials("access", "secret");
+        Calendar c = new GregorianCalendar();
+        c.set(1981, 1, 16, 6, 30, 0);
+        c.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        AWS4Signer s3Signer = new AWS4Signer(false);
+        s3Signer.setServiceName("s3");
+        s3Signer.setRegionName("us-west-2");
+        s3Signer.setOverrideDate(c.getTime());
+        Request<?> s3Request = generateS3StyleRequest();
+        s3Signer.sign(s3Request, credentials);
+        assertEquals("AWS4-HMAC-SHA256 Credential=access/19810216/us-west-2/s3/aws4_request, SignedHeaders=host;range;x-amz-content-sha256;x-amz-date;x-amz-meta-note, Signature=3a2a19b4d0a50de9f1f5fff73e55de17583c5e05de297625b004580f3abaed7b", s3Request.getHeaders().get("Authorization"));
+
+        AWS4Signer ddbSigner = new AWS4Signer();
+        ddbSigner.setServiceName("dynamodb");
+        ddbSigner.setRegionName("us-east-1");
+        ddbSigner.setOverrideDate(c.getTime());
+        Request<?> ddbRequest = generateDynamoDBStyleRequest();
+        ddbSigner.sign(ddbRequest, new BasicSessionCredentials("access", "secret", "token"));
+        assertEquals("AWS4-HMAC-SHA256 Credential=access/19810216/us-east-1/dynamodb/aws4_request, SignedHeaders=content-type;host;x-amz-date;x-amz-security-token;x-amz-target, Signature=650ede50f990872cdaa4c218b824ea43d655c2d27492865dafcbf8c8aa2f503d", ddbRequest.getHeaders().get("Authorization"));
+
+        AWS4Signer sqsSigner = new AWS4Signer();
+        sqsSigner.setServiceName("sqs");
+        sqsSigner.setRegionName("eu-west-1");
+        sqsSigner.setOverrideDate(c.getTime());
+        Request<?> sqsRequest = generateSQSStyleRequest();
+        sqsSigner.sign(sqsRequest, credentials);
+        assertEquals("AWS4-HMAC-SHA256 Credential=access/19810216/eu-west-1/sqs/aws4_request, SignedHeaders=host;x-amz-date, Signature=6fd1e75b742fc10e219bcf181f73e4d8c4472c7fe5ffb747ff2e5c0a54ddebc5", sqsRequest.getHeaders().get("Authorization"));
+
+        // Signing the same requests again must hit the signing key cache and
+        // the per-thread signing state without changing the signatures.
+        Request<?> again = generateSQSStyleRequest();
+        sqsSigner.sign(again, credentials);
+        assertEquals(sqsRequest.getHeaders().get("Authorization"),
+                again.getHeaders().get("Authorization"));
+    }
+
+    private Request<?> generateS3StyleRequest() {
+        Request<?> request = new DefaultRequest<Void>("Amazon S3");
+        request.setHttpMethod(HttpMethodName.GET);
+        request.setEndpoint(URI.create("https://my-bucket.s3-us-west-2.amazonaws.com"));
+        request.setResourcePath("photos/2015/ch\u00e2teau & caf\u00e9 ~x.jpg");
+        request.addParameter("prefix", "a b/c");
+        request.addParameter("max-keys", "100");
+        request.addParameter("marker", "z*");
+        request.addParameter("list-type", "");
+        request.addParameter("tag", "b");
+        request.addParameter("tag", "a");
+        request.addHeader("x-amz-content-sha256", "required");
+        request.addHeader("Range", "bytes=0-1023");
+        request.addHeader("X-Amz-Meta-Note", "  leading\t and\r\n  trailing  ");
+        return request;
+    }
+
+    private Request<?> generateDynamoDBStyleRequest() {
+        Request<?> request = new DefaultRequest<Void>("AmazonDynamoDBv2");
+        request.setHttpMethod(HttpMethodName.POST);
+        request.setEndpoint(URI.create("https://dynamodb.us-east-1.amazonaws.com"));
+        request.setResourcePath("/");
+        request.addHeader("X-Amz-Target", "DynamoDB_20120810.Query");
+        request.addHeader("Content-Type", "application/x-amz-json-1.0");
+        request.setContent(new ByteArrayInputStream(("{\"TableName\":\"Thread\","
+                + "\"KeyConditionExpression\":\"ForumName = :name\","
+                + "\"ExpressionAttributeValues\":{\":name\":{\"S\":\"Amazon DynamoDB\"}}}")
+                .getBytes(StringUtils.UTF8)));
+        return request;
+    }
+
+    private Request<?> generateSQSStyleRequest() {
+        Request<?> request = new DefaultRequest<Void>("AmazonSQS");
+        request.setHttpMethod(HttpMethodName.POST);
+        request.setEndpoint(URI.create("https://sqs.eu-west-1.amazonaws.com:8443"));
+        request.setResourcePath("/123456789012/my-queue");
+        request.addParameter("Action", "SendMessageBatch");
+        request.addParameter("Version", "2012-11-05");
+        request.addParameter("SendMessageBatchRequestEntry.1.Id", "msg1");
+        request.addParameter("SendMessageBatchRequestEntry.1.MessageBody", "hello world & more=stuff");
+        request.addParameter("SendMessageBatchRequestEntry.2.Id", "msg2");
+        request.addParameter("SendMessageBatchRequestEntry.2.MessageBody", "\u00fcnic\u00f8de");
+        return request;
+    }
+
     private Request<?> generateBasicRequest() {
         Request<?> request = new DefaultRequest<Void>("Foo");
         request.setContent(new ByteArrayInputStream("{\"TableName\": \"foo\"}".getBytes()));
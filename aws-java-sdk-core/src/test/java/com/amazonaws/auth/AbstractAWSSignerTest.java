@@ -1,9 +1,22 @@
 package com.amazonaws.auth;
 
+import static com.amazonaws.util.StringUtils.UTF8;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
 import org.junit.Test;
 
+import com.amazonaws.util.SdkHttpUtils;
+
 public class AbstractAWSSignerTest {
 
     @Test
@@ -13,4 +26,72 @@ public class AbstractAWSSignerTest {
             AbstractAWSSigner.EMPTY_STRING_SHA256_HEX);
     }
 
+    @Test
+    public void testHashAndSignStringsAsBytes() {
+        AbstractAWSSigner signer = new AWS4Signer();
+        byte[] key = "key".getBytes(UTF8);
+        char[] longText = new char[20000];
+        Arrays.fill(longText, '\u20ac');
+        // Including malformed surrogates, replaced as by String.getBytes, and
+        // strings longer than the reused buffer
+        for (String text : Arrays.asList("", "abc", "\u00e9t\u00e9 \ud83d\ude00",
+                "\ud83d lone \ude00", "\ud83d", new String(longText), "short again")) {
+            byte[] bytes = text.getBytes(UTF8);
+            assertArrayEquals(text, signer.hash(bytes), signer.hash(text));
+            assertArrayEquals(text, signer.sign(bytes, key, SigningAlgorithm.HmacSHA256),
+                    signer.sign(text, key, SigningAlgorithm.HmacSHA256));
+            assertArrayEquals(text, signer.sign(bytes, key, SigningAlgorithm.HmacSHA1),
+                    signer.sign(text, key, SigningAlgorithm.HmacSHA1));
+        }
+    }
+
+    @Test
+    public void testCanonicalizedQueryString() {
+        AbstractAWSSigner signer = new AWS4Signer();
+        Map<String, List<String>> parameters = new LinkedHashMap<String, List<String>>();
+        assertEquals("", signer.getCanonicalizedQueryString(parameters));
+
+        parameters.put("Version", Arrays.asList("2012-11-05"));
+        parameters.put("Action", Arrays.asList("ListQueues"));
+        parameters.put("tag", Arrays.asList("b", "a", "B", "a b", "a+b"));
+        parameters.put("a b", Arrays.asList("*", "~", "%", "/", "\u00e9", "\ud83d\ude00", "\ud83d"));
+        parameters.put("a*b", Arrays.asList(""));
+        parameters.put("a~b", Collections.singletonList((String) null));
+        parameters.put("\u00e9", Arrays.asList("x"));
+        parameters.put("A", Arrays.asList("1"));
+        parameters.put("a", Arrays.asList("2"));
+        assertEquals(canonicalizeWithTreeMap(parameters), signer.getCanonicalizedQueryString(parameters));
+
+        parameters.clear();
+        parameters.put("tag", Arrays.asList("b", "a"));
+        parameters.put("Action", Arrays.asList("x y*"));
+        assertEquals("Action=x%20y%2A&tag=a&tag=b", signer.getCanonicalizedQueryString(parameters));
+    }
+
+    /**
+     * The canonicalization of query string parameters before it avoided
+     * sorted maps.
+     */
+    private static String canonicalizeWithTreeMap(Map<String, List<String>> parameters) {
+        SortedMap<String, List<String>> sorted = new TreeMap<String, List<String>>();
+        for (Map.Entry<String, List<String>> entry : parameters.entrySet()) {
+            List<String> encodedValues = new ArrayList<String>();
+            for (String value : entry.getValue()) {
+                encodedValues.add(SdkHttpUtils.urlEncode(value, false));
+            }
+            Collections.sort(encodedValues);
+            sorted.put(SdkHttpUtils.urlEncode(entry.getKey(), false), encodedValues);
+        }
+        StringBuilder result = new StringBuilder();
+        for (Map.Entry<String, List<String>> entry : sorted.entrySet()) {
+            for (String value : entry.getValue()) {
+                if (result.length() > 0) {
+                    result.append("&");
+                }
+                result.append(entry.getKey()).append("=").append(value);
+            }
+        }
+        return result.toString();
+    }
+
 }
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.auth.AWS4Signer.SigningCacheKey;
+import com.amazonaws.internal.ConcurrentLRUCache;
+import com.amazonaws.internal.FIFOCache;
+
+/**
+ * Compares the throughput of the signing key cache of {@link AWS4Signer},
+ * a {@link ConcurrentLRUCache} looked up with a reused
+ * {@link SigningCacheKey}, with that of the {@link FIFOCache} looked up with
+ * a string key it replaced, when threads contend on it: mostly lookups of the
+ * same few hundred entries, and an occasional new entry. Not run as part of
+ * the tests; run its main method with the test classpath.
+ */
+public class SignerCacheBenchmark {
+
+    /** As the signer cache of AWS4Signer */
+    private static final int MAX_SIZE = 300;
+
+    /** The entries looked up, all in the cache unless evicted by new ones */
+    private static final int HOT_KEYS = 200;
+
+    /** One lookup in this many adds a new entry */
+    private static final int ADD_EVERY = 1000;
+
+    private static final int[] THREAD_COUNTS = { 1, 2, 4, 8, 16, 32, 64 };
+
+    private static final long WARMUP_MILLIS = 1000;
+
+    private static final long MEASURED_MILLIS = 2000;
+
+    private static final String[] REGIONS = { "us-east-1", "us-west-2", "eu-west-1", "ap-northeast-1" };
+
+    private static final String[] SERVICES = { "s3", "dynamodb", "sqs", "kinesis", "sns" };
+
+    /** The secret key, region name and service name of a signing key */
+    private static final class Scope {
+        final String secretKey;
+        final String regionName;
+        final String serviceName;
+
+        Scope(String secretKey, String regionName, String serviceName) {
+            this.secretKey = secretKey;
+            this.regionName = regionName;
+            this.serviceName = serviceName;
+        }
+    }
+
+    /** A cache as used by one thread */
+    private abstract static class Cache {
+
+        /** Returns whether the signing key of the given scope was cached */
+        abstract boolean get(Scope scope);
+
+        abstract void add(Scope scope);
+    }
+
+    private abstract static class CacheFactory {
+
+        final String name;
+
+        CacheFactory(String name) {
+            this.name = name;
+        }
+
+        /** Returns a new cache shared by the caches of each thread */
+        abstract Object newSharedCache();
+
+        abstract Cache newThreadCache(Object sharedCache);
+    }
+
+    private static final byte[] SIGNING_KEY = new byte[32];
+
+    private static final CacheFactory[] FACTORIES = {
+            new CacheFactory("ConcurrentLRUCache<SigningCacheKey>") {
+                @Override
+                Object newSharedCache() {
+                    return new ConcurrentLRUCache<SigningCacheKey, byte[]>(MAX_SIZE);
+                }
+
+                @Override
+                Cache newThreadCache(Object sharedCache) {
+                    @SuppressWarnings("unchecked")
+                    final ConcurrentLRUCache<SigningCacheKey, byte[]> lruCache =
+                        (ConcurrentLRUCache<SigningCacheKey, byte[]>) sharedCache;
+                    final SigningCacheKey lookupKey = new SigningCacheKey();
+                    return new Cache() {
+                        @Override
+                        boolean get(Scope scope) {
+                            lookupKey.set(scope.secretKey, scope.regionName, scope.serviceName);
+                            try {
+                                return lruCache.get(lookupKey) != null;
+                            } finally {
+                                lookupKey.clear();
+                            }
+                        }
+
+                        @Override
+                        void add(Scope scope) {
+                            lruCache.add(new SigningCacheKey().set(scope.secretKey,
+                                    scope.regionName, scope.serviceName), SIGNING_KEY);
+                        }
+                    };
+                }
+            },
+            new CacheFactory("FIFOCache<String>") {
+                @Override
+                Object newSharedCache() {
+                    return new FIFOCache<byte[]>(MAX_SIZE);
+                }
+
+                @Override
+                Cache newThreadCache(Object sharedCache) {
+                    @SuppressWarnings("unchecked")
+                    final FIFOCache<byte[]> fifoCache = (FIFOCache<byte[]>) sharedCache;
+                    return new Cache() {
+                        @Override
+                        boolean get(Scope scope) {
+                            return fifoCache.get(key(scope)) != null;
+                        }
+
+                        @Override
+                        void add(Scope scope) {
+                            fifoCache.add(key(scope), SIGNING_KEY);
+                        }
+
+                        /** As computed by AWS4Signer before the cache was replaced */
+                        private String key(Scope scope) {
+                            return new StringBuilder(scope.secretKey).append("-")
+                                    .append(scope.regionName).append("-")
+                                    .append(scope.serviceName).toString();
+                        }
+                    };
+                }
+            } };
+
+    public static void main(String[] args) throws InterruptedException {
+        final Scope[] scopes = new Scope[HOT_KEYS];
+        for (int i = 0; i < HOT_KEYS; i++) {
+            scopes[i] = new Scope("wJalrXUtnFEMI/K7MDENG/bPxRfiCYSECRET" + i / 20,
+                    REGIONS[i % REGIONS.length], SERVICES[i / REGIONS.length % SERVICES.length]);
+        }
+        for (int threads : THREAD_COUNTS) {
+            for (CacheFactory factory : FACTORIES) {
+                Object sharedCache = factory.newSharedCache();
+                Cache cache = factory.newThreadCache(sharedCache);
+                for (Scope scope : scopes) {
+                    cache.add(scope);
+                }
+                run(factory, sharedCache, scopes, threads, WARMUP_MILLIS);
+                long ops = run(factory, sharedCache, scopes, threads, MEASURED_MILLIS);
+                System.out.println(factory.name + ", " + threads + " threads: "
+                        + ops * 1000 / MEASURED_MILLIS + " ops/s");
+            }
+        }
+    }
+
+    /**
+     * @return the number of operations done by all threads within the given
+     *         time
+     */
+    private static long run(final CacheFactory factory, final Object sharedCache,
+            final Scope[] scopes, int threadCount, final long millis) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicLong total = new AtomicLong();
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            final int seed = t;
+            final Cache cache = factory.newThreadCache(sharedCache);
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+                    long ops = 0;
+                    int index = seed * 7919;
+                    // Checking the time every so many operations
+                    while ((ops & 0xFF) != 0 || System.nanoTime() < deadline) {
+                        index = (index + 31) % scopes.length;
+                        if (ops % ADD_EVERY == ADD_EVERY - 1) {
+                            // A new secret key, as after a credentials rotation
+                            cache.add(new Scope("new" + seed + "-" + ops,
+                                    scopes[index].regionName, scopes[index].serviceName));
+                        } else if (!cache.get(scopes[index])) {
+                            // evicted by a new entry: derived again
+                            cache.add(scopes[index]);
+                        }
+                        ++ops;
+                    }
+                    total.addAndGet(ops);
+                }
+            };
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return total.get();
+    }
+}
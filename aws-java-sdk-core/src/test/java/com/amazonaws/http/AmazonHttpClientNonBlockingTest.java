@@ -0,0 +1,460 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceClient;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.AmazonWebServiceResponse;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.auth.AnonymousAWSCredentials;
+import com.amazonaws.internal.StaticCredentialsProvider;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.transform.Marshaller;
+import com.amazonaws.util.IOUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class AmazonHttpClientNonBlockingTest {
+
+    private HttpServer server;
+    private AmazonHttpClient client;
+    /** Status codes returned by the server, in order; 200 once exhausted. */
+    private final List<Integer> statusCodes = new ArrayList<Integer>();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    /** Counted down when a request to /slow is received. */
+    private final CountDownLatch slowRequestReceived = new CountDownLatch(1);
+    /** Holds the responses to /slow until counted down. */
+    private final CountDownLatch slowResponseReleased = new CountDownLatch(1);
+    private ExecutorService responseExecutor;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (exchange.getRequestURI().getPath().equals("/slow")) {
+                    slowRequestReceived.countDown();
+                    try {
+                        slowResponseReleased.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                int count = requestCount.getAndIncrement();
+                int statusCode;
+                synchronized (statusCodes) {
+                    statusCode = count < statusCodes.size() ? statusCodes.get(count) : 200;
+                }
+                byte[] body = ("response " + count).getBytes("UTF-8");
+                exchange.sendResponseHeaders(statusCode, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        client = new AmazonHttpClient(new ClientConfiguration()
+                .withNonBlockingTransport(true));
+        responseExecutor = Executors.newFixedThreadPool(2, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "response-executor");
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        slowResponseReleased.countDown();
+        client.shutdown();
+        responseExecutor.shutdownNow();
+        server.stop(0);
+    }
+
+    @Test
+    public void testSuccessfulRequest() throws Exception {
+        final AtomicReference<Response<String>> callbackResponse =
+            new AtomicReference<Response<String>>();
+        Future<Response<String>> future = client.executeAsync(newRequest(),
+                new StringResponseHandler(), new StatusCodeErrorHandler(),
+                new ExecutionContext(), responseExecutor, new AsyncResponseCallback<String>() {
+                    @Override
+                    public void onSuccess(Response<String> response) {
+                        callbackResponse.set(response);
+                    }
+
+                    @Override
+                    public void onError(Exception exception) {
+                        fail();
+                    }
+                });
+        Response<String> response = future.get(10, TimeUnit.SECONDS);
+        assertEquals("response 0", response.getAwsResponse());
+        assertSame(response, callbackResponse.get());
+        assertEquals(1, requestCount.get());
+    }
+
+    @Test
+    public void testRetryableErrorIsRetried() throws Exception {
+        statusCodes.add(500);
+        statusCodes.add(503);
+        Future<Response<String>> future = client.executeAsync(newRequest(),
+                new StringResponseHandler(), new StatusCodeErrorHandler(),
+                new ExecutionContext(), responseExecutor, null);
+        assertEquals("response 2",
+                future.get(10, TimeUnit.SECONDS).getAwsResponse());
+        assertEquals(3, requestCount.get());
+    }
+
+    @Test
+    public void testNonRetryableError() throws Exception {
+        statusCodes.add(400);
+        final CountDownLatch callbackCalled = new CountDownLatch(1);
+        Future<Response<String>> future = client.executeAsync(newRequest(),
+                new StringResponseHandler(), new StatusCodeErrorHandler(),
+                new ExecutionContext(), responseExecutor, new AsyncResponseCallback<String>() {
+                    @Override
+                    public void onSuccess(Response<String> response) {
+                    }
+
+                    @Override
+                    public void onError(Exception exception) {
+                        callbackCalled.countDown();
+                    }
+                });
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            AmazonServiceException ase = (AmazonServiceException) e.getCause();
+            assertEquals(400, ase.getStatusCode());
+        }
+        assertTrue(callbackCalled.await(10, TimeUnit.SECONDS));
+        assertEquals(1, requestCount.get());
+    }
+
+    @Test
+    public void testConcurrentRequests() throws Exception {
+        List<Future<Response<String>>> futures = new ArrayList<Future<Response<String>>>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(client.executeAsync(newRequest(),
+                    new StringResponseHandler(), new StatusCodeErrorHandler(),
+                    new ExecutionContext(), responseExecutor, null));
+        }
+        for (Future<Response<String>> future : futures) {
+            assertTrue(future.get(10, TimeUnit.SECONDS).getAwsResponse()
+                    .startsWith("response "));
+        }
+        assertEquals(100, requestCount.get());
+    }
+
+    @Test
+    public void testResponseHandledOnResponseExecutor() throws Exception {
+        final AtomicReference<String> handlerThread = new AtomicReference<String>();
+        final AtomicReference<String> callbackThread = new AtomicReference<String>();
+        Future<Response<String>> future = client.executeAsync(newRequest(),
+                new StringResponseHandler() {
+                    @Override
+                    public AmazonWebServiceResponse<String> handle(HttpResponse response)
+                            throws Exception {
+                        handlerThread.set(Thread.currentThread().getName());
+                        return super.handle(response);
+                    }
+                }, new StatusCodeErrorHandler(),
+                new ExecutionContext(), responseExecutor, new AsyncResponseCallback<String>() {
+                    @Override
+                    public void onSuccess(Response<String> response) {
+                        callbackThread.set(Thread.currentThread().getName());
+                    }
+
+                    @Override
+                    public void onError(Exception exception) {
+                        fail();
+                    }
+                });
+        future.get(10, TimeUnit.SECONDS);
+        assertEquals("response-executor", handlerThread.get());
+        assertEquals("response-executor", callbackThread.get());
+    }
+
+    @Test
+    public void testCancelAbortsExchange() throws Exception {
+        final CountDownLatch callbackCalled = new CountDownLatch(1);
+        final AtomicReference<Exception> callbackException = new AtomicReference<Exception>();
+        Future<Response<String>> future = client.executeAsync(newRequest("/slow"),
+                new StringResponseHandler(), new StatusCodeErrorHandler(),
+                new ExecutionContext(), responseExecutor, new AsyncResponseCallback<String>() {
+                    @Override
+                    public void onSuccess(Response<String> response) {
+                        callbackCalled.countDown();
+                    }
+
+                    @Override
+                    public void onError(Exception exception) {
+                        callbackException.set(exception);
+                        callbackCalled.countDown();
+                    }
+                });
+        assertTrue(slowRequestReceived.await(10, TimeUnit.SECONDS));
+        assertTrue(future.cancel(true));
+        // Reported well before the server responds
+        assertTrue(callbackCalled.await(5, TimeUnit.SECONDS));
+        assertTrue(callbackException.get() instanceof AmazonClientException);
+    }
+
+    @Test
+    public void testClientExecuteAsync() throws Exception {
+        AmazonNonBlockingTestClient testClient = new AmazonNonBlockingTestClient();
+        try {
+            final AtomicReference<String> handlerResult = new AtomicReference<String>();
+            Future<String> future = testClient.call("/", new AsyncHandler<AmazonWebServiceRequest, String>() {
+                @Override
+                public void onSuccess(AmazonWebServiceRequest request, String result) {
+                    handlerResult.set(result);
+                }
+
+                @Override
+                public void onError(Exception exception) {
+                    fail();
+                }
+            });
+            assertEquals("response 0", future.get(10, TimeUnit.SECONDS));
+            assertEquals("response 0", handlerResult.get());
+        } finally {
+            testClient.shutdown();
+        }
+    }
+
+    @Test
+    public void testClientExecuteAsyncCancel() throws Exception {
+        AmazonNonBlockingTestClient testClient = new AmazonNonBlockingTestClient();
+        try {
+            final CountDownLatch handlerCalled = new CountDownLatch(1);
+            Future<String> future = testClient.call("/slow", new AsyncHandler<AmazonWebServiceRequest, String>() {
+                @Override
+                public void onSuccess(AmazonWebServiceRequest request, String result) {
+                    handlerCalled.countDown();
+                }
+
+                @Override
+                public void onError(Exception exception) {
+                    handlerCalled.countDown();
+                }
+            });
+            assertTrue(slowRequestReceived.await(10, TimeUnit.SECONDS));
+            assertTrue(future.cancel(true));
+            try {
+                future.get();
+                fail();
+            } catch (CancellationException expected) {
+            }
+            assertTrue(testClient.exchangeDone.await(5, TimeUnit.SECONDS));
+            // The handler isn't notified of a cancelled operation
+            assertFalse(handlerCalled.await(100, TimeUnit.MILLISECONDS));
+        } finally {
+            testClient.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNotEnabled() {
+        AmazonHttpClient blockingClient = new AmazonHttpClient(new ClientConfiguration());
+        try {
+            blockingClient.executeAsync(newRequest(), new StringResponseHandler(),
+                    new StatusCodeErrorHandler(), new ExecutionContext(), responseExecutor, null);
+        } finally {
+            blockingClient.shutdown();
+        }
+    }
+
+    @Test
+    public void testClientExecuteAsyncFallsBackForStreamingResponse() throws Exception {
+        AmazonNonBlockingTestClient testClient = new AmazonNonBlockingTestClient();
+        try {
+            Future<String> future = testClient.call("/", new StringResponseHandler() {
+                @Override
+                public boolean needsConnectionLeftOpen() {
+                    return true;
+                }
+            }, null, new Callable<String>() {
+                @Override
+                public String call() {
+                    return "blocking";
+                }
+            });
+            assertEquals("blocking", future.get(10, TimeUnit.SECONDS));
+            assertEquals(0, requestCount.get());
+        } finally {
+            testClient.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedClientFailsFast() {
+        new AmazonWebServiceClient(new ClientConfiguration().withNonBlockingTransport(true)) {
+        };
+    }
+
+    private Request<?> newRequest() {
+        return newRequest("/");
+    }
+
+    private Request<?> newRequest(String path) {
+        Request<?> request = new DefaultRequest<Object>("testsvc");
+        request.setHttpMethod(HttpMethodName.GET);
+        request.setEndpoint(URI.create("http://localhost:"
+                + server.getAddress().getPort()));
+        request.setResourcePath(path);
+        return request;
+    }
+
+    /**
+     * An asynchronous client executing its operation through
+     * {@link AmazonWebServiceClient#executeAsync}.
+     */
+    private class AmazonNonBlockingTestClient extends AmazonWebServiceClient {
+        private final ExecutorService executorService = Executors.newFixedThreadPool(2);
+        /** Counted down when the callback of the transport is notified. */
+        final CountDownLatch exchangeDone = new CountDownLatch(1);
+
+        AmazonNonBlockingTestClient() {
+            this(new ExchangeDoneCollector());
+        }
+
+        private AmazonNonBlockingTestClient(ExchangeDoneCollector collector) {
+            super(new ClientConfiguration().withNonBlockingTransport(true), collector);
+            collector.exchangeDone = exchangeDone;
+            initNonBlockingTransport(new StaticCredentialsProvider(new AnonymousAWSCredentials()),
+                    new StatusCodeErrorHandler());
+            setEndpoint("http://localhost:" + server.getAddress().getPort());
+        }
+
+        Future<String> call(final String path,
+                AsyncHandler<AmazonWebServiceRequest, String> asyncHandler) {
+            return call(path, new StringResponseHandler(), asyncHandler, new Callable<String>() {
+                @Override
+                public String call() {
+                    throw new UnsupportedOperationException();
+                }
+            });
+        }
+
+        Future<String> call(final String path,
+                HttpResponseHandler<AmazonWebServiceResponse<String>> responseHandler,
+                AsyncHandler<AmazonWebServiceRequest, String> asyncHandler,
+                Callable<String> blockingCall) {
+            return executeAsync(new AmazonWebServiceRequest() {
+            }, new Marshaller<Request<AmazonWebServiceRequest>, AmazonWebServiceRequest>() {
+                @Override
+                public Request<AmazonWebServiceRequest> marshall(AmazonWebServiceRequest in) {
+                    Request<AmazonWebServiceRequest> request =
+                        new DefaultRequest<AmazonWebServiceRequest>(in, "testsvc");
+                    request.setHttpMethod(HttpMethodName.GET);
+                    request.setResourcePath(path);
+                    return request;
+                }
+            }, responseHandler, asyncHandler, executorService, blockingCall);
+        }
+
+        @Override
+        protected boolean supportsNonBlockingTransport() {
+            return true;
+        }
+
+        @Override
+        public void shutdown() {
+            super.shutdown();
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Counts down when the metrics of an operation are collected, once the
+     * callback of the transport is notified.
+     */
+    private static class ExchangeDoneCollector extends RequestMetricCollector {
+        volatile CountDownLatch exchangeDone;
+
+        @Override
+        public void collectMetrics(Request<?> request, Response<?> response) {
+            exchangeDone.countDown();
+        }
+    }
+
+    private static class StringResponseHandler
+            implements HttpResponseHandler<AmazonWebServiceResponse<String>> {
+        @Override
+        public AmazonWebServiceResponse<String> handle(HttpResponse response)
+                throws Exception {
+            AmazonWebServiceResponse<String> awsResponse =
+                new AmazonWebServiceResponse<String>();
+            awsResponse.setResult(IOUtils.toString(response.getContent()));
+            return awsResponse;
+        }
+
+        @Override
+        public boolean needsConnectionLeftOpen() {
+            return false;
+        }
+    }
+
+    private static class StatusCodeErrorHandler
+            implements HttpResponseHandler<AmazonServiceException> {
+        @Override
+        public AmazonServiceException handle(HttpResponse response) {
+            AmazonServiceException ase = new AmazonServiceException("Error");
+            ase.setStatusCode(response.getStatusCode());
+            return ase;
+        }
+
+        @Override
+        public boolean needsConnectionLeftOpen() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights
+ * Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is
+ * distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either
+ * express or implied. See the License for the specific language
+ * governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.HttpClient;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceResponse;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Protocol;
+import com.amazonaws.Request;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.IOUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class SdkPoolingClientConnectionManagerTest {
+
+    private HttpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = "ok".getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testMaxTotalConnections() {
+        Map<String, Integer> perHost = new HashMap<String, Integer>();
+        assertEquals(50, ConnectionManagerFactory.getMaxTotalConnections(50, perHost));
+        perHost.put("hot.example.com", 200);
+        perHost.put("cold.example.com", 10);
+        assertEquals(200, ConnectionManagerFactory.getMaxTotalConnections(50, perHost));
+        perHost.put("warm.example.com", 60);
+        assertEquals(210, ConnectionManagerFactory.getMaxTotalConnections(50, perHost));
+    }
+
+    @Test
+    public void testHostLimitIsAppliedToRoute() throws Exception {
+        ClientConfiguration config = new ClientConfiguration()
+                .withMaxConnections(2)
+                .withMaxConnectionsPerHost("localhost", 5);
+        SdkPoolingClientConnectionManager connectionManager = ConnectionManagerFactory
+                .createPoolingClientConnManager(config, null);
+        try {
+            assertEquals(5, connectionManager.getMaxTotal());
+            HttpRoute route = new HttpRoute(new HttpHost("localhost", port()));
+            HttpRoute otherRoute = new HttpRoute(new HttpHost("127.0.0.1", port()));
+
+            ManagedClientConnection conn = connectionManager
+                    .requestConnection(route, null).getConnection(1, TimeUnit.SECONDS);
+            connectionManager.releaseConnection(conn, 0, TimeUnit.MILLISECONDS);
+            conn = connectionManager
+                    .requestConnection(otherRoute, null).getConnection(1, TimeUnit.SECONDS);
+            connectionManager.releaseConnection(conn, 0, TimeUnit.MILLISECONDS);
+
+            assertEquals(5, connectionManager.getMaxPerRoute(route));
+            assertEquals(2, connectionManager.getMaxPerRoute(otherRoute));
+        } finally {
+            connectionManager.shutdown();
+        }
+    }
+
+    @Test
+    public void testPrewarmedConnectionsAreReused() throws Exception {
+        ClientConfiguration config = new ClientConfiguration()
+                .withProtocol(Protocol.HTTP)
+                .withPrewarmedConnectionsPerHost("localhost:" + port(), 3);
+        HttpClient httpClient = new HttpClientFactory().createHttpClient(config);
+        AmazonHttpClient client = new AmazonHttpClient(config, httpClient, null);
+        try {
+            ConnPoolControl<?> pool = (ConnPoolControl<?>) httpClient.getConnectionManager();
+            long deadline = System.currentTimeMillis() + 10000;
+            while (pool.getTotalStats().getAvailable() < 3
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(3, pool.getTotalStats().getAvailable());
+
+            ExecutionContext context = new ExecutionContext(true);
+            client.execute(newRequest(), new OkResponseHandler(),
+                    new ErrorResponseHandler(), context);
+
+            PoolStats stats = pool.getTotalStats();
+            assertEquals(3, stats.getAvailable() + stats.getLeased());
+            assertEquals(1, context.getAwsRequestMetrics().getTimingInfo()
+                    .getCounter(Field.HttpClientPoolReusedConnectionCount.name())
+                    .intValue());
+            assertNotNull(context.getAwsRequestMetrics().getTimingInfo()
+                    .getLastSubMeasurement(Field.HttpClientPoolLeaseWaitTime.name()));
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    @Test
+    public void testNewConnectionIsNotCountedAsReused() throws Exception {
+        ClientConfiguration config = new ClientConfiguration();
+        HttpClient httpClient = new HttpClientFactory().createHttpClient(config);
+        AmazonHttpClient client = new AmazonHttpClient(config, httpClient, null);
+        try {
+            ExecutionContext context = new ExecutionContext(true);
+            client.execute(newRequest(), new OkResponseHandler(),
+                    new ErrorResponseHandler(), context);
+            assertNull(context.getAwsRequestMetrics().getTimingInfo()
+                    .getCounter(Field.HttpClientPoolReusedConnectionCount.name()));
+            assertNotNull(context.getAwsRequestMetrics().getTimingInfo()
+                    .getLastSubMeasurement(Field.HttpClientPoolLeaseWaitTime.name()));
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxConnectionsPerHost() {
+        new ClientConfiguration().setMaxConnectionsPerHost("localhost", 0);
+    }
+
+    @Test
+    public void testConfigurationCopy() {
+        ClientConfiguration config = new ClientConfiguration()
+                .withMaxConnections(10)
+                .withMaxConnectionsPerHost("hot.example.com", 100)
+                .withPrewarmedConnectionsPerHost("hot.example.com", 5);
+        ClientConfiguration copy = new ClientConfiguration(config);
+        assertEquals(100, copy.getMaxConnectionsPerHost("hot.example.com"));
+        assertEquals(10, copy.getMaxConnectionsPerHost("cold.example.com"));
+        assertEquals(Collections.singletonMap("hot.example.com", 5),
+                copy.getPrewarmedConnectionsPerHost());
+    }
+
+    private int port() {
+        return server.getAddress().getPort();
+    }
+
+    private Request<?> newRequest() {
+        Request<?> request = new DefaultRequest<Object>("testsvc");
+        request.setHttpMethod(HttpMethodName.GET);
+        request.setEndpoint(URI.create("http://localhost:" + port()));
+        return request;
+    }
+
+    private static class OkResponseHandler implements
+            HttpResponseHandler<AmazonWebServiceResponse<Object>> {
+        @Override
+        public AmazonWebServiceResponse<Object> handle(HttpResponse response)
+                throws IOException {
+            IOUtils.toString(response.getContent());
+            return new AmazonWebServiceResponse<Object>();
+        }
+
+        @Override
+        public boolean needsConnectionLeftOpen() {
+            return false;
+        }
+    }
+
+    private static class ErrorResponseHandler implements
+            HttpResponseHandler<AmazonServiceException> {
+        @Override
+        public AmazonServiceException handle(HttpResponse response) {
+            return new AmazonServiceException("Error");
+        }
+
+        @Override
+        public boolean needsConnectionLeftOpen() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class ConcurrentLRUCacheTest {
+
+    @Test
+    public void test() {
+        ConcurrentLRUCache<String, String> cache = new ConcurrentLRUCache<String, String>(3);
+        assertTrue(cache.size() == 0);
+        assertNull(cache.add("k1", "v1"));
+        assertTrue(cache.size() == 1);
+        assertEquals("v1", cache.add("k1", "v11"));
+        assertTrue(cache.size() == 1);
+        cache.add("k2", "v2");
+        assertTrue(cache.size() == 2);
+        cache.add("k3", "v3");
+        assertTrue(cache.size() == 3);
+        assertEquals("v11", cache.get("k1"));
+        assertEquals("v2", cache.get("k2"));
+        assertEquals("v3", cache.get("k3"));
+        cache.add("k4", "v4");
+        assertTrue(cache.size() == 3);
+        assertEquals("v4", cache.get("k4"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        ConcurrentLRUCache<String, String> cache = new ConcurrentLRUCache<String, String>(3);
+        cache.add("k1", "v1");
+        cache.add("k2", "v2");
+        cache.add("k3", "v3");
+        // k1 is now more recently used than k2
+        assertEquals("v1", cache.get("k1"));
+        cache.add("k4", "v4");
+        assertTrue(cache.size() == 3);
+        assertNull(cache.get("k2"));
+        assertEquals("v1", cache.get("k1"));
+        assertEquals("v3", cache.get("k3"));
+        assertEquals("v4", cache.get("k4"));
+    }
+
+    @Test
+    public void testRecencyIsKeptAcrossEvictions() {
+        ConcurrentLRUCache<String, String> cache = new ConcurrentLRUCache<String, String>(2);
+        cache.add("k1", "v1");
+        cache.add("k2", "v2");
+        assertEquals("v1", cache.get("k1"));
+        cache.add("k3", "v3");
+        assertNull(cache.get("k2"));
+        assertEquals("v3", cache.get("k3"));
+        // k3 was accessed after k1
+        cache.add("k4", "v4");
+        assertNull(cache.get("k1"));
+        assertEquals("v3", cache.get("k3"));
+        assertEquals("v4", cache.get("k4"));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testZeroSize() {
+        new ConcurrentLRUCache<Object, Object>(0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testIllegalArgument() {
+        new ConcurrentLRUCache<Object, Object>(-1);
+    }
+
+    @Test
+    public void testSingleEntry() {
+        ConcurrentLRUCache<String, String> cache = new ConcurrentLRUCache<String, String>(1);
+        assertTrue(cache.size() == 0);
+        cache.add("k1", "v1");
+        assertTrue(cache.size() == 1);
+        cache.add("k1", "v11");
+        assertTrue(cache.size() == 1);
+        assertEquals("v11", cache.get("k1"));
+
+        cache.add("k2", "v2");
+        assertTrue(cache.size() == 1);
+        assertEquals("v2", cache.get("k2"));
+        assertNull(cache.get("k1"));
+
+        cache.add("k3", "v3");
+        assertTrue(cache.size() == 1);
+        assertEquals("v3", cache.get("k3"));
+        assertNull(cache.get("k2"));
+    }
+
+    @Test
+    public void testConcurrentAddsStayBounded() throws Exception {
+        final ConcurrentLRUCache<Integer, Integer> cache = new ConcurrentLRUCache<Integer, Integer>(10);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < 8; t++) {
+                final int offset = t * 1000;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int i = 0; i < 1000; i++) {
+                            cache.add(offset + i, i);
+                            cache.get(offset + i / 2);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> f : futures)
+                f.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(10, cache.size());
+    }
+}
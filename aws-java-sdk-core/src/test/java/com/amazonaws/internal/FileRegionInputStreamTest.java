@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import static com.amazonaws.util.FileUtils.generateRandomAsciiFile;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.event.ProgressInputStream;
+
+public class FileRegionInputStreamTest {
+
+    private static File file;
+    private static String content;
+
+    @BeforeClass
+    public static void setup() throws IOException {
+        file = generateRandomAsciiFile(1000);
+        content = FileUtils.readFileToString(file);
+    }
+
+    @Test
+    public void testReadRegion() throws IOException {
+        FileRegionInputStream is = new FileRegionInputStream(file, 100, 500);
+        try {
+            assertEquals(500, is.getRemainingLength());
+            assertEquals(content.substring(100, 600), IOUtils.toString(is));
+            assertEquals(0, is.getRemainingLength());
+            assertEquals(-1, is.read());
+        } finally {
+            is.release();
+        }
+    }
+
+    @Test
+    public void testMarkAndReset() throws IOException {
+        FileRegionInputStream is = new FileRegionInputStream(file, 0, 1000);
+        try {
+            assertEquals(10, is.skip(10));
+            is.mark(-1);
+            assertEquals(content.substring(10), IOUtils.toString(is));
+            is.reset();
+            assertEquals(content.substring(10), IOUtils.toString(is));
+        } finally {
+            is.release();
+        }
+    }
+
+    @Test
+    public void testDigestDoesNotMovePosition() throws Exception {
+        FileRegionInputStream is = new FileRegionInputStream(file, 0, 1000);
+        try {
+            assertEquals(200, is.skip(200));
+            byte[] expected = MessageDigest.getInstance("MD5").digest(
+                    content.substring(200).getBytes("US-ASCII"));
+            assertArrayEquals(expected, is.digest(MessageDigest.getInstance("MD5")));
+            assertEquals(800, is.getRemainingLength());
+        } finally {
+            is.release();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testDigestBeyondEndOfFile() throws Exception {
+        FileRegionInputStream is = new FileRegionInputStream(file, 500, 1000);
+        try {
+            is.digest(MessageDigest.getInstance("MD5"));
+        } finally {
+            is.release();
+        }
+    }
+
+    @Test
+    public void testSharedChannel() throws IOException {
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            FileChannel channel = fis.getChannel();
+            FileRegionInputStream first = new FileRegionInputStream(channel, 0, 600);
+            FileRegionInputStream second = new FileRegionInputStream(channel, 600, 400);
+            // Positional reads of either region don't disturb the other
+            byte[] start = new byte[10];
+            assertEquals(10, first.read(start));
+            assertEquals(content.substring(0, 10), new String(start, "US-ASCII"));
+            assertEquals(content.substring(600), IOUtils.toString(second));
+            assertEquals(content.substring(10, 600), IOUtils.toString(first));
+            first.release();
+            second.release();
+            assertTrue(channel.isOpen());
+            assertEquals(0, channel.position());
+        } finally {
+            fis.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadBeyondEndOfFile() throws IOException {
+        FileRegionInputStream is = new FileRegionInputStream(file, 900, 200);
+        try {
+            IOUtils.toByteArray(is);
+        } finally {
+            is.release();
+        }
+    }
+
+    @Test
+    public void testUnwrap() throws IOException {
+        FileRegionInputStream is = new FileRegionInputStream(file, 0, 1000);
+        try {
+            InputStream progress = ProgressInputStream.inputStreamForRequest(is,
+                    new AmazonWebServiceRequest() {});
+            assertSame(is, FileRegionInputStream.unwrap(ReleasableInputStream.wrap(progress)));
+            assertNull(FileRegionInputStream.unwrap(new ByteArrayInputStream(new byte[0])));
+        } finally {
+            is.release();
+        }
+    }
+}
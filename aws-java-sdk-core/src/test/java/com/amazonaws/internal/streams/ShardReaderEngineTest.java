@@ -0,0 +1,357 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal.streams;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+
+public class ShardReaderEngineTest {
+
+    private FakeStreamReader reader;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (reader != null) {
+            reader.gate.countDown();
+            reader.shutdown();
+            reader.calls.shutdownNow();
+            reader.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testParentsReadBeforeChildren() throws InterruptedException {
+        reader = new FakeStreamReader(config().withMaxRecordsPerCall(7));
+        // a was split into b and c, which were merged into d
+        reader.addShard("a", null, null, true, 30);
+        reader.addShard("b", "a", null, true, 20);
+        reader.addShard("c", "a", null, true, 20);
+        reader.addShard("d", "b", "c", false, 10);
+        reader.start();
+        reader.awaitProcessed("d", 10);
+
+        for (String shardId : Arrays.asList("a", "b", "c", "d")) {
+            assertEquals(reader.shards.get(shardId).records, reader.processed(shardId));
+        }
+        List<String> events = new ArrayList<String>(reader.events);
+        int aEnded = events.indexOf("end a");
+        assertTrue(events.lastIndexOf("a") < aEnded);
+        assertTrue(aEnded < events.indexOf("b"));
+        assertTrue(aEnded < events.indexOf("c"));
+        int bEnded = events.indexOf("end b");
+        int cEnded = events.indexOf("end c");
+        assertTrue(events.lastIndexOf("b") < bEnded);
+        assertTrue(events.lastIndexOf("c") < cEnded);
+        assertTrue(bEnded < events.indexOf("d"));
+        assertTrue(cEnded < events.indexOf("d"));
+        // d is still open
+        assertFalse(events.contains("end d"));
+        assertEquals(Collections.singleton("d"), reader.getShardsBeingRead());
+    }
+
+    @Test
+    public void testChildOfUnlistedParentRead() throws InterruptedException {
+        // The parent is past the retention period of the stream
+        reader = new FakeStreamReader(config());
+        reader.addShard("b", "a", null, false, 5);
+        reader.start();
+        reader.awaitProcessed("b", 5);
+        assertEquals(reader.shards.get("b").records, reader.processed("b"));
+    }
+
+    @Test
+    public void testExpiredIteratorReacquiredAfterLastRecord() throws InterruptedException {
+        reader = new FakeStreamReader(config());
+        FakeShard shard = reader.addShard("s", null, null, false, 50);
+        shard.expireAtCall = 3;
+        reader.start();
+        reader.awaitProcessed("s", 50);
+        // Every record once, in order
+        assertEquals(shard.records, reader.processed("s"));
+        assertEquals(Arrays.asList("s TRIM_HORIZON", "s AFTER_SEQUENCE_NUMBER s#19"),
+                reader.iteratorRequests);
+    }
+
+    @Test
+    public void testTrimmedShardRestartedFromTrimHorizon() throws InterruptedException {
+        reader = new FakeStreamReader(config());
+        FakeShard shard = reader.addShard("s", null, null, false, 50);
+        // Records 20 to 34 expire before being read
+        shard.trimAtCall = 3;
+        shard.trimTo = 35;
+        reader.start();
+        reader.awaitProcessed("s", 35);
+        List<String> expected = new ArrayList<String>(shard.records.subList(0, 20));
+        expected.addAll(shard.records.subList(35, 50));
+        assertEquals(expected, reader.processed("s"));
+        assertEquals(Arrays.asList("s TRIM_HORIZON", "s TRIM_HORIZON"), reader.iteratorRequests);
+    }
+
+    @Test
+    public void testBatchesDeliveredInOrderWithBoundedPrefetch() throws InterruptedException {
+        reader = new FakeStreamReader(config().withPrefetchBatches(2).withProcessingThreads(4));
+        reader.gate = new CountDownLatch(1);
+        FakeShard s1 = reader.addShard("s1", null, null, false, 200);
+        FakeShard s2 = reader.addShard("s2", null, null, false, 200);
+        reader.start();
+        Thread.sleep(500);
+        // While their first batch is processed, at most 2 more are read ahead
+        for (FakeShard shard : Arrays.asList(s1, s2)) {
+            int batchesRead = shard.batchesRead.get();
+            assertTrue(shard.shardId + " " + batchesRead, batchesRead >= 2 && batchesRead <= 3);
+        }
+        reader.gate.countDown();
+        reader.awaitProcessed("s1", 200);
+        reader.awaitProcessed("s2", 200);
+        assertEquals(s1.records, reader.processed("s1"));
+        assertEquals(s2.records, reader.processed("s2"));
+        assertFalse("Batches of a shard processed concurrently", reader.overlapped);
+    }
+
+    @Test
+    public void testLatestSkipsClosedShards() throws InterruptedException {
+        reader = new FakeStreamReader(config()
+            .withInitialPosition(ShardReaderConfiguration.InitialPosition.LATEST));
+        reader.addShard("a", null, null, true, 10);
+        FakeShard b = reader.addShard("b", "a", null, false, 10);
+        reader.start();
+        while (b.calls.get() == 0) {
+            Thread.sleep(10);
+        }
+        b.append(5);
+        reader.awaitProcessed("b", 5);
+        assertEquals(b.records.subList(10, 15), reader.processed("b"));
+        assertEquals(Arrays.asList("b LATEST"), reader.iteratorRequests);
+        assertTrue(reader.processed("a").isEmpty());
+    }
+
+    private static ShardReaderConfiguration config() {
+        return new ShardReaderConfiguration()
+            .withMaxRecordsPerCall(10)
+            .withMinTimeBetweenReadsMs(0)
+            .withIdleTimeBetweenReadsMs(10)
+            .withShardSyncIntervalMs(50);
+    }
+
+    private static AmazonServiceException serviceException(String errorCode) {
+        AmazonServiceException e = new AmazonServiceException(errorCode);
+        e.setErrorCode(errorCode);
+        return e;
+    }
+
+    /**
+     * A shard whose records are named after their position. The iterators
+     * are the shard id and the position of the next record.
+     */
+    private static class FakeShard {
+        final String shardId;
+        final String parentShardId;
+        final String adjacentParentShardId;
+        final boolean closed;
+        final List<String> records = Collections.synchronizedList(new ArrayList<String>());
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger batchesRead = new AtomicInteger();
+        volatile int trimmedBefore;
+        /** The GetRecords call failing with an expired iterator. */
+        volatile int expireAtCall;
+        /** The GetRecords call at which the records before trimTo are trimmed. */
+        volatile int trimAtCall;
+        volatile int trimTo;
+
+        FakeShard(String shardId, String parentShardId, String adjacentParentShardId, boolean closed) {
+            this.shardId = shardId;
+            this.parentShardId = parentShardId;
+            this.adjacentParentShardId = adjacentParentShardId;
+            this.closed = closed;
+        }
+
+        void append(int count) {
+            synchronized (records) {
+                for (int i = 0; i < count; i++) {
+                    records.add(shardId + "#" + records.size());
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a stream of fake shards, answering the calls asynchronously, and
+     * records the batches processed and the shards ended.
+     */
+    private static class FakeStreamReader extends ShardReaderEngine<String> {
+        final Map<String, FakeShard> shards =
+                Collections.synchronizedMap(new LinkedHashMap<String, FakeShard>());
+        final ExecutorService calls = Executors.newCachedThreadPool();
+        final List<String> iteratorRequests = Collections.synchronizedList(new ArrayList<String>());
+        /** The shard of each batch processed, and "end" and the shard of each shard ended. */
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        private final Map<String, List<String>> processed = new ConcurrentHashMap<String, List<String>>();
+        private final Set<String> processing = Collections.synchronizedSet(new HashSet<String>());
+        volatile boolean overlapped;
+        /** Opened to let the batches be processed. */
+        volatile CountDownLatch gate = new CountDownLatch(0);
+
+        FakeStreamReader(ShardReaderConfiguration config) {
+            super("stream", config);
+        }
+
+        FakeShard addShard(String shardId, String parentShardId, String adjacentParentShardId,
+                boolean closed, int records) {
+            FakeShard shard = new FakeShard(shardId, parentShardId, adjacentParentShardId, closed);
+            shard.append(records);
+            shards.put(shardId, shard);
+            processed.put(shardId, Collections.synchronizedList(new ArrayList<String>()));
+            return shard;
+        }
+
+        List<String> processed(String shardId) {
+            return processed.get(shardId);
+        }
+
+        void awaitProcessed(String shardId, int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (processed(shardId).size() < count) {
+                if (System.nanoTime() > deadline) {
+                    fail("Processed " + processed(shardId) + " of shard " + shardId);
+                }
+                Thread.sleep(10);
+            }
+        }
+
+        @Override
+        protected List<StreamShard> listShards() {
+            List<StreamShard> listed = new ArrayList<StreamShard>();
+            synchronized (shards) {
+                for (FakeShard shard : shards.values()) {
+                    listed.add(new StreamShard(shard.shardId, shard.parentShardId,
+                            shard.adjacentParentShardId, shard.closed));
+                }
+            }
+            return listed;
+        }
+
+        @Override
+        protected void getShardIterator(final String shardId, final String iteratorType,
+                final String sequenceNumber, final IteratorCallback callback) {
+            iteratorRequests.add(shardId + " " + iteratorType
+                    + (sequenceNumber == null ? "" : " " + sequenceNumber));
+            calls.execute(new Runnable() {
+                @Override
+                public void run() {
+                    FakeShard shard = shards.get(shardId);
+                    int position;
+                    if ("TRIM_HORIZON".equals(iteratorType)) {
+                        position = shard.trimmedBefore;
+                    } else if ("LATEST".equals(iteratorType)) {
+                        position = shard.records.size();
+                    } else {
+                        position = position(sequenceNumber) + 1;
+                    }
+                    if (position < shard.trimmedBefore) {
+                        callback.onError(serviceException("TrimmedDataAccessException"));
+                    } else {
+                        callback.onIterator(shardId + "#" + position);
+                    }
+                }
+            });
+        }
+
+        @Override
+        protected void getRecords(final String shardIterator, final int limit,
+                final RecordsCallback<String> callback) {
+            calls.execute(new Runnable() {
+                @Override
+                public void run() {
+                    FakeShard shard = shards.get(shardIterator.substring(0, shardIterator.indexOf('#')));
+                    int position = position(shardIterator);
+                    int call = shard.calls.incrementAndGet();
+                    if (call == shard.trimAtCall) {
+                        shard.trimmedBefore = shard.trimTo;
+                    }
+                    if (call == shard.expireAtCall) {
+                        callback.onError(serviceException("ExpiredIteratorException"));
+                        return;
+                    }
+                    if (position < shard.trimmedBefore) {
+                        callback.onError(serviceException("TrimmedDataAccessException"));
+                        return;
+                    }
+                    List<String> records;
+                    String nextShardIterator;
+                    synchronized (shard.records) {
+                        int end = Math.min(shard.records.size(), position + limit);
+                        records = new ArrayList<String>(shard.records.subList(position, end));
+                        nextShardIterator = shard.closed && end == shard.records.size()
+                            ? null : shard.shardId + "#" + end;
+                    }
+                    if (!records.isEmpty()) {
+                        shard.batchesRead.incrementAndGet();
+                    }
+                    callback.onRecords(records, nextShardIterator);
+                }
+            });
+        }
+
+        private static int position(String record) {
+            return Integer.parseInt(record.substring(record.indexOf('#') + 1));
+        }
+
+        @Override
+        protected String getSequenceNumber(String record) {
+            return record;
+        }
+
+        @Override
+        protected void processRecords(String shardId, List<String> records) throws Exception {
+            if (!processing.add(shardId)) {
+                overlapped = true;
+            }
+            try {
+                events.add(shardId);
+                gate.await();
+                processed.get(shardId).addAll(records);
+            } finally {
+                processing.remove(shardId);
+            }
+        }
+
+        @Override
+        protected void shardEnded(String shardId) {
+            events.add("end " + shardId);
+        }
+    }
+}
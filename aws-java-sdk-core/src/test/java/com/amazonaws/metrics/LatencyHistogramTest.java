@@ -0,0 +1,175 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.AWSRequestMetricsFullSupport;
+import com.amazonaws.util.TimingInfo;
+
+public class LatencyHistogramTest {
+
+    private final RequestLatencyHistograms histograms = new RequestLatencyHistograms();
+
+    @Test
+    public void bucketsCoverAllValuesInOrder() {
+        for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+            long lowest = LatencyHistogram.lowestValueOf(i);
+            long highest = LatencyHistogram.highestValueOf(i);
+            assertEquals(i, LatencyHistogram.indexOf(lowest));
+            assertEquals(i, LatencyHistogram.indexOf(highest));
+            if (i + 1 < LatencyHistogram.BUCKETS) {
+                assertEquals(highest + 1, LatencyHistogram.lowestValueOf(i + 1));
+            }
+            // at most 1/32 relative error
+            assertTrue(highest - lowest <= lowest / 32);
+        }
+        assertEquals(LatencyHistogram.MAX_TRACKABLE_VALUE,
+                LatencyHistogram.highestValueOf(LatencyHistogram.BUCKETS - 1));
+    }
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.recordValue(i);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500500, snapshot.getSum());
+        assertEquals(1, snapshot.getMin());
+        assertWithinPrecision(500, snapshot.getValueAtPercentile(50));
+        assertWithinPrecision(990, snapshot.getValueAtPercentile(99));
+        assertWithinPrecision(999, snapshot.getValueAtPercentile(99.9));
+        assertWithinPrecision(1000, snapshot.getMax());
+    }
+
+    @Test
+    public void percentilesOfRandomValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(42);
+        long[] values = new long[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.abs(random.nextGaussian() * 100000);
+            histogram.recordValue(values[i]);
+        }
+        Arrays.sort(values);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertWithinPrecision(values[4999], snapshot.getValueAtPercentile(50));
+        assertWithinPrecision(values[9899], snapshot.getValueAtPercentile(99));
+        assertWithinPrecision(values[9989], snapshot.getValueAtPercentile(99.9));
+    }
+
+    @Test
+    public void outOfRangeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordValue(-1);
+        histogram.recordValue(Long.MAX_VALUE);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.getMin());
+        assertEquals(LatencyHistogram.MAX_TRACKABLE_VALUE, snapshot.getMax());
+    }
+
+    @Test
+    public void minus() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordValue(10);
+        LatencyHistogram.Snapshot first = histogram.snapshot();
+        histogram.recordValue(20);
+        histogram.recordValue(30);
+        LatencyHistogram.Snapshot interval = histogram.snapshot().minus(first);
+        assertEquals(2, interval.getCount());
+        assertEquals(50, interval.getSum());
+        assertEquals(20, interval.getMin());
+        assertEquals(30, interval.getMax());
+    }
+
+    @Test
+    public void emptySnapshot() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0, snapshot.getValueAtPercentile(99));
+        assertEquals(0.0, snapshot.getMean(), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPercentile() {
+        new LatencyHistogram().snapshot().getValueAtPercentile(101);
+    }
+
+    @Test
+    public void recordsPerAttemptAndPerRequest() {
+        TimingInfo timingInfo = TimingInfo.startTimingFullSupport(0);
+        timingInfo.addSubMeasurement(Field.HttpRequestTime.name(),
+                TimingInfo.unmodifiableTimingInfo(0, 3000000L));
+        timingInfo.addSubMeasurement(Field.HttpRequestTime.name(),
+                TimingInfo.unmodifiableTimingInfo(5000000, 9000000L));
+        histograms.record("Amazon S3", "GetObjectRequest", timingInfo);
+
+        LatencyHistogram.Snapshot attempts = histogram(Field.HttpRequestTime,
+                RequestLatencyHistograms.Scope.Attempt).snapshot();
+        assertEquals(2, attempts.getCount());
+        assertEquals(7000, attempts.getSum());
+        LatencyHistogram.Snapshot requests = histogram(Field.HttpRequestTime,
+                RequestLatencyHistograms.Scope.Request).snapshot();
+        assertEquals(1, requests.getCount());
+        assertEquals(7000, requests.getSum());
+        assertEquals(2, histograms.getHistograms().size());
+    }
+
+    @Test
+    public void recordsOnlyRequestsWithMetricsEnabled() {
+        DefaultRequest<Void> disabled = new DefaultRequest<Void>(new PutItemRequest(), "AmazonDynamoDB");
+        disabled.setAWSRequestMetrics(new AWSRequestMetrics());
+        histograms.record(disabled);
+        assertTrue(histograms.getHistograms().isEmpty());
+
+        DefaultRequest<Void> enabled = new DefaultRequest<Void>(new PutItemRequest(), "AmazonDynamoDB");
+        AWSRequestMetrics metrics = new AWSRequestMetricsFullSupport();
+        metrics.startEvent(Field.HttpRequestTime);
+        metrics.endEvent(Field.HttpRequestTime);
+        enabled.setAWSRequestMetrics(metrics);
+        histograms.record(enabled);
+        assertEquals(1, histograms.getHistograms().get(new RequestLatencyHistograms.Key("AmazonDynamoDB",
+                "PutItemRequest", Field.HttpRequestTime, RequestLatencyHistograms.Scope.Request)).snapshot().getCount());
+    }
+
+    private LatencyHistogram histogram(Field metric, RequestLatencyHistograms.Scope scope) {
+        LatencyHistogram histogram = histograms.getHistograms().get(
+                new RequestLatencyHistograms.Key("Amazon S3", "GetObjectRequest", metric, scope));
+        assertNotNull(histogram);
+        return histogram;
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue("expected " + expected + " but was " + actual,
+                actual >= expected && actual <= expected + expected / 32);
+    }
+
+    private static class PutItemRequest extends AmazonWebServiceRequest {
+    }
+}
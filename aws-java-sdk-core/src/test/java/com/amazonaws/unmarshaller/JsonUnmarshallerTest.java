@@ -22,12 +22,14 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import org.junit.Test;
 
 import com.amazonaws.transform.JsonUnmarshallerContext;
@@ -40,6 +42,8 @@ import com.amazonaws.transform.SimpleTypeJsonUnmarshallers;
 public class JsonUnmarshallerTest {
     public static final String SIMPLE_MAP = "{\"key1\" : \"value1\", \"key2\" : \"value2\"}";
     public static final String MAP_TO_LIST = "{\"key1\" : [ null, \"value1\"], \"key2\" : [\"value2\"]}";
+    public static final String MAP_TO_BINARY = "{\"key1\" : \"AQID\", \"key2\" : \"\"}";
+    public static final String MAP_TO_NUMBER = "{\"key1\" : 12345678901234567890, \"key2\" : 1.5}";
     private static JsonFactory jsonFactory = new JsonFactory();
 
     @Test
@@ -65,6 +69,60 @@ public class JsonUnmarshallerTest {
         assertEquals(Arrays.asList("value2"), map.get("key2"));
     }
 
+    @Test
+    public void testMapToBinary() throws Exception {
+        JsonUnmarshallerContext unmarshallerContext = setupUnmarshaller(MAP_TO_BINARY);
+        MapUnmarshaller<String, ByteBuffer> unmarshaller =
+                new MapUnmarshaller<String, ByteBuffer>(
+                        SimpleTypeJsonUnmarshallers.StringJsonUnmarshaller.getInstance(),
+                        SimpleTypeJsonUnmarshallers.ByteBufferJsonUnmarshaller.getInstance());
+        Map<String, ByteBuffer> map = unmarshaller.unmarshall(unmarshallerContext);
+        assertEquals(ByteBuffer.wrap(new byte[] {1, 2, 3}), map.get("key1"));
+        assertEquals(ByteBuffer.wrap(new byte[0]), map.get("key2"));
+    }
+
+    @Test
+    public void testMapToNumberText() throws Exception {
+        JsonUnmarshallerContext unmarshallerContext = setupUnmarshaller(MAP_TO_NUMBER);
+        MapUnmarshaller<String, String> unmarshaller = new MapUnmarshaller<String, String>(SimpleTypeJsonUnmarshallers.StringJsonUnmarshaller.getInstance(), SimpleTypeJsonUnmarshallers.StringJsonUnmarshaller.getInstance());
+        Map<String, String> map = unmarshaller.unmarshall(unmarshallerContext);
+        assertEquals("12345678901234567890", map.get("key1"));
+        assertEquals("1.5", map.get("key2"));
+    }
+
+    @Test
+    public void testDeeplyNestedContext() throws Exception {
+        int depth = 40;
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            json.append("{\"f").append(i).append("\" : ");
+        }
+        json.append("\"value\"");
+        for (int i = 0; i < depth; i++) {
+            json.append("}");
+        }
+        JsonUnmarshallerContext context = setupUnmarshaller(json.toString());
+
+        JsonToken token;
+        while ((token = context.nextToken()) != JsonToken.VALUE_STRING) {
+            assertTrue(token != null);
+        }
+        assertEquals(depth, context.getCurrentDepth());
+        assertTrue(context.testExpression("f" + (depth - 1), depth));
+        assertTrue(!context.testExpression("f" + (depth - 1), depth - 1));
+        assertEquals("value", context.readText());
+
+        // The outermost object has no field name, so it isn't on the stack
+        for (int i = depth - 2; i >= 0; i--) {
+            assertEquals(JsonToken.END_OBJECT, context.nextToken());
+            assertEquals(i, context.getCurrentDepth());
+            assertEquals("f" + i, context.getLastParsedParentElement());
+        }
+        assertEquals(JsonToken.END_OBJECT, context.nextToken());
+        assertEquals(0, context.getCurrentDepth());
+        assertEquals("/", context.toString());
+    }
+
     private JsonUnmarshallerContext setupUnmarshaller(String snippet) throws Exception {
         JsonParser jsonParser = jsonFactory.createJsonParser(new ByteArrayInputStream(snippet.getBytes()));
         JsonUnmarshallerContext unmarshallerContext = new JsonUnmarshallerContextImpl(jsonParser);
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.util;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+import com.amazonaws.transform.StaxUnmarshallerContext;
+
+/**
+ * Measures the number of small query protocol responses per second parsed by
+ * 1 to 64 threads, the way the SDK parses them:
+ * <ul>
+ * <li>with StAX, creating the event reader from the XMLInputFactory of the
+ * thread ({@link XmlUtils#createXMLEventReader}) and from one factory shared
+ * by synchronizing on it, as StaxResponseHandler formerly did;</li>
+ * <li>with SAX, reusing the reader of the thread
+ * ({@link XmlUtils#acquireXMLReader}) and creating a new reader for each
+ * document, as XmlResponsesSaxParser formerly did.</li>
+ * </ul>
+ *
+ * <pre>
+ * java -cp ... XmlParsingBenchmark [seconds] [maxThreads]
+ * </pre>
+ */
+public class XmlParsingBenchmark {
+
+    private static final byte[] DOCUMENT = ("<?xml version=\"1.0\"?>"
+            + "<SendMessageResponse xmlns=\"http://queue.amazonaws.com/doc/2012-11-05/\">"
+            + "<SendMessageResult><MD5OfMessageBody>fafb00f5732ab283681e124bf8747ed1</MD5OfMessageBody>"
+            + "<MessageId>5fea7756-0ea4-451a-a703-a558b933e274</MessageId></SendMessageResult>"
+            + "<ResponseMetadata><RequestId>27daac76-34dd-47df-bd01-1f6e873584a0</RequestId>"
+            + "</ResponseMetadata></SendMessageResponse>").getBytes(StringUtils.UTF8);
+
+    private static final XMLInputFactory sharedFactory = XMLInputFactory.newInstance();
+
+    private abstract static class Parser {
+        final String name;
+
+        Parser(String name) {
+            this.name = name;
+        }
+
+        abstract void parse() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+
+        Parser[] parsers = {
+            new Parser("StAX, factory per thread") {
+                @Override
+                void parse() throws Exception {
+                    consume(XmlUtils.createXMLEventReader(new ByteArrayInputStream(DOCUMENT)));
+                }
+            },
+            new Parser("StAX, shared factory (former)") {
+                @Override
+                void parse() throws Exception {
+                    XMLEventReader eventReader;
+                    synchronized (sharedFactory) {
+                        eventReader = sharedFactory.createXMLEventReader(new ByteArrayInputStream(DOCUMENT));
+                    }
+                    consume(eventReader);
+                }
+            },
+            new Parser("SAX, reader reused") {
+                @Override
+                void parse() throws Exception {
+                    XMLReader reader = XmlUtils.acquireXMLReader();
+                    reader.setContentHandler(new DefaultHandler());
+                    reader.parse(new InputSource(new ByteArrayInputStream(DOCUMENT)));
+                    XmlUtils.releaseXMLReader(reader);
+                }
+            },
+            new Parser("SAX, new reader (former)") {
+                @Override
+                void parse() throws Exception {
+                    XMLReader reader = XMLReaderFactory.createXMLReader();
+                    reader.setContentHandler(new DefaultHandler());
+                    reader.parse(new InputSource(new ByteArrayInputStream(DOCUMENT)));
+                }
+            },
+        };
+
+        System.out.println("Cores: " + Runtime.getRuntime().availableProcessors());
+        // Warm up, so that the measurements run compiled code, and do it twice
+        // so that the first parser is not measured before the others are compiled.
+        for (int i = 0; i < 2; i++) {
+            for (Parser parser : parsers) {
+                measure(parser, 2, 1);
+            }
+        }
+        for (int threads = 1; threads <= maxThreads; threads *= 4) {
+            for (Parser parser : parsers) {
+                long parsed = measure(parser, threads, seconds);
+                System.out.println(String.format("%3d threads  %-30s %,12d documents/s", threads, parser.name,
+                        parsed / seconds));
+            }
+        }
+    }
+
+    private static void consume(XMLEventReader eventReader) throws Exception {
+        StaxUnmarshallerContext context = new StaxUnmarshallerContext(eventReader);
+        try {
+            while (!context.nextEvent().isEndDocument()) {
+            }
+        } finally {
+            eventReader.close();
+        }
+    }
+
+    private static long measure(final Parser parser, int threads, int seconds) throws InterruptedException {
+        final long deadline = System.nanoTime() + seconds * 1000000000L;
+        final AtomicLong count = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    long parsed = 0;
+                    try {
+                        while (System.nanoTime() < deadline) {
+                            parser.parse();
+                            ++parsed;
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                    count.addAndGet(parsed);
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+        return count.get();
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamReader;
+
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+public class XmlUtilsTest {
+
+    private static final String DOCUMENT = "<Response><RequestId>abc</RequestId><Item>1</Item><Item>2</Item></Response>";
+
+    @Test
+    public void releasedReaderIsReusedOnTheSameThread() throws Exception {
+        XMLReader reader = XmlUtils.acquireXMLReader();
+        XmlUtils.releaseXMLReader(reader);
+        assertSame(reader, XmlUtils.acquireXMLReader());
+        XmlUtils.releaseXMLReader(reader);
+    }
+
+    @Test
+    public void nestedAcquireGetsAnotherReader() throws Exception {
+        XMLReader outer = XmlUtils.acquireXMLReader();
+        XMLReader inner = XmlUtils.acquireXMLReader();
+        assertNotSame(outer, inner);
+        XmlUtils.releaseXMLReader(inner);
+        XmlUtils.releaseXMLReader(outer);
+    }
+
+    @Test
+    public void releasedReaderIsNotReusedOnOtherThreads() throws Exception {
+        final XMLReader reader = XmlUtils.acquireXMLReader();
+        XmlUtils.releaseXMLReader(reader);
+        final AtomicReference<Object> other = new AtomicReference<Object>();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    other.set(XmlUtils.acquireXMLReader());
+                } catch (Exception e) {
+                    other.set(e);
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        assertTrue(other.get() instanceof XMLReader);
+        assertNotSame(reader, other.get());
+    }
+
+    @Test
+    public void reusedReaderParsesWithTheNewHandler() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            CountingHandler handler = new CountingHandler();
+            XMLReader reader = XmlUtils.acquireXMLReader();
+            reader.setContentHandler(handler);
+            reader.parse(new InputSource(new ByteArrayInputStream(DOCUMENT.getBytes(StringUtils.UTF8))));
+            XmlUtils.releaseXMLReader(reader);
+            assertEquals(4, handler.elements);
+        }
+    }
+
+    @Test
+    public void releasedReaderDoesNotHoldOnToTheHandler() throws Exception {
+        CountingHandler handler = new CountingHandler();
+        XMLReader reader = XmlUtils.acquireXMLReader();
+        reader.setContentHandler(handler);
+        reader.setErrorHandler(handler);
+        XmlUtils.releaseXMLReader(reader);
+        assertNotSame(handler, reader.getContentHandler());
+        assertNotSame(handler, reader.getErrorHandler());
+    }
+
+    @Test
+    public void createsStaxReaders() throws Exception {
+        XMLEventReader eventReader = XmlUtils.createXMLEventReader(
+                new ByteArrayInputStream(DOCUMENT.getBytes(StringUtils.UTF8)));
+        int elements = 0;
+        while (eventReader.hasNext()) {
+            if (eventReader.nextEvent().isStartElement()) {
+                elements++;
+            }
+        }
+        eventReader.close();
+        assertEquals(4, elements);
+
+        XMLStreamReader streamReader = XmlUtils.createXMLStreamReader(
+                new ByteArrayInputStream(DOCUMENT.getBytes(StringUtils.UTF8)));
+        streamReader.nextTag();
+        assertEquals("Response", streamReader.getLocalName());
+        streamReader.close();
+    }
+
+    private static class CountingHandler extends DefaultHandler {
+        int elements;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            elements++;
+        }
+    }
+}
@@ -15,6 +15,7 @@
 package com.amazonaws.services.dynamodbv2;
 
 import com.amazonaws.services.dynamodbv2.model.*;
+import com.amazonaws.services.dynamodbv2.model.transform.*;
 
 /**
  * Interface for accessing DynamoDB asynchronously. Each asynchronous method
@@ -439,36 +440,21 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements
     @Override
     public java.util.concurrent.Future<BatchGetItemResult> batchGetItemAsync(
             final BatchGetItemRequest batchGetItemRequest) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<BatchGetItemResult>() {
-                    @Override
-                    public BatchGetItemResult call() {
-                        return batchGetItem(batchGetItemRequest);
-                    }
-                });
+        return batchGetItemAsync(batchGetItemRequest, null);
     }
 
     @Override
     public java.util.concurrent.Future<BatchGetItemResult> batchGetItemAsync(
             final BatchGetItemRequest batchGetItemRequest,
             final com.amazonaws.handlers.AsyncHandler<BatchGetItemRequest, BatchGetItemResult> asyncHandler) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<BatchGetItemResult>() {
-                    @Override
-                    public BatchGetItemResult call() throws Exception {
-                        BatchGetItemResult result;
-                        try {
-                            result = batchGetItem(batchGetItemRequest);
-                        } catch (Exception ex) {
-                            asyncHandler.onError(ex);
-                            throw ex;
-                        }
-                        asyncHandler.onSuccess(batchGetItemRequest, result);
-                        return result;
-                    }
-                });
+        return executeAsync(batchGetItemRequest, new BatchGetItemRequestMarshaller(),
+                new BatchGetItemResultJsonUnmarshaller(),
+                asyncHandler, executorService, new java.util.concurrent.Callable<BatchGetItemResult>() {
+            @Override
+            public BatchGetItemResult call() throws Exception {
+                return batchGetItem(batchGetItemRequest);
+            }
+        });
     }
 
     @Override
@@ -526,36 +512,21 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements
     @Override
     public java.util.concurrent.Future<BatchWriteItemResult> batchWriteItemAsync(
             final BatchWriteItemRequest batchWriteItemRequest) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<BatchWriteItemResult>() {
-                    @Override
-                    public BatchWriteItemResult call() {
-                        return batchWriteItem(batchWriteItemRequest);
-                    }
-                });
+        return batchWriteItemAsync(batchWriteItemRequest, null);
     }
 
     @Override
     public java.util.concurrent.Future<BatchWriteItemResult> batchWriteItemAsync(
             final BatchWriteItemRequest batchWriteItemRequest,
             final com.amazonaws.handlers.AsyncHandler<BatchWriteItemRequest, BatchWriteItemResult> asyncHandler) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<BatchWriteItemResult>() {
-                    @Override
-                    public BatchWriteItemResult call() throws Exception {
-                        BatchWriteItemResult result;
-                        try {
-                            result = batchWriteItem(batchWriteItemRequest);
-                        } catch (Exception ex) {
-                            asyncHandler.onError(ex);
-                            throw ex;
-                        }
-                        asyncHandler.onSuccess(batchWriteItemRequest, result);
-                        return result;
-                    }
-                });
+        return executeAsync(batchWriteItemRequest, new BatchWriteItemRequestMarshaller(),
+                new BatchWriteItemResultJsonUnmarshaller(),
+                asyncHandler, executorService, new java.util.concurrent.Callable<BatchWriteItemResult>() {
+            @Override
+            public BatchWriteItemResult call() throws Exception {
+                return batchWriteItem(batchWriteItemRequest);
+            }
+        });
     }
 
     @Override
@@ -585,36 +556,21 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements
     @Override
     public java.util.concurrent.Future<CreateTableResult> createTableAsync(
             final CreateTableRequest createTableRequest) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<CreateTableResult>() {
-                    @Override
-                    public CreateTableResult call() {
-                        return createTable(createTableRequest);
-                    }
-                });
+        return createTableAsync(createTableRequest, null);
     }
 
     @Override
     public java.util.concurrent.Future<CreateTableResult> createTableAsync(
             final CreateTableRequest createTableRequest,
             final com.amazonaws.handlers.AsyncHandler<CreateTableRequest, CreateTableResult> asyncHandler) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<CreateTableResult>() {
-                    @Override
-                    public CreateTableResult call() throws Exception {
-                        CreateTableResult result;
-                        try {
-                            result = createTable(createTableRequest);
-                        } catch (Exception ex) {
-                            asyncHandler.onError(ex);
-                            throw ex;
-                        }
-                        asyncHandler.onSuccess(createTableRequest, result);
-                        return result;
-                    }
-                });
+        return executeAsync(createTableRequest, new CreateTableRequestMarshaller(),
+                new CreateTableResultJsonUnmarshaller(),
+                asyncHandler, executorService, new java.util.concurrent.Callable<CreateTableResult>() {
+            @Override
+            public CreateTableResult call() throws Exception {
+                return createTable(createTableRequest);
+            }
+        });
     }
 
     @Override
@@ -654,36 +610,21 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements
     @Override
     public java.util.concurrent.Future<DeleteItemResult> deleteItemAsync(
             final DeleteItemRequest deleteItemRequest) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<DeleteItemResult>() {
-                    @Override
-                    public DeleteItemResult call() {
-                        return deleteItem(deleteItemRequest);
-                    }
-                });
+        return deleteItemAsync(deleteItemRequest, null);
     }
 
     @Override
     public java.util.concurrent.Future<DeleteItemResult> deleteItemAsync(
             final DeleteItemRequest deleteItemRequest,
             final com.amazonaws.handlers.AsyncHandler<DeleteItemRequest, DeleteItemResult> asyncHandler) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<DeleteItemResult>() {
-                    @Override
-                    public DeleteItemResult call() throws Exception {
-                        DeleteItemResult result;
-                        try {
-                            result = deleteItem(deleteItemRequest);
-                        } catch (Exception ex) {
-                            asyncHandler.onError(ex);
-                            throw ex;
-                        }
-                        asyncHandler.onSuccess(deleteItemRequest, result);
-                        return result;
-                    }
-                });
+        return executeAsync(deleteItemRequest, new DeleteItemRequestMarshaller(),
+                new DeleteItemResultJsonUnmarshaller(),
+                asyncHandler, executorService, new java.util.concurrent.Callable<DeleteItemResult>() {
+            @Override
+            public DeleteItemResult call() throws Exception {
+                return deleteItem(deleteItemRequest);
+            }
+        });
     }
 
     @Override
@@ -739,36 +680,21 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements
     @Override
     public java.util.concurrent.Future<DeleteTableResult> deleteTableAsync(
             final DeleteTableRequest deleteTableRequest) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<DeleteTableResult>() {
-                    @Override
-                    public DeleteTableResult call() {
-                        return deleteTable(deleteTableRequest);
-                    }
-                });
+        return deleteTableAsync(deleteTableRequest, null);
     }
 
     @Override
     public java.util.concurrent.Future<DeleteTableResult> deleteTableAsync(
             final DeleteTableRequest deleteTableRequest,
             final com.amazonaws.handlers.AsyncHandler<DeleteTableRequest, DeleteTableResult> asyncHandler) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<DeleteTableResult>() {
-                    @Override
-                    public DeleteTableResult call() throws Exception {
-                        DeleteTableResult result;
-                        try {
-                            result = deleteTable(deleteTableRequest);
-                        } catch (Exception ex) {
-                            asyncHandler.onError(ex);
-                            throw ex;
-                        }
-                        asyncHandler.onSuccess(deleteTableRequest, result);
-                        return result;
-                    }
-                });
+        return executeAsync(deleteTableRequest, new DeleteTableRequestMarshaller(),
+                new DeleteTableResultJsonUnmarshaller(),
+                asyncHandler, executorService, new java.util.concurrent.Callable<DeleteTableResult>() {
+            @Override
+            public DeleteTableResult call() throws Exception {
+                return deleteTable(deleteTableRequest);
+            }
+        });
     }
 
     @Override
@@ -797,36 +723,21 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements
     @Override
     public java.util.concurrent.Future<DescribeTableResult> describeTableAsync(
             final DescribeTableRequest describeTableRequest) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<DescribeTableResult>() {
-                    @Override
-                    public DescribeTableResult call() {
-                        return describeTable(describeTableRequest);
-                    }
-                });
+        return describeTableAsync(describeTableRequest, null);
     }
 
     @Override
     public java.util.concurrent.Future<DescribeTableResult> describeTableAsync(
             final DescribeTableRequest describeTableRequest,
             final com.amazonaws.handlers.AsyncHandler<DescribeTableRequest, DescribeTableResult> asyncHandler) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<DescribeTableResult>() {
-                    @Override
-                    public DescribeTableResult call() throws Exception {
-                        DescribeTableResult result;
-                        try {
-                            result = describeTable(describeTableRequest);
-                        } catch (Exception ex) {
-                            asyncHandler.onError(ex);
-                            throw ex;
-                        }
-                        asyncHandler.onSuccess(describeTableRequest, result);
-                        return result;
-                    }
-                });
+        return executeAsync(describeTableRequest, new DescribeTableRequestMarshaller(),
+                new DescribeTableResultJsonUnmarshaller(),
+                asyncHandler, executorService, new java.util.concurrent.Callable<DescribeTableResult>() {
+            @Override
+            public DescribeTableResult call() throws Exception {
+                return describeTable(describeTableRequest);
+            }
+        });
     }
 
     @Override
@@ -856,36 +767,21 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements
     @Override
     public java.util.concurrent.Future<GetItemResult> getItemAsync(
             final GetItemRequest getItemRequest) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<GetItemResult>() {
-                    @Override
-                    public GetItemResult call() {
-                        return getItem(getItemRequest);
-                    }
-                });
+        return getItemAsync(getItemRequest, null);
     }
 
     @Override
     public java.util.concurrent.Future<GetItemResult> getItemAsync(
             final GetItemRequest getItemRequest,
             final com.amazonaws.handlers.AsyncHandler<GetItemRequest, GetItemResult> asyncHandler) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<GetItemResult>() {
-                    @Override
-                    public GetItemResult call() throws Exception {
-                        GetItemResult result;
-                        try {
-                            result = getItem(getItemRequest);
-                        } catch (Exception ex) {
-                            asyncHandler.onError(ex);
-                            throw ex;
-                        }
-                        asyncHandler.onSuccess(getItemRequest, result);
-                        return result;
-                    }
-                });
+        return executeAsync(getItemRequest, new GetItemRequestMarshaller(),
+                new GetItemResultJsonUnmarshaller(),
+                asyncHandler, executorService, new java.util.concurrent.Callable<GetItemResult>() {
+            @Override
+            public GetItemResult call() throws Exception {
+                return getItem(getItemRequest);
+            }
+        });
     }
 
     @Override
@@ -939,36 +835,21 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements
     @Override
     public java.util.concurrent.Future<ListTablesResult> listTablesAsync(
             final ListTablesRequest listTablesRequest) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<ListTablesResult>() {
-                    @Override
-                    public ListTablesResult call() {
-                        return listTables(listTablesRequest);
-                    }
-                });
+        return listTablesAsync(listTablesRequest, null);
     }
 
     @Override
     public java.util.concurrent.Future<ListTablesResult> listTablesAsync(
             final ListTablesRequest listTablesRequest,
             final com.amazonaws.handlers.AsyncHandler<ListTablesRequest, ListTablesResult> asyncHandler) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<ListTablesResult>() {
-                    @Override
-                    public ListTablesResult call() throws Exception {
-                        ListTablesResult result;
-                        try {
-                            result = listTables(listTablesRequest);
-                        } catch (Exception ex) {
-                            asyncHandler.onError(ex);
-                            throw ex;
-                        }
-                        asyncHandler.onSuccess(listTablesRequest, result);
-                        return result;
-                    }
-                });
+        return executeAsync(listTablesRequest, new ListTablesRequestMarshaller(),
+                new ListTablesResultJsonUnmarshaller(),
+                asyncHandler, executorService, new java.util.concurrent.Callable<ListTablesResult>() {
+            @Override
+            public ListTablesResult call() throws Exception {
+                return listTables(listTablesRequest);
+            }
+        });
     }
 
     @Override
@@ -1066,36 +947,21 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements
     @Override
     public java.util.concurrent.Future<PutItemResult> putItemAsync(
             final PutItemRequest putItemRequest) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<PutItemResult>() {
-                    @Override
-                    public PutItemResult call() {
-                        return putItem(putItemRequest);
-                    }
-                });
+        return putItemAsync(putItemRequest, null);
     }
 
     @Override
     public java.util.concurrent.Future<PutItemResult> putItemAsync(
             final PutItemRequest putItemRequest,
             final com.amazonaws.handlers.AsyncHandler<PutItemRequest, PutItemResult> asyncHandler) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<PutItemResult>() {
-                    @Override
-                    public PutItemResult call() throws Exception {
-                        PutItemResult result;
-                        try {
-                            result = putItem(putItemRequest);
-                        } catch (Exception ex) {
-                            asyncHandler.onError(ex);
-                            throw ex;
-                        }
-                        asyncHandler.onSuccess(putItemRequest, result);
-                        return result;
-                    }
-                });
+        return executeAsync(putItemRequest, new PutItemRequestMarshaller(),
+                new PutItemResultJsonUnmarshaller(),
+                asyncHandler, executorService, new java.util.concurrent.Callable<PutItemResult>() {
+            @Override
+            public PutItemResult call() throws Exception {
+                return putItem(putItemRequest);
+            }
+        });
     }
 
     @Override
@@ -1149,71 +1015,41 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements
     @Override
     public java.util.concurrent.Future<QueryResult> queryAsync(
             final QueryRequest queryRequest) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<QueryResult>() {
-                    @Override
-                    public QueryResult call() {
-                        return query(queryRequest);
-                    }
-                });
+        return queryAsync(queryRequest, null);
     }
 
     @Override
     public java.util.concurrent.Future<QueryResult> queryAsync(
             final QueryRequest queryRequest,
             final com.amazonaws.handlers.AsyncHandler<QueryRequest, QueryResult> asyncHandler) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<QueryResult>() {
-                    @Override
-                    public QueryResult call() throws Exception {
-                        QueryResult result;
-                        try {
-                            result = query(queryRequest);
-                        } catch (Exception ex) {
-                            asyncHandler.onError(ex);
-                            throw ex;
-                        }
-                        asyncHandler.onSuccess(queryRequest, result);
-                        return result;
-                    }
-                });
+        return executeAsync(queryRequest, new QueryRequestMarshaller(),
+                new QueryResultJsonUnmarshaller(),
+                asyncHandler, executorService, new java.util.concurrent.Callable<QueryResult>() {
+            @Override
+            public QueryResult call() throws Exception {
+                return query(queryRequest);
+            }
+        });
     }
 
     @Override
     public java.util.concurrent.Future<ScanResult> scanAsync(
             final ScanRequest scanRequest) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<ScanResult>() {
-                    @Override
-                    public ScanResult call() {
-                        return scan(scanRequest);
-                    }
-                });
+        return scanAsync(scanRequest, null);
     }
 
     @Override
     public java.util.concurrent.Future<ScanResult> scanAsync(
             final ScanRequest scanRequest,
             final com.amazonaws.handlers.AsyncHandler<ScanRequest, ScanResult> asyncHandler) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<ScanResult>() {
-                    @Override
-                    public ScanResult call() throws Exception {
-                        ScanResult result;
-                        try {
-                            result = scan(scanRequest);
-                        } catch (Exception ex) {
-                            asyncHandler.onError(ex);
-                            throw ex;
-                        }
-                        asyncHandler.onSuccess(scanRequest, result);
-                        return result;
-                    }
-                });
+        return executeAsync(scanRequest, new ScanRequestMarshaller(),
+                new ScanResultJsonUnmarshaller(),
+                asyncHandler, executorService, new java.util.concurrent.Callable<ScanResult>() {
+            @Override
+            public ScanResult call() throws Exception {
+                return scan(scanRequest);
+            }
+        });
     }
 
     @Override
@@ -1292,36 +1128,21 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements
     @Override
     public java.util.concurrent.Future<UpdateItemResult> updateItemAsync(
             final UpdateItemRequest updateItemRequest) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<UpdateItemResult>() {
-                    @Override
-                    public UpdateItemResult call() {
-                        return updateItem(updateItemRequest);
-                    }
-                });
+        return updateItemAsync(updateItemRequest, null);
     }
 
     @Override
     public java.util.concurrent.Future<UpdateItemResult> updateItemAsync(
             final UpdateItemRequest updateItemRequest,
             final com.amazonaws.handlers.AsyncHandler<UpdateItemRequest, UpdateItemResult> asyncHandler) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<UpdateItemResult>() {
-                    @Override
-                    public UpdateItemResult call() throws Exception {
-                        UpdateItemResult result;
-                        try {
-                            result = updateItem(updateItemRequest);
-                        } catch (Exception ex) {
-                            asyncHandler.onError(ex);
-                            throw ex;
-                        }
-                        asyncHandler.onSuccess(updateItemRequest, result);
-                        return result;
-                    }
-                });
+        return executeAsync(updateItemRequest, new UpdateItemRequestMarshaller(),
+                new UpdateItemResultJsonUnmarshaller(),
+                asyncHandler, executorService, new java.util.concurrent.Callable<UpdateItemResult>() {
+            @Override
+            public UpdateItemResult call() throws Exception {
+                return updateItem(updateItemRequest);
+            }
+        });
     }
 
     @Override
@@ -1384,36 +1205,21 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements
     @Override
     public java.util.concurrent.Future<UpdateTableResult> updateTableAsync(
             final UpdateTableRequest updateTableRequest) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<UpdateTableResult>() {
-                    @Override
-                    public UpdateTableResult call() {
-                        return updateTable(updateTableRequest);
-                    }
-                });
+        return updateTableAsync(updateTableRequest, null);
     }
 
     @Override
     public java.util.concurrent.Future<UpdateTableResult> updateTableAsync(
             final UpdateTableRequest updateTableRequest,
             final com.amazonaws.handlers.AsyncHandler<UpdateTableRequest, UpdateTableResult> asyncHandler) {
-
-        return executorService
-                .submit(new java.util.concurrent.Callable<UpdateTableResult>() {
-                    @Override
-                    public UpdateTableResult call() throws Exception {
-                        UpdateTableResult result;
-                        try {
-                            result = updateTable(updateTableRequest);
-                        } catch (Exception ex) {
-                            asyncHandler.onError(ex);
-                            throw ex;
-                        }
-                        asyncHandler.onSuccess(updateTableRequest, result);
-                        return result;
-                    }
-                });
+        return executeAsync(updateTableRequest, new UpdateTableRequestMarshaller(),
+                new UpdateTableResultJsonUnmarshaller(),
+                asyncHandler, executorService, new java.util.concurrent.Callable<UpdateTableResult>() {
+            @Override
+            public UpdateTableResult call() throws Exception {
+                return updateTable(updateTableRequest);
+            }
+        });
     }
 
     @Override
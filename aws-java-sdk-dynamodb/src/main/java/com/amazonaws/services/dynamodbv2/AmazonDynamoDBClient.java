@@ -411,6 +411,8 @@ public class AmazonDynamoDBClient extends AmazonWebServiceClient implements
                         "ResourceNotFoundException"));
         jsonErrorUnmarshallers
                 .add(JsonErrorUnmarshallerV2.DEFAULT_UNMARSHALLER);
+        initNonBlockingTransport(awsCredentialsProvider,
+                new JsonErrorResponseHandlerV2(jsonErrorUnmarshallers));
         // calling this.setEndPoint(...) will also modify the signer accordingly
         this.setEndpoint("https://dynamodb.us-east-1.amazonaws.com");
         HandlerChainFactory chainFactory = new HandlerChainFactory();
@@ -1739,6 +1741,11 @@ public class AmazonDynamoDBClient extends AmazonWebServiceClient implements
         return client.getResponseMetadataForRequest(request);
     }
 
+    @Override
+    protected boolean supportsNonBlockingTransport() {
+        return true;
+    }
+
     private <X, Y extends AmazonWebServiceRequest> Response<X> invoke(
             Request<Y> request,
             Unmarshaller<X, JsonUnmarshallerContext> unmarshaller,
@@ -29,6 +29,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -1311,11 +1313,11 @@ public final class ConversionSchemas {
 
     static class CachingMarshallerSet implements MarshallerSet {
 
-        private final Map<Method, ArgumentMarshaller> cache =
-                new HashMap<Method, ArgumentMarshaller>();
+        private final ConcurrentMap<Method, ArgumentMarshaller> cache =
+                new ConcurrentHashMap<Method, ArgumentMarshaller>();
 
-        private final Map<Type, ArgumentMarshaller> memberCache =
-                new HashMap<Type, ArgumentMarshaller>();
+        private final ConcurrentMap<Type, ArgumentMarshaller> memberCache =
+                new ConcurrentHashMap<Type, ArgumentMarshaller>();
 
         private final MarshallerSet wrapped;
 
@@ -1325,40 +1327,43 @@ public final class ConversionSchemas {
 
         @Override
         public ArgumentMarshaller getMarshaller(Method getter) {
-            synchronized (cache) {
-                ArgumentMarshaller marshaler = cache.get(getter);
-                if (marshaler != null) {
-                    return marshaler;
-                }
-
-                marshaler = wrapped.getMarshaller(getter);
-                cache.put(getter, marshaler);
+            ArgumentMarshaller marshaler = cache.get(getter);
+            if (marshaler != null) {
                 return marshaler;
             }
+
+            marshaler = wrapped.getMarshaller(getter);
+            if (marshaler == null) {
+                return null;
+            }
+            ArgumentMarshaller existing = cache.putIfAbsent(getter, marshaler);
+            return existing == null ? marshaler : existing;
         }
 
         @Override
         public ArgumentMarshaller getMemberMarshaller(Type memberType) {
-            synchronized (memberCache) {
-                ArgumentMarshaller marshaller = memberCache.get(memberType);
-                if (marshaller != null) {
-                    return marshaller;
-                }
-
-                marshaller = wrapped.getMemberMarshaller(memberType);
-                memberCache.put(memberType, marshaller);
+            ArgumentMarshaller marshaller = memberCache.get(memberType);
+            if (marshaller != null) {
                 return marshaller;
             }
+
+            marshaller = wrapped.getMemberMarshaller(memberType);
+            if (marshaller == null) {
+                return null;
+            }
+            ArgumentMarshaller existing =
+                    memberCache.putIfAbsent(memberType, marshaller);
+            return existing == null ? marshaller : existing;
         }
     }
 
     static class CachingUnmarshallerSet implements UnmarshallerSet {
 
-        private final Map<Method, ArgumentUnmarshaller> cache =
-                new HashMap<Method, ArgumentUnmarshaller>();
+        private final ConcurrentMap<Method, ArgumentUnmarshaller> cache =
+                new ConcurrentHashMap<Method, ArgumentUnmarshaller>();
 
-        private final Map<Type, ArgumentUnmarshaller> memberCache =
-                new HashMap<Type, ArgumentUnmarshaller>();
+        private final ConcurrentMap<Type, ArgumentUnmarshaller> memberCache =
+                new ConcurrentHashMap<Type, ArgumentUnmarshaller>();
 
         private final UnmarshallerSet wrapped;
 
@@ -1371,30 +1376,33 @@ public final class ConversionSchemas {
                 Method getter,
                 Method setter) {
 
-            synchronized (cache) {
-                ArgumentUnmarshaller unmarshaler = cache.get(getter);
-                if (unmarshaler != null) {
-                    return unmarshaler;
-                }
-
-                unmarshaler = wrapped.getUnmarshaller(getter, setter);
-                cache.put(getter, unmarshaler);
+            ArgumentUnmarshaller unmarshaler = cache.get(getter);
+            if (unmarshaler != null) {
                 return unmarshaler;
             }
+
+            unmarshaler = wrapped.getUnmarshaller(getter, setter);
+            if (unmarshaler == null) {
+                return null;
+            }
+            ArgumentUnmarshaller existing = cache.putIfAbsent(getter, unmarshaler);
+            return existing == null ? unmarshaler : existing;
         }
 
         @Override
         public ArgumentUnmarshaller getMemberUnmarshaller(Type memberType) {
-            synchronized (memberCache) {
-                ArgumentUnmarshaller unmarshaller = memberCache.get(memberType);
-                if (unmarshaller != null) {
-                    return unmarshaller;
-                }
-
-                unmarshaller = wrapped.getMemberUnmarshaller(memberType);
-                memberCache.put(memberType, unmarshaller);
+            ArgumentUnmarshaller unmarshaller = memberCache.get(memberType);
+            if (unmarshaller != null) {
                 return unmarshaller;
             }
+
+            unmarshaller = wrapped.getMemberUnmarshaller(memberType);
+            if (unmarshaller == null) {
+                return null;
+            }
+            ArgumentUnmarshaller existing =
+                    memberCache.putIfAbsent(memberType, unmarshaller);
+            return existing == null ? unmarshaller : existing;
         }
     }
 
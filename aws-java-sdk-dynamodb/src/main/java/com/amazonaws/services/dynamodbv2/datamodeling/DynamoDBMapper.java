@@ -26,9 +26,18 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -1511,8 +1520,9 @@ public class DynamoDBMapper {
      *            {@link AmazonDynamoDB#batchWriteItem(BatchWriteItemRequest)}
      *            API.
      * @param config
-     *            Only {@link DynamoDBMapperConfig#getTableNameOverride()} and
-     *            {@link DynamoDBMapperConfig#getBatchWriteRetryStrategy()} are
+     *            Only {@link DynamoDBMapperConfig#getTableNameOverride()},
+     *            {@link DynamoDBMapperConfig#getBatchWriteRetryStrategy()} and
+     *            {@link DynamoDBMapperConfig#getBatchWriteConcurrency()} are
      *            considered. If TableNameOverride is specified, all objects in
      *            the two parameter lists will be considered to belong to the
      *            given table override. In particular, this method <b>always
@@ -1523,6 +1533,7 @@ public class DynamoDBMapper {
      *
      * @see DynamoDBMapperConfig#getTableNameOverride()
      * @see DynamoDBMapperConfig#getBatchWriteRetryStrategy()
+     * @see DynamoDBMapperConfig#getBatchWriteConcurrency()
      */
     public List<FailedBatch> batchWrite(List<? extends Object> objectsToWrite, List<? extends Object> objectsToDelete, DynamoDBMapperConfig config) {
         config = mergeConfig(config);
@@ -1588,53 +1599,56 @@ public class DynamoDBMapper {
                     new WriteRequest().withDeleteRequest(new DeleteRequest().withKey(key)));
         }
 
-        // Break into chunks of 25 items and make service requests to DynamoDB
-        while ( !requestItems.isEmpty() ) {
+        int concurrency = config.getBatchWriteConcurrency() == null
+                ? 1 : config.getBatchWriteConcurrency();
+        if ( concurrency > 1 ) {
+            totalFailedBatches.addAll(writeConcurrently(
+                    requestItems, config.getBatchWriteRetryStrategy(), concurrency));
+        } else {
+            // Break into chunks of 25 items and make service requests to DynamoDB
+            int throttledBatches = 0;
+            while ( !requestItems.isEmpty() ) {
 
-            HashMap<String, List<WriteRequest>> batch =
-                    new HashMap<String, List<WriteRequest>>();
+                HashMap<String, List<WriteRequest>> batch =
+                        new HashMap<String, List<WriteRequest>>();
 
-            int i = 0;
+                int i = 0;
 
-            Iterator<Entry<String, List<WriteRequest>>> tableIter = requestItems.entrySet().iterator();
-            while ( tableIter.hasNext() && i < MAX_ITEMS_PER_BATCH ) {
+                Iterator<Entry<String, List<WriteRequest>>> tableIter = requestItems.entrySet().iterator();
+                while ( tableIter.hasNext() && i < MAX_ITEMS_PER_BATCH ) {
 
-                Entry<String, List<WriteRequest>> tableRequest = tableIter.next();
+                    Entry<String, List<WriteRequest>> tableRequest = tableIter.next();
 
-                batch.put(tableRequest.getKey(), new LinkedList<WriteRequest>());
-                Iterator<WriteRequest> writeRequestIter = tableRequest.getValue().iterator();
+                    batch.put(tableRequest.getKey(), new LinkedList<WriteRequest>());
+                    Iterator<WriteRequest> writeRequestIter = tableRequest.getValue().iterator();
 
-                while ( writeRequestIter.hasNext() && i++ < MAX_ITEMS_PER_BATCH ) {
-                    WriteRequest writeRequest = writeRequestIter.next();
-                    batch.get(tableRequest.getKey()).add(writeRequest);
-                    writeRequestIter.remove();
-                }
+                    while ( writeRequestIter.hasNext() && i++ < MAX_ITEMS_PER_BATCH ) {
+                        WriteRequest writeRequest = writeRequestIter.next();
+                        batch.get(tableRequest.getKey()).add(writeRequest);
+                        writeRequestIter.remove();
+                    }
 
-                // If we've processed all the write requests for this table,
-                // remove it from the parent iterator.
-                if ( !writeRequestIter.hasNext() ) {
-                    tableIter.remove();
+                    // If we've processed all the write requests for this table,
+                    // remove it from the parent iterator.
+                    if ( !writeRequestIter.hasNext() ) {
+                        tableIter.remove();
+                    }
                 }
-            }
 
-            List<FailedBatch> failedBatches = writeOneBatch(batch, config.getBatchWriteRetryStrategy());
-            if (failedBatches != null) {
-                totalFailedBatches.addAll(failedBatches);
-
-                // If contains throttling exception, we do a backoff
-                if (containsThrottlingException(failedBatches)) {
-                    try {
-                        Thread.sleep(1000 * 2);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        throw new AmazonClientException(e.getMessage(), e);
+                List<FailedBatch> failedBatches = writeOneBatch(batch, config.getBatchWriteRetryStrategy());
+                if (failedBatches != null) {
+                    totalFailedBatches.addAll(failedBatches);
+
+                    // If contains throttling exception, we do a backoff
+                    if (containsThrottlingException(failedBatches)) {
+                        pause(getThrottlingBackoff(++throttledBatches));
+                    } else {
+                        throttledBatches = 0;
                     }
                 }
             }
         }
 
-
-
         // Once the entire batch is processed, update assigned keys in memory
         for ( ValueUpdate update : inMemoryUpdates ) {
             update.apply();
@@ -1682,6 +1696,272 @@ public class DynamoDBMapper {
         return failedBatches;
     }
 
+    /**
+     * Writes the given requests in batches, keeping up to the given number of
+     * BatchWriteItem calls in flight. Unprocessed items are added back to
+     * later batches once the retry strategy's delay has passed, so that the
+     * other batches keep being written in the meantime, and batches that are
+     * too large are split in two. A throttling exception holds back new
+     * batches for a jittered, exponentially growing delay.
+     */
+    private List<FailedBatch> writeConcurrently(
+            Map<String, List<WriteRequest>> requestItems,
+            BatchWriteRetryStrategy batchWriteRetryStrategy,
+            int concurrency) {
+
+        List<FailedBatch> failedBatches = new LinkedList<FailedBatch>();
+        LinkedList<PendingWrite> pending = new LinkedList<PendingWrite>();
+        for ( Entry<String, List<WriteRequest>> tableRequests : requestItems.entrySet() ) {
+            for ( WriteRequest writeRequest : tableRequests.getValue() ) {
+                pending.add(new PendingWrite(tableRequests.getKey(), writeRequest, 0, 0));
+            }
+        }
+
+        // Unprocessed items waiting for their retry delay, earliest first
+        PriorityQueue<PendingWrite> delayed = new PriorityQueue<PendingWrite>();
+        // Halves of batches that were too large, written before new batches
+        LinkedList<List<PendingWrite>> splitBatches = new LinkedList<List<PendingWrite>>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        CompletionService<BatchWriteTask> completionService =
+                new ExecutorCompletionService<BatchWriteTask>(executor);
+        int inFlight = 0;
+        int throttledBatches = 0;
+        long throttledUntil = 0;
+        try {
+            while ( !pending.isEmpty() || !delayed.isEmpty() || !splitBatches.isEmpty() || inFlight > 0 ) {
+                long now = System.currentTimeMillis();
+                while ( !delayed.isEmpty() && delayed.peek().notBefore <= now ) {
+                    pending.addFirst(delayed.poll());
+                }
+
+                if ( now >= throttledUntil ) {
+                    while ( inFlight < concurrency ) {
+                        List<PendingWrite> batch = splitBatches.isEmpty()
+                                ? nextBatch(pending) : splitBatches.removeFirst();
+                        if ( batch.isEmpty() ) {
+                            break;
+                        }
+                        completionService.submit(new BatchWriteTask(batch));
+                        inFlight++;
+                    }
+                }
+
+                // Wait for a batch to complete, or until more items can be sent
+                long wakeUp = 0;
+                if ( now < throttledUntil ) {
+                    wakeUp = throttledUntil;
+                } else if ( !delayed.isEmpty() ) {
+                    wakeUp = delayed.peek().notBefore;
+                }
+                Future<BatchWriteTask> completed;
+                if ( inFlight == 0 ) {
+                    pause(wakeUp - now);
+                    continue;
+                } else if ( wakeUp > 0 ) {
+                    completed = completionService.poll(Math.max(wakeUp - now, 1), TimeUnit.MILLISECONDS);
+                    if ( completed == null ) {
+                        continue;
+                    }
+                } else {
+                    completed = completionService.take();
+                }
+                inFlight--;
+
+                BatchWriteTask task = completed.get();
+                now = System.currentTimeMillis();
+                Exception e = task.exception;
+                if ( e == null ) {
+                    throttledBatches = 0;
+                    requeueUnprocessedItems(task, batchWriteRetryStrategy, now, delayed, failedBatches);
+                } else if ( e instanceof AmazonServiceException
+                        && RetryUtils.isRequestEntityTooLargeException((AmazonServiceException) e)
+                        && task.batch.size() > 1 ) {
+                    int half = task.batch.size() / 2;
+                    splitBatches.add(task.batch.subList(0, half));
+                    splitBatches.add(task.batch.subList(half, task.batch.size()));
+                } else {
+                    failedBatches.add(toFailedBatch(task.batch, e));
+                    if ( e instanceof AmazonServiceException
+                            && RetryUtils.isThrottlingException((AmazonServiceException) e) ) {
+                        throttledUntil = now + getThrottlingBackoff(++throttledBatches);
+                    }
+                }
+            }
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(e.getMessage(), e);
+        } catch ( ExecutionException e ) {
+            throw new AmazonClientException("Unable to write batch: " + e.getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return failedBatches;
+    }
+
+    /**
+     * Removes and returns up to {@link #MAX_ITEMS_PER_BATCH} items from the
+     * given pending items.
+     */
+    private static List<PendingWrite> nextBatch(LinkedList<PendingWrite> pending) {
+        List<PendingWrite> batch = new ArrayList<PendingWrite>(
+                Math.min(pending.size(), MAX_ITEMS_PER_BATCH));
+        while ( !pending.isEmpty() && batch.size() < MAX_ITEMS_PER_BATCH ) {
+            batch.add(pending.removeFirst());
+        }
+        return batch;
+    }
+
+    /**
+     * Adds the items left unprocessed by the given batch back to the delayed
+     * items, or to the failed batches once they've been retried as many times
+     * as the retry strategy allows.
+     */
+    private static void requeueUnprocessedItems(
+            BatchWriteTask task,
+            BatchWriteRetryStrategy batchWriteRetryStrategy,
+            long now,
+            PriorityQueue<PendingWrite> delayed,
+            List<FailedBatch> failedBatches) {
+
+        Map<String, List<WriteRequest>> unprocessedItems = task.result.getUnprocessedItems();
+        if ( unprocessedItems == null || unprocessedItems.isEmpty() ) {
+            return;
+        }
+
+        int maxRetries = batchWriteRetryStrategy.getMaxRetryOnUnprocessedItems(
+                Collections.unmodifiableMap(toRequestItems(task.batch)));
+        Map<PendingWrite, PendingWrite> sent = new HashMap<PendingWrite, PendingWrite>();
+        for ( PendingWrite write : task.batch ) {
+            sent.put(write, write);
+        }
+
+        List<PendingWrite> retries = new ArrayList<PendingWrite>();
+        List<PendingWrite> exhausted = new ArrayList<PendingWrite>();
+        int retriesAttempted = 0;
+        for ( Entry<String, List<WriteRequest>> tableRequests : unprocessedItems.entrySet() ) {
+            for ( WriteRequest writeRequest : tableRequests.getValue() ) {
+                PendingWrite write = new PendingWrite(tableRequests.getKey(), writeRequest, 0, 0);
+                PendingWrite sentWrite = sent.get(write);
+                int retriesOfWrite = sentWrite == null ? 0 : sentWrite.retries;
+                if ( maxRetries >= 0 && retriesOfWrite >= maxRetries ) {
+                    exhausted.add(write);
+                } else {
+                    retries.add(new PendingWrite(write.tableName, writeRequest, retriesOfWrite + 1, 0));
+                    retriesAttempted = Math.max(retriesAttempted, retriesOfWrite);
+                }
+            }
+        }
+
+        if ( !exhausted.isEmpty() ) {
+            failedBatches.add(toFailedBatch(exhausted, null));
+        }
+        if ( !retries.isEmpty() ) {
+            long delay = batchWriteRetryStrategy.getDelayBeforeRetryUnprocessedItems(
+                    Collections.unmodifiableMap(toRequestItems(retries)), retriesAttempted);
+            for ( PendingWrite write : retries ) {
+                write.notBefore = now + Math.max(delay, 0);
+                delayed.add(write);
+            }
+        }
+    }
+
+    private static Map<String, List<WriteRequest>> toRequestItems(List<PendingWrite> writes) {
+        Map<String, List<WriteRequest>> requestItems = new HashMap<String, List<WriteRequest>>();
+        for ( PendingWrite write : writes ) {
+            List<WriteRequest> tableRequests = requestItems.get(write.tableName);
+            if ( tableRequests == null ) {
+                tableRequests = new ArrayList<WriteRequest>();
+                requestItems.put(write.tableName, tableRequests);
+            }
+            tableRequests.add(write.writeRequest);
+        }
+        return requestItems;
+    }
+
+    private static FailedBatch toFailedBatch(List<PendingWrite> writes, Exception exception) {
+        FailedBatch failedBatch = new FailedBatch();
+        failedBatch.setUnprocessedItems(toRequestItems(writes));
+        failedBatch.setException(exception);
+        return failedBatch;
+    }
+
+    /**
+     * Returns the delay (in milliseconds) before sending more batches after
+     * the given number of consecutive batches failed because of throttling.
+     * The delay grows exponentially up to {@link #MAX_BACKOFF_IN_MILLISECONDS},
+     * and a random half of it is jitter, so that concurrent writers don't
+     * resume all at once.
+     */
+    private static long getThrottlingBackoff(int throttledBatches) {
+        long delay = Math.min(500L << Math.min(throttledBatches - 1, 16),
+                MAX_BACKOFF_IN_MILLISECONDS);
+        return delay / 2 + (long) (new Random().nextDouble() * (delay / 2));
+    }
+
+    /**
+     * A write request waiting to be sent in a batch.
+     */
+    private static final class PendingWrite implements Comparable<PendingWrite> {
+        private final String tableName;
+        private final WriteRequest writeRequest;
+        /** The number of times the request has been left unprocessed. */
+        private final int retries;
+        /** The time before which the request mustn't be sent again. */
+        private long notBefore;
+
+        PendingWrite(String tableName, WriteRequest writeRequest, int retries, long notBefore) {
+            this.tableName = tableName;
+            this.writeRequest = writeRequest;
+            this.retries = retries;
+            this.notBefore = notBefore;
+        }
+
+        @Override
+        public int compareTo(PendingWrite other) {
+            return notBefore < other.notBefore ? -1 : (notBefore == other.notBefore ? 0 : 1);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if ( !(obj instanceof PendingWrite) ) {
+                return false;
+            }
+            PendingWrite other = (PendingWrite) obj;
+            return tableName.equals(other.tableName) && writeRequest.equals(other.writeRequest);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * tableName.hashCode() + writeRequest.hashCode();
+        }
+    }
+
+    /**
+     * Sends one batch through the BatchWriteItem API, and records its result
+     * or exception.
+     */
+    private final class BatchWriteTask implements Callable<BatchWriteTask> {
+        private final List<PendingWrite> batch;
+        private BatchWriteItemResult result;
+        private Exception exception;
+
+        BatchWriteTask(List<PendingWrite> batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public BatchWriteTask call() {
+            try {
+                result = db.batchWriteItem(applyBatchOperationUserAgent(
+                        new BatchWriteItemRequest().withRequestItems(toRequestItems(batch))));
+            } catch ( Exception e ) {
+                exception = e;
+            }
+            return this;
+        }
+    }
+
     /**
      * Check whether there are throttling exception in the failed batches.
      */
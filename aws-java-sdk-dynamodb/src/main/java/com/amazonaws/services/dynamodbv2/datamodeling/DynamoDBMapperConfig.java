@@ -56,6 +56,7 @@ public class DynamoDBMapperConfig {
         private RequestMetricCollector requestMetricCollector;
         private ConversionSchema conversionSchema;
         private BatchWriteRetryStrategy batchWriteRetryStrategy;
+        private Integer batchWriteConcurrency;
 
         /**
          * Creates a new builder initialized with the {@link #DEFAULT} values.
@@ -70,6 +71,7 @@ public class DynamoDBMapperConfig {
             requestMetricCollector = DEFAULT.getRequestMetricCollector();
             conversionSchema = DEFAULT.getConversionSchema();
             batchWriteRetryStrategy = DEFAULT.getBatchWriteRetryStrategy();
+            batchWriteConcurrency = DEFAULT.getBatchWriteConcurrency();
         }
 
         /**
@@ -291,6 +293,38 @@ public class DynamoDBMapperConfig {
             return this;
         }
 
+        /**
+         * @return the current maximum number of concurrent BatchWriteItem
+         *         calls
+         */
+        public Integer getBatchWriteConcurrency() {
+            return batchWriteConcurrency;
+        }
+
+        /**
+         * @param value the new maximum number of concurrent BatchWriteItem
+         *        calls
+         * @see DynamoDBMapperConfig#getBatchWriteConcurrency()
+         */
+        public void setBatchWriteConcurrency(Integer value) {
+            if (value != null && value < 1) {
+                throw new IllegalArgumentException(
+                        "batchWriteConcurrency must be at least 1");
+            }
+            this.batchWriteConcurrency = value;
+        }
+
+        /**
+         * @param value the new maximum number of concurrent BatchWriteItem
+         *        calls
+         * @return this builder
+         * @see DynamoDBMapperConfig#getBatchWriteConcurrency()
+         */
+        public Builder withBatchWriteConcurrency(Integer value) {
+            setBatchWriteConcurrency(value);
+            return this;
+        }
+
 
         /**
          * Builds a new {@code DynamoDBMapperConfig} object.
@@ -307,7 +341,8 @@ public class DynamoDBMapperConfig {
                     paginationLoadingStrategy,
                     requestMetricCollector,
                     conversionSchema,
-                    batchWriteRetryStrategy);
+                    batchWriteRetryStrategy,
+                    batchWriteConcurrency);
         }
     }
 
@@ -641,6 +676,7 @@ public class DynamoDBMapperConfig {
     private final RequestMetricCollector requestMetricCollector;
     private final ConversionSchema conversionSchema;
     private final BatchWriteRetryStrategy batchWriteRetryStrategy;
+    private final Integer batchWriteConcurrency;
 
     /**
      * Legacy constructor, using default PaginationLoadingStrategy
@@ -711,7 +747,8 @@ public class DynamoDBMapperConfig {
                 paginationLoadingStrategy,
                 requestMetricCollector,
                 ConversionSchemas.DEFAULT,
-                new DefaultBatchWriteRetryStrategy());
+                new DefaultBatchWriteRetryStrategy(),
+                null);
     }
 
     private DynamoDBMapperConfig(
@@ -723,7 +760,8 @@ public class DynamoDBMapperConfig {
             PaginationLoadingStrategy paginationLoadingStrategy,
             RequestMetricCollector requestMetricCollector,
             ConversionSchema conversionSchema,
-            BatchWriteRetryStrategy batchWriteRetryStrategy) {
+            BatchWriteRetryStrategy batchWriteRetryStrategy,
+            Integer batchWriteConcurrency) {
 
         this.saveBehavior = saveBehavior;
         this.consistentReads = consistentReads;
@@ -734,6 +772,7 @@ public class DynamoDBMapperConfig {
         this.requestMetricCollector = requestMetricCollector;
         this.conversionSchema = conversionSchema;
         this.batchWriteRetryStrategy = batchWriteRetryStrategy;
+        this.batchWriteConcurrency = batchWriteConcurrency;
     }
 
     /**
@@ -741,7 +780,7 @@ public class DynamoDBMapperConfig {
      */
     public DynamoDBMapperConfig(SaveBehavior saveBehavior) {
         this(saveBehavior, null, null, null, null, null, null,
-                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy());
+                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy(), null);
     }
 
     /**
@@ -750,7 +789,7 @@ public class DynamoDBMapperConfig {
      */
     public DynamoDBMapperConfig(ConsistentReads consistentReads) {
         this(null, consistentReads, null, null, null, null, null,
-                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy());
+                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy(), null);
     }
 
     /**
@@ -758,7 +797,7 @@ public class DynamoDBMapperConfig {
      */
     public DynamoDBMapperConfig(TableNameOverride tableNameOverride) {
         this(null, null, tableNameOverride, null, null, null, null,
-                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy());
+                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy(), null);
     }
 
     /**
@@ -766,7 +805,7 @@ public class DynamoDBMapperConfig {
      */
     public DynamoDBMapperConfig(TableNameResolver tableNameResolver) {
         this(null, null, null, tableNameResolver, null, null, null,
-                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy());
+                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy(), null);
     }
 
     /**
@@ -774,7 +813,7 @@ public class DynamoDBMapperConfig {
      */
     public DynamoDBMapperConfig(ObjectTableNameResolver objectTableNameResolver) {
         this(null, null, null, null, objectTableNameResolver, null, null,
-                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy());
+                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy(), null);
     }
 
     /**
@@ -782,7 +821,7 @@ public class DynamoDBMapperConfig {
      */
     public DynamoDBMapperConfig(TableNameResolver tableNameResolver, ObjectTableNameResolver objectTableNameResolver) {
         this(null, null, null, tableNameResolver, objectTableNameResolver, null, null,
-                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy());
+                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy(), null);
     }
 
     /**
@@ -793,14 +832,14 @@ public class DynamoDBMapperConfig {
             PaginationLoadingStrategy paginationLoadingStrategy) {
 
         this(null, null, null, null, null, paginationLoadingStrategy, null,
-                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy());
+                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy(), null);
     }
 
     /**
      * Constructs a new configuration object with the conversion schema given.
      */
     public DynamoDBMapperConfig(ConversionSchema conversionSchema) {
-        this(null, null, null, null, null, null, null, conversionSchema, new DefaultBatchWriteRetryStrategy());
+        this(null, null, null, null, null, null, null, conversionSchema, new DefaultBatchWriteRetryStrategy(), null);
     }
 
     /**
@@ -833,6 +872,7 @@ public class DynamoDBMapperConfig {
             this.requestMetricCollector = defaults.getRequestMetricCollector();
             this.conversionSchema = defaults.getConversionSchema();
             this.batchWriteRetryStrategy = defaults.getBatchWriteRetryStrategy();
+            this.batchWriteConcurrency = defaults.getBatchWriteConcurrency();
 
         } else {
 
@@ -874,6 +914,10 @@ public class DynamoDBMapperConfig {
                     ? defaults.getBatchWriteRetryStrategy()
                     : overrides.getBatchWriteRetryStrategy();
 
+            this.batchWriteConcurrency = (overrides.getBatchWriteConcurrency() == null)
+                    ? defaults.getBatchWriteConcurrency()
+                    : overrides.getBatchWriteConcurrency();
+
         }
     }
 
@@ -957,6 +1001,17 @@ public class DynamoDBMapperConfig {
         return batchWriteRetryStrategy;
     }
 
+    /**
+     * Returns the maximum number of BatchWriteItem calls that
+     * {@link DynamoDBMapper#batchWrite(List, List, DynamoDBMapperConfig)} keeps
+     * in flight at once. With more than one, batches are written concurrently,
+     * and unprocessed items are added to later batches rather than retried on
+     * their own. The default is 1, which writes one batch at a time.
+     */
+    public Integer getBatchWriteConcurrency() {
+        return batchWriteConcurrency;
+    }
+
     /**
      * Default configuration uses UPDATE behavior for saves and EVENTUALly
      * consistent reads, with no table name override and lazy-loading strategy.
@@ -970,5 +1025,6 @@ public class DynamoDBMapperConfig {
             PaginationLoadingStrategy.LAZY_LOADING,
             null,  // RequestMetricCollector
             ConversionSchemas.DEFAULT,
-            new DefaultBatchWriteRetryStrategy());
+            new DefaultBatchWriteRetryStrategy(),
+            1);
 }
@@ -15,62 +15,41 @@
 package com.amazonaws.services.dynamodbv2.datamodeling;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
-
-import org.apache.http.annotation.GuardedBy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Reflection assistant for {@link DynamoDBMapper}
+ * <p>
+ * Everything reflected about a class or one of its properties is gathered
+ * once into an immutable model, and published through a concurrent map, so
+ * that threads marshalling and unmarshalling objects of the same class never
+ * wait on each other.
  */
 class DynamoDBReflector {
 
-    /*
-     * Several caches for performance. Collectively, they can make this class
-     * over twice as fast.
-     */
-    private final Map<Class<?>, Collection<Method>> getterCache = new HashMap<Class<?>, Collection<Method>>();
-    private final Map<Class<?>, Method> primaryHashKeyGetterCache = new HashMap<Class<?>, Method>();
-    private final Map<Class<?>, Method> primaryRangeKeyGetterCache = new HashMap<Class<?>, Method>();
-
-    /*
-     * All caches keyed by a Method use the getter for a particular mapped
-     * property
-     */
-    private final Map<Method, Method> setterCache = new HashMap<Method, Method>();
-
-    @GuardedBy("readWriteLockAttrName")
-    private final Map<Method, String> attributeNameCache = new HashMap<Method, String>();
+    /** The models of the classes reflected so far. */
+    private final ConcurrentMap<Class<?>, ClassModel> classModels =
+            new ConcurrentHashMap<Class<?>, ClassModel>();
 
-    private final Map<Method, Boolean> versionAttributeGetterCache = new HashMap<Method, Boolean>();
-    private final Map<Method, Boolean> autoGeneratedKeyGetterCache = new HashMap<Method, Boolean>();
-
-    private final ReentrantReadWriteLock readWriteLockAttrName = new ReentrantReadWriteLock();
-    private final ReadLock readLockAttrName = readWriteLockAttrName.readLock();
-    private final WriteLock writeLockAttrName = readWriteLockAttrName.writeLock();
+    /** The models of the properties reflected so far, keyed by getter. */
+    private final ConcurrentMap<Method, PropertyModel> propertyModels =
+            new ConcurrentHashMap<Method, PropertyModel>();
 
     /**
      * Returns the set of getter methods which are relevant when marshalling or
      * unmarshalling an object.
      */
     Collection<Method> getRelevantGetters(Class<?> clazz) {
-        synchronized (getterCache) {
-            if ( !getterCache.containsKey(clazz) ) {
-                List<Method> relevantGetters = findRelevantGetters(clazz);
-                getterCache.put(clazz, relevantGetters);
-            }
-            return getterCache.get(clazz);
-        }
+        return getClassModel(clazz).relevantGetters;
     }
 
     static List<Method> findRelevantGetters(Class<?> clazz) {
-        List<Method> relevantGetters = new LinkedList<Method>();
+        List<Method> relevantGetters = new ArrayList<Method>();
         for ( Method m : clazz.getMethods() ) {
             if ( isRelevantGetter(m) ) {
                 relevantGetters.add(m);
@@ -103,39 +82,15 @@ class DynamoDBReflector {
      * given, or null if the class doesn't have one.
      */
     <T> Method getPrimaryRangeKeyGetter(Class<T> clazz) {
-        synchronized (primaryRangeKeyGetterCache) {
-            if ( !primaryRangeKeyGetterCache.containsKey(clazz) ) {
-                Method rangeKeyMethod = null;
-                for ( Method method : getRelevantGetters(clazz) ) {
-                    if ( method.getParameterTypes().length == 0
-                            && ReflectionUtils.getterOrFieldHasAnnotation(method, DynamoDBRangeKey.class)) {
-                        rangeKeyMethod = method;
-                        break;
-                    }
-                }
-                primaryRangeKeyGetterCache.put(clazz, rangeKeyMethod);
-            }
-            return primaryRangeKeyGetterCache.get(clazz);
-        }
+        return getClassModel(clazz).rangeKeyGetter;
     }
 
     /**
      * Returns all annotated {@link DynamoDBHashKey} and
-     * {@link DynamoDBRangeKey} getters for the class given, throwing an
-     * exception if there isn't one.
-     *
-     * TODO: caching
+     * {@link DynamoDBRangeKey} getters for the class given.
      */
     <T> Collection<Method> getPrimaryKeyGetters(Class<T> clazz) {
-        List<Method> keyGetters = new LinkedList<Method>();
-        for (Method getter : getRelevantGetters(clazz)) {
-            if (ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBHashKey.class)
-                    || ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBRangeKey.class)) {
-                keyGetters.add(getter);
-            }
-        }
-
-        return keyGetters;
+        return getClassModel(clazz).keyGetters;
     }
 
 
@@ -144,20 +99,7 @@ class DynamoDBReflector {
      * throwing an exception if there isn't one.
      */
     <T> Method getPrimaryHashKeyGetter(Class<T> clazz) {
-        Method hashKeyMethod;
-        synchronized (primaryHashKeyGetterCache) {
-            if ( !primaryHashKeyGetterCache.containsKey(clazz) ) {
-                for ( Method method : getRelevantGetters(clazz) ) {
-                    if ( method.getParameterTypes().length == 0
-                            && ReflectionUtils.getterOrFieldHasAnnotation(method, DynamoDBHashKey.class)) {
-                        primaryHashKeyGetterCache.put(clazz, method);
-                        break;
-                    }
-                }
-            }
-            hashKeyMethod = primaryHashKeyGetterCache.get(clazz);
-        }
-
+        Method hashKeyMethod = getClassModel(clazz).hashKeyGetter;
         if ( hashKeyMethod == null ) {
             throw new DynamoDBMappingException("Public, zero-parameter hash key property must be annotated with "
                     + DynamoDBHashKey.class);
@@ -180,65 +122,50 @@ class DynamoDBReflector {
      * Returns the attribute name corresponding to the given getter method.
      */
     String getAttributeName(Method getter) {
+        return getPropertyModel(getter).attributeName;
+    }
+
+    private static String findAttributeName(Method getter) {
         String attributeName;
-        readLockAttrName.lock();
-        try {
-            attributeName = attributeNameCache.get(getter);
-        } finally {
-            readLockAttrName.unlock();
-        }
-        if ( attributeName != null )
-            return attributeName;
         DynamoDBHashKey hashKeyAnnotation = ReflectionUtils.getAnnotationFromGetterOrField(getter, DynamoDBHashKey.class);
         if ( hashKeyAnnotation != null ) {
             attributeName = hashKeyAnnotation.attributeName();
             if ( attributeName != null && attributeName.length() > 0 )
-                return cacheAttributeName(getter, attributeName);
+                return attributeName;
         }
         DynamoDBIndexHashKey indexHashKey = ReflectionUtils.getAnnotationFromGetterOrField(getter, DynamoDBIndexHashKey.class);
         if ( indexHashKey != null ) {
             attributeName = indexHashKey.attributeName();
             if ( attributeName != null && attributeName.length() > 0 )
-                return cacheAttributeName(getter, attributeName);
+                return attributeName;
         }
         DynamoDBRangeKey rangeKey = ReflectionUtils.getAnnotationFromGetterOrField(getter, DynamoDBRangeKey.class);
         if ( rangeKey != null ) {
             attributeName = rangeKey.attributeName();
             if ( attributeName != null && attributeName.length() > 0 )
-                return cacheAttributeName(getter, attributeName);
+                return attributeName;
         }
         DynamoDBIndexRangeKey indexRangeKey = ReflectionUtils.getAnnotationFromGetterOrField(getter, DynamoDBIndexRangeKey.class);
         if ( indexRangeKey != null ) {
             attributeName = indexRangeKey.attributeName();
             if ( attributeName != null && attributeName.length() > 0 )
-                return cacheAttributeName(getter, attributeName);
+                return attributeName;
         }
         DynamoDBAttribute attribute = ReflectionUtils.getAnnotationFromGetterOrField(getter, DynamoDBAttribute.class);
         if ( attribute != null ) {
             attributeName = attribute.attributeName();
             if ( attributeName != null && attributeName.length() > 0 )
-                return cacheAttributeName(getter, attributeName);
+                return attributeName;
         }
         DynamoDBVersionAttribute version = ReflectionUtils.getAnnotationFromGetterOrField(getter, DynamoDBVersionAttribute.class);
         if ( version != null ) {
             attributeName = version.attributeName();
             if ( attributeName != null && attributeName.length() > 0 )
-                return cacheAttributeName(getter, attributeName);
+                return attributeName;
         }
         // Default to the camel-cased field name of the getter method, inferred
         // according to the Java naming convention.
-        attributeName = ReflectionUtils.getFieldNameByGetter(getter, true);
-        return cacheAttributeName(getter, attributeName);
-    }
-
-    private String cacheAttributeName(Method getter, String attributeName) {
-        writeLockAttrName.lock();
-        try {
-            attributeNameCache.put(getter, attributeName);
-        } finally {
-            writeLockAttrName.unlock();
-        }
-        return attributeName;
+        return ReflectionUtils.getFieldNameByGetter(getter, true);
     }
 
     /**
@@ -246,24 +173,13 @@ class DynamoDBReflector {
      * setter exists.
      */
     Method getSetter(Method getter) {
-        synchronized (setterCache) {
-            if ( !setterCache.containsKey(getter) ) {
-                String fieldName = ReflectionUtils.getFieldNameByGetter(getter, false);
-                String setterName = "set" + fieldName;
-                Method setter = null;
-                try {
-                    setter = getter.getDeclaringClass().getMethod(setterName, getter.getReturnType());
-                } catch ( NoSuchMethodException e ) {
-                    throw new DynamoDBMappingException("Expected a public, one-argument method called " + setterName
-                            + " on class " + getter.getDeclaringClass(), e);
-                } catch ( SecurityException e ) {
-                    throw new DynamoDBMappingException("No access to public, one-argument method called " + setterName
-                            + " on class " + getter.getDeclaringClass(), e);
-                }
-                setterCache.put(getter, setter);
-            }
-            return setterCache.get(getter);
+        PropertyModel property = getPropertyModel(getter);
+        if ( property.setterException != null ) {
+            // A new exception, so that the stack trace is the caller's
+            throw new DynamoDBMappingException(property.setterException.getMessage(),
+                    property.setterException.getCause());
         }
+        return property.setter;
     }
 
     /**
@@ -271,33 +187,14 @@ class DynamoDBReflector {
      * version attribute.
      */
     boolean isVersionAttributeGetter(Method getter) {
-        synchronized (versionAttributeGetterCache) {
-            if ( !versionAttributeGetterCache.containsKey(getter) ) {
-                versionAttributeGetterCache.put(
-                        getter,
-                        getter.getName().startsWith("get") && getter.getParameterTypes().length == 0
-                                && ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBVersionAttribute.class));
-            }
-            return versionAttributeGetterCache.get(getter);
-        }
+        return getPropertyModel(getter).versionAttribute;
     }
 
     /**
      * Returns whether the method given is an assignable key getter.
      */
     boolean isAssignableKey(Method getter) {
-        synchronized (autoGeneratedKeyGetterCache) {
-            if ( !autoGeneratedKeyGetterCache.containsKey(getter) ) {
-                autoGeneratedKeyGetterCache.put(
-                        getter,
-                        ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBAutoGeneratedKey.class)
-                                && ( ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBHashKey.class) ||
-                                     ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBRangeKey.class) ||
-                                     ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBIndexHashKey.class) ||
-                                     ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBIndexRangeKey.class)));
-            }
-            return autoGeneratedKeyGetterCache.get(getter);
-        }
+        return getPropertyModel(getter).assignableKey;
     }
 
     /**
@@ -326,4 +223,127 @@ class DynamoDBReflector {
     boolean hasPrimaryRangeKey(Class<?> clazz) {
         return getPrimaryRangeKeyGetter(clazz) != null;
     }
+
+    /**
+     * Returns the model of the given class, reflecting it if it hasn't been
+     * already. Two threads may both reflect a class the first time it is
+     * used; only one of the equivalent models is kept.
+     */
+    private ClassModel getClassModel(Class<?> clazz) {
+        ClassModel model = classModels.get(clazz);
+        if ( model == null ) {
+            model = new ClassModel(clazz);
+            ClassModel existing = classModels.putIfAbsent(clazz, model);
+            if ( existing != null ) {
+                model = existing;
+            }
+        }
+        return model;
+    }
+
+    /**
+     * Returns the model of the property of the given getter, reflecting it if
+     * it hasn't been already.
+     */
+    private PropertyModel getPropertyModel(Method getter) {
+        PropertyModel model = propertyModels.get(getter);
+        if ( model == null ) {
+            model = new PropertyModel(getter);
+            PropertyModel existing = propertyModels.putIfAbsent(getter, model);
+            if ( existing != null ) {
+                model = existing;
+            }
+        }
+        return model;
+    }
+
+    /**
+     * Suppresses the access checks of the given method, which would otherwise
+     * be repeated by every invocation.
+     */
+    private static Method accessible(Method method) {
+        try {
+            method.setAccessible(true);
+        } catch ( RuntimeException e ) {
+            // Not allowed to; invocations will still check access
+        }
+        return method;
+    }
+
+    /**
+     * The relevant getters and key getters of a mapped class.
+     */
+    private static final class ClassModel {
+        private final List<Method> relevantGetters;
+        private final List<Method> keyGetters;
+        private final Method hashKeyGetter;
+        private final Method rangeKeyGetter;
+
+        ClassModel(Class<?> clazz) {
+            List<Method> getters = findRelevantGetters(clazz);
+            List<Method> keys = new ArrayList<Method>();
+            Method hashKey = null;
+            Method rangeKey = null;
+            for ( Method getter : getters ) {
+                accessible(getter);
+                boolean isHashKey = ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBHashKey.class);
+                boolean isRangeKey = ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBRangeKey.class);
+                if ( isHashKey || isRangeKey ) {
+                    keys.add(getter);
+                }
+                if ( isHashKey && hashKey == null ) {
+                    hashKey = getter;
+                }
+                if ( isRangeKey && rangeKey == null ) {
+                    rangeKey = getter;
+                }
+            }
+            this.relevantGetters = Collections.unmodifiableList(getters);
+            this.keyGetters = Collections.unmodifiableList(keys);
+            this.hashKeyGetter = hashKey;
+            this.rangeKeyGetter = rangeKey;
+        }
+    }
+
+    /**
+     * The attribute name, setter and annotations of the property of a getter.
+     */
+    private static final class PropertyModel {
+        private final String attributeName;
+        private final Method setter;
+        /** Why there is no setter, thrown when the setter is asked for. */
+        private final DynamoDBMappingException setterException;
+        private final boolean versionAttribute;
+        private final boolean assignableKey;
+
+        PropertyModel(Method getter) {
+            this.attributeName = findAttributeName(getter);
+
+            Method foundSetter = null;
+            DynamoDBMappingException exception = null;
+            String setterName = null;
+            try {
+                setterName = "set" + ReflectionUtils.getFieldNameByGetter(getter, false);
+                foundSetter = accessible(getter.getDeclaringClass().getMethod(setterName, getter.getReturnType()));
+            } catch ( NoSuchMethodException e ) {
+                exception = new DynamoDBMappingException("Expected a public, one-argument method called " + setterName
+                        + " on class " + getter.getDeclaringClass(), e);
+            } catch ( SecurityException e ) {
+                exception = new DynamoDBMappingException("No access to public, one-argument method called " + setterName
+                        + " on class " + getter.getDeclaringClass(), e);
+            } catch ( DynamoDBMappingException e ) {
+                exception = e;
+            }
+            this.setter = foundSetter;
+            this.setterException = exception;
+
+            this.versionAttribute = getter.getName().startsWith("get") && getter.getParameterTypes().length == 0
+                    && ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBVersionAttribute.class);
+            this.assignableKey = ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBAutoGeneratedKey.class)
+                    && ( ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBHashKey.class) ||
+                         ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBRangeKey.class) ||
+                         ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBIndexHashKey.class) ||
+                         ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBIndexRangeKey.class));
+        }
+    }
 }
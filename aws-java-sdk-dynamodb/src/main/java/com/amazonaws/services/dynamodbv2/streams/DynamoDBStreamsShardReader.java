@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.streams;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.internal.streams.ShardReaderConfiguration;
+import com.amazonaws.internal.streams.ShardReaderEngine;
+import com.amazonaws.internal.streams.StreamShard;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBStreamsAsync;
+import com.amazonaws.services.dynamodbv2.model.DescribeStreamRequest;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsRequest;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsResult;
+import com.amazonaws.services.dynamodbv2.model.GetShardIteratorRequest;
+import com.amazonaws.services.dynamodbv2.model.GetShardIteratorResult;
+import com.amazonaws.services.dynamodbv2.model.Record;
+import com.amazonaws.services.dynamodbv2.model.Shard;
+import com.amazonaws.services.dynamodbv2.model.StreamDescription;
+
+/**
+ * Reads all the shards of a DynamoDB stream concurrently, and passes their
+ * records to a {@link StreamRecordProcessor}.
+ * <p>
+ * Each shard has at most one GetRecords call outstanding, made with the
+ * asynchronous client, and its next batch is read while the previous one is
+ * processed. The records of a shard are processed in order by a small pool of
+ * threads shared by all the shards, and the shards split from a shard are read
+ * once it has been read to its end.
+ * <p>
+ * The reader doesn't checkpoint: it starts from the trim horizon or the
+ * latest records every time it is started. The calls are made on the executor
+ * of the client, which should have enough threads for the shards read at a
+ * time. GetRecords returns at most 1000 records per call.
+ *
+ * @see ShardReaderConfiguration
+ */
+public class DynamoDBStreamsShardReader {
+    private final ShardReaderEngine<Record> engine;
+
+    public DynamoDBStreamsShardReader(AmazonDynamoDBStreamsAsync streams, String streamArn,
+            StreamRecordProcessor processor) {
+        this(streams, streamArn, processor, new ShardReaderConfiguration());
+    }
+
+    public DynamoDBStreamsShardReader(final AmazonDynamoDBStreamsAsync streams, final String streamArn,
+            final StreamRecordProcessor processor, ShardReaderConfiguration config) {
+        if (streams == null || processor == null) {
+            throw new IllegalArgumentException("The client and record processor must be specified");
+        }
+        this.engine = new ShardReaderEngine<Record>(streamArn, config) {
+            @Override
+            protected List<StreamShard> listShards() {
+                List<StreamShard> shards = new ArrayList<StreamShard>();
+                String exclusiveStartShardId = null;
+                do {
+                    StreamDescription description = streams.describeStream(new DescribeStreamRequest()
+                            .withStreamArn(streamArn)
+                            .withExclusiveStartShardId(exclusiveStartShardId))
+                            .getStreamDescription();
+                    for (Shard shard : description.getShards()) {
+                        shards.add(new StreamShard(shard.getShardId(), shard.getParentShardId(), null,
+                                shard.getSequenceNumberRange().getEndingSequenceNumber() != null));
+                    }
+                    exclusiveStartShardId = description.getLastEvaluatedShardId();
+                } while (exclusiveStartShardId != null);
+                return shards;
+            }
+
+            @Override
+            protected void getShardIterator(String shardId, String iteratorType, String sequenceNumber,
+                    final IteratorCallback callback) {
+                GetShardIteratorRequest request = new GetShardIteratorRequest()
+                        .withStreamArn(streamArn)
+                        .withShardId(shardId)
+                        .withShardIteratorType(iteratorType)
+                        .withSequenceNumber(sequenceNumber);
+                streams.getShardIteratorAsync(request,
+                        new AsyncHandler<GetShardIteratorRequest, GetShardIteratorResult>() {
+                            @Override
+                            public void onSuccess(GetShardIteratorRequest request, GetShardIteratorResult result) {
+                                callback.onIterator(result.getShardIterator());
+                            }
+
+                            @Override
+                            public void onError(Exception exception) {
+                                callback.onError(exception);
+                            }
+                        });
+            }
+
+            @Override
+            protected void getRecords(String shardIterator, int limit, final RecordsCallback<Record> callback) {
+                GetRecordsRequest request = new GetRecordsRequest()
+                        .withShardIterator(shardIterator)
+                        .withLimit(limit);
+                streams.getRecordsAsync(request, new AsyncHandler<GetRecordsRequest, GetRecordsResult>() {
+                    @Override
+                    public void onSuccess(GetRecordsRequest request, GetRecordsResult result) {
+                        callback.onRecords(result.getRecords(), result.getNextShardIterator());
+                    }
+
+                    @Override
+                    public void onError(Exception exception) {
+                        callback.onError(exception);
+                    }
+                });
+            }
+
+            @Override
+            protected String getSequenceNumber(Record record) {
+                return record.getDynamodb().getSequenceNumber();
+            }
+
+            @Override
+            protected void processRecords(String shardId, List<Record> records) throws Exception {
+                processor.processRecords(shardId, records);
+            }
+
+            @Override
+            protected void shardEnded(String shardId) throws Exception {
+                processor.shardEnded(shardId);
+            }
+        };
+    }
+
+    /**
+     * Starts reading the shards of the stream.
+     */
+    public void start() {
+        engine.start();
+    }
+
+    /**
+     * Stops reading the shards. The batches being processed complete; the
+     * records read and not yet processed are discarded. The client is not shut
+     * down.
+     */
+    public void shutdown() {
+        engine.shutdown();
+    }
+
+    /**
+     * Waits until the batches being processed complete after a shutdown.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return engine.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Returns the ids of the shards being read.
+     */
+    public Set<String> getShardsBeingRead() {
+        return engine.getShardsBeingRead();
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.streams;
+
+import java.util.List;
+
+import com.amazonaws.services.dynamodbv2.model.Record;
+
+/**
+ * Processes the records read from the shards of a DynamoDB stream by a
+ * {@link DynamoDBStreamsShardReader}. The batches of a shard are processed one
+ * at a time, in order, but the batches of different shards concurrently.
+ */
+public interface StreamRecordProcessor {
+
+    /**
+     * Processes a batch of records of a shard. An exception is logged, and the
+     * next batch processed.
+     *
+     * @param shardId
+     *            the id of the shard the records were read from
+     * @param records
+     *            the records, in the order of their sequence numbers
+     */
+    void processRecords(String shardId, List<Record> records) throws Exception;
+
+    /**
+     * Called after the last batch of a closed shard was processed, before the
+     * shards split from it are read.
+     *
+     * @param shardId
+     *            the id of the shard
+     */
+    void shardEnded(String shardId) throws Exception;
+}
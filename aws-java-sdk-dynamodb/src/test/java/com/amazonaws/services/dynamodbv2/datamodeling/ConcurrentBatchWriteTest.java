@@ -0,0 +1,247 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.BatchWriteRetryStrategy;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+public class ConcurrentBatchWriteTest {
+
+    private static final String TABLE_NAME = "tableName";
+
+    @Test
+    public void testAllItemsWrittenConcurrently() {
+        FakeDynamoDB ddb = new FakeDynamoDB() {
+            @Override
+            protected BatchWriteItemResult batchWriteItem(List<WriteRequest> requests)
+                    throws InterruptedException {
+                // Give the other batches a chance to be sent meanwhile
+                Thread.sleep(20);
+                return written(requests);
+            }
+        };
+
+        List<FailedBatch> failedBatches = batchSave(ddb, 100, 4, 10);
+
+        assertEquals(0, failedBatches.size());
+        assertEquals(100, ddb.writtenItems.size());
+        assertEquals(4, ddb.calls.get());
+        assertTrue(ddb.maxInFlight.get() > 1);
+        assertTrue(ddb.maxInFlight.get() <= 4);
+    }
+
+    @Test
+    public void testUnprocessedItemsAreWrittenInLaterBatches() {
+        final AtomicBoolean firstBatch = new AtomicBoolean(true);
+        FakeDynamoDB ddb = new FakeDynamoDB() {
+            @Override
+            protected BatchWriteItemResult batchWriteItem(List<WriteRequest> requests) {
+                // Leave the last 5 items of the first batch unprocessed
+                if (firstBatch.compareAndSet(true, false)) {
+                    return written(requests.subList(0, requests.size() - 5))
+                            .withUnprocessedItems(Collections.singletonMap(TABLE_NAME,
+                                    requests.subList(requests.size() - 5, requests.size())));
+                }
+                return written(requests);
+            }
+        };
+
+        List<FailedBatch> failedBatches = batchSave(ddb, 50, 2, 10);
+
+        assertEquals(0, failedBatches.size());
+        assertEquals(50, ddb.writtenItems.size());
+        assertEquals(3, ddb.calls.get());
+    }
+
+    @Test
+    public void testUnprocessedItemsFailAfterMaxRetries() {
+        FakeDynamoDB ddb = new FakeDynamoDB() {
+            @Override
+            protected BatchWriteItemResult batchWriteItem(List<WriteRequest> requests) {
+                return new BatchWriteItemResult().withUnprocessedItems(
+                        Collections.singletonMap(TABLE_NAME, requests));
+            }
+        };
+
+        List<FailedBatch> failedBatches = batchSave(ddb, 1, 2, 3);
+
+        assertEquals(4, ddb.calls.get());
+        assertEquals(1, failedBatches.size());
+        assertNull(failedBatches.get(0).getException());
+        assertEquals(1, failedBatches.get(0).getUnprocessedItems().get(TABLE_NAME).size());
+    }
+
+    @Test
+    public void testTooLargeBatchesAreSplit() {
+        FakeDynamoDB ddb = new FakeDynamoDB() {
+            @Override
+            protected BatchWriteItemResult batchWriteItem(List<WriteRequest> requests) {
+                if (requests.size() > 5) {
+                    AmazonServiceException ase = new AmazonServiceException("Too large");
+                    ase.setStatusCode(413);
+                    throw ase;
+                }
+                return written(requests);
+            }
+        };
+
+        List<FailedBatch> failedBatches = batchSave(ddb, 25, 3, 10);
+
+        assertEquals(0, failedBatches.size());
+        assertEquals(25, ddb.writtenItems.size());
+    }
+
+    @Test
+    public void testExceptionsAreReturnedAsFailedBatches() {
+        final AmazonServiceException exception = new AmazonServiceException("Boom");
+        exception.setErrorCode("ProvisionedThroughputExceededException");
+        FakeDynamoDB ddb = new FakeDynamoDB() {
+            @Override
+            protected BatchWriteItemResult batchWriteItem(List<WriteRequest> requests) {
+                throw exception;
+            }
+        };
+
+        List<FailedBatch> failedBatches = batchSave(ddb, 30, 2, 10);
+
+        assertEquals(2, ddb.calls.get());
+        assertEquals(2, failedBatches.size());
+        int failedItems = 0;
+        for (FailedBatch failedBatch : failedBatches) {
+            assertSame(exception, failedBatch.getException());
+            failedItems += failedBatch.getUnprocessedItems().get(TABLE_NAME).size();
+        }
+        assertEquals(30, failedItems);
+    }
+
+    private static List<FailedBatch> batchSave(FakeDynamoDB ddb, int items,
+            int concurrency, int maxRetries) {
+        DynamoDBMapper mapper = new DynamoDBMapper(ddb.client,
+                new DynamoDBMapperConfig.Builder()
+                        .withBatchWriteConcurrency(concurrency)
+                        .withBatchWriteRetryStrategy(new NoDelayRetryStrategy(maxRetries))
+                        .build());
+        List<Item> toSave = new ArrayList<Item>();
+        for (int i = 0; i < items; i++) {
+            toSave.add(new Item("item-" + i));
+        }
+        return mapper.batchSave(toSave);
+    }
+
+    /**
+     * A thread safe fake of the BatchWriteItem API.
+     */
+    private abstract static class FakeDynamoDB implements InvocationHandler {
+        final AmazonDynamoDB client = (AmazonDynamoDB) Proxy.newProxyInstance(
+                AmazonDynamoDB.class.getClassLoader(),
+                new Class<?>[] { AmazonDynamoDB.class }, this);
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final Set<WriteRequest> writtenItems =
+                Collections.synchronizedSet(new HashSet<WriteRequest>());
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!method.getName().equals("batchWriteItem")) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            calls.incrementAndGet();
+            int current = inFlight.incrementAndGet();
+            synchronized (maxInFlight) {
+                maxInFlight.set(Math.max(maxInFlight.get(), current));
+            }
+            try {
+                BatchWriteItemRequest request = (BatchWriteItemRequest) args[0];
+                return batchWriteItem(request.getRequestItems().get(TABLE_NAME));
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        protected abstract BatchWriteItemResult batchWriteItem(List<WriteRequest> requests)
+                throws InterruptedException;
+
+        protected BatchWriteItemResult written(List<WriteRequest> requests) {
+            writtenItems.addAll(requests);
+            return new BatchWriteItemResult().withUnprocessedItems(
+                    new HashMap<String, List<WriteRequest>>());
+        }
+    }
+
+    private static class NoDelayRetryStrategy implements BatchWriteRetryStrategy {
+        private final int maxRetries;
+
+        NoDelayRetryStrategy(int maxRetries) {
+            this.maxRetries = maxRetries;
+        }
+
+        @Override
+        public int getMaxRetryOnUnprocessedItems(
+                Map<String, List<WriteRequest>> batchWriteItemInput) {
+            return maxRetries;
+        }
+
+        @Override
+        public long getDelayBeforeRetryUnprocessedItems(
+                Map<String, List<WriteRequest>> unprocessedItems,
+                int retriesAttempted) {
+            return 0;
+        }
+    }
+
+    @DynamoDBTable(tableName = TABLE_NAME)
+    public static class Item {
+        private String hash;
+
+        public Item(String hash) {
+            this.hash = hash;
+        }
+
+        @DynamoDBHashKey
+        public String getHash() {
+            return hash;
+        }
+
+        public void setHash(String hash) {
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClient;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+/**
+ * Measures the throughput of the {@link DynamoDBReflector} lookups made for
+ * every item, of converting mapped objects to items, which is what
+ * {@code save} does before transforming the attributes, and of
+ * {@link DynamoDBMapper#marshallIntoObject}, which is what {@code load},
+ * {@code query} and {@code scan} do with every item, from a number of threads
+ * sharing one mapper.
+ * <p>
+ * None makes any request to DynamoDB. Run it against two builds to compare
+ * them, for example:
+ *
+ * <pre>
+ * java -cp ... DynamoDBMapperBenchmark [threads] [seconds]
+ * </pre>
+ *
+ * By default, it is run with 1 to 64 threads.
+ */
+public class DynamoDBMapperBenchmark {
+
+    private static final int[] THREAD_COUNTS = { 1, 2, 4, 8, 16, 32, 64 };
+
+    public static void main(String[] args) throws Exception {
+        int[] threadCounts = args.length > 0 ? new int[] { Integer.parseInt(args[0]) }
+                : THREAD_COUNTS;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        final DynamoDBReflector reflector = new DynamoDBReflector();
+        final ItemConverter converter = ConversionSchemas.DEFAULT.getConverter(
+                new ConversionSchema.Dependencies()
+                        .with(DynamoDBReflector.class, reflector));
+        final DynamoDBMapper mapper = new DynamoDBMapper(
+                new AmazonDynamoDBClient(new BasicAWSCredentials("akid", "skid")));
+
+        final BenchmarkItem item = newItem();
+        final Map<String, AttributeValue> attributes = converter.convert(item);
+
+        Operation reflect = new Operation() {
+            @Override
+            public void run() {
+                // The lookups made by convert and marshallIntoObject
+                reflector.getPrimaryHashKeyGetter(BenchmarkItem.class);
+                for (Method getter : reflector.getRelevantGetters(BenchmarkItem.class)) {
+                    reflector.getAttributeName(getter);
+                    reflector.getSetter(getter);
+                    reflector.isVersionAttributeGetter(getter);
+                    reflector.isAssignableKey(getter);
+                }
+            }
+        };
+        Operation marshall = new Operation() {
+            @Override
+            public void run() {
+                converter.convert(item);
+            }
+        };
+        Operation unmarshall = new Operation() {
+            @Override
+            public void run() {
+                mapper.marshallIntoObject(BenchmarkItem.class, attributes);
+            }
+        };
+
+        System.out.println("Attributes per item: " + attributes.size());
+        // Warm up, so that the measurements run compiled code.
+        measure(reflect, 1, 2);
+        measure(marshall, 1, 2);
+        measure(unmarshall, 1, 2);
+
+        for (int threads : threadCounts) {
+            System.out.println("Threads: " + threads);
+            report("reflector lookups", measure(reflect, threads, seconds), seconds);
+            report("convert (save)", measure(marshall, threads, seconds), seconds);
+            report("marshallIntoObject (load)", measure(unmarshall, threads, seconds), seconds);
+        }
+    }
+
+    private interface Operation {
+        void run();
+    }
+
+    /**
+     * Runs the given operation on the given number of threads for the given
+     * number of seconds, and returns the number of operations completed.
+     */
+    private static long measure(final Operation operation, int threads, int seconds)
+            throws InterruptedException {
+        final long deadline = System.nanoTime() + seconds * 1000000000L;
+        final AtomicLong count = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    long operations = 0;
+                    while (System.nanoTime() < deadline) {
+                        for (int j = 0; j < 100; j++) {
+                            operation.run();
+                        }
+                        operations += 100;
+                    }
+                    count.addAndGet(operations);
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+        return count.get();
+    }
+
+    private static void report(String name, long operations, int seconds) {
+        System.out.println(String.format("%-28s %,12d ops/s", name, operations / seconds));
+    }
+
+    private static BenchmarkItem newItem() {
+        BenchmarkItem item = new BenchmarkItem();
+        item.setHashKey("customer-0001");
+        item.setRangeKey(42L);
+        item.setName("A reasonably sized item");
+        item.setDescription("Used to measure the mapper rather than the network");
+        item.setCount(7);
+        item.setPrice(19.99);
+        item.setActive(true);
+        item.setCreated(new Date(0));
+        item.setTags(new HashSet<String>(Arrays.asList("a", "b", "c")));
+        item.setScores(Arrays.asList(1, 2, 3, 4, 5));
+        item.setVersion(3L);
+        return item;
+    }
+
+    @DynamoDBTable(tableName = "benchmark")
+    public static class BenchmarkItem {
+        private String hashKey;
+        private Long rangeKey;
+        private String name;
+        private String description;
+        private int count;
+        private double price;
+        private boolean active;
+        private Date created;
+        private Set<String> tags;
+        private List<Integer> scores;
+        private Long version;
+
+        @DynamoDBHashKey
+        public String getHashKey() { return hashKey; }
+        public void setHashKey(String hashKey) { this.hashKey = hashKey; }
+
+        @DynamoDBRangeKey
+        public Long getRangeKey() { return rangeKey; }
+        public void setRangeKey(Long rangeKey) { this.rangeKey = rangeKey; }
+
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+
+        @DynamoDBAttribute(attributeName = "desc")
+        public String getDescription() { return description; }
+        public void setDescription(String description) { this.description = description; }
+
+        public int getCount() { return count; }
+        public void setCount(int count) { this.count = count; }
+
+        public double getPrice() { return price; }
+        public void setPrice(double price) { this.price = price; }
+
+        public boolean isActive() { return active; }
+        public void setActive(boolean active) { this.active = active; }
+
+        public Date getCreated() { return created; }
+        public void setCreated(Date created) { this.created = created; }
+
+        public Set<String> getTags() { return tags; }
+        public void setTags(Set<String> tags) { this.tags = tags; }
+
+        public List<Integer> getScores() { return scores; }
+        public void setScores(List<Integer> scores) { this.scores = scores; }
+
+        @DynamoDBVersionAttribute
+        public Long getVersion() { return version; }
+        public void setVersion(Long version) { this.version = version; }
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+/**
+ * Tests the models of classes and properties cached by
+ * {@link DynamoDBReflector}.
+ */
+public class DynamoDBReflectorTest {
+
+    private final DynamoDBReflector reflector = new DynamoDBReflector();
+
+    @Test
+    public void testClassModelIsReflectedOnce() {
+        Collection<Method> getters = reflector.getRelevantGetters(Child.class);
+        assertSame(getters, reflector.getRelevantGetters(Child.class));
+        assertSame(reflector.getPrimaryKeyGetters(Child.class),
+                reflector.getPrimaryKeyGetters(Child.class));
+        try {
+            getters.clear();
+            fail("The cached getters should not be modifiable");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    @Test
+    public void testInheritedGetters() throws Exception {
+        Set<String> names = new HashSet<String>();
+        for (Method getter : reflector.getRelevantGetters(Child.class)) {
+            names.add(getter.getName());
+        }
+        // getSecret is declared by a class which is neither a table nor a
+        // document
+        assertEquals(new HashSet<String>(Arrays.asList("getId", "getName", "getAge")), names);
+
+        Method id = Child.class.getMethod("getId");
+        assertEquals(Parent.class, id.getDeclaringClass());
+        assertEquals(id, reflector.getPrimaryHashKeyGetter(Child.class));
+        assertNull(reflector.getPrimaryRangeKeyGetter(Child.class));
+        assertEquals("id", reflector.getPrimaryHashKeyName(Child.class));
+        assertEquals(Parent.class.getMethod("setId", String.class), reflector.getSetter(id));
+
+        // The overriding getter, with its own annotation
+        Method name = Child.class.getMethod("getName");
+        assertEquals(Child.class, name.getDeclaringClass());
+        assertEquals("childName", reflector.getAttributeName(name));
+        assertEquals("name", reflector.getAttributeName(Parent.class.getMethod("getName")));
+
+        // The model of the parent is its own
+        assertEquals(2, reflector.getRelevantGetters(Parent.class).size());
+    }
+
+    @Test
+    public void testIgnoredGetters() throws Exception {
+        Collection<Method> getters = reflector.getRelevantGetters(WithIgnored.class);
+        assertEquals(1, getters.size());
+        assertEquals(WithIgnored.class.getMethod("getId"), getters.iterator().next());
+    }
+
+    @Test
+    public void testVersionAndAutoGeneratedKeys() throws Exception {
+        Method id = WithIgnored.class.getMethod("getId");
+        assertTrue(reflector.isAssignableKey(id));
+        assertFalse(reflector.isVersionAttributeGetter(id));
+        Method version = Versioned.class.getMethod("getVersion");
+        assertTrue(reflector.isVersionAttributeGetter(version));
+        assertFalse(reflector.isAssignableKey(version));
+    }
+
+    @Test
+    public void testMissingSetterReportedWhenAsked() throws Exception {
+        Method total = Versioned.class.getMethod("getTotal");
+        assertTrue(reflector.getRelevantGetters(Versioned.class).contains(total));
+        DynamoDBMappingException first = null;
+        for (int i = 0; i < 2; i++) {
+            try {
+                reflector.getSetter(total);
+                fail("Expected a missing setter");
+            } catch (DynamoDBMappingException expected) {
+                assertTrue(expected.getMessage().contains("setTotal"));
+                // A new exception each time, thrown from the caller
+                assertNotSame(first, expected);
+                first = expected;
+            }
+        }
+    }
+
+    @Test
+    public void testCustomMarshaller() {
+        ItemConverter converter = ConversionSchemas.DEFAULT.getConverter(
+                new ConversionSchema.Dependencies().with(DynamoDBReflector.class, reflector));
+        Marshalled object = new Marshalled();
+        object.setId("id");
+        object.setCode("abc");
+        for (int i = 0; i < 2; i++) {
+            Map<String, AttributeValue> item = converter.convert(object);
+            assertEquals("ABC", item.get("code").getS());
+            assertEquals("id", item.get("id").getS());
+            Marshalled unconverted = converter.unconvert(Marshalled.class, item);
+            assertEquals("abc", unconverted.getCode());
+            assertEquals("id", unconverted.getId());
+        }
+    }
+
+    @Test
+    public void testConcurrentFirstReflection() throws Exception {
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Collection<Method>>> futures = new ArrayList<Future<Collection<Method>>>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Callable<Collection<Method>>() {
+                    @Override
+                    public Collection<Method> call() throws Exception {
+                        start.await();
+                        return reflector.getRelevantGetters(Child.class);
+                    }
+                }));
+            }
+            start.countDown();
+            Collection<Method> getters = futures.get(0).get();
+            for (Future<Collection<Method>> future : futures) {
+                // Only one of the models reflected concurrently is kept
+                assertSame(getters, future.get());
+            }
+            assertSame(getters, reflector.getRelevantGetters(Child.class));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** Neither a table nor a document, so its getters are not mapped. */
+    public static class Unmapped {
+        private String secret;
+
+        public String getSecret() { return secret; }
+        public void setSecret(String secret) { this.secret = secret; }
+    }
+
+    @DynamoDBTable(tableName = "parent")
+    public static class Parent extends Unmapped {
+        private String id;
+        private String name;
+
+        @DynamoDBHashKey
+        public String getId() { return id; }
+        public void setId(String id) { this.id = id; }
+
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+    }
+
+    @DynamoDBTable(tableName = "child")
+    public static class Child extends Parent {
+        private int age;
+
+        @Override
+        @DynamoDBAttribute(attributeName = "childName")
+        public String getName() { return super.getName(); }
+
+        public int getAge() { return age; }
+        public void setAge(int age) { this.age = age; }
+    }
+
+    @DynamoDBTable(tableName = "ignored")
+    public static class WithIgnored {
+        private String id;
+        @DynamoDBIgnore
+        private String ignoredField;
+        private String ignoredGetter;
+
+        @DynamoDBHashKey
+        @DynamoDBAutoGeneratedKey
+        public String getId() { return id; }
+        public void setId(String id) { this.id = id; }
+
+        public String getIgnoredField() { return ignoredField; }
+        public void setIgnoredField(String ignoredField) { this.ignoredField = ignoredField; }
+
+        @DynamoDBIgnore
+        public String getIgnoredGetter() { return ignoredGetter; }
+        public void setIgnoredGetter(String ignoredGetter) { this.ignoredGetter = ignoredGetter; }
+    }
+
+    @DynamoDBTable(tableName = "versioned")
+    public static class Versioned {
+        private String id;
+        private Long version;
+
+        @DynamoDBHashKey
+        public String getId() { return id; }
+        public void setId(String id) { this.id = id; }
+
+        @DynamoDBVersionAttribute
+        public Long getVersion() { return version; }
+        public void setVersion(Long version) { this.version = version; }
+
+        /** No setter */
+        public int getTotal() { return 0; }
+    }
+
+    @DynamoDBTable(tableName = "marshalled")
+    public static class Marshalled {
+        private String id;
+        private String code;
+
+        @DynamoDBHashKey
+        public String getId() { return id; }
+        public void setId(String id) { this.id = id; }
+
+        @DynamoDBMarshalling(marshallerClass = UpperCaseMarshaller.class)
+        public String getCode() { return code; }
+        public void setCode(String code) { this.code = code; }
+    }
+
+    public static class UpperCaseMarshaller implements DynamoDBMarshaller<String> {
+        @Override
+        public String marshall(String value) {
+            return value.toUpperCase();
+        }
+
+        @Override
+        public String unmarshall(Class<String> clazz, String value) {
+            return value.toLowerCase();
+        }
+    }
+}
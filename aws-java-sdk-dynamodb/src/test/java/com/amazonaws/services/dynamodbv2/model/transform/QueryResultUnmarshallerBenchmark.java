@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.model.transform;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.http.HttpResponse;
+import com.amazonaws.http.JsonResponseHandler;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.util.IOUtils;
+
+/**
+ * Measures the throughput and allocation rate of unmarshalling 1 MB DynamoDB
+ * Query responses through {@link JsonResponseHandler}, which is the same path
+ * the client takes for every JSON protocol response.
+ * <p>
+ * Runs against a recorded response if its path is given as the first
+ * argument, or against a generated response of the same shape and size
+ * otherwise. Run it against two builds to compare them, for example:
+ *
+ * <pre>
+ * java -cp ... QueryResultUnmarshallerBenchmark [response.json] [iterations]
+ * </pre>
+ *
+ * Allocation is measured with the HotSpot specific per thread allocation
+ * counter, and reported as unavailable on other JVMs.
+ */
+public class QueryResultUnmarshallerBenchmark {
+
+    private static final int RESPONSE_SIZE = 1024 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        byte[] payload = args.length > 0
+                ? IOUtils.toByteArray(new FileInputStream(new File(args[0])))
+                : generateQueryResponse(RESPONSE_SIZE);
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        System.out.println("Payload: " + payload.length + " bytes, "
+                + unmarshall(payload).getCount() + " items");
+
+        // Warm up, so that the measurement runs compiled code.
+        for (int i = 0; i < iterations; i++) {
+            unmarshall(payload);
+        }
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            unmarshall(payload);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocatedAfter = allocatedBytes();
+
+        double millisPerOp = elapsed / 1e6 / iterations;
+        System.out.printf("Time: %.3f ms/op, %.1f MB/s%n", millisPerOp,
+                payload.length / 1048576.0 / (millisPerOp / 1000));
+        if (allocatedBefore < 0 || allocatedAfter < 0) {
+            System.out.println("Allocation: unavailable");
+        } else {
+            long allocatedPerOp = (allocatedAfter - allocatedBefore) / iterations;
+            System.out.printf("Allocation: %d bytes/op, %.2f bytes per payload byte%n",
+                    allocatedPerOp, (double) allocatedPerOp / payload.length);
+        }
+    }
+
+    private static QueryResult unmarshall(byte[] payload) throws Exception {
+        HttpResponse response = new HttpResponse(
+                new DefaultRequest<Object>("AmazonDynamoDBv2"), null);
+        response.setStatusCode(200);
+        response.setContent(new ByteArrayInputStream(payload));
+        return new JsonResponseHandler<QueryResult>(
+                QueryResultJsonUnmarshaller.getInstance()).handle(response)
+                .getResult();
+    }
+
+    /**
+     * Returns the bytes allocated so far by the current thread, or -1 if the
+     * JVM doesn't support measuring it.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        try {
+            return ((com.sun.management.ThreadMXBean) threadMXBean)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        } catch (LinkageError e) {
+            return -1;
+        } catch (ClassCastException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Generates a Query response of roughly the given size, with items of
+     * typical shape: string and number keys, a few string, number, binary,
+     * set and map attributes, and a field the unmarshaller doesn't model.
+     */
+    static byte[] generateQueryResponse(int size) throws Exception {
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder(size + 4096);
+        json.append("{\"ConsumedCapacity\":{\"TableName\":\"Orders\",\"CapacityUnits\":128.0},");
+        json.append("\"Items\":[");
+        int count = 0;
+        while (json.length() < size) {
+            if (count > 0) json.append(',');
+            json.append("{\"CustomerId\":{\"S\":\"customer-").append(random.nextInt(1000)).append("\"}");
+            json.append(",\"OrderId\":{\"N\":\"").append(1000000 + count).append("\"}");
+            json.append(",\"Status\":{\"S\":\"").append(random.nextBoolean() ? "SHIPPED" : "PENDING").append("\"}");
+            json.append(",\"Total\":{\"N\":\"").append(random.nextInt(100000) / 100.0).append("\"}");
+            json.append(",\"Notes\":{\"S\":\"").append(randomText(random, 60)).append("\"}");
+            json.append(",\"Thumbnail\":{\"B\":\"").append(randomBase64(random, 64)).append("\"}");
+            json.append(",\"Tags\":{\"SS\":[\"a\",\"b\",\"").append(randomText(random, 8)).append("\"]}");
+            json.append(",\"Address\":{\"M\":{\"City\":{\"S\":\"").append(randomText(random, 12))
+                .append("\"},\"Zip\":{\"N\":\"").append(10000 + random.nextInt(89999))
+                .append("\"},\"Primary\":{\"BOOL\":true}}}");
+            json.append('}');
+            count++;
+        }
+        json.append("],\"Count\":").append(count);
+        json.append(",\"ScannedCount\":").append(count);
+        json.append(",\"LastEvaluatedKey\":{\"CustomerId\":{\"S\":\"customer-1\"},\"OrderId\":{\"N\":\"")
+            .append(1000000 + count - 1).append("\"}}");
+        json.append(",\"UnmodeledField\":{\"Nested\":[1,2,3,{\"Deeper\":\"value\"}]}}");
+        return json.toString().getBytes("UTF-8");
+    }
+
+    private static String randomText(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+
+    private static String randomBase64(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return com.amazonaws.util.Base64.encodeAsString(bytes);
+    }
+}
@@ -19,6 +19,8 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
@@ -37,6 +39,8 @@ import com.amazonaws.util.BinaryUtils;
  */
 public class TreeHashGenerator {
 
+    private static final int MB = 1024 * 1024;
+
 	/**
 	 * Calculates a hex encoded binary hash using a tree hashing algorithm for
 	 * the data in the specified file.
@@ -96,6 +100,51 @@ public class TreeHashGenerator {
         }
     }
 
+    /**
+     * Calculates the binary tree hash of a region of a file, read with
+     * positional reads so that several regions of the same channel can be
+     * hashed concurrently, for example the parts of a multipart upload.
+     *
+     * @param channel
+     *            The channel of the file containing the data to hash.
+     * @param position
+     *            The position in the file of the first byte to hash.
+     * @param length
+     *            The number of bytes to hash.
+     *
+     * @return The binary tree hash for the data in the specified region.
+     *
+     * @throws AmazonClientException
+     *             If problems were encountered reading the data or calculating
+     *             the hash.
+     */
+    public static byte[] calculateTreeHash(FileChannel channel, long position, long length)
+            throws AmazonClientException {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            ByteBuffer buffer = ByteBuffer.allocate(MB);
+            List<byte[]> checksums = new ArrayList<byte[]>();
+            long end = position + length;
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(MB, end - position));
+                while (buffer.hasRemaining()) {
+                    int read = channel.read(buffer, position + buffer.position());
+                    if (read < 0) {
+                        throw new IOException("Unexpected end of file at position "
+                                + (position + buffer.position()));
+                    }
+                }
+                messageDigest.update(buffer.array(), 0, buffer.limit());
+                checksums.add(messageDigest.digest());
+                position += buffer.limit();
+            }
+            return BinaryUtils.fromHex(calculateTreeHash(checksums));
+        } catch (Exception e) {
+            throw new AmazonClientException("Unable to compute hash", e);
+        }
+    }
+
 	/**
 	 * Returns the hex encoded binary tree hash for the individual checksums
 	 * given. The sums are assumed to have been generated from sequential 1MB
@@ -18,7 +18,6 @@ import static com.amazonaws.event.SDKProgressPublisher.publishProgress;
 import static com.amazonaws.event.SDKProgressPublisher.publishResponseBytesDiscarded;
 import static com.amazonaws.internal.ResettableInputStream.newResettableInputStream;
 import static com.amazonaws.util.IOUtils.closeQuietly;
-import static com.amazonaws.util.IOUtils.release;
 import static com.amazonaws.util.Throwables.failure;
 
 import java.io.BufferedInputStream;
@@ -27,9 +26,20 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.NoSuchAlgorithmException;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -41,6 +51,7 @@ import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.event.ProgressEventType;
 import com.amazonaws.event.ProgressListener;
+import com.amazonaws.internal.FileRegionInputStream;
 import com.amazonaws.internal.ResettableInputStream;
 import com.amazonaws.internal.StaticCredentialsProvider;
 import com.amazonaws.services.glacier.AmazonGlacier;
@@ -62,7 +73,6 @@ import com.amazonaws.services.glacier.model.JobParameters;
 import com.amazonaws.services.glacier.model.UploadArchiveRequest;
 import com.amazonaws.services.glacier.model.UploadArchiveResult;
 import com.amazonaws.services.glacier.model.UploadMultipartPartRequest;
-import com.amazonaws.services.s3.internal.InputSubstream;
 import com.amazonaws.services.sns.AmazonSNSClient;
 import com.amazonaws.services.sqs.AmazonSQSClient;
 import com.amazonaws.util.BinaryUtils;
@@ -87,6 +97,9 @@ public class ArchiveTransferManager {
     /** Default retry time when downloading in multiple chunks using range retrieval */
     private static final int DEFAULT_MAX_RETRIES = 3;
 
+    /** The number of times each part of a multipart upload is tried. */
+    private static final int MAX_UPLOAD_PART_TRIES = 5;
+
     /** Glacier client used for making all requests. */
     private final AmazonGlacier glacier;
 
@@ -98,6 +111,9 @@ public class ArchiveTransferManager {
 
     private final AmazonSNSClient sns;
 
+    /** Configuration for how this ArchiveTransferManager transfers archives. */
+    private volatile ArchiveTransferManagerConfiguration configuration = new ArchiveTransferManagerConfiguration();
+
     private static final Log log = LogFactory.getLog(ArchiveTransferManager.class);
 
     /**
@@ -197,6 +213,29 @@ public class ArchiveTransferManager {
         this.sns = sns;
     }
 
+    /**
+     * Sets the configuration which specifies how this
+     * <code>ArchiveTransferManager</code> transfers archives, in particular
+     * how many parts or chunks of an archive it transfers at a time.
+     *
+     * @param configuration
+     *            The new configuration.
+     */
+    public void setConfiguration(ArchiveTransferManagerConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Returns the configuration which specifies how this
+     * <code>ArchiveTransferManager</code> transfers archives.
+     *
+     * @return The configuration settings for this
+     *         <code>ArchiveTransferManager</code>.
+     */
+    public ArchiveTransferManagerConfiguration getConfiguration() {
+        return configuration;
+    }
+
     /**
      * Uploads the specified file to Amazon Glacier for archival storage in the
      * specified vault for the user's current account. For small archives, this
@@ -482,9 +521,13 @@ public class ArchiveTransferManager {
      * Downloads the job output for the specified job (which must be ready to
      * download already, and must be a complete archive retrieval, not a partial
      * range retrieval), into the specified file. This method will request
-     * individual chunks of the data, one at a time, in order to handle any
-     * transient errors along the way. You can also add an optional progress
-     * listener for receiving updates about the download status.
+     * individual chunks of the data, as many at a time as configured with
+     * {@link ArchiveTransferManagerConfiguration#setMaxConcurrentDownloadChunks(int)},
+     * in order to handle any transient errors along the way. Chunks that still
+     * fail after their retries are downloaded again once the others are done,
+     * without downloading the completed ones again. You can also add an
+     * optional progress listener for receiving updates about the download
+     * status.
      *
      * @param accountId
      *            The account ID containing the job output to download (or null
@@ -500,8 +543,8 @@ public class ArchiveTransferManager {
      *            The optional progress listener for receiving updates about the
      *            download status.
      */
-    public void downloadJobOutput(String accountId, String vaultName,
-            String jobId, File file, ProgressListener progressListener) {
+    public void downloadJobOutput(final String accountId, final String vaultName,
+            final String jobId, File file, final ProgressListener progressListener) {
         long archiveSize = 0;
         long chunkSize = DEFAULT_DOWNLOAD_CHUNK_SIZE;
         long currentPosition = 0;
@@ -533,23 +576,56 @@ public class ArchiveTransferManager {
 
         try {
             publishProgress(progressListener, ProgressEventType.TRANSFER_STARTED_EVENT);
+            // Each chunk is written at its own position, so that they can be
+            // downloaded in any order.
+            final FileChannel channel = output.getChannel();
+            List<Callable<Throwable>> chunks = new ArrayList<Callable<Throwable>>();
             while (currentPosition < archiveSize) {
                 if (currentPosition + chunkSize > archiveSize) {
                     endPosition = archiveSize - 1;
                 } else {
                     endPosition = currentPosition + chunkSize - 1;
                 }
-    
-                // Download the chunk
-                try {
-                    downloadOneChunk(accountId, vaultName, jobId, output,
-                            currentPosition, endPosition, progressListener);
-                } catch (Throwable t) {
-                    publishProgress(progressListener, ProgressEventType.TRANSFER_FAILED_EVENT);
-                    throw failure(t);
-                }
+                final long start = currentPosition;
+                final long end = endPosition;
+                chunks.add(new Callable<Throwable>() {
+                    public Throwable call() {
+                        try {
+                            downloadOneChunk(accountId, vaultName, jobId, channel, start, end, progressListener);
+                            return null;
+                        } catch (Throwable t) {
+                            return t;
+                        }
+                    }
+                });
                 currentPosition += chunkSize;
             }
+
+            try {
+                output.setLength(archiveSize);
+                // Download the chunks, then those that failed once more
+                for (int round = 0; !chunks.isEmpty(); round++) {
+                    List<Throwable> failures = runConcurrently(chunks,
+                            configuration.getMaxConcurrentDownloadChunks());
+                    List<Callable<Throwable>> failedChunks = new ArrayList<Callable<Throwable>>();
+                    for (int i = 0; i < chunks.size(); i++) {
+                        if (failures.get(i) != null) {
+                            if (round > 0) {
+                                throw failures.get(i);
+                            }
+                            failedChunks.add(chunks.get(i));
+                        }
+                    }
+                    if (!failedChunks.isEmpty() && log.isDebugEnabled()) {
+                        log.debug("Downloading again " + failedChunks.size() + " of " + chunks.size()
+                                + " chunks of jobId=" + jobId);
+                    }
+                    chunks = failedChunks;
+                }
+            } catch (Throwable t) {
+                publishProgress(progressListener, ProgressEventType.TRANSFER_FAILED_EVENT);
+                throw failure(t);
+            }
             publishProgress(progressListener, ProgressEventType.TRANSFER_COMPLETED_EVENT);
         } finally {
             closeQuietly(output, log);
@@ -572,7 +648,7 @@ public class ArchiveTransferManager {
      * errors are encountered while streaming the data from Amazon Glacier.
      */
     private void downloadOneChunk(String accountId, String vaultName,
-            String jobId, RandomAccessFile output, long currentPosition,
+            String jobId, FileChannel output, long currentPosition,
             long endPosition, ProgressListener progressListener) {
         final long chunkSize = endPosition - currentPosition + 1;
         TreeHashInputStream input = null;
@@ -589,7 +665,7 @@ public class ArchiveTransferManager {
                 GetJobOutputResult jobOutputResult = glacier.getJobOutput(req);
                 try {
                     input = new TreeHashInputStream(new BufferedInputStream(jobOutputResult.getBody()));
-                    appendToFile(output, input);
+                    writeToFile(output, currentPosition, input);
                 } catch (NoSuchAlgorithmException e) {
                     throw failure(e, "Unable to compute hash for data integrity");
                 } finally {
@@ -624,11 +700,6 @@ public class ArchiveTransferManager {
                                 + currentPosition + " endPosition="
                                 + endPosition);
                     }
-                    try {
-                        output.seek(currentPosition);
-                    } catch (IOException e) {
-                        throw new AmazonClientException("Unable to download the archive: " + ioe.getMessage(), e);
-                    }
                 } else {
                     throw new AmazonClientException("Unable to download the archive: " + ioe.getMessage(), ioe);
                 }
@@ -637,19 +708,19 @@ public class ArchiveTransferManager {
     }
 
     /**
-     * Writes the data from the given input stream to the given output stream.
+     * Writes the data from the given input stream to the given file, starting
+     * at the given position.
      */
-    private void appendToFile(RandomAccessFile output, InputStream input)
+    private void writeToFile(FileChannel output, long position, InputStream input)
             throws IOException {
         byte[] buffer = new byte[1024 * 1024];
-        int bytesRead = 0;
-        do {
-            bytesRead = input.read(buffer);
-            if (bytesRead < 0)
-                break;
-            output.write(buffer, 0, bytesRead);
-        } while (bytesRead > 0);
-        return;
+        int bytesRead;
+        while ((bytesRead = input.read(buffer)) >= 0) {
+            ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, bytesRead);
+            while (bytes.hasRemaining()) {
+                position += output.write(bytes, position);
+            }
+        }
     }
 
     /**
@@ -676,7 +747,7 @@ public class ArchiveTransferManager {
 
     private UploadResult uploadInMultipleParts(final String accountId,
             final String vaultName, final String archiveDescription,
-            final File file, ProgressListener progressListener) {
+            final File file, final ProgressListener progressListener) {
         final long partSize = calculatePartSize(file.length());
         String partSizeString = Long.toString(partSize);
 
@@ -694,56 +765,32 @@ public class ArchiveTransferManager {
             throw failure(t);
         }
         publishProgress(progressListener, ProgressEventType.TRANSFER_STARTED_EVENT);
-        final String fileNotFoundMsg = "Unable to find file '"
-                + file.getAbsolutePath() + "'";
+        RandomAccessFile input = null;
         try {
-            List<byte[]> binaryChecksums = new LinkedList<byte[]>();
-
+            try {
+                input = new RandomAccessFile(file, "r");
+            } catch (FileNotFoundException e) {
+                throw new AmazonClientException("Unable to find file '" + file.getAbsolutePath() + "'", e);
+            }
+            // The parts are read with positional reads, so that they can be
+            // read and hashed concurrently.
+            final FileChannel channel = input.getChannel();
+            final String finalUploadId = uploadId;
+            List<Callable<byte[]>> parts = new ArrayList<Callable<byte[]>>();
             long currentPosition = 0;
             while (currentPosition < file.length()) {
-                long length = partSize;
-                if (currentPosition + partSize > file.length()) {
-                    length = file.length() - currentPosition;
-                }
-
-                Exception failedException = null;
-                boolean completed = false;
-                int tries = 0;
-                    while (!completed && tries < 5){
-                        tries++;
-                        InputSubstream inputSubStream = null;
-                        try {
-                            inputSubStream = new InputSubstream(
-                                    newResettableInputStream(file, fileNotFoundMsg)
-                                        .disableClose(), // requires explicit release
-                                    currentPosition, length, true);
-                            String checksum = TreeHashGenerator.calculateTreeHash(inputSubStream);
-                            byte[] binaryChecksum = BinaryUtils.fromHex(checksum);
-                            inputSubStream.reset();
-                            UploadMultipartPartRequest req = new UploadMultipartPartRequest()
-                                .withAccountId(accountId)
-                                .withChecksum(checksum)
-                                .withBody(inputSubStream)
-                                .withRange("bytes " + currentPosition + "-" + (currentPosition + length - 1) + "/*")
-                                .withUploadId(uploadId)
-                                .withVaultName(vaultName)
-                                .withGeneralProgressListener(progressListener)
-                                ;
-                            
-                            glacier.uploadMultipartPart(req);
-                            completed = true;
-                            binaryChecksums.add(binaryChecksum);
-                        } catch (Exception e){
-                            failedException = e;
-                        } finally {
-                            // We opened the file underneath; so need to release it
-                            release(inputSubStream, log);
-                        }
-                    } // end inner while
-                if (!completed && failedException!=null)
-                    throw failedException;
+                final long start = currentPosition;
+                final long length = Math.min(partSize, file.length() - currentPosition);
+                parts.add(new Callable<byte[]>() {
+                    public byte[] call() throws Exception {
+                        return uploadOnePart(accountId, vaultName, finalUploadId, channel, start, length,
+                                progressListener);
+                    }
+                });
                 currentPosition += partSize;
-            } // end outer while
+            }
+
+            List<byte[]> binaryChecksums = runConcurrently(parts, configuration.getMaxConcurrentUploadParts());
 
             String checksum = TreeHashGenerator.calculateTreeHash(binaryChecksums);
 
@@ -763,9 +810,110 @@ public class ArchiveTransferManager {
             publishProgress(progressListener, ProgressEventType.TRANSFER_FAILED_EVENT);
             glacier.abortMultipartUpload(new AbortMultipartUploadRequest(accountId, vaultName, uploadId));
             throw failure(t, "Unable to finish the upload");
+        } finally {
+            closeQuietly(input, log);
+        }
+    }
+
+    /**
+     * Uploads one part of a multipart upload, trying again if any errors are
+     * encountered.
+     *
+     * @return the binary tree hash of the part
+     */
+    private byte[] uploadOnePart(String accountId, String vaultName, String uploadId, FileChannel channel,
+            long position, long length, ProgressListener progressListener) throws Exception {
+        byte[] binaryChecksum = TreeHashGenerator.calculateTreeHash(channel, position, length);
+        String checksum = BinaryUtils.toHex(binaryChecksum);
+        Exception failedException = null;
+        for (int tries = 0; tries < MAX_UPLOAD_PART_TRIES; tries++) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+            try {
+                UploadMultipartPartRequest req = new UploadMultipartPartRequest()
+                    .withAccountId(accountId)
+                    .withChecksum(checksum)
+                    .withBody(new FileRegionInputStream(channel, position, length))
+                    .withRange("bytes " + position + "-" + (position + length - 1) + "/*")
+                    .withUploadId(uploadId)
+                    .withVaultName(vaultName)
+                    .withGeneralProgressListener(progressListener)
+                    ;
+                glacier.uploadMultipartPart(req);
+                return binaryChecksum;
+            } catch (Exception e) {
+                failedException = e;
+            }
         }
+        throw failedException;
     }
 
+    /**
+     * Runs the given tasks, at most the given number at a time, and returns
+     * their results in the order of the tasks. One at a time, the tasks run on
+     * the calling thread. Stops at the first task that fails, cancelling those
+     * still running.
+     */
+    private <T> List<T> runConcurrently(List<Callable<T>> tasks, int maxConcurrent) throws Exception {
+        List<T> results = new ArrayList<T>(tasks.size());
+        if (maxConcurrent <= 1 || tasks.size() <= 1) {
+            for (Callable<T> task : tasks) {
+                results.add(task.call());
+            }
+            return results;
+        }
+
+        ExecutorService executor = configuration.getExecutorService();
+        boolean shutDownExecutor = false;
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(Math.min(maxConcurrent, tasks.size()), threadFactory);
+            shutDownExecutor = true;
+        }
+        CompletionService<T> completionService = new ExecutorCompletionService<T>(executor);
+        List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+        try {
+            int completed = 0;
+            while (completed < tasks.size()) {
+                while (futures.size() < tasks.size() && futures.size() - completed < maxConcurrent) {
+                    futures.add(completionService.submit(tasks.get(futures.size())));
+                }
+                try {
+                    completionService.take().get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw (Exception) cause;
+                }
+                ++completed;
+            }
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+            if (shutDownExecutor) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private static final ThreadFactory threadFactory = new ThreadFactory() {
+        private final AtomicInteger threadCount = new AtomicInteger(0);
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            thread.setName("glacier-transfer-manager-worker-" + threadCount.incrementAndGet());
+            return thread;
+        }
+    };
+
     private UploadResult uploadInSinglePart(final String accountId,
             final String vaultName, final String archiveDescription,
             final File file, ProgressListener progressListener) {
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015-2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.glacier.transfer;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Configuration options for how {@link ArchiveTransferManager} transfers
+ * archives.
+ * <p>
+ * By default, the parts of a multipart upload and the chunks of a download
+ * are transferred one at a time, over a single connection. Raising
+ * {@link #setMaxConcurrentUploadParts(int)} or
+ * {@link #setMaxConcurrentDownloadChunks(int)} transfers that many at a time;
+ * make sure the client's maximum number of connections allows for it, and
+ * that any progress listener is thread safe.
+ */
+public class ArchiveTransferManagerConfiguration {
+
+    /** The maximum number of parts of a multipart upload uploaded at a time. */
+    private int maxConcurrentUploadParts = 1;
+
+    /** The maximum number of chunks of a job output downloaded at a time. */
+    private int maxConcurrentDownloadChunks = 1;
+
+    /**
+     * The executor running concurrent transfers, or null to create one for
+     * each transfer.
+     */
+    private ExecutorService executorService;
+
+    /**
+     * Returns the maximum number of parts of a multipart upload that are
+     * uploaded at a time.
+     */
+    public int getMaxConcurrentUploadParts() {
+        return maxConcurrentUploadParts;
+    }
+
+    /**
+     * Sets the maximum number of parts of a multipart upload that are
+     * uploaded at a time. Each part is read and hashed by the thread uploading
+     * it, so the tree hash of the archive is also computed in parallel.
+     *
+     * @param maxConcurrentUploadParts
+     *            The maximum number of parts uploaded at a time; at least 1.
+     */
+    public void setMaxConcurrentUploadParts(int maxConcurrentUploadParts) {
+        if (maxConcurrentUploadParts < 1) {
+            throw new IllegalArgumentException("maxConcurrentUploadParts must be at least 1");
+        }
+        this.maxConcurrentUploadParts = maxConcurrentUploadParts;
+    }
+
+    public ArchiveTransferManagerConfiguration withMaxConcurrentUploadParts(int maxConcurrentUploadParts) {
+        setMaxConcurrentUploadParts(maxConcurrentUploadParts);
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of chunks of a job output that are
+     * downloaded at a time.
+     */
+    public int getMaxConcurrentDownloadChunks() {
+        return maxConcurrentDownloadChunks;
+    }
+
+    /**
+     * Sets the maximum number of chunks of a job output that are downloaded
+     * at a time. Each chunk is written at its own position in the file.
+     *
+     * @param maxConcurrentDownloadChunks
+     *            The maximum number of chunks downloaded at a time; at least 1.
+     */
+    public void setMaxConcurrentDownloadChunks(int maxConcurrentDownloadChunks) {
+        if (maxConcurrentDownloadChunks < 1) {
+            throw new IllegalArgumentException("maxConcurrentDownloadChunks must be at least 1");
+        }
+        this.maxConcurrentDownloadChunks = maxConcurrentDownloadChunks;
+    }
+
+    public ArchiveTransferManagerConfiguration withMaxConcurrentDownloadChunks(int maxConcurrentDownloadChunks) {
+        setMaxConcurrentDownloadChunks(maxConcurrentDownloadChunks);
+        return this;
+    }
+
+    /**
+     * Returns the executor running concurrent transfers, or null if one is
+     * created for each transfer.
+     */
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Sets the executor running concurrent transfers. It is not shut down by
+     * the {@link ArchiveTransferManager}. When not set, a pool of as many
+     * threads as parts or chunks transferred at a time is created for each
+     * transfer, and shut down once it completes.
+     *
+     * @param executorService
+     *            The executor running concurrent transfers.
+     */
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    public ArchiveTransferManagerConfiguration withExecutorService(ExecutorService executorService) {
+        setExecutorService(executorService);
+        return this;
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2015-2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.glacier.transfer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.glacier.AmazonGlacierClient;
+import com.amazonaws.services.glacier.TreeHashGenerator;
+import com.amazonaws.services.glacier.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.glacier.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.glacier.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.glacier.model.DescribeJobRequest;
+import com.amazonaws.services.glacier.model.DescribeJobResult;
+import com.amazonaws.services.glacier.model.GetJobOutputRequest;
+import com.amazonaws.services.glacier.model.GetJobOutputResult;
+import com.amazonaws.services.glacier.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.glacier.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.glacier.model.UploadMultipartPartRequest;
+import com.amazonaws.services.glacier.model.UploadMultipartPartResult;
+import com.amazonaws.services.sns.AmazonSNSClient;
+import com.amazonaws.services.sqs.AmazonSQSClient;
+import com.amazonaws.util.IOUtils;
+
+public class ArchiveTransferManagerTest {
+
+    private static final String CHUNK_SIZE_PROPERTY =
+        "com.amazonaws.services.glacier.transfer.downloadChunkSizeInMB";
+
+    /** Just above the size from which archives are uploaded in parts. */
+    private static final int ARCHIVE_SIZE = 101 * 1024 * 1024 + 12345;
+
+    private static File archive;
+    private static String archiveTreeHash;
+
+    private StubGlacier glacier;
+    private ArchiveTransferManager manager;
+    private File downloaded;
+
+    @BeforeClass
+    public static void createArchive() throws IOException {
+        archive = File.createTempFile("archive", ".bin");
+        byte[] buffer = new byte[1024 * 1024];
+        Random random = new Random(42);
+        FileOutputStream out = new FileOutputStream(archive);
+        try {
+            for (int written = 0; written < ARCHIVE_SIZE; written += buffer.length) {
+                random.nextBytes(buffer);
+                out.write(buffer, 0, Math.min(buffer.length, ARCHIVE_SIZE - written));
+            }
+        } finally {
+            out.close();
+        }
+        archiveTreeHash = TreeHashGenerator.calculateTreeHash(archive);
+    }
+
+    @AfterClass
+    public static void deleteArchive() {
+        archive.delete();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        glacier = new StubGlacier();
+        manager = new ArchiveTransferManager(glacier, (AmazonSQSClient) null, (AmazonSNSClient) null);
+        downloaded = File.createTempFile("downloaded", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(CHUNK_SIZE_PROPERTY);
+        downloaded.delete();
+    }
+
+    @Test
+    public void testSerialUpload() throws IOException {
+        assertEquals("archive-id", manager.upload("vault", "description", archive).getArchiveId());
+        assertEquals(archiveTreeHash, glacier.completedChecksum);
+        assertEquals(7, glacier.partAttempts.get());
+    }
+
+    @Test
+    public void testConcurrentUploadSameTreeHash() throws IOException {
+        manager.setConfiguration(new ArchiveTransferManagerConfiguration().withMaxConcurrentUploadParts(4));
+        assertEquals("archive-id", manager.upload("vault", "description", archive).getArchiveId());
+        assertEquals(archiveTreeHash, glacier.completedChecksum);
+        assertEquals(7, glacier.partAttempts.get());
+        assertEquals(4, glacier.maxConcurrentParts.get());
+    }
+
+    @Test
+    public void testUploadRetriesFailedPart() throws IOException {
+        manager.setConfiguration(new ArchiveTransferManagerConfiguration().withMaxConcurrentUploadParts(4));
+        glacier.failingAttempts.put("bytes 16777216-33554431/*", 2);
+        manager.upload("vault", "description", archive);
+        assertEquals(archiveTreeHash, glacier.completedChecksum);
+        assertEquals(9, glacier.partAttempts.get());
+    }
+
+    @Test
+    public void testUploadAbortedOnPartFailure() throws IOException {
+        manager.setConfiguration(new ArchiveTransferManagerConfiguration().withMaxConcurrentUploadParts(4));
+        glacier.failingAttempts.put("bytes 16777216-33554431/*", Integer.MAX_VALUE);
+        try {
+            manager.upload("vault", "description", archive);
+            fail();
+        } catch (AmazonClientException expected) {
+        }
+        assertEquals("upload-id", glacier.abortedUploadId);
+        assertNull(glacier.completedChecksum);
+    }
+
+    @Test
+    public void testDownloadInConcurrentChunks() throws IOException {
+        System.setProperty(CHUNK_SIZE_PROPERTY, "1");
+        byte[] data = randomBytes(5 * 1024 * 1024 + 100);
+        glacier.jobOutput = data;
+        manager.setConfiguration(new ArchiveTransferManagerConfiguration().withMaxConcurrentDownloadChunks(3));
+        manager.downloadJobOutput(null, "vault", "job", downloaded);
+        assertArrayEquals(data, readFile(downloaded));
+        assertEquals(6, glacier.chunkAttempts.get());
+    }
+
+    @Test
+    public void testDownloadRetryRoundForFailedChunk() throws IOException {
+        System.setProperty(CHUNK_SIZE_PROPERTY, "1");
+        byte[] data = randomBytes(5 * 1024 * 1024);
+        glacier.jobOutput = data;
+        // Fails all the tries of its first round
+        glacier.failingAttempts.put("bytes=2097152-3145727", 4);
+        manager.setConfiguration(new ArchiveTransferManagerConfiguration().withMaxConcurrentDownloadChunks(3));
+        manager.downloadJobOutput(null, "vault", "job", downloaded);
+        assertArrayEquals(data, readFile(downloaded));
+        // The other chunks aren't downloaded again
+        assertEquals(5 + 4, glacier.chunkAttempts.get());
+    }
+
+    @Test
+    public void testDownloadFailsAfterRetryRound() {
+        System.setProperty(CHUNK_SIZE_PROPERTY, "1");
+        glacier.jobOutput = randomBytes(3 * 1024 * 1024);
+        glacier.failingAttempts.put("bytes=1048576-2097151", Integer.MAX_VALUE);
+        manager.setConfiguration(new ArchiveTransferManagerConfiguration().withMaxConcurrentDownloadChunks(3));
+        try {
+            manager.downloadJobOutput(null, "vault", "job", downloaded);
+            fail();
+        } catch (AmazonClientException expected) {
+        }
+        assertEquals(2 + 2 * 4, glacier.chunkAttempts.get());
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            byte[] bytes = new byte[(int) in.length()];
+            in.readFully(bytes);
+            return bytes;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Checks the tree hash of each uploaded part, and serves the ranges of
+     * the job output with their tree hashes. The ranges in failingAttempts
+     * fail that many times.
+     */
+    private static class StubGlacier extends AmazonGlacierClient {
+        final Map<String, Integer> failingAttempts = new ConcurrentHashMap<String, Integer>();
+        final AtomicInteger partAttempts = new AtomicInteger();
+        final AtomicInteger chunkAttempts = new AtomicInteger();
+        final AtomicInteger concurrentParts = new AtomicInteger();
+        final AtomicInteger maxConcurrentParts = new AtomicInteger();
+        final Set<String> uploadedRanges = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        volatile String completedChecksum;
+        volatile String abortedUploadId;
+        volatile byte[] jobOutput;
+
+        StubGlacier() {
+            super(new BasicAWSCredentials("access", "secret"));
+        }
+
+        private boolean shouldFail(String range) {
+            synchronized (failingAttempts) {
+                Integer failures = failingAttempts.get(range);
+                if (failures == null || failures == 0) {
+                    return false;
+                }
+                failingAttempts.put(range, failures - 1);
+                return true;
+            }
+        }
+
+        @Override
+        public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request) {
+            assertEquals(String.valueOf(16 * 1024 * 1024), request.getPartSize());
+            return new InitiateMultipartUploadResult().withUploadId("upload-id");
+        }
+
+        @Override
+        public UploadMultipartPartResult uploadMultipartPart(UploadMultipartPartRequest request) {
+            partAttempts.incrementAndGet();
+            int concurrent = concurrentParts.incrementAndGet();
+            try {
+                synchronized (maxConcurrentParts) {
+                    maxConcurrentParts.set(Math.max(maxConcurrentParts.get(), concurrent));
+                }
+                byte[] body = IOUtils.toByteArray(request.getBody());
+                // Gives the other parts time to start
+                Thread.sleep(50);
+                if (shouldFail(request.getRange())) {
+                    throw new AmazonServiceException("Request Timeout");
+                }
+                assertEquals(request.getChecksum(),
+                        TreeHashGenerator.calculateTreeHash(new ByteArrayInputStream(body)));
+                uploadedRanges.add(request.getRange());
+                return new UploadMultipartPartResult().withChecksum(request.getChecksum());
+            } catch (IOException e) {
+                throw new AmazonServiceException(e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AmazonServiceException("Interrupted");
+            } finally {
+                concurrentParts.decrementAndGet();
+            }
+        }
+
+        @Override
+        public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request) {
+            assertEquals(7, uploadedRanges.size());
+            assertEquals(String.valueOf(ARCHIVE_SIZE), request.getArchiveSize());
+            completedChecksum = request.getChecksum();
+            return new CompleteMultipartUploadResult().withArchiveId("archive-id");
+        }
+
+        @Override
+        public void abortMultipartUpload(AbortMultipartUploadRequest request) {
+            abortedUploadId = request.getUploadId();
+        }
+
+        @Override
+        public DescribeJobResult describeJob(DescribeJobRequest request) {
+            return new DescribeJobResult().withArchiveSizeInBytes((long) jobOutput.length);
+        }
+
+        @Override
+        public GetJobOutputResult getJobOutput(GetJobOutputRequest request) {
+            chunkAttempts.incrementAndGet();
+            String[] range = request.getRange().substring("bytes=".length()).split("-");
+            int start = Integer.parseInt(range[0]);
+            int end = Integer.parseInt(range[1]);
+            byte[] chunk = Arrays.copyOfRange(jobOutput, start, end + 1);
+            InputStream body = new ByteArrayInputStream(chunk);
+            if (shouldFail(request.getRange())) {
+                // Breaks off halfway through the chunk
+                body = new ByteArrayInputStream(chunk, 0, chunk.length / 2);
+            }
+            return new GetJobOutputResult()
+                .withBody(body)
+                .withChecksum(TreeHashGenerator.calculateTreeHash(new ByteArrayInputStream(chunk)));
+        }
+    }
+}
@@ -26,8 +26,10 @@ import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.http.JsonResponseHandler;
 
 import com.amazonaws.services.kinesis.model.*;
+import com.amazonaws.services.kinesis.model.transform.*;
 
 /**
  * Asynchronous client for accessing AmazonKinesis.
@@ -299,12 +301,7 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
      */
     public Future<Void> addTagsToStreamAsync(final AddTagsToStreamRequest addTagsToStreamRequest) 
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<Void>() {
-            public Void call() throws Exception {
-                addTagsToStream(addTagsToStreamRequest);
-                return null;
-        }
-    });
+        return addTagsToStreamAsync(addTagsToStreamRequest, null);
     }
 
     /**
@@ -341,18 +338,14 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
             final AddTagsToStreamRequest addTagsToStreamRequest,
             final AsyncHandler<AddTagsToStreamRequest, Void> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<Void>() {
+        return executeAsync(addTagsToStreamRequest, new AddTagsToStreamRequestMarshaller(),
+                new JsonResponseHandler<Void>(null),
+                asyncHandler, executorService, new Callable<Void>() {
             public Void call() throws Exception {
-              try {
                 addTagsToStream(addTagsToStreamRequest);
-              } catch (Exception ex) {
-                  asyncHandler.onError(ex);
-            throw ex;
-              }
-              asyncHandler.onSuccess(addTagsToStreamRequest, null);
-                 return null;
-        }
-    });
+                return null;
+            }
+        });
     }
     
     /**
@@ -431,11 +424,7 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
      */
     public Future<PutRecordResult> putRecordAsync(final PutRecordRequest putRecordRequest) 
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<PutRecordResult>() {
-            public PutRecordResult call() throws Exception {
-                return putRecord(putRecordRequest);
-        }
-    });
+        return putRecordAsync(putRecordRequest, null);
     }
 
     /**
@@ -520,19 +509,14 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
             final PutRecordRequest putRecordRequest,
             final AsyncHandler<PutRecordRequest, PutRecordResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<PutRecordResult>() {
+        return executeAsync(putRecordRequest, new PutRecordRequestMarshaller(),
+                new JsonResponseHandler<PutRecordResult>(
+                        new PutRecordResultJsonUnmarshaller()),
+                asyncHandler, executorService, new Callable<PutRecordResult>() {
             public PutRecordResult call() throws Exception {
-              PutRecordResult result;
-                try {
-                result = putRecord(putRecordRequest);
-              } catch (Exception ex) {
-                  asyncHandler.onError(ex);
-            throw ex;
-              }
-              asyncHandler.onSuccess(putRecordRequest, result);
-                 return result;
-        }
-    });
+                return putRecord(putRecordRequest);
+            }
+        });
     }
     
     /**
@@ -609,12 +593,7 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
      */
     public Future<Void> createStreamAsync(final CreateStreamRequest createStreamRequest) 
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<Void>() {
-            public Void call() throws Exception {
-                createStream(createStreamRequest);
-                return null;
-        }
-    });
+        return createStreamAsync(createStreamRequest, null);
     }
 
     /**
@@ -697,18 +676,14 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
             final CreateStreamRequest createStreamRequest,
             final AsyncHandler<CreateStreamRequest, Void> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<Void>() {
+        return executeAsync(createStreamRequest, new CreateStreamRequestMarshaller(),
+                new JsonResponseHandler<Void>(null),
+                asyncHandler, executorService, new Callable<Void>() {
             public Void call() throws Exception {
-              try {
                 createStream(createStreamRequest);
-              } catch (Exception ex) {
-                  asyncHandler.onError(ex);
-            throw ex;
-              }
-              asyncHandler.onSuccess(createStreamRequest, null);
-                 return null;
-        }
-    });
+                return null;
+            }
+        });
     }
     
     /**
@@ -759,12 +734,7 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
      */
     public Future<Void> deleteStreamAsync(final DeleteStreamRequest deleteStreamRequest) 
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<Void>() {
-            public Void call() throws Exception {
-                deleteStream(deleteStreamRequest);
-                return null;
-        }
-    });
+        return deleteStreamAsync(deleteStreamRequest, null);
     }
 
     /**
@@ -821,18 +791,14 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
             final DeleteStreamRequest deleteStreamRequest,
             final AsyncHandler<DeleteStreamRequest, Void> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<Void>() {
+        return executeAsync(deleteStreamRequest, new DeleteStreamRequestMarshaller(),
+                new JsonResponseHandler<Void>(null),
+                asyncHandler, executorService, new Callable<Void>() {
             public Void call() throws Exception {
-              try {
                 deleteStream(deleteStreamRequest);
-              } catch (Exception ex) {
-                  asyncHandler.onError(ex);
-            throw ex;
-              }
-              asyncHandler.onSuccess(deleteStreamRequest, null);
-                 return null;
-        }
-    });
+                return null;
+            }
+        });
     }
     
     /**
@@ -908,12 +874,7 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
      */
     public Future<Void> mergeShardsAsync(final MergeShardsRequest mergeShardsRequest) 
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<Void>() {
-            public Void call() throws Exception {
-                mergeShards(mergeShardsRequest);
-                return null;
-        }
-    });
+        return mergeShardsAsync(mergeShardsRequest, null);
     }
 
     /**
@@ -995,18 +956,14 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
             final MergeShardsRequest mergeShardsRequest,
             final AsyncHandler<MergeShardsRequest, Void> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<Void>() {
+        return executeAsync(mergeShardsRequest, new MergeShardsRequestMarshaller(),
+                new JsonResponseHandler<Void>(null),
+                asyncHandler, executorService, new Callable<Void>() {
             public Void call() throws Exception {
-              try {
                 mergeShards(mergeShardsRequest);
-              } catch (Exception ex) {
-                  asyncHandler.onError(ex);
-            throw ex;
-              }
-              asyncHandler.onSuccess(mergeShardsRequest, null);
-                 return null;
-        }
-    });
+                return null;
+            }
+        });
     }
     
     /**
@@ -1105,11 +1062,7 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
      */
     public Future<PutRecordsResult> putRecordsAsync(final PutRecordsRequest putRecordsRequest) 
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<PutRecordsResult>() {
-            public PutRecordsResult call() throws Exception {
-                return putRecords(putRecordsRequest);
-        }
-    });
+        return putRecordsAsync(putRecordsRequest, null);
     }
 
     /**
@@ -1214,19 +1167,14 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
             final PutRecordsRequest putRecordsRequest,
             final AsyncHandler<PutRecordsRequest, PutRecordsResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<PutRecordsResult>() {
+        return executeAsync(putRecordsRequest, new PutRecordsRequestMarshaller(),
+                new JsonResponseHandler<PutRecordsResult>(
+                        new PutRecordsResultJsonUnmarshaller()),
+                asyncHandler, executorService, new Callable<PutRecordsResult>() {
             public PutRecordsResult call() throws Exception {
-              PutRecordsResult result;
-                try {
-                result = putRecords(putRecordsRequest);
-              } catch (Exception ex) {
-                  asyncHandler.onError(ex);
-            throw ex;
-              }
-              asyncHandler.onSuccess(putRecordsRequest, result);
-                 return result;
-        }
-    });
+                return putRecords(putRecordsRequest);
+            }
+        });
     }
     
     /**
@@ -1279,11 +1227,7 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
      */
     public Future<DescribeStreamResult> describeStreamAsync(final DescribeStreamRequest describeStreamRequest) 
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<DescribeStreamResult>() {
-            public DescribeStreamResult call() throws Exception {
-                return describeStream(describeStreamRequest);
-        }
-    });
+        return describeStreamAsync(describeStreamRequest, null);
     }
 
     /**
@@ -1342,19 +1286,14 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
             final DescribeStreamRequest describeStreamRequest,
             final AsyncHandler<DescribeStreamRequest, DescribeStreamResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<DescribeStreamResult>() {
+        return executeAsync(describeStreamRequest, new DescribeStreamRequestMarshaller(),
+                new JsonResponseHandler<DescribeStreamResult>(
+                        new DescribeStreamResultJsonUnmarshaller()),
+                asyncHandler, executorService, new Callable<DescribeStreamResult>() {
             public DescribeStreamResult call() throws Exception {
-              DescribeStreamResult result;
-                try {
-                result = describeStream(describeStreamRequest);
-              } catch (Exception ex) {
-                  asyncHandler.onError(ex);
-            throw ex;
-              }
-              asyncHandler.onSuccess(describeStreamRequest, result);
-                 return result;
-        }
-    });
+                return describeStream(describeStreamRequest);
+            }
+        });
     }
     
     /**
@@ -1428,11 +1367,7 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
      */
     public Future<GetShardIteratorResult> getShardIteratorAsync(final GetShardIteratorRequest getShardIteratorRequest) 
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<GetShardIteratorResult>() {
-            public GetShardIteratorResult call() throws Exception {
-                return getShardIterator(getShardIteratorRequest);
-        }
-    });
+        return getShardIteratorAsync(getShardIteratorRequest, null);
     }
 
     /**
@@ -1512,19 +1447,14 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
             final GetShardIteratorRequest getShardIteratorRequest,
             final AsyncHandler<GetShardIteratorRequest, GetShardIteratorResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<GetShardIteratorResult>() {
+        return executeAsync(getShardIteratorRequest, new GetShardIteratorRequestMarshaller(),
+                new JsonResponseHandler<GetShardIteratorResult>(
+                        new GetShardIteratorResultJsonUnmarshaller()),
+                asyncHandler, executorService, new Callable<GetShardIteratorResult>() {
             public GetShardIteratorResult call() throws Exception {
-              GetShardIteratorResult result;
-                try {
-                result = getShardIterator(getShardIteratorRequest);
-              } catch (Exception ex) {
-                  asyncHandler.onError(ex);
-            throw ex;
-              }
-              asyncHandler.onSuccess(getShardIteratorRequest, result);
-                 return result;
-        }
-    });
+                return getShardIterator(getShardIteratorRequest);
+            }
+        });
     }
     
     /**
@@ -1549,11 +1479,7 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
      */
     public Future<ListTagsForStreamResult> listTagsForStreamAsync(final ListTagsForStreamRequest listTagsForStreamRequest) 
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<ListTagsForStreamResult>() {
-            public ListTagsForStreamResult call() throws Exception {
-                return listTagsForStream(listTagsForStreamRequest);
-        }
-    });
+        return listTagsForStreamAsync(listTagsForStreamRequest, null);
     }
 
     /**
@@ -1584,19 +1510,14 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
             final ListTagsForStreamRequest listTagsForStreamRequest,
             final AsyncHandler<ListTagsForStreamRequest, ListTagsForStreamResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<ListTagsForStreamResult>() {
+        return executeAsync(listTagsForStreamRequest, new ListTagsForStreamRequestMarshaller(),
+                new JsonResponseHandler<ListTagsForStreamResult>(
+                        new ListTagsForStreamResultJsonUnmarshaller()),
+                asyncHandler, executorService, new Callable<ListTagsForStreamResult>() {
             public ListTagsForStreamResult call() throws Exception {
-              ListTagsForStreamResult result;
-                try {
-                result = listTagsForStream(listTagsForStreamRequest);
-              } catch (Exception ex) {
-                  asyncHandler.onError(ex);
-            throw ex;
-              }
-              asyncHandler.onSuccess(listTagsForStreamRequest, result);
-                 return result;
-        }
-    });
+                return listTagsForStream(listTagsForStreamRequest);
+            }
+        });
     }
     
     /**
@@ -1675,11 +1596,7 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
      */
     public Future<GetRecordsResult> getRecordsAsync(final GetRecordsRequest getRecordsRequest) 
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<GetRecordsResult>() {
-            public GetRecordsResult call() throws Exception {
-                return getRecords(getRecordsRequest);
-        }
-    });
+        return getRecordsAsync(getRecordsRequest, null);
     }
 
     /**
@@ -1764,19 +1681,14 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
             final GetRecordsRequest getRecordsRequest,
             final AsyncHandler<GetRecordsRequest, GetRecordsResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<GetRecordsResult>() {
+        return executeAsync(getRecordsRequest, new GetRecordsRequestMarshaller(),
+                new JsonResponseHandler<GetRecordsResult>(
+                        new GetRecordsResultJsonUnmarshaller()),
+                asyncHandler, executorService, new Callable<GetRecordsResult>() {
             public GetRecordsResult call() throws Exception {
-              GetRecordsResult result;
-                try {
-                result = getRecords(getRecordsRequest);
-              } catch (Exception ex) {
-                  asyncHandler.onError(ex);
-            throw ex;
-              }
-              asyncHandler.onSuccess(getRecordsRequest, result);
-                 return result;
-        }
-    });
+                return getRecords(getRecordsRequest);
+            }
+        });
     }
     
     /**
@@ -1867,12 +1779,7 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
      */
     public Future<Void> splitShardAsync(final SplitShardRequest splitShardRequest) 
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<Void>() {
-            public Void call() throws Exception {
-                splitShard(splitShardRequest);
-                return null;
-        }
-    });
+        return splitShardAsync(splitShardRequest, null);
     }
 
     /**
@@ -1969,18 +1876,14 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
             final SplitShardRequest splitShardRequest,
             final AsyncHandler<SplitShardRequest, Void> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<Void>() {
+        return executeAsync(splitShardRequest, new SplitShardRequestMarshaller(),
+                new JsonResponseHandler<Void>(null),
+                asyncHandler, executorService, new Callable<Void>() {
             public Void call() throws Exception {
-              try {
                 splitShard(splitShardRequest);
-              } catch (Exception ex) {
-                  asyncHandler.onError(ex);
-            throw ex;
-              }
-              asyncHandler.onSuccess(splitShardRequest, null);
-                 return null;
-        }
-    });
+                return null;
+            }
+        });
     }
     
     /**
@@ -2009,12 +1912,7 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
      */
     public Future<Void> removeTagsFromStreamAsync(final RemoveTagsFromStreamRequest removeTagsFromStreamRequest) 
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<Void>() {
-            public Void call() throws Exception {
-                removeTagsFromStream(removeTagsFromStreamRequest);
-                return null;
-        }
-    });
+        return removeTagsFromStreamAsync(removeTagsFromStreamRequest, null);
     }
 
     /**
@@ -2049,18 +1947,14 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
             final RemoveTagsFromStreamRequest removeTagsFromStreamRequest,
             final AsyncHandler<RemoveTagsFromStreamRequest, Void> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<Void>() {
+        return executeAsync(removeTagsFromStreamRequest, new RemoveTagsFromStreamRequestMarshaller(),
+                new JsonResponseHandler<Void>(null),
+                asyncHandler, executorService, new Callable<Void>() {
             public Void call() throws Exception {
-              try {
                 removeTagsFromStream(removeTagsFromStreamRequest);
-              } catch (Exception ex) {
-                  asyncHandler.onError(ex);
-            throw ex;
-              }
-              asyncHandler.onSuccess(removeTagsFromStreamRequest, null);
-                 return null;
-        }
-    });
+                return null;
+            }
+        });
     }
     
     /**
@@ -2107,11 +2001,7 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
      */
     public Future<ListStreamsResult> listStreamsAsync(final ListStreamsRequest listStreamsRequest) 
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<ListStreamsResult>() {
-            public ListStreamsResult call() throws Exception {
-                return listStreams(listStreamsRequest);
-        }
-    });
+        return listStreamsAsync(listStreamsRequest, null);
     }
 
     /**
@@ -2164,19 +2054,14 @@ public class AmazonKinesisAsyncClient extends AmazonKinesisClient
             final ListStreamsRequest listStreamsRequest,
             final AsyncHandler<ListStreamsRequest, ListStreamsResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<ListStreamsResult>() {
+        return executeAsync(listStreamsRequest, new ListStreamsRequestMarshaller(),
+                new JsonResponseHandler<ListStreamsResult>(
+                        new ListStreamsResultJsonUnmarshaller()),
+                asyncHandler, executorService, new Callable<ListStreamsResult>() {
             public ListStreamsResult call() throws Exception {
-              ListStreamsResult result;
-                try {
-                result = listStreams(listStreamsRequest);
-              } catch (Exception ex) {
-                  asyncHandler.onError(ex);
-            throw ex;
-              }
-              asyncHandler.onSuccess(listStreamsRequest, result);
-                 return result;
-        }
-    });
+                return listStreams(listStreamsRequest);
+            }
+        });
     }
     
 }
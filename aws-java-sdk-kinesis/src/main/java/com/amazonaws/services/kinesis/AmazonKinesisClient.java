@@ -213,6 +213,9 @@ public class AmazonKinesisClient extends AmazonWebServiceClient implements Amazo
         
         jsonErrorUnmarshallers.add(new JsonErrorUnmarshaller());
         
+        initNonBlockingTransport(awsCredentialsProvider,
+                new JsonErrorResponseHandler(jsonErrorUnmarshallers));
+
         // calling this.setEndPoint(...) will also modify the signer accordingly
         this.setEndpoint("kinesis.us-east-1.amazonaws.com");
         
@@ -2447,6 +2450,11 @@ public class AmazonKinesisClient extends AmazonWebServiceClient implements Amazo
         return client.getResponseMetadataForRequest(request);
     }
 
+    @Override
+    protected boolean supportsNonBlockingTransport() {
+        return true;
+    }
+
     private <X, Y extends AmazonWebServiceRequest> Response<X> invoke(Request<Y> request,
             HttpResponseHandler<AmazonWebServiceResponse<X>> responseHandler,
             ExecutionContext executionContext) {
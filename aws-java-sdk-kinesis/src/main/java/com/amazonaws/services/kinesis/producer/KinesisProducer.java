@@ -0,0 +1,654 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.producer;
+
+import static com.amazonaws.services.kinesis.producer.KinesisProducerConfig.SERVICE_MAX_BYTES_PER_CALL;
+import static com.amazonaws.services.kinesis.producer.KinesisProducerConfig.SERVICE_MAX_RECORDS_PER_CALL;
+import static com.amazonaws.util.StringUtils.UTF8;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.kinesis.AmazonKinesisAsync;
+import com.amazonaws.services.kinesis.model.PutRecordsRequest;
+import com.amazonaws.services.kinesis.model.PutRecordsRequestEntry;
+import com.amazonaws.services.kinesis.model.PutRecordsResult;
+import com.amazonaws.services.kinesis.model.PutRecordsResultEntry;
+
+/**
+ * Buffers records and puts them to a stream with PutRecords calls of up to
+ * 500 records and 5 megabytes, made through an {@link AmazonKinesisAsync}
+ * client.
+ * <p>
+ * Records are grouped by the shard they are predicted to be put to, from the
+ * hash key ranges of the open shards of the stream, and the records and bytes
+ * per second sent to each shard are limited to its write capacity. The records
+ * that fail in a PutRecords result, for example because their shard was
+ * throttled, are re-submitted with a jittered exponential backoff; the records
+ * put by the same call are not sent again.
+ * <p>
+ * At most {@link KinesisProducerConfig#getMaxInflightCalls()} calls are in
+ * flight, and adding a record blocks while
+ * {@link KinesisProducerConfig#getMaxOutstandingRecords()} records are not yet
+ * put or failed. The calls are made from a background thread of the producer,
+ * and their results processed by the threads of the client; the batching,
+ * throttling and latency can be monitored with {@link #getMetrics()}.
+ * <p>
+ * This class is thread safe. Closing the producer puts the records still
+ * buffered and stops its thread, but doesn't shut down the client.
+ */
+public class KinesisProducer {
+    private static final Log log = LogFactory.getLog(KinesisProducer.class);
+
+    private static final int MAX_PARTITION_KEY_LENGTH = 256;
+    private static final int MAX_DATA_SIZE = 1024 * 1024;
+    private static final String THROTTLED_ERROR_CODE = "ProvisionedThroughputExceededException";
+
+    /** The group of the records whose shard couldn't be predicted. */
+    private static final String UNKNOWN_SHARD = "";
+
+    private static final ThreadLocal<MessageDigest> MD5 = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    private final AmazonKinesisAsync kinesis;
+    private final String streamName;
+    private final KinesisProducerConfig config;
+    private final ShardMap shardMap;
+    private final ScheduledExecutorService scheduler;
+    private final Random random = new Random();
+
+    /** Acquired when a record is added, and released when it is put or fails. */
+    private final Semaphore outstandingRecords;
+    private final Semaphore inflightCalls;
+
+    /** The records added or re-submitted, not yet grouped by shard. */
+    private final ConcurrentLinkedQueue<UserRecord> incoming = new ConcurrentLinkedQueue<UserRecord>();
+    private final AtomicInteger incomingRecords = new AtomicInteger();
+    private final AtomicLong incomingBytes = new AtomicLong();
+
+    private final AtomicBoolean drainPending = new AtomicBoolean();
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drainPending.set(false);
+            drain();
+        }
+    };
+
+    /** The number of flushes requested, and the number completed by the producer thread. */
+    private final AtomicLong flushesRequested = new AtomicLong();
+    private long flushesCompleted;
+
+    private volatile boolean closed;
+
+    /** The records buffered by predicted shard; accessed by the producer thread only. */
+    private final Map<String, ShardBuffer> shardBuffers = new LinkedHashMap<String, ShardBuffer>();
+    private int bufferedRecords;
+    private long bufferedBytes;
+    /** The buffered records being re-submitted, which have waited long enough. */
+    private int bufferedRetries;
+    private int rotation;
+
+    private final ConcurrentMap<String, ShardRateLimiter> limiters =
+            new ConcurrentHashMap<String, ShardRateLimiter>();
+
+    private final AtomicLong putRecordsCalls = new AtomicLong();
+    private final AtomicLong recordsInCalls = new AtomicLong();
+    private final AtomicLong fillRatioMicros = new AtomicLong();
+    private final AtomicLong succeededRecords = new AtomicLong();
+    private final AtomicLong failedRecords = new AtomicLong();
+    private final AtomicLong retriedRecords = new AtomicLong();
+    private final AtomicLong latencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private final ConcurrentMap<String, AtomicLong> throttledRecords =
+            new ConcurrentHashMap<String, AtomicLong>();
+
+    public KinesisProducer(AmazonKinesisAsync kinesis, String streamName) {
+        this(kinesis, streamName, new KinesisProducerConfig());
+    }
+
+    public KinesisProducer(AmazonKinesisAsync kinesis, final String streamName, KinesisProducerConfig config) {
+        if (kinesis == null || streamName == null || config == null) {
+            throw new IllegalArgumentException("The client, stream name and configuration must be specified");
+        }
+        this.kinesis = kinesis;
+        this.streamName = streamName;
+        this.config = new KinesisProducerConfig(config);
+        this.shardMap = new ShardMap(kinesis, streamName);
+        this.outstandingRecords = new Semaphore(this.config.getMaxOutstandingRecords());
+        this.inflightCalls = new Semaphore(this.config.getMaxInflightCalls());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "kinesis-producer-" + streamName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        long tickMs = Math.max(5, Math.min(100, this.config.getMaxBufferedTimeMs() / 2));
+        scheduler.scheduleWithFixedDelay(drainTask, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds a record to put to the stream, blocking while the maximum number of
+     * outstanding records is reached.
+     *
+     * @param partitionKey
+     *            the partition key of the record, mapped to its shard
+     * @param data
+     *            the data of the record; must not be modified until the
+     *            returned future is done
+     * @return the future entry of the PutRecords result that put the record,
+     *         with its shard id and sequence number
+     */
+    public Future<PutRecordsResultEntry> addRecord(String partitionKey, ByteBuffer data) {
+        return addRecord(partitionKey, null, data);
+    }
+
+    /**
+     * Adds a record to put to the stream, blocking while the maximum number of
+     * outstanding records is reached.
+     *
+     * @param partitionKey
+     *            the partition key of the record
+     * @param explicitHashKey
+     *            the hash key mapping the record to its shard instead of the
+     *            partition key, or null
+     * @param data
+     *            the data of the record; must not be modified until the
+     *            returned future is done
+     * @return the future entry of the PutRecords result that put the record,
+     *         with its shard id and sequence number
+     */
+    public Future<PutRecordsResultEntry> addRecord(String partitionKey, String explicitHashKey,
+            ByteBuffer data) {
+        if (partitionKey == null || partitionKey.length() == 0
+                || partitionKey.length() > MAX_PARTITION_KEY_LENGTH) {
+            throw new IllegalArgumentException("The partition key must have between 1 and "
+                    + MAX_PARTITION_KEY_LENGTH + " characters");
+        }
+        if (data == null || data.remaining() > MAX_DATA_SIZE) {
+            throw new IllegalArgumentException("The data must be specified, of at most "
+                    + MAX_DATA_SIZE + " bytes");
+        }
+        if (closed) {
+            throw new IllegalStateException("The producer has been closed");
+        }
+        BigInteger hashKey;
+        byte[] partitionKeyBytes = partitionKey.getBytes(UTF8);
+        if (explicitHashKey == null) {
+            hashKey = new BigInteger(1, MD5.get().digest(partitionKeyBytes));
+        } else {
+            try {
+                hashKey = new BigInteger(explicitHashKey);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid explicit hash key: " + explicitHashKey, e);
+            }
+        }
+        PutRecordsRequestEntry entry = new PutRecordsRequestEntry()
+                .withPartitionKey(partitionKey)
+                .withExplicitHashKey(explicitHashKey)
+                .withData(data.duplicate());
+        UserRecord record = new UserRecord(entry, hashKey, data.remaining() + partitionKeyBytes.length);
+        try {
+            outstandingRecords.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException("Interrupted while waiting to add a record", e);
+        }
+        enqueue(record);
+        if (scheduler.isTerminated()) {
+            // closed concurrently
+            failIncoming();
+        }
+        return record.future;
+    }
+
+    /**
+     * Requests the records buffered to be sent without waiting for other
+     * records to fill their calls.
+     */
+    public void flush() {
+        flushesRequested.incrementAndGet();
+        triggerDrain();
+    }
+
+    /**
+     * Flushes the records buffered, and waits until no record is outstanding,
+     * including the records added concurrently.
+     */
+    public void flushSync() {
+        flush();
+        int maxOutstandingRecords = config.getMaxOutstandingRecords();
+        try {
+            outstandingRecords.acquire(maxOutstandingRecords);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException("Interrupted while flushing the records", e);
+        }
+        outstandingRecords.release(maxOutstandingRecords);
+    }
+
+    /**
+     * Puts the records outstanding, and stops the thread of the producer. No
+     * record can be added afterwards.
+     */
+    public void close() {
+        closed = true;
+        try {
+            flushSync();
+        } finally {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            failIncoming();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the metrics of this producer.
+     */
+    public KinesisProducerMetrics getMetrics() {
+        long calls = putRecordsCalls.get();
+        long succeeded = succeededRecords.get();
+        Map<String, Long> throttled = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> e : throttledRecords.entrySet()) {
+            throttled.put(e.getKey(), e.getValue().get());
+        }
+        return new KinesisProducerMetrics(
+                config.getMaxOutstandingRecords() - outstandingRecords.availablePermits(),
+                config.getMaxInflightCalls() - inflightCalls.availablePermits(),
+                calls,
+                calls == 0 ? 0 : recordsInCalls.get() / (double) calls,
+                calls == 0 ? 0 : fillRatioMicros.get() / 1e6 / calls,
+                succeeded,
+                failedRecords.get(),
+                retriedRecords.get(),
+                Collections.unmodifiableMap(throttled),
+                succeeded == 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(latencyNanos.get() / succeeded),
+                succeeded == 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get()));
+    }
+
+    private void enqueue(UserRecord record) {
+        incoming.add(record);
+        int records = incomingRecords.incrementAndGet();
+        long bytes = incomingBytes.addAndGet(record.size);
+        if (records >= config.getMaxRecordsPerCall() || bytes >= config.getMaxBytesPerCall()) {
+            triggerDrain();
+        }
+    }
+
+    private void triggerDrain() {
+        if (drainPending.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(drainTask);
+            } catch (RejectedExecutionException e) {
+                drainPending.set(false);
+            }
+        }
+    }
+
+    /**
+     * Groups the incoming records by shard, and sends the buffered records in
+     * as many calls as are ready and allowed in flight. Runs on the producer
+     * thread.
+     */
+    private void drain() {
+        try {
+            long now = System.nanoTime();
+            long flushTarget = flushesRequested.get();
+            shardMap.refreshIfStale(now);
+            for (UserRecord record; (record = incoming.poll()) != null;) {
+                incomingRecords.decrementAndGet();
+                incomingBytes.addAndGet(-record.size);
+                buffer(record);
+            }
+            boolean flushing = flushesCompleted < flushTarget;
+            while (bufferedRecords > 0 && isReady(flushing, now) && inflightCalls.tryAcquire()) {
+                List<UserRecord> batch = nextBatch(now);
+                if (batch.isEmpty()) {
+                    // the shards of the buffered records are at their rate limit
+                    inflightCalls.release();
+                    break;
+                }
+                send(batch);
+            }
+            if (bufferedRecords == 0) {
+                flushesCompleted = flushTarget;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Unable to send the buffered records of stream " + streamName, e);
+        }
+    }
+
+    private void buffer(UserRecord record) {
+        String shardId = shardMap.shardFor(record.hashKey);
+        record.predictedShardId = shardId;
+        String key = shardId == null ? UNKNOWN_SHARD : shardId;
+        ShardBuffer shard = shardBuffers.get(key);
+        if (shard == null) {
+            shard = new ShardBuffer(shardId == null ? null : limiterFor(shardId));
+            shardBuffers.put(key, shard);
+        }
+        shard.records.add(record);
+        bufferedRecords++;
+        bufferedBytes += record.size;
+        if (record.attempts > 0) {
+            bufferedRetries++;
+        }
+    }
+
+    private ShardRateLimiter limiterFor(String shardId) {
+        long recordsPerSecond = config.getShardMaxRecordsPerSecond();
+        long bytesPerSecond = config.getShardMaxBytesPerSecond();
+        if (recordsPerSecond == 0 && bytesPerSecond == 0) {
+            return null;
+        }
+        ShardRateLimiter limiter = limiters.get(shardId);
+        if (limiter == null) {
+            limiter = new ShardRateLimiter(recordsPerSecond, bytesPerSecond);
+            ShardRateLimiter existing = limiters.putIfAbsent(shardId, limiter);
+            if (existing != null) {
+                limiter = existing;
+            }
+        }
+        return limiter;
+    }
+
+    /**
+     * Returns true if a call should be made now: the buffered records fill a
+     * call, the oldest one has been buffered long enough, a record is being
+     * re-submitted, or a flush was requested.
+     */
+    private boolean isReady(boolean flushing, long now) {
+        if (flushing || bufferedRetries > 0 || bufferedRecords >= config.getMaxRecordsPerCall()
+                || bufferedBytes >= config.getMaxBytesPerCall()) {
+            return true;
+        }
+        long maxBufferedNanos = TimeUnit.MILLISECONDS.toNanos(config.getMaxBufferedTimeMs());
+        for (ShardBuffer shard : shardBuffers.values()) {
+            UserRecord oldest = shard.records.peek();
+            if (oldest != null && now - oldest.addedNanos >= maxBufferedNanos) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Takes the records of the next call from the shard buffers, one record
+     * per shard in turn, starting from a different shard every call, and
+     * skipping the shards at their rate limit.
+     */
+    private List<UserRecord> nextBatch(long now) {
+        int maxRecords = config.getMaxRecordsPerCall();
+        long maxBytes = config.getMaxBytesPerCall();
+        List<UserRecord> batch = new ArrayList<UserRecord>();
+        long bytes = 0;
+        List<ShardBuffer> active = new ArrayList<ShardBuffer>(shardBuffers.values());
+        if (!active.isEmpty()) {
+            Collections.rotate(active, -(rotation++ % active.size()));
+        }
+        while (!active.isEmpty() && batch.size() < maxRecords) {
+            for (Iterator<ShardBuffer> it = active.iterator(); it.hasNext() && batch.size() < maxRecords;) {
+                ShardBuffer shard = it.next();
+                UserRecord record = shard.records.peek();
+                if (record == null
+                        || (!batch.isEmpty() && bytes + record.size > maxBytes)
+                        || (shard.limiter != null && !shard.limiter.tryAcquire(record.size, now))) {
+                    it.remove();
+                    continue;
+                }
+                shard.records.poll();
+                batch.add(record);
+                bytes += record.size;
+                if (record.attempts > 0) {
+                    bufferedRetries--;
+                }
+            }
+        }
+        bufferedRecords -= batch.size();
+        bufferedBytes -= bytes;
+        for (Iterator<ShardBuffer> it = shardBuffers.values().iterator(); it.hasNext();) {
+            if (it.next().records.isEmpty()) {
+                it.remove();
+            }
+        }
+        return batch;
+    }
+
+    private void send(final List<UserRecord> batch) {
+        List<PutRecordsRequestEntry> entries = new ArrayList<PutRecordsRequestEntry>(batch.size());
+        long bytes = 0;
+        for (UserRecord record : batch) {
+            record.attempts++;
+            entries.add(record.entry);
+            bytes += record.size;
+        }
+        putRecordsCalls.incrementAndGet();
+        recordsInCalls.addAndGet(batch.size());
+        double fillRatio = Math.max(batch.size() / (double) SERVICE_MAX_RECORDS_PER_CALL,
+                bytes / (double) SERVICE_MAX_BYTES_PER_CALL);
+        fillRatioMicros.addAndGet(Math.round(Math.min(1, fillRatio) * 1e6));
+
+        PutRecordsRequest request = new PutRecordsRequest()
+                .withStreamName(streamName)
+                .withRecords(entries);
+        try {
+            kinesis.putRecordsAsync(request, new AsyncHandler<PutRecordsRequest, PutRecordsResult>() {
+                @Override
+                public void onSuccess(PutRecordsRequest request, PutRecordsResult result) {
+                    try {
+                        processResult(batch, result);
+                    } finally {
+                        callCompleted();
+                    }
+                }
+
+                @Override
+                public void onError(Exception exception) {
+                    try {
+                        processFailure(batch, exception);
+                    } finally {
+                        callCompleted();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            // for example if the executor of the client has been shut down
+            try {
+                processFailure(batch, e);
+            } finally {
+                callCompleted();
+            }
+        }
+    }
+
+    private void callCompleted() {
+        inflightCalls.release();
+        triggerDrain();
+    }
+
+    private void processResult(List<UserRecord> batch, PutRecordsResult result) {
+        List<PutRecordsResultEntry> entries = result.getRecords();
+        long now = System.nanoTime();
+        for (int i = 0; i < batch.size(); i++) {
+            UserRecord record = batch.get(i);
+            PutRecordsResultEntry entry = i < entries.size() ? entries.get(i) : null;
+            if (entry == null) {
+                retryOrFail(record, new AmazonClientException("No result for the record in the PutRecords result"));
+            } else if (entry.getErrorCode() == null) {
+                if (record.predictedShardId == null || !record.predictedShardId.equals(entry.getShardId())) {
+                    shardMap.invalidate();
+                }
+                succeeded(record, entry, now);
+            } else {
+                if (THROTTLED_ERROR_CODE.equals(entry.getErrorCode())) {
+                    throttled(record, now);
+                }
+                AmazonServiceException failure = new AmazonServiceException(entry.getErrorMessage());
+                failure.setErrorCode(entry.getErrorCode());
+                failure.setServiceName("AmazonKinesis");
+                retryOrFail(record, failure);
+            }
+        }
+    }
+
+    private void processFailure(List<UserRecord> batch, Exception failure) {
+        boolean retryable = isRetryable(failure);
+        for (UserRecord record : batch) {
+            if (retryable) {
+                retryOrFail(record, failure);
+            } else {
+                failed(record, failure);
+            }
+        }
+    }
+
+    private static boolean isRetryable(Exception e) {
+        if (e instanceof AmazonServiceException) {
+            AmazonServiceException ase = (AmazonServiceException) e;
+            return ase.getStatusCode() >= 500 || RetryUtils.isThrottlingException(ase)
+                    || THROTTLED_ERROR_CODE.equals(ase.getErrorCode());
+        }
+        return e instanceof AmazonClientException && ((AmazonClientException) e).isRetryable();
+    }
+
+    private void throttled(UserRecord record, long now) {
+        String key = record.predictedShardId == null ? UNKNOWN_SHARD : record.predictedShardId;
+        AtomicLong count = throttledRecords.get(key);
+        if (count == null) {
+            AtomicLong existing = throttledRecords.putIfAbsent(key, count = new AtomicLong());
+            if (existing != null) {
+                count = existing;
+            }
+        }
+        count.incrementAndGet();
+        ShardRateLimiter limiter = record.predictedShardId == null ? null : limiters.get(record.predictedShardId);
+        if (limiter != null) {
+            limiter.throttled(now);
+        }
+    }
+
+    /**
+     * Re-submits the given record after a jittered exponential backoff, or
+     * fails it if it has been retried enough.
+     */
+    private void retryOrFail(final UserRecord record, Exception failure) {
+        if (record.attempts > config.getMaxRetries()) {
+            failed(record, failure);
+            return;
+        }
+        long delayMs = config.getRetryBaseDelayMs();
+        for (int i = 1; i < record.attempts && delayMs < config.getRetryMaxDelayMs(); i++) {
+            delayMs *= 2;
+        }
+        delayMs = Math.min(delayMs, config.getRetryMaxDelayMs());
+        delayMs = delayMs / 2 + (long) (random.nextDouble() * (delayMs - delayMs / 2));
+        try {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    enqueue(record);
+                }
+            }, delayMs, TimeUnit.MILLISECONDS);
+            retriedRecords.incrementAndGet();
+        } catch (RejectedExecutionException e) {
+            failed(record, failure);
+        }
+    }
+
+    private void succeeded(UserRecord record, PutRecordsResultEntry entry, long now) {
+        long latency = now - record.addedNanos;
+        latencyNanos.addAndGet(latency);
+        for (long max; latency > (max = maxLatencyNanos.get());) {
+            if (maxLatencyNanos.compareAndSet(max, latency)) {
+                break;
+            }
+        }
+        succeededRecords.incrementAndGet();
+        record.future.setSuccess(entry);
+        outstandingRecords.release();
+    }
+
+    private void failed(UserRecord record, Exception failure) {
+        failedRecords.incrementAndGet();
+        record.future.setFailure(failure);
+        outstandingRecords.release();
+    }
+
+    /** Fails the records added after the producer thread stopped. */
+    private void failIncoming() {
+        for (UserRecord record; (record = incoming.poll()) != null;) {
+            incomingRecords.decrementAndGet();
+            incomingBytes.addAndGet(-record.size);
+            failed(record, new IllegalStateException("The producer has been closed"));
+        }
+    }
+
+    /** The records buffered for one shard, in the order they were added. */
+    private static class ShardBuffer {
+        final ArrayDeque<UserRecord> records = new ArrayDeque<UserRecord>();
+
+        /** The rate limiter of the shard, or null if not limited. */
+        final ShardRateLimiter limiter;
+
+        ShardBuffer(ShardRateLimiter limiter) {
+            this.limiter = limiter;
+        }
+    }
+}
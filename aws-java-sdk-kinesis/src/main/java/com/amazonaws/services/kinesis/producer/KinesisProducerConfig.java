@@ -0,0 +1,387 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.producer;
+
+/**
+ * Configuration of the buffering, batching, retries and per-shard rate
+ * limiting of a {@link KinesisProducer}.
+ */
+public class KinesisProducerConfig {
+
+    /** The maximum number of records of a PutRecords call accepted by Kinesis. */
+    public static final int SERVICE_MAX_RECORDS_PER_CALL = 500;
+
+    /** The maximum size of a PutRecords call accepted by Kinesis, in bytes. */
+    public static final long SERVICE_MAX_BYTES_PER_CALL = 5 * 1024 * 1024;
+
+    /**
+     * The maximum time (milliseconds) a record is buffered, waiting for other
+     * records to fill a PutRecords call. The longer this time, the fuller the
+     * calls, at the expense of the latency of the records.
+     */
+    private long maxBufferedTimeMs;
+
+    /** 100 milliseconds */
+    public static final long MAX_BUFFERED_TIME_MS_DEFAULT = 100;
+
+    /** The maximum number of records of a PutRecords call. */
+    private int maxRecordsPerCall;
+
+    /** 500 records */
+    public static final int MAX_RECORDS_PER_CALL_DEFAULT = SERVICE_MAX_RECORDS_PER_CALL;
+
+    /**
+     * The maximum size of a PutRecords call, in bytes, counting the data and
+     * the partition key of its records.
+     */
+    private long maxBytesPerCall;
+
+    /** 5 megabytes */
+    public static final long MAX_BYTES_PER_CALL_DEFAULT = SERVICE_MAX_BYTES_PER_CALL;
+
+    /** The maximum number of PutRecords calls in flight. */
+    private int maxInflightCalls;
+
+    /** 10 calls */
+    public static final int MAX_INFLIGHT_CALLS_DEFAULT = 10;
+
+    /**
+     * The maximum number of records added and not yet put or failed. Adding a
+     * record blocks while this number is reached.
+     */
+    private int maxOutstandingRecords;
+
+    /** 10000 records */
+    public static final int MAX_OUTSTANDING_RECORDS_DEFAULT = 10000;
+
+    /**
+     * The maximum number of times a record that failed to be put is
+     * re-submitted before its future fails.
+     */
+    private int maxRetries;
+
+    /** 10 retries */
+    public static final int MAX_RETRIES_DEFAULT = 10;
+
+    /** The base delay (milliseconds) before re-submitting a failed record. */
+    private long retryBaseDelayMs;
+
+    /** 100 milliseconds */
+    public static final long RETRY_BASE_DELAY_MS_DEFAULT = 100;
+
+    /** The maximum delay (milliseconds) before re-submitting a failed record. */
+    private long retryMaxDelayMs;
+
+    /** 5 seconds */
+    public static final long RETRY_MAX_DELAY_MS_DEFAULT = 5000;
+
+    /**
+     * The maximum number of records per second sent to a shard, or 0 not to
+     * limit the rate of the shards.
+     */
+    private long shardMaxRecordsPerSecond;
+
+    /** 1000 records per second, the write limit of a shard */
+    public static final long SHARD_MAX_RECORDS_PER_SECOND_DEFAULT = 1000;
+
+    /**
+     * The maximum number of bytes per second sent to a shard, or 0 not to
+     * limit the rate of the shards.
+     */
+    private long shardMaxBytesPerSecond;
+
+    /** 1 megabyte per second, the write limit of a shard */
+    public static final long SHARD_MAX_BYTES_PER_SECOND_DEFAULT = 1024 * 1024;
+
+    public KinesisProducerConfig() {
+        maxBufferedTimeMs = MAX_BUFFERED_TIME_MS_DEFAULT;
+        maxRecordsPerCall = MAX_RECORDS_PER_CALL_DEFAULT;
+        maxBytesPerCall = MAX_BYTES_PER_CALL_DEFAULT;
+        maxInflightCalls = MAX_INFLIGHT_CALLS_DEFAULT;
+        maxOutstandingRecords = MAX_OUTSTANDING_RECORDS_DEFAULT;
+        maxRetries = MAX_RETRIES_DEFAULT;
+        retryBaseDelayMs = RETRY_BASE_DELAY_MS_DEFAULT;
+        retryMaxDelayMs = RETRY_MAX_DELAY_MS_DEFAULT;
+        shardMaxRecordsPerSecond = SHARD_MAX_RECORDS_PER_SECOND_DEFAULT;
+        shardMaxBytesPerSecond = SHARD_MAX_BYTES_PER_SECOND_DEFAULT;
+    }
+
+    /** copy constructor */
+    public KinesisProducerConfig(KinesisProducerConfig other) {
+        maxBufferedTimeMs = other.maxBufferedTimeMs;
+        maxRecordsPerCall = other.maxRecordsPerCall;
+        maxBytesPerCall = other.maxBytesPerCall;
+        maxInflightCalls = other.maxInflightCalls;
+        maxOutstandingRecords = other.maxOutstandingRecords;
+        maxRetries = other.maxRetries;
+        retryBaseDelayMs = other.retryBaseDelayMs;
+        retryMaxDelayMs = other.retryMaxDelayMs;
+        shardMaxRecordsPerSecond = other.shardMaxRecordsPerSecond;
+        shardMaxBytesPerSecond = other.shardMaxBytesPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return "KinesisProducerConfig [maxBufferedTimeMs=" + maxBufferedTimeMs + ", maxRecordsPerCall="
+                + maxRecordsPerCall + ", maxBytesPerCall=" + maxBytesPerCall + ", maxInflightCalls="
+                + maxInflightCalls + ", maxOutstandingRecords=" + maxOutstandingRecords + ", maxRetries="
+                + maxRetries + ", retryBaseDelayMs=" + retryBaseDelayMs + ", retryMaxDelayMs="
+                + retryMaxDelayMs + ", shardMaxRecordsPerSecond=" + shardMaxRecordsPerSecond
+                + ", shardMaxBytesPerSecond=" + shardMaxBytesPerSecond + "]";
+    }
+
+    /**
+     * The maximum time (milliseconds) a record is buffered, waiting for other
+     * records to fill a PutRecords call.
+     */
+    public long getMaxBufferedTimeMs() {
+        return maxBufferedTimeMs;
+    }
+
+    /**
+     * The maximum time (milliseconds) a record is buffered, waiting for other
+     * records to fill a PutRecords call. The longer this time, the fuller the
+     * calls, at the expense of the latency of the records.
+     */
+    public void setMaxBufferedTimeMs(long maxBufferedTimeMs) {
+        if (maxBufferedTimeMs < 0) {
+            throw new IllegalArgumentException("maxBufferedTimeMs must not be negative");
+        }
+        this.maxBufferedTimeMs = maxBufferedTimeMs;
+    }
+
+    public KinesisProducerConfig withMaxBufferedTimeMs(long maxBufferedTimeMs) {
+        setMaxBufferedTimeMs(maxBufferedTimeMs);
+        return this;
+    }
+
+    /**
+     * The maximum number of records of a PutRecords call.
+     */
+    public int getMaxRecordsPerCall() {
+        return maxRecordsPerCall;
+    }
+
+    /**
+     * The maximum number of records of a PutRecords call, between 1 and
+     * {@link #SERVICE_MAX_RECORDS_PER_CALL}.
+     */
+    public void setMaxRecordsPerCall(int maxRecordsPerCall) {
+        if (maxRecordsPerCall < 1 || maxRecordsPerCall > SERVICE_MAX_RECORDS_PER_CALL) {
+            throw new IllegalArgumentException("maxRecordsPerCall must be between 1 and "
+                    + SERVICE_MAX_RECORDS_PER_CALL);
+        }
+        this.maxRecordsPerCall = maxRecordsPerCall;
+    }
+
+    public KinesisProducerConfig withMaxRecordsPerCall(int maxRecordsPerCall) {
+        setMaxRecordsPerCall(maxRecordsPerCall);
+        return this;
+    }
+
+    /**
+     * The maximum size of a PutRecords call, in bytes.
+     */
+    public long getMaxBytesPerCall() {
+        return maxBytesPerCall;
+    }
+
+    /**
+     * The maximum size of a PutRecords call, in bytes, counting the data and
+     * the partition key of its records; at most
+     * {@link #SERVICE_MAX_BYTES_PER_CALL}. A record larger than this size is
+     * sent alone.
+     */
+    public void setMaxBytesPerCall(long maxBytesPerCall) {
+        if (maxBytesPerCall < 1 || maxBytesPerCall > SERVICE_MAX_BYTES_PER_CALL) {
+            throw new IllegalArgumentException("maxBytesPerCall must be between 1 and "
+                    + SERVICE_MAX_BYTES_PER_CALL);
+        }
+        this.maxBytesPerCall = maxBytesPerCall;
+    }
+
+    public KinesisProducerConfig withMaxBytesPerCall(long maxBytesPerCall) {
+        setMaxBytesPerCall(maxBytesPerCall);
+        return this;
+    }
+
+    /**
+     * The maximum number of PutRecords calls in flight.
+     */
+    public int getMaxInflightCalls() {
+        return maxInflightCalls;
+    }
+
+    /**
+     * The maximum number of PutRecords calls in flight. Make sure the thread
+     * pool and the maximum number of connections of the client allow for it.
+     */
+    public void setMaxInflightCalls(int maxInflightCalls) {
+        if (maxInflightCalls < 1) {
+            throw new IllegalArgumentException("maxInflightCalls must be at least 1");
+        }
+        this.maxInflightCalls = maxInflightCalls;
+    }
+
+    public KinesisProducerConfig withMaxInflightCalls(int maxInflightCalls) {
+        setMaxInflightCalls(maxInflightCalls);
+        return this;
+    }
+
+    /**
+     * The maximum number of records added and not yet put or failed.
+     */
+    public int getMaxOutstandingRecords() {
+        return maxOutstandingRecords;
+    }
+
+    /**
+     * The maximum number of records added and not yet put or failed. Adding a
+     * record blocks while this number is reached, which bounds the memory used
+     * by the producer when records are added faster than they can be put.
+     */
+    public void setMaxOutstandingRecords(int maxOutstandingRecords) {
+        if (maxOutstandingRecords < 1) {
+            throw new IllegalArgumentException("maxOutstandingRecords must be at least 1");
+        }
+        this.maxOutstandingRecords = maxOutstandingRecords;
+    }
+
+    public KinesisProducerConfig withMaxOutstandingRecords(int maxOutstandingRecords) {
+        setMaxOutstandingRecords(maxOutstandingRecords);
+        return this;
+    }
+
+    /**
+     * The maximum number of times a failed record is re-submitted.
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * The maximum number of times a record that failed to be put, alone in its
+     * PutRecords result or with its whole call, is re-submitted before its
+     * future fails.
+     */
+    public void setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries must not be negative");
+        }
+        this.maxRetries = maxRetries;
+    }
+
+    public KinesisProducerConfig withMaxRetries(int maxRetries) {
+        setMaxRetries(maxRetries);
+        return this;
+    }
+
+    /**
+     * The base delay (milliseconds) before re-submitting a failed record.
+     */
+    public long getRetryBaseDelayMs() {
+        return retryBaseDelayMs;
+    }
+
+    /**
+     * The base delay (milliseconds) before re-submitting a failed record. The
+     * delay doubles with each retry, up to {@link #getRetryMaxDelayMs()}, and
+     * a random half of it is jittered so that the records throttled together
+     * are not re-submitted together.
+     */
+    public void setRetryBaseDelayMs(long retryBaseDelayMs) {
+        if (retryBaseDelayMs < 0) {
+            throw new IllegalArgumentException("retryBaseDelayMs must not be negative");
+        }
+        this.retryBaseDelayMs = retryBaseDelayMs;
+    }
+
+    public KinesisProducerConfig withRetryBaseDelayMs(long retryBaseDelayMs) {
+        setRetryBaseDelayMs(retryBaseDelayMs);
+        return this;
+    }
+
+    /**
+     * The maximum delay (milliseconds) before re-submitting a failed record.
+     */
+    public long getRetryMaxDelayMs() {
+        return retryMaxDelayMs;
+    }
+
+    /**
+     * The maximum delay (milliseconds) before re-submitting a failed record.
+     */
+    public void setRetryMaxDelayMs(long retryMaxDelayMs) {
+        if (retryMaxDelayMs < 0) {
+            throw new IllegalArgumentException("retryMaxDelayMs must not be negative");
+        }
+        this.retryMaxDelayMs = retryMaxDelayMs;
+    }
+
+    public KinesisProducerConfig withRetryMaxDelayMs(long retryMaxDelayMs) {
+        setRetryMaxDelayMs(retryMaxDelayMs);
+        return this;
+    }
+
+    /**
+     * The maximum number of records per second sent to a shard, or 0 if the
+     * rate of the shards is not limited.
+     */
+    public long getShardMaxRecordsPerSecond() {
+        return shardMaxRecordsPerSecond;
+    }
+
+    /**
+     * The maximum number of records per second sent to a shard, or 0 not to
+     * limit the rate of the shards. The shard of a record is predicted from
+     * the hash key ranges of the shards of the stream; records whose shard
+     * can't be predicted are not limited.
+     */
+    public void setShardMaxRecordsPerSecond(long shardMaxRecordsPerSecond) {
+        if (shardMaxRecordsPerSecond < 0) {
+            throw new IllegalArgumentException("shardMaxRecordsPerSecond must not be negative");
+        }
+        this.shardMaxRecordsPerSecond = shardMaxRecordsPerSecond;
+    }
+
+    public KinesisProducerConfig withShardMaxRecordsPerSecond(long shardMaxRecordsPerSecond) {
+        setShardMaxRecordsPerSecond(shardMaxRecordsPerSecond);
+        return this;
+    }
+
+    /**
+     * The maximum number of bytes per second sent to a shard, or 0 if the rate
+     * of the shards is not limited.
+     */
+    public long getShardMaxBytesPerSecond() {
+        return shardMaxBytesPerSecond;
+    }
+
+    /**
+     * The maximum number of bytes per second sent to a shard, or 0 not to
+     * limit the rate of the shards.
+     */
+    public void setShardMaxBytesPerSecond(long shardMaxBytesPerSecond) {
+        if (shardMaxBytesPerSecond < 0) {
+            throw new IllegalArgumentException("shardMaxBytesPerSecond must not be negative");
+        }
+        this.shardMaxBytesPerSecond = shardMaxBytesPerSecond;
+    }
+
+    public KinesisProducerConfig withShardMaxBytesPerSecond(long shardMaxBytesPerSecond) {
+        setShardMaxBytesPerSecond(shardMaxBytesPerSecond);
+        return this;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.producer;
+
+import java.util.Map;
+
+/**
+ * A snapshot of the batching, retries, per-shard throttling and latency of a
+ * {@link KinesisProducer}, as returned by {@link KinesisProducer#getMetrics()}.
+ * The counts and averages cover the lifetime of the producer.
+ * <p>
+ * Instances of this class are immutable.
+ */
+public class KinesisProducerMetrics {
+
+    private final int outstandingRecords;
+    private final int inflightCalls;
+    private final long putRecordsCalls;
+    private final double averageRecordsPerCall;
+    private final double averageFillRatio;
+    private final long succeededRecords;
+    private final long failedRecords;
+    private final long retriedRecords;
+    private final Map<String, Long> throttledRecordsByShard;
+    private final long averageLatencyMs;
+    private final long maxLatencyMs;
+
+    KinesisProducerMetrics(int outstandingRecords, int inflightCalls, long putRecordsCalls,
+            double averageRecordsPerCall, double averageFillRatio, long succeededRecords,
+            long failedRecords, long retriedRecords, Map<String, Long> throttledRecordsByShard,
+            long averageLatencyMs, long maxLatencyMs) {
+        this.outstandingRecords = outstandingRecords;
+        this.inflightCalls = inflightCalls;
+        this.putRecordsCalls = putRecordsCalls;
+        this.averageRecordsPerCall = averageRecordsPerCall;
+        this.averageFillRatio = averageFillRatio;
+        this.succeededRecords = succeededRecords;
+        this.failedRecords = failedRecords;
+        this.retriedRecords = retriedRecords;
+        this.throttledRecordsByShard = throttledRecordsByShard;
+        this.averageLatencyMs = averageLatencyMs;
+        this.maxLatencyMs = maxLatencyMs;
+    }
+
+    /**
+     * @return the number of records added and not yet put or failed
+     */
+    public int getOutstandingRecords() {
+        return outstandingRecords;
+    }
+
+    /**
+     * @return the number of PutRecords calls currently in flight
+     */
+    public int getInflightCalls() {
+        return inflightCalls;
+    }
+
+    /**
+     * @return the number of PutRecords calls made
+     */
+    public long getPutRecordsCalls() {
+        return putRecordsCalls;
+    }
+
+    /**
+     * @return the average number of records per PutRecords call, or 0 if no
+     *         call was made
+     */
+    public double getAverageRecordsPerCall() {
+        return averageRecordsPerCall;
+    }
+
+    /**
+     * @return the average fill ratio of the PutRecords calls, between 0 and
+     *         1: the larger of the ratios of their records to 500 and of
+     *         their size to 5 megabytes, the limits of a call
+     */
+    public double getAverageFillRatio() {
+        return averageFillRatio;
+    }
+
+    /**
+     * @return the number of records put
+     */
+    public long getSucceededRecords() {
+        return succeededRecords;
+    }
+
+    /**
+     * @return the number of records whose future failed, after their retries
+     */
+    public long getFailedRecords() {
+        return failedRecords;
+    }
+
+    /**
+     * @return the number of times records were re-submitted after failing
+     */
+    public long getRetriedRecords() {
+        return retriedRecords;
+    }
+
+    /**
+     * @return the number of records throttled by Kinesis, by predicted shard
+     *         id; records whose shard was not predicted are counted under
+     *         the empty string
+     */
+    public Map<String, Long> getThrottledRecordsByShard() {
+        return throttledRecordsByShard;
+    }
+
+    /**
+     * @return the average time (milliseconds) from adding a record to its
+     *         successful put, or -1 if no record was put
+     */
+    public long getAverageLatencyMs() {
+        return averageLatencyMs;
+    }
+
+    /**
+     * @return the longest time (milliseconds) from adding a record to its
+     *         successful put, or -1 if no record was put
+     */
+    public long getMaxLatencyMs() {
+        return maxLatencyMs;
+    }
+
+    @Override
+    public String toString() {
+        return "KinesisProducerMetrics [outstandingRecords=" + outstandingRecords + ", inflightCalls="
+                + inflightCalls + ", putRecordsCalls=" + putRecordsCalls + ", averageRecordsPerCall="
+                + averageRecordsPerCall + ", averageFillRatio=" + averageFillRatio + ", succeededRecords="
+                + succeededRecords + ", failedRecords=" + failedRecords + ", retriedRecords=" + retriedRecords
+                + ", throttledRecordsByShard=" + throttledRecordsByShard + ", averageLatencyMs="
+                + averageLatencyMs + ", maxLatencyMs=" + maxLatencyMs + "]";
+    }
+}
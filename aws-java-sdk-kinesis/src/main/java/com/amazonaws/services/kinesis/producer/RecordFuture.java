@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.producer;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.amazonaws.services.kinesis.model.PutRecordsResultEntry;
+
+/**
+ * The future result of a record added to a {@link KinesisProducer}: the entry
+ * of the PutRecords result that put it, or the failure of its last attempt.
+ * These futures are not cancellable.
+ */
+class RecordFuture implements Future<PutRecordsResultEntry> {
+    private PutRecordsResultEntry result;
+    private Exception failure;
+    private boolean done;
+
+    synchronized void setSuccess(PutRecordsResultEntry result) {
+        if (done)
+            return;
+        this.result = result;
+        done = true;
+        notifyAll();
+    }
+
+    synchronized void setFailure(Exception failure) {
+        if (done)
+            return;
+        this.failure = failure;
+        done = true;
+        notifyAll();
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public synchronized PutRecordsResultEntry get() throws InterruptedException, ExecutionException {
+        while (!done) {
+            wait();
+        }
+        return getResult();
+    }
+
+    @Override
+    public synchronized PutRecordsResultEntry get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long end = System.nanoTime() + unit.toNanos(timeout);
+        while (!done) {
+            long remaining = end - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return getResult();
+    }
+
+    private PutRecordsResultEntry getResult() throws ExecutionException {
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.producer;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.kinesis.AmazonKinesis;
+import com.amazonaws.services.kinesis.model.DescribeStreamRequest;
+import com.amazonaws.services.kinesis.model.Shard;
+import com.amazonaws.services.kinesis.model.StreamDescription;
+
+/**
+ * The hash key ranges of the open shards of a stream, used to predict the
+ * shard a record is put to. The ranges are described again when a prediction
+ * turns out to be wrong, for example after a shard was split or merged, but no
+ * more often than every few seconds.
+ */
+class ShardMap {
+    private static final Log log = LogFactory.getLog(ShardMap.class);
+
+    private static final long MIN_REFRESH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final AmazonKinesis kinesis;
+    private final String streamName;
+
+    /** The open shards, sorted by starting hash key; empty until described. */
+    private volatile Ranges ranges = new Ranges(Collections.<Shard>emptyList());
+
+    private volatile boolean stale = true;
+    private long lastRefreshNanos;
+
+    ShardMap(AmazonKinesis kinesis, String streamName) {
+        this.kinesis = kinesis;
+        this.streamName = streamName;
+    }
+
+    /**
+     * Returns the id of the open shard whose hash key range contains the given
+     * hash key, or null if unknown.
+     */
+    String shardFor(BigInteger hashKey) {
+        Ranges ranges = this.ranges;
+        int low = 0;
+        int high = ranges.shardIds.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (hashKey.compareTo(ranges.startingHashKeys[mid]) < 0) {
+                high = mid - 1;
+            } else if (hashKey.compareTo(ranges.endingHashKeys[mid]) > 0) {
+                low = mid + 1;
+            } else {
+                return ranges.shardIds[mid];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Marks the shards as to be described again.
+     */
+    void invalidate() {
+        stale = true;
+    }
+
+    /**
+     * Describes the shards of the stream if they are stale and haven't been
+     * described recently. Called by one thread at a time.
+     */
+    void refreshIfStale(long nowNanos) {
+        if (!stale || (lastRefreshNanos != 0 && nowNanos - lastRefreshNanos < MIN_REFRESH_INTERVAL_NANOS)) {
+            return;
+        }
+        lastRefreshNanos = nowNanos;
+        try {
+            List<Shard> open = new ArrayList<Shard>();
+            String exclusiveStartShardId = null;
+            StreamDescription description;
+            do {
+                description = kinesis.describeStream(new DescribeStreamRequest()
+                        .withStreamName(streamName)
+                        .withExclusiveStartShardId(exclusiveStartShardId))
+                        .getStreamDescription();
+                for (Shard shard : description.getShards()) {
+                    if (shard.getSequenceNumberRange().getEndingSequenceNumber() == null) {
+                        open.add(shard);
+                    }
+                    exclusiveStartShardId = shard.getShardId();
+                }
+            } while (Boolean.TRUE.equals(description.getHasMoreShards()) && exclusiveStartShardId != null);
+
+            Collections.sort(open, new Comparator<Shard>() {
+                @Override
+                public int compare(Shard a, Shard b) {
+                    return new BigInteger(a.getHashKeyRange().getStartingHashKey()).compareTo(
+                            new BigInteger(b.getHashKeyRange().getStartingHashKey()));
+                }
+            });
+            ranges = new Ranges(open);
+            stale = false;
+        } catch (AmazonClientException e) {
+            log.warn("Unable to describe the shards of stream " + streamName
+                    + "; records will not be grouped by shard", e);
+        }
+    }
+
+    /** The hash key ranges of shards sorted by starting hash key. */
+    private static class Ranges {
+        final String[] shardIds;
+        final BigInteger[] startingHashKeys;
+        final BigInteger[] endingHashKeys;
+
+        Ranges(List<Shard> shards) {
+            shardIds = new String[shards.size()];
+            startingHashKeys = new BigInteger[shards.size()];
+            endingHashKeys = new BigInteger[shards.size()];
+            for (int i = 0; i < shards.size(); i++) {
+                Shard shard = shards.get(i);
+                shardIds[i] = shard.getShardId();
+                startingHashKeys[i] = new BigInteger(shard.getHashKeyRange().getStartingHashKey());
+                endingHashKeys[i] = new BigInteger(shard.getHashKeyRange().getEndingHashKey());
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.producer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token buckets limiting the records and bytes per second sent to a shard.
+ * Each bucket holds at most one second worth of tokens. A record larger than
+ * the byte bucket is let through as soon as the bucket is full, leaving it in
+ * debt. A bucket with a rate of 0 doesn't limit the shard.
+ */
+class ShardRateLimiter {
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final double maxRecords;
+    private final double maxBytes;
+
+    private double records;
+    private double bytes;
+    private long lastRefillNanos;
+
+    ShardRateLimiter(long recordsPerSecond, long bytesPerSecond) {
+        this.maxRecords = recordsPerSecond;
+        this.maxBytes = bytesPerSecond;
+        this.records = recordsPerSecond;
+        this.bytes = bytesPerSecond;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Takes the tokens for a record of the given size if available, and
+     * returns whether it may be sent now.
+     */
+    synchronized boolean tryAcquire(int size, long nowNanos) {
+        refill(nowNanos);
+        if ((maxRecords > 0 && records < 1) || (maxBytes > 0 && bytes < Math.min(size, maxBytes))) {
+            return false;
+        }
+        records -= 1;
+        bytes -= size;
+        return true;
+    }
+
+    /**
+     * Empties the buckets, after Kinesis throttled a record of the shard, so
+     * that the shard gets no more records until they have refilled.
+     */
+    synchronized void throttled(long nowNanos) {
+        refill(nowNanos);
+        records = Math.min(records, 0);
+        bytes = Math.min(bytes, 0);
+    }
+
+    private void refill(long nowNanos) {
+        double elapsedSeconds = (nowNanos - lastRefillNanos) / NANOS_PER_SECOND;
+        if (elapsedSeconds > 0) {
+            records = Math.min(maxRecords, records + elapsedSeconds * maxRecords);
+            bytes = Math.min(maxBytes, bytes + elapsedSeconds * maxBytes);
+            lastRefillNanos = nowNanos;
+        }
+    }
+}
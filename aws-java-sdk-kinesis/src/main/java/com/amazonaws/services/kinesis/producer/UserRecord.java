@@ -0,0 +1,50 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.producer;
+
+import java.math.BigInteger;
+
+import com.amazonaws.services.kinesis.model.PutRecordsRequestEntry;
+
+/**
+ * A record added to a {@link KinesisProducer}, from the time it is added until
+ * it is put or fails.
+ */
+class UserRecord {
+    final PutRecordsRequestEntry entry;
+
+    /** The hash key mapping the record to a shard. */
+    final BigInteger hashKey;
+
+    /** The size of the record counted by Kinesis: data and partition key. */
+    final int size;
+
+    final long addedNanos;
+
+    final RecordFuture future = new RecordFuture();
+
+    /** The number of times the record has been sent; accessed by one thread at a time. */
+    int attempts;
+
+    /** The shard the record is expected to be put to, or null if unknown. */
+    String predictedShardId;
+
+    UserRecord(PutRecordsRequestEntry entry, BigInteger hashKey, int size) {
+        this.entry = entry;
+        this.hashKey = hashKey;
+        this.size = size;
+        this.addedNanos = System.nanoTime();
+    }
+}
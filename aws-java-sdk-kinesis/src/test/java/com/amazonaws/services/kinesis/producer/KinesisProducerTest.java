@@ -0,0 +1,363 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.producer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.kinesis.AmazonKinesisAsyncClient;
+import com.amazonaws.services.kinesis.model.DescribeStreamRequest;
+import com.amazonaws.services.kinesis.model.DescribeStreamResult;
+import com.amazonaws.services.kinesis.model.HashKeyRange;
+import com.amazonaws.services.kinesis.model.PutRecordsRequest;
+import com.amazonaws.services.kinesis.model.PutRecordsRequestEntry;
+import com.amazonaws.services.kinesis.model.PutRecordsResult;
+import com.amazonaws.services.kinesis.model.PutRecordsResultEntry;
+import com.amazonaws.services.kinesis.model.SequenceNumberRange;
+import com.amazonaws.services.kinesis.model.Shard;
+import com.amazonaws.services.kinesis.model.StreamDescription;
+import com.amazonaws.util.StringUtils;
+
+public class KinesisProducerTest {
+
+    private static final String THROTTLED = "ProvisionedThroughputExceededException";
+
+    private StubKinesis kinesis;
+    private KinesisProducer producer;
+
+    @Before
+    public void setUp() {
+        kinesis = new StubKinesis();
+    }
+
+    @After
+    public void tearDown() {
+        if (producer != null) {
+            producer.close();
+        }
+        kinesis.shutdown();
+    }
+
+    @Test
+    public void testCallsPackedTo500Records() throws Exception {
+        producer = newProducer(config());
+        List<Future<PutRecordsResultEntry>> futures = addRecords(1200, 10);
+        producer.flushSync();
+        assertAllPut(futures);
+        assertEquals(3, kinesis.callRecords.size());
+        for (int i = 0; i < kinesis.callRecords.size() - 1; i++) {
+            assertEquals(500, kinesis.callRecords.get(i).intValue());
+        }
+        assertEquals(200, kinesis.callRecords.get(2).intValue());
+        assertEquals(3, producer.getMetrics().getPutRecordsCalls());
+    }
+
+    @Test
+    public void testCallsPackedTo5Megabytes() throws Exception {
+        producer = newProducer(config());
+        List<Future<PutRecordsResultEntry>> futures = addRecords(120, 100 * 1024);
+        producer.flushSync();
+        assertAllPut(futures);
+        long smallestRecord = 100 * 1024 + "key-0".length();
+        int total = 0;
+        for (int i = 0; i < kinesis.callBytes.size(); i++) {
+            long bytes = kinesis.callBytes.get(i);
+            assertTrue(bytes <= KinesisProducerConfig.SERVICE_MAX_BYTES_PER_CALL);
+            if (i < kinesis.callBytes.size() - 1) {
+                // Full: no other record would have fit
+                assertTrue(bytes + smallestRecord > KinesisProducerConfig.SERVICE_MAX_BYTES_PER_CALL);
+            }
+            total += kinesis.callRecords.get(i);
+        }
+        assertEquals(120, total);
+        assertEquals(3, kinesis.callBytes.size());
+    }
+
+    @Test
+    public void testShardPredictedFromPartitionKeyHash() throws Exception {
+        producer = newProducer(config());
+        // The first attempt of every third record is throttled by its shard
+        Map<String, Long> expectedThrottled = new HashMap<String, Long>();
+        for (int i = 0; i < 300; i += 3) {
+            String key = "key-" + i;
+            kinesis.failures.put(key, 1);
+            String shardId = kinesis.shardFor(StubKinesis.md5(key));
+            Long count = expectedThrottled.get(shardId);
+            expectedThrottled.put(shardId, count == null ? 1 : count + 1);
+        }
+        List<Future<PutRecordsResultEntry>> futures = addRecords(300, 10);
+        producer.flushSync();
+        assertAllPut(futures);
+        // Counted against the predicted shards, which were the actual ones
+        assertEquals(4, expectedThrottled.size());
+        assertEquals(expectedThrottled, producer.getMetrics().getThrottledRecordsByShard());
+        // So the shards weren't described again
+        assertEquals(1, kinesis.describeCalls.get());
+    }
+
+    @Test
+    public void testExplicitHashKeyPredictsShard() throws Exception {
+        producer = newProducer(config());
+        String lastShard = StubKinesis.SHARD_IDS[3];
+        kinesis.failures.put("key", 1);
+        Future<PutRecordsResultEntry> future = producer.addRecord("key",
+                StubKinesis.MAX_HASH_KEY.toString(), ByteBuffer.wrap(new byte[10]));
+        producer.flushSync();
+        assertEquals(lastShard, future.get().getShardId());
+        assertEquals(Collections.singletonMap(lastShard, 1L),
+                producer.getMetrics().getThrottledRecordsByShard());
+    }
+
+    @Test
+    public void testOnlyFailedEntriesResubmitted() throws Exception {
+        producer = newProducer(config());
+        for (int i = 0; i < 100; i += 7) {
+            kinesis.failures.put("key-" + i, 2);
+        }
+        List<Future<PutRecordsResultEntry>> futures = addRecords(100, 10);
+        producer.flushSync();
+        assertAllPut(futures);
+        for (int i = 0; i < 100; i++) {
+            int expected = kinesis.failures.containsKey("key-" + i) ? 3 : 1;
+            assertEquals("key-" + i, expected, kinesis.attempts.get("key-" + i).get());
+        }
+        KinesisProducerMetrics metrics = producer.getMetrics();
+        assertEquals(100, metrics.getSucceededRecords());
+        assertEquals(2 * 15, metrics.getRetriedRecords());
+        assertEquals(0, metrics.getFailedRecords());
+    }
+
+    @Test
+    public void testRecordFailedAfterMaxRetries() throws Exception {
+        producer = newProducer(config().withMaxRetries(2));
+        kinesis.failures.put("key-3", Integer.MAX_VALUE);
+        List<Future<PutRecordsResultEntry>> futures = addRecords(5, 10);
+        producer.flushSync();
+        try {
+            futures.get(3).get();
+            fail();
+        } catch (ExecutionException expected) {
+            assertEquals(THROTTLED, ((AmazonServiceException) expected.getCause()).getErrorCode());
+        }
+        assertEquals(3, kinesis.attempts.get("key-3").get());
+        futures.remove(3);
+        assertAllPut(futures);
+        assertEquals(1, producer.getMetrics().getFailedRecords());
+    }
+
+    @Test
+    public void testShardRateLimited() throws Exception {
+        producer = newProducer(config().withShardMaxRecordsPerSecond(200));
+        long start = System.nanoTime();
+        List<Future<PutRecordsResultEntry>> futures = new ArrayList<Future<PutRecordsResultEntry>>();
+        for (int i = 0; i < 400; i++) {
+            // All to the first shard
+            futures.add(producer.addRecord("key-" + i, "0", ByteBuffer.wrap(new byte[10])));
+        }
+        producer.flushSync();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertAllPut(futures);
+        // 200 records right away, and the others as the bucket refills
+        assertTrue("elapsed " + elapsedMs, elapsedMs >= 800);
+        assertTrue(kinesis.callRecords.get(0) <= 200);
+    }
+
+    @Test
+    public void testRecordsBufferedUntilFlushed() throws Exception {
+        producer = newProducer(config());
+        List<Future<PutRecordsResultEntry>> futures = addRecords(10, 10);
+        Thread.sleep(300);
+        assertTrue(kinesis.callRecords.isEmpty());
+        assertEquals(10, producer.getMetrics().getOutstandingRecords());
+        producer.flushSync();
+        assertAllPut(futures);
+        assertEquals(Collections.singletonList(10), kinesis.callRecords);
+        assertEquals(0, producer.getMetrics().getOutstandingRecords());
+    }
+
+    @Test
+    public void testClosePutsBufferedRecords() throws Exception {
+        producer = newProducer(config());
+        List<Future<PutRecordsResultEntry>> futures = addRecords(10, 10);
+        producer.close();
+        assertAllPut(futures);
+        try {
+            producer.addRecord("key", ByteBuffer.wrap(new byte[10]));
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    /** Sends only full calls unless flushed, and retries right away. */
+    private static KinesisProducerConfig config() {
+        return new KinesisProducerConfig()
+            .withMaxBufferedTimeMs(TimeUnit.MINUTES.toMillis(1))
+            .withRetryBaseDelayMs(1)
+            .withRetryMaxDelayMs(1)
+            .withShardMaxRecordsPerSecond(0)
+            .withShardMaxBytesPerSecond(0);
+    }
+
+    private KinesisProducer newProducer(KinesisProducerConfig config) {
+        return new KinesisProducer(kinesis, "stream", config);
+    }
+
+    private List<Future<PutRecordsResultEntry>> addRecords(int count, int size) {
+        ByteBuffer data = ByteBuffer.wrap(new byte[size]);
+        List<Future<PutRecordsResultEntry>> futures = new ArrayList<Future<PutRecordsResultEntry>>();
+        for (int i = 0; i < count; i++) {
+            futures.add(producer.addRecord("key-" + i, data));
+        }
+        return futures;
+    }
+
+    private void assertAllPut(List<Future<PutRecordsResultEntry>> futures) throws Exception {
+        for (Future<PutRecordsResultEntry> future : futures) {
+            assertTrue(future.isDone());
+            PutRecordsResultEntry entry = future.get();
+            assertEquals(null, entry.getErrorCode());
+            assertTrue(entry.getSequenceNumber() != null);
+        }
+    }
+
+    /**
+     * A stream of four open shards splitting the hash key range evenly, and
+     * their closed parent. Puts the records to the shards of their hash keys
+     * as Kinesis does, and throttles the first attempts of the partition keys
+     * in failures.
+     */
+    private static class StubKinesis extends AmazonKinesisAsyncClient {
+        static final BigInteger MAX_HASH_KEY = BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE);
+        static final String[] SHARD_IDS = {
+            "shardId-000000000001", "shardId-000000000002", "shardId-000000000003", "shardId-000000000004"
+        };
+
+        final Map<String, Integer> failures = new ConcurrentHashMap<String, Integer>();
+        final Map<String, AtomicInteger> attempts = new ConcurrentHashMap<String, AtomicInteger>();
+        final List<Integer> callRecords = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<Long> callBytes = Collections.synchronizedList(new ArrayList<Long>());
+        final AtomicInteger describeCalls = new AtomicInteger();
+        private final AtomicInteger sequenceNumber = new AtomicInteger();
+
+        StubKinesis() {
+            super(new BasicAWSCredentials("access", "secret"));
+        }
+
+        static BigInteger md5(String partitionKey) {
+            try {
+                return new BigInteger(1, MessageDigest.getInstance("MD5").digest(
+                        partitionKey.getBytes(StringUtils.UTF8)));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        static BigInteger startingHashKey(int shard) {
+            return MAX_HASH_KEY.add(BigInteger.ONE).shiftRight(2).multiply(BigInteger.valueOf(shard));
+        }
+
+        String shardFor(BigInteger hashKey) {
+            for (int shard = SHARD_IDS.length - 1; shard >= 0; shard--) {
+                if (hashKey.compareTo(startingHashKey(shard)) >= 0) {
+                    return SHARD_IDS[shard];
+                }
+            }
+            throw new IllegalArgumentException();
+        }
+
+        @Override
+        public DescribeStreamResult describeStream(DescribeStreamRequest request) {
+            describeCalls.incrementAndGet();
+            List<Shard> shards = new ArrayList<Shard>();
+            shards.add(shard("shardId-000000000000", BigInteger.ZERO, MAX_HASH_KEY)
+                .withSequenceNumberRange(new SequenceNumberRange()
+                    .withStartingSequenceNumber("0")
+                    .withEndingSequenceNumber("100")));
+            for (int shard = 0; shard < SHARD_IDS.length; shard++) {
+                BigInteger end = shard == SHARD_IDS.length - 1
+                    ? MAX_HASH_KEY : startingHashKey(shard + 1).subtract(BigInteger.ONE);
+                shards.add(shard(SHARD_IDS[shard], startingHashKey(shard), end));
+            }
+            return new DescribeStreamResult().withStreamDescription(new StreamDescription()
+                .withStreamName(request.getStreamName())
+                .withShards(shards)
+                .withHasMoreShards(false));
+        }
+
+        private static Shard shard(String shardId, BigInteger start, BigInteger end) {
+            return new Shard()
+                .withShardId(shardId)
+                .withHashKeyRange(new HashKeyRange()
+                    .withStartingHashKey(start.toString())
+                    .withEndingHashKey(end.toString()))
+                .withSequenceNumberRange(new SequenceNumberRange().withStartingSequenceNumber("101"));
+        }
+
+        @Override
+        public Future<PutRecordsResult> putRecordsAsync(PutRecordsRequest request,
+                AsyncHandler<PutRecordsRequest, PutRecordsResult> asyncHandler) {
+            List<PutRecordsResultEntry> entries = new ArrayList<PutRecordsResultEntry>();
+            long bytes = 0;
+            int failed = 0;
+            for (PutRecordsRequestEntry entry : request.getRecords()) {
+                String key = entry.getPartitionKey();
+                bytes += entry.getData().remaining() + key.length();
+                attempts.putIfAbsent(key, new AtomicInteger());
+                int attempt = attempts.get(key).incrementAndGet();
+                Integer failing = failures.get(key);
+                if (failing != null && attempt <= failing) {
+                    failed++;
+                    entries.add(new PutRecordsResultEntry()
+                        .withErrorCode(THROTTLED)
+                        .withErrorMessage("Rate exceeded for shard"));
+                } else {
+                    BigInteger hashKey = entry.getExplicitHashKey() == null
+                        ? md5(key) : new BigInteger(entry.getExplicitHashKey());
+                    entries.add(new PutRecordsResultEntry()
+                        .withShardId(shardFor(hashKey))
+                        .withSequenceNumber(String.valueOf(sequenceNumber.incrementAndGet())));
+                }
+            }
+            callRecords.add(request.getRecords().size());
+            callBytes.add(bytes);
+            asyncHandler.onSuccess(request, new PutRecordsResult()
+                .withFailedRecordCount(failed)
+                .withRecords(entries));
+            return null;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.producer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.kinesis.AmazonKinesisClient;
+import com.amazonaws.services.kinesis.model.DescribeStreamRequest;
+import com.amazonaws.services.kinesis.model.DescribeStreamResult;
+import com.amazonaws.services.kinesis.model.HashKeyRange;
+import com.amazonaws.services.kinesis.model.SequenceNumberRange;
+import com.amazonaws.services.kinesis.model.Shard;
+import com.amazonaws.services.kinesis.model.StreamDescription;
+
+public class ShardMapTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testOpenShardsMapped() {
+        // Described out of order over two pages, with a closed parent
+        StubKinesis kinesis = new StubKinesis(
+                Arrays.asList(shard("shard-2", 200, 299), shard("shard-0", 0, 299).withSequenceNumberRange(
+                        new SequenceNumberRange().withStartingSequenceNumber("1").withEndingSequenceNumber("2"))),
+                Arrays.asList(shard("shard-1", 0, 199)));
+        ShardMap map = new ShardMap(kinesis, "stream");
+        assertNull(map.shardFor(BigInteger.ZERO));
+        map.refreshIfStale(System.nanoTime());
+        assertEquals(Arrays.asList(null, "shard-0"), kinesis.exclusiveStartShardIds);
+        assertEquals("shard-1", map.shardFor(BigInteger.valueOf(0)));
+        assertEquals("shard-1", map.shardFor(BigInteger.valueOf(199)));
+        assertEquals("shard-2", map.shardFor(BigInteger.valueOf(200)));
+        assertEquals("shard-2", map.shardFor(BigInteger.valueOf(299)));
+        assertNull(map.shardFor(BigInteger.valueOf(300)));
+    }
+
+    @Test
+    public void testRefreshedWhenInvalidatedAndNotRecent() {
+        StubKinesis kinesis = new StubKinesis(Arrays.asList(shard("shard-0", 0, 99)));
+        ShardMap map = new ShardMap(kinesis, "stream");
+        long now = System.nanoTime();
+        map.refreshIfStale(now);
+        map.refreshIfStale(now + 60 * SECOND);
+        assertEquals(1, kinesis.exclusiveStartShardIds.size());
+
+        // Split
+        kinesis.pages = Arrays.asList(Arrays.asList(shard("shard-1", 0, 49), shard("shard-2", 50, 99)));
+        map.invalidate();
+        map.refreshIfStale(now + 65 * SECOND);
+        assertEquals(2, kinesis.exclusiveStartShardIds.size());
+        assertEquals("shard-2", map.shardFor(BigInteger.valueOf(50)));
+
+        // Not described again within 10 seconds
+        map.invalidate();
+        map.refreshIfStale(now + 70 * SECOND);
+        assertEquals(2, kinesis.exclusiveStartShardIds.size());
+        map.refreshIfStale(now + 76 * SECOND);
+        assertEquals(3, kinesis.exclusiveStartShardIds.size());
+    }
+
+    @Test
+    public void testRangesKeptWhenDescribeFails() {
+        StubKinesis kinesis = new StubKinesis(Arrays.asList(shard("shard-0", 0, 99)));
+        ShardMap map = new ShardMap(kinesis, "stream");
+        long now = System.nanoTime();
+        map.refreshIfStale(now);
+        kinesis.pages = null;
+        map.invalidate();
+        map.refreshIfStale(now + 20 * SECOND);
+        assertEquals("shard-0", map.shardFor(BigInteger.ONE));
+    }
+
+    private static Shard shard(String shardId, long start, long end) {
+        return new Shard()
+            .withShardId(shardId)
+            .withHashKeyRange(new HashKeyRange()
+                .withStartingHashKey(String.valueOf(start))
+                .withEndingHashKey(String.valueOf(end)))
+            .withSequenceNumberRange(new SequenceNumberRange().withStartingSequenceNumber("1"));
+    }
+
+    /** Describes the shards of the given pages, or fails if there are none. */
+    private static class StubKinesis extends AmazonKinesisClient {
+        volatile List<List<Shard>> pages;
+        final List<String> exclusiveStartShardIds = new ArrayList<String>();
+
+        StubKinesis(List<Shard>... pages) {
+            super(new BasicAWSCredentials("access", "secret"));
+            this.pages = Arrays.asList(pages);
+        }
+
+        @Override
+        public DescribeStreamResult describeStream(DescribeStreamRequest request) {
+            if (pages == null) {
+                throw new AmazonServiceException("Rate exceeded");
+            }
+            exclusiveStartShardIds.add(request.getExclusiveStartShardId());
+            int page = 0;
+            if (request.getExclusiveStartShardId() != null) {
+                while (!lastShardId(pages.get(page)).equals(request.getExclusiveStartShardId())) {
+                    page++;
+                }
+                page++;
+            }
+            return new DescribeStreamResult().withStreamDescription(new StreamDescription()
+                .withStreamName(request.getStreamName())
+                .withShards(pages.get(page))
+                .withHasMoreShards(page < pages.size() - 1));
+        }
+
+        private static String lastShardId(List<Shard> shards) {
+            return shards.get(shards.size() - 1).getShardId();
+        }
+    }
+}
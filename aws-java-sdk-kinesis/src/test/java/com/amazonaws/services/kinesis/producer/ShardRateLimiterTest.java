@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.producer;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ShardRateLimiterTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testRecordsRefilled() {
+        ShardRateLimiter limiter = new ShardRateLimiter(10, 0);
+        long now = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire(100, now));
+        }
+        assertFalse(limiter.tryAcquire(100, now));
+        // One record per 100 ms
+        assertFalse(limiter.tryAcquire(100, now + 50 * MS));
+        assertTrue(limiter.tryAcquire(100, now + 150 * MS));
+        assertFalse(limiter.tryAcquire(100, now + 150 * MS));
+        // At most one second worth of records
+        now += 10000 * MS;
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire(100, now));
+        }
+        assertFalse(limiter.tryAcquire(100, now));
+    }
+
+    @Test
+    public void testBytesRefilled() {
+        ShardRateLimiter limiter = new ShardRateLimiter(0, 1000);
+        long now = System.nanoTime();
+        assertTrue(limiter.tryAcquire(600, now));
+        assertTrue(limiter.tryAcquire(400, now));
+        assertFalse(limiter.tryAcquire(1, now));
+        assertFalse(limiter.tryAcquire(300, now + 200 * MS));
+        assertTrue(limiter.tryAcquire(300, now + 310 * MS));
+    }
+
+    @Test
+    public void testLargeRecordLeavesDebt() {
+        ShardRateLimiter limiter = new ShardRateLimiter(0, 1000);
+        long now = System.nanoTime();
+        assertTrue(limiter.tryAcquire(3000, now));
+        // 2000 bytes in debt, then 1000 to send the next record
+        assertFalse(limiter.tryAcquire(1000, now + 2500 * MS));
+        assertTrue(limiter.tryAcquire(1000, now + 3010 * MS));
+    }
+
+    @Test
+    public void testThrottledEmptiesBuckets() {
+        ShardRateLimiter limiter = new ShardRateLimiter(10, 1000);
+        long now = System.nanoTime();
+        assertTrue(limiter.tryAcquire(10, now));
+        limiter.throttled(now);
+        assertFalse(limiter.tryAcquire(10, now));
+        assertFalse(limiter.tryAcquire(10, now + 50 * MS));
+        assertTrue(limiter.tryAcquire(10, now + 150 * MS));
+    }
+}
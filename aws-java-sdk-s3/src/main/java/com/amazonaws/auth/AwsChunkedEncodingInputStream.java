@@ -20,7 +20,6 @@ import java.io.InputStream;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Arrays;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
@@ -28,7 +27,6 @@ import javax.crypto.spec.SecretKeySpec;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import com.amazonaws.AmazonClientException;
 import com.amazonaws.internal.SdkInputStream;
 import com.amazonaws.util.BinaryUtils;
 
@@ -45,7 +43,6 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
     private static final String CHUNK_STRING_TO_SIGN_PREFIX = "AWS4-HMAC-SHA256-PAYLOAD";
     private static final String CHUNK_SIGNATURE_HEADER = ";chunk-signature=";
     private static final int SIGNATURE_LENGTH = 64;
-    private static final byte[] FINAL_CHUNK = new byte[0];
 
     private InputStream is = null;
     private final int maxBufferSize;
@@ -58,6 +55,12 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
     private final MessageDigest sha256;
     private final Mac hmacSha256;
 
+    /**
+     * The data of the current chunk, allocated once and refilled with the
+     * next chunk when the current one has been read.
+     */
+    private byte[] chunkData;
+
     /** Iterator on the current chunk that has been signed */
     private ChunkContentIterator currentChunkIterator;
 
@@ -113,6 +116,7 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
             maxBufferSize = Math.max(originalChunkedStream.maxBufferSize, maxBufferSize);
             is = originalChunkedStream.is;
             decodedStreamBuffer = originalChunkedStream.decodedStreamBuffer;
+            chunkData = originalChunkedStream.chunkData;
         }
         else {
             is = in;
@@ -288,17 +292,22 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
 
     /**
      * Read in the next chunk of data, and create the necessary chunk extensions.
+     * The chunk data is read into a buffer reused for every chunk, and streamed
+     * out between its header and trailer without being copied again.
      * @return
      *         Returns true if next chunk is the last empty chunk.
      */
     private boolean setUpNextChunk() throws IOException {
-        byte[] chunkData = new byte[DEFAULT_CHUNK_SIZE];
+        if (chunkData == null) {
+            chunkData = new byte[DEFAULT_CHUNK_SIZE];
+        }
         int chunkSizeInBytes = 0;
         while (chunkSizeInBytes < DEFAULT_CHUNK_SIZE) {
             /** Read from the buffer of the decoded stream */
             if (null != decodedStreamBuffer
                     && decodedStreamBuffer.hasNext()) {
-                chunkData[chunkSizeInBytes++] = decodedStreamBuffer.next();
+                chunkSizeInBytes += decodedStreamBuffer.next(chunkData,
+                        chunkSizeInBytes, DEFAULT_CHUNK_SIZE - chunkSizeInBytes);
             }
             /** Read from the wrapped stream */
             else {
@@ -313,33 +322,27 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
                     break;
             }
         }
-        if (chunkSizeInBytes == 0){
-            byte[] signedFinalChunk = createSignedChunk(FINAL_CHUNK);
-            currentChunkIterator = new ChunkContentIterator(signedFinalChunk);
-            return true;
-        }
-        else {
-            if (chunkSizeInBytes < chunkData.length) {
-                chunkData = Arrays.copyOf(chunkData, chunkSizeInBytes);
-            }
-            byte[] signedChunkContent = createSignedChunk(chunkData);
-            currentChunkIterator = new ChunkContentIterator(signedChunkContent);
-            return false;
-        }
+        currentChunkIterator = createSignedChunk(chunkData, chunkSizeInBytes);
+        return chunkSizeInBytes == 0;
     }
 
-    private byte[] createSignedChunk(byte[] chunkData) {
+    /**
+     * Signs the given chunk data, chaining its signature to the signature of
+     * the prior chunk, and returns an iterator on the signed chunk.
+     */
+    private ChunkContentIterator createSignedChunk(byte[] chunkData, int chunkLength) {
         StringBuilder chunkHeader = new StringBuilder();
         // chunk-size
-        chunkHeader.append(Integer.toHexString(chunkData.length));
+        chunkHeader.append(Integer.toHexString(chunkLength));
         // sig-extension
+        sha256.update(chunkData, 0, chunkLength);
         final String chunkStringToSign =
                 CHUNK_STRING_TO_SIGN_PREFIX + "\n" +
                 dateTime + "\n" +
                 keyPath + "\n" +
                 priorChunkSignature + "\n" +
                 AbstractAWSSigner.EMPTY_STRING_SHA256_HEX + "\n" +
-                BinaryUtils.toHex(sha256.digest(chunkData));
+                BinaryUtils.toHex(sha256.digest());
         final String chunkSignature =
             BinaryUtils.toHex(aws4Signer.signWithMac(chunkStringToSign, hmacSha256));
         priorChunkSignature = chunkSignature;
@@ -347,19 +350,8 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
                    .append(chunkSignature)
                    .append(CRLF)
                    ;
-        try {
-            byte[] header = chunkHeader.toString().getBytes(UTF8);
-            byte[] trailer = CRLF.getBytes(UTF8);
-            byte[] signedChunk = new byte[header.length + chunkData.length + trailer.length];
-            System.arraycopy(header, 0, signedChunk, 0, header.length);
-            System.arraycopy(chunkData, 0, signedChunk, header.length, chunkData.length);
-            System.arraycopy(trailer, 0,
-                    signedChunk, header.length + chunkData.length,
-                    trailer.length);
-            return signedChunk;
-        } catch (Exception e) {
-            throw new AmazonClientException("Unable to sign the chunked data. " + e.getMessage(), e);
-        }
+        return new ChunkContentIterator(
+                chunkHeader.toString().getBytes(UTF8), chunkData, chunkLength);
     }
 
     @Override
@@ -14,17 +14,26 @@
  */
 package com.amazonaws.auth;
 
+/**
+ * Iterates the bytes of a signed chunk: its header, its data and the trailing
+ * CRLF, without copying them into a single array first.
+ */
 class ChunkContentIterator {
+    private static final byte[] CRLF = { '\r', '\n' };
 
-    private final byte[] signedChunk;
+    private final byte[] header;
+    private final byte[] data;
+    private final int dataLength;
     private int pos;
 
-    public ChunkContentIterator(byte[] signedChunk) {
-        this.signedChunk = signedChunk;
+    public ChunkContentIterator(byte[] header, byte[] data, int dataLength) {
+        this.header = header;
+        this.data = data;
+        this.dataLength = dataLength;
     }
 
     public boolean hasNext() {
-        return pos < signedChunk.length;
+        return pos < header.length + dataLength + CRLF.length;
     }
 
     public int read(byte[] output, int offset, int length) {
@@ -32,10 +41,29 @@ class ChunkContentIterator {
             return 0;
         if ( !hasNext() )
             return -1;
-        int remaingBytesNum = signedChunk.length - pos;
-        int bytesToRead = Math.min(remaingBytesNum, length);
-        System.arraycopy(signedChunk, pos, output, offset, bytesToRead);
-        pos += bytesToRead;
-        return bytesToRead;
+        int count = 0;
+        while (count < length && hasNext()) {
+            final byte[] segment;
+            final int segmentPos;
+            final int segmentLength;
+            if (pos < header.length) {
+                segment = header;
+                segmentPos = pos;
+                segmentLength = header.length;
+            } else if (pos < header.length + dataLength) {
+                segment = data;
+                segmentPos = pos - header.length;
+                segmentLength = dataLength;
+            } else {
+                segment = CRLF;
+                segmentPos = pos - header.length - dataLength;
+                segmentLength = CRLF.length;
+            }
+            int bytesToRead = Math.min(segmentLength - segmentPos, length - count);
+            System.arraycopy(segment, segmentPos, output, offset + count, bytesToRead);
+            pos += bytesToRead;
+            count += bytesToRead;
+        }
+        return count;
     }
-}
\ No newline at end of file
+}
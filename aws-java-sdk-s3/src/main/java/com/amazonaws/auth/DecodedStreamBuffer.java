@@ -71,6 +71,17 @@ class DecodedStreamBuffer {
         return bufferArray[pos++];
     }
 
+    /**
+     * Copies up to the given number of buffered bytes into the given array,
+     * and returns the number of bytes copied.
+     */
+    public int next(byte[] dst, int off, int len) {
+        int count = Math.min(len, byteBuffered - pos);
+        System.arraycopy(bufferArray, pos, dst, off, count);
+        pos += count;
+        return count;
+    }
+
     public void startReadBuffer() {
         if (bufferSizeOverflow) {
             throw new AmazonClientException(
@@ -17,7 +17,7 @@ package com.amazonaws.services.s3;
 import static com.amazonaws.SDKGlobalConfiguration.ENABLE_S3_SIGV4_SYSTEM_PROPERTY;
 import static com.amazonaws.SDKGlobalConfiguration.ENFORCE_S3_SIGV4_SYSTEM_PROPERTY;
 import static com.amazonaws.event.SDKProgressPublisher.publishProgress;
-import static com.amazonaws.internal.ResettableInputStream.newResettableInputStream;
+import static com.amazonaws.internal.FileRegionInputStream.newFileRegionInputStream;
 import static com.amazonaws.services.s3.model.S3DataSource.Utils.cleanupDataSource;
 import static com.amazonaws.util.LengthCheckInputStream.EXCLUDE_SKIPPED_BYTES;
 import static com.amazonaws.util.LengthCheckInputStream.INCLUDE_SKIPPED_BYTES;
@@ -86,9 +86,9 @@ import com.amazonaws.http.HttpMethodName;
 import com.amazonaws.http.HttpResponseHandler;
 import com.amazonaws.internal.DefaultServiceEndpointBuilder;
 import com.amazonaws.internal.FIFOCache;
+import com.amazonaws.internal.FileRegionInputStream;
 import com.amazonaws.internal.IdentityEndpointBuilder;
 import com.amazonaws.internal.ReleasableInputStream;
-import com.amazonaws.internal.ResettableInputStream;
 import com.amazonaws.internal.ServiceEndpointBuilder;
 import com.amazonaws.internal.StaticCredentialsProvider;
 import com.amazonaws.metrics.AwsSdkMetrics;
@@ -1379,16 +1379,22 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
                 metadata.setContentType(Mimetypes.getInstance().getMimetype(file));
             }
 
+            // The file is sent as a file region, which the http client can
+            // write to the connection directly from the file, and its MD5
+            // hash computed from a memory mapping of the file
+            FileRegionInputStream region = newFileRegionInputStream(
+                    file, 0, file.length(), "Unable to find file to upload");
             if (calculateMD5 && !skipContentMd5Check) {
                 try {
-                    String contentMd5_b64 = Md5Utils.md5AsBase64(file);
-                    metadata.setContentMD5(contentMd5_b64);
+                    metadata.setContentMD5(BinaryUtils.toBase64(
+                            region.digest(MessageDigest.getInstance("MD5"))));
                 } catch (Exception e) {
+                    region.release();
                     throw new AmazonClientException(
                             "Unable to calculate MD5 hash: " + e.getMessage(), e);
                 }
             }
-            input = newResettableInputStream(file, "Unable to find file to upload");
+            input = region;
         }
         final ProgressListener listener;
         final ObjectMetadata returnedMetadata;
@@ -1443,7 +1449,10 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
                          "out of memory errors.");
             } else {
                 final long expectedLength = contentLength.longValue();
-                if (expectedLength >= 0) {
+                // A file region written directly from the file is checked
+                // against the content length by the http client instead
+                if (expectedLength >= 0 && !(input instanceof FileRegionInputStream
+                        && isWrittenAsFileRegion(request, bucketName, key))) {
                     // Performs length check on the underlying data stream.
                     // For S3 encryption client, the underlying data stream here
                     // refers to the cipher-text data stream (ie not the underlying
@@ -2884,21 +2893,41 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
                     awsreq.getRequestClientOptions()
                         .setReadLimit(bufsize.intValue());
                 }
+                isCurr = new InputSubstream(
+                        isCurr,
+                        uploadPartRequest.getFileOffset(),
+                        partSize,
+                        uploadPartRequest.isLastPart());
             } else {
+                FileRegionInputStream region;
                 try {
-                    isCurr = new ResettableInputStream(fileOrig);
+                    isCurr = region = new FileRegionInputStream(fileOrig,
+                            uploadPartRequest.getFileOffset(), partSize);
                 } catch(IOException e) {
                     throw new IllegalArgumentException("Failed to open file "
                             + fileOrig, e);
                 }
+                if (uploadPartRequest.getMd5Digest() == null
+                && !ServiceUtils.skipMd5CheckPerRequest(uploadPartRequest)
+                && isWrittenAsFileRegion(request, bucketName, key)) {
+                    /*
+                     * The part is written to the connection directly from the
+                     * file, so its MD5 hash can't be calculated on the fly.
+                     * Instead, it is computed from a memory mapping of the
+                     * file, and verified by Amazon S3 as the Content-MD5.
+                     */
+                    try {
+                        request.addHeader(Headers.CONTENT_MD5, BinaryUtils.toBase64(
+                                region.digest(MessageDigest.getInstance("MD5"))));
+                    } catch (Exception e) {
+                        throw new AmazonClientException(
+                                "Unable to calculate MD5 hash: " + e.getMessage(), e);
+                    }
+                }
             }
-            isCurr = new InputSubstream(
-                    isCurr,
-                    uploadPartRequest.getFileOffset(),
-                    partSize,
-                    uploadPartRequest.isLastPart());
             MD5DigestCalculatingInputStream md5DigestStream = null;
             if (uploadPartRequest.getMd5Digest() == null
+            && !request.getHeaders().containsKey(Headers.CONTENT_MD5)
             && !ServiceUtils.skipMd5CheckPerRequest(uploadPartRequest)) {
                 /*
                  * If the user hasn't set the content MD5, then we don't want to
@@ -3191,6 +3220,19 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
         return signer;
     }
 
+    /**
+     * Returns true if a file region given as the content of the request is
+     * written to the connection directly from the file by the http client;
+     * that is, unless it is read through streams to be signed with aws-chunked
+     * encoding, or to have its upload throughput measured.
+     */
+    private boolean isWrittenAsFileRegion(final Request<?> request,
+                                          final String bucketName,
+                                          final String key) {
+        return !AwsSdkMetrics.isMetricsEnabled()
+            && !(createSigner(request, bucketName, key) instanceof AWSS3V4Signer);
+    }
+
     /**
      * Has signer been explicitly overriden in the configuration?
      */
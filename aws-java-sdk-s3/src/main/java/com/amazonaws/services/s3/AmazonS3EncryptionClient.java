@@ -38,6 +38,7 @@ import com.amazonaws.services.s3.internal.MultiFileOutputStream;
 import com.amazonaws.services.s3.internal.PartCreationEvent;
 import com.amazonaws.services.s3.internal.S3Direct;
 import com.amazonaws.services.s3.internal.crypto.CryptoModuleDispatcher;
+import com.amazonaws.services.s3.internal.crypto.ParallelDecryptionContext;
 import com.amazonaws.services.s3.internal.crypto.S3CryptoModule;
 import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
 import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
@@ -50,6 +51,7 @@ import com.amazonaws.services.s3.model.EncryptedInitiateMultipartUploadRequest;
 import com.amazonaws.services.s3.model.EncryptedPutObjectRequest;
 import com.amazonaws.services.s3.model.EncryptionMaterials;
 import com.amazonaws.services.s3.model.EncryptionMaterialsProvider;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
 import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.GroupGrantee;
 import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
@@ -547,6 +549,9 @@ public class AmazonS3EncryptionClient extends AmazonS3Client implements
      * AmazonS3EncryptionClient (as opposed to the normal AmazonS3Client) must
      * be uploaded serially, and in order. Otherwise, the previous encryption
      * context isn't available to use when encrypting the current part.
+     * The exception is authenticated encryption with
+     * {@link CryptoConfiguration#setParallelMultipartUpload(boolean)} enabled,
+     * where parts of the same size can be uploaded concurrently.
      */
     @Override
     public UploadPartResult uploadPart(UploadPartRequest uploadPartRequest)
@@ -554,6 +559,34 @@ public class AmazonS3EncryptionClient extends AmazonS3Client implements
         return crypto.uploadPartSecurely(uploadPartRequest);
     }
 
+    /**
+     * Returns true if the parts of a multipart upload can be encrypted and
+     * uploaded concurrently, as enabled by
+     * {@link CryptoConfiguration#setParallelMultipartUpload(boolean)} for
+     * authenticated encryption; false if they must be uploaded in series.
+     */
+    public boolean isMultipartUploadParallelizable() {
+        return crypto.isMultipartUploadParallelizable();
+    }
+
+    /**
+     * Returns a context to download the given encrypted object as byte ranges
+     * fetched and decrypted concurrently, as the TransferManager does; or null
+     * if the object must be decrypted as a single stream. This is only
+     * possible for objects encrypted with authenticated encryption, whose tag
+     * is verified once every byte of the object has been decrypted.
+     *
+     * @param req
+     *            the request for the object, or for a range of it
+     * @param metadata
+     *            the metadata of the object, as returned by
+     *            {@link #getObjectMetadata(GetObjectMetadataRequest)}
+     */
+    public ParallelDecryptionContext newParallelDecryptionContext(
+            GetObjectRequest req, ObjectMetadata metadata) {
+        return crypto.newParallelDecryptionContext(req, metadata);
+    }
+
     @Override
     public CopyPartResult copyPart(CopyPartRequest copyPartRequest) {
         return crypto.copyPartSecurely(copyPartRequest);
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.amazonaws.internal.SdkFilterInputStream;
+
+/**
+ * Input stream that replaces each carriage return (\r) in the wrapped XML
+ * document with the character reference "&amp;#013;" as the document is read,
+ * so that an XML parser reports it as is rather than normalizing it to a line
+ * feed.
+ * <p>
+ * The document must be in UTF-8 (or another encoding in which the byte 0x0D
+ * only ever encodes a carriage return), so that the replacement can be done
+ * on the bytes without decoding them. Reads into an array go straight to the
+ * wrapped stream, and are only copied again from the first carriage return
+ * they contain.
+ */
+public class CarriageReturnEscapingInputStream extends SdkFilterInputStream {
+
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    private static final byte[] ESCAPED_CARRIAGE_RETURN = {
+        '&', '#', '0', '1', '3', ';'
+    };
+
+    /** The position in the escape being written out; its length when none is. */
+    private int escapePosition = ESCAPED_CARRIAGE_RETURN.length;
+
+    /** Bytes read from the wrapped stream that followed a carriage return. */
+    private byte[] buffer;
+    private int bufferPosition;
+    private int bufferLimit;
+
+    public CarriageReturnEscapingInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (escapePosition < ESCAPED_CARRIAGE_RETURN.length) {
+            return ESCAPED_CARRIAGE_RETURN[escapePosition++];
+        }
+        int read;
+        if (bufferPosition < bufferLimit) {
+            read = buffer[bufferPosition++] & 0xFF;
+        } else {
+            abortIfNeeded();
+            read = in.read();
+        }
+        if (read == CARRIAGE_RETURN) {
+            escapePosition = 1;
+            return ESCAPED_CARRIAGE_RETURN[0];
+        }
+        return read;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        abortIfNeeded();
+        if (len == 0) {
+            return 0;
+        }
+        int count = 0;
+        while (count < len) {
+            if (escapePosition < ESCAPED_CARRIAGE_RETURN.length) {
+                int toCopy = Math.min(len - count, ESCAPED_CARRIAGE_RETURN.length - escapePosition);
+                System.arraycopy(ESCAPED_CARRIAGE_RETURN, escapePosition, b, off + count, toCopy);
+                escapePosition += toCopy;
+                count += toCopy;
+            } else if (bufferPosition < bufferLimit) {
+                int end = Math.min(bufferLimit, bufferPosition + len - count);
+                int carriageReturn = indexOfCarriageReturn(buffer, bufferPosition, end);
+                int toCopy = (carriageReturn < 0 ? end : carriageReturn) - bufferPosition;
+                System.arraycopy(buffer, bufferPosition, b, off + count, toCopy);
+                bufferPosition += toCopy;
+                count += toCopy;
+                if (carriageReturn >= 0) {
+                    ++bufferPosition;
+                    escapePosition = 0;
+                }
+            } else if (count > 0) {
+                // don't block for more once there is something to return
+                break;
+            } else {
+                int read = in.read(b, off, len);
+                if (read <= 0) {
+                    return read;
+                }
+                int carriageReturn = indexOfCarriageReturn(b, off, off + read);
+                if (carriageReturn < 0) {
+                    return read;
+                }
+                // keep what follows the carriage return for later, and escape it
+                keep(b, carriageReturn + 1, off + read - carriageReturn - 1);
+                count = carriageReturn - off;
+                escapePosition = 0;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        byte[] skipped = new byte[(int) Math.min(n, 8192)];
+        long remaining = n;
+        while (remaining > 0) {
+            int read = read(skipped, 0, (int) Math.min(remaining, skipped.length));
+            if (read < 0) {
+                break;
+            }
+            remaining -= read;
+        }
+        return n - remaining;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return ESCAPED_CARRIAGE_RETURN.length - escapePosition + bufferLimit - bufferPosition
+            + in.available();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readlimit) {
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    private void keep(byte[] b, int off, int len) {
+        if (buffer == null || buffer.length < len) {
+            buffer = new byte[Math.max(len, 8192)];
+        }
+        System.arraycopy(b, off, buffer, 0, len);
+        bufferPosition = 0;
+        bufferLimit = len;
+    }
+
+    private static int indexOfCarriageReturn(byte[] b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (b[i] == CARRIAGE_RETURN) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
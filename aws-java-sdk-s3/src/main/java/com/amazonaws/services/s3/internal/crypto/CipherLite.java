@@ -331,6 +331,13 @@ class CipherLite {
         return cipher;
     }
 
+    /**
+     * Returns the secret key of this cipher lite.
+     */
+    final SecretKey getSecretKey() {
+        return secreteKey;
+    }
+
     final ContentCryptoScheme getContentCryptoScheme() {
         return scheme;
     }
@@ -123,6 +123,13 @@ public class CryptoModuleDispatcher extends S3CryptoModule<MultipartUploadContex
         return ae.getObjectSecurely(req, destinationFile);
     }
 
+    @Override
+    public ParallelDecryptionContext newParallelDecryptionContext(
+            GetObjectRequest req, ObjectMetadata metadata) {
+        // AE module can handle S3 objects encrypted in either AE or EO format
+        return ae.newParallelDecryptionContext(req, metadata);
+    }
+
     @Override
     public CompleteMultipartUploadResult completeMultipartUploadSecurely(
             CompleteMultipartUploadRequest req)
@@ -170,6 +177,12 @@ public class CryptoModuleDispatcher extends S3CryptoModule<MultipartUploadContex
              ;
     }
 
+    @Override
+    public boolean isMultipartUploadParallelizable() {
+        return defaultCryptoMode != EncryptionOnly
+            && ae.isMultipartUploadParallelizable();
+    }
+
     @Override
     public CopyPartResult copyPartSecurely(CopyPartRequest req) {
         return defaultCryptoMode == EncryptionOnly 
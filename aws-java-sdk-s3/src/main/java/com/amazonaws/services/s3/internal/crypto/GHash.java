@@ -0,0 +1,251 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.internal.crypto;
+
+/**
+ * The GHASH function of AES/GCM, as defined in <a href=
+ * "http://csrc.nist.gov/publications/nistpubs/800-38D/SP-800-38D.pdf">NIST
+ * Special Publication 800-38D</a>, over a sequence of ciphertext blocks.
+ * <p>
+ * GHASH is linear: hashing blocks from a state Y gives Y &middot; H<sup>n</sup>
+ * xor the hash of the same n blocks from zero. The hash of a whole ciphertext
+ * can therefore be combined from the hashes of its parts, computed
+ * independently, with {@link #multiply(long[], long[])} and
+ * {@link #power(long[], long)}.
+ * <p>
+ * Field elements are represented as two longs, the first holding the first 8
+ * bytes of the block in big-endian order. Multiplications run in constant
+ * time, with no table lookup or branch depending on the key or the data: the
+ * carry-less products are computed with integer multiplications of operands
+ * whose bits are spread apart so that no carry can reach a bit kept in the
+ * result, as in the "ctmul64" implementation of BearSSL.
+ */
+final class GHash {
+    static final int BLOCK_SIZE = 16;
+
+    /** The low and high halves of H, and their bit reversals. */
+    private final long h0;
+    private final long h1;
+    private final long h0r;
+    private final long h1r;
+
+    private long yh;
+    private long yl;
+    private final byte[] pending = new byte[BLOCK_SIZE];
+    private int pendingLength;
+
+    /**
+     * @param h
+     *            the hash key, ie the encryption of the zero block
+     */
+    GHash(long[] h) {
+        this.h1 = h[0];
+        this.h0 = h[1];
+        this.h1r = rev64(h1);
+        this.h0r = rev64(h0);
+    }
+
+    private GHash(GHash from) {
+        this.h0 = from.h0;
+        this.h1 = from.h1;
+        this.h0r = from.h0r;
+        this.h1r = from.h1r;
+        this.yh = from.yh;
+        this.yl = from.yl;
+        System.arraycopy(from.pending, 0, pending, 0, BLOCK_SIZE);
+        this.pendingLength = from.pendingLength;
+    }
+
+    /** Returns a copy of this hash, sharing the same key. */
+    GHash copy() {
+        return new GHash(this);
+    }
+
+    /** Hashes the given bytes. */
+    void update(byte[] b, int off, int len) {
+        if (pendingLength > 0) {
+            int n = Math.min(len, BLOCK_SIZE - pendingLength);
+            System.arraycopy(b, off, pending, pendingLength, n);
+            pendingLength += n;
+            off += n;
+            len -= n;
+            if (pendingLength < BLOCK_SIZE) {
+                return;
+            }
+            block(pending, 0);
+            pendingLength = 0;
+        }
+        while (len >= BLOCK_SIZE) {
+            block(b, off);
+            off += BLOCK_SIZE;
+            len -= BLOCK_SIZE;
+        }
+        if (len > 0) {
+            System.arraycopy(b, off, pending, 0, len);
+            pendingLength = len;
+        }
+    }
+
+    /**
+     * Returns the hash of the bytes hashed so far, the last block being
+     * padded with zeros. This hash is not changed.
+     */
+    long[] digest() {
+        if (pendingLength == 0) {
+            return new long[] {yh, yl};
+        }
+        GHash copy = copy();
+        for (int i = copy.pendingLength; i < BLOCK_SIZE; i++) {
+            copy.pending[i] = 0;
+        }
+        copy.block(copy.pending, 0);
+        return new long[] {copy.yh, copy.yl};
+    }
+
+    private void block(byte[] b, int off) {
+        yh ^= toLong(b, off);
+        yl ^= toLong(b, off + 8);
+        multiplyByH();
+    }
+
+    /**
+     * Multiplies the state by H, with a Karatsuba multiplication of the
+     * halves of the bit-reflected operands followed by a reduction modulo the
+     * polynomial of GCM.
+     */
+    private void multiplyByH() {
+        long y1 = yh;
+        long y0 = yl;
+        long y0r = rev64(y0);
+        long y1r = rev64(y1);
+        long y2 = y0 ^ y1;
+        long y2r = y0r ^ y1r;
+
+        // The low and high halves of the three products
+        long z0 = bmul64(y0, h0);
+        long z1 = bmul64(y1, h1);
+        long z2 = bmul64(y2, h0 ^ h1);
+        long z0h = bmul64(y0r, h0r);
+        long z1h = bmul64(y1r, h1r);
+        long z2h = bmul64(y2r, h0r ^ h1r);
+        z2 ^= z0 ^ z1;
+        z2h ^= z0h ^ z1h;
+        z0h = rev64(z0h) >>> 1;
+        z1h = rev64(z1h) >>> 1;
+        z2h = rev64(z2h) >>> 1;
+
+        // The 256-bit product, shifted by one bit since the operands are
+        // bit-reflected
+        long v0 = z0;
+        long v1 = z0h ^ z2;
+        long v2 = z1 ^ z2h;
+        long v3 = z1h;
+        v3 = (v3 << 1) | (v2 >>> 63);
+        v2 = (v2 << 1) | (v1 >>> 63);
+        v1 = (v1 << 1) | (v0 >>> 63);
+        v0 = v0 << 1;
+
+        // Reduction modulo x^128 + x^7 + x^2 + x + 1
+        v2 ^= v0 ^ (v0 >>> 1) ^ (v0 >>> 2) ^ (v0 >>> 7);
+        v1 ^= (v0 << 63) ^ (v0 << 62) ^ (v0 << 57);
+        v3 ^= v1 ^ (v1 >>> 1) ^ (v1 >>> 2) ^ (v1 >>> 7);
+        v2 ^= (v1 << 63) ^ (v1 << 62) ^ (v1 << 57);
+
+        yh = v3;
+        yl = v2;
+    }
+
+    /**
+     * Returns the low 64 bits of the carry-less product of the given values.
+     * Each operand is split into 4 interleaved values with 3 zero bits
+     * between any two of their bits, so that the integer products don't
+     * carry into the bits kept.
+     */
+    private static long bmul64(long x, long y) {
+        final long m0 = 0x1111111111111111L;
+        final long m1 = 0x2222222222222222L;
+        final long m2 = 0x4444444444444444L;
+        final long m3 = 0x8888888888888888L;
+        long x0 = x & m0;
+        long x1 = x & m1;
+        long x2 = x & m2;
+        long x3 = x & m3;
+        long y0 = y & m0;
+        long y1 = y & m1;
+        long y2 = y & m2;
+        long y3 = y & m3;
+        long z0 = (x0 * y0) ^ (x1 * y3) ^ (x2 * y2) ^ (x3 * y1);
+        long z1 = (x0 * y1) ^ (x1 * y0) ^ (x2 * y3) ^ (x3 * y2);
+        long z2 = (x0 * y2) ^ (x1 * y1) ^ (x2 * y0) ^ (x3 * y3);
+        long z3 = (x0 * y3) ^ (x1 * y2) ^ (x2 * y1) ^ (x3 * y0);
+        return (z0 & m0) | (z1 & m1) | (z2 & m2) | (z3 & m3);
+    }
+
+    /** Returns the given value with its bits in reverse order. */
+    private static long rev64(long x) {
+        x = ((x & 0x5555555555555555L) << 1) | ((x >>> 1) & 0x5555555555555555L);
+        x = ((x & 0x3333333333333333L) << 2) | ((x >>> 2) & 0x3333333333333333L);
+        x = ((x & 0x0F0F0F0F0F0F0F0FL) << 4) | ((x >>> 4) & 0x0F0F0F0F0F0F0F0FL);
+        x = ((x & 0x00FF00FF00FF00FFL) << 8) | ((x >>> 8) & 0x00FF00FF00FF00FFL);
+        x = ((x & 0x0000FFFF0000FFFFL) << 16) | ((x >>> 16) & 0x0000FFFF0000FFFFL);
+        return (x << 32) | (x >>> 32);
+    }
+
+    /** Returns the product of the given field elements. */
+    static long[] multiply(long[] x, long[] y) {
+        GHash product = new GHash(y);
+        product.yh = x[0];
+        product.yl = x[1];
+        product.multiplyByH();
+        return new long[] {product.yh, product.yl};
+    }
+
+    /**
+     * Returns the given field element raised to the given power. Only the
+     * exponent, which is derived from a public length, affects the timing.
+     */
+    static long[] power(long[] x, long n) {
+        long[] result = {1L << 63, 0}; // the unit element
+        long[] square = x;
+        for (; n > 0; n >>>= 1) {
+            if ((n & 1) != 0) {
+                result = multiply(result, square);
+            }
+            square = multiply(square, square);
+        }
+        return result;
+    }
+
+    static long[] toElement(byte[] b) {
+        return new long[] {toLong(b, 0), toLong(b, 8)};
+    }
+
+    static byte[] toBytes(long[] x) {
+        byte[] b = new byte[BLOCK_SIZE];
+        for (int i = 0; i < 8; i++) {
+            b[i] = (byte) (x[0] >>> (56 - 8 * i));
+            b[i + 8] = (byte) (x[1] >>> (56 - 8 * i));
+        }
+        return b;
+    }
+
+    private static long toLong(byte[] b, int off) {
+        long v = 0;
+        for (int i = 0; i < 8; i++) {
+            v = (v << 8) | (b[off + i] & 0xff);
+        }
+        return v;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.internal.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.amazonaws.internal.SdkFilterInputStream;
+
+/**
+ * Encrypts a part of a {@link MultipartUploadGcmContext concurrently
+ * encrypted} multipart upload with AES/CTR, while computing the GHASH of its
+ * ciphertext. Once the plaintext of the part has been read, the hash of the
+ * part is recorded in the upload context; or, for the last part, the tag of
+ * the whole object is appended to the ciphertext.
+ * <p>
+ * Mark and reset are supported if the underlying input stream supports them.
+ */
+class GcmPartCipherInputStream extends SdkFilterInputStream {
+    private static final int BLOCK_SIZE = GHash.BLOCK_SIZE;
+
+    private final MultipartUploadGcmContext context;
+    private final int partNumber;
+    /** The position of the part in the plaintext. */
+    private final long partPosition;
+    private final long partSize;
+    private final boolean isLastPart;
+
+    private CipherLite cipherLite;
+    private GHash ghash;
+    /** The number of bytes of the part read so far. */
+    private long position;
+    private boolean encrypted;
+    /** The tag appended to the last part, once computed. */
+    private byte[] tag;
+    private int tagPosition;
+
+    private long markedPosition;
+    private GHash markedGHash;
+    private boolean markedEncrypted;
+    private byte[] markedTag;
+    private int markedTagPosition;
+
+    /**
+     * @param in
+     *            the plaintext of the part
+     * @param partPosition
+     *            the position of the part in the plaintext; a multiple of the
+     *            block size
+     */
+    GcmPartCipherInputStream(InputStream in, MultipartUploadGcmContext context,
+            int partNumber, long partPosition, long partSize, boolean isLastPart) {
+        super(in);
+        this.context = context;
+        this.partNumber = partNumber;
+        this.partPosition = partPosition;
+        this.partSize = partSize;
+        this.isLastPart = isLastPart;
+        this.cipherLite = context.newCipherLite(partPosition);
+        this.ghash = context.newGHash();
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int read = read(b, 0, 1);
+        return read == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        abortIfNeeded();
+        if (len == 0) {
+            return 0;
+        }
+        if (position < partSize) {
+            int read = in.read(b, off, (int) Math.min(len, partSize - position));
+            if (read == -1) {
+                throw new IOException("Unexpected end of part " + partNumber
+                        + " after " + position + " of " + partSize + " bytes");
+            }
+            byte[] ciphertext = cipherLite.update(b, off, read);
+            if (ciphertext == null || ciphertext.length != read) {
+                throw new IllegalStateException("Unexpected output of the AES/CTR cipher");
+            }
+            System.arraycopy(ciphertext, 0, b, off, read);
+            ghash.update(b, off, read);
+            position += read;
+            return read;
+        }
+        if (!encrypted) {
+            if (isLastPart) {
+                tag = context.tag(partNumber, partSize, ghash);
+            } else {
+                context.partEncrypted(partNumber, partSize, ghash);
+            }
+            encrypted = true;
+        }
+        if (tag == null || tagPosition == tag.length) {
+            return -1;
+        }
+        int read = Math.min(len, tag.length - tagPosition);
+        System.arraycopy(tag, tagPosition, b, off, read);
+        tagPosition += read;
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(n, 8 * 1024)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read == -1) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return 0;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        abortIfNeeded();
+        in.mark(readlimit);
+        markedPosition = position;
+        markedGHash = ghash.copy();
+        markedEncrypted = encrypted;
+        markedTag = tag;
+        markedTagPosition = tagPosition;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        abortIfNeeded();
+        if (markedGHash == null) {
+            throw new IOException("mark has not been called");
+        }
+        in.reset();
+        position = markedPosition;
+        ghash = markedGHash.copy();
+        encrypted = markedEncrypted;
+        tag = markedTag;
+        tagPosition = markedTagPosition;
+        // Restarts the counter at the block of the marked position
+        int offsetInBlock = (int) (position % BLOCK_SIZE);
+        cipherLite = context.newCipherLite(partPosition + position - offsetInBlock);
+        if (offsetInBlock > 0) {
+            cipherLite.update(new byte[offsetInBlock], 0, offsetInBlock);
+        }
+    }
+}
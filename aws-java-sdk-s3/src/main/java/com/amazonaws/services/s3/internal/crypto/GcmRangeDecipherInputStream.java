@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.internal.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.amazonaws.internal.SdkFilterInputStream;
+
+/**
+ * Decrypts a byte range of an object encrypted with AES/GCM with AES/CTR,
+ * while computing the GHASH of its ciphertext. Once the ciphertext of the
+ * range has been read, its hash is recorded in the
+ * {@link ParallelDecryptionContext} of the download, so that the tag of the
+ * whole object can be verified.
+ * <p>
+ * The ciphertext starts at a block boundary; the plaintext preceding the
+ * first byte of the range is decrypted, hashed and dropped.
+ */
+class GcmRangeDecipherInputStream extends SdkFilterInputStream {
+    private final ParallelDecryptionContext context;
+    /** The position of the ciphertext in the object; a block boundary. */
+    private final long blockStart;
+    /** The length of the ciphertext, from the block boundary. */
+    private final long length;
+
+    private final CipherLite cipherLite;
+    private final GHash ghash;
+    /** The number of bytes of ciphertext read so far. */
+    private long position;
+    /** The number of leading bytes of plaintext still to be dropped. */
+    private int toDrop;
+    private boolean decrypted;
+
+    /**
+     * @param in
+     *            the ciphertext of the range, from its block boundary
+     * @param blockStart
+     *            the position of the ciphertext in the object; a multiple of
+     *            the block size
+     * @param start
+     *            the position of the first byte of the range in the object
+     * @param end
+     *            the position of the last byte of the range in the object
+     */
+    GcmRangeDecipherInputStream(InputStream in,
+            ParallelDecryptionContext context, long blockStart, long start,
+            long end) {
+        super(in);
+        this.context = context;
+        this.blockStart = blockStart;
+        this.length = end - blockStart + 1;
+        this.toDrop = (int) (start - blockStart);
+        this.cipherLite = context.newCipherLite(blockStart);
+        this.ghash = context.newGHash();
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int read = read(b, 0, 1);
+        return read == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        abortIfNeeded();
+        if (len == 0) {
+            return 0;
+        }
+        while (position < length) {
+            int read = in.read(b, off, (int) Math.min(len, length - position));
+            if (read == -1) {
+                throw new IOException("Unexpected end of the range at "
+                        + (blockStart + position) + " after " + position
+                        + " of " + length + " bytes");
+            }
+            ghash.update(b, off, read);
+            byte[] plaintext = cipherLite.update(b, off, read);
+            if (plaintext == null || plaintext.length != read) {
+                throw new IllegalStateException("Unexpected output of the AES/CTR cipher");
+            }
+            position += read;
+            int dropped = Math.min(toDrop, read);
+            toDrop -= dropped;
+            if (read > dropped) {
+                System.arraycopy(plaintext, dropped, b, off, read - dropped);
+                return read - dropped;
+            }
+        }
+        if (!decrypted) {
+            context.rangeDecrypted(blockStart, length, ghash);
+            decrypted = true;
+        }
+        return -1;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(n, 8 * 1024)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read == -1) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return 0;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readlimit) {
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+}
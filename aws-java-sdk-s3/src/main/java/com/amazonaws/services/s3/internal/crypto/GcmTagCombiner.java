@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.internal.crypto;
+
+import static com.amazonaws.util.Throwables.failure;
+
+import java.security.Provider;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+
+/**
+ * Combines the GHASH of the consecutive parts of an AES/GCM ciphertext,
+ * computed independently, into the tag of the whole ciphertext.
+ * <p>
+ * This is what allows the parts of an object encrypted with AES/GCM to be
+ * encrypted or decrypted concurrently with AES/CTR, while still producing or
+ * verifying the same tag as AES/GCM over the whole object.
+ */
+final class GcmTagCombiner {
+    private static final int BLOCK_SIZE = GHash.BLOCK_SIZE;
+
+    /** The hash key, ie the encryption of the zero block. */
+    private final long[] h;
+    /** The encryption of the pre-counter block, which masks the tag. */
+    private final long[] encryptedJ0;
+
+    /**
+     * @param cipherLite
+     *            the AES/GCM cipher of the content, whose key and IV are used
+     * @throws UnsupportedOperationException
+     *             if the IV of the cipher isn't 12 bytes long
+     */
+    GcmTagCombiner(CipherLite cipherLite) {
+        SecretKey cek = cipherLite.getSecretKey();
+        Provider provider = cipherLite.getCipherProvider();
+        byte[] iv = cipherLite.getIV();
+        if (iv.length != 12) {
+            throw new UnsupportedOperationException(
+                    "Concurrent AES/GCM operations require an IV of 12 bytes");
+        }
+        this.h = GHash.toElement(encryptBlock(cek, new byte[BLOCK_SIZE], provider));
+        byte[] j0 = new byte[BLOCK_SIZE];
+        System.arraycopy(iv, 0, j0, 0, iv.length);
+        j0[BLOCK_SIZE - 1] = 1;
+        this.encryptedJ0 = GHash.toElement(encryptBlock(cek, j0, provider));
+    }
+
+    /** Returns the AES encryption of the given block. */
+    private static byte[] encryptBlock(SecretKey cek, byte[] block, Provider provider) {
+        CipherLite ctr = ContentCryptoScheme.AES_CTR.createCipherLite(
+                cek, block, Cipher.ENCRYPT_MODE, provider);
+        try {
+            return ctr.doFinal(new byte[BLOCK_SIZE]);
+        } catch (Exception e) {
+            throw failure(e, "Unable to initialize concurrent AES/GCM operations");
+        }
+    }
+
+    /** Returns a new GHASH, to hash the ciphertext of a part. */
+    GHash newGHash() {
+        return new GHash(h);
+    }
+
+    /**
+     * Returns the hash of the ciphertext hashed into the given hash, followed
+     * by a part of the given size and hash. Only the last part of a ciphertext
+     * may have a size that isn't a multiple of the block size.
+     *
+     * @param y
+     *            the hash of the preceding parts, or zero for the first part
+     */
+    long[] append(long[] y, long partSize, long[] partHash) {
+        long[] appended = GHash.multiply(y,
+                GHash.power(h, (partSize + BLOCK_SIZE - 1) / BLOCK_SIZE));
+        appended[0] ^= partHash[0];
+        appended[1] ^= partHash[1];
+        return appended;
+    }
+
+    /**
+     * Returns the tag of a whole ciphertext of the given size, given its hash.
+     */
+    byte[] tag(long[] y, long size) {
+        // The lengths block: no additional authenticated data, then the
+        // length of the ciphertext in bits
+        long[] s = GHash.multiply(new long[] {y[0], y[1] ^ (size << 3)}, h);
+        s[0] ^= encryptedJ0[0];
+        s[1] ^= encryptedJ0[1];
+        return GHash.toBytes(s);
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.internal.crypto;
+
+import static com.amazonaws.util.Throwables.failure;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.annotation.GuardedBy;
+
+import com.amazonaws.AmazonClientException;
+
+/**
+ * Context of a multipart upload encrypted with AES/GCM, whose parts can be
+ * encrypted and uploaded concurrently.
+ * <p>
+ * AES/GCM encrypts with AES/CTR and authenticates the ciphertext with GHASH.
+ * Each part is encrypted with AES/CTR from the counter of its first block,
+ * and its GHASH is computed independently; since GHASH is linear, the tag of
+ * the whole object is then combined from the hashes of the parts, and
+ * appended to the last part. The resulting object is identical to one
+ * encrypted serially with AES/GCM, and so is its content crypto material.
+ * <p>
+ * All the parts but the last must have the same size, so that the position of
+ * each part in the object is known from its part number: the size of the
+ * first of them submitted is the part size, and any other of another size is
+ * rejected before it is encrypted. The last part is
+ * uploaded once all the other parts have been encrypted; it fails if any
+ * other part fails, or if no other part is encrypted for too long.
+ */
+class MultipartUploadGcmContext extends MultipartUploadCryptoContext {
+    /**
+     * The default time for which the last part waits for another part to be
+     * encrypted.
+     */
+    static final long DEFAULT_AWAIT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    private final GcmTagCombiner tagCombiner;
+    private final long awaitTimeoutMillis;
+
+    /**
+     * The size of all the parts but the last, or -1 until the first of them
+     * is submitted.
+     */
+    @GuardedBy("this")
+    private long partSize = -1;
+    /** The number of the part which set the part size. */
+    @GuardedBy("this")
+    private int partSizeNumber;
+    /** The size and hash of each part encrypted so far. */
+    @GuardedBy("this")
+    private final Map<Integer, long[]> encryptedParts = new HashMap<Integer, long[]>();
+    @GuardedBy("this")
+    private boolean aborted;
+    /** The failure of a part which aborted the upload, if any. */
+    @GuardedBy("this")
+    private Throwable partFailure;
+    @GuardedBy("this")
+    private int failedPartNumber;
+
+    MultipartUploadGcmContext(String bucketName, String key,
+            ContentCryptoMaterial cekMaterial) {
+        this(bucketName, key, cekMaterial, DEFAULT_AWAIT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param awaitTimeoutMillis
+     *            the time for which the last part waits for another part to
+     *            be encrypted
+     */
+    MultipartUploadGcmContext(String bucketName, String key,
+            ContentCryptoMaterial cekMaterial, long awaitTimeoutMillis) {
+        super(bucketName, key, cekMaterial);
+        this.tagCombiner = new GcmTagCombiner(cekMaterial.getCipherLite());
+        this.awaitTimeoutMillis = awaitTimeoutMillis;
+    }
+
+    /** Returns a new GHASH, to hash the ciphertext of a part. */
+    GHash newGHash() {
+        return tagCombiner.newGHash();
+    }
+
+    /**
+     * Returns a new AES/CTR cipher, encrypting from the given position in the
+     * plaintext, which must be a multiple of the block size.
+     */
+    CipherLite newCipherLite(long position) {
+        try {
+            return getCipherLite().createAuxiliary(position);
+        } catch (Exception e) {
+            throw failure(e, "Unable to create the cipher of a part");
+        }
+    }
+
+    /**
+     * Checks that the given part, which is not the last one, has the size of
+     * the other parts but the last; the first of them submitted sets that
+     * size.
+     *
+     * @return the position of the part in the plaintext
+     * @throws AmazonClientException
+     *             if the part has another size
+     */
+    synchronized long checkPartSize(int partNumber, long size) {
+        if (partSize == -1) {
+            partSize = size;
+            partSizeNumber = partNumber;
+        } else if (size != partSize) {
+            throw new AmazonClientException(
+                    "All the parts but the last of a concurrently encrypted multipart upload must have the same size (part "
+                            + partSizeNumber + ": " + partSize + " bytes, part "
+                            + partNumber + ": " + size + " bytes)");
+        }
+        return (partNumber - 1) * partSize;
+    }
+
+    /**
+     * Records the size and hash of the ciphertext of the given part, which is
+     * not the last one.
+     */
+    synchronized void partEncrypted(int partNumber, long partSize, GHash ghash) {
+        long[] hash = ghash.digest();
+        encryptedParts.put(partNumber, new long[] {partSize, hash[0], hash[1]});
+        notifyAll();
+    }
+
+    /**
+     * Waits for all the parts before the given last part to be encrypted, and
+     * returns the position of the last part in the plaintext.
+     *
+     * @throws AmazonClientException
+     *             if the upload is aborted, another part fails, no other part
+     *             is encrypted within the timeout, or the thread is
+     *             interrupted while waiting
+     */
+    synchronized long awaitPartsBefore(int lastPartNumber) {
+        try {
+            int encryptedCount = encryptedParts.size();
+            long deadline = System.nanoTime()
+                    + TimeUnit.MILLISECONDS.toNanos(awaitTimeoutMillis);
+            while (!aborted && !isEncryptedBefore(lastPartNumber)) {
+                if (encryptedParts.size() != encryptedCount) {
+                    // Another part has been encrypted: waits anew
+                    encryptedCount = encryptedParts.size();
+                    deadline = System.nanoTime()
+                            + TimeUnit.MILLISECONDS.toNanos(awaitTimeoutMillis);
+                }
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    throw new AmazonClientException("No other part encrypted within "
+                            + awaitTimeoutMillis + " ms while the last part "
+                            + lastPartNumber + " was waiting for them");
+                }
+                wait(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(
+                    "Interrupted while waiting for the other parts to be encrypted", e);
+        }
+        if (partFailure != null) {
+            throw new AmazonClientException("Part " + failedPartNumber
+                    + " of the multipart upload failed", partFailure);
+        }
+        if (aborted) {
+            throw new AmazonClientException("The multipart upload has been aborted");
+        }
+        long position = 0;
+        for (int partNumber = 1; partNumber < lastPartNumber; partNumber++) {
+            position += encryptedParts.get(partNumber)[0];
+        }
+        return position;
+    }
+
+    @GuardedBy("this")
+    private boolean isEncryptedBefore(int lastPartNumber) {
+        for (int partNumber = 1; partNumber < lastPartNumber; partNumber++) {
+            if (!encryptedParts.containsKey(partNumber)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the tag of the whole object, given the size and hash of the
+     * ciphertext of its last part.
+     */
+    synchronized byte[] tag(int lastPartNumber, long lastPartSize, GHash lastPart) {
+        long[] y = {0, 0};
+        long size = 0;
+        for (int partNumber = 1; partNumber < lastPartNumber; partNumber++) {
+            long[] part = encryptedParts.get(partNumber);
+            y = tagCombiner.append(y, part[0], new long[] {part[1], part[2]});
+            size += part[0];
+        }
+        y = tagCombiner.append(y, lastPartSize, lastPart.digest());
+        return tagCombiner.tag(y, size + lastPartSize);
+    }
+
+    /**
+     * Aborts the upload on the failure of the given part, which is not the
+     * last one: the last part can no longer be encrypted, as the hash of the
+     * failed part may never be recorded.
+     */
+    synchronized void partFailed(int partNumber, Throwable failure) {
+        if (!aborted) {
+            failedPartNumber = partNumber;
+            partFailure = failure;
+        }
+        abort();
+    }
+
+    /** Wakes up the last part waiting for the other parts, if any. */
+    synchronized void abort() {
+        aborted = true;
+        notifyAll();
+    }
+}
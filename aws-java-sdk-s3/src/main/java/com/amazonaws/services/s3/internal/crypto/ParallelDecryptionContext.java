@@ -0,0 +1,237 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.internal.crypto;
+
+import static com.amazonaws.util.IOUtils.closeQuietly;
+import static com.amazonaws.util.Throwables.failure;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.annotation.GuardedBy;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.internal.S3Direct;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.util.IOUtils;
+
+/**
+ * Context of the download of an object encrypted with AES/GCM as a number of
+ * byte ranges, fetched and decrypted concurrently.
+ * <p>
+ * AES/GCM decrypts with AES/CTR and authenticates the ciphertext with GHASH,
+ * so each range is decrypted with AES/CTR from the counter of its first block,
+ * while the GHASH of its ciphertext is computed independently. Once every
+ * byte of the object has been decrypted, the hashes of the ranges are
+ * combined into the tag of the whole object, which is compared with the tag
+ * stored at the end of the object, just like AES/GCM does when decrypting the
+ * object as a single stream. The content crypto material of the object is
+ * retrieved once for all the ranges.
+ */
+public final class ParallelDecryptionContext {
+    private static final Log log = LogFactory.getLog(ParallelDecryptionContext.class);
+    private static final int BLOCK_SIZE = GHash.BLOCK_SIZE;
+
+    private final S3Direct s3;
+    private final ContentCryptoMaterial cekMaterial;
+    private final GcmTagCombiner tagCombiner;
+    /** The length of the plaintext of the object. */
+    private final long contentLength;
+
+    /**
+     * The length and hash of the ciphertext of each range decrypted so far,
+     * by position.
+     */
+    @GuardedBy("this")
+    private final SortedMap<Long, long[]> decryptedRanges = new TreeMap<Long, long[]>();
+
+    ParallelDecryptionContext(S3Direct s3, ContentCryptoMaterial cekMaterial,
+            long contentLength) {
+        this.s3 = s3;
+        this.cekMaterial = cekMaterial;
+        this.tagCombiner = new GcmTagCombiner(cekMaterial.getCipherLite());
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * Returns the length of the plaintext of the object.
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Fetches the given byte range of the object with a copy of the given
+     * request, and returns it with its content decrypted; or null if the
+     * constraints specified in the request are not met. Once the content has
+     * been read to the end, the range counts towards the verification of the
+     * tag of the object.
+     *
+     * @param req
+     *            the request for the object
+     * @param start
+     *            the position of the first byte of the range in the plaintext
+     * @param end
+     *            the position of the last byte of the range in the plaintext
+     */
+    public S3Object getObjectRange(GetObjectRequest req, long start, long end) {
+        if (start < 0 || start > end || end >= contentLength) {
+            throw new IllegalArgumentException("Invalid range [" + start + ", "
+                    + end + "] for content of length " + contentLength);
+        }
+        // Ciphertext and plaintext have the same positions with AES/GCM
+        long blockStart = start - start % BLOCK_SIZE;
+        GetObjectRequest rangeRequest = (GetObjectRequest) req.clone();
+        rangeRequest.setRange(blockStart, end);
+        S3Object s3Object = s3.getObject(rangeRequest);
+        if (s3Object == null) {
+            return null;
+        }
+        S3ObjectInputStream content = s3Object.getObjectContent();
+        s3Object.setObjectContent(new S3ObjectInputStream(
+                new GcmRangeDecipherInputStream(content, this, blockStart,
+                        start, end),
+                content.getHttpRequest()));
+        return s3Object;
+    }
+
+    /**
+     * Accounts for the given byte range of the object, previously decrypted
+     * and stored, in the verification of the tag of the object. The plaintext
+     * is encrypted again to compute the hash of the ciphertext.
+     *
+     * @param plaintext
+     *            the plaintext of the range, which is read to the end of the
+     *            range but not closed
+     * @param start
+     *            the position of the first byte of the range in the plaintext
+     * @param end
+     *            the position of the last byte of the range in the plaintext
+     */
+    public void rangeStored(InputStream plaintext, long start, long end)
+            throws IOException {
+        if (start % BLOCK_SIZE != 0) {
+            // Not part of a download of the whole object
+            return;
+        }
+        CipherLite cipherLite = newCipherLite(start);
+        GHash ghash = newGHash();
+        long length = end - start + 1;
+        byte[] buffer = new byte[(int) Math.min(length, 8 * 1024)];
+        for (long position = 0; position < length;) {
+            int read = plaintext.read(buffer, 0, (int) Math.min(buffer.length, length - position));
+            if (read == -1) {
+                throw new IOException("Unexpected end of the range at "
+                        + (start + position) + " after " + position + " of "
+                        + length + " bytes");
+            }
+            byte[] ciphertext = cipherLite.update(buffer, 0, read);
+            ghash.update(ciphertext, 0, ciphertext.length);
+            position += read;
+        }
+        rangeDecrypted(start, length, ghash);
+    }
+
+    /**
+     * Verifies the tag of the object, fetched with a copy of the given
+     * request, if every byte of the object has been decrypted.
+     *
+     * @return true if the tag has been verified; false if only some of the
+     *         object has been decrypted, so the tag cannot be verified
+     * @throws SecurityException
+     *             if the tag of the object doesn't match its ciphertext
+     */
+    public boolean verifyTag(GetObjectRequest req) {
+        final byte[] computed = computeTag();
+        if (computed == null) {
+            log.debug("Skipping the verification of the tag of a partially decrypted object");
+            return false;
+        }
+        GetObjectRequest tagRequest = (GetObjectRequest) req.clone();
+        tagRequest.setRange(contentLength, contentLength + computed.length - 1);
+        S3Object s3Object = s3.getObject(tagRequest);
+        if (s3Object == null) {
+            throw new AmazonClientException("Unable to verify the tag of "
+                    + req.getBucketName() + "/" + req.getKey()
+                    + " because the object has changed since the download started");
+        }
+        final byte[] stored;
+        try {
+            stored = IOUtils.toByteArray(s3Object.getObjectContent());
+        } catch (IOException e) {
+            throw failure(e, "Unable to retrieve the tag of the object");
+        } finally {
+            closeQuietly(s3Object.getObjectContent(), log);
+        }
+        if (!MessageDigest.isEqual(computed, stored)) {
+            throw new SecurityException("The tag of S3 object [bucket: "
+                    + req.getBucketName() + ", key: " + req.getKey()
+                    + "] doesn't match its content");
+        }
+        return true;
+    }
+
+    /**
+     * Returns the tag of the whole object combined from the hashes of its
+     * ranges, or null if not all of it has been decrypted.
+     */
+    private synchronized byte[] computeTag() {
+        long[] y = {0, 0};
+        long position = 0;
+        for (Map.Entry<Long, long[]> range : decryptedRanges.entrySet()) {
+            if (range.getKey() != position) {
+                return null;
+            }
+            long[] hash = range.getValue();
+            y = tagCombiner.append(y, hash[0], new long[] {hash[1], hash[2]});
+            position += hash[0];
+        }
+        return position == contentLength ? tagCombiner.tag(y, position) : null;
+    }
+
+    /**
+     * Records the length and hash of the ciphertext of the range at the given
+     * position, which is a multiple of the block size.
+     */
+    synchronized void rangeDecrypted(long blockStart, long length, GHash ghash) {
+        long[] hash = ghash.digest();
+        decryptedRanges.put(blockStart, new long[] {length, hash[0], hash[1]});
+    }
+
+    /** Returns a new GHASH, to hash the ciphertext of a range. */
+    GHash newGHash() {
+        return tagCombiner.newGHash();
+    }
+
+    /**
+     * Returns a new AES/CTR cipher, decrypting from the given position in the
+     * ciphertext, which must be a multiple of the block size.
+     */
+    CipherLite newCipherLite(long position) {
+        try {
+            return cekMaterial.getCipherLite().createAuxiliary(position);
+        } catch (Exception e) {
+            throw failure(e, "Unable to create the cipher of a range");
+        }
+    }
+}
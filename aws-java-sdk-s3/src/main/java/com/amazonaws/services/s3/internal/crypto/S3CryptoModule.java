@@ -60,6 +60,29 @@ public abstract class S3CryptoModule<T extends MultipartUploadContext> {
 
     public abstract UploadPartResult uploadPartSecurely(UploadPartRequest req);
 
+    /**
+     * Returns true if the parts of a multipart upload can be uploaded
+     * concurrently; false if they must be uploaded in series, and in order.
+     */
+    public boolean isMultipartUploadParallelizable() {
+        return false;
+    }
+
+    /**
+     * Returns a context to download the given encrypted object as byte ranges
+     * decrypted concurrently; or null if the object must be decrypted as a
+     * single stream.
+     *
+     * @param req
+     *            the request for the object, or for a range of it
+     * @param metadata
+     *            the metadata of the object, as stored in S3
+     */
+    public ParallelDecryptionContext newParallelDecryptionContext(
+            GetObjectRequest req, ObjectMetadata metadata) {
+        return null;
+    }
+
     public abstract CopyPartResult copyPartSecurely(CopyPartRequest req);
 
     public abstract void abortMultipartUploadSecurely(AbortMultipartUploadRequest req);
@@ -359,11 +359,85 @@ class S3CryptoModuleAE extends S3CryptoModuleBase<MultipartUploadCryptoContext>
         return s3Object.getObjectMetadata();
     }
 
+    /**
+     * Returns a context to download the given object as byte ranges decrypted
+     * concurrently, if it is encrypted with AES/GCM. The tag of the object is
+     * verified once all of it has been downloaded; a range of the object can
+     * only be downloaded this way in non-strict mode, as is the case with
+     * range gets.
+     */
+    @Override
+    public ParallelDecryptionContext newParallelDecryptionContext(
+            GetObjectRequest req, ObjectMetadata metadata) {
+        appendUserAgent(req, USER_AGENT);
+        if (isStrict() && req.getRange() != null)
+            return null;
+        ExtraMaterialsDescription extraMatDesc = NONE;
+        boolean keyWrapExpected = isStrict();
+        String suffix = null;
+        if (req instanceof EncryptedGetObjectRequest) {
+            EncryptedGetObjectRequest ereq = (EncryptedGetObjectRequest)req;
+            extraMatDesc = ereq.getExtraMaterialDescription();
+            if (!keyWrapExpected)
+                keyWrapExpected = ereq.isKeyWrapExpected();
+            suffix = ereq.getInstructionFileSuffix();
+            if (suffix != null && suffix.trim().isEmpty())
+                suffix = null;
+        }
+        S3Object s3Object = new S3Object();
+        s3Object.setBucketName(req.getBucketName());
+        s3Object.setKey(req.getKey());
+        s3Object.setObjectMetadata(metadata);
+        S3ObjectWrapper wrapped = new S3ObjectWrapper(s3Object, req.getS3ObjectId());
+        ContentCryptoMaterial cekMaterial;
+        if (suffix == null && wrapped.hasEncryptionInfo()) {
+            cekMaterial = ContentCryptoMaterial.fromObjectMetadata(metadata,
+                    kekMaterialsProvider, cryptoConfig.getCryptoProvider(),
+                    null, extraMatDesc, keyWrapExpected, kms);
+        } else {
+            S3ObjectWrapper ifile = fetchInstructionFile(req.getS3ObjectId(), suffix);
+            if (ifile == null)
+                return null;    // let the single stream report it, if need be
+            try {
+                if (!ifile.isInstructionFile())
+                    return null;
+                @SuppressWarnings("unchecked")
+                Map<String, String> matdesc = Collections.unmodifiableMap(
+                        Jackson.fromJsonString(ifile.toJsonString(), Map.class));
+                cekMaterial = ContentCryptoMaterial.fromInstructionFile(
+                        matdesc, kekMaterialsProvider,
+                        cryptoConfig.getCryptoProvider(), null, extraMatDesc,
+                        keyWrapExpected, kms);
+            } finally {
+                closeQuietly(ifile, log);
+            }
+        }
+        securityCheck(cekMaterial, wrapped);
+        if (!ContentCryptoScheme.AES_GCM.equals(cekMaterial.getContentCryptoScheme()))
+            return null;
+        return new ParallelDecryptionContext(s3, cekMaterial,
+                metadata.getContentLength()
+                        - ContentCryptoScheme.AES_GCM.getTagLengthInBits() / 8);
+    }
+
     @Override
     final MultipartUploadCryptoContext newUploadContext(
             InitiateMultipartUploadRequest req, ContentCryptoMaterial cekMaterial) {
-        return new MultipartUploadCryptoContext(
-                req.getBucketName(), req.getKey(), cekMaterial);
+        return isMultipartUploadParallelizable()
+             ? new MultipartUploadGcmContext(
+                    req.getBucketName(), req.getKey(), cekMaterial)
+             : new MultipartUploadCryptoContext(
+                    req.getBucketName(), req.getKey(), cekMaterial);
+    }
+
+    /**
+     * Returns true if parallel multipart upload is enabled in the crypto
+     * configuration, since parts encrypted with AES/GCM can then be encrypted
+     * and uploaded concurrently.
+     */
+    @Override
+    public boolean isMultipartUploadParallelizable() {
+        return cryptoConfig.isParallelMultipartUpload();
     }
 
     //// specific overrides for uploading parts.
@@ -221,7 +221,10 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
     @Override
     public final void abortMultipartUploadSecurely(AbortMultipartUploadRequest req) {
         s3.abortMultipartUpload(req);
-        multipartUploadContexts.remove(req.getUploadId());
+        T uploadContext = multipartUploadContexts.remove(req.getUploadId());
+        if (uploadContext instanceof MultipartUploadGcmContext) {
+            ((MultipartUploadGcmContext) uploadContext).abort();
+        }
     }
 
     @Override
@@ -299,6 +302,9 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
             throw new AmazonClientException(
                 "No client-side information available on upload ID " + uploadId);
         }
+        if (uploadContext instanceof MultipartUploadGcmContext) {
+            return uploadPartConcurrently(req, (MultipartUploadGcmContext) uploadContext);
+        }
         final UploadPartResult result;
         // Checks the parts are uploaded in series
         uploadContext.beginPartUpload(req.getPartNumber());
@@ -341,6 +347,72 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
         return result;
     }
 
+    /**
+     * Uploads a part of a multipart upload whose parts can be encrypted and
+     * uploaded concurrently. The last part waits for all the other parts to be
+     * encrypted, since the tag appended to it authenticates all of them.
+     */
+    private UploadPartResult uploadPartConcurrently(UploadPartRequest req,
+            MultipartUploadGcmContext uploadContext) {
+        final int partNumber = req.getPartNumber();
+        final long partSize = req.getPartSize();
+        final boolean isLastPart = req.isLastPart();
+        final long partPosition;
+        if (isLastPart) {
+            if (uploadContext.hasFinalPartBeenSeen()) {
+                throw new AmazonClientException(
+                    "This part was specified as the last part in a multipart upload, but a previous part was already marked as the last part.  "
+                  + "Only the last part of the upload should be marked as the last part.");
+            }
+            partPosition = uploadContext.awaitPartsBefore(partNumber);
+        } else {
+            partPosition = uploadContext.checkPartSize(partNumber, partSize);
+        }
+        final File fileOrig = req.getFile();
+        final InputStream isOrig = req.getInputStream();
+        InputStream isCurr = null;
+        final UploadPartResult result;
+        try {
+            if (fileOrig == null) {
+                if (isOrig == null) {
+                    throw new IllegalArgumentException(
+                        "A File or InputStream must be specified when uploading part");
+                }
+                isCurr = isOrig;
+            } else {
+                isCurr = new ResettableInputStream(fileOrig);
+            }
+            isCurr = new InputSubstream(isCurr, req.getFileOffset(), partSize, isLastPart);
+            isCurr = new GcmPartCipherInputStream(isCurr, uploadContext,
+                    partNumber, partPosition, partSize, isLastPart);
+            req.setInputStream(isCurr);
+            req.setFile(null);
+            req.setFileOffset(0);
+            if (isLastPart) {
+                req.setPartSize(computeLastPartSize(req));
+            }
+            result = s3.uploadPart(req);
+        } catch (IOException e) {
+            if (!isLastPart)
+                uploadContext.partFailed(partNumber, e);
+            throw failure(e, "Unable to create cipher input stream");
+        } catch (RuntimeException e) {
+            // Releases the last part, which would otherwise wait for this one
+            if (!isLastPart)
+                uploadContext.partFailed(partNumber, e);
+            throw e;
+        } catch (Error e) {
+            if (!isLastPart)
+                uploadContext.partFailed(partNumber, e);
+            throw e;
+        } finally {
+            cleanupDataSource(req, fileOrig, isOrig, isCurr, log);
+        }
+        if (isLastPart)
+            uploadContext.setHasFinalPartBeenSeen(true);
+        return result;
+    }
+
     protected final CipherLiteInputStream newMultipartS3CipherInputStream(
             UploadPartRequest req, CipherLite cipherLite) {
         final File fileOrig = req.getFile();
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.iterable;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.AmazonClientException;
+
+/**
+ * Iterates the items of a paged listing, fetching the pages as they are
+ * needed. When given an executor, it fetches each page in the background as
+ * soon as the previous one has arrived, so that it is usually ready by the
+ * time the previous one has been consumed.
+ *
+ * @param <P>
+ *            the type of the pages
+ * @param <T>
+ *            the type of the items
+ */
+abstract class PagedIterator<P, T> implements Iterator<T> {
+
+    /** The number of threads of the default executor. */
+    private static final int DEFAULT_THREADS = 10;
+
+    /**
+     * Used to fetch pages in the background unless another executor is given.
+     * Its threads are daemons that stop once idle, since nothing shuts it down.
+     */
+    private static final ExecutorService defaultExecutor;
+
+    static {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(DEFAULT_THREADS, DEFAULT_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger threadCount = new AtomicInteger(0);
+
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r);
+                        thread.setDaemon(true);
+                        thread.setName("s3-listing-prefetch-" + threadCount.incrementAndGet());
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        defaultExecutor = executor;
+    }
+
+    /** The executor fetching pages in the background, or null to fetch them when needed. */
+    private final ExecutorService executor;
+
+    private P currentPage;
+    private Iterator<T> currentIterator;
+    private Future<P> nextPage;
+
+    /**
+     * @param prefetch
+     *            whether to fetch each page in the background
+     * @param executor
+     *            the executor to fetch pages with, or null for the default one
+     */
+    PagedIterator(boolean prefetch, ExecutorService executor) {
+        this.executor = !prefetch ? null : executor != null ? executor : defaultExecutor;
+    }
+
+    /** Fetches the first page. */
+    protected abstract P firstPage();
+
+    /** Fetches the page that follows the given truncated page. */
+    protected abstract P nextPage(P page);
+
+    protected abstract boolean isTruncated(P page);
+
+    protected abstract List<T> items(P page);
+
+    /**
+     * Starts fetching the first page in the background, if this iterator
+     * prefetches and has not started yet.
+     */
+    void start() {
+        if (executor != null && currentPage == null && nextPage == null) {
+            nextPage = executor.submit(new Callable<P>() {
+                public P call() {
+                    return firstPage();
+                }
+            });
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        prepareCurrentPage();
+        return currentIterator.hasNext();
+    }
+
+    @Override
+    public T next() {
+        prepareCurrentPage();
+        return currentIterator.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private void prepareCurrentPage() {
+        while (currentPage == null || (!currentIterator.hasNext() && isTruncated(currentPage))) {
+            if (nextPage != null) {
+                currentPage = waitFor(nextPage);
+                nextPage = null;
+            } else if (currentPage == null) {
+                currentPage = firstPage();
+            } else {
+                currentPage = nextPage(currentPage);
+            }
+            currentIterator = items(currentPage).iterator();
+
+            if (executor != null && isTruncated(currentPage)) {
+                final P page = currentPage;
+                nextPage = executor.submit(new Callable<P>() {
+                    public P call() {
+                        return nextPage(page);
+                    }
+                });
+            }
+        }
+    }
+
+    private static <P> P waitFor(Future<P> page) {
+        try {
+            return page.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException("Interrupted while waiting for the next page of the listing", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new AmazonClientException("Unable to fetch the next page of the listing", cause);
+        }
+    }
+}
@@ -14,7 +14,12 @@
  */
 package com.amazonaws.services.s3.iterable;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.ListObjectsRequest;
@@ -33,7 +38,21 @@ import com.amazonaws.services.s3.model.S3ObjectSummary;
  * <p>
  * The list of {@link S3ObjectSummary}s will be fetched lazily, a page at a
  * time, as they are needed. The size of the page can be controlled with the
- * {@link S3Objects#withBatchSize(int)} method.
+ * {@link S3Objects#withBatchSize(int)} method. With
+ * {@link S3Objects#withPrefetch(boolean)}, each page is requested in the
+ * background as soon as the previous one has arrived, so that iterating
+ * doesn't stall for a round trip to Amazon S3 at the end of every page.
+ * <p>
+ * Large buckets can be walked faster by listing several prefixes at a time,
+ * for example the common prefixes returned by a listing with a delimiter:
+ *
+ * <pre class="brush: java">
+ * S3Objects objects = S3Objects.withPrefixes(s3, &quot;my-bucket&quot;, prefixes).withParallelism(4);
+ * </pre>
+ *
+ * The objects are then returned in the order of the prefixes, while the next
+ * prefixes are listed in the background. Alternatively, {@link #split()}
+ * returns one iterable per prefix, to be consumed by separate threads.
  */
 public class S3Objects implements Iterable<S3ObjectSummary> {
 
@@ -41,6 +60,10 @@ public class S3Objects implements Iterable<S3ObjectSummary> {
     private String prefix = null;
     private String bucketName;
     private Integer batchSize = null;
+    private List<String> prefixes = null;
+    private boolean prefetch = false;
+    private int parallelism = 1;
+    private ExecutorService executorService = null;
 
     private S3Objects(AmazonS3 s3, String bucketName) {
         this.s3 = s3;
@@ -79,6 +102,27 @@ public class S3Objects implements Iterable<S3ObjectSummary> {
         return objects;
     }
 
+    /**
+     * Constructs an iterable that covers the objects in an Amazon S3 bucket
+     * where the key begins with any of the given prefixes. The objects are
+     * returned prefix by prefix, in the order of the given collection. The
+     * prefixes must not overlap, i.e. none may begin with another, or some
+     * objects will be returned more than once.
+     *
+     * @param s3
+     *            The Amazon S3 client.
+     * @param bucketName
+     *            The bucket name.
+     * @param prefixes
+     *            The prefixes.
+     * @return An iterator for object summaries.
+     */
+    public static S3Objects withPrefixes(AmazonS3 s3, String bucketName, Collection<String> prefixes) {
+        S3Objects objects = new S3Objects(s3, bucketName);
+        objects.prefixes = Collections.unmodifiableList(new ArrayList<String>(prefixes));
+        return objects;
+    }
+
     /**
      * Sets the batch size, i.e., how many {@link S3ObjectSummary}s will be
      * fetched at once.
@@ -95,6 +139,71 @@ public class S3Objects implements Iterable<S3ObjectSummary> {
         return batchSize;
     }
 
+    /**
+     * Sets whether each page of {@link S3ObjectSummary}s is requested in the
+     * background as soon as the previous one has arrived, rather than once it
+     * has been consumed. Note that an iteration that stops early may then have
+     * requested one page more than it used.
+     *
+     * @param prefetch
+     *            Whether to fetch the pages ahead.
+     */
+    public S3Objects withPrefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+        return this;
+    }
+
+    public boolean isPrefetch() {
+        return prefetch;
+    }
+
+    /**
+     * Sets how many of the prefixes given to
+     * {@link #withPrefixes(AmazonS3, String, Collection)} are listed at a
+     * time: the one being iterated, and the following ones whose first pages
+     * are requested in the background. Listing more than one prefix at a time
+     * implies {@link #withPrefetch(boolean) prefetching}.
+     *
+     * @param parallelism
+     *            How many prefixes to list at a time.
+     */
+    public S3Objects withParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the executor used to fetch pages in the background. By default, a
+     * pool of daemon threads shared by all the iterables is used.
+     *
+     * @param executorService
+     *            The executor to fetch pages with.
+     */
+    public S3Objects withExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+        return this;
+    }
+
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Returns the prefixes given to
+     * {@link #withPrefixes(AmazonS3, String, Collection)}, or null if this
+     * iterable covers a single prefix.
+     */
+    public List<String> getPrefixes() {
+        return prefixes;
+    }
+
     public String getPrefix() {
         return prefix;
     }
@@ -107,51 +216,72 @@ public class S3Objects implements Iterable<S3ObjectSummary> {
         return s3;
     }
 
-    private class S3ObjectIterator implements Iterator<S3ObjectSummary> {
+    /**
+     * Returns one iterable per prefix given to
+     * {@link #withPrefixes(AmazonS3, String, Collection)}, with the same
+     * settings, so that the prefixes can be iterated by separate threads. If
+     * this iterable covers a single prefix, returns a list of just this one.
+     */
+    public List<S3Objects> split() {
+        if (prefixes == null) {
+            return Collections.singletonList(this);
+        }
+        List<S3Objects> split = new ArrayList<S3Objects>(prefixes.size());
+        for (String prefix : prefixes) {
+            S3Objects objects = withPrefix(s3, bucketName, prefix);
+            objects.batchSize = batchSize;
+            objects.prefetch = prefetch;
+            objects.executorService = executorService;
+            split.add(objects);
+        }
+        return split;
+    }
+
+    private class S3ObjectIterator extends PagedIterator<ObjectListing, S3ObjectSummary> {
 
-        private ObjectListing currentListing = null;
+        private final String prefix;
 
-        private Iterator<S3ObjectSummary> currentIterator = null;
+        S3ObjectIterator(String prefix) {
+            super(prefetch || parallelism > 1, executorService);
+            this.prefix = prefix;
+        }
 
         @Override
-        public boolean hasNext() {
-            prepareCurrentListing();
-            return currentIterator.hasNext();
+        protected ObjectListing firstPage() {
+            ListObjectsRequest req = new ListObjectsRequest();
+            req.setBucketName(getBucketName());
+            req.setPrefix(prefix);
+            req.setMaxKeys(getBatchSize());
+            return getS3().listObjects(req);
         }
 
         @Override
-        public S3ObjectSummary next() {
-            prepareCurrentListing();
-            return currentIterator.next();
+        protected ObjectListing nextPage(ObjectListing page) {
+            return getS3().listNextBatchOfObjects(page);
         }
 
         @Override
-        public void remove() {
-            throw new UnsupportedOperationException();
+        protected boolean isTruncated(ObjectListing page) {
+            return page.isTruncated();
         }
 
-        private void prepareCurrentListing() {
-            while ( currentListing == null || (!currentIterator.hasNext() && currentListing.isTruncated()) ) {
-
-                if ( currentListing == null ) {
-                    ListObjectsRequest req = new ListObjectsRequest();
-                    req.setBucketName(getBucketName());
-                    req.setPrefix(getPrefix());
-                    req.setMaxKeys(getBatchSize());
-                    currentListing = getS3().listObjects(req);
-                } else {
-                    currentListing = getS3().listNextBatchOfObjects(currentListing);
-                }
-
-                currentIterator = currentListing.getObjectSummaries().iterator();
-            }
+        @Override
+        protected List<S3ObjectSummary> items(ObjectListing page) {
+            return page.getObjectSummaries();
         }
 
     }
 
     @Override
     public Iterator<S3ObjectSummary> iterator() {
-        return new S3ObjectIterator();
+        if (prefixes == null) {
+            return new S3ObjectIterator(getPrefix());
+        }
+        List<S3ObjectIterator> shards = new ArrayList<S3ObjectIterator>(prefixes.size());
+        for (String prefix : prefixes) {
+            shards.add(new S3ObjectIterator(prefix));
+        }
+        return new ShardedIterator<S3ObjectSummary>(shards, parallelism);
     }
 
 }
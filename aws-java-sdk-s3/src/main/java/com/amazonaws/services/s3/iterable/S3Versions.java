@@ -14,7 +14,12 @@
  */
 package com.amazonaws.services.s3.iterable;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.ListVersionsRequest;
@@ -33,7 +38,11 @@ import com.amazonaws.services.s3.model.VersionListing;
  * <p>
  * The list of {@link S3VersionSummary}s will be fetched lazily, a page at a
  * time, as they are needed. The size of the page can be controlled with the
- * {@link S3Versions#withBatchSize(int)} method.
+ * {@link S3Versions#withBatchSize(int)} method, and each page can be requested
+ * in the background as soon as the previous one has arrived with
+ * {@link S3Versions#withPrefetch(boolean)}. As with {@link S3Objects}, several
+ * prefixes can be listed at a time with
+ * {@link S3Versions#withPrefixes(AmazonS3, String, Collection)}.
  */
 public class S3Versions implements Iterable<S3VersionSummary> {
 
@@ -42,6 +51,10 @@ public class S3Versions implements Iterable<S3VersionSummary> {
     private String prefix;
     private String key;
     private Integer batchSize;
+    private List<String> prefixes;
+    private boolean prefetch;
+    private int parallelism = 1;
+    private ExecutorService executorService;
 
     private S3Versions(AmazonS3 s3, String bucketName) {
         this.s3 = s3;
@@ -81,6 +94,28 @@ public class S3Versions implements Iterable<S3VersionSummary> {
         return versions;
     }
 
+    /**
+     * Constructs an iterable that covers the versions in an Amazon S3 bucket
+     * where the object key begins with any of the given prefixes. The versions
+     * are returned prefix by prefix, in the order of the given collection. The
+     * prefixes must not overlap, i.e. none may begin with another, or some
+     * versions will be returned more than once.
+     *
+     * @param s3
+     *            The Amazon S3 client.
+     * @param bucketName
+     *            The bucket name.
+     * @param prefixes
+     *            The prefixes.
+     * @return An iterator for object version summaries.
+     */
+    public static S3Versions withPrefixes(AmazonS3 s3, String bucketName,
+            Collection<String> prefixes) {
+        S3Versions versions = new S3Versions(s3, bucketName);
+        versions.prefixes = Collections.unmodifiableList(new ArrayList<String>(prefixes));
+        return versions;
+    }
+
     /**
      * Constructs an iterable that covers the versions of a single Amazon S3
      * object.
@@ -115,6 +150,69 @@ public class S3Versions implements Iterable<S3VersionSummary> {
         return batchSize;
     }
 
+    /**
+     * Sets whether each page of {@link S3VersionSummary}s is requested in the
+     * background as soon as the previous one has arrived, rather than once it
+     * has been consumed.
+     *
+     * @param prefetch
+     *            Whether to fetch the pages ahead.
+     */
+    public S3Versions withPrefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+        return this;
+    }
+
+    public boolean isPrefetch() {
+        return prefetch;
+    }
+
+    /**
+     * Sets how many of the prefixes given to
+     * {@link #withPrefixes(AmazonS3, String, Collection)} are listed at a
+     * time. Listing more than one prefix at a time implies
+     * {@link #withPrefetch(boolean) prefetching}.
+     *
+     * @param parallelism
+     *            How many prefixes to list at a time.
+     */
+    public S3Versions withParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the executor used to fetch pages in the background. By default, a
+     * pool of daemon threads shared by all the iterables is used.
+     *
+     * @param executorService
+     *            The executor to fetch pages with.
+     */
+    public S3Versions withExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+        return this;
+    }
+
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Returns the prefixes given to
+     * {@link #withPrefixes(AmazonS3, String, Collection)}, or null if this
+     * iterable covers a single prefix or key.
+     */
+    public List<String> getPrefixes() {
+        return prefixes;
+    }
+
     public String getPrefix() {
         return prefix;
     }
@@ -131,21 +229,81 @@ public class S3Versions implements Iterable<S3VersionSummary> {
         return bucketName;
     }
 
+    /**
+     * Returns one iterable per prefix given to
+     * {@link #withPrefixes(AmazonS3, String, Collection)}, with the same
+     * settings, so that the prefixes can be iterated by separate threads. If
+     * this iterable covers a single prefix or key, returns a list of just this
+     * one.
+     */
+    public List<S3Versions> split() {
+        if (prefixes == null) {
+            return Collections.singletonList(this);
+        }
+        List<S3Versions> split = new ArrayList<S3Versions>(prefixes.size());
+        for (String prefix : prefixes) {
+            S3Versions versions = withPrefix(s3, bucketName, prefix);
+            versions.batchSize = batchSize;
+            versions.prefetch = prefetch;
+            versions.executorService = executorService;
+            split.add(versions);
+        }
+        return split;
+    }
+
+    private class VersionListingIterator extends PagedIterator<VersionListing, S3VersionSummary> {
+
+        private final String prefix;
+
+        VersionListingIterator(String prefix) {
+            super(prefetch || parallelism > 1, executorService);
+            this.prefix = prefix;
+        }
+
+        @Override
+        protected VersionListing firstPage() {
+            ListVersionsRequest req = new ListVersionsRequest();
+            req.setBucketName(getBucketName());
+            req.setPrefix(prefix);
+            req.setMaxResults(getBatchSize());
+            return getS3().listVersions(req);
+        }
+
+        @Override
+        protected VersionListing nextPage(VersionListing page) {
+            return getS3().listNextBatchOfVersions(page);
+        }
+
+        @Override
+        protected boolean isTruncated(VersionListing page) {
+            return page.isTruncated();
+        }
+
+        @Override
+        protected List<S3VersionSummary> items(VersionListing page) {
+            return page.getVersionSummaries();
+        }
+
+    }
+
+    /**
+     * Iterates the versions of a single key: those listed for the key as a
+     * prefix, up to the first one of another key.
+     */
     private class VersionIterator implements Iterator<S3VersionSummary> {
 
-        private VersionListing currentListing = null;
-        private Iterator<S3VersionSummary> currentIterator = null;
+        private final Iterator<S3VersionSummary> listingIterator = new VersionListingIterator(getKey());
         private S3VersionSummary nextSummary = null;
 
         @Override
         public boolean hasNext() {
-            prepareCurrentListing();
+            prepareNextSummary();
             return nextMatchingSummary() != null;
         }
 
         @Override
         public S3VersionSummary next() {
-            prepareCurrentListing();
+            prepareNextSummary();
             S3VersionSummary returnValue = nextMatchingSummary();
             nextSummary = null;
             return returnValue;
@@ -157,41 +315,16 @@ public class S3Versions implements Iterable<S3VersionSummary> {
         }
 
         private S3VersionSummary nextMatchingSummary() {
-            if (getKey() == null
-                    || (nextSummary != null && nextSummary.getKey().equals(
-                            getKey()))) {
+            if (nextSummary != null && nextSummary.getKey().equals(getKey())) {
                 return nextSummary;
             } else {
                 return null;
             }
         }
 
-        private void prepareCurrentListing() {
-            while (currentListing == null
-                    || (!currentIterator.hasNext() && currentListing
-                            .isTruncated())) {
-                if (currentListing == null) {
-                    ListVersionsRequest req = new ListVersionsRequest();
-                    req.setBucketName(getBucketName());
-
-                    if (getKey() != null) {
-                        req.setPrefix(getKey());
-                    } else {
-                        req.setPrefix(getPrefix());
-                    }
-
-                    req.setMaxResults(getBatchSize());
-                    currentListing = getS3().listVersions(req);
-                } else {
-                    currentListing = getS3().listNextBatchOfVersions(
-                            currentListing);
-                }
-                currentIterator = currentListing.getVersionSummaries()
-                        .iterator();
-            }
-
-            if (nextSummary == null && currentIterator.hasNext()) {
-                nextSummary = currentIterator.next();
+        private void prepareNextSummary() {
+            if (nextSummary == null && listingIterator.hasNext()) {
+                nextSummary = listingIterator.next();
             }
         }
 
@@ -199,7 +332,17 @@ public class S3Versions implements Iterable<S3VersionSummary> {
 
     @Override
     public Iterator<S3VersionSummary> iterator() {
-        return new VersionIterator();
+        if (getKey() != null) {
+            return new VersionIterator();
+        }
+        if (prefixes == null) {
+            return new VersionListingIterator(getPrefix());
+        }
+        List<VersionListingIterator> shards = new ArrayList<VersionListingIterator>(prefixes.size());
+        for (String prefix : prefixes) {
+            shards.add(new VersionListingIterator(prefix));
+        }
+        return new ShardedIterator<S3VersionSummary>(shards, parallelism);
     }
 
 }
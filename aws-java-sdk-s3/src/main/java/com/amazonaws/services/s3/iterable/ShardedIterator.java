@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.iterable;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates the items of several listings one after the other, while the
+ * first pages of the next ones are fetched in the background.
+ *
+ * @param <T>
+ *            the type of the items
+ */
+class ShardedIterator<T> implements Iterator<T> {
+
+    private final List<? extends PagedIterator<?, T>> shards;
+
+    /** The number of shards fetched at a time, including the current one. */
+    private final int parallelism;
+
+    private int current;
+
+    ShardedIterator(List<? extends PagedIterator<?, T>> shards, int parallelism) {
+        this.shards = shards;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (current < shards.size()) {
+            for (int i = current; i < Math.min(shards.size(), current + parallelism); i++) {
+                shards.get(i).start();
+            }
+            if (shards.get(current).hasNext()) {
+                return true;
+            }
+            ++current;
+        }
+        return false;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return shards.get(current).next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
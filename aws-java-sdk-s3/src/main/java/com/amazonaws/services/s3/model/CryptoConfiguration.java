@@ -43,6 +43,11 @@ public class CryptoConfiguration implements Cloneable {
      * null if no explicit KMS region is specified.
      */
     private Regions kmsRegion;
+    /**
+     * True to encrypt and upload the parts of a multipart upload concurrently;
+     * false to require them to be uploaded in series. Default is false.
+     */
+    private boolean parallelMultipartUpload;
 
     /**
      * Creates a new CryptoConfiguration object with default storage mode and
@@ -219,6 +224,46 @@ public class CryptoConfiguration implements Cloneable {
         return this;
     }
 
+    /**
+     * Returns true if the parts of an encrypted multipart upload can be
+     * encrypted and uploaded concurrently; false otherwise. Default is false.
+     */
+    public boolean isParallelMultipartUpload() {
+        return parallelMultipartUpload;
+    }
+
+    /**
+     * Sets whether the parts of an encrypted multipart upload can be encrypted
+     * and uploaded concurrently, for example by the TransferManager.
+     * <p>
+     * This property is ignored unless the crypto mode is
+     * {@link CryptoMode#AuthenticatedEncryption} or
+     * {@link CryptoMode#StrictAuthenticatedEncryption}: each part is then
+     * encrypted at its own offset of the AES/GCM key stream, and the
+     * authentication tag of the object is combined from the partial hashes of
+     * the parts, so the object is exactly the same as if its parts had been
+     * uploaded in series. When enabled, all the parts but the last must have
+     * the same size, and the upload of the last part waits until all the other
+     * parts have been encrypted. Such uploads cannot be paused and resumed.
+     *
+     * @param parallelMultipartUpload
+     *            true to allow the parts of a multipart upload to be encrypted
+     *            and uploaded concurrently; false otherwise.
+     */
+    public void setParallelMultipartUpload(boolean parallelMultipartUpload) {
+        this.parallelMultipartUpload = parallelMultipartUpload;
+    }
+
+    /**
+     * Fluent API to set whether the parts of an encrypted multipart upload
+     * can be encrypted and uploaded concurrently.
+     */
+    public CryptoConfiguration withParallelMultipartUpload(
+            boolean parallelMultipartUpload) {
+        this.parallelMultipartUpload = parallelMultipartUpload;
+        return this;
+    }
+
     /**
      * Checks if the crypto mode is supported by the runtime.
      * 
@@ -277,6 +322,14 @@ public class CryptoConfiguration implements Cloneable {
                 boolean ignoreMissingInstructionFile) {
             throw new UnsupportedOperationException();
         }
+        @Override public void setParallelMultipartUpload(
+                boolean parallelMultipartUpload) {
+            throw new UnsupportedOperationException();
+        }
+        @Override public CryptoConfiguration withParallelMultipartUpload(
+                boolean parallelMultipartUpload) {
+            throw new UnsupportedOperationException();
+        }
         @Override public void setKmsRegion(Regions kmsRegion) {
             throw new UnsupportedOperationException();
         }
@@ -305,6 +358,7 @@ public class CryptoConfiguration implements Cloneable {
         that.cryptoProvider = this.cryptoProvider;
         that.ignoreMissingInstructionFile = this.ignoreMissingInstructionFile;
         that.kmsRegion = this.kmsRegion;
+        that.parallelMultipartUpload = this.parallelMultipartUpload;
         return that;
     }
 
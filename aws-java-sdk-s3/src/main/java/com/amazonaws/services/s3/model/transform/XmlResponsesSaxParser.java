@@ -17,10 +17,7 @@
  */
 package com.amazonaws.services.s3.model.transform;
 
-import static com.amazonaws.util.StringUtils.UTF8;
-
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -39,9 +36,9 @@ import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.DefaultHandler;
-import org.xml.sax.helpers.XMLReaderFactory;
 
 import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.internal.CarriageReturnEscapingInputStream;
 import com.amazonaws.services.s3.internal.Constants;
 import com.amazonaws.services.s3.internal.DeleteObjectsResponse;
 import com.amazonaws.services.s3.internal.ObjectExpirationResult;
@@ -91,6 +88,7 @@ import com.amazonaws.services.s3.model.StorageClass;
 import com.amazonaws.services.s3.model.TagSet;
 import com.amazonaws.services.s3.model.VersionListing;
 import com.amazonaws.util.DateUtils;
+import com.amazonaws.util.XmlUtils;
 
 /**
  * XML Sax parser to read XML documents returned by S3 via the REST interface,
@@ -99,22 +97,16 @@ import com.amazonaws.util.DateUtils;
 public class XmlResponsesSaxParser {
     private static final Log log = LogFactory.getLog(XmlResponsesSaxParser.class);
 
-    private XMLReader xr = null;
-
     private boolean sanitizeXmlDocument = true;
 
     /**
-     * Constructs the XML SAX parser.
+     * Constructs the XML SAX parser. The underlying SAX reader is only
+     * acquired when a document is parsed, and is reused across the parsers
+     * used by the same thread.
      *
      * @throws AmazonClientException
      */
     public XmlResponsesSaxParser() throws AmazonClientException {
-        // Ensure we can load the XML Reader.
-        try {
-            xr = XMLReaderFactory.createXMLReader();
-        } catch (SAXException e) {
-            throw new AmazonClientException("Couldn't initialize a SAX driver to create an XMLReader", e);
-        }
     }
 
     /**
@@ -140,9 +132,12 @@ public class XmlResponsesSaxParser {
 
             BufferedReader breader = new BufferedReader(new InputStreamReader(inputStream,
                 Constants.DEFAULT_ENCODING));
+            XMLReader xr = acquireXMLReader();
             xr.setContentHandler(handler);
             xr.setErrorHandler(handler);
             xr.parse(new InputSource(breader));
+            // only readers that made it to the end of a document are reused
+            XmlUtils.releaseXMLReader(xr);
 
         } catch (IOException e) {
             throw e;
@@ -160,6 +155,14 @@ public class XmlResponsesSaxParser {
         }
     }
 
+    private static XMLReader acquireXMLReader() {
+        try {
+            return XmlUtils.acquireXMLReader();
+        } catch (SAXException e) {
+            throw new AmazonClientException("Couldn't initialize a SAX driver to create an XMLReader", e);
+        }
+    }
+
     protected InputStream sanitizeXmlDocument(DefaultHandler handler, InputStream inputStream)
             throws IOException {
 
@@ -171,52 +174,14 @@ public class XmlResponsesSaxParser {
                 log.debug("Sanitizing XML document destined for handler " + handler.getClass());
             }
 
-            InputStream sanitizedInputStream = null;
-
-            try {
-
-                /*
-                 * Read object listing XML document from input stream provided into a
-                 * string buffer, so we can replace troublesome characters before
-                 * sending the document to the XML parser.
-                 */
-                StringBuilder listingDocBuffer = new StringBuilder();
-                BufferedReader br = new BufferedReader(
-                    new InputStreamReader(inputStream, Constants.DEFAULT_ENCODING));
-
-                char[] buf = new char[8192];
-                int read = -1;
-                while ((read = br.read(buf)) != -1) {
-                    listingDocBuffer.append(buf, 0, read);
-                }
-                br.close();
-
-                /*
-                 * Replace any carriage return (\r) characters with explicit XML
-                 * character entities, to prevent the SAX parser from
-                 * misinterpreting 0x0D characters as 0x0A and being unable to
-                 * parse the XML.
-                 */
-                String listingDoc = listingDocBuffer.toString().replaceAll("\r", "&#013;");
-
-                sanitizedInputStream = new ByteArrayInputStream(
-                    listingDoc.getBytes(UTF8));
-
-            } catch (IOException e) {
-                throw e;
-
-            } catch (Throwable t) {
-                try {
-                    inputStream.close();
-                } catch (IOException e) {
-                    if (log.isErrorEnabled()) {
-                        log.error("Unable to close response InputStream after failure sanitizing XML document", e);
-                    }
-                }
-                throw new AmazonClientException("Failed to sanitize XML document destined for handler "
-                    + handler.getClass(), t);
-            }
-            return sanitizedInputStream;
+            /*
+             * Replace any carriage return (\r) characters with explicit XML
+             * character entities as the document is read, to prevent the SAX
+             * parser from misinterpreting 0x0D characters as 0x0A and being
+             * unable to parse the XML. The document is UTF-8, so this is done
+             * on the bytes, without buffering or decoding the document.
+             */
+            return new CarriageReturnEscapingInputStream(inputStream);
         }
     }
 
@@ -0,0 +1,603 @@
+/*
+ * Copyright 2015-2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer;
+
+import static com.amazonaws.util.IOUtils.closeQuietly;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.internal.FileLocks;
+import com.amazonaws.services.s3.internal.ServiceUtils;
+import com.amazonaws.services.s3.internal.crypto.ParallelDecryptionContext;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.transfer.Transfer.TransferState;
+import com.amazonaws.services.s3.transfer.exception.FileLockException;
+import com.amazonaws.services.s3.transfer.internal.AbstractTransfer;
+import com.amazonaws.services.s3.transfer.internal.DownloadImpl;
+import com.amazonaws.util.BinaryUtils;
+
+/**
+ * Downloads an object as a number of byte ranges fetched concurrently on the
+ * transfer manager's thread pool. Each range is written directly to its
+ * offset in the destination file, so ranges may complete in any order; a
+ * paused download is resumed from the ranges that have not yet completed.
+ * <p>
+ * The calling task takes part in fetching the ranges itself, and helper
+ * tasks that only start after all ranges are taken return immediately, so
+ * parallel downloads never deadlock on a saturated thread pool.
+ * <p>
+ * The ranges of an object encrypted with AES/GCM are decrypted independently
+ * by a {@link ParallelDecryptionContext}, which verifies the tag of the
+ * object once all of its ranges have been downloaded.
+ * <p>
+ * The MD5 of an object can only be computed over its content in order, so it
+ * is computed while the ranges are written: the range next in order is
+ * digested straight from the buffers being written to the file, and the
+ * ranges completed ahead of it are read back as soon as it completes, while
+ * the remaining ranges are still being downloaded.
+ */
+final class ParallelDownloadCallable implements Callable<File> {
+    private static final Log log = LogFactory.getLog(ParallelDownloadCallable.class);
+
+    private static final int BUFFER_SIZE = 1024 * 10;
+
+    private final AmazonS3 s3;
+    private final ExecutorService threadPool;
+    private final CountDownLatch latch;
+    private final GetObjectRequest req;
+    private final boolean resumeExistingDownload;
+    private final DownloadImpl download;
+    private final File dstfile;
+    private final ObjectMetadata objectMetadata;
+    private final long startingByte;
+    private final long lastByte;
+    private final long partSize;
+    /** The byte ranges completed before the download was resumed. */
+    private final int[] completedParts;
+    /** Decrypts the byte ranges of an encrypted object, or null. */
+    private final ParallelDecryptionContext decryptionContext;
+    /** Digests the content to compare with the ETag of the object, or null. */
+    private final ContentDigest contentDigest;
+
+    /** The byte ranges that have not yet been taken by any task. */
+    private final Queue<Integer> pendingParts = new ConcurrentLinkedQueue<Integer>();
+
+    /** The part streams currently being read, so they can be aborted. */
+    private final Set<S3Object> inflightObjects = Collections.newSetFromMap(
+            new ConcurrentHashMap<S3Object, Boolean>());
+
+    private volatile boolean stopped;
+
+    /** Guarded by this; true once the calling task has taken all ranges. */
+    private boolean helpersClosed;
+
+    /** Guarded by this; the number of helper tasks fetching ranges. */
+    private int activeHelpers;
+
+    /** Guarded by this; the first failure of any helper task. */
+    private Throwable helperFailure;
+
+    ParallelDownloadCallable(AmazonS3 s3, ExecutorService threadPool,
+            CountDownLatch latch, GetObjectRequest req,
+            boolean resumeExistingDownload, DownloadImpl download,
+            File dstfile, ObjectMetadata objectMetadata, long startingByte,
+            long lastByte, long partSize, int[] completedParts,
+            ParallelDecryptionContext decryptionContext)
+    {
+        if (s3 == null || threadPool == null || latch == null || req == null
+                || dstfile == null || download == null
+                || objectMetadata == null || partSize <= 0)
+            throw new IllegalArgumentException();
+        this.s3 = s3;
+        this.threadPool = threadPool;
+        this.latch = latch;
+        this.req = req;
+        this.download = download;
+        this.dstfile = dstfile;
+        this.objectMetadata = objectMetadata;
+        this.startingByte = startingByte;
+        this.lastByte = lastByte;
+        this.partSize = partSize;
+        this.decryptionContext = decryptionContext;
+
+        final int totalParts = getTotalParts(lastByte - startingByte + 1, partSize);
+        int[] skip = completedParts == null ? new int[0] : completedParts.clone();
+        Arrays.sort(skip);
+        this.completedParts = skip;
+        for (int part = 0; part < totalParts; part++) {
+            if (Arrays.binarySearch(skip, part) < 0)
+                pendingParts.add(part);
+        }
+        // Nothing to resume from unless some of the ranges are already on disk
+        this.resumeExistingDownload = resumeExistingDownload
+                && pendingParts.size() < totalParts;
+        this.contentDigest = isMd5Verifiable()
+                ? ContentDigest.newInstance(lastByte - startingByte + 1, partSize,
+                        this.resumeExistingDownload ? skip : new int[0])
+                : null;
+    }
+
+    /**
+     * Returns true if the whole object is downloaded without being decrypted,
+     * and its ETag is the MD5 of its content.
+     */
+    private boolean isMd5Verifiable() {
+        return decryptionContext == null
+                && startingByte == 0
+                && lastByte == objectMetadata.getContentLength() - 1
+                && !ServiceUtils.skipMd5CheckPerRequest(req)
+                && objectMetadata.getETag() != null
+                && !ServiceUtils.isMultipartUploadETag(objectMetadata.getETag())
+                && !ServiceUtils.skipMd5CheckPerResponse(objectMetadata);
+    }
+
+    /**
+     * Returns the number of byte ranges of the given part size needed to
+     * download the given number of bytes.
+     */
+    static int getTotalParts(long bytesToDownload, long partSize) {
+        return (int) ((bytesToDownload + partSize - 1) / partSize);
+    }
+
+    /**
+     * This method must return a non-null object, or else the existing
+     * implementation in {@link AbstractTransfer#waitForCompletion()}
+     * would block forever.
+     *
+     * @return the downloaded file
+     */
+    @Override
+    public File call() throws Exception {
+        try {
+            latch.await();
+            download.setState(TransferState.InProgress);
+            downloadParts();
+            verifyIntegrity();
+            download.setState(TransferState.Completed);
+            return dstfile;
+        } catch (Throwable t) {
+            // Downloads aren't allowed to move from canceled to failed
+            if (download.getState() != TransferState.Canceled) {
+                download.setState(TransferState.Failed);
+            }
+            if (t instanceof Exception)
+                throw (Exception) t;
+            else
+                throw (Error) t;
+        }
+    }
+
+    private void downloadParts() throws Exception {
+        File parentDirectory = dstfile.getParentFile();
+        if (parentDirectory != null && !parentDirectory.exists()) {
+            if (!(parentDirectory.mkdirs())) {
+                throw new AmazonClientException(
+                        "Unable to create directory in the path"
+                                + parentDirectory.getAbsolutePath());
+            }
+        }
+        if (!FileLocks.lock(dstfile)) {
+            throw new FileLockException("Fail to lock " + dstfile
+                    + " for parallel download");
+        }
+        RandomAccessFile raf = null;
+        try {
+            final long fileLength = lastByte - startingByte + 1;
+            if (resumeExistingDownload && dstfile.length() != fileLength) {
+                // Fail fast to prevent data corruption
+                throw new IllegalStateException(
+                        "Expected file length to resume is " + fileLength
+                            + " but actual length is " + dstfile.length()
+                            + " for file " + dstfile);
+            }
+            raf = new RandomAccessFile(dstfile, "rw");
+            if (!resumeExistingDownload) {
+                raf.setLength(0);
+                raf.setLength(fileLength);
+            }
+            final FileChannel channel = raf.getChannel();
+
+            final List<Future<?>> helpers = new ArrayList<Future<?>>();
+            try {
+                for (int i = 0; i < getHelperCount(); i++) {
+                    helpers.add(threadPool.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            runHelper(channel);
+                        }
+                    }));
+                }
+                downloadPendingParts(channel);
+                awaitHelpers(helpers);
+                if (decryptionContext != null && resumeExistingDownload)
+                    hashCompletedParts(channel);
+                if (contentDigest != null)
+                    contentDigest.catchUp(channel);
+            } catch (Exception e) {
+                stop(helpers);
+                throw e;
+            } catch (Error e) {
+                stop(helpers);
+                throw e;
+            }
+        } finally {
+            closeQuietly(raf, log);
+            FileLocks.unlock(dstfile);
+        }
+    }
+
+    /**
+     * Accounts for the ranges completed before the download was resumed in
+     * the verification of the tag of the encrypted object.
+     */
+    private void hashCompletedParts(FileChannel channel) throws IOException {
+        for (int part : completedParts) {
+            final long partStart = startingByte + part * partSize;
+            final long partEnd = Math.min(partStart + partSize - 1, lastByte);
+            channel.position(partStart - startingByte);
+            // The channel is closed along with the file, not by this stream
+            decryptionContext.rangeStored(Channels.newInputStream(channel),
+                    partStart, partEnd);
+        }
+    }
+
+    /**
+     * Returns the number of additional tasks to submit to the thread pool;
+     * the calling task always fetches ranges itself.
+     */
+    private int getHelperCount() {
+        int helpers = pendingParts.size() - 1;
+        if (threadPool instanceof ThreadPoolExecutor) {
+            helpers = Math.min(helpers,
+                    ((ThreadPoolExecutor) threadPool).getMaximumPoolSize() - 1);
+        }
+        return Math.max(helpers, 0);
+    }
+
+    /**
+     * Fetches ranges on behalf of the calling task, unless the calling task
+     * has already finished with all ranges by the time this helper starts.
+     */
+    private void runHelper(FileChannel channel) {
+        synchronized (this) {
+            if (helpersClosed)
+                return;
+            activeHelpers++;
+        }
+        try {
+            downloadPendingParts(channel);
+        } catch (Throwable t) {
+            synchronized (this) {
+                if (helperFailure == null)
+                    helperFailure = t;
+            }
+            // Let the other tasks know not to bother
+            stopped = true;
+        } finally {
+            synchronized (this) {
+                activeHelpers--;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits for the helpers that have started to finish, and rethrows the
+     * first failure of any of them. Helpers that have not started yet would
+     * find no remaining ranges, so they are simply cancelled.
+     */
+    private void awaitHelpers(List<Future<?>> helpers) throws Exception {
+        for (Future<?> helper : helpers)
+            helper.cancel(false);
+        synchronized (this) {
+            helpersClosed = true;
+            while (activeHelpers > 0)
+                wait();
+            if (helperFailure instanceof Exception)
+                throw (Exception) helperFailure;
+            if (helperFailure instanceof Error)
+                throw (Error) helperFailure;
+        }
+    }
+
+    /**
+     * Stops all tasks of this download, and aborts the part streams still
+     * being read.
+     */
+    private void stop(List<Future<?>> helpers) {
+        stopped = true;
+        for (Future<?> helper : helpers)
+            helper.cancel(true);
+        for (S3Object s3Object : inflightObjects)
+            s3Object.getObjectContent().abort();
+    }
+
+    private void downloadPendingParts(FileChannel channel)
+            throws InterruptedException {
+        Integer part;
+        while (!stopped && (part = pendingParts.poll()) != null) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            downloadPart(channel, part);
+            if (contentDigest != null)
+                contentDigest.partCompleted(part, channel);
+            download.partCompleted(part);
+        }
+    }
+
+    /**
+     * Fetches the given byte range and writes it to its offset in the file,
+     * retrying once from the last written byte if the transfer is
+     * interrupted; or from the start of the range if it is being decrypted.
+     */
+    private void downloadPart(FileChannel channel, int part) {
+        final long partStart = startingByte + part * partSize;
+        final long partEnd = Math.min(partStart + partSize - 1, lastByte);
+        long position = partStart;
+        boolean hasRetried = false;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (;;) {
+            GetObjectRequest partRequest = createPartRequest(position, partEnd);
+            S3Object s3Object = decryptionContext == null
+                    ? s3.getObject(partRequest)
+                    : decryptionContext.getObjectRange(partRequest, position, partEnd);
+            if (s3Object == null) {
+                throw new AmazonClientException("Unable to download part "
+                        + part + " of " + req.getBucketName() + "/"
+                        + req.getKey()
+                        + " because the object has changed since the download started");
+            }
+            inflightObjects.add(s3Object);
+            try {
+                InputStream content = s3Object.getObjectContent();
+                int bytesRead;
+                while ((bytesRead = content.read(buffer)) > -1) {
+                    final long offset = position - startingByte;
+                    ByteBuffer bb = ByteBuffer.wrap(buffer, 0, bytesRead);
+                    while (bb.hasRemaining())
+                        position += channel.write(bb, position - startingByte);
+                    if (contentDigest != null)
+                        contentDigest.written(buffer, bytesRead, offset);
+                }
+                if (position != partEnd + 1) {
+                    throw new IOException("Premature end of content for part "
+                            + part + ": expected " + (partEnd - partStart + 1)
+                            + " bytes but received " + (position - partStart));
+                }
+                return;
+            } catch (IOException e) {
+                s3Object.getObjectContent().abort();
+                if (stopped || hasRetried
+                        || Thread.currentThread().isInterrupted()) {
+                    throw new AmazonClientException(
+                            "Unable to store object contents to disk: "
+                                    + e.getMessage(), e);
+                }
+                log.info("Retry the download of part " + part + " of object "
+                        + req.getKey() + " (bucket " + req.getBucketName()
+                        + ") from byte " + position, e);
+                hasRetried = true;
+                if (decryptionContext != null) {
+                    // The ciphertext of the whole range must be hashed
+                    position = partStart;
+                }
+            } finally {
+                inflightObjects.remove(s3Object);
+                closeQuietly(s3Object.getObjectContent(), log);
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the original request for the given byte range, pinned
+     * to the ETag of the object when the download started.
+     */
+    private GetObjectRequest createPartRequest(long start, long end) {
+        GetObjectRequest partRequest = (GetObjectRequest) req.clone();
+        partRequest.setRange(start, end);
+        List<String> eTags = new ArrayList<String>(1);
+        eTags.add(objectMetadata.getETag());
+        partRequest.setMatchingETagConstraints(eTags);
+        return partRequest;
+    }
+
+    /**
+     * Compares the MD5 of the downloaded file with the ETag of the object,
+     * when the whole object was downloaded and its ETag is an MD5; or, for an
+     * encrypted object, verifies its tag instead. The file is deleted if the
+     * tag doesn't match, so that no unauthenticated content is left behind.
+     */
+    private void verifyIntegrity() {
+        if (decryptionContext != null) {
+            try {
+                decryptionContext.verifyTag(createPartRequest(0, 0));
+            } catch (SecurityException e) {
+                if (!dstfile.delete())
+                    log.warn("Unable to delete " + dstfile + " after failing to authenticate its content");
+                throw e;
+            }
+            return;
+        }
+        if (contentDigest == null)
+            return;
+        byte[] clientSideHash = contentDigest.digest();
+        if (clientSideHash == null)
+            return;
+        byte[] serverSideHash = BinaryUtils.fromHex(objectMetadata.getETag());
+        if (!Arrays.equals(clientSideHash, serverSideHash)) {
+            throw new AmazonClientException("Unable to verify integrity of data download.  " +
+                    "Client calculated content hash didn't match hash calculated by Amazon S3.  " +
+                    "The data stored in '" + dstfile.getAbsolutePath() + "' may be corrupt.");
+        }
+    }
+
+    /**
+     * Computes the MD5 of the content of the file in order, as its byte
+     * ranges are written by any number of tasks. Bytes written right where
+     * the digest has got to are digested as they are written; the ranges
+     * completed ahead of it are read back from the file, by one task at a
+     * time, once all the ranges before them are digested.
+     */
+    static final class ContentDigest {
+        private final MessageDigest md5;
+        private final long fileLength;
+        private final long partSize;
+
+        /** Guarded by this; the byte ranges completely written to the file. */
+        private final BitSet completedParts = new BitSet();
+
+        /** Guarded by this; the number of bytes digested from the start of the file. */
+        private long digested;
+
+        /** Guarded by this; true while a task reads completed ranges back into the digest. */
+        private boolean catchingUp;
+
+        /** Guarded by this; true if a range could not be read back. */
+        private boolean failed;
+
+        private ContentDigest(MessageDigest md5, long fileLength, long partSize,
+                int[] completedParts) {
+            this.md5 = md5;
+            this.fileLength = fileLength;
+            this.partSize = partSize;
+            for (int part : completedParts)
+                this.completedParts.set(part);
+        }
+
+        /**
+         * Returns a digest for a file of the given length, some of whose byte
+         * ranges are already on disk; or null if MD5 is not available.
+         */
+        static ContentDigest newInstance(long fileLength, long partSize,
+                int[] completedParts) {
+            try {
+                return new ContentDigest(MessageDigest.getInstance("MD5"),
+                        fileLength, partSize, completedParts);
+            } catch (NoSuchAlgorithmException e) {
+                log.warn("Unable to calculate MD5 hash to validate download: " + e.getMessage(), e);
+                return null;
+            }
+        }
+
+        /**
+         * Digests the given bytes just written at the given offset of the
+         * file, if they are the next ones to be digested.
+         */
+        synchronized void written(byte[] b, int len, long offset) {
+            if (!catchingUp && offset == digested) {
+                md5.update(b, 0, len);
+                digested += len;
+            }
+        }
+
+        /**
+         * Records that the given byte range has been completely written, and
+         * digests the ranges which can then be digested in order.
+         */
+        void partCompleted(int part, FileChannel channel) {
+            synchronized (this) {
+                completedParts.set(part);
+            }
+            catchUp(channel);
+        }
+
+        /**
+         * Reads back into the digest the completed byte ranges following the
+         * bytes digested so far, unless another task is already doing so.
+         */
+        void catchUp(FileChannel channel) {
+            synchronized (this) {
+                if (catchingUp)
+                    return;
+                catchingUp = true;
+            }
+            ByteBuffer bb = ByteBuffer.allocate(BUFFER_SIZE);
+            for (;;) {
+                final long from;
+                final long to;
+                synchronized (this) {
+                    int part = (int) (digested / partSize);
+                    if (failed || digested == fileLength
+                            || !completedParts.get(part)) {
+                        catchingUp = false;
+                        return;
+                    }
+                    from = digested;
+                    to = Math.min((part + 1) * partSize, fileLength);
+                }
+                // The digest is only updated by the task catching up
+                long position = from;
+                try {
+                    while (position < to) {
+                        bb.clear();
+                        bb.limit((int) Math.min(bb.capacity(), to - position));
+                        int bytesRead = channel.read(bb, position);
+                        if (bytesRead < 0)
+                            throw new IOException("Unexpected end of file at " + position);
+                        md5.update(bb.array(), 0, bytesRead);
+                        position += bytesRead;
+                    }
+                } catch (IOException e) {
+                    log.warn("Unable to calculate MD5 hash to validate download: " + e.getMessage(), e);
+                    synchronized (this) {
+                        failed = true;
+                        catchingUp = false;
+                    }
+                    return;
+                }
+                synchronized (this) {
+                    digested = to;
+                }
+            }
+        }
+
+        /**
+         * Returns the MD5 of the whole file; or null if it could not be
+         * computed.
+         */
+        synchronized byte[] digest() {
+            return failed || digested != fileLength ? null : md5.digest();
+        }
+    }
+}
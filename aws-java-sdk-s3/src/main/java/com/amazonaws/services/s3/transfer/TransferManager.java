@@ -46,8 +46,11 @@ import com.amazonaws.event.ProgressListener;
 import com.amazonaws.event.ProgressListenerChain;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.AmazonS3Encryption;
+import com.amazonaws.services.s3.AmazonS3EncryptionClient;
 import com.amazonaws.services.s3.internal.FileLocks;
 import com.amazonaws.services.s3.internal.Mimetypes;
+import com.amazonaws.services.s3.internal.crypto.ParallelDecryptionContext;
 import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
 import com.amazonaws.services.s3.model.CopyObjectRequest;
 import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
@@ -743,6 +746,20 @@ public class TransferManager {
             final File file, final TransferStateChangeListener stateListener,
             final S3ProgressListener s3progressListener,
             final boolean resumeExistingDownload)
+    {
+        return doDownload(getObjectRequest, file, stateListener,
+                s3progressListener, resumeExistingDownload, null);
+    }
+
+    /**
+     * Same as above, but resumes a paused parallel download from the byte
+     * ranges recorded in the given persistable download, if any.
+     */
+    private Download doDownload(final GetObjectRequest getObjectRequest,
+            final File file, final TransferStateChangeListener stateListener,
+            final S3ProgressListener s3progressListener,
+            final boolean resumeExistingDownload,
+            final PersistableDownload persistableDownload)
     {
         appendSingleObjectUserAgent(getObjectRequest);
         String description = "Downloading from " + getObjectRequest.getBucketName() + "/" + getObjectRequest.getKey();
@@ -763,6 +780,7 @@ public class TransferManager {
 
         long startingByte = 0;
         long lastByte;
+        ObjectMetadata objectMetadata = null;
 
         long[] range = getObjectRequest.getRange();
         if (range != null
@@ -770,17 +788,50 @@ public class TransferManager {
             startingByte = range[0];
             lastByte = range[1];
         } else {
-            GetObjectMetadataRequest getObjectMetadataRequest = new GetObjectMetadataRequest(
-                    getObjectRequest.getBucketName(), getObjectRequest.getKey());
-            if (getObjectRequest.getSSECustomerKey() != null)
-                getObjectMetadataRequest.setSSECustomerKey(getObjectRequest.getSSECustomerKey());
-            if (getObjectRequest.getVersionId() != null)
-                getObjectMetadataRequest.setVersionId(getObjectRequest.getVersionId());
-            final ObjectMetadata objectMetadata = s3.getObjectMetadata(getObjectMetadataRequest);
+            objectMetadata = getObjectMetadata(getObjectRequest);
 
             lastByte = objectMetadata.getContentLength() - 1;
         }
         final long origStartingByte = startingByte;
+
+        final boolean isUsingEncryption = s3 instanceof AmazonS3Encryption;
+        final boolean resumeParallelDownload = resumeExistingDownload
+                && persistableDownload != null
+                && persistableDownload.getPartSize() > 0;
+        boolean useParallelDownload = resumeParallelDownload
+                || (!resumeExistingDownload
+                        && TransferManagerUtils.shouldUseParallelDownload(
+                                isUsingEncryption && !(s3 instanceof AmazonS3EncryptionClient),
+                                lastByte - startingByte + 1, configuration));
+        ParallelDecryptionContext decryptionContext = null;
+        if (useParallelDownload) {
+            if (objectMetadata == null)
+                objectMetadata = getObjectMetadata(getObjectRequest);
+            if (isUsingEncryption) {
+                // Only objects encrypted with AES/GCM can have their ranges
+                // decrypted independently, by an AmazonS3EncryptionClient
+                if (s3 instanceof AmazonS3EncryptionClient) {
+                    decryptionContext = ((AmazonS3EncryptionClient) s3)
+                            .newParallelDecryptionContext(getObjectRequest, objectMetadata);
+                }
+                if (decryptionContext != null) {
+                    lastByte = Math.min(lastByte,
+                            decryptionContext.getContentLength() - 1);
+                } else {
+                    useParallelDownload = false;
+                }
+            }
+        }
+        // The ranges completed by a paused parallel download aren't
+        // contiguous, so a single stream download starts over instead
+        final boolean appendToFile = resumeExistingDownload && !resumeParallelDownload;
+        if (useParallelDownload) {
+            return doParallelDownload(getObjectRequest, file, stateListener,
+                    description, transferProgress, listenerChain,
+                    objectMetadata, startingByte, lastByte,
+                    resumeParallelDownload ? persistableDownload : null,
+                    decryptionContext);
+        }
         // We still pass the unfiltered listener chain into DownloadImpl
         final DownloadImpl download = new DownloadImpl(description,
                 transferProgress, listenerChain, null, stateListener,
@@ -790,7 +841,7 @@ public class TransferManager {
         transferProgress.setTotalBytesToTransfer(totalBytesToDownload);
 
         long fileLength = -1;
-        if (resumeExistingDownload) {
+        if (appendToFile) {
             if (!FileLocks.lock(file)) {
                 throw new FileLockException("Fail to lock " + file
                         + " for resume download");
@@ -824,13 +875,97 @@ public class TransferManager {
         final CountDownLatch latch = new CountDownLatch(1);
         Future<?> future = threadPool.submit(
             new DownloadCallable(s3, latch,
-                getObjectRequest, resumeExistingDownload, download, file,
+                getObjectRequest, appendToFile, download, file,
                 origStartingByte, fileLength));
         download.setMonitor(new DownloadMonitor(download, future));
         latch.countDown();
         return download;
     }
 
+    /**
+     * Schedules a download that fetches the object as parallel byte ranges,
+     * optionally resuming from the ranges already completed by a paused
+     * parallel download. The ranges of an encrypted object are decrypted with
+     * the given decryption context, if any.
+     */
+    private Download doParallelDownload(final GetObjectRequest getObjectRequest,
+            final File file, final TransferStateChangeListener stateListener,
+            final String description, final TransferProgress transferProgress,
+            final S3ProgressListenerChain listenerChain,
+            final ObjectMetadata objectMetadata, final long startingByte,
+            final long lastByte, final PersistableDownload persistableDownload,
+            final ParallelDecryptionContext decryptionContext)
+    {
+        final boolean resumeExistingDownload = persistableDownload != null;
+        final long partSize;
+        final int[] completedParts;
+        if (resumeExistingDownload) {
+            if (persistableDownload.getETag() != null
+                    && !persistableDownload.getETag().equals(objectMetadata.getETag())) {
+                throw new AmazonClientException("Unable to resume download of "
+                        + getObjectRequest.getBucketName() + "/"
+                        + getObjectRequest.getKey()
+                        + " because the object has changed since the download was paused");
+            }
+            partSize = persistableDownload.getPartSize();
+            completedParts = persistableDownload.getCompletedParts();
+        } else {
+            long minimumPartSize = configuration.getMinimumDownloadPartSize();
+            if (decryptionContext != null && minimumPartSize % 16 > 0) {
+                // When decrypting, ranges must line up along cipher block
+                // boundaries for the tag of the object to be verified
+                minimumPartSize = minimumPartSize - (minimumPartSize % 16) + 16;
+            }
+            partSize = minimumPartSize;
+            completedParts = null;
+        }
+        // We still pass the unfiltered listener chain into DownloadImpl
+        final DownloadImpl download = new DownloadImpl(description,
+                transferProgress, listenerChain, null, stateListener,
+                getObjectRequest, file, partSize, objectMetadata.getETag(),
+                completedParts);
+
+        long totalBytesToDownload = lastByte - startingByte + 1;
+        if (totalBytesToDownload < 0) {
+            throw new IllegalArgumentException(
+                    "Unable to determine the range for download operation.");
+        }
+        transferProgress.setTotalBytesToTransfer(totalBytesToDownload);
+        if (completedParts != null) {
+            long completedBytes = 0;
+            for (int part : completedParts) {
+                long partStart = startingByte + part * partSize;
+                completedBytes += Math.max(0,
+                        Math.min(partSize, lastByte - partStart + 1));
+            }
+            transferProgress.updateProgress(completedBytes);
+        }
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        Future<?> future = threadPool.submit(
+            new ParallelDownloadCallable(s3, threadPool, latch,
+                getObjectRequest, resumeExistingDownload, download, file,
+                objectMetadata, startingByte, lastByte, partSize,
+                completedParts, decryptionContext));
+        download.setMonitor(new DownloadMonitor(download, future));
+        latch.countDown();
+        return download;
+    }
+
+    /**
+     * Returns the metadata of the object to be downloaded by the given
+     * request.
+     */
+    private ObjectMetadata getObjectMetadata(GetObjectRequest getObjectRequest) {
+        GetObjectMetadataRequest getObjectMetadataRequest = new GetObjectMetadataRequest(
+                getObjectRequest.getBucketName(), getObjectRequest.getKey());
+        if (getObjectRequest.getSSECustomerKey() != null)
+            getObjectMetadataRequest.setSSECustomerKey(getObjectRequest.getSSECustomerKey());
+        if (getObjectRequest.getVersionId() != null)
+            getObjectMetadataRequest.setVersionId(getObjectRequest.getVersionId());
+        return s3.getObjectMetadata(getObjectMetadataRequest);
+    }
+
     /**
      * Downloads all objects in the virtual directory designated by the
      * keyPrefix given to the destination directory given. All virtual
@@ -1546,7 +1681,7 @@ public class TransferManager {
         request.setResponseHeaders(persistableDownload.getResponseHeaders());
 
         return doDownload(request, new File(persistableDownload.getFile()), null, null,
-                APPEND_MODE);
+                APPEND_MODE, persistableDownload);
     }
 
     /**
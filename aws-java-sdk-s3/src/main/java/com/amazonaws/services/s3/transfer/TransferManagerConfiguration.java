@@ -39,6 +39,15 @@ public class TransferManagerConfiguration {
     /** Default minimum size of each part for multi-part copy. */
     private static final long DEFAULT_MINIMUM_COPY_PART_SIZE = 100 * MB;
 
+    /** Default size of each byte range fetched by a parallel download. */
+    private static final long DEFAULT_MINIMUM_DOWNLOAD_PART_SIZE = 16 * MB;
+
+    /**
+     * Default size threshold for when to use parallel ranged downloads;
+     * parallel downloads are disabled unless explicitly configured.
+     */
+    private static final long DEFAULT_PARALLEL_DOWNLOAD_THRESHOLD = Long.MAX_VALUE;
+
     /**
      * The minimum part size for upload parts. Decreasing the minimum part size
      * will cause multipart uploads to be split into a larger number of smaller
@@ -77,6 +86,23 @@ public class TransferManagerConfiguration {
      */
     private long multipartCopyPartSize = DEFAULT_MINIMUM_COPY_PART_SIZE;
 
+    /**
+     * The size in bytes of each byte range fetched when an object is
+     * downloaded with parallel ranged GET requests. Each range is written
+     * directly to its offset in the destination file, and is the unit at
+     * which a paused parallel download is resumed.
+     */
+    private long minimumDownloadPartSize = DEFAULT_MINIMUM_DOWNLOAD_PART_SIZE;
+
+    /**
+     * The size threshold, in bytes, for when to download an object using
+     * parallel ranged GET requests. Downloads over this size will be split
+     * into byte ranges fetched concurrently on the transfer manager's thread
+     * pool, while downloads smaller than this threshold will use a single
+     * connection to download the whole object.
+     */
+    private long parallelDownloadThreshold = DEFAULT_PARALLEL_DOWNLOAD_THRESHOLD;
+
     /**
      * Returns the minimum part size for upload parts.
      * Decreasing the minimum part size causes
@@ -192,4 +218,62 @@ public class TransferManagerConfiguration {
     public void setMultipartCopyThreshold(long multipartCopyThreshold) {
         this.multipartCopyThreshold = multipartCopyThreshold;
     }
+
+    /**
+     * Returns the size in bytes of each byte range fetched when an object is
+     * downloaded with parallel ranged GET requests.
+     *
+     * @return The size in bytes of each byte range of a parallel download.
+     */
+    public long getMinimumDownloadPartSize() {
+        return minimumDownloadPartSize;
+    }
+
+    /**
+     * Sets the size in bytes of each byte range fetched when an object is
+     * downloaded with parallel ranged GET requests. Decreasing the part size
+     * increases the number of GET requests sent to Amazon S3, but allows a
+     * paused download to be resumed at a finer granularity.
+     *
+     * @param minimumDownloadPartSize
+     *            The size in bytes of each byte range of a parallel download.
+     */
+    public void setMinimumDownloadPartSize(long minimumDownloadPartSize) {
+        this.minimumDownloadPartSize = minimumDownloadPartSize;
+    }
+
+    /**
+     * Returns the size threshold in bytes for when to download an object
+     * using parallel ranged GET requests. Parallel downloads are disabled by
+     * default.
+     *
+     * @return The size threshold in bytes for when to use parallel downloads.
+     */
+    public long getParallelDownloadThreshold() {
+        return parallelDownloadThreshold;
+    }
+
+    /**
+     * Sets the size threshold in bytes for when to download an object using
+     * parallel ranged GET requests. Downloads over this size will be split
+     * into byte ranges that are fetched concurrently on the transfer
+     * manager's thread pool and written directly to their offsets in the
+     * destination file, while downloads smaller than this threshold will use
+     * a single connection to download the whole object.
+     * <p>
+     * Objects encrypted with AES/GCM by
+     * {@link com.amazonaws.services.s3.AmazonS3EncryptionClient} are also
+     * downloaded in parallel: each range is decrypted on its own, and the
+     * authentication tag is verified once all the ranges are written, the
+     * destination file being deleted if it doesn't match. Objects encrypted
+     * otherwise, and range requests in strict authenticated encryption mode,
+     * are downloaded and decrypted as a single stream.
+     *
+     * @param parallelDownloadThreshold
+     *            The size threshold in bytes for when to use parallel
+     *            downloads.
+     */
+    public void setParallelDownloadThreshold(long parallelDownloadThreshold) {
+        this.parallelDownloadThreshold = parallelDownloadThreshold;
+    }
 }
\ No newline at end of file
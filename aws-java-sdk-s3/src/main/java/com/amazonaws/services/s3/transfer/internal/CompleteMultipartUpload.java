@@ -109,7 +109,10 @@ public class CompleteMultipartUpload implements Callable<UploadResult> {
     /**
      * Collects the Part ETags for initiating the complete multi-part upload
      * request. This is blocking as it waits until all the upload part threads
-     * complete.
+     * complete. If a part fails, the parts still in progress are canceled,
+     * since the upload can no longer complete; this also releases a part
+     * waiting for the others, as the last part of a concurrently encrypted
+     * upload does.
      */
     private List<PartETag> collectPartETags() {
 
@@ -119,6 +122,9 @@ public class CompleteMultipartUpload implements Callable<UploadResult> {
             try {
                 partETags.add(future.get());
             } catch (Exception e) {
+                for (Future<PartETag> f : futures) {
+                    f.cancel(true);
+                }
                 throw new AmazonClientException(
                         "Unable to complete multi-part upload. Individual part upload failed : "
                                 + e.getCause().getMessage(), e.getCause());
@@ -16,6 +16,11 @@ package com.amazonaws.services.s3.transfer.internal;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.amazonaws.event.ProgressEventType;
 import com.amazonaws.event.ProgressListenerChain;
@@ -28,19 +33,65 @@ import com.amazonaws.services.s3.transfer.TransferProgress;
 import com.amazonaws.services.s3.transfer.exception.PauseException;
 
 public class DownloadImpl extends AbstractTransfer implements Download {
+    /**
+     * The minimum interval between the states published as the byte ranges
+     * of a parallel download complete.
+     */
+    static final long PERSIST_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
     private S3Object s3Object;
 
     /**
      * Information to resume if the download is paused.
      */
-    private final PersistableDownload persistableDownload;
+    private volatile PersistableDownload persistableDownload;
+
+    private final GetObjectRequest getObjectRequest;
+    private final File file;
+
+    /**
+     * The size of each byte range of a parallel download; or zero if the
+     * object is downloaded over a single connection.
+     */
+    private final long partSize;
+
+    /** The ETag of the object being downloaded in parallel. */
+    private final String eTag;
+
+    /** The byte ranges of a parallel download already written to the file. */
+    private final Set<Integer> completedParts = new ConcurrentSkipListSet<Integer>();
+
+    /** The time at which the state of the download was last published. */
+    private final AtomicLong lastPersisted = new AtomicLong(System.nanoTime());
 
     public DownloadImpl(String description, TransferProgress transferProgress,
             ProgressListenerChain progressListenerChain, S3Object s3Object,
             TransferStateChangeListener listener,
             GetObjectRequest getObjectRequest, File file) {
+        this(description, transferProgress, progressListenerChain, s3Object,
+                listener, getObjectRequest, file, 0, null, null);
+    }
+
+    /**
+     * Constructs a download that fetches the object as parallel byte ranges
+     * of the given part size, some of which may have already been completed
+     * by an earlier, paused download.
+     */
+    public DownloadImpl(String description, TransferProgress transferProgress,
+            ProgressListenerChain progressListenerChain, S3Object s3Object,
+            TransferStateChangeListener listener,
+            GetObjectRequest getObjectRequest, File file, long partSize,
+            String eTag, int[] completedParts) {
         super(description, transferProgress, progressListenerChain, listener);
         this.s3Object = s3Object;
+        this.getObjectRequest = getObjectRequest;
+        this.file = file;
+        this.partSize = partSize;
+        this.eTag = eTag;
+        if (completedParts != null) {
+            for (int part : completedParts)
+                this.completedParts.add(part);
+        }
         this.persistableDownload = captureDownloadState(getObjectRequest, file);
         S3ProgressPublisher.publishTransferPersistable(progressListenerChain,
                 persistableDownload);
@@ -118,6 +169,27 @@ public class DownloadImpl extends AbstractTransfer implements Download {
         }
     }
 
+    /**
+     * Records that the given byte range of a parallel download has been
+     * written to the file, and publishes the updated state so that a paused
+     * download can be resumed from the remaining ranges. The state is
+     * published at most once per {@link #PERSIST_INTERVAL_NANOS}; a state
+     * missing the latest ranges only has them downloaded again on resume.
+     */
+    public void partCompleted(int partNumber) {
+        completedParts.add(partNumber);
+        if (persistableDownload == null)
+            return;
+        final long last = lastPersisted.get();
+        final long now = System.nanoTime();
+        if (now - last < PERSIST_INTERVAL_NANOS
+                || !lastPersisted.compareAndSet(last, now))
+            return;
+        persistableDownload = captureDownloadState(getObjectRequest, file);
+        S3ProgressPublisher.publishTransferPersistable(listenerChain,
+                persistableDownload);
+    }
+
     /**
      * Returns the captured state of the download; or null if it should not be
      * captured (for security reason).
@@ -130,11 +202,25 @@ public class DownloadImpl extends AbstractTransfer implements Download {
                     getObjectRequest.getKey(), getObjectRequest.getVersionId(),
                     getObjectRequest.getRange(),
                     getObjectRequest.getResponseHeaders(),
-                    getObjectRequest.isRequesterPays(), file.getAbsolutePath());
+                    getObjectRequest.isRequesterPays(), file.getAbsolutePath(),
+                    partSize, getCompletedParts(), eTag);
         }
         return null;
     }
 
+    private int[] getCompletedParts() {
+        if (partSize == 0)
+            return null;
+        int[] parts = new int[completedParts.size()];
+        int i = 0;
+        for (Integer part : completedParts) {
+            if (i == parts.length)
+                break;
+            parts[i++] = part;
+        }
+        return i == parts.length ? parts : Arrays.copyOf(parts, i);
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -150,6 +236,8 @@ public class DownloadImpl extends AbstractTransfer implements Download {
             throw new PauseException(TransferManagerUtils.determinePauseStatus(
                     currentState, forceCancel));
         }
+        // Includes the ranges completed since the state was last published
+        persistableDownload = captureDownloadState(getObjectRequest, file);
         return persistableDownload;
     }
 }
\ No newline at end of file
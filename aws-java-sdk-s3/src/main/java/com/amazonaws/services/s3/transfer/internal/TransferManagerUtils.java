@@ -57,14 +57,16 @@ public class TransferManagerUtils {
      * @param putObjectRequest
      *            The request to check.
      * @param isUsingEncryption
-     *            True if the upload is an encrypted upload, otherwise false.
+     *            True if the upload is an encrypted upload whose parts must be
+     *            encrypted in series, otherwise false.
      *
      * @return True if this request can use parallel part uploads for faster
      *         uploads.
      */
     public static boolean isUploadParallelizable(final PutObjectRequest putObjectRequest, final boolean isUsingEncryption) {
         // Each uploaded part in an encrypted upload depends on the encryption context
-        // from the previous upload, so we cannot parallelize encrypted upload parts.
+        // from the previous upload, so we cannot parallelize encrypted upload parts,
+        // unless the client encrypts each part independently.
         if (isUsingEncryption) return false;
 
         // Otherwise, if there's a file, we can process the uploads concurrently.
@@ -164,6 +166,33 @@ public class TransferManagerUtils {
                 configuration.getMultipartCopyPartSize());
     }
 
+    /**
+     * Returns true if the specified download should be processed as parallel
+     * ranged GET requests (instead of a single GET request).
+     *
+     * @param isUsingEncryption
+     *            True if the download is an encrypted download that must be
+     *            decrypted as a single stream, otherwise false.
+     * @param bytesToDownload
+     *            The number of bytes to download.
+     * @param configuration
+     *            Configuration settings controlling how transfer manager
+     *            processes requests.
+     *
+     * @return True if the specified request should be processed as a
+     *         parallel download.
+     */
+    public static boolean shouldUseParallelDownload(boolean isUsingEncryption,
+            long bytesToDownload, TransferManagerConfiguration configuration) {
+        // The content of an encrypted object must be decrypted as a single
+        // stream, so we cannot fetch and write its ranges independently,
+        // unless the client can decrypt each range independently.
+        if (isUsingEncryption) return false;
+
+        return bytesToDownload > configuration.getParallelDownloadThreshold()
+            && bytesToDownload > configuration.getMinimumDownloadPartSize();
+    }
+
     /**
      * Determines the pause status based on the current state of transfer.
      */
@@ -33,6 +33,7 @@ import com.amazonaws.event.ProgressEventType;
 import com.amazonaws.event.ProgressListenerChain;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3Encryption;
+import com.amazonaws.services.s3.AmazonS3EncryptionClient;
 import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
 import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
 import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
@@ -181,8 +182,15 @@ public class UploadCallable implements Callable<UploadResult> {
 
             UploadPartRequestFactory requestFactory = new UploadPartRequestFactory(origReq, multipartUploadId, optimalPartSize);
 
-            if (TransferManagerUtils.isUploadParallelizable(origReq, isUsingEncryption)) {
-                captureUploadStateIfPossible();
+            // Parts encrypted with AES/GCM can be uploaded in parallel if so
+            // configured; the encryption context is only held in memory
+            // though, so such uploads cannot be persisted and resumed.
+            boolean isEncryptedInSeries = isUsingEncryption
+                    && !(s3 instanceof AmazonS3EncryptionClient
+                            && ((AmazonS3EncryptionClient) s3).isMultipartUploadParallelizable());
+            if (TransferManagerUtils.isUploadParallelizable(origReq, isEncryptedInSeries)) {
+                if (!isUsingEncryption)
+                    captureUploadStateIfPossible();
                 uploadPartsInParallel(requestFactory, multipartUploadId);
                 return null;
             } else {
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.util.BinaryUtils;
+
+/**
+ * Compares the aws-chunked encoding of payloads around the chunk boundaries
+ * with the encoding as it was done before chunks were streamed from a reused
+ * buffer: each chunk copied with its header and trailer, and signed in turn.
+ */
+public class AwsChunkedEncodingInputStreamTest {
+
+    private static final int CHUNK_SIZE = 128 * 1024;
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private static final int[] SIZES = { 0, 1, 100, CHUNK_SIZE - 1, CHUNK_SIZE, CHUNK_SIZE + 1,
+            2 * CHUNK_SIZE, 2 * CHUNK_SIZE + 7, 300000 };
+
+    private static final byte[] SIGNING_KEY = "signing-key".getBytes(UTF8);
+
+    private static final String DATE_TIME = "20150830T123600Z";
+
+    private static final String KEY_PATH = "20150830/us-east-1/s3/aws4_request";
+
+    private static final String HEADER_SIGNATURE = "4f232c4386841ef735655705268965c44a0e4690baa4adea153f7db9fa80a0a9";
+
+    private final AWS4Signer signer = new AWS4Signer();
+
+    @Test
+    public void testBulkReads() throws IOException {
+        for (int size : SIZES) {
+            byte[] payload = payload(size);
+            byte[] expected = encodeAsBefore(payload);
+            assertEquals(AwsChunkedEncodingInputStream.calculateStreamContentLength(size), expected.length);
+            assertArrayEquals("size " + size, expected, readAll(newStream(new ByteArrayInputStream(payload)), 4096));
+            assertArrayEquals("size " + size, expected,
+                    readAll(newStream(new ByteArrayInputStream(payload)), 3 * CHUNK_SIZE));
+            // Wrapped stream returning less than asked for
+            assertArrayEquals("size " + size, expected, readAll(newStream(new TrickleInputStream(payload)), 4096));
+        }
+    }
+
+    @Test
+    public void testSingleByteReads() throws IOException {
+        for (int size : new int[] { 0, 1, CHUNK_SIZE - 1, CHUNK_SIZE + 1 }) {
+            byte[] payload = payload(size);
+            assertArrayEquals("size " + size, encodeAsBefore(payload),
+                    readAll(newStream(new ByteArrayInputStream(payload)), 1));
+        }
+    }
+
+    @Test
+    public void testResetWithMarkSupported() throws IOException {
+        for (int size : SIZES) {
+            byte[] payload = payload(size);
+            checkReset(payload, newStream(new ByteArrayInputStream(payload)));
+        }
+    }
+
+    @Test
+    public void testResetWithoutMarkSupported() throws IOException {
+        for (int size : SIZES) {
+            // Replayed from a buffer of 256K at most
+            if (size <= BUFFER_SIZE) {
+                byte[] payload = payload(size);
+                checkReset(payload, newStream(new TrickleInputStream(payload)));
+            }
+        }
+
+        AwsChunkedEncodingInputStream stream = newStream(new TrickleInputStream(payload(BUFFER_SIZE + 1)));
+        stream.mark(-1);
+        readAll(stream, 4096);
+        try {
+            stream.reset();
+            fail();
+        } catch (AmazonClientException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("not repeatable"));
+        }
+    }
+
+    @Test
+    public void testSkip() throws IOException {
+        byte[] payload = payload(2 * CHUNK_SIZE + 7);
+        byte[] expected = encodeAsBefore(payload);
+        AwsChunkedEncodingInputStream stream = newStream(new ByteArrayInputStream(payload));
+        assertEquals(CHUNK_SIZE + 10, stream.skip(CHUNK_SIZE + 10));
+        byte[] rest = readAll(stream, 4096);
+        assertArrayEquals(Arrays.copyOfRange(expected, CHUNK_SIZE + 10, expected.length), rest);
+        assertEquals(0, stream.skip(10));
+    }
+
+    /**
+     * Reads part of the stream, resets it and reads it all, then re-signs it
+     * as the signer does for a retry: wrapped in a new stream, reset in turn
+     * without being marked again.
+     */
+    private void checkReset(byte[] payload, AwsChunkedEncodingInputStream stream) throws IOException {
+        byte[] expected = encodeAsBefore(payload);
+        stream.mark(-1);
+        byte[] partial = new byte[Math.min(expected.length, CHUNK_SIZE + 500)];
+        int read = 0;
+        while (read < partial.length) {
+            read += stream.read(partial, read, partial.length - read);
+        }
+        stream.reset();
+        assertArrayEquals("size " + payload.length, expected, readAll(stream, 1000));
+
+        stream.reset();
+        AwsChunkedEncodingInputStream resigned = new AwsChunkedEncodingInputStream(stream, SIGNING_KEY,
+                DATE_TIME, KEY_PATH, HEADER_SIGNATURE, signer);
+        assertArrayEquals("size " + payload.length, expected, readAll(resigned, 4096));
+        resigned.reset();
+        assertArrayEquals("size " + payload.length, expected, readAll(resigned, 7));
+    }
+
+    private AwsChunkedEncodingInputStream newStream(InputStream in) {
+        return new AwsChunkedEncodingInputStream(in, SIGNING_KEY, DATE_TIME, KEY_PATH, HEADER_SIGNATURE, signer);
+    }
+
+    /**
+     * The encoding as produced before, each chunk signed with its string to
+     * sign chained to the signature of the prior chunk.
+     */
+    private static byte[] encodeAsBefore(byte[] payload) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(SIGNING_KEY, "HmacSHA256"));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            String priorSignature = HEADER_SIGNATURE;
+            int offset = 0;
+            while (true) {
+                byte[] chunk = Arrays.copyOfRange(payload, offset, Math.min(payload.length, offset + CHUNK_SIZE));
+                offset += chunk.length;
+                String stringToSign = "AWS4-HMAC-SHA256-PAYLOAD\n" + DATE_TIME + "\n" + KEY_PATH + "\n"
+                        + priorSignature + "\n" + AbstractAWSSigner.EMPTY_STRING_SHA256_HEX + "\n"
+                        + BinaryUtils.toHex(sha256.digest(chunk));
+                String signature = BinaryUtils.toHex(mac.doFinal(stringToSign.getBytes(UTF8)));
+                priorSignature = signature;
+                byte[] header = (Integer.toHexString(chunk.length) + ";chunk-signature=" + signature + "\r\n")
+                        .getBytes(UTF8);
+                byte[] signedChunk = new byte[header.length + chunk.length + 2];
+                System.arraycopy(header, 0, signedChunk, 0, header.length);
+                System.arraycopy(chunk, 0, signedChunk, header.length, chunk.length);
+                signedChunk[signedChunk.length - 2] = '\r';
+                signedChunk[signedChunk.length - 1] = '\n';
+                out.write(signedChunk);
+                if (chunk.length == 0) {
+                    return out.toByteArray();
+                }
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] readAll(InputStream in, int readSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[readSize];
+        while (true) {
+            int count;
+            if (readSize == 1) {
+                int b = in.read();
+                if (b == -1) {
+                    break;
+                }
+                out.write(b);
+                continue;
+            }
+            count = in.read(buffer, 0, readSize);
+            if (count == -1) {
+                break;
+            }
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] payload(int size) {
+        byte[] payload = new byte[size];
+        new Random(size).nextBytes(payload);
+        return payload;
+    }
+
+    /**
+     * A stream without mark support, returning at most 1000 bytes per read.
+     */
+    private static class TrickleInputStream extends FilterInputStream {
+
+        TrickleInputStream(byte[] payload) {
+            super(new ByteArrayInputStream(payload));
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 1000));
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
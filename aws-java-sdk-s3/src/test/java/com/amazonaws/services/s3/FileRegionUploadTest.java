@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.internal.FileRegionInputStream;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+
+/**
+ * Checks how the content of file uploads is given to the http client: as a
+ * file region written directly from the file, with its MD5 hash computed
+ * beforehand; or, when signed with aws-chunked encoding, through the length
+ * check and MD5-calculating streams.
+ */
+public class FileRegionUploadTest {
+
+    private static final int PART_SIZE = 64 * 1024;
+
+    private static File file;
+    private static byte[] content;
+
+    @BeforeClass
+    public static void createFile() throws IOException {
+        content = new byte[3 * PART_SIZE + 100];
+        new Random(7).nextBytes(content);
+        file = File.createTempFile("upload", ".bin");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+
+    @AfterClass
+    public static void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void testUploadPartWrittenAsFileRegion() {
+        Request<?> request = uploadPart("S3SignerType");
+        FileRegionInputStream region = FileRegionInputStream.unwrap(request.getContent());
+        assertNotNull(region);
+        assertEquals(PART_SIZE, region.getRemainingLength());
+        byte[] part = Arrays.copyOfRange(content, PART_SIZE, 2 * PART_SIZE);
+        assertEquals(BinaryUtils.toBase64(Md5Utils.computeMD5Hash(part)),
+                request.getHeaders().get(Headers.CONTENT_MD5));
+    }
+
+    @Test
+    public void testUploadPartWithChunkEncodingHashedInline() {
+        Request<?> request = uploadPart("AWSS3V4SignerType");
+        // Read through the MD5-calculating stream, and verified with the ETag
+        assertNull(FileRegionInputStream.unwrap(request.getContent()));
+        assertNull(request.getHeaders().get(Headers.CONTENT_MD5));
+    }
+
+    @Test
+    public void testPutObjectWrittenAsFileRegion() {
+        Request<?> request = putObject("S3SignerType");
+        assertNotNull(FileRegionInputStream.unwrap(request.getContent()));
+        assertEquals(BinaryUtils.toBase64(Md5Utils.computeMD5Hash(content)),
+                request.getHeaders().get(Headers.CONTENT_MD5));
+    }
+
+    @Test
+    public void testPutObjectWithChunkEncodingLengthChecked() {
+        Request<?> request = putObject("AWSS3V4SignerType");
+        // Read through the length check stream
+        assertNull(FileRegionInputStream.unwrap(request.getContent()));
+        assertEquals(BinaryUtils.toBase64(Md5Utils.computeMD5Hash(content)),
+                request.getHeaders().get(Headers.CONTENT_MD5));
+    }
+
+    private static Request<?> uploadPart(String signerType) {
+        CapturingHandler handler = new CapturingHandler();
+        try {
+            newClient(signerType, handler).uploadPart(new UploadPartRequest()
+                .withBucketName("bucket").withKey("key").withUploadId("upload")
+                .withPartNumber(2).withFile(file).withFileOffset(PART_SIZE)
+                .withPartSize(PART_SIZE));
+            fail();
+        } catch (AmazonClientException expected) {
+        }
+        return handler.request;
+    }
+
+    private static Request<?> putObject(String signerType) {
+        CapturingHandler handler = new CapturingHandler();
+        try {
+            newClient(signerType, handler).putObject(
+                    new PutObjectRequest("bucket", "key", file));
+            fail();
+        } catch (AmazonClientException expected) {
+        }
+        return handler.request;
+    }
+
+    private static AmazonS3Client newClient(String signerType, RequestHandler2 handler) {
+        AmazonS3Client s3 = new AmazonS3Client(new BasicAWSCredentials("access", "secret"),
+                new ClientConfiguration().withSignerOverride(signerType));
+        s3.setEndpoint("http://localhost:1");
+        s3.setS3ClientOptions(new S3ClientOptions().withPathStyleAccess(true));
+        s3.addRequestHandler(handler);
+        return s3;
+    }
+
+    /** Captures the request as it is about to be sent, and fails it. */
+    private static class CapturingHandler extends RequestHandler2 {
+        volatile Request<?> request;
+
+        @Override
+        public void beforeRequest(Request<?> request) {
+            this.request = request;
+            throw new AmazonClientException("Captured");
+        }
+
+        @Override
+        public void afterResponse(Request<?> request, Response<?> response) {
+        }
+
+        @Override
+        public void afterError(Request<?> request, Response<?> response, Exception e) {
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+
+/**
+ * Measures the throughput and the client CPU time of uploading a file with
+ * {@link AmazonS3Client#putObject}, to a local http stub answering with the
+ * MD5 hash of the content it received as the ETag:
+ * <ul>
+ * <li>given the file, which is written to the connection directly as a file
+ * region, its MD5 hash computed from a memory mapping of the file;</li>
+ * <li>given a stream of the file with its length and MD5 hash read upfront,
+ * which is what uploading a file formerly did: the content goes through the
+ * length check and progress input streams, 4 KB at a time.</li>
+ * </ul>
+ * The requests are signed with the S3 signer, since the content of requests
+ * signed with AWS4 is chunk encoded.
+ *
+ * <pre>
+ * java -cp ... FileUploadBenchmark [seconds] [megabytes]
+ * </pre>
+ */
+public class FileUploadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int megabytes = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+
+        Md5EtagServer server = new Md5EtagServer();
+        server.start();
+        File file = newFile(megabytes);
+        try {
+            AmazonS3Client s3 = new AmazonS3Client(new BasicAWSCredentials("akid", "skid"),
+                    new ClientConfiguration().withSignerOverride("S3SignerType"));
+            s3.setEndpoint("http://localhost:" + server.getPort());
+            s3.setS3ClientOptions(new S3ClientOptions().withPathStyleAccess(true));
+
+            System.out.println("File size: " + megabytes + " MB");
+            // Warm up, so that the measurements run compiled code.
+            measure(s3, file, true, 2);
+            measure(s3, file, false, 2);
+
+            report("file region", file, measure(s3, file, true, seconds));
+            report("stream (former)", file, measure(s3, file, false, seconds));
+        } finally {
+            server.serverSocket.close();
+            file.delete();
+        }
+    }
+
+    /**
+     * Returns the number of uploads completed in about the given time, the CPU
+     * time of the uploading thread and the elapsed time in nanoseconds.
+     */
+    private static long[] measure(AmazonS3Client s3, File file, boolean region, int seconds)
+            throws IOException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long cpuStart = threads.getCurrentThreadCpuTime();
+        long start = System.nanoTime();
+        long end = start + seconds * 1000000000L;
+        long count = 0;
+        while (System.nanoTime() < end) {
+            if (region) {
+                s3.putObject("bucket", "key", file);
+            } else {
+                ObjectMetadata metadata = new ObjectMetadata();
+                metadata.setContentLength(file.length());
+                metadata.setContentMD5(Md5Utils.md5AsBase64(file));
+                InputStream in = new FileInputStream(file);
+                try {
+                    s3.putObject(new PutObjectRequest("bucket", "key", in, metadata));
+                } finally {
+                    in.close();
+                }
+            }
+            count++;
+        }
+        return new long[] { count, threads.getCurrentThreadCpuTime() - cpuStart,
+                System.nanoTime() - start };
+    }
+
+    private static void report(String name, File file, long[] measured) {
+        double megabytes = measured[0] * (double) file.length() / (1024 * 1024);
+        System.out.printf("%-16s %8.1f MB/s %8.2f ms CPU/MB%n", name,
+                megabytes / (measured[2] / 1e9), measured[1] / 1e6 / megabytes);
+    }
+
+    private static File newFile(int megabytes) throws IOException {
+        File file = File.createTempFile("FileUploadBenchmark", ".bin");
+        byte[] buffer = new byte[1024 * 1024];
+        Random random = new Random(42);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            for (int i = 0; i < megabytes; i++) {
+                random.nextBytes(buffer);
+                out.write(buffer);
+            }
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Answers every request with the MD5 hash of its content as the ETag,
+     * over persistent connections. This is a minimal http server for the
+     * requests of this benchmark only: their content has a Content-Length.
+     */
+    private static class Md5EtagServer extends Thread {
+        private final ServerSocket serverSocket;
+
+        Md5EtagServer() throws IOException {
+            serverSocket = new ServerSocket(0, 50, InetAddress.getByName("localhost"));
+            setDaemon(true);
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    final Socket socket = serverSocket.accept();
+                    Thread connection = new Thread() {
+                        @Override
+                        public void run() {
+                            serve(socket);
+                        }
+                    };
+                    connection.setDaemon(true);
+                    connection.start();
+                }
+            } catch (IOException closed) {
+            }
+        }
+
+        private void serve(Socket socket) {
+            try {
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                OutputStream out = socket.getOutputStream();
+                byte[] buffer = new byte[64 * 1024];
+                while (true) {
+                    long contentLength = 0;
+                    boolean expectContinue = false;
+                    String line = readLine(in);
+                    if (line == null) {
+                        return;
+                    }
+                    while ((line = readLine(in)).length() > 0) {
+                        String lower = line.toLowerCase();
+                        if (lower.startsWith("content-length:")) {
+                            contentLength = Long.parseLong(line.substring(15).trim());
+                        } else if (lower.startsWith("expect:")) {
+                            expectContinue = true;
+                        }
+                    }
+                    if (expectContinue) {
+                        out.write("HTTP/1.1 100 Continue\r\n\r\n".getBytes("US-ASCII"));
+                        out.flush();
+                    }
+                    MessageDigest md5 = MessageDigest.getInstance("MD5");
+                    while (contentLength > 0) {
+                        int read = in.read(buffer, 0, (int) Math.min(buffer.length, contentLength));
+                        if (read == -1) {
+                            return;
+                        }
+                        md5.update(buffer, 0, read);
+                        contentLength -= read;
+                    }
+                    out.write(("HTTP/1.1 200 OK\r\nETag: \"" + BinaryUtils.toHex(md5.digest())
+                            + "\"\r\nContent-Length: 0\r\n\r\n").getBytes("US-ASCII"));
+                    out.flush();
+                }
+            } catch (Exception e) {
+                // the connection is closed
+            } finally {
+                try {
+                    socket.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+
+        /** Returns the next line of the given stream, or null at its end. */
+        private static String readLine(InputStream in) throws IOException {
+            StringBuilder line = new StringBuilder();
+            for (int c; (c = in.read()) != '\n';) {
+                if (c == -1) {
+                    return null;
+                }
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+            }
+            return line.toString();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.internal;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CarriageReturnEscapingInputStreamTest {
+
+    private static final List<String> DOCUMENTS = Arrays.asList(
+            "",
+            "no carriage return",
+            "\r",
+            "\r\r\r",
+            "\rstart",
+            "end\r",
+            "<Key>a\rb\r\nc\r\r\rd</Key>\r",
+            "<Key>caf\u00e9 \u20ac\r\u00e9</Key>");
+
+    @Test
+    public void testBulkReadsAtEveryBoundary() throws IOException {
+        for (String document : allDocuments()) {
+            byte[] expected = escape(document);
+            // Each carriage return at the start, middle and end of the reads
+            // of the wrapped stream, and of the reads from the escaping one
+            for (int wrappedReadSize = 1; wrappedReadSize <= 8; wrappedReadSize++) {
+                for (int readSize = 1; readSize <= 10; readSize++) {
+                    InputStream in = new CarriageReturnEscapingInputStream(new ShortReadInputStream(
+                            document.getBytes(UTF8), wrappedReadSize));
+                    assertArrayEquals(document + " " + wrappedReadSize + " " + readSize, expected,
+                            readAll(in, readSize));
+                }
+            }
+            assertArrayEquals(document, expected, readAll(new CarriageReturnEscapingInputStream(
+                    new ByteArrayInputStream(document.getBytes(UTF8))), 8192));
+        }
+    }
+
+    @Test
+    public void testSingleByteReads() throws IOException {
+        for (String document : allDocuments()) {
+            InputStream in = new CarriageReturnEscapingInputStream(new ShortReadInputStream(
+                    document.getBytes(UTF8), 3));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1) {
+                out.write(b);
+            }
+            assertArrayEquals(document, escape(document), out.toByteArray());
+        }
+    }
+
+    @Test
+    public void testSingleByteAndBulkReadsMixed() throws IOException {
+        Random random = new Random(11);
+        for (String document : allDocuments()) {
+            for (int i = 0; i < 50; i++) {
+                InputStream in = new CarriageReturnEscapingInputStream(new ShortReadInputStream(
+                        document.getBytes(UTF8), 1 + random.nextInt(6)));
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[16];
+                while (true) {
+                    if (random.nextBoolean()) {
+                        int b = in.read();
+                        if (b == -1) {
+                            break;
+                        }
+                        out.write(b);
+                    } else {
+                        int off = random.nextInt(4);
+                        int count = in.read(buffer, off, random.nextInt(buffer.length - off + 1));
+                        if (count == -1) {
+                            break;
+                        }
+                        out.write(buffer, off, count);
+                    }
+                }
+                assertArrayEquals(document, escape(document), out.toByteArray());
+            }
+        }
+    }
+
+    @Test
+    public void testSkip() throws IOException {
+        for (String document : allDocuments()) {
+            byte[] expected = escape(document);
+            // Every offset of the short documents, some of the long one
+            int step = expected.length > 100 ? 997 : 1;
+            for (int skip = 0; skip <= expected.length + 1; skip += step) {
+                InputStream in = new CarriageReturnEscapingInputStream(new ShortReadInputStream(
+                        document.getBytes(UTF8), 2));
+                // Skipping into the middle of the escapes
+                assertEquals(Math.min(skip, expected.length), in.skip(skip));
+                assertArrayEquals(document + " " + skip,
+                        Arrays.copyOfRange(expected, Math.min(skip, expected.length), expected.length),
+                        readAll(in, 3));
+                assertEquals(0, in.skip(1));
+            }
+        }
+        InputStream in = new CarriageReturnEscapingInputStream(new ByteArrayInputStream(escape("\r")));
+        assertEquals(0, in.skip(0));
+        assertEquals(0, in.skip(-1));
+    }
+
+    /**
+     * The documents, and a document of some length with carriage returns
+     * here and there.
+     */
+    private static List<String> allDocuments() {
+        StringBuilder longDocument = new StringBuilder();
+        Random random = new Random(5);
+        for (int i = 0; i < 20000; i++) {
+            longDocument.append(random.nextInt(10) == 0 ? '\r' : (char) ('a' + random.nextInt(26)));
+        }
+        List<String> documents = new ArrayList<String>(DOCUMENTS);
+        documents.add(longDocument.toString());
+        return documents;
+    }
+
+    private static byte[] escape(String document) {
+        return document.replace("\r", "&#013;").getBytes(UTF8);
+    }
+
+    private static byte[] readAll(InputStream in, int readSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[readSize];
+        int count;
+        while ((count = in.read(buffer, 0, readSize)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns at most the given number of bytes per read.
+     */
+    private static class ShortReadInputStream extends ByteArrayInputStream {
+
+        private final int maxReadSize;
+
+        ShortReadInputStream(byte[] bytes, int maxReadSize) {
+            super(bytes);
+            this.maxReadSize = maxReadSize;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, maxReadSize));
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.internal.crypto;
+
+import java.security.AlgorithmParameters;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.InvalidParameterSpecException;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.CipherSpi;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Stands in for Bouncy Castle, which the crypto modules require for
+ * AES/GCM, with the AES/GCM and AES/CTR ciphers of the JDK; AES/GCM takes an
+ * {@link IvParameterSpec} as Bouncy Castle does, with tags of 128 bits.
+ */
+public final class AesGcmTestProvider extends Provider {
+    private static final long serialVersionUID = 1L;
+
+    /** Installs this provider, unless Bouncy Castle is available. */
+    public static synchronized void install() {
+        CryptoRuntime.enableBouncyCastle();
+        if (!CryptoRuntime.isBouncyCastleAvailable()) {
+            Security.addProvider(new AesGcmTestProvider());
+        }
+        CryptoRuntime.recheck();
+    }
+
+    private AesGcmTestProvider() {
+        super(CryptoRuntime.BOUNCY_CASTLE_PROVIDER, 1.0, "AES/GCM of the JDK");
+        put("Cipher.AES/GCM/NoPadding", GcmCipher.class.getName());
+        put("Cipher.AES/CTR/NoPadding", CtrCipher.class.getName());
+    }
+
+    public static final class GcmCipher extends JdkCipher {
+        public GcmCipher() throws NoSuchAlgorithmException, NoSuchPaddingException {
+            super("AES/GCM/NoPadding");
+        }
+    }
+
+    public static final class CtrCipher extends JdkCipher {
+        public CtrCipher() throws NoSuchAlgorithmException, NoSuchPaddingException {
+            super("AES/CTR/NoPadding");
+        }
+    }
+
+    private abstract static class JdkCipher extends CipherSpi {
+        private final Cipher cipher;
+
+        JdkCipher(String transformation) throws NoSuchAlgorithmException, NoSuchPaddingException {
+            this.cipher = Cipher.getInstance(transformation, Security.getProvider("SunJCE"));
+        }
+
+        @Override
+        protected void engineSetMode(String mode) throws NoSuchAlgorithmException {
+            throw new NoSuchAlgorithmException(mode);
+        }
+
+        @Override
+        protected void engineSetPadding(String padding) throws NoSuchPaddingException {
+            throw new NoSuchPaddingException(padding);
+        }
+
+        @Override
+        protected int engineGetBlockSize() {
+            return cipher.getBlockSize();
+        }
+
+        @Override
+        protected int engineGetOutputSize(int inputLen) {
+            return cipher.getOutputSize(inputLen);
+        }
+
+        @Override
+        protected byte[] engineGetIV() {
+            return cipher.getIV();
+        }
+
+        @Override
+        protected AlgorithmParameters engineGetParameters() {
+            return cipher.getParameters();
+        }
+
+        @Override
+        protected void engineInit(int opmode, Key key, SecureRandom random)
+                throws InvalidKeyException {
+            cipher.init(opmode, aesKey(key), random);
+        }
+
+        @Override
+        protected void engineInit(int opmode, Key key, AlgorithmParameterSpec params,
+                SecureRandom random) throws InvalidKeyException, InvalidAlgorithmParameterException {
+            if (params instanceof IvParameterSpec && this instanceof GcmCipher) {
+                params = new GCMParameterSpec(128, ((IvParameterSpec) params).getIV());
+            }
+            cipher.init(opmode, aesKey(key), params, random);
+        }
+
+        @Override
+        protected void engineInit(int opmode, Key key, AlgorithmParameters params,
+                SecureRandom random) throws InvalidKeyException, InvalidAlgorithmParameterException {
+            try {
+                engineInit(opmode, key, params.getParameterSpec(IvParameterSpec.class), random);
+            } catch (InvalidParameterSpecException e) {
+                throw new InvalidAlgorithmParameterException(e);
+            }
+        }
+
+        /** The unwrapped content encrypting key may not be named "AES". */
+        private static Key aesKey(Key key) {
+            return "AES".equals(key.getAlgorithm()) ? key : new SecretKeySpec(key.getEncoded(), "AES");
+        }
+
+        @Override
+        protected byte[] engineUpdate(byte[] input, int inputOffset, int inputLen) {
+            return cipher.update(nonNull(input), inputOffset, inputLen);
+        }
+
+        @Override
+        protected int engineUpdate(byte[] input, int inputOffset, int inputLen,
+                byte[] output, int outputOffset) throws ShortBufferException {
+            return cipher.update(nonNull(input), inputOffset, inputLen, output, outputOffset);
+        }
+
+        @Override
+        protected byte[] engineDoFinal(byte[] input, int inputOffset, int inputLen)
+                throws IllegalBlockSizeException, BadPaddingException {
+            return cipher.doFinal(nonNull(input), inputOffset, inputLen);
+        }
+
+        @Override
+        protected int engineDoFinal(byte[] input, int inputOffset, int inputLen,
+                byte[] output, int outputOffset)
+                throws ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+            return cipher.doFinal(nonNull(input), inputOffset, inputLen, output, outputOffset);
+        }
+
+        /** Bouncy Castle takes no input as null, unlike the JDK. */
+        private static byte[] nonNull(byte[] input) {
+            return input == null ? new byte[0] : input;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.internal.crypto;
+
+import static com.amazonaws.services.s3.internal.crypto.GcmTestUtils.hex;
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks GHASH against the test cases of the GCM specification, which NIST
+ * SP 800-38D refers to; the ciphertexts are hashed with the lengths block.
+ */
+public class GHashTest {
+
+    @Test
+    public void testEmptyCiphertext() {
+        // Test case 1
+        assertGHash("66e94bd4ef8a2c3b884cfa59ca342b2e", "", "", "00000000000000000000000000000000");
+    }
+
+    @Test
+    public void testOneBlock() {
+        // Test case 2
+        assertGHash("66e94bd4ef8a2c3b884cfa59ca342b2e", "",
+                "0388dace60b6a392f328c2b971b2fe78",
+                "f38cbb1ad69223dcc3457ae5b6b0f885");
+    }
+
+    @Test
+    public void testFourBlocks() {
+        // Test case 3
+        assertGHash("b83b533708bf535d0aa6e52980d53b78", "",
+                "42831ec2217774244b7221b784d0d49ce3aa212f2c02a4e035c17e2329aca12e"
+                + "21d514b25466931c7d8f6a5aac84aa051ba30b396a0aac973d58e091473f5985",
+                "7f1b32b81b820d02614f8895ac1d4eac");
+    }
+
+    @Test
+    public void testPartialBlocks() {
+        // Test case 4, with additional authenticated data
+        assertGHash("b83b533708bf535d0aa6e52980d53b78",
+                "feedfacedeadbeeffeedfacedeadbeefabaddad2",
+                "42831ec2217774244b7221b784d0d49ce3aa212f2c02a4e035c17e2329aca12e"
+                + "21d514b25466931c7d8f6a5aac84aa051ba30b396a0aac973d58e091",
+                "698e57f70e6ecc7fd9463b7260a9ae5f");
+    }
+
+    @Test
+    public void testUpdateSplits() {
+        Random random = new Random(17);
+        long[] h = GHash.toElement(GcmTestUtils.randomBytes(random, 16));
+        byte[] data = GcmTestUtils.randomBytes(random, 1000);
+        GHash whole = new GHash(h);
+        whole.update(data, 0, data.length);
+        for (int split = 1; split < 40; split++) {
+            GHash pieces = new GHash(h);
+            for (int off = 0; off < data.length; off += split) {
+                pieces.update(data, off, Math.min(split, data.length - off));
+            }
+            assertArrayEquals(whole.digest(), pieces.digest());
+        }
+    }
+
+    @Test
+    public void testLinearity() {
+        // Hashing from a state Y gives Y * H^n xor the hash from zero
+        Random random = new Random(23);
+        long[] h = GHash.toElement(GcmTestUtils.randomBytes(random, 16));
+        byte[] first = GcmTestUtils.randomBytes(random, 5 * 16);
+        byte[] second = GcmTestUtils.randomBytes(random, 3 * 16 + 7);
+        GHash whole = new GHash(h);
+        whole.update(first, 0, first.length);
+        whole.update(second, 0, second.length);
+        GHash part1 = new GHash(h);
+        part1.update(first, 0, first.length);
+        GHash part2 = new GHash(h);
+        part2.update(second, 0, second.length);
+        long[] combined = GHash.multiply(part1.digest(), GHash.power(h, 4));
+        long[] hash2 = part2.digest();
+        combined[0] ^= hash2[0];
+        combined[1] ^= hash2[1];
+        assertArrayEquals(whole.digest(), combined);
+    }
+
+    @Test
+    public void testPower() {
+        Random random = new Random(29);
+        long[] x = GHash.toElement(GcmTestUtils.randomBytes(random, 16));
+        long[] product = {1L << 63, 0};
+        for (int n = 0; n < 70; n++) {
+            assertArrayEquals(product, GHash.power(x, n));
+            product = GHash.multiply(product, x);
+        }
+        long[] y = GHash.toElement(GcmTestUtils.randomBytes(random, 16));
+        assertArrayEquals(GHash.multiply(x, y), GHash.multiply(y, x));
+    }
+
+    /**
+     * Hashes the given additional data and ciphertext, each padded to whole
+     * blocks, followed by the lengths block.
+     */
+    private static void assertGHash(String h, String aad, String ciphertext, String expected) {
+        byte[] a = hex(aad);
+        byte[] c = hex(ciphertext);
+        GHash ghash = new GHash(GHash.toElement(hex(h)));
+        ghash.update(a, 0, a.length);
+        ghash.update(new byte[pad(a.length)], 0, pad(a.length));
+        ghash.update(c, 0, c.length);
+        ghash.update(new byte[pad(c.length)], 0, pad(c.length));
+        byte[] lengths = GHash.toBytes(new long[] {a.length * 8L, c.length * 8L});
+        ghash.update(lengths, 0, lengths.length);
+        assertArrayEquals(hex(expected), GHash.toBytes(ghash.digest()));
+    }
+
+    private static int pad(int length) {
+        return (GHash.BLOCK_SIZE - length % GHash.BLOCK_SIZE) % GHash.BLOCK_SIZE;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.internal.crypto;
+
+import static com.amazonaws.services.s3.internal.crypto.GcmTestUtils.hex;
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+
+public class GcmTagCombinerTest {
+    private static final int TAG_LENGTH = 16;
+
+    @Test
+    public void testSpecificationTestCase() throws Exception {
+        // Test case 3 of the GCM specification
+        SecretKey cek = new SecretKeySpec(hex("feffe9928665731c6d6a8f9467308308"), "AES");
+        byte[] iv = hex("cafebabefacedbaddecaf888");
+        byte[] ciphertext = hex(
+                "42831ec2217774244b7221b784d0d49ce3aa212f2c02a4e035c17e2329aca12e"
+                + "21d514b25466931c7d8f6a5aac84aa051ba30b396a0aac973d58e091473f5985");
+        GcmTagCombiner combiner = new GcmTagCombiner(
+                GcmTestUtils.contentCryptoMaterial(cek, iv).getCipherLite());
+        byte[] tag = combinedTag(combiner, ciphertext, 2 * 16);
+        assertArrayEquals(hex("4d5c2af327cd64a62cf35abd2ba6fab4"), tag);
+    }
+
+    @Test
+    public void testSameTagAsOnePassCipher() throws Exception {
+        Random random = new Random(31);
+        for (int length : new int[] {0, 1, 16, 100, 4096, 3 * 4096, 3 * 4096 + 5, 10000}) {
+            for (int partSize : new int[] {16, 1024, 4096}) {
+                SecretKey cek = GcmTestUtils.randomKey(random);
+                byte[] iv = GcmTestUtils.randomBytes(random, 12);
+                byte[] encrypted = GcmTestUtils.encrypt(cek, iv,
+                        GcmTestUtils.randomBytes(random, length));
+                GcmTagCombiner combiner = new GcmTagCombiner(
+                        GcmTestUtils.contentCryptoMaterial(cek, iv).getCipherLite());
+                byte[] ciphertext = Arrays.copyOf(encrypted, length);
+                assertArrayEquals("length " + length + ", part size " + partSize,
+                        Arrays.copyOfRange(encrypted, length, length + TAG_LENGTH),
+                        combinedTag(combiner, ciphertext, partSize));
+            }
+        }
+    }
+
+    /**
+     * Returns the tag combined from the hashes of the parts of the given
+     * ciphertext, hashed independently.
+     */
+    private static byte[] combinedTag(GcmTagCombiner combiner, byte[] ciphertext, int partSize) {
+        long[] y = {0, 0};
+        int off = 0;
+        do {
+            int size = Math.min(partSize, ciphertext.length - off);
+            GHash part = combiner.newGHash();
+            part.update(ciphertext, off, size);
+            y = combiner.append(y, size, part.digest());
+            off += size;
+        } while (off < ciphertext.length);
+        return combiner.tag(y, ciphertext.length);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.internal.crypto;
+
+import java.util.Collections;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * AES/GCM ciphers and content crypto material from the default JCE provider,
+ * so that the tests don't depend on Bouncy Castle.
+ */
+final class GcmTestUtils {
+    private GcmTestUtils() {
+    }
+
+    static SecretKey randomKey(Random random) {
+        return new SecretKeySpec(randomBytes(random, 16), "AES");
+    }
+
+    static byte[] randomBytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /** Returns the one-pass AES/GCM encryption of the given plaintext, tag included. */
+    static byte[] encrypt(SecretKey cek, byte[] iv, byte[] plaintext) throws Exception {
+        return newCipher(cek, iv, Cipher.ENCRYPT_MODE).doFinal(plaintext);
+    }
+
+    /** Returns the content crypto material of the given key and IV. */
+    static ContentCryptoMaterial contentCryptoMaterial(SecretKey cek, byte[] iv)
+            throws Exception {
+        CipherLite cipherLite = ContentCryptoScheme.AES_GCM.newCipherLite(
+                newCipher(cek, iv, Cipher.ENCRYPT_MODE), cek, Cipher.ENCRYPT_MODE);
+        return new ContentCryptoMaterial(Collections.<String, String> emptyMap(),
+                new byte[0], null, cipherLite);
+    }
+
+    private static Cipher newCipher(SecretKey cek, byte[] iv, int mode) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(mode, cek, new GCMParameterSpec(128, iv));
+        return cipher;
+    }
+
+    static byte[] hex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.internal.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.internal.S3Direct;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.CopyPartRequest;
+import com.amazonaws.services.s3.model.CopyPartResult;
+import com.amazonaws.services.s3.model.CryptoConfiguration;
+import com.amazonaws.services.s3.model.CryptoMode;
+import com.amazonaws.services.s3.model.EncryptionMaterials;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.StaticEncryptionMaterialsProvider;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import com.amazonaws.util.IOUtils;
+
+public class MultipartUploadGcmContextTest {
+    private static final String UPLOAD_ID = "upload-id";
+    private static final int PART_SIZE = 64 * 1024;
+    private static final int PART_COUNT = 6;
+    private static final int LAST_PART_SIZE = 1000;
+    private static final int TAG_LENGTH = 16;
+
+    private final Random random = new Random(37);
+    private final SecretKey cek = GcmTestUtils.randomKey(random);
+    private final byte[] iv = GcmTestUtils.randomBytes(random, 12);
+    private final byte[] plaintext = GcmTestUtils.randomBytes(random,
+            (PART_COUNT - 1) * PART_SIZE + LAST_PART_SIZE);
+    private final ExecutorService executor = Executors.newFixedThreadPool(PART_COUNT);
+
+    private StubS3 s3;
+    private S3CryptoModuleAE module;
+
+    @BeforeClass
+    public static void installProvider() {
+        AesGcmTestProvider.install();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        s3 = new StubS3();
+        module = new S3CryptoModuleAE(s3,
+                new StaticEncryptionMaterialsProvider(new EncryptionMaterials(cek)),
+                new CryptoConfiguration(CryptoMode.AuthenticatedEncryption)
+                        .withParallelMultipartUpload(true).readOnly());
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentPartsSameAsOnePass() throws Exception {
+        module.multipartUploadContexts.put(UPLOAD_ID, newContext(
+                MultipartUploadGcmContext.DEFAULT_AWAIT_TIMEOUT_MILLIS));
+        // The last part is submitted first, and waits for the others
+        List<Future<UploadPartResult>> futures = new ArrayList<Future<UploadPartResult>>();
+        for (int partNumber = PART_COUNT; partNumber > 0; partNumber--) {
+            futures.add(executor.submit(uploadPart(partNumber)));
+        }
+        for (Future<UploadPartResult> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        ByteArrayOutputStream uploaded = new ByteArrayOutputStream();
+        for (int partNumber = 1; partNumber <= PART_COUNT; partNumber++) {
+            uploaded.write(s3.parts.get(partNumber));
+        }
+        assertEquals(LAST_PART_SIZE + TAG_LENGTH, s3.parts.get(PART_COUNT).length);
+        assertArrayEquals(GcmTestUtils.encrypt(cek, iv, plaintext), uploaded.toByteArray());
+    }
+
+    @Test
+    public void testPartFailureReleasesLastPart() throws Exception {
+        module.multipartUploadContexts.put(UPLOAD_ID, newContext(
+                MultipartUploadGcmContext.DEFAULT_AWAIT_TIMEOUT_MILLIS));
+        AmazonServiceException error = new AmazonServiceException("Internal Error");
+        s3.failures.put(1, error);
+        Future<UploadPartResult> lastPart = executor.submit(uploadPart(PART_COUNT));
+        Future<UploadPartResult> firstPart = executor.submit(uploadPart(1));
+        try {
+            firstPart.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException expected) {
+            assertSame(error, expected.getCause());
+        }
+        try {
+            lastPart.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof AmazonClientException);
+            assertSame(error, expected.getCause().getCause());
+        }
+        assertEquals(false, s3.parts.containsKey(PART_COUNT));
+    }
+
+    @Test
+    public void testAbortReleasesLastPart() throws Exception {
+        module.multipartUploadContexts.put(UPLOAD_ID, newContext(
+                MultipartUploadGcmContext.DEFAULT_AWAIT_TIMEOUT_MILLIS));
+        Future<UploadPartResult> lastPart = executor.submit(uploadPart(PART_COUNT));
+        Thread.sleep(100);
+        module.abortMultipartUploadSecurely(
+                new AbortMultipartUploadRequest("bucket", "key", UPLOAD_ID));
+        try {
+            lastPart.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof AmazonClientException);
+        }
+        assertEquals(UPLOAD_ID, s3.abortedUploadId);
+    }
+
+    @Test
+    public void testPartOfAnotherSizeRejectedWhenSubmitted() throws Exception {
+        module.multipartUploadContexts.put(UPLOAD_ID, newContext(
+                MultipartUploadGcmContext.DEFAULT_AWAIT_TIMEOUT_MILLIS));
+        uploadPart(2).call();
+        try {
+            uploadPart(1, PART_SIZE - TAG_LENGTH).call();
+            fail();
+        } catch (AmazonClientException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains(
+                    "part 2: " + PART_SIZE + " bytes, part 1: " + (PART_SIZE - TAG_LENGTH) + " bytes"));
+        }
+        assertEquals(false, s3.parts.containsKey(1));
+        // Not encrypted, so it can be submitted again with the right size
+        for (int partNumber = 1; partNumber <= PART_COUNT; partNumber++) {
+            if (partNumber != 2) {
+                uploadPart(partNumber).call();
+            }
+        }
+        ByteArrayOutputStream uploaded = new ByteArrayOutputStream();
+        for (int partNumber = 1; partNumber <= PART_COUNT; partNumber++) {
+            uploaded.write(s3.parts.get(partNumber));
+        }
+        assertArrayEquals(GcmTestUtils.encrypt(cek, iv, plaintext), uploaded.toByteArray());
+    }
+
+    @Test
+    public void testWaitTimesOutWithoutProgress() throws Exception {
+        final MultipartUploadGcmContext context = newContext(200);
+        Future<Long> lastPart = executor.submit(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return context.awaitPartsBefore(3);
+            }
+        });
+        // Each encrypted part restarts the wait
+        Thread.sleep(120);
+        context.partEncrypted(1, PART_SIZE, context.newGHash());
+        Thread.sleep(120);
+        assertEquals(false, lastPart.isDone());
+        try {
+            lastPart.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof AmazonClientException);
+        }
+    }
+
+    @Test
+    public void testWaitReturnsPositionOfLastPart() throws Exception {
+        MultipartUploadGcmContext context = newContext(200);
+        context.partEncrypted(2, PART_SIZE, context.newGHash());
+        context.partEncrypted(1, PART_SIZE, context.newGHash());
+        assertEquals(2L * PART_SIZE, context.awaitPartsBefore(3));
+    }
+
+    private MultipartUploadGcmContext newContext(long awaitTimeoutMillis) throws Exception {
+        return new MultipartUploadGcmContext("bucket", "key",
+                GcmTestUtils.contentCryptoMaterial(cek, iv), awaitTimeoutMillis);
+    }
+
+    private Callable<UploadPartResult> uploadPart(int partNumber) {
+        return uploadPart(partNumber, partNumber == PART_COUNT ? LAST_PART_SIZE : PART_SIZE);
+    }
+
+    private Callable<UploadPartResult> uploadPart(final int partNumber, final int size) {
+        return new Callable<UploadPartResult>() {
+            @Override
+            public UploadPartResult call() {
+                boolean isLastPart = partNumber == PART_COUNT;
+                int offset = (partNumber - 1) * PART_SIZE;
+                return module.uploadPartSecurely(new UploadPartRequest()
+                        .withBucketName("bucket")
+                        .withKey("key")
+                        .withUploadId(UPLOAD_ID)
+                        .withPartNumber(partNumber)
+                        .withPartSize(size)
+                        .withLastPart(isLastPart)
+                        .withInputStream(new ByteArrayInputStream(plaintext, offset, size)));
+            }
+        };
+    }
+
+    /**
+     * Records the body of each uploaded part; the parts in failures fail
+     * once their body has been read.
+     */
+    private static class StubS3 extends S3Direct {
+        final Map<Integer, byte[]> parts = new ConcurrentHashMap<Integer, byte[]>();
+        final Map<Integer, RuntimeException> failures = new ConcurrentHashMap<Integer, RuntimeException>();
+        volatile String abortedUploadId;
+
+        @Override
+        public UploadPartResult uploadPart(UploadPartRequest req) {
+            byte[] body;
+            try {
+                body = IOUtils.toByteArray(req.getInputStream());
+            } catch (IOException e) {
+                throw new AmazonClientException(e.getMessage(), e);
+            }
+            assertEquals(req.getPartSize(), body.length);
+            RuntimeException failure = failures.get(req.getPartNumber());
+            if (failure != null) {
+                throw failure;
+            }
+            parts.put(req.getPartNumber(), body);
+            UploadPartResult result = new UploadPartResult();
+            result.setPartNumber(req.getPartNumber());
+            result.setETag("etag-" + req.getPartNumber());
+            return result;
+        }
+
+        @Override
+        public void abortMultipartUpload(AbortMultipartUploadRequest req) {
+            abortedUploadId = req.getUploadId();
+        }
+
+        @Override
+        public PutObjectResult putObject(PutObjectRequest req) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public S3Object getObject(GetObjectRequest req) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ObjectMetadata getObject(GetObjectRequest req, File dest) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest req) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest req) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CopyPartResult copyPart(CopyPartRequest req) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
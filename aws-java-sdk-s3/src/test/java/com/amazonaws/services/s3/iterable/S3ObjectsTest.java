@@ -0,0 +1,214 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.iterable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+public class S3ObjectsTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final StubS3 s3 = new StubS3();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testPagesInOrder() {
+        s3.addPages("a/", 3, 4);
+        assertEquals(s3.keys("a/"), keys(S3Objects.withPrefix(s3, "bucket", "a/")));
+        assertEquals(3, s3.requestCount.get());
+    }
+
+    @Test
+    public void testPrefetchedPagesInOrder() {
+        s3.addPages("a/", 5, 3);
+        assertEquals(s3.keys("a/"), keys(S3Objects.withPrefix(s3, "bucket", "a/")
+                .withPrefetch(true).withExecutorService(executor)));
+        assertEquals(5, s3.requestCount.get());
+    }
+
+    @Test
+    public void testPrefixesConcatenated() {
+        s3.addPages("a/", 2, 3);
+        s3.addPages("b/", 0, 0);
+        s3.addPages("c/", 3, 2);
+        s3.addPages("d/", 1, 1);
+        List<String> expected = new ArrayList<String>();
+        for (String prefix : Arrays.asList("a/", "b/", "c/", "d/")) {
+            expected.addAll(s3.keys(prefix));
+        }
+        for (int parallelism = 1; parallelism <= 5; parallelism++) {
+            S3Objects objects = S3Objects.withPrefixes(s3, "bucket", Arrays.asList("a/", "b/", "c/", "d/"))
+                    .withParallelism(parallelism).withExecutorService(executor);
+            assertEquals(expected, keys(objects));
+        }
+    }
+
+    @Test
+    public void testSplit() {
+        s3.addPages("a/", 2, 3);
+        s3.addPages("b/", 1, 3);
+        List<S3Objects> split = S3Objects.withPrefixes(s3, "bucket", Arrays.asList("a/", "b/"))
+                .withBatchSize(3).split();
+        assertEquals(2, split.size());
+        assertEquals("a/", split.get(0).getPrefix());
+        assertEquals(Integer.valueOf(3), split.get(1).getBatchSize());
+        assertEquals(s3.keys("b/"), keys(split.get(1)));
+    }
+
+    @Test
+    public void testBackgroundErrorRethrown() {
+        s3.addPages("a/", 3, 2);
+        AmazonServiceException error = new AmazonServiceException("Slow Down");
+        s3.failOnPage("a/", 1, error);
+        Iterator<S3ObjectSummary> iterator = S3Objects.withPrefix(s3, "bucket", "a/")
+                .withPrefetch(true).withExecutorService(executor).iterator();
+        iterator.next();
+        iterator.next();
+        try {
+            iterator.hasNext();
+            fail();
+        } catch (AmazonServiceException e) {
+            assertSame(error, e);
+        }
+    }
+
+    @Test
+    public void testShardErrorRethrown() {
+        s3.addPages("a/", 1, 2);
+        s3.addPages("b/", 1, 2);
+        AmazonServiceException error = new AmazonServiceException("Access Denied");
+        s3.failOnPage("b/", 0, error);
+        Iterator<S3ObjectSummary> iterator = S3Objects.withPrefixes(s3, "bucket", Arrays.asList("a/", "b/"))
+                .withParallelism(2).withExecutorService(executor).iterator();
+        assertEquals("a/0-0", iterator.next().getKey());
+        assertEquals("a/0-1", iterator.next().getKey());
+        try {
+            iterator.hasNext();
+            fail();
+        } catch (AmazonServiceException e) {
+            assertSame(error, e);
+        }
+    }
+
+    @Test
+    public void testEmptyListing() {
+        s3.addPages("a/", 0, 0);
+        assertFalse(S3Objects.withPrefix(s3, "bucket", "a/").withPrefetch(true)
+                .withExecutorService(executor).iterator().hasNext());
+    }
+
+    private static List<String> keys(S3Objects objects) {
+        List<String> keys = new ArrayList<String>();
+        for (S3ObjectSummary summary : objects) {
+            keys.add(summary.getKey());
+        }
+        return keys;
+    }
+
+    /**
+     * Lists the pages of keys set up for each prefix; the marker of a page
+     * is the index of the next one.
+     */
+    private static class StubS3 extends AbstractAmazonS3 {
+        private final Map<String, List<List<String>>> pages = new HashMap<String, List<List<String>>>();
+        private final Map<String, RuntimeException> errors = new HashMap<String, RuntimeException>();
+        final AtomicInteger requestCount = new AtomicInteger();
+
+        void addPages(String prefix, int pageCount, int pageSize) {
+            List<List<String>> prefixPages = new ArrayList<List<String>>();
+            for (int i = 0; i < pageCount; i++) {
+                List<String> page = new ArrayList<String>();
+                for (int j = 0; j < pageSize; j++) {
+                    page.add(prefix + i + "-" + j);
+                }
+                prefixPages.add(page);
+            }
+            if (prefixPages.isEmpty()) {
+                prefixPages.add(Collections.<String> emptyList());
+            }
+            pages.put(prefix, prefixPages);
+        }
+
+        void failOnPage(String prefix, int page, RuntimeException error) {
+            errors.put(prefix + page, error);
+        }
+
+        List<String> keys(String prefix) {
+            List<String> keys = new ArrayList<String>();
+            for (List<String> page : pages.get(prefix)) {
+                keys.addAll(page);
+            }
+            return keys;
+        }
+
+        @Override
+        public ObjectListing listObjects(ListObjectsRequest request) {
+            assertEquals("bucket", request.getBucketName());
+            return page(request.getPrefix(), 0);
+        }
+
+        @Override
+        public ObjectListing listNextBatchOfObjects(ObjectListing previous) {
+            return page(previous.getPrefix(), Integer.parseInt(previous.getNextMarker()));
+        }
+
+        private ObjectListing page(String prefix, int index) {
+            requestCount.incrementAndGet();
+            RuntimeException error = errors.get(prefix + index);
+            if (error != null) {
+                throw error;
+            }
+            List<List<String>> prefixPages = pages.get(prefix);
+            ObjectListing listing = new ObjectListing();
+            listing.setBucketName("bucket");
+            listing.setPrefix(prefix);
+            for (String key : prefixPages.get(index)) {
+                S3ObjectSummary summary = new S3ObjectSummary();
+                summary.setBucketName("bucket");
+                summary.setKey(key);
+                listing.getObjectSummaries().add(summary);
+            }
+            listing.setTruncated(index + 1 < prefixPages.size());
+            listing.setNextMarker(String.valueOf(index + 1));
+            return listing;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.iterable;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.model.ListVersionsRequest;
+import com.amazonaws.services.s3.model.S3VersionSummary;
+import com.amazonaws.services.s3.model.VersionListing;
+
+public class S3VersionsTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testForKeyStopsAtOtherKey() {
+        // The listing by prefix "photo" also returns the versions of "photo2"
+        StubS3 s3 = new StubS3(2, "photo", "photo", "photo", "photo2", "photo2", "photo3");
+        for (boolean prefetch : new boolean[] { false, true }) {
+            List<String> versions = new ArrayList<String>();
+            for (S3VersionSummary summary : S3Versions.forKey(s3, "bucket", "photo")
+                    .withPrefetch(prefetch).withExecutorService(executor)) {
+                assertEquals("photo", summary.getKey());
+                versions.add(summary.getVersionId());
+            }
+            assertEquals(Arrays.asList("v0", "v1", "v2"), versions);
+        }
+    }
+
+    @Test
+    public void testForKeyWithoutVersions() {
+        StubS3 s3 = new StubS3(2, "photo2", "photo2");
+        assertEquals(false, S3Versions.forKey(s3, "bucket", "photo").iterator().hasNext());
+    }
+
+    @Test
+    public void testPrefixesConcatenated() {
+        StubS3 s3 = new StubS3(2, "a/1", "a/2", "a/3", "b/1", "c/1", "c/2");
+        List<String> keys = new ArrayList<String>();
+        for (S3VersionSummary summary : S3Versions.withPrefixes(s3, "bucket", Arrays.asList("a/", "b/", "c/"))
+                .withParallelism(2).withExecutorService(executor)) {
+            keys.add(summary.getKey());
+        }
+        assertEquals(Arrays.asList("a/1", "a/2", "a/3", "b/1", "c/1", "c/2"), keys);
+    }
+
+    /**
+     * Lists the versions of the given keys whose names start with the
+     * requested prefix, a number of versions per page; the key marker of a
+     * page is the index of the next version.
+     */
+    private static class StubS3 extends AbstractAmazonS3 {
+        private final int pageSize;
+        private final List<String> keys;
+
+        StubS3(int pageSize, String... keys) {
+            this.pageSize = pageSize;
+            this.keys = Arrays.asList(keys);
+        }
+
+        @Override
+        public VersionListing listVersions(ListVersionsRequest request) {
+            return page(request.getPrefix(), 0);
+        }
+
+        @Override
+        public VersionListing listNextBatchOfVersions(VersionListing previous) {
+            return page(previous.getPrefix(), Integer.parseInt(previous.getNextKeyMarker()));
+        }
+
+        private VersionListing page(String prefix, int from) {
+            List<S3VersionSummary> matching = new ArrayList<S3VersionSummary>();
+            for (int i = 0; i < keys.size(); i++) {
+                if (keys.get(i).startsWith(prefix)) {
+                    S3VersionSummary summary = new S3VersionSummary();
+                    summary.setBucketName("bucket");
+                    summary.setKey(keys.get(i));
+                    summary.setVersionId("v" + i);
+                    matching.add(summary);
+                }
+            }
+            int to = Math.min(matching.size(), from + pageSize);
+            VersionListing listing = new VersionListing();
+            listing.setBucketName("bucket");
+            listing.setPrefix(prefix);
+            listing.setVersionSummaries(new ArrayList<S3VersionSummary>(matching.subList(from, to)));
+            listing.setTruncated(to < matching.size());
+            listing.setNextKeyMarker(String.valueOf(to));
+            return listing;
+        }
+    }
+}
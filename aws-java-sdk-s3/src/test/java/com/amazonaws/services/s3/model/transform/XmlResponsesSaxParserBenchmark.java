@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.model.transform;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xml.sax.helpers.DefaultHandler;
+
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.util.IOUtils;
+import com.amazonaws.util.StringUtils;
+
+/**
+ * Measures the throughput and allocation of parsing ListObjects responses,
+ * with the streaming carriage return escaping of
+ * {@link XmlResponsesSaxParser#sanitizeXmlDocument} and with the former
+ * implementation, which read the whole document into a string, replaced the
+ * carriage returns and encoded it again before parsing it.
+ * <p>
+ * The pages are read from the files given as arguments, for example recorded
+ * responses, or else generated with 1000 keys each, one in a hundred of them
+ * containing a carriage return:
+ *
+ * <pre>
+ * java -cp ... XmlResponsesSaxParserBenchmark [seconds] [page.xml ...]
+ * </pre>
+ */
+public class XmlResponsesSaxParserBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        List<byte[]> pages = new ArrayList<byte[]>();
+        for (int i = 1; i < args.length; i++) {
+            InputStream in = new FileInputStream(new File(args[i]));
+            try {
+                pages.add(IOUtils.toByteArray(in));
+            } finally {
+                in.close();
+            }
+        }
+        if (pages.isEmpty()) {
+            for (int i = 0; i < 10; i++) {
+                pages.add(newPage(i, 1000));
+            }
+        }
+
+        XmlResponsesSaxParser streaming = new XmlResponsesSaxParser();
+        XmlResponsesSaxParser buffering = new BufferingXmlResponsesSaxParser();
+        verify(streaming, buffering, pages);
+
+        System.out.println("Pages: " + pages.size() + ", average size: " + averageSize(pages) + " bytes");
+        // Warm up, so that the measurements run compiled code.
+        measure(streaming, pages, 2);
+        measure(buffering, pages, 2);
+
+        report("streaming", measure(streaming, pages, seconds));
+        report("buffering (former)", measure(buffering, pages, seconds));
+    }
+
+    /**
+     * Parses the given pages over and over for the given number of seconds.
+     *
+     * @return the number of pages parsed, bytes allocated, garbage collections
+     *         and milliseconds spent collecting garbage, and the elapsed nanoseconds
+     */
+    private static long[] measure(XmlResponsesSaxParser parser, List<byte[]> pages, int seconds)
+            throws IOException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long startAllocated = allocatedBytes(threads);
+        long[] startGc = gcCountAndTime();
+        long start = System.nanoTime();
+        long deadline = start + seconds * 1000000000L;
+        long parsed = 0;
+        while (System.nanoTime() < deadline) {
+            for (byte[] page : pages) {
+                parser.parseListBucketObjectsResponse(new ByteArrayInputStream(page));
+            }
+            parsed += pages.size();
+        }
+        long elapsed = System.nanoTime() - start;
+        long[] endGc = gcCountAndTime();
+        return new long[] { parsed, allocatedBytes(threads) - startAllocated, endGc[0] - startGc[0],
+                endGc[1] - startGc[1], elapsed };
+    }
+
+    private static void report(String name, long[] result) {
+        double seconds = result[4] / 1e9;
+        System.out.println(String.format("%-20s %,10.0f pages/s %,12d bytes allocated/page %6d GCs %6d ms in GC",
+                name, result[0] / seconds, result[1] < 0 ? -1 : result[1] / result[0], result[2], result[3]));
+    }
+
+    /**
+     * @return the bytes allocated by the current thread, or a negative number
+     *         if the JVM does not measure them
+     */
+    private static long allocatedBytes(ThreadMXBean threads) {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+        }
+        return Long.MIN_VALUE;
+    }
+
+    private static long[] gcCountAndTime() {
+        long count = 0;
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[] { count, time };
+    }
+
+    /**
+     * Checks that both parsers return the same keys, carriage returns included.
+     */
+    private static void verify(XmlResponsesSaxParser streaming, XmlResponsesSaxParser buffering,
+            List<byte[]> pages) throws IOException {
+        for (byte[] page : pages) {
+            ObjectListing expected = buffering.parseListBucketObjectsResponse(
+                    new ByteArrayInputStream(page)).getObjectListing();
+            ObjectListing actual = streaming.parseListBucketObjectsResponse(
+                    new ByteArrayInputStream(page)).getObjectListing();
+            if (expected.getObjectSummaries().size() != actual.getObjectSummaries().size()) {
+                throw new IllegalStateException("Different number of keys parsed");
+            }
+            for (int i = 0; i < expected.getObjectSummaries().size(); i++) {
+                if (!expected.getObjectSummaries().get(i).getKey().equals(
+                        actual.getObjectSummaries().get(i).getKey())) {
+                    throw new IllegalStateException("Different keys parsed: "
+                            + actual.getObjectSummaries().get(i).getKey());
+                }
+            }
+        }
+    }
+
+    private static long averageSize(List<byte[]> pages) {
+        long total = 0;
+        for (byte[] page : pages) {
+            total += page.length;
+        }
+        return total / pages.size();
+    }
+
+    private static byte[] newPage(int page, int keys) {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+            .append("<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">")
+            .append("<Name>benchmark-bucket</Name><Prefix></Prefix><Marker></Marker>")
+            .append("<MaxKeys>").append(keys).append("</MaxKeys><IsTruncated>true</IsTruncated>");
+        for (int i = 0; i < keys; i++) {
+            xml.append("<Contents><Key>logs/2015/07/").append(page).append("/object-").append(i)
+                .append(i % 100 == 0 ? "-with\rcarriage-return" : "").append(".json</Key>")
+                .append("<LastModified>2015-07-01T12:00:00.000Z</LastModified>")
+                .append("<ETag>&quot;fba9dede5f27731c9771645a39863328&quot;</ETag>")
+                .append("<Size>").append(1024 + i).append("</Size>")
+                .append("<Owner><ID>75aa57f09aa0c8caeab4f8c24e99d10f8e7faeebf76c078efc7c6caea54ba06a</ID>")
+                .append("<DisplayName>benchmark</DisplayName></Owner>")
+                .append("<StorageClass>STANDARD</StorageClass></Contents>");
+        }
+        xml.append("</ListBucketResult>");
+        return xml.toString().getBytes(StringUtils.UTF8);
+    }
+
+    /**
+     * Sanitizes documents the way {@link XmlResponsesSaxParser} formerly did.
+     */
+    private static class BufferingXmlResponsesSaxParser extends XmlResponsesSaxParser {
+        @Override
+        protected InputStream sanitizeXmlDocument(DefaultHandler handler, InputStream inputStream)
+                throws IOException {
+            StringBuilder listingDocBuffer = new StringBuilder();
+            BufferedReader br = new BufferedReader(new InputStreamReader(inputStream, StringUtils.UTF8));
+            char[] buf = new char[8192];
+            int read = -1;
+            while ((read = br.read(buf)) != -1) {
+                listingDocBuffer.append(buf, 0, read);
+            }
+            br.close();
+            String listingDoc = listingDocBuffer.toString().replaceAll("\r", "&#013;");
+            return new ByteArrayInputStream(listingDoc.getBytes(StringUtils.UTF8));
+        }
+    }
+}
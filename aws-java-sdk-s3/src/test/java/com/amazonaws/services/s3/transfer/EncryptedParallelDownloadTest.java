@@ -0,0 +1,234 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.AmazonS3Encryption;
+import com.amazonaws.services.s3.AmazonS3EncryptionClient;
+import com.amazonaws.services.s3.S3ClientOptions;
+import com.amazonaws.services.s3.internal.crypto.AesGcmTestProvider;
+import com.amazonaws.services.s3.model.CryptoConfiguration;
+import com.amazonaws.services.s3.model.CryptoMode;
+import com.amazonaws.services.s3.model.EncryptionMaterials;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.StaticEncryptionMaterialsProvider;
+
+/**
+ * Downloads objects encrypted with AES/GCM in parallel byte ranges with the
+ * TransferManager, from a local server standing in for S3.
+ */
+public class EncryptedParallelDownloadTest {
+    private static final int PART_SIZE = 16 * 1024;
+    private static final int TAG_LENGTH = 16;
+
+    private final EncryptionMaterials materials = new EncryptionMaterials(
+            new SecretKeySpec(new byte[16], "AES"));
+    private final byte[] plaintext = new byte[10 * PART_SIZE + 1234];
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    private LocalS3Server server;
+    private File file;
+
+    @BeforeClass
+    public static void installProvider() {
+        AesGcmTestProvider.install();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        new Random(41).nextBytes(plaintext);
+        server = new LocalS3Server();
+        file = File.createTempFile("downloaded", ".bin");
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(plaintext.length);
+        newClient(CryptoMode.AuthenticatedEncryption).putObject("bucket", "key",
+                new ByteArrayInputStream(plaintext), metadata);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+        executor.shutdownNow();
+        file.delete();
+    }
+
+    @Test
+    public void testParallelDownloadSameAsPlaintext() throws Exception {
+        assertEquals(plaintext.length + TAG_LENGTH, server.content.length);
+        download(CryptoMode.AuthenticatedEncryption, new GetObjectRequest("bucket", "key"))
+            .waitForCompletion();
+        assertArrayEquals(plaintext, readFile(file));
+        // The ranges of the plaintext, then the tag
+        assertEquals(11 + 1, server.rangeGets.size());
+        assertTrue(server.rangeGets.contains("bytes=" + plaintext.length + "-"
+                + (plaintext.length + TAG_LENGTH - 1)));
+    }
+
+    @Test
+    public void testParallelRangeDownload() throws Exception {
+        GetObjectRequest request = new GetObjectRequest("bucket", "key")
+            .withRange(PART_SIZE + 5, 6 * PART_SIZE + 100);
+        download(CryptoMode.AuthenticatedEncryption, request).waitForCompletion();
+        assertArrayEquals(Arrays.copyOfRange(plaintext, PART_SIZE + 5, 6 * PART_SIZE + 101),
+                readFile(file));
+    }
+
+    @Test
+    public void testTamperedTagDeletesFile() throws Exception {
+        server.content[server.content.length - 1] ^= 1;
+        Download download = download(CryptoMode.AuthenticatedEncryption,
+                new GetObjectRequest("bucket", "key"));
+        try {
+            download.waitForCompletion();
+            fail();
+        } catch (AmazonClientException expected) {
+            assertTrue(expected.getCause() instanceof SecurityException);
+        }
+        assertEquals(Transfer.TransferState.Failed, download.getState());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testTamperedContentDeletesFile() throws Exception {
+        server.content[3 * PART_SIZE] ^= 1;
+        try {
+            download(CryptoMode.AuthenticatedEncryption, new GetObjectRequest("bucket", "key"))
+                .waitForCompletion();
+            fail();
+        } catch (AmazonClientException expected) {
+            assertTrue(expected.getCause() instanceof SecurityException);
+        }
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testStrictModeRangeFallsBackToSingleStream() throws Exception {
+        AmazonS3EncryptionClient strict = newClient(CryptoMode.StrictAuthenticatedEncryption);
+        GetObjectRequest request = new GetObjectRequest("bucket", "key")
+            .withRange(PART_SIZE, 6 * PART_SIZE);
+        ObjectMetadata metadata = strict.getObjectMetadata(
+                new GetObjectMetadataRequest("bucket", "key"));
+        assertNull(strict.newParallelDecryptionContext(request, metadata));
+        try {
+            download(CryptoMode.StrictAuthenticatedEncryption, request).waitForCompletion();
+            fail();
+        } catch (AmazonClientException expected) {
+            // Range gets aren't allowed by the single stream in strict mode
+            assertTrue(expected.getCause() instanceof SecurityException);
+            assertTrue(expected.getMessage().contains("Range get is not allowed"));
+        }
+        assertEquals(Collections.emptyList(), server.rangeGets);
+    }
+
+    @Test
+    public void testStrictModeParallelDownload() throws Exception {
+        download(CryptoMode.StrictAuthenticatedEncryption, new GetObjectRequest("bucket", "key"))
+            .waitForCompletion();
+        assertArrayEquals(plaintext, readFile(file));
+        assertEquals(11 + 1, server.rangeGets.size());
+    }
+
+    @Test
+    public void testResumeWithOtherEncryptionClientStartsOver() throws Exception {
+        // Left by a paused parallel download, with its first part completed
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(server.content.length);
+            raf.write(server.content, 0, PART_SIZE);
+        } finally {
+            raf.close();
+        }
+        AmazonS3Client client = new OtherEncryptionClient();
+        client.setEndpoint(server.getEndpoint());
+        client.setS3ClientOptions(new S3ClientOptions().withPathStyleAccess(true));
+        TransferManager tm = new TransferManager(client, executor, false);
+        tm.resumeDownload(new PersistableDownload("bucket", "key", null, null, null, false,
+                file.getAbsolutePath(), PART_SIZE, new int[] { 0 }, null)).waitForCompletion();
+        // Downloaded again as a single stream, as decrypted by the client
+        assertArrayEquals(server.content, readFile(file));
+        assertEquals(Collections.emptyList(), server.rangeGets);
+    }
+
+    private Download download(CryptoMode mode, GetObjectRequest request) {
+        TransferManager tm = new TransferManager(newClient(mode), executor, false);
+        TransferManagerConfiguration configuration = new TransferManagerConfiguration();
+        configuration.setMinimumDownloadPartSize(PART_SIZE);
+        configuration.setParallelDownloadThreshold(2 * PART_SIZE);
+        tm.setConfiguration(configuration);
+        return tm.download(request, file);
+    }
+
+    private AmazonS3EncryptionClient newClient(CryptoMode mode) {
+        AmazonS3EncryptionClient client = new AmazonS3EncryptionClient(
+                new BasicAWSCredentials("access", "secret"),
+                new StaticEncryptionMaterialsProvider(materials),
+                new ClientConfiguration().withSignerOverride("S3SignerType"),
+                new CryptoConfiguration(mode));
+        client.setEndpoint(server.getEndpoint());
+        client.setS3ClientOptions(new S3ClientOptions().withPathStyleAccess(true));
+        return client;
+    }
+
+    /**
+     * An encryption client other than AmazonS3EncryptionClient, which leaves
+     * the objects it gets as they are.
+     */
+    private static class OtherEncryptionClient extends AmazonS3Client implements AmazonS3Encryption {
+        OtherEncryptionClient() {
+            super(new BasicAWSCredentials("access", "secret"),
+                    new ClientConfiguration().withSignerOverride("S3SignerType"));
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            byte[] bytes = new byte[(int) in.length()];
+            in.readFully(bytes);
+            return bytes;
+        } finally {
+            in.close();
+        }
+    }
+}
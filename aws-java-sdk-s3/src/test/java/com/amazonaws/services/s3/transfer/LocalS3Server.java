@@ -0,0 +1,212 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+import com.amazonaws.util.StringUtils;
+
+/**
+ * A local HTTP server standing in for S3, holding a single object at
+ * /bucket/key: it stores the object put, with its user metadata, and serves
+ * its metadata and byte ranges. Header names are sent with the case S3 uses,
+ * which the JDK's HTTP server doesn't preserve.
+ */
+final class LocalS3Server implements Closeable {
+    private static final String OBJECT_PATH = "/bucket/key";
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    final Map<String, String> userMetadata = new ConcurrentHashMap<String, String>();
+    /** The Range headers of the GET requests received. */
+    final List<String> rangeGets = Collections.synchronizedList(new ArrayList<String>());
+    volatile byte[] content;
+    volatile String eTag;
+
+    LocalS3Server() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("localhost"));
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        });
+    }
+
+    String getEndpoint() {
+        return "http://localhost:" + serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+
+    private void accept() {
+        try {
+            for (;;) {
+                final Socket socket = serverSocket.accept();
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            handle(socket);
+                        } catch (IOException e) {
+                            // The client went away
+                        } finally {
+                            try {
+                                socket.close();
+                            } catch (IOException ignored) {
+                            }
+                        }
+                    }
+                });
+            }
+        } catch (IOException e) {
+            // Closed
+        }
+    }
+
+    private void handle(Socket socket) throws IOException {
+        InputStream in = new BufferedInputStream(socket.getInputStream());
+        OutputStream out = socket.getOutputStream();
+        String[] requestLine = readLine(in).split(" ");
+        String method = requestLine[0];
+        String path = requestLine[1].split("\\?")[0];
+        Map<String, String> headers = new HashMap<String, String>();
+        for (String line = readLine(in); line.length() > 0; line = readLine(in)) {
+            int colon = line.indexOf(':');
+            headers.put(line.substring(0, colon).toLowerCase(Locale.ENGLISH),
+                    line.substring(colon + 1).trim());
+        }
+        if ("100-continue".equalsIgnoreCase(headers.get("expect"))) {
+            out.write("HTTP/1.1 100 Continue\r\n\r\n".getBytes(StringUtils.UTF8));
+            out.flush();
+        }
+        byte[] body = new byte[headers.containsKey("content-length")
+                ? Integer.parseInt(headers.get("content-length")) : 0];
+        for (int off = 0; off < body.length;) {
+            int read = in.read(body, off, body.length - off);
+            if (read == -1) {
+                throw new EOFException();
+            }
+            off += read;
+        }
+        Map<String, String> responseHeaders = new LinkedHashMap<String, String>();
+        if (!path.equals(OBJECT_PATH)) {
+            respond(out, 404, responseHeaders, new byte[0], true);
+        } else if (method.equals("PUT")) {
+            content = body;
+            eTag = BinaryUtils.toHex(Md5Utils.computeMD5Hash(body));
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                if (header.getKey().startsWith("x-amz-meta-")) {
+                    userMetadata.put(header.getKey(), header.getValue());
+                }
+            }
+            responseHeaders.put("ETag", "\"" + eTag + "\"");
+            respond(out, 200, responseHeaders, new byte[0], true);
+        } else if (method.equals("HEAD")) {
+            putMetadataHeaders(responseHeaders);
+            respond(out, 200, responseHeaders, content, false);
+        } else {
+            getObject(out, headers, responseHeaders);
+        }
+    }
+
+    private void getObject(OutputStream out, Map<String, String> headers,
+            Map<String, String> responseHeaders) throws IOException {
+        String ifMatch = headers.get("if-match");
+        if (ifMatch != null && !ifMatch.replace("\"", "").equals(eTag)) {
+            respond(out, 412, responseHeaders, new byte[0], true);
+            return;
+        }
+        String range = headers.get("range");
+        int start = 0;
+        int end = content.length - 1;
+        int status = 200;
+        if (range != null) {
+            rangeGets.add(range);
+            String[] bounds = range.substring("bytes=".length()).split("-");
+            start = Integer.parseInt(bounds[0]);
+            end = Math.min(end, Integer.parseInt(bounds[1]));
+            status = 206;
+            responseHeaders.put("Content-Range",
+                    "bytes " + start + "-" + end + "/" + content.length);
+        }
+        putMetadataHeaders(responseHeaders);
+        byte[] body = new byte[end - start + 1];
+        System.arraycopy(content, start, body, 0, body.length);
+        respond(out, status, responseHeaders, body, true);
+    }
+
+    private void putMetadataHeaders(Map<String, String> responseHeaders) {
+        responseHeaders.put("ETag", "\"" + eTag + "\"");
+        responseHeaders.put("Last-Modified", "Thu, 01 Jan 2015 00:00:00 GMT");
+        responseHeaders.putAll(userMetadata);
+    }
+
+    private static void respond(OutputStream out, int status,
+            Map<String, String> headers, byte[] body, boolean sendBody)
+            throws IOException {
+        StringBuilder response = new StringBuilder("HTTP/1.1 ").append(status)
+            .append(status < 300 ? " OK" : " Error").append("\r\n");
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            response.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+        response.append("Content-Length: ").append(body.length).append("\r\n");
+        response.append("Connection: close\r\n\r\n");
+        out.write(response.toString().getBytes(StringUtils.UTF8));
+        if (sendBody) {
+            out.write(body);
+        }
+        out.flush();
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for (int b = in.read(); b != '\n'; b = in.read()) {
+            if (b == -1) {
+                throw new EOFException();
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return new String(line.toByteArray(), StringUtils.UTF8);
+    }
+}
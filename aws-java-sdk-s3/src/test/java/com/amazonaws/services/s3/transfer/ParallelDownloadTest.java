@@ -0,0 +1,340 @@
+/*
+ * Copyright 2015-2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.client.methods.HttpGet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.internal.FileLocks;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.services.s3.transfer.internal.DownloadImpl;
+import com.amazonaws.services.s3.transfer.internal.S3ProgressListenerChain;
+import com.amazonaws.services.s3.transfer.internal.S3SyncProgressListener;
+import com.amazonaws.services.s3.transfer.internal.TransferMonitor;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+
+public class ParallelDownloadTest {
+
+    private static final int PART_SIZE = 16 * 1024;
+    private static final int PART_COUNT = 11;
+
+    private final byte[] content = new byte[(PART_COUNT - 1) * PART_SIZE + 123];
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    private StubS3 s3;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        new Random(17).nextBytes(content);
+        s3 = new StubS3(content);
+        file = File.createTempFile("downloaded", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        file.delete();
+    }
+
+    @Test
+    public void testRangesSplitAndVerified() throws Exception {
+        download(new GetObjectRequest("bucket", "key")).waitForCompletion();
+        assertArrayEquals(content, readFile(file));
+        Set<String> expected = new HashSet<String>();
+        for (int part = 0; part < PART_COUNT; part++) {
+            expected.add(range(part));
+        }
+        assertEquals(PART_COUNT, s3.ranges.size());
+        assertEquals(expected, new HashSet<String>(s3.ranges));
+        // Every range is pinned to the ETag of the object
+        assertEquals(Collections.nCopies(PART_COUNT, s3.eTag), s3.matchingETags);
+    }
+
+    @Test
+    public void testCorruptRangeFailsVerification() throws Exception {
+        s3.corruptedRange = range(3);
+        try {
+            download(new GetObjectRequest("bucket", "key")).waitForCompletion();
+            fail();
+        } catch (AmazonClientException expected) {
+            assertTrue(expected.getMessage().contains("Unable to verify integrity"));
+        }
+    }
+
+    @Test
+    public void testObjectChangedDuringDownload() throws Exception {
+        s3.changeAfterRequests = 3;
+        Download download = download(new GetObjectRequest("bucket", "key"));
+        try {
+            download.waitForCompletion();
+            fail();
+        } catch (AmazonClientException expected) {
+            assertTrue(expected.getMessage().contains("the object has changed"));
+        }
+        assertEquals(Transfer.TransferState.Failed, download.getState());
+    }
+
+    @Test
+    public void testResumeFromCompletedParts() throws Exception {
+        int[] completedParts = { 0, 2, 5, PART_COUNT - 1 };
+        writePartialFile(completedParts);
+        newTransferManager().resumeDownload(persistableDownload(completedParts))
+            .waitForCompletion();
+        assertArrayEquals(content, readFile(file));
+        List<String> expected = new ArrayList<String>();
+        for (int part : Arrays.asList(1, 3, 4, 6, 7, 8, 9)) {
+            expected.add(range(part));
+        }
+        assertEquals(new HashSet<String>(expected), new HashSet<String>(s3.ranges));
+        assertEquals(expected.size(), s3.ranges.size());
+    }
+
+    @Test
+    public void testResumeVerifiesPartsAlreadyOnDisk() throws Exception {
+        int[] completedParts = { 0, 2 };
+        writePartialFile(completedParts);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(2 * PART_SIZE + 7);
+            raf.write(content[2 * PART_SIZE + 7] ^ 1);
+        } finally {
+            raf.close();
+        }
+        try {
+            newTransferManager().resumeDownload(persistableDownload(completedParts))
+                .waitForCompletion();
+            fail();
+        } catch (AmazonClientException expected) {
+            assertTrue(expected.getMessage().contains("Unable to verify integrity"));
+        }
+    }
+
+    @Test
+    public void testResumeOfChangedObjectRejected() throws Exception {
+        writePartialFile(new int[] { 0 });
+        PersistableDownload paused = persistableDownload(new int[] { 0 });
+        s3.eTag = "changed";
+        try {
+            newTransferManager().resumeDownload(paused);
+            fail();
+        } catch (AmazonClientException expected) {
+            assertTrue(expected.getMessage().contains("has changed since the download was paused"));
+        }
+        assertTrue(s3.ranges.isEmpty());
+    }
+
+    @Test
+    public void testFailedRangeReleasesFile() throws Exception {
+        s3.failingRange = range(4);
+        Download download = download(new GetObjectRequest("bucket", "key"));
+        try {
+            download.waitForCompletion();
+            fail();
+        } catch (AmazonServiceException expected) {
+            assertEquals("Internal Error", expected.getErrorMessage());
+        }
+        assertEquals(Transfer.TransferState.Failed, download.getState());
+        // The file is no longer locked, and the pool can run a new download
+        assertTrue(FileLocks.lock(file));
+        FileLocks.unlock(file);
+        s3.failingRange = null;
+        s3.ranges.clear();
+        download(new GetObjectRequest("bucket", "key")).waitForCompletion();
+        assertArrayEquals(content, readFile(file));
+    }
+
+    @Test
+    public void testPublishedStateThrottled() {
+        final AtomicInteger published = new AtomicInteger();
+        S3ProgressListenerChain listenerChain = new S3ProgressListenerChain(
+                new S3SyncProgressListener() {
+                    @Override
+                    public void onPersistableTransfer(PersistableTransfer persistableTransfer) {
+                        published.incrementAndGet();
+                    }
+                });
+        DownloadImpl download = new DownloadImpl("description", new TransferProgress(),
+                listenerChain, null, null, new GetObjectRequest("bucket", "key"),
+                file, PART_SIZE, "etag", null);
+        // The initial state
+        assertEquals(1, published.get());
+        for (int part = 0; part < 1000; part++) {
+            download.partCompleted(part);
+        }
+        assertTrue(published.get() <= 2);
+        download.setMonitor(new CompletedMonitor());
+        // The ranges completed since the state was last published aren't lost
+        assertEquals(1000, download.pause().getCompletedParts().length);
+    }
+
+    private TransferManager newTransferManager() {
+        TransferManager tm = new TransferManager(s3, executor, false);
+        TransferManagerConfiguration configuration = new TransferManagerConfiguration();
+        configuration.setMinimumDownloadPartSize(PART_SIZE);
+        configuration.setParallelDownloadThreshold(2 * PART_SIZE);
+        tm.setConfiguration(configuration);
+        return tm;
+    }
+
+    private Download download(GetObjectRequest request) {
+        return newTransferManager().download(request, file);
+    }
+
+    private PersistableDownload persistableDownload(int[] completedParts) {
+        return new PersistableDownload("bucket", "key", null, null, null, false,
+                file.getAbsolutePath(), PART_SIZE, completedParts, s3.eTag);
+    }
+
+    /** Writes the given ranges of the content to the file, and zeros elsewhere. */
+    private void writePartialFile(int[] completedParts) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(content.length);
+            for (int part : completedParts) {
+                int start = part * PART_SIZE;
+                raf.seek(start);
+                raf.write(content, start, Math.min(PART_SIZE, content.length - start));
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    private String range(int part) {
+        long start = (long) part * PART_SIZE;
+        return start + "-" + Math.min(start + PART_SIZE - 1, content.length - 1);
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            byte[] bytes = new byte[(int) in.length()];
+            in.readFully(bytes);
+            return bytes;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static class CompletedMonitor implements TransferMonitor {
+        private final FutureTask<Void> future = new FutureTask<Void>(new Callable<Void>() {
+            @Override
+            public Void call() {
+                return null;
+            }
+        });
+
+        CompletedMonitor() {
+            future.run();
+        }
+
+        @Override
+        public Future<?> getFuture() {
+            return future;
+        }
+
+        @Override
+        public boolean isDone() {
+            return true;
+        }
+    }
+
+    /**
+     * Serves the byte ranges of the content, honoring the ETag constraints as
+     * Amazon S3 does. The object can be made to change after a number of
+     * requests, and a range can be made to fail or be corrupted.
+     */
+    private static class StubS3 extends AbstractAmazonS3 {
+        private final byte[] content;
+        final List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+        final List<String> matchingETags = Collections.synchronizedList(new ArrayList<String>());
+        volatile String eTag;
+        volatile int changeAfterRequests = Integer.MAX_VALUE;
+        volatile String failingRange;
+        volatile String corruptedRange;
+
+        StubS3(byte[] content) {
+            this.content = content;
+            this.eTag = BinaryUtils.toHex(Md5Utils.computeMD5Hash(content));
+        }
+
+        @Override
+        public ObjectMetadata getObjectMetadata(GetObjectMetadataRequest request) {
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentLength(content.length);
+            metadata.setHeader("ETag", eTag);
+            return metadata;
+        }
+
+        @Override
+        public S3Object getObject(GetObjectRequest request) {
+            long[] range = request.getRange();
+            String key = range[0] + "-" + range[1];
+            synchronized (this) {
+                ranges.add(key);
+                matchingETags.addAll(request.getMatchingETagConstraints());
+                if (ranges.size() > changeAfterRequests)
+                    eTag = "changed";
+            }
+            if (key.equals(failingRange))
+                throw new AmazonServiceException("Internal Error");
+            if (!request.getMatchingETagConstraints().contains(eTag))
+                return null;
+            byte[] body = Arrays.copyOfRange(content, (int) range[0], (int) range[1] + 1);
+            if (key.equals(corruptedRange))
+                body[body.length / 2] ^= 1;
+            S3Object object = new S3Object();
+            object.setBucketName(request.getBucketName());
+            object.setKey(request.getKey());
+            object.setObjectContent(new S3ObjectInputStream(
+                    new ByteArrayInputStream(body), new HttpGet()));
+            return object;
+        }
+    }
+}
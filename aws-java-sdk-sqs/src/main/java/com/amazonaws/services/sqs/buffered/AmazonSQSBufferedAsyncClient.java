@@ -336,6 +336,21 @@ public class AmazonSQSBufferedAsyncClient implements AmazonSQSAsync {
      * 
      * @return a queue buffer associated with the provided queue URL. Never null
      */
+    /**
+     * Returns a snapshot of the batching and pre-fetching of the buffer of the given queue: the
+     * current batch open time and in flight batch limit of each type of outbound request, the
+     * current receive limits, and the round trip times and consumption rate they are based on.
+     * When the buffer is {@link QueueBufferConfig#setAdaptive(boolean) adaptive}, these show the
+     * choices it currently makes within the configured bounds.
+     *
+     * @param queueUrl
+     *            the URL of the queue
+     * @return never null
+     */
+    public QueueBufferMetrics getQueueBufferMetrics(String queueUrl) {
+        return getQBuffer(queueUrl).getMetrics();
+    }
+
     private synchronized QueueBuffer getQBuffer(String qUrl) {
         QueueBuffer toReturn = buffers.get(qUrl);
         if (null == toReturn) {
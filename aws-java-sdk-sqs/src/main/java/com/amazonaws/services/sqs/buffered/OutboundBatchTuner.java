@@ -0,0 +1,215 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.sqs.buffered;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Controls the batches of one type of outbound request: it limits the number of batches in flight,
+ * and decides how long a batch is held open for additional requests.
+ * <p>
+ * Unless the config is adaptive, the limit is {@code maxInflightOutboundBatches} and batches are
+ * held open for {@code maxBatchOpenMs}, as they always were. In adaptive mode both are upper
+ * bounds:
+ * <ul>
+ * <li>a batch is held open for as long as it is expected to take to fill it, given the average
+ * time between requests, and is not held open at all when not even one more request is expected
+ * within {@code maxBatchOpenMs};</li>
+ * <li>the limit starts at one batch, grows by one batch when requests had to wait for a batch to
+ * complete and the round trip time stays close to the lowest recently seen, and shrinks by one
+ * batch when the round trip time grows to more than twice that, which means SQS or the network is
+ * not keeping up.</li>
+ * </ul>
+ * Instances of this class are thread-safe.
+ */
+class OutboundBatchTuner {
+
+    private static Log log = LogFactory.getLog(OutboundBatchTuner.class);
+
+    /** The weight of the newest sample in the moving averages. */
+    private static final double ALPHA = 0.2;
+
+    /** The number of batches after which the lowest round trip time is measured anew. */
+    private static final int BASELINE_WINDOW = 100;
+
+    /** The limit grows while the average round trip time is within this factor of the lowest. */
+    private static final double GROW_THRESHOLD = 1.5;
+
+    /** The limit shrinks once the average round trip time exceeds this factor of the lowest. */
+    private static final double SHRINK_THRESHOLD = 2.0;
+
+    private final String description;
+    private final boolean adaptive;
+    private final int maxInflight;
+    private final long maxBatchOpenNanos;
+    private final int maxBatchSize;
+
+    private int inflight;
+    private int inflightLimit;
+
+    /** Whether a request had to wait for a batch to complete since the limit was last changed. */
+    private boolean backlogged;
+
+    private long lastRequestNanos = -1;
+    private double averageInterArrivalNanos = -1;
+
+    private double averageRoundTripNanos = -1;
+    private long baselineRoundTripNanos = Long.MAX_VALUE;
+    private long windowMinRoundTripNanos = Long.MAX_VALUE;
+    private int windowBatches;
+
+    private long fullBatches;
+    private long timedOutBatches;
+
+    OutboundBatchTuner(String description, QueueBufferConfig config) {
+        this.description = description;
+        this.adaptive = config.isAdaptive();
+        // must allow at least one outbound batch.
+        this.maxInflight = Math.max(1, config.getMaxInflightOutboundBatches());
+        this.maxBatchOpenNanos = TimeUnit.MILLISECONDS.toNanos(config.getMaxBatchOpenMs());
+        this.maxBatchSize = config.getMaxBatchSize();
+        this.inflightLimit = adaptive ? 1 : maxInflight;
+    }
+
+    /**
+     * Takes a slot for a new batch, waiting for one to be released if all are taken.
+     */
+    synchronized void acquire() throws InterruptedException {
+        while (!tryAcquire()) {
+            wait();
+        }
+    }
+
+    /**
+     * Takes a slot for a new batch if one is free.
+     *
+     * @return false if all slots are taken
+     */
+    synchronized boolean tryAcquire() {
+        if (inflight >= inflightLimit) {
+            backlogged = true;
+            return false;
+        }
+        ++inflight;
+        return true;
+    }
+
+    /**
+     * Releases the slot of a batch that has completed.
+     */
+    synchronized void release() {
+        --inflight;
+        notifyAll();
+    }
+
+    /**
+     * Records the arrival of a request, as it is taken into a batch.
+     *
+     * @param arrivalNanos
+     *            when the request arrived
+     */
+    synchronized void onRequest(long arrivalNanos) {
+        if (lastRequestNanos >= 0) {
+            // a long pause says nothing more than that no request is coming soon; requests
+            // submitted concurrently may be queued slightly out of order
+            long interArrival = Math.max(0, Math.min(arrivalNanos - lastRequestNanos, 2 * maxBatchOpenNanos));
+            averageInterArrivalNanos = averageInterArrivalNanos < 0 ? interArrival
+                    : averageInterArrivalNanos + ALPHA * (interArrival - averageInterArrivalNanos);
+        }
+        lastRequestNanos = Math.max(lastRequestNanos, arrivalNanos);
+    }
+
+    /**
+     * @return how long (nanoseconds) a new batch should be held open for additional requests
+     */
+    synchronized long getBatchOpenNanos() {
+        if (!adaptive || averageInterArrivalNanos < 0) {
+            return maxBatchOpenNanos;
+        }
+        if (averageInterArrivalNanos > maxBatchOpenNanos) {
+            return 0;
+        }
+        return Math.min(maxBatchOpenNanos, (long) (averageInterArrivalNanos * (maxBatchSize - 1)));
+    }
+
+    /**
+     * Records the completion of a batch.
+     *
+     * @param roundTripNanos
+     *            the time it took SQS to process the batch
+     * @param closedFull
+     *            true if the batch was closed because it was full, false if it was closed because
+     *            its open time elapsed
+     */
+    synchronized void onBatchCompleted(long roundTripNanos, boolean closedFull) {
+        if (closedFull) {
+            ++fullBatches;
+        } else {
+            ++timedOutBatches;
+        }
+
+        averageRoundTripNanos = averageRoundTripNanos < 0 ? roundTripNanos
+                : averageRoundTripNanos + ALPHA * (roundTripNanos - averageRoundTripNanos);
+        windowMinRoundTripNanos = Math.min(windowMinRoundTripNanos, roundTripNanos);
+        baselineRoundTripNanos = Math.min(baselineRoundTripNanos, roundTripNanos);
+        if (++windowBatches >= BASELINE_WINDOW) {
+            // let the baseline follow lasting changes in latency
+            baselineRoundTripNanos = windowMinRoundTripNanos;
+            windowMinRoundTripNanos = Long.MAX_VALUE;
+            windowBatches = 0;
+        }
+
+        if (!adaptive) {
+            return;
+        }
+        if (averageRoundTripNanos > SHRINK_THRESHOLD * baselineRoundTripNanos) {
+            setInflightLimit(inflightLimit - 1);
+        } else if (backlogged && averageRoundTripNanos <= GROW_THRESHOLD * baselineRoundTripNanos) {
+            setInflightLimit(inflightLimit + 1);
+        }
+    }
+
+    private void setInflightLimit(int limit) {
+        limit = Math.max(1, Math.min(maxInflight, limit));
+        backlogged = false;
+        if (limit != inflightLimit) {
+            if (log.isDebugEnabled()) {
+                log.debug(description + " in flight batch limit changed from " + inflightLimit + " to "
+                        + limit + ", average round trip " + TimeUnit.NANOSECONDS.toMillis(
+                                (long) averageRoundTripNanos) + "ms");
+            }
+            inflightLimit = limit;
+            notifyAll();
+        }
+    }
+
+    /**
+     * @return the limit on the number of batches in flight
+     */
+    synchronized int getInflightLimit() {
+        return inflightLimit;
+    }
+
+    synchronized QueueBufferMetrics.OutboundBatchMetrics getMetrics() {
+        return new QueueBufferMetrics.OutboundBatchMetrics(TimeUnit.NANOSECONDS.toMillis(getBatchOpenNanos()),
+                inflight, inflightLimit, averageRoundTripNanos < 0 ? -1
+                        : TimeUnit.NANOSECONDS.toMillis((long) averageRoundTripNanos), fullBatches,
+                timedOutBatches);
+    }
+}
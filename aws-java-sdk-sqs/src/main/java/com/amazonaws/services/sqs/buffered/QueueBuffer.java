@@ -52,6 +52,7 @@ class QueueBuffer {
     private final SendQueueBuffer sendBuffer;
     private final ReceiveQueueBuffer receiveBuffer;
     private final AmazonSQSAsync realSqs;
+    private final String url;
     QueueBufferConfig config;
 
     /**
@@ -65,6 +66,7 @@ class QueueBuffer {
     QueueBuffer(QueueBufferConfig paramConfig, String url, AmazonSQSAsync sqs) {
         realSqs = sqs;
         config = paramConfig;
+        this.url = url;
         sendBuffer = new SendQueueBuffer(sqs, executor, paramConfig, url);
         receiveBuffer = new ReceiveQueueBuffer(sqs, executor, paramConfig, url);
     }
@@ -189,6 +191,15 @@ class QueueBuffer {
         return waitForFuture(future);
     }
 
+    /**
+     * @return a snapshot of the batching and pre-fetching of this buffer
+     */
+    public QueueBufferMetrics getMetrics() {
+        QueueBufferMetrics.OutboundBatchMetrics[] outbound = sendBuffer.getMetrics();
+        return new QueueBufferMetrics(url, config.isAdaptive(), outbound[0], outbound[1], outbound[2],
+                receiveBuffer.getMetrics());
+    }
+
     /**
      * Shuts down the queue buffer. Once this method has been called, the queue buffer is not
      * operational and all subsequent calls to it may fail
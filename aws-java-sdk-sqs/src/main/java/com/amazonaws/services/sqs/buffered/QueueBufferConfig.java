@@ -56,6 +56,17 @@ public class QueueBufferConfig {
     /** 5 batches */
     public static final int MAX_INFLIGHT_OUTBOUND_BATCHES_DEFAULT = 5;
 
+    /**
+     * The maximum number of outbound requests of each type waiting to be taken into a batch.
+     * Callers submitting more requests block until earlier ones are taken into a batch, as batches
+     * in flight complete, so that the buffer holds a bounded number of requests when SQS is slower
+     * than its callers.
+     */
+    private int maxPendingOutboundRequests;
+
+    /** 50 requests, which fill the default number of batches in flight */
+    public static final int MAX_PENDING_OUTBOUND_REQUESTS_DEFAULT = 50;
+
     /**
      * The maximum number of concurrent receive message batches. The greater this number, the faster
      * the queue will be pulling messages from the SQS servers (at the expense of consuming more
@@ -110,6 +121,16 @@ public class QueueBufferConfig {
 
     public static final int LONGPOLL_WAIT_TIMEOUT_SECONDS_DEFAULT = 20;
 
+    /**
+     * Should the buffer tune its batching and pre-fetching to the observed traffic? If so,
+     * maxBatchOpenMs, maxInflightOutboundBatches, maxInflightReceiveBatches and
+     * maxDoneReceiveBatches are upper bounds rather than fixed values.
+     */
+    private boolean adaptive;
+
+    /** false */
+    public static final boolean ADAPTIVE_DEFAULT = false;
+
     public QueueBufferConfig(long maxBatchOpenMs, int maxInflightOutboundBatches, int maxInflightReceiveBatches,
             int maxDoneReceiveBatches, boolean paramLongPoll, long maxBatchSizeBytes, int visibilityTimeout,
             int longPollTimeout, int maxBatch) {
@@ -123,6 +144,8 @@ public class QueueBufferConfig {
         this.visibilityTimeoutSeconds = visibilityTimeout;
         this.longPollWaitTimeoutSeconds = longPollTimeout;
         this.maxBatchSize = maxBatch;
+        this.maxPendingOutboundRequests = MAX_PENDING_OUTBOUND_REQUESTS_DEFAULT;
+        this.adaptive = ADAPTIVE_DEFAULT;
     }
 
     public QueueBufferConfig() {
@@ -141,16 +164,20 @@ public class QueueBufferConfig {
         maxDoneReceiveBatches = other.maxDoneReceiveBatches;
         maxInflightOutboundBatches = other.maxInflightOutboundBatches;
         maxInflightReceiveBatches = other.maxInflightReceiveBatches;
+        maxPendingOutboundRequests = other.maxPendingOutboundRequests;
         visibilityTimeoutSeconds = other.visibilityTimeoutSeconds;
+        adaptive = other.adaptive;
     }
 
     @Override
     public String toString() {
         return "QueueBufferConfig [maxBatchSize=" + maxBatchSize + ", maxBatchOpenMs=" + maxBatchOpenMs + ", longPoll="
                 + longPoll + ", maxInflightOutboundBatches=" + maxInflightOutboundBatches
+                + ", maxPendingOutboundRequests=" + maxPendingOutboundRequests
                 + ", maxInflightReceiveBatches=" + maxInflightReceiveBatches + ", maxDoneReceiveBatches="
                 + maxDoneReceiveBatches + ", maxBatchSizeBytes=" + maxBatchSizeBytes + ", visibilityTimeoutSeconds="
-                + visibilityTimeoutSeconds + ", longPollWaitTimeoutSeconds=" + longPollWaitTimeoutSeconds + "]";
+                + visibilityTimeoutSeconds + ", longPollWaitTimeoutSeconds=" + longPollWaitTimeoutSeconds + ", adaptive="
+                + adaptive + "]";
     }
 
     /**
@@ -227,6 +254,29 @@ public class QueueBufferConfig {
         return this;
     }
 
+    /**
+     * The maximum number of outbound requests of each type waiting to be taken into a batch.
+     * Callers submitting more requests block until earlier ones are taken into a batch. Should be
+     * at least maxBatchSize, for batches to be filled before maxBatchOpenMs elapses.
+     */
+    public int getMaxPendingOutboundRequests() {
+        return maxPendingOutboundRequests;
+    }
+
+    /**
+     * The maximum number of outbound requests of each type waiting to be taken into a batch.
+     * Callers submitting more requests block until earlier ones are taken into a batch. Should be
+     * at least maxBatchSize, for batches to be filled before maxBatchOpenMs elapses.
+     */
+    public void setMaxPendingOutboundRequests(int maxPendingOutboundRequests) {
+        this.maxPendingOutboundRequests = maxPendingOutboundRequests;
+    }
+
+    public QueueBufferConfig withMaxPendingOutboundRequests(int maxPendingOutboundRequests) {
+        this.maxPendingOutboundRequests = maxPendingOutboundRequests;
+        return this;
+    }
+
     /**
      * The maximum number of concurrent receive message batches. The greater this number, the faster
      * the queue will be pulling messages from the SQS servers (at the expense of consuming more
@@ -390,6 +440,38 @@ public class QueueBufferConfig {
         return this;
     }
 
+    /**
+     * @return true if the queue buffer tunes its batching and pre-fetching to the observed
+     *         traffic, false if it uses the configured values as they are.
+     */
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * Specify "true" for the queue buffer to tune its batching and pre-fetching to the observed
+     * traffic. In that mode:
+     * <ul>
+     * <li>a send batch is held open for as long as it is expected to take to fill it, given the
+     * rate of outbound requests, but never longer than maxBatchOpenMs;</li>
+     * <li>the number of batches in flight for each type of outbound request grows while requests
+     * have to wait for a batch and the round trip time to SQS stays low, and shrinks when the
+     * round trip time rises, up to maxInflightOutboundBatches;</li>
+     * <li>the number of receive batches in flight and pre-fetched follows the rate at which
+     * messages are consumed, up to maxInflightReceiveBatches and maxDoneReceiveBatches.</li>
+     * </ul>
+     * The current choices can be retrieved with
+     * {@link AmazonSQSBufferedAsyncClient#getQueueBufferMetrics(String)}.
+     */
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    public QueueBufferConfig withAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+        return this;
+    }
+
     /**
      * this method checks the config for validity. If the config is deemed to be invalid, an
      * informative exception is thrown.
@@ -401,6 +483,9 @@ public class QueueBufferConfig {
         if (visibilityTimeoutSeconds == 0) {
             throw new AmazonClientException("Visibility timeout value may not be equal to zero ");
         }
+        if (maxPendingOutboundRequests < 1) {
+            throw new AmazonClientException("Maximum number of pending outbound requests must be at least 1");
+        }
     }
 
 }
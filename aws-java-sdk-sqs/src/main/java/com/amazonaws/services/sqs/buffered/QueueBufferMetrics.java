@@ -0,0 +1,237 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.sqs.buffered;
+
+/**
+ * A snapshot of the batching and pre-fetching of the buffer of one queue, as returned by
+ * {@link AmazonSQSBufferedAsyncClient#getQueueBufferMetrics(String)}. When the
+ * {@link QueueBufferConfig#isAdaptive() adaptive} mode is enabled, the limits reported here are
+ * the ones currently chosen by the buffer within the configured bounds.
+ * <p>
+ * Instances of this class are immutable.
+ */
+public class QueueBufferMetrics {
+
+    private final String queueUrl;
+    private final boolean adaptive;
+    private final OutboundBatchMetrics sendMessageBatches;
+    private final OutboundBatchMetrics deleteMessageBatches;
+    private final OutboundBatchMetrics changeMessageVisibilityBatches;
+    private final ReceiveMetrics receiveBatches;
+
+    QueueBufferMetrics(String queueUrl, boolean adaptive, OutboundBatchMetrics sendMessageBatches,
+            OutboundBatchMetrics deleteMessageBatches, OutboundBatchMetrics changeMessageVisibilityBatches,
+            ReceiveMetrics receiveBatches) {
+        this.queueUrl = queueUrl;
+        this.adaptive = adaptive;
+        this.sendMessageBatches = sendMessageBatches;
+        this.deleteMessageBatches = deleteMessageBatches;
+        this.changeMessageVisibilityBatches = changeMessageVisibilityBatches;
+        this.receiveBatches = receiveBatches;
+    }
+
+    public String getQueueUrl() {
+        return queueUrl;
+    }
+
+    /**
+     * @return true if the buffer tunes its batching and pre-fetching
+     */
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public OutboundBatchMetrics getSendMessageBatches() {
+        return sendMessageBatches;
+    }
+
+    public OutboundBatchMetrics getDeleteMessageBatches() {
+        return deleteMessageBatches;
+    }
+
+    public OutboundBatchMetrics getChangeMessageVisibilityBatches() {
+        return changeMessageVisibilityBatches;
+    }
+
+    public ReceiveMetrics getReceiveBatches() {
+        return receiveBatches;
+    }
+
+    @Override
+    public String toString() {
+        return "QueueBufferMetrics [queueUrl=" + queueUrl + ", adaptive=" + adaptive + ", sendMessageBatches="
+                + sendMessageBatches + ", deleteMessageBatches=" + deleteMessageBatches
+                + ", changeMessageVisibilityBatches=" + changeMessageVisibilityBatches + ", receiveBatches="
+                + receiveBatches + "]";
+    }
+
+    /**
+     * The batches of one type of outbound request.
+     */
+    public static class OutboundBatchMetrics {
+        private final long batchOpenMs;
+        private final int inflightBatches;
+        private final int inflightBatchLimit;
+        private final long averageRoundTripMs;
+        private final long fullBatches;
+        private final long timedOutBatches;
+
+        OutboundBatchMetrics(long batchOpenMs, int inflightBatches, int inflightBatchLimit,
+                long averageRoundTripMs, long fullBatches, long timedOutBatches) {
+            this.batchOpenMs = batchOpenMs;
+            this.inflightBatches = inflightBatches;
+            this.inflightBatchLimit = inflightBatchLimit;
+            this.averageRoundTripMs = averageRoundTripMs;
+            this.fullBatches = fullBatches;
+            this.timedOutBatches = timedOutBatches;
+        }
+
+        /**
+         * @return how long (milliseconds) a new batch is currently held open for additional
+         *         requests
+         */
+        public long getBatchOpenMs() {
+            return batchOpenMs;
+        }
+
+        /**
+         * @return the number of batches currently in flight
+         */
+        public int getInflightBatches() {
+            return inflightBatches;
+        }
+
+        /**
+         * @return the current limit on the number of batches in flight
+         */
+        public int getInflightBatchLimit() {
+            return inflightBatchLimit;
+        }
+
+        /**
+         * @return the moving average of the time (milliseconds) SQS took to process a batch, or
+         *         -1 if no batch has completed yet
+         */
+        public long getAverageRoundTripMs() {
+            return averageRoundTripMs;
+        }
+
+        /**
+         * @return the number of batches sent because they were full
+         */
+        public long getFullBatches() {
+            return fullBatches;
+        }
+
+        /**
+         * @return the number of batches sent before they were full, because their open time
+         *         elapsed or the buffer was flushed
+         */
+        public long getTimedOutBatches() {
+            return timedOutBatches;
+        }
+
+        @Override
+        public String toString() {
+            return "[batchOpenMs=" + batchOpenMs + ", inflightBatches=" + inflightBatches
+                    + ", inflightBatchLimit=" + inflightBatchLimit + ", averageRoundTripMs=" + averageRoundTripMs
+                    + ", fullBatches=" + fullBatches + ", timedOutBatches=" + timedOutBatches + "]";
+        }
+    }
+
+    /**
+     * The pre-fetching of received messages.
+     */
+    public static class ReceiveMetrics {
+        private final int inflightBatches;
+        private final int inflightBatchLimit;
+        private final int doneBatches;
+        private final int doneBatchLimit;
+        private final long averageRoundTripMs;
+        private final double messagesConsumedPerSecond;
+        private final long starvedReceives;
+
+        ReceiveMetrics(int inflightBatches, int inflightBatchLimit, int doneBatches, int doneBatchLimit,
+                long averageRoundTripMs, double messagesConsumedPerSecond, long starvedReceives) {
+            this.inflightBatches = inflightBatches;
+            this.inflightBatchLimit = inflightBatchLimit;
+            this.doneBatches = doneBatches;
+            this.doneBatchLimit = doneBatchLimit;
+            this.averageRoundTripMs = averageRoundTripMs;
+            this.messagesConsumedPerSecond = messagesConsumedPerSecond;
+            this.starvedReceives = starvedReceives;
+        }
+
+        /**
+         * @return the number of receive batches currently in flight
+         */
+        public int getInflightBatches() {
+            return inflightBatches;
+        }
+
+        /**
+         * @return the current limit on the number of receive batches in flight
+         */
+        public int getInflightBatchLimit() {
+            return inflightBatchLimit;
+        }
+
+        /**
+         * @return the number of completed receive batches currently waiting in the buffer
+         */
+        public int getDoneBatches() {
+            return doneBatches;
+        }
+
+        /**
+         * @return the current number of completed receive batches above which no more are
+         *         fetched
+         */
+        public int getDoneBatchLimit() {
+            return doneBatchLimit;
+        }
+
+        /**
+         * @return the moving average of the time (milliseconds) taken by the receives that
+         *         returned messages, or -1 if none has yet
+         */
+        public long getAverageRoundTripMs() {
+            return averageRoundTripMs;
+        }
+
+        /**
+         * @return the moving average of the number of messages handed out per second
+         */
+        public double getMessagesConsumedPerSecond() {
+            return messagesConsumedPerSecond;
+        }
+
+        /**
+         * @return the number of receives that could not be satisfied from the buffer right away
+         */
+        public long getStarvedReceives() {
+            return starvedReceives;
+        }
+
+        @Override
+        public String toString() {
+            return "[inflightBatches=" + inflightBatches + ", inflightBatchLimit=" + inflightBatchLimit
+                    + ", doneBatches=" + doneBatches + ", doneBatchLimit=" + doneBatchLimit
+                    + ", averageRoundTripMs=" + averageRoundTripMs + ", messagesConsumedPerSecond="
+                    + messagesConsumedPerSecond + ", starvedReceives=" + starvedReceives + "]";
+        }
+    }
+}
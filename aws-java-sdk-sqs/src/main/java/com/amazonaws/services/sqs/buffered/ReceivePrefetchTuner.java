@@ -0,0 +1,189 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.sqs.buffered;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Decides how many receive batches are kept in flight and how many completed batches are
+ * pre-fetched into the buffer.
+ * <p>
+ * Unless the config is adaptive, these are {@code maxInflightReceiveBatches} and
+ * {@code maxDoneReceiveBatches}. In adaptive mode they are upper bounds, and the buffer aims to
+ * hold the messages consumed during one receive round trip: the measured consumption rate times
+ * the average round trip time of the receives that returned messages, in batches of
+ * {@code maxBatchSize}. A receive that could not be satisfied from the buffer adds one more batch,
+ * at most once per round trip, and the extra batches are given back one per second without such a
+ * receive. Keeping the buffer small matters because the visibility timeout of pre-fetched messages
+ * is already running.
+ * <p>
+ * Instances of this class are thread-safe.
+ */
+class ReceivePrefetchTuner {
+
+    private static Log log = LogFactory.getLog(ReceivePrefetchTuner.class);
+
+    /** The weight of the newest sample in the moving averages. */
+    private static final double ALPHA = 0.3;
+
+    /** The period over which the consumption rate is measured. */
+    private static final long RATE_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final String description;
+    private final boolean adaptive;
+    private final int maxInflight;
+    private final int maxDone;
+    private final int maxBatchSize;
+
+    private long periodStartNanos;
+    private long periodMessages;
+    private boolean periodStarved;
+    private double messagesPerSecond;
+
+    private double averageRoundTripNanos = -1;
+
+    /** Batches added because receives could not be satisfied from the buffer. */
+    private int starvationBatches;
+    private long lastStarvationNanos = -1;
+    private long starvedReceives;
+
+    private int inflightTarget;
+    private int doneTarget;
+
+    /**
+     * @param startNanos
+     *            when the consumption rate starts being measured, as by {@link System#nanoTime()}
+     */
+    ReceivePrefetchTuner(String description, QueueBufferConfig config, long startNanos) {
+        this.description = description;
+        this.periodStartNanos = startNanos;
+        this.adaptive = config.isAdaptive();
+        // must allow at least one inflight receive task, or receive won't work at all.
+        this.maxInflight = Math.max(1, config.getMaxInflightReceiveBatches());
+        this.maxDone = Math.max(1, config.getMaxDoneReceiveBatches());
+        this.maxBatchSize = Math.max(1, config.getMaxBatchSize());
+        this.inflightTarget = adaptive ? 1 : maxInflight;
+        this.doneTarget = adaptive ? 1 : maxDone;
+    }
+
+    /**
+     * Records messages handed out to callers.
+     *
+     * @param nowNanos
+     *            the current time, as by {@link System#nanoTime()}
+     */
+    synchronized void onMessagesConsumed(int count, long nowNanos) {
+        periodMessages += count;
+        updateRate(nowNanos);
+    }
+
+    /**
+     * Records a receive that could not be satisfied from the buffer.
+     *
+     * @param nowNanos
+     *            the current time, as by {@link System#nanoTime()}
+     */
+    synchronized void onStarved(long nowNanos) {
+        ++starvedReceives;
+        periodStarved = true;
+        // the batch added last time needs a round trip to make a difference
+        if (adaptive && (lastStarvationNanos < 0 || nowNanos - lastStarvationNanos >= averageRoundTripNanos)) {
+            lastStarvationNanos = nowNanos;
+            starvationBatches = Math.min(starvationBatches + 1, Math.max(maxInflight, maxDone));
+            updateTargets();
+        }
+    }
+
+    /**
+     * Records the completion of a receive batch.
+     *
+     * @param roundTripNanos
+     *            how long the receive took
+     * @param messageCount
+     *            how many messages it returned
+     * @param nowNanos
+     *            the current time, as by {@link System#nanoTime()}
+     */
+    synchronized void onReceiveCompleted(long roundTripNanos, int messageCount, long nowNanos) {
+        // a long poll that returns nothing measures the poll timeout, not the round trip
+        if (messageCount > 0) {
+            averageRoundTripNanos = averageRoundTripNanos < 0 ? roundTripNanos
+                    : averageRoundTripNanos + ALPHA * (roundTripNanos - averageRoundTripNanos);
+        }
+        updateRate(nowNanos);
+    }
+
+    private void updateRate(long nowNanos) {
+        long elapsed = nowNanos - periodStartNanos;
+        if (elapsed < RATE_PERIOD_NANOS) {
+            return;
+        }
+        double rate = periodMessages * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+        messagesPerSecond = messagesPerSecond + ALPHA * (rate - messagesPerSecond);
+        if (!periodStarved && starvationBatches > 0) {
+            --starvationBatches;
+        }
+        periodStartNanos = nowNanos;
+        periodMessages = 0;
+        periodStarved = false;
+        if (adaptive) {
+            updateTargets();
+        }
+    }
+
+    private void updateTargets() {
+        int batches = 0;
+        if (averageRoundTripNanos > 0) {
+            double messages = messagesPerSecond * averageRoundTripNanos / TimeUnit.SECONDS.toNanos(1);
+            batches = (int) Math.ceil(messages / maxBatchSize);
+        }
+        batches += starvationBatches;
+        int inflight = Math.max(1, Math.min(maxInflight, batches));
+        int done = Math.max(1, Math.min(maxDone, batches));
+        if (inflight != inflightTarget || done != doneTarget) {
+            if (log.isDebugEnabled()) {
+                log.debug(description + " receive batches changed to " + inflight + " in flight and " + done
+                        + " pre-fetched, consuming " + Math.round(messagesPerSecond) + " messages/s");
+            }
+            inflightTarget = inflight;
+            doneTarget = done;
+        }
+    }
+
+    /**
+     * @return the maximum number of receive batches in flight
+     */
+    synchronized int getInflightTarget() {
+        return inflightTarget;
+    }
+
+    /**
+     * @return the number of completed receive batches above which no more are fetched
+     */
+    synchronized int getDoneTarget() {
+        return doneTarget;
+    }
+
+    synchronized QueueBufferMetrics.ReceiveMetrics getMetrics(int inflight, int done, long nowNanos) {
+        updateRate(nowNanos);
+        return new QueueBufferMetrics.ReceiveMetrics(inflight, inflightTarget, done, doneTarget,
+                averageRoundTripNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis((long) averageRoundTripNanos),
+                messagesPerSecond, starvedReceives);
+    }
+}
@@ -72,6 +72,9 @@ public class ReceiveQueueBuffer {
 
     private final AmazonSQS sqsClient;
 
+    /** Decides how many batches are in flight and pre-fetched. */
+    private final ReceivePrefetchTuner tuner;
+
     private long bufferCounter = 0;
 
     /**
@@ -106,7 +109,7 @@ public class ReceiveQueueBuffer {
         executor = paramExecutor;
         sqsClient = paramSQS;
         qUrl = url;
-
+        tuner = new ReceivePrefetchTuner("Queue " + url, paramConfig, System.nanoTime());
     }
 
     /**
@@ -145,6 +148,9 @@ public class ReceiveQueueBuffer {
 
         // attempt to satisfy it right away...
         satisfyFuturesFromBuffer();
+        if (!toReturn.isDone()) {
+            tuner.onStarved(System.nanoTime());
+        }
 
         // spawn more receive tasks if we need them...
         spawnMoreReceiveTasks();
@@ -222,6 +228,7 @@ public class ReceiveQueueBuffer {
             finishedTasks.removeFirst();
         }
         result.setMessages(messages);
+        tuner.onMessagesConsumed(numRetrieved, System.nanoTime());
 
         // if after the above runs the exception is not null,
         // the finished batch has encountered an error, and we will
@@ -288,8 +295,7 @@ public class ReceiveQueueBuffer {
             return;
         }
 
-        int desiredBatches = config.getMaxDoneReceiveBatches();
-        desiredBatches = desiredBatches < 1 ? 1 : desiredBatches;
+        int desiredBatches = tuner.getDoneTarget();
 
         synchronized (finishedTasks) {
             if (finishedTasks.size() >= desiredBatches)
@@ -314,10 +320,7 @@ public class ReceiveQueueBuffer {
                 visibilityTimeoutNanos = TimeUnit.NANOSECONDS.convert(visibilityTimeoutSeconds, TimeUnit.SECONDS);
             }
 
-            int max = config.getMaxInflightReceiveBatches();
-            // must allow at least one inflight receive task, or receive won't
-            // work at all.
-            max = max > 0 ? max : 1;
+            int max = tuner.getInflightTarget();
             int toSpawn = max - inflightReceiveMessageBatches;
             if (toSpawn > 0) {
                 ReceiveMessageBatchTask task = new ReceiveMessageBatchTask(this);
@@ -349,6 +352,17 @@ public class ReceiveQueueBuffer {
         spawnMoreReceiveTasks();
     }
 
+    /**
+     * @return a snapshot of the pre-fetching of this buffer
+     */
+    QueueBufferMetrics.ReceiveMetrics getMetrics() {
+        int done;
+        synchronized (finishedTasks) {
+            done = finishedTasks.size();
+        }
+        return tuner.getMetrics(inflightReceiveMessageBatches, done, System.nanoTime());
+    }
+
     /**
      * Clears and nacks any pre-fetched messages in this buffer.
      */
@@ -512,7 +526,10 @@ public class ReceiveQueueBuffer {
                     request.withWaitTimeSeconds(config.getLongPollWaitTimeoutSeconds());
                 }
 
+                long startNanos = System.nanoTime();
                 messages = sqsClient.receiveMessage(request).getMessages();
+                long endNanos = System.nanoTime();
+                tuner.onReceiveCompleted(endNanos - startNanos, messages.size(), endNanos);
             } catch (AmazonClientException e) {
                 exception = e;
             } finally {
@@ -15,10 +15,16 @@
 package com.amazonaws.services.sqs.buffered;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -47,10 +53,14 @@ import com.amazonaws.services.sqs.model.SendMessageResult;
 /**
  * This class is responsible for buffering outgoing SQS requests, i.e. requests to send a message,
  * delete a message and change the visibility of the message. <br>
- * When a request arrives, the buffer adds the message to a message batch of an appropriate type
- * (creating such a batch if there currently isn't one outstanding). When the outstanding batch
- * becomes full, or when a configurable timeout expires, the buffer makes a call to SQS to execute
- * the current batch. <br>
+ * When a request arrives, the buffer adds it to a queue of requests of the same type, and makes sure
+ * a flusher task is running for that queue. The flusher takes requests off the queue into a batch
+ * once enough of them have arrived to fill it, or once the oldest of them has waited for the batch
+ * open time, and makes a call to SQS to execute the batch. <br>
+ * Callers never take a lock: the queues are lock-free, and each has a single consumer (its
+ * flusher), so the batches are assembled without contention however many threads submit
+ * requests. Callers only block when {@code maxPendingOutboundRequests} requests of the same type
+ * are already waiting for a batch. <br>
  * Internally, the batch objects maintain a list of futures corresponding to the requests added to
  * them. When a batch completes, it loads the results into the futures and marks the futures as
  * complete.
@@ -75,70 +85,51 @@ public class SendQueueBuffer {
     private final AmazonSQS sqsClient;
 
     /**
-     * The executor service for the batching tasks.
+     * The executor service for the flushers and the batching tasks.
      */
     private final Executor executor;
 
     /**
-     * Object used to serialize sendMessage calls.
+     * Pending sendMessage requests.
      */
-    private final Object sendMessageLock = new Object();
+    private final OutboundQueue<SendMessageRequest, SendMessageResult> sendMessageQueue;
 
     /**
-     * Object used to serialize deleteMessage calls.
+     * Pending deleteMessage requests.
      */
-    private final Object deleteMessageLock = new Object();
+    private final OutboundQueue<DeleteMessageRequest, Void> deleteMessageQueue;
 
     /**
-     * Object used to serialize changeMessageVisibility calls.
+     * Pending changeMessageVisibility requests.
      */
-    private final Object changeMessageVisibilityLock = new Object();
-
-    /**
-     * Current batching task for sendMessage. Using a size 1 array to allow "passing by reference".
-     * Synchronized by {@code sendMessageLock}.
-     */
-    private final SendMessageBatchTask[] openSendMessageBatchTask = new SendMessageBatchTask[1];
-
-    /**
-     * Current batching task for deleteMessage. Using a size 1 array to allow
-     * "passing by reference". Synchronized by {@code deleteMessageLock}.
-     */
-    private final DeleteMessageBatchTask[] openDeleteMessageBatchTask = new DeleteMessageBatchTask[1];
-
-    /**
-     * Current batching task for changeMessageVisibility. Using a size 1 array to allow
-     * "passing by reference". Synchronized by {@code changeMessageVisibilityLock}.
-     */
-    private final ChangeMessageVisibilityBatchTask[] openChangeMessageVisibilityBatchTask = new ChangeMessageVisibilityBatchTask[1];
-
-    /**
-     * Permits controlling the number of in flight SendMessage batches.
-     */
-    private final Semaphore inflightSendMessageBatches;
-
-    /**
-     * Permits controlling the number of in flight DeleteMessage batches.
-     */
-    private final Semaphore inflightDeleteMessageBatches;
-
-    /**
-     * Permits controlling the number of in flight ChangeMessageVisibility batches.
-     */
-    private final Semaphore inflightChangeMessageVisibilityBatches;
+    private final OutboundQueue<ChangeMessageVisibilityRequest, Void> changeMessageVisibilityQueue;
 
     SendQueueBuffer(AmazonSQS sqsClient, Executor executor, QueueBufferConfig paramConfig, String url) {
         this.sqsClient = sqsClient;
         this.executor = executor;
         this.config = paramConfig;
         qUrl = url;
-        int maxBatch = config.getMaxInflightOutboundBatches();
-
-        // must allow at least one outbound batch.
-        maxBatch = maxBatch > 0 ? maxBatch : 1;
-        this.inflightSendMessageBatches = new Semaphore(maxBatch);
-        this.inflightDeleteMessageBatches = new Semaphore(maxBatch);
-        this.inflightChangeMessageVisibilityBatches = new Semaphore(maxBatch);
+        this.sendMessageQueue = new OutboundQueue<SendMessageRequest, SendMessageResult>(
+                new OutboundBatchTuner("Queue " + url + " SendMessage", config)) {
+            @Override
+            protected OutboundBatchTask<SendMessageRequest, SendMessageResult> newOutboundBatchTask() {
+                return new SendMessageBatchTask();
+            }
+        };
+        this.deleteMessageQueue = new OutboundQueue<DeleteMessageRequest, Void>(
+                new OutboundBatchTuner("Queue " + url + " DeleteMessage", config)) {
+            @Override
+            protected OutboundBatchTask<DeleteMessageRequest, Void> newOutboundBatchTask() {
+                return new DeleteMessageBatchTask();
+            }
+        };
+        this.changeMessageVisibilityQueue = new OutboundQueue<ChangeMessageVisibilityRequest, Void>(
+                new OutboundBatchTuner("Queue " + url + " ChangeMessageVisibility", config)) {
+            @Override
+            protected OutboundBatchTask<ChangeMessageVisibilityRequest, Void> newOutboundBatchTask() {
+                return new ChangeMessageVisibilityBatchTask();
+            }
+        };
     }
 
     public QueueBufferConfig getConfig() {
@@ -150,9 +141,7 @@ public class SendQueueBuffer {
      */
     public QueueBufferFuture<SendMessageRequest, SendMessageResult> sendMessage(SendMessageRequest request,
                                                                                 QueueBufferCallback<SendMessageRequest, SendMessageResult> callback) {
-        QueueBufferFuture<SendMessageRequest, SendMessageResult> result = submitOutboundRequest(sendMessageLock,
-                openSendMessageBatchTask, request, inflightSendMessageBatches, callback);
-        return result;
+        return sendMessageQueue.submit(request, request.getMessageBody().getBytes().length, callback);
     }
 
     /**
@@ -160,8 +149,7 @@ public class SendQueueBuffer {
      */
     public QueueBufferFuture<DeleteMessageRequest, Void> deleteMessage(DeleteMessageRequest request,
                                                                        QueueBufferCallback<DeleteMessageRequest, Void> callback) {
-        return submitOutboundRequest(deleteMessageLock, openDeleteMessageBatchTask, request,
-                inflightDeleteMessageBatches, callback);
+        return deleteMessageQueue.submit(request, 0, callback);
     }
 
     /**
@@ -169,25 +157,7 @@ public class SendQueueBuffer {
      */
     public QueueBufferFuture<ChangeMessageVisibilityRequest, Void> changeMessageVisibility(ChangeMessageVisibilityRequest request,
                                                                                            QueueBufferCallback<ChangeMessageVisibilityRequest, Void> callback) {
-        return submitOutboundRequest(changeMessageVisibilityLock, openChangeMessageVisibilityBatchTask, request,
-                inflightChangeMessageVisibilityBatches, callback);
-    }
-
-    /**
-     * @return new {@code OutboundBatchTask} of appropriate type, never null
-     */
-    @SuppressWarnings("unchecked")
-    private <R extends AmazonWebServiceRequest, Result> OutboundBatchTask<R, Result> newOutboundBatchTask(R request) {
-
-        if (request instanceof SendMessageRequest)
-            return (OutboundBatchTask<R, Result>) new SendMessageBatchTask();
-        else if (request instanceof DeleteMessageRequest)
-            return (OutboundBatchTask<R, Result>) new DeleteMessageBatchTask();
-        else if (request instanceof ChangeMessageVisibilityRequest)
-            return (OutboundBatchTask<R, Result>) new ChangeMessageVisibilityBatchTask();
-        else
-            // this should never happen
-            throw new IllegalArgumentException("Unsupported request type " + request.getClass().getName());
+        return changeMessageVisibilityQueue.submit(request, 0, callback);
     }
 
     /**
@@ -198,19 +168,12 @@ public class SendQueueBuffer {
      * call are completed (i.e. processed by SQS).
      */
     public void flush() {
-
+        // close the open batches of all three types at once, then wait for them
+        FlushBarrier[] barriers = new FlushBarrier[] { sendMessageQueue.flush(), deleteMessageQueue.flush(),
+                changeMessageVisibilityQueue.flush() };
         try {
-            synchronized (sendMessageLock) {
-                inflightSendMessageBatches.acquire(config.getMaxInflightOutboundBatches());
-                inflightSendMessageBatches.release(config.getMaxInflightOutboundBatches());
-            }
-            synchronized (deleteMessageLock) {
-                inflightDeleteMessageBatches.acquire(config.getMaxInflightOutboundBatches());
-                inflightDeleteMessageBatches.release(config.getMaxInflightOutboundBatches());
-            }
-            synchronized (changeMessageVisibilityLock) {
-                inflightChangeMessageVisibilityBatches.acquire(config.getMaxInflightOutboundBatches());
-                inflightChangeMessageVisibilityBatches.release(config.getMaxInflightOutboundBatches());
+            for (FlushBarrier barrier : barriers) {
+                barrier.await();
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -218,88 +181,338 @@ public class SendQueueBuffer {
     }
 
     /**
-     * Submits an outbound request for delivery to the queue associated with this buffer.
+     * @return a snapshot of the batching of each type of outbound request
+     */
+    QueueBufferMetrics.OutboundBatchMetrics[] getMetrics() {
+        return new QueueBufferMetrics.OutboundBatchMetrics[] { sendMessageQueue.tuner.getMetrics(),
+                deleteMessageQueue.tuner.getMetrics(), changeMessageVisibilityQueue.tuner.getMetrics() };
+    }
+
+    /**
+     * A request waiting in an {@code OutboundQueue}, or a flush barrier.
+     */
+    private static final class Entry<R extends AmazonWebServiceRequest, Result> {
+        final R request;
+        final QueueBufferFuture<R, Result> future;
+        final long sizeBytes;
+        final long arrivalNanos;
+        final FlushBarrier barrier;
+
+        Entry(R request, QueueBufferFuture<R, Result> future, long sizeBytes, long arrivalNanos) {
+            this.request = request;
+            this.future = future;
+            this.sizeBytes = sizeBytes;
+            this.arrivalNanos = arrivalNanos;
+            this.barrier = null;
+        }
+
+        Entry(FlushBarrier barrier) {
+            this.request = null;
+            this.future = null;
+            this.sizeBytes = 0;
+            this.arrivalNanos = System.nanoTime();
+            this.barrier = barrier;
+        }
+    }
+
+    /**
+     * Released once the batches in flight when the flusher reached it have completed.
+     */
+    private static final class FlushBarrier {
+        /** -1 until the flusher reaches the barrier. */
+        private int pendingBatches = -1;
+
+        synchronized void setPendingBatches(int count) {
+            pendingBatches = count;
+            notifyAll();
+        }
+
+        synchronized void onBatchCompleted() {
+            if (--pendingBatches == 0) {
+                notifyAll();
+            }
+        }
+
+        synchronized void await() throws InterruptedException {
+            while (pendingBatches != 0) {
+                wait();
+            }
+        }
+    }
+
+    /**
+     * The requests of one type waiting to be batched, and the flusher that batches them.
      * <p>
-     * 
-     * @param operationLock
-     *            the lock synchronizing calls for the call type ( {@code sendMessage},
-     *            {@code deleteMessage}, {@code changeMessageVisibility} )
-     * @param openOutboundBatchTask
-     *            the open batch task for this call type
-     * @param request
-     *            the request to submit
-     * @param inflightOperationBatches
-     *            the permits controlling the batches for this type of request
-     * @return never null
-     * @throws AmazonClientException
-     *             (see the various outbound calls for details)
+     * Any number of threads add requests to a lock-free queue, and the flusher, which is the only
+     * consumer, takes them off in batches. The flusher runs on the executor while there are requests
+     * in the queue, and is scheduled again by the next request once it has drained the queue. The
+     * flusher waits while a batch can't be filled yet and its oldest request hasn't waited for the
+     * batch open time chosen by the tuner, and while the tuner allows no more batches in flight;
+     * requests keep queuing up meanwhile, up to {@code maxPendingOutboundRequests}, after which
+     * their callers block until the flusher takes requests off the queue.
      */
-    @SuppressWarnings("unchecked")
-    <OBT extends OutboundBatchTask<R, Result>, R extends AmazonWebServiceRequest, Result> QueueBufferFuture<R, Result> submitOutboundRequest(Object operationLock,
-                                                                                                                                             OBT[] openOutboundBatchTask,
-                                                                                                                                             R request,
-                                                                                                                                             final Semaphore inflightOperationBatches,
-                                                                                                                                             QueueBufferCallback<R, Result> callback) {
-        /*
-         * Callers add requests to a single batch task (openOutboundBatchTask) until it is full or
-         * maxBatchOpenMs elapses. The total number of batch task in flight is controlled by the
-         * inflightOperationBatch semaphore capped at maxInflightOutboundBatches.
+    private abstract class OutboundQueue<R extends AmazonWebServiceRequest, Result> implements Runnable {
+
+        private final ConcurrentLinkedQueue<Entry<R, Result>> queue = new ConcurrentLinkedQueue<Entry<R, Result>>();
+
+        /** The number of requests in the queue. */
+        private final AtomicInteger pendingRequests = new AtomicInteger();
+
+        /** A permit for each request the queue can take, released as requests are taken off it. */
+        private final Semaphore pendingPermits = new Semaphore(config.getMaxPendingOutboundRequests());
+
+        /** The size of the requests in the queue, in bytes. */
+        private final AtomicLong pendingBytes = new AtomicLong();
+
+        /** The number of flush barriers in the queue. */
+        private final AtomicInteger pendingFlushes = new AtomicInteger();
+
+        /** Whether the flusher is scheduled or running. */
+        private final AtomicBoolean flusherScheduled = new AtomicBoolean();
+
+        /** The thread running the flusher, if any, to wake it when a batch can be filled. */
+        private volatile Thread flusherThread;
+
+        /** The batches in flight, synchronized on itself. Only used for flush barriers. */
+        private final Set<OutboundBatchTask<R, Result>> inflightBatches = new HashSet<OutboundBatchTask<R, Result>>();
+
+        final OutboundBatchTuner tuner;
+
+        OutboundQueue(OutboundBatchTuner tuner) {
+            this.tuner = tuner;
+        }
+
+        /**
+         * @return new {@code OutboundBatchTask} of appropriate type, never null
          */
-        QueueBufferFuture<R, Result> theFuture = null;
-        try {
-            synchronized (operationLock) {
-                if (openOutboundBatchTask[0] == null
-                        || ((theFuture = openOutboundBatchTask[0].addRequest(request, callback))) == null) {
-
-                    OBT obt = (OBT) newOutboundBatchTask(request);
-                    inflightOperationBatches.acquire();
-                    openOutboundBatchTask[0] = obt;
-
-                    // Register a listener for the event signaling that the
-                    // batch task has completed (successfully or not).
-                    openOutboundBatchTask[0].setOnCompleted(new Listener<OutboundBatchTask<R, Result>>() {
-                        @Override
-                        public void invoke(OutboundBatchTask<R, Result> task) {
-                            inflightOperationBatches.release();
-                        }
-                    });
+        protected abstract OutboundBatchTask<R, Result> newOutboundBatchTask();
+
+        /**
+         * Submits an outbound request for delivery to the queue associated with this buffer.
+         *
+         * @param request
+         *            the request to submit
+         * @param sizeBytes
+         *            the size the request counts for towards {@code maxBatchSizeBytes}
+         * @return never null
+         * @throws AmazonClientException
+         *             if the request is too large to fit in any batch, or if the calling thread is
+         *             interrupted while waiting for the queue to take the request
+         */
+        QueueBufferFuture<R, Result> submit(R request, long sizeBytes, QueueBufferCallback<R, Result> callback) {
+            if (sizeBytes >= config.getMaxBatchSizeBytes()) {
+                // the request itself is flawed, so that it can't be added to any batch, even a
+                // brand new one
+                throw new AmazonClientException("Failed to schedule request " + request + " for execution");
+            }
+            if (!pendingPermits.tryAcquire()) {
+                try {
+                    pendingPermits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    AmazonClientException toThrow = new AmazonClientException(
+                            "Interrupted while waiting for pending requests to be batched.");
+                    toThrow.initCause(e);
+                    throw toThrow;
+                }
+            }
+
+            QueueBufferFuture<R, Result> theFuture = new QueueBufferFuture<R, Result>(callback);
+            queue.offer(new Entry<R, Result>(request, theFuture, sizeBytes, System.nanoTime()));
+
+            int requests = pendingRequests.incrementAndGet();
+            long bytes = sizeBytes == 0 ? 0 : pendingBytes.addAndGet(sizeBytes);
+            boolean canFillBatch = requests == config.getMaxBatchSize()
+                    || (bytes >= config.getMaxBatchSizeBytes() && bytes - sizeBytes < config.getMaxBatchSizeBytes());
+            if (!scheduleFlusher() && canFillBatch) {
+                wakeFlusher();
+            }
+            return theFuture;
+        }
+
+        /**
+         * Adds a flush barrier to the queue, which makes the flusher send the requests ahead of it
+         * right away.
+         */
+        FlushBarrier flush() {
+            FlushBarrier barrier = new FlushBarrier();
+            pendingFlushes.incrementAndGet();
+            queue.offer(new Entry<R, Result>(barrier));
+            if (!scheduleFlusher()) {
+                wakeFlusher();
+            }
+            return barrier;
+        }
+
+        /**
+         * @return true if the flusher was scheduled, false if it already was
+         */
+        private boolean scheduleFlusher() {
+            if (flusherScheduled.get() || !flusherScheduled.compareAndSet(false, true)) {
+                return false;
+            }
+            executor.execute(this);
+            return true;
+        }
+
+        private void wakeFlusher() {
+            Thread thread = flusherThread;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
 
-                    if (log.isTraceEnabled()) {
-                        log.trace("Queue " + qUrl + " created new batch for " + request.getClass().toString() + " "
-                                + inflightOperationBatches.availablePermits() + " free slots remain");
+        /**
+         * Runs the flusher until the queue is empty.
+         */
+        @Override
+        public void run() {
+            flusherThread = Thread.currentThread();
+            try {
+                while (true) {
+                    Entry<R, Result> head = queue.peek();
+                    if (head == null) {
+                        flusherThread = null;
+                        flusherScheduled.set(false);
+                        // a request may have been added before the flag was cleared
+                        if (queue.isEmpty() || !flusherScheduled.compareAndSet(false, true)) {
+                            return;
+                        }
+                        flusherThread = Thread.currentThread();
+                    } else if (head.barrier != null) {
+                        queue.poll();
+                        pendingFlushes.decrementAndGet();
+                        addBarrier(head.barrier);
+                    } else {
+                        awaitBatch(head.arrivalNanos + tuner.getBatchOpenNanos());
+                        tuner.acquire();
+                        sendBatch();
                     }
+                }
+            } catch (InterruptedException e) {
+                failPending(e);
+            } catch (RuntimeException e) {
+                failPending(e);
+                throw e;
+            }
+        }
 
-                    theFuture = openOutboundBatchTask[0].addRequest(request, callback);
-                    executor.execute(openOutboundBatchTask[0]);
-                    if (null == theFuture) {
-                        // this can happen only if the request itself is flawed,
-                        // so that it can't be added to any batch, even a brand
-                        // new one
-                        throw new AmazonClientException("Failed to schedule request " + request + " for execution");
+        /**
+         * Waits until a batch can be filled, a flush is requested, or the given deadline passes.
+         */
+        private void awaitBatch(long deadlineNanos) throws InterruptedException {
+            while (pendingFlushes.get() == 0 && pendingRequests.get() < config.getMaxBatchSize()
+                    && pendingBytes.get() < config.getMaxBatchSizeBytes()) {
+                long toWait = deadlineNanos - System.nanoTime();
+                if (toWait <= 0) {
+                    return;
+                }
+                LockSupport.parkNanos(this, toWait);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        }
+
+        /**
+         * Takes as many requests off the queue as fit in a batch, and sends the batch. Called with
+         * a slot for the batch acquired from the tuner.
+         */
+        private void sendBatch() {
+            final OutboundBatchTask<R, Result> batch = newOutboundBatchTask();
+            Entry<R, Result> entry;
+            int taken = 0;
+            while ((entry = queue.peek()) != null && entry.barrier == null
+                    && batch.addRequest(entry.request, entry.future, entry.sizeBytes)) {
+                queue.poll();
+                pendingRequests.decrementAndGet();
+                if (entry.sizeBytes != 0) {
+                    pendingBytes.addAndGet(-entry.sizeBytes);
+                }
+                taken++;
+                tuner.onRequest(entry.arrivalNanos);
+                if (batch.isFull()) {
+                    break;
+                }
+            }
+            pendingPermits.release(taken);
+            // a batch is full if the next request didn't fit in it
+            batch.setClosedFull(batch.isFull() || (entry != null && entry.barrier == null));
+            batch.setTuner(tuner);
+
+            // Register a listener for the event signaling that the
+            // batch task has completed (successfully or not).
+            batch.setOnCompleted(new Listener<OutboundBatchTask<R, Result>>() {
+                @Override
+                public void invoke(OutboundBatchTask<R, Result> task) {
+                    List<FlushBarrier> barriers;
+                    synchronized (inflightBatches) {
+                        inflightBatches.remove(task);
+                        barriers = task.getBarriers();
+                    }
+                    tuner.release();
+                    for (FlushBarrier barrier : barriers) {
+                        barrier.onBatchCompleted();
                     }
                 }
+            });
+            synchronized (inflightBatches) {
+                inflightBatches.add(batch);
             }
 
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            AmazonClientException toThrow = new AmazonClientException("Interrupted while waiting for lock.");
-            toThrow.initCause(e);
-            throw toThrow;
+            if (log.isTraceEnabled()) {
+                log.trace("Queue " + qUrl + " sending " + batch.getClass().getSimpleName() + " of "
+                        + batch.requests.size() + " requests, " + tuner.getInflightLimit()
+                        + " batches allowed in flight");
+            }
+            executor.execute(batch);
+        }
+
+        /**
+         * Makes the given barrier wait for the batches currently in flight.
+         */
+        private void addBarrier(FlushBarrier barrier) {
+            synchronized (inflightBatches) {
+                barrier.setPendingBatches(inflightBatches.size());
+                for (OutboundBatchTask<R, Result> batch : inflightBatches) {
+                    batch.getBarriers().add(barrier);
+                }
+            }
         }
 
-        return theFuture;
+        /**
+         * Fails the requests in the queue and releases its barriers, when the flusher can't go on.
+         */
+        private void failPending(Exception e) {
+            AmazonClientException toSet = e instanceof AmazonClientException ? (AmazonClientException) e
+                    : new AmazonClientException("Failed to send batch", e);
+            Entry<R, Result> entry;
+            while ((entry = queue.poll()) != null) {
+                if (entry.barrier != null) {
+                    pendingFlushes.decrementAndGet();
+                    addBarrier(entry.barrier);
+                } else {
+                    pendingRequests.decrementAndGet();
+                    pendingBytes.addAndGet(-entry.sizeBytes);
+                    pendingPermits.release();
+                    entry.future.setFailure(toSet);
+                }
+            }
+            flusherThread = null;
+            flusherScheduled.set(false);
+        }
     }
 
     /**
      * Task to send a batch of outbound requests to SQS.
      * <p>
-     * The batch task is constructed open and accepts requests until full, or until
-     * {@code maxBatchOpenMs} elapses. At that point, the batch closes and the collected requests
-     * are assembled into a single batch request to SQS. Specialized for each type of outbound
-     * request.
+     * The batch is assembled by the flusher of its {@code OutboundQueue}, which adds requests until
+     * the batch is full or the queue is empty, and then runs the task. The collected requests are
+     * assembled into a single batch request to SQS. Specialized for each type of outbound request.
      * <p>
-     * Instances of this class (and subclasses) are thread-safe.
-     * 
+     * A batch is only modified by the flusher before it is run, and only read by the task
+     * afterwards.
+     *
      * @param <R>
      *            the type of the SQS request to batch
      * @param <Result>
@@ -310,7 +523,15 @@ public class SendQueueBuffer {
         protected final List<R> requests;
         protected final ArrayList<QueueBufferFuture<R, Result>> futures;
 
-        private boolean closed;
+        private long batchSizeBytes;
+
+        /** Whether the batch was closed because it was full. */
+        private boolean closedFull;
+
+        /** Flush barriers waiting for this batch, synchronized by the inflight batches of its queue. */
+        private final List<FlushBarrier> barriers = new ArrayList<FlushBarrier>(0);
+
+        private volatile OutboundBatchTuner tuner;
 
         private volatile Listener<OutboundBatchTask<R, Result>> onCompleted;
 
@@ -319,129 +540,59 @@ public class SendQueueBuffer {
             this.futures = new ArrayList<QueueBufferFuture<R, Result>>(config.getMaxBatchSize());
         }
 
-        public void setOnCompleted(Listener<OutboundBatchTask<R, Result>> value) {
-            onCompleted = value;
+        public void setTuner(OutboundBatchTuner value) {
+            tuner = value;
         }
 
-        /**
-         * Adds a request to the batch if it is still open and has capacity.
-         * 
-         * @return the future that can be used to get the results of the execution, or null if the
-         *         addition failed.
-         */
-        public synchronized QueueBufferFuture<R, Result> addRequest(R request, QueueBufferCallback<R, Result> callback) {
-
-            if (closed) {
-                return null;
-            }
-
-            QueueBufferFuture<R, Result> theFuture = addIfAllowed(request, callback);
-
-            // if the addition did not work, or this addition made us full,
-            // we can close the request.
-            if ((null == theFuture) || isFull()) {
-                closed = true;
-                notify();
-            }
-
-            return theFuture;
+        public void setOnCompleted(Listener<OutboundBatchTask<R, Result>> value) {
+            onCompleted = value;
         }
 
-        /**
-         * Adds the request to the batch if capacity allows it. Called by {@code addRequest} with a
-         * lock on {@code this} held.
-         * 
-         * @param request
-         * @return the future that will be signaled when the request is completed and can be used to
-         *         retrieve the result. Can be null if the addition could not be done
-         */
-        private QueueBufferFuture<R, Result> addIfAllowed(R request, QueueBufferCallback<R, Result> callback) {
-
-            if (isOkToAdd(request)) {
-
-                requests.add(request);
-
-                QueueBufferFuture<R, Result> theFuture = new QueueBufferFuture<R, Result>(callback);
-
-                futures.add(theFuture);
-                onRequestAdded(request);
-                return theFuture;
-
-            } else {
-                return null;
-            }
+        void setClosedFull(boolean value) {
+            closedFull = value;
         }
 
-        /**
-         * Checks whether it's okay to add the request to this buffer. Called by
-         * {@code addIfAllowed} with a lock on {@code this} held.
-         * 
-         * @param request
-         *            the request to add
-         * @return true if the request is okay to add, false otherwise
-         */
-        protected boolean isOkToAdd(R request) {
-            return requests.size() < config.getMaxBatchSize();
+        List<FlushBarrier> getBarriers() {
+            return barriers;
         }
 
         /**
-         * A hook to be run when a request is successfully added to this buffer. Called by
-         * {@code addIfAllowed} with a lock on {@code this} held.
-         * 
-         * @param request
-         *            the request that was added
+         * Adds a request to the batch if it has capacity.
+         *
+         * @param sizeBytes
+         *            the size the request counts for towards {@code maxBatchSizeBytes}
+         * @return true if the request was added, false if it does not fit in the batch
          */
-        protected void onRequestAdded(R request) {
-            // to be overridden by subclasses
+        boolean addRequest(R request, QueueBufferFuture<R, Result> future, long sizeBytes) {
+            if (requests.size() >= config.getMaxBatchSize()
+                    || sizeBytes + batchSizeBytes >= config.getMaxBatchSizeBytes()) {
+                return false;
+            }
+            requests.add(request);
+            futures.add(future);
+            batchSizeBytes += sizeBytes;
+            return true;
         }
 
         /**
-         * Checks whether the buffer is now full. Called by {@code addIfAllowed} with a lock on
-         * {@code this} held.
-         * 
-         * @return whether the buffer is filled to capacity
+         * @return whether the batch is filled to capacity
          */
-        protected boolean isFull() {
-            return requests.size() >= config.getMaxBatchSize();
+        boolean isFull() {
+            return (requests.size() >= config.getMaxBatchSize()) || (batchSizeBytes >= config.getMaxBatchSizeBytes());
         }
 
         /**
-         * Processes the batch once closed. Is <em>NOT</em> called with a lock on {@code this}.
-         * However, it's passed a local copy of both the {@code requests} and {@code futures} lists
-         * made while holding the lock.
+         * Processes the batch.
          */
         protected abstract void process(List<R> requests, List<QueueBufferFuture<R, Result>> futures);
 
         @Override
         public final void run() {
             try {
-
-                long deadlineMs = TimeUnit.MILLISECONDS.convert(System.nanoTime(), TimeUnit.NANOSECONDS)
-                        + config.getMaxBatchOpenMs() + 1;
-                long t = TimeUnit.MILLISECONDS.convert(System.nanoTime(), TimeUnit.NANOSECONDS);
-
-                List<R> requests;
-                List<QueueBufferFuture<R, Result>> futures;
-
-                synchronized (this) {
-                    while (!closed && (t < deadlineMs)) {
-                        t = TimeUnit.MILLISECONDS.convert(System.nanoTime(), TimeUnit.NANOSECONDS);
-
-                        // zero means "wait forever", can't have that.
-                        long toWait = Math.max(1, deadlineMs - t);
-                        wait(toWait);
-                    }
-
-                    closed = true;
-
-                    requests = new ArrayList<R>(this.requests);
-                    futures = new ArrayList<QueueBufferFuture<R, Result>>(this.futures);
-                }
-
+                long startNanos = System.nanoTime();
                 process(requests, futures);
+                tuner.onBatchCompleted(System.nanoTime() - startNanos, closedFull);
 
-            } catch (InterruptedException e) {
-                failAll(e);
             } catch (AmazonClientException e) {
                 failAll(e);
             } catch (RuntimeException e) {
@@ -469,24 +620,6 @@ public class SendQueueBuffer {
 
     private class SendMessageBatchTask extends OutboundBatchTask<SendMessageRequest, SendMessageResult> {
 
-        int batchSizeBytes = 0;
-
-        @Override
-        protected boolean isOkToAdd(SendMessageRequest request) {
-            return (requests.size() < config.getMaxBatchSize())
-                    && ((request.getMessageBody().getBytes().length + batchSizeBytes) < config.getMaxBatchSizeBytes());
-        }
-
-        @Override
-        protected void onRequestAdded(SendMessageRequest request) {
-            batchSizeBytes += request.getMessageBody().getBytes().length;
-        }
-
-        @Override
-        protected boolean isFull() {
-            return (requests.size() >= config.getMaxBatchSize()) || (batchSizeBytes >= config.getMaxBatchSizeBytes());
-        }
-
         @Override
         protected void process(List<SendMessageRequest> requests,
                                List<QueueBufferFuture<SendMessageRequest, SendMessageResult>> futures) {
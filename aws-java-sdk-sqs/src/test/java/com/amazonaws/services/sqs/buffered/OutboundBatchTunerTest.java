@@ -0,0 +1,180 @@
+/*
+ * Copyright 2012-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Drives the tuner with given arrival and round trip times.
+ */
+public class OutboundBatchTunerTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testNotAdaptive() {
+        OutboundBatchTuner tuner = new OutboundBatchTuner("test", new QueueBufferConfig());
+        for (int i = 0; i < QueueBufferConfig.MAX_INFLIGHT_OUTBOUND_BATCHES_DEFAULT; i++) {
+            assertTrue(tuner.tryAcquire());
+        }
+        assertFalse(tuner.tryAcquire());
+        for (int i = 0; i < 10; i++) {
+            tuner.onRequest(i * MILLIS);
+            tuner.onBatchCompleted((i + 1) * 100 * MILLIS, false);
+        }
+        assertEquals(QueueBufferConfig.MAX_INFLIGHT_OUTBOUND_BATCHES_DEFAULT, tuner.getInflightLimit());
+        assertEquals(QueueBufferConfig.MAX_BATCH_OPEN_MS_DEFAULT * MILLIS, tuner.getBatchOpenNanos());
+    }
+
+    @Test
+    public void testGrowsOnlyWhileBacklogged() {
+        OutboundBatchTuner tuner = newAdaptiveTuner(4);
+        assertEquals(1, tuner.getInflightLimit());
+
+        // A single batch at a time, without waiting
+        for (int i = 0; i < 10; i++) {
+            assertTrue(tuner.tryAcquire());
+            tuner.release();
+            tuner.onBatchCompleted(10 * MILLIS, true);
+        }
+        assertEquals(1, tuner.getInflightLimit());
+
+        // One more batch for each completion while requests wait, up to the maximum
+        for (int limit = 2; limit <= 4; limit++) {
+            completeBacklogged(tuner, 10 * MILLIS);
+            assertEquals(limit, tuner.getInflightLimit());
+        }
+        for (int i = 0; i < 10; i++) {
+            completeBacklogged(tuner, 10 * MILLIS);
+        }
+        assertEquals(4, tuner.getInflightLimit());
+    }
+
+    @Test
+    public void testShrinksWhenRoundTripGrows() {
+        OutboundBatchTuner tuner = newAdaptiveTuner(4);
+        for (int i = 0; i < 3; i++) {
+            completeBacklogged(tuner, 10 * MILLIS);
+        }
+        assertEquals(4, tuner.getInflightLimit());
+
+        // Average of 18ms: slower, but not enough to shrink, nor to grow
+        completeBacklogged(tuner, 50 * MILLIS);
+        assertEquals(4, tuner.getInflightLimit());
+        // Then over twice the lowest, one batch less for each completion
+        for (int limit = 3; limit >= 1; limit--) {
+            completeBacklogged(tuner, 50 * MILLIS);
+            assertEquals(limit, tuner.getInflightLimit());
+        }
+        completeBacklogged(tuner, 50 * MILLIS);
+        assertEquals(1, tuner.getInflightLimit());
+
+        // Grows again once the average is back within 1.5 times the lowest
+        int batches = 0;
+        while (tuner.getInflightLimit() == 1) {
+            completeBacklogged(tuner, 10 * MILLIS);
+            assertTrue(++batches < 20);
+        }
+        assertEquals(2, tuner.getInflightLimit());
+    }
+
+    @Test
+    public void testBaselineFollowsLastingLatencyChange() {
+        OutboundBatchTuner tuner = newAdaptiveTuner(4);
+        for (int i = 0; i < 3; i++) {
+            completeBacklogged(tuner, 10 * MILLIS);
+        }
+        // Slower for good: the limit shrinks, until the lowest round trip is
+        // measured anew over the last 100 batches
+        for (int i = 0; i < 97; i++) {
+            completeBacklogged(tuner, 50 * MILLIS);
+        }
+        assertEquals(1, tuner.getInflightLimit());
+        for (int i = 0; i < 99; i++) {
+            completeBacklogged(tuner, 50 * MILLIS);
+        }
+        assertEquals(1, tuner.getInflightLimit());
+        completeBacklogged(tuner, 50 * MILLIS);
+        assertEquals(2, tuner.getInflightLimit());
+    }
+
+    @Test
+    public void testBatchOpenTimeFollowsArrivals() {
+        OutboundBatchTuner tuner = newAdaptiveTuner(4);
+        assertEquals(200 * MILLIS, tuner.getBatchOpenNanos());
+
+        // As long as it takes to fill a batch of 10
+        arrive(tuner, 0, 5 * MILLIS, 20);
+        assertEquals(45 * MILLIS, tuner.getBatchOpenNanos());
+
+        // At most the maximum
+        tuner = newAdaptiveTuner(4);
+        arrive(tuner, 0, 25 * MILLIS, 20);
+        assertEquals(200 * MILLIS, tuner.getBatchOpenNanos());
+
+        // Not held open when no other request is expected in time
+        tuner = newAdaptiveTuner(4);
+        arrive(tuner, 0, 300 * MILLIS, 2);
+        assertEquals(0, tuner.getBatchOpenNanos());
+    }
+
+    @Test
+    public void testArrivalsOutOfOrderAndPauses() {
+        OutboundBatchTuner tuner = newAdaptiveTuner(4);
+        // Queued slightly out of order: taken as simultaneous
+        tuner.onRequest(10 * MILLIS);
+        tuner.onRequest(9 * MILLIS);
+        assertEquals(0, tuner.getBatchOpenNanos());
+        tuner.onRequest(10 * MILLIS);
+        assertEquals(0, tuner.getBatchOpenNanos());
+
+        // A long pause counts as twice the maximum open time, 80ms apart on
+        // average rather than an hour: batches are still held open
+        tuner.onRequest(10 * MILLIS + TimeUnit.HOURS.toNanos(1));
+        assertEquals(200 * MILLIS, tuner.getBatchOpenNanos());
+    }
+
+    private static OutboundBatchTuner newAdaptiveTuner(int maxInflight) {
+        return new OutboundBatchTuner("test", new QueueBufferConfig().withAdaptive(true)
+                .withMaxInflightOutboundBatches(maxInflight));
+    }
+
+    /**
+     * Completes a batch with all slots taken and a request waiting for one.
+     */
+    private static void completeBacklogged(OutboundBatchTuner tuner, long roundTripNanos) {
+        int taken = 0;
+        while (tuner.tryAcquire()) {
+            ++taken;
+        }
+        assertEquals(tuner.getInflightLimit(), taken);
+        for (int i = 0; i < taken; i++) {
+            tuner.release();
+        }
+        tuner.onBatchCompleted(roundTripNanos, true);
+    }
+
+    private static void arrive(OutboundBatchTuner tuner, long startNanos, long intervalNanos, int count) {
+        for (int i = 0; i < count; i++) {
+            tuner.onRequest(startNanos + i * intervalNanos);
+        }
+    }
+}
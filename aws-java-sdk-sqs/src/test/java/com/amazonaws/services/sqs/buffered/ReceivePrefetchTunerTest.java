@@ -0,0 +1,142 @@
+/*
+ * Copyright 2012-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Drives the tuner with given consumption, round trip and starvation times.
+ */
+public class ReceivePrefetchTunerTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private long now = 1000 * MILLIS;
+
+    @Test
+    public void testNotAdaptive() {
+        ReceivePrefetchTuner tuner = new ReceivePrefetchTuner("test", new QueueBufferConfig(), now);
+        tuner.onReceiveCompleted(100 * MILLIS, 10, now);
+        consume(tuner, 20, 5);
+        tuner.onStarved(now);
+        assertTargets(tuner, QueueBufferConfig.MAX_INFLIGHT_RECEIVE_BATCHES_DEFAULT,
+                QueueBufferConfig.MAX_DONE_RECEIVE_BATCHES_DEFAULT);
+    }
+
+    @Test
+    public void testTargetsFollowRateTimesRoundTrip() {
+        ReceivePrefetchTuner tuner = newAdaptiveTuner(new QueueBufferConfig());
+        assertTargets(tuner, 1, 1);
+        tuner.onReceiveCompleted(200 * MILLIS, 10, now);
+
+        // 200 messages/s, 40 consumed during a round trip: 4 batches of 10
+        consume(tuner, 200, 20);
+        assertEquals(200, tuner.getMetrics(0, 0, now).getMessagesConsumedPerSecond(), 1);
+        assertTargets(tuner, 4, 4);
+
+        // Empty receives don't measure the round trip
+        tuner.onReceiveCompleted(TimeUnit.SECONDS.toNanos(20), 0, now);
+        consume(tuner, 200, 1);
+        assertTargets(tuner, 4, 4);
+        assertEquals(200, tuner.getMetrics(0, 0, now).getAverageRoundTripMs());
+
+        // Slower consumption, fewer batches
+        consume(tuner, 40, 20);
+        assertTargets(tuner, 1, 1);
+    }
+
+    @Test
+    public void testTargetsBoundedByConfig() {
+        ReceivePrefetchTuner tuner = newAdaptiveTuner(new QueueBufferConfig().withMaxInflightReceiveBatches(6)
+                .withMaxDoneReceiveBatches(2));
+        tuner.onReceiveCompleted(TimeUnit.SECONDS.toNanos(1), 10, now);
+        consume(tuner, 1000, 20);
+        assertTargets(tuner, 6, 2);
+    }
+
+    @Test
+    public void testStarvationAddsBatchesOncePerRoundTrip() {
+        ReceivePrefetchTuner tuner = newAdaptiveTuner(new QueueBufferConfig());
+        tuner.onReceiveCompleted(100 * MILLIS, 10, now);
+
+        tuner.onStarved(now);
+        assertEquals(1, tuner.getInflightTarget());
+        // The batch just added has not had a round trip to arrive
+        now += 50 * MILLIS;
+        tuner.onStarved(now);
+        now += 49 * MILLIS;
+        tuner.onStarved(now);
+        assertTargets(tuner, 1, 1);
+        now += MILLIS;
+        tuner.onStarved(now);
+        assertTargets(tuner, 2, 2);
+        now += 100 * MILLIS;
+        tuner.onStarved(now);
+        assertTargets(tuner, 3, 3);
+        assertEquals(5, tuner.getMetrics(0, 0, now).getStarvedReceives());
+
+        // Kept while starving in the period, then given back one per second
+        consume(tuner, 0, 1);
+        assertTargets(tuner, 3, 3);
+        consume(tuner, 0, 1);
+        assertTargets(tuner, 2, 2);
+        consume(tuner, 0, 1);
+        assertTargets(tuner, 1, 1);
+        consume(tuner, 0, 5);
+        assertTargets(tuner, 1, 1);
+    }
+
+    @Test
+    public void testStarvationBatchesBounded() {
+        ReceivePrefetchTuner tuner = newAdaptiveTuner(new QueueBufferConfig().withMaxInflightReceiveBatches(3)
+                .withMaxDoneReceiveBatches(2));
+        tuner.onReceiveCompleted(100 * MILLIS, 10, now);
+        for (int i = 0; i < 20; i++) {
+            tuner.onStarved(now);
+            now += 100 * MILLIS;
+        }
+        assertTargets(tuner, 3, 2);
+        // At most 3 to give back
+        consume(tuner, 0, 1);
+        consume(tuner, 0, 1);
+        assertTargets(tuner, 2, 2);
+        consume(tuner, 0, 1);
+        assertTargets(tuner, 1, 1);
+    }
+
+    private ReceivePrefetchTuner newAdaptiveTuner(QueueBufferConfig config) {
+        return new ReceivePrefetchTuner("test", config.withAdaptive(true), now);
+    }
+
+    /**
+     * Consumes messages at the given rate, every 100ms, until the rate has
+     * been measured over the given number of periods.
+     */
+    private void consume(ReceivePrefetchTuner tuner, int messagesPerSecond, int seconds) {
+        for (int i = 0; i < seconds * 10; i++) {
+            now += 100 * MILLIS;
+            tuner.onMessagesConsumed(messagesPerSecond / 10, now);
+        }
+    }
+
+    private static void assertTargets(ReceivePrefetchTuner tuner, int inflight, int done) {
+        assertEquals(inflight, tuner.getInflightTarget());
+        assertEquals(done, tuner.getDoneTarget());
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.services.sqs.AmazonSQSAsync;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageResult;
+
+/**
+ * Measures the number of messages per second sent through
+ * {@link AmazonSQSBufferedAsyncClient#sendMessageAsync} by 1 to 128 producer
+ * threads sharing one queue, against a local stub of SQS that answers every
+ * batch after a fixed latency.
+ * <p>
+ * Each producer keeps a bounded number of sends outstanding, like an
+ * application that waits for its sends to be acknowledged, so the result is
+ * the rate at which sends complete. With the default latency of zero it
+ * measures the overhead of the buffer itself, including the contention
+ * between the producers. Run it against two builds to compare them, for
+ * example:
+ *
+ * <pre>
+ * java -cp ... SendQueueBufferBenchmark [seconds] [latencyMs] [maxThreads]
+ * </pre>
+ */
+public class SendQueueBufferBenchmark {
+
+    private static final String QUEUE_URL = "https://sqs.us-east-1.amazonaws.com/123456789012/benchmark";
+
+    /** The number of sends each producer keeps outstanding. */
+    private static final int OUTSTANDING_SENDS = 100;
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        long latencyMs = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : 128;
+
+        AmazonSQSBufferedAsyncClient client = new AmazonSQSBufferedAsyncClient(newStub(latencyMs));
+
+        System.out.println("Stub latency: " + latencyMs + "ms, cores: "
+                + Runtime.getRuntime().availableProcessors());
+        // Warm up, so that the measurements run compiled code.
+        measure(client, 4, 2);
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            long messages = measure(client, threads, seconds);
+            System.out.println(String.format("%4d producers %,12d messages/s", threads, messages / seconds));
+        }
+        client.shutdown();
+    }
+
+    /**
+     * Sends messages from the given number of threads for the given number of
+     * seconds, and returns the number of sends completed.
+     */
+    private static long measure(final AmazonSQSBufferedAsyncClient client, int threads, int seconds)
+            throws InterruptedException {
+        final long deadline = System.nanoTime() + seconds * 1000000000L;
+        final AtomicLong count = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    LinkedList<Future<SendMessageResult>> outstanding = new LinkedList<Future<SendMessageResult>>();
+                    long sent = 0;
+                    try {
+                        while (System.nanoTime() < deadline) {
+                            if (outstanding.size() >= OUTSTANDING_SENDS) {
+                                outstanding.removeFirst().get();
+                                ++sent;
+                            }
+                            outstanding.addLast(client.sendMessageAsync(
+                                    new SendMessageRequest(QUEUE_URL, "benchmark message body")));
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                    count.addAndGet(sent);
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+        return count.get();
+    }
+
+    /**
+     * @return a client that answers SendMessageBatch after the given latency
+     */
+    private static AmazonSQSAsync newStub(final long latencyMs) {
+        return (AmazonSQSAsync) Proxy.newProxyInstance(AmazonSQSAsync.class.getClassLoader(),
+                new Class<?>[] { AmazonSQSAsync.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("shutdown")) {
+                            return null;
+                        }
+                        if (!method.getName().equals("sendMessageBatch")) {
+                            throw new java.lang.UnsupportedOperationException(method.getName());
+                        }
+                        if (latencyMs > 0) {
+                            Thread.sleep(latencyMs);
+                        }
+                        SendMessageBatchRequest request = (SendMessageBatchRequest) args[0];
+                        List<SendMessageBatchResultEntry> entries = new ArrayList<SendMessageBatchResultEntry>();
+                        for (SendMessageBatchRequestEntry entry : request.getEntries()) {
+                            entries.add(new SendMessageBatchResultEntry().withId(entry.getId())
+                                    .withMessageId(entry.getId()).withMD5OfMessageBody(""));
+                        }
+                        return new SendMessageBatchResult().withSuccessful(entries);
+                    }
+                });
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2012-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.sqs.AmazonSQSClient;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageResult;
+
+public class SendQueueBufferTest {
+
+    private static final String QUEUE_URL = "https://sqs.us-east-1.amazonaws.com/123456789012/test";
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final StubSQS sqs = new StubSQS();
+
+    @After
+    public void tearDown() throws InterruptedException {
+        sqs.gate.countDown();
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testEveryRequestSentOnce() throws Exception {
+        final SendQueueBuffer buffer = newBuffer(new QueueBufferConfig().withMaxBatchOpenMs(20));
+        final int producers = 8;
+        final int messages = 500;
+        final List<List<Future<SendMessageResult>>> futures = new ArrayList<List<Future<SendMessageResult>>>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            final List<Future<SendMessageResult>> producerFutures = new ArrayList<Future<SendMessageResult>>();
+            futures.add(producerFutures);
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < messages; i++) {
+                        producerFutures.add(buffer.sendMessage(new SendMessageRequest(QUEUE_URL, producer + ":" + i),
+                                null));
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int p = 0; p < producers; p++) {
+            for (int i = 0; i < messages; i++) {
+                // Each future completed with the result of its own request
+                assertEquals(p + ":" + i, futures.get(p).get(i).get(10, TimeUnit.SECONDS).getMessageId());
+            }
+        }
+
+        Set<String> sent = new HashSet<String>();
+        for (List<String> batch : sqs.batches) {
+            assertTrue(batch.size() <= QueueBufferConfig.MAX_BATCH_SIZE_DEFAULT);
+            int[] lastIndexes = new int[producers];
+            for (String body : batch) {
+                assertTrue("sent twice: " + body, sent.add(body));
+                // Batched in the order they were submitted
+                int producer = Integer.parseInt(body.substring(0, body.indexOf(':')));
+                int index = Integer.parseInt(body.substring(body.indexOf(':') + 1)) + 1;
+                assertTrue(index > lastIndexes[producer]);
+                lastIndexes[producer] = index;
+            }
+        }
+        assertEquals(producers * messages, sent.size());
+    }
+
+    @Test
+    public void testFlushWaitsForEarlierRequestsOnly() throws Exception {
+        // Batches are not closed by time during the test
+        final SendQueueBuffer buffer = newBuffer(new QueueBufferConfig().withMaxBatchOpenMs(60000));
+        sqs.gate = new CountDownLatch(1);
+        List<Future<SendMessageResult>> before = new ArrayList<Future<SendMessageResult>>();
+        for (int i = 0; i < 3; i++) {
+            before.add(buffer.sendMessage(new SendMessageRequest(QUEUE_URL, "before" + i), null));
+        }
+        Thread flush = flushInBackground(buffer);
+
+        // The partial batch is sent right away, and the flush waits for it
+        awaitReceived(3);
+        Thread.sleep(100);
+        assertTrue(flush.isAlive());
+
+        // Requests submitted after the flush don't hold it
+        Future<SendMessageResult> after = buffer.sendMessage(new SendMessageRequest(QUEUE_URL, "after"), null);
+        sqs.gate.countDown();
+        flush.join(10000);
+        assertFalse(flush.isAlive());
+        for (Future<SendMessageResult> future : before) {
+            assertTrue(future.isDone());
+        }
+        assertFalse(after.isDone());
+        assertEquals(3, sqs.received.get());
+
+        buffer.flush();
+        assertEquals("after", after.get(10, TimeUnit.SECONDS).getMessageId());
+    }
+
+    @Test
+    public void testFlushReleasedByFailedBatch() throws Exception {
+        SendQueueBuffer buffer = newBuffer(new QueueBufferConfig().withMaxBatchOpenMs(60000));
+        Future<SendMessageResult> future = buffer.sendMessage(new SendMessageRequest(QUEUE_URL, "fail"), null);
+        buffer.flush();
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof AmazonServiceException);
+        }
+        // Empty queues
+        buffer.flush();
+    }
+
+    @Test
+    public void testPendingRequestsBounded() throws Exception {
+        final SendQueueBuffer buffer = newBuffer(new QueueBufferConfig().withMaxInflightOutboundBatches(1)
+                .withMaxPendingOutboundRequests(10).withMaxBatchOpenMs(10));
+        sqs.gate = new CountDownLatch(1);
+        final List<Future<SendMessageResult>> futures = new ArrayList<Future<SendMessageResult>>();
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 100; i++) {
+                        Future<SendMessageResult> future = buffer.sendMessage(new SendMessageRequest(QUEUE_URL,
+                                "message" + i), null);
+                        synchronized (futures) {
+                            futures.add(future);
+                        }
+                    }
+                } catch (AmazonClientException e) {
+                    // with the interrupted status kept
+                    if (Thread.currentThread().isInterrupted()) {
+                        failure.set(e);
+                    }
+                }
+            }
+        };
+        producer.start();
+
+        // A batch in flight, and the requests of the next one pending
+        awaitReceived(10);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (producer.getState() != Thread.State.WAITING) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        synchronized (futures) {
+            assertEquals(20, futures.size());
+        }
+
+        // Interrupted while blocked
+        producer.interrupt();
+        producer.join(10000);
+        assertTrue(failure.get() instanceof AmazonClientException);
+        sqs.gate.countDown();
+        buffer.flush();
+        for (Future<SendMessageResult> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(20, sqs.received.get());
+    }
+
+    private SendQueueBuffer newBuffer(QueueBufferConfig config) {
+        config.validate();
+        return new SendQueueBuffer(sqs, executor, config, QUEUE_URL);
+    }
+
+    private Thread flushInBackground(final SendQueueBuffer buffer) {
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                buffer.flush();
+            }
+        };
+        thread.start();
+        return thread;
+    }
+
+    private void awaitReceived(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (sqs.received.get() < count) {
+            assertTrue("received " + sqs.received.get(), System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Sends the batches once its gate is open, returning the bodies of the messages as their ids,
+     * or fails the batches with a message whose body starts with "fail".
+     */
+    private static class StubSQS extends AmazonSQSClient {
+        volatile CountDownLatch gate = new CountDownLatch(0);
+        final List<List<String>> batches = Collections.synchronizedList(new ArrayList<List<String>>());
+        final AtomicInteger received = new AtomicInteger();
+
+        StubSQS() {
+            super(new BasicAWSCredentials("access", "secret"));
+        }
+
+        @Override
+        public SendMessageBatchResult sendMessageBatch(SendMessageBatchRequest request) {
+            List<String> bodies = new ArrayList<String>();
+            for (SendMessageBatchRequestEntry entry : request.getEntries()) {
+                bodies.add(entry.getMessageBody());
+            }
+            batches.add(bodies);
+            received.addAndGet(bodies.size());
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AmazonClientException("Interrupted", e);
+            }
+            SendMessageBatchResult result = new SendMessageBatchResult();
+            for (SendMessageBatchRequestEntry entry : request.getEntries()) {
+                if (entry.getMessageBody().startsWith("fail")) {
+                    throw new AmazonServiceException("Internal failure");
+                }
+                result.getSuccessful().add(new SendMessageBatchResultEntry().withId(entry.getId())
+                        .withMessageId(entry.getMessageBody()).withMD5OfMessageBody(""));
+            }
+            return result;
+        }
+    }
+}
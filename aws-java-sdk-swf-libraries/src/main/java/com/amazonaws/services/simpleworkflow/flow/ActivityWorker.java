@@ -22,6 +22,7 @@ import com.amazonaws.services.simpleworkflow.AmazonSimpleWorkflow;
 import com.amazonaws.services.simpleworkflow.flow.generic.ActivityImplementation;
 import com.amazonaws.services.simpleworkflow.flow.pojo.POJOActivityImplementationFactory;
 import com.amazonaws.services.simpleworkflow.flow.worker.GenericActivityWorker;
+import com.amazonaws.services.simpleworkflow.flow.worker.PollerMetrics;
 import com.amazonaws.services.simpleworkflow.model.ActivityType;
 
 public class ActivityWorker implements WorkerBase {
@@ -228,6 +229,18 @@ public class ActivityWorker implements WorkerBase {
         genericWorker.setPollThreadCount(threadCount);
     }
 
+    public int getMaximumPollThreadCount() {
+        return genericWorker.getMaximumPollThreadCount();
+    }
+
+    public void setMaximumPollThreadCount(int maximumPollThreadCount) {
+        genericWorker.setMaximumPollThreadCount(maximumPollThreadCount);
+    }
+
+    public PollerMetrics getPollerMetrics() {
+        return genericWorker.getPollerMetrics();
+    }
+
     @Override
     public void setDisableTypeRegistrationOnStart(boolean disableTypeRegistrationOnStart) {
         genericWorker.setDisableTypeRegistrationOnStart(disableTypeRegistrationOnStart);
@@ -15,7 +15,9 @@
 package com.amazonaws.services.simpleworkflow.flow;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Contains value that is bound to a currently executing workflow. Has the same
@@ -68,6 +70,42 @@ public class WorkflowExecutionLocal<T> {
         }
     }
 
+    /**
+     * Returns the values of all the locals of the current decision, so that
+     * the decision of the same workflow execution can be continued later,
+     * possibly by another thread, without replaying its history. It is not a
+     * good idea to call this method from non framework code.
+     */
+    public static Map<WorkflowExecutionLocal<?>, Object> saveAll() {
+        List<WorkflowExecutionLocal<?>> currentLocals;
+        synchronized (locals) {
+            currentLocals = new ArrayList<WorkflowExecutionLocal<?>>(locals);
+        }
+        Map<WorkflowExecutionLocal<?>, Object> result = new HashMap<WorkflowExecutionLocal<?>, Object>();
+        for (WorkflowExecutionLocal<?> local : currentLocals) {
+            Wrapper<?> w = local.value.get();
+            if (w != null) {
+                result.put(local, w);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Must be called before a decision that continues a workflow execution
+     * instead of {@link #before()}, with the values saved by
+     * {@link #saveAll()} at the end of its previous decision. It is not a good
+     * idea to call this method from non framework code.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static void restoreAll(Map<WorkflowExecutionLocal<?>, Object> saved) {
+        before();
+        for (Map.Entry<WorkflowExecutionLocal<?>, Object> e : saved.entrySet()) {
+            WorkflowExecutionLocal local = e.getKey();
+            local.set((Wrapper) e.getValue());
+        }
+    }
+
     @SuppressWarnings({ "unchecked", "rawtypes" })
     public WorkflowExecutionLocal() {
         Wrapper w = new Wrapper();
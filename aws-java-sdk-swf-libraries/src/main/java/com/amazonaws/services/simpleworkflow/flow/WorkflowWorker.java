@@ -21,7 +21,9 @@ import java.util.concurrent.TimeUnit;
 
 import com.amazonaws.services.simpleworkflow.AmazonSimpleWorkflow;
 import com.amazonaws.services.simpleworkflow.flow.pojo.POJOWorkflowDefinitionFactoryFactory;
+import com.amazonaws.services.simpleworkflow.flow.worker.DeciderCache;
 import com.amazonaws.services.simpleworkflow.flow.worker.GenericWorkflowWorker;
+import com.amazonaws.services.simpleworkflow.flow.worker.PollerMetrics;
 
 public class WorkflowWorker implements WorkerBase {
 
@@ -161,6 +163,26 @@ public class WorkflowWorker implements WorkerBase {
         genericWorker.setPollThreadCount(threadCount);
     }
 
+    public int getMaximumPollThreadCount() {
+        return genericWorker.getMaximumPollThreadCount();
+    }
+
+    public void setMaximumPollThreadCount(int maximumPollThreadCount) {
+        genericWorker.setMaximumPollThreadCount(maximumPollThreadCount);
+    }
+
+    public PollerMetrics getPollerMetrics() {
+        return genericWorker.getPollerMetrics();
+    }
+
+    public DeciderCache getDeciderCache() {
+        return genericWorker.getDeciderCache();
+    }
+
+    public void setDeciderCache(DeciderCache deciderCache) {
+        genericWorker.setDeciderCache(deciderCache);
+    }
+
     @Override
     public void registerTypesToPoll() {
         genericWorker.registerTypesToPoll();
@@ -25,6 +25,7 @@ import com.amazonaws.services.simpleworkflow.flow.DataConverter;
 import com.amazonaws.services.simpleworkflow.flow.WorkerBase;
 import com.amazonaws.services.simpleworkflow.flow.pojo.POJOActivityImplementationFactory;
 import com.amazonaws.services.simpleworkflow.flow.worker.GenericActivityWorker;
+import com.amazonaws.services.simpleworkflow.flow.worker.PollerMetrics;
 import com.amazonaws.services.simpleworkflow.model.ActivityType;
 
 public class SpringActivityWorker implements WorkerBase, SmartLifecycle {
@@ -160,6 +161,18 @@ public class SpringActivityWorker implements WorkerBase, SmartLifecycle {
     public void setPollThreadCount(int threadCount) {
         genericWorker.setPollThreadCount(threadCount);
     }
+
+    public int getMaximumPollThreadCount() {
+        return genericWorker.getMaximumPollThreadCount();
+    }
+
+    public void setMaximumPollThreadCount(int maximumPollThreadCount) {
+        genericWorker.setMaximumPollThreadCount(maximumPollThreadCount);
+    }
+
+    public PollerMetrics getPollerMetrics() {
+        return genericWorker.getPollerMetrics();
+    }
     
     public int getTaskExecutorThreadPoolSize() {
         return genericWorker.getTaskExecutorThreadPoolSize();
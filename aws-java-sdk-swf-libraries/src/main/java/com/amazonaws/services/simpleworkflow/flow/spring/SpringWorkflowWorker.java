@@ -23,6 +23,7 @@ import com.amazonaws.services.simpleworkflow.AmazonSimpleWorkflow;
 import com.amazonaws.services.simpleworkflow.flow.DataConverter;
 import com.amazonaws.services.simpleworkflow.flow.WorkerBase;
 import com.amazonaws.services.simpleworkflow.flow.worker.GenericWorkflowWorker;
+import com.amazonaws.services.simpleworkflow.flow.worker.PollerMetrics;
 import com.amazonaws.services.simpleworkflow.model.WorkflowType;
 
 /**
@@ -205,6 +206,18 @@ public class SpringWorkflowWorker implements WorkerBase, SmartLifecycle {
         genericWorker.setPollThreadCount(threadCount);
     }
 
+    public int getMaximumPollThreadCount() {
+        return genericWorker.getMaximumPollThreadCount();
+    }
+
+    public void setMaximumPollThreadCount(int maximumPollThreadCount) {
+        genericWorker.setMaximumPollThreadCount(maximumPollThreadCount);
+    }
+
+    public PollerMetrics getPollerMetrics() {
+        return genericWorker.getPollerMetrics();
+    }
+
     @Override
     public void suspendPolling() {
         genericWorker.suspendPolling();
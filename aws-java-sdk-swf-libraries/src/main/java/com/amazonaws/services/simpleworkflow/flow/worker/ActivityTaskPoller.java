@@ -83,6 +83,10 @@ public class ActivityTaskPoller extends SynchronousActivityTaskPoller {
                 return false;
             }
             semaphoreNeedsRelease = false;
+            final PollerMetrics pollerMetrics = getPollerMetrics();
+            if (pollerMetrics != null) {
+                pollerMetrics.taskStarted();
+            }
             try {
                 taskExecutorService.execute(new Runnable() {
 
@@ -95,6 +99,9 @@ public class ActivityTaskPoller extends SynchronousActivityTaskPoller {
                             uncaughtExceptionHandler.uncaughtException(Thread.currentThread(), wrapFailure(task, ee));
                         }
                         finally {
+                            if (pollerMetrics != null) {
+                                pollerMetrics.taskFinished();
+                            }
                             pollSemaphore.release();
                         }
                     }
@@ -102,9 +109,15 @@ public class ActivityTaskPoller extends SynchronousActivityTaskPoller {
             }
             catch (Exception e) {
                 semaphoreNeedsRelease = true;
+                if (pollerMetrics != null) {
+                    pollerMetrics.taskFinished();
+                }
                 throw e;
             } catch (Error e) {
                 semaphoreNeedsRelease = true;
+                if (pollerMetrics != null) {
+                    pollerMetrics.taskFinished();
+                }
                 throw e;
             }
         }
@@ -16,6 +16,7 @@ package com.amazonaws.services.simpleworkflow.flow.worker;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CancellationException;
 
 import org.apache.commons.logging.Log;
@@ -25,6 +26,7 @@ import com.amazonaws.AmazonServiceException;
 import com.amazonaws.AmazonServiceException.ErrorType;
 import com.amazonaws.services.simpleworkflow.flow.DecisionContext;
 import com.amazonaws.services.simpleworkflow.flow.WorkflowException;
+import com.amazonaws.services.simpleworkflow.flow.WorkflowExecutionLocal;
 import com.amazonaws.services.simpleworkflow.flow.core.AsyncScope;
 import com.amazonaws.services.simpleworkflow.flow.core.AsyncTaskInfo;
 import com.amazonaws.services.simpleworkflow.flow.core.Promise;
@@ -131,7 +133,7 @@ class AsyncDecider {
 
     private WorkflowDefinition definition;
 
-    private final HistoryHelper historyHelper;
+    private HistoryHelper historyHelper;
 
     private final DecisionsHelper decisionsHelper;
 
@@ -155,6 +157,12 @@ class AsyncDecider {
 
     private Throwable failure;
 
+    /**
+     * The workflow execution locals of the definition while the decider is
+     * suspended between two decision tasks, or null.
+     */
+    private Map<WorkflowExecutionLocal<?>, Object> suspendedLocals;
+
     public AsyncDecider(WorkflowDefinitionFactory workflowDefinitionFactory, HistoryHelper historyHelper,
             DecisionsHelper decisionsHelper) throws Exception {
         this.workflowDefinitionFactory = workflowDefinitionFactory;
@@ -424,11 +432,21 @@ class AsyncDecider {
         decisionsHelper.handleDecisionCompletion(event.getDecisionTaskCompletedEventAttributes());
     }
 
+    /**
+     * Decides on the events of the history of the decision task. Must be
+     * followed by {@link #release()}, or by {@link #suspend()} to decide on the
+     * events of the next decision task later.
+     */
     public void decide() throws Exception {
         try {
-            definition = workflowDefinitionFactory.getWorkflowDefinition(context);
             if (definition == null) {
-                throw new IllegalStateException("Unknown workflow type: " + context.getWorkflowContext().getWorkflowType());
+                definition = workflowDefinitionFactory.getWorkflowDefinition(context);
+                if (definition == null) {
+                    throw new IllegalStateException("Unknown workflow type: " + context.getWorkflowContext().getWorkflowType());
+                }
+            }
+            else {
+                resume();
             }
             long lastNonReplayedEventId = historyHelper.getLastNonReplayEventId();
             // Buffer events until the next DecisionTaskStarted and then process them
@@ -534,10 +552,50 @@ class AsyncDecider {
             catch (Throwable e) {
                 decisionsHelper.setWorkflowContextData(e.getMessage());
             }
-            workflowDefinitionFactory.deleteWorkflowDefinition(this.definition);
         }
     }
 
+    /**
+     * Decides on the events that follow the history of the decision task this
+     * decider last decided on, instead of replaying the whole history of the
+     * workflow execution.
+     * 
+     * @param newEvents
+     *            the events of the new decision task after the
+     *            DecisionTaskStarted event of the previous one
+     */
+    public void decide(HistoryHelper newEvents) throws Exception {
+        this.historyHelper = newEvents;
+        decide();
+    }
+
+    /**
+     * Keeps the workflow definition and its workflow execution locals aside
+     * until the next decision task of the workflow execution, possibly decided
+     * by another thread, and drops the history of the decided task.
+     */
+    public void suspend() {
+        suspendedLocals = WorkflowExecutionLocal.saveAll();
+        WorkflowExecutionLocal.after();
+        historyHelper.getDecisionTask().setEvents(null);
+        historyHelper = null;
+    }
+
+    private void resume() {
+        if (suspendedLocals != null) {
+            WorkflowExecutionLocal.restoreAll(suspendedLocals);
+            suspendedLocals = null;
+        }
+    }
+
+    /**
+     * Deletes the workflow definition once the decider isn't used anymore.
+     */
+    public void release() {
+        resume();
+        workflowDefinitionFactory.deleteWorkflowDefinition(definition);
+    }
+
     private boolean isDecisionEvent(EventType eventType) {
         switch (eventType) {
         case ActivityTaskScheduled:
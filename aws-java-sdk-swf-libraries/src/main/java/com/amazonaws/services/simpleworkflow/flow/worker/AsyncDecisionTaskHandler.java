@@ -14,19 +14,27 @@
  */
 package com.amazonaws.services.simpleworkflow.flow.worker;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.amazonaws.services.simpleworkflow.AmazonSimpleWorkflow;
+import com.amazonaws.services.simpleworkflow.flow.common.WorkflowExecutionUtils;
 import com.amazonaws.services.simpleworkflow.flow.core.AsyncTaskInfo;
 import com.amazonaws.services.simpleworkflow.flow.generic.WorkflowDefinition;
 import com.amazonaws.services.simpleworkflow.flow.generic.WorkflowDefinitionFactory;
 import com.amazonaws.services.simpleworkflow.flow.generic.WorkflowDefinitionFactoryFactory;
 import com.amazonaws.services.simpleworkflow.model.Decision;
 import com.amazonaws.services.simpleworkflow.model.DecisionTask;
+import com.amazonaws.services.simpleworkflow.model.DecisionType;
+import com.amazonaws.services.simpleworkflow.model.EventType;
+import com.amazonaws.services.simpleworkflow.model.History;
+import com.amazonaws.services.simpleworkflow.model.HistoryEvent;
 import com.amazonaws.services.simpleworkflow.model.RespondDecisionTaskCompletedRequest;
 import com.amazonaws.services.simpleworkflow.model.WorkflowType;
 
@@ -37,21 +45,325 @@ public class AsyncDecisionTaskHandler extends DecisionTaskHandler {
     private static final Log asyncThreadDumpLog = LogFactory.getLog(AsyncDecisionTaskHandler.class.getName()
             + ".waitingTasksStacks");
 
+    /**
+     * The pages of the history of a decision task, in ascending or reverse
+     * order of event ids, polled as their events are needed.
+     */
+    private static final class DecisionTaskHistory {
+
+        private final Iterator<DecisionTask> pages;
+
+        private final DecisionTask decisionTask;
+
+        private final boolean reverseOrder;
+
+        /**
+         * The events of the pages read, all of them in reverse order, but only
+         * the first page in ascending order
+         */
+        private final List<HistoryEvent> events = new ArrayList<HistoryEvent>();
+
+        /** Whether pages were read past the first one in ascending order */
+        private boolean pagesSkipped;
+
+        DecisionTaskHistory(Iterator<DecisionTask> pages) {
+            this.pages = pages;
+            decisionTask = pages.next();
+            List<HistoryEvent> firstPage = decisionTask.getEvents();
+            // The history always starts with the event 1
+            reverseOrder = !firstPage.isEmpty() && firstPage.get(0).getEventId() > 1;
+            events.addAll(firstPage);
+        }
+
+        DecisionTask getDecisionTask() {
+            return decisionTask;
+        }
+
+        /**
+         * @return the events with an id greater than the given one, in
+         *         ascending order
+         */
+        List<HistoryEvent> getEventsAfter(long eventId) {
+            List<HistoryEvent> result = new ArrayList<HistoryEvent>();
+            if (reverseOrder) {
+                while (pages.hasNext() && !events.isEmpty() && events.get(events.size() - 1).getEventId() > eventId + 1) {
+                    events.addAll(pages.next().getEvents());
+                }
+                addEventsAfter(eventId, events, result);
+                Collections.reverse(result);
+            }
+            else {
+                addEventsAfter(eventId, events, result);
+                while (pages.hasNext()) {
+                    pagesSkipped = true;
+                    addEventsAfter(eventId, pages.next().getEvents(), result);
+                }
+            }
+            return result;
+        }
+
+        private static void addEventsAfter(long eventId, List<HistoryEvent> events, List<HistoryEvent> result) {
+            for (HistoryEvent event : events) {
+                if (event.getEventId() > eventId) {
+                    result.add(event);
+                }
+            }
+        }
+
+        /**
+         * @return a helper over a copy of the decision task with the given
+         *         events as its only page
+         */
+        HistoryHelper newHistoryHelper(List<HistoryEvent> events) {
+            DecisionTask task = decisionTask.clone();
+            task.setEvents(events);
+            task.setNextPageToken(null);
+            return new HistoryHelper(Collections.singletonList(task).iterator());
+        }
+
+        /**
+         * @return a helper over the whole history, streamed from the pages not
+         *         read yet in ascending order, or else polled again in
+         *         ascending order from the given service unless all of it was
+         *         read
+         */
+        HistoryHelper newReplayHistoryHelper(AmazonSimpleWorkflow service, String domain) {
+            if (!reverseOrder && !pagesSkipped) {
+                DecisionTask firstPage = decisionTask.clone();
+                firstPage.setEvents(events);
+                return new HistoryHelper(new HistoryPageIterator(firstPage, pages));
+            }
+            if (reverseOrder && !pages.hasNext()) {
+                return newHistoryHelper(getEventsAfter(0));
+            }
+            if (service == null) {
+                throw new IllegalStateException("No service to poll the history of " + decisionTask.getWorkflowExecution()
+                        + " in ascending order");
+            }
+            return new HistoryHelper(new HistoryPageIterator(decisionTask, service, domain));
+        }
+    }
+
+    /**
+     * The pages of the history of a decision task in ascending order of event
+     * ids, as copies of the decision task, polled as they are iterated.
+     */
+    private static final class HistoryPageIterator implements Iterator<DecisionTask> {
+
+        private final DecisionTask decisionTask;
+
+        private final Iterator<DecisionTask> pages;
+
+        private final AmazonSimpleWorkflow service;
+
+        private final String domain;
+
+        private DecisionTask firstPage;
+
+        private String nextPageToken;
+
+        private boolean lastPageRead;
+
+        /**
+         * Iterates over the given first page, then the given pages.
+         */
+        HistoryPageIterator(DecisionTask firstPage, Iterator<DecisionTask> pages) {
+            this.decisionTask = firstPage;
+            this.firstPage = firstPage;
+            this.pages = pages;
+            this.service = null;
+            this.domain = null;
+        }
+
+        /**
+         * Iterates over the pages of the history polled from the given
+         * service.
+         */
+        HistoryPageIterator(DecisionTask decisionTask, AmazonSimpleWorkflow service, String domain) {
+            this.decisionTask = decisionTask;
+            this.pages = null;
+            this.service = service;
+            this.domain = domain;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (firstPage != null) {
+                return true;
+            }
+            return pages != null ? pages.hasNext() : !lastPageRead;
+        }
+
+        @Override
+        public DecisionTask next() {
+            if (!hasNext()) {
+                throw new IllegalStateException("hasNext() == false");
+            }
+            if (firstPage != null) {
+                DecisionTask result = firstPage;
+                firstPage = null;
+                return result;
+            }
+            if (pages != null) {
+                return pages.next();
+            }
+            History history = WorkflowExecutionUtils.getHistoryPage(nextPageToken, service, domain,
+                    decisionTask.getWorkflowExecution());
+            nextPageToken = history.getNextPageToken();
+            lastPageRead = nextPageToken == null;
+            DecisionTask page = decisionTask.clone();
+            page.setEvents(new ArrayList<HistoryEvent>(history.getEvents()));
+            page.setNextPageToken(nextPageToken);
+            return page;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
     private final WorkflowDefinitionFactoryFactory definitionFactoryFactory;
 
+    private final DeciderCache deciderCache;
+
+    private final AmazonSimpleWorkflow service;
+
+    private final String domain;
+
     public AsyncDecisionTaskHandler(WorkflowDefinitionFactoryFactory definitionFactoryFactory) {
+        this(definitionFactoryFactory, null, null, null);
+    }
+
+    /**
+     * @param deciderCache
+     *            the cache of the deciders of open workflow executions, or null
+     *            to replay the whole history of every decision task
+     * @param service
+     *            the service to poll the history of a decision task again in
+     *            ascending order from when its decider isn't cached, and its
+     *            history was polled in reverse order or partly skipped
+     * @param domain
+     *            the domain of the workflow executions
+     */
+    public AsyncDecisionTaskHandler(WorkflowDefinitionFactoryFactory definitionFactoryFactory, DeciderCache deciderCache,
+            AmazonSimpleWorkflow service, String domain) {
         this.definitionFactoryFactory = definitionFactoryFactory;
+        this.deciderCache = deciderCache;
+        this.service = service;
+        this.domain = domain;
     }
 
     @Override
     public RespondDecisionTaskCompletedRequest handleDecisionTask(Iterator<DecisionTask> decisionTaskIterator) throws Exception {
+        if (deciderCache != null) {
+            return handleDecisionTaskWithCache(decisionTaskIterator);
+        }
         HistoryHelper historyHelper = new HistoryHelper(decisionTaskIterator);
         AsyncDecider decider = createDecider(historyHelper);
-        decider.decide();
+        try {
+            decider.decide();
+            return createCompletedRequest(decider, historyHelper.getDecisionTask());
+        }
+        finally {
+            decider.release();
+        }
+    }
+
+    private RespondDecisionTaskCompletedRequest handleDecisionTaskWithCache(Iterator<DecisionTask> decisionTaskIterator)
+            throws Exception {
+        long start = System.nanoTime();
+        DecisionTaskHistory history = new DecisionTaskHistory(decisionTaskIterator);
+        DecisionTask decisionTask = history.getDecisionTask();
+        String runId = decisionTask.getWorkflowExecution().getRunId();
+        Long previousStartedEventId = decisionTask.getPreviousStartedEventId();
+        boolean firstDecision = previousStartedEventId == null || previousStartedEventId == 0;
+        AsyncDecider decider = firstDecision ? null : deciderCache.take(runId, previousStartedEventId);
+        boolean incremental = false;
+        try {
+            if (decider != null) {
+                List<HistoryEvent> newEvents = history.getEventsAfter(previousStartedEventId);
+                if (isContinuation(newEvents, previousStartedEventId)) {
+                    incremental = true;
+                    decider.decide(history.newHistoryHelper(newEvents));
+                }
+                else {
+                    AsyncDecider staleDecider = decider;
+                    decider = null;
+                    staleDecider.release();
+                }
+            }
+            if (!incremental) {
+                decider = createDecider(history.newReplayHistoryHelper(service, domain));
+                decider.decide();
+            }
+        }
+        catch (Exception e) {
+            if (decider != null) {
+                decider.release();
+            }
+            throw e;
+        }
+        long nanos = System.nanoTime() - start;
+        if (incremental) {
+            deciderCache.recordIncrementalDecision(nanos);
+        }
+        else {
+            deciderCache.recordFullReplay(nanos, !firstDecision);
+        }
+        RespondDecisionTaskCompletedRequest completedRequest = createCompletedRequest(decider, decisionTask);
+        if (isWorkflowOpen(decider, completedRequest.getDecisions())) {
+            decider.suspend();
+            deciderCache.put(runId, decisionTask.getStartedEventId(), decider);
+        }
+        else {
+            decider.release();
+        }
+        return completedRequest;
+    }
+
+    /**
+     * Returns true if the given events follow the DecisionTaskStarted event of
+     * the previous decision task without gap, and that task was completed
+     * rather than timed out, so that they can be applied to its decider.
+     */
+    private static boolean isContinuation(List<HistoryEvent> newEvents, long previousStartedEventId) {
+        if (newEvents.isEmpty() || newEvents.get(0).getEventId() != previousStartedEventId + 1) {
+            return false;
+        }
+        for (HistoryEvent event : newEvents) {
+            EventType eventType = EventType.fromValue(event.getEventType());
+            if (eventType == EventType.DecisionTaskCompleted) {
+                return event.getDecisionTaskCompletedEventAttributes().getStartedEventId() == previousStartedEventId;
+            }
+            else if (eventType == EventType.DecisionTaskTimedOut) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWorkflowOpen(AsyncDecider decider, Collection<Decision> decisions) {
+        if (decider.getDecisionsHelper().isWorkflowFailed()) {
+            return false;
+        }
+        for (Decision decision : decisions) {
+            switch (DecisionType.fromValue(decision.getDecisionType())) {
+            case CancelWorkflowExecution:
+            case CompleteWorkflowExecution:
+            case FailWorkflowExecution:
+            case ContinueAsNewWorkflowExecution:
+                return false;
+            default:
+            }
+        }
+        return true;
+    }
+
+    private RespondDecisionTaskCompletedRequest createCompletedRequest(AsyncDecider decider, DecisionTask decisionTask) {
         DecisionsHelper decisionsHelper = decider.getDecisionsHelper();
         Collection<Decision> decisions = decisionsHelper.getDecisions();
         String context = decisionsHelper.getWorkflowContextDataToReturn();
-        DecisionTask decisionTask = historyHelper.getDecisionTask();
         if (log.isDebugEnabled()) {
             log.debug("WorkflowTask taskId=" + decisionTask.getStartedEventId() + ", taskToken=" + decisionTask.getTaskToken()
                     + " completed with " + decisions.size() + " new decisions");
@@ -72,6 +384,7 @@ public class AsyncDecisionTaskHandler extends DecisionTaskHandler {
         HistoryHelper historyHelper = new HistoryHelper(decisionTaskIterator);
         AsyncDecider decider = createDecider(historyHelper);
         decider.decide();
+        decider.release();
         DecisionsHelper decisionsHelper = decider.getDecisionsHelper();
         if (decisionsHelper.isWorkflowFailed()) {
             throw new IllegalStateException("Cannot load failed workflow", decisionsHelper.getWorkflowFailureCause());
@@ -83,7 +396,12 @@ public class AsyncDecisionTaskHandler extends DecisionTaskHandler {
     public List<AsyncTaskInfo> getAsynchronousThreadDump(Iterator<DecisionTask> decisionTaskIterator) throws Exception {
         HistoryHelper historyHelper = new HistoryHelper(decisionTaskIterator);
         AsyncDecider decider = createDecider(historyHelper);
-        decider.decide();
+        try {
+            decider.decide();
+        }
+        finally {
+            decider.release();
+        }
         return decider.getAsynchronousThreadDump();
     }
 
@@ -91,7 +409,12 @@ public class AsyncDecisionTaskHandler extends DecisionTaskHandler {
     public String getAsynchronousThreadDumpAsString(Iterator<DecisionTask> decisionTaskIterator) throws Exception {
         HistoryHelper historyHelper = new HistoryHelper(decisionTaskIterator);
         AsyncDecider decider = createDecider(historyHelper);
-        decider.decide();
+        try {
+            decider.decide();
+        }
+        finally {
+            decider.release();
+        }
         return decider.getAsynchronousThreadDumpAsString();
     }
 
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. A copy of the License is
+ * located at
+ * 
+ * http://aws.amazon.com/apache2.0
+ * 
+ * or in the "license" file accompanying this file. This file is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.simpleworkflow.flow.worker;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A bounded cache of the deciders of open workflow executions, keyed by run
+ * id. When the previous decision task of a workflow execution was decided by
+ * a cached decider, the decider applies only the events of the new decision
+ * task, instead of replaying the whole history of the workflow execution; the
+ * decision task poller then polls only the pages of the history containing
+ * these events. Otherwise the history is replayed by a new decider, as without
+ * a cache.
+ * <p>
+ * As a replay starts with the first event of the history, and the pages of
+ * histories polled in reverse order start with the last one, a cache miss
+ * polls all the pages of the history and holds all its events in memory until
+ * the decider is done, where a handler without a cache replays the pages as
+ * they are polled. Size the cache for the hit rate to stay high when histories
+ * are long, keeping in mind that every decision task is a miss after a restart
+ * of the worker.
+ * <p>
+ * A decider is taken out of the cache while it decides, and put back once its
+ * decisions are made, unless they close the workflow execution. The least
+ * recently used deciders are evicted when the cache is full. The hit rate and
+ * the time spent replaying histories can be monitored with the getters of this
+ * class.
+ * 
+ * @see GenericWorkflowWorker#setDeciderCache(DeciderCache)
+ */
+public class DeciderCache {
+
+    private static final Log log = LogFactory.getLog(DeciderCache.class);
+
+    private static final class Entry {
+
+        final AsyncDecider decider;
+
+        /** The id of the DecisionTaskStarted event of the last task decided */
+        final long startedEventId;
+
+        Entry(AsyncDecider decider, long startedEventId) {
+            this.decider = decider;
+            this.startedEventId = startedEventId;
+        }
+    }
+
+    private final int maximumSize;
+
+    /**
+     * Use access-order to evict the least recently used deciders
+     */
+    private final Map<String, Entry> deciders = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    private final AtomicLong fullReplayCount = new AtomicLong();
+
+    private final AtomicLong fullReplayNanos = new AtomicLong();
+
+    private final AtomicLong incrementalDecisionCount = new AtomicLong();
+
+    private final AtomicLong incrementalDecisionNanos = new AtomicLong();
+
+    /**
+     * @param maximumSize
+     *            the maximum number of workflow executions whose decider is
+     *            cached
+     */
+    public DeciderCache(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize must be at least 1");
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * @return the number of deciders cached
+     */
+    public synchronized int getSize() {
+        return deciders.size();
+    }
+
+    /**
+     * @return the number of decision tasks, other than the first of their
+     *         workflow execution, decided by a cached decider
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of decision tasks, other than the first of their
+     *         workflow execution, whose history was replayed because their
+     *         decider wasn't cached or didn't decide the previous task
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return the ratio of hits to hits and misses, or 0 if there was none
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long lookups = hits + missCount.get();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * @return the number of deciders evicted because the cache was full
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return the number of decision tasks whose whole history was replayed
+     */
+    public long getFullReplayCount() {
+        return fullReplayCount.get();
+    }
+
+    /**
+     * @return the total time spent reading and replaying the whole history of
+     *         decision tasks
+     */
+    public long getFullReplayTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(fullReplayNanos.get());
+    }
+
+    /**
+     * @return the number of decision tasks decided by a cached decider
+     */
+    public long getIncrementalDecisionCount() {
+        return incrementalDecisionCount.get();
+    }
+
+    /**
+     * @return the total time spent reading and applying the new events of
+     *         decision tasks decided by a cached decider
+     */
+    public long getIncrementalDecisionTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(incrementalDecisionNanos.get());
+    }
+
+    /**
+     * Evicts all the cached deciders.
+     */
+    public void invalidateAll() {
+        List<AsyncDecider> evicted;
+        synchronized (this) {
+            evicted = new ArrayList<AsyncDecider>(deciders.size());
+            for (Entry entry : deciders.values()) {
+                evicted.add(entry.decider);
+            }
+            deciders.clear();
+        }
+        for (AsyncDecider decider : evicted) {
+            release(decider);
+        }
+    }
+
+    /**
+     * Takes the decider of the given workflow execution out of the cache.
+     * 
+     * @return the decider if it decided the previous decision task, null
+     *         otherwise
+     */
+    AsyncDecider take(String runId, long previousStartedEventId) {
+        Entry entry;
+        synchronized (this) {
+            entry = deciders.remove(runId);
+        }
+        if (entry == null) {
+            return null;
+        }
+        if (entry.startedEventId != previousStartedEventId) {
+            release(entry.decider);
+            return null;
+        }
+        return entry.decider;
+    }
+
+    /**
+     * Caches the suspended decider of the given workflow execution, evicting
+     * the least recently used deciders if the cache is full.
+     */
+    void put(String runId, long startedEventId, AsyncDecider decider) {
+        List<AsyncDecider> evicted = new ArrayList<AsyncDecider>();
+        synchronized (this) {
+            Entry previous = deciders.put(runId, new Entry(decider, startedEventId));
+            if (previous != null) {
+                evicted.add(previous.decider);
+            }
+            Iterator<Entry> iterator = deciders.values().iterator();
+            while (deciders.size() > maximumSize) {
+                evicted.add(iterator.next().decider);
+                iterator.remove();
+                evictionCount.incrementAndGet();
+            }
+        }
+        for (AsyncDecider evictedDecider : evicted) {
+            release(evictedDecider);
+        }
+    }
+
+    void recordIncrementalDecision(long nanos) {
+        hitCount.incrementAndGet();
+        incrementalDecisionCount.incrementAndGet();
+        incrementalDecisionNanos.addAndGet(nanos);
+    }
+
+    /**
+     * @param miss
+     *            true if the decision task wasn't the first of its workflow
+     *            execution
+     */
+    void recordFullReplay(long nanos, boolean miss) {
+        if (miss) {
+            missCount.incrementAndGet();
+        }
+        fullReplayCount.incrementAndGet();
+        fullReplayNanos.addAndGet(nanos);
+    }
+
+    private static void release(AsyncDecider decider) {
+        try {
+            decider.release();
+        }
+        catch (Throwable e) {
+            log.warn("Failure releasing the workflow definition of an evicted decider", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DeciderCache [size=" + getSize() + ", maximumSize=" + maximumSize + ", hitRate=" + getHitRate()
+                + ", evictionCount=" + getEvictionCount() + ", fullReplayCount=" + getFullReplayCount()
+                + ", fullReplayTimeMillis=" + getFullReplayTimeMillis() + ", incrementalDecisionCount="
+                + getIncrementalDecisionCount() + ", incrementalDecisionTimeMillis="
+                + getIncrementalDecisionTimeMillis() + "]";
+    }
+}
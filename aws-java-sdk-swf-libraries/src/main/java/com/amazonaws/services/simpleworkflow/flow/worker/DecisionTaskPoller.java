@@ -40,13 +40,15 @@ public class DecisionTaskPoller implements TaskPoller {
 
         private DecisionTask next;
 
+        private String nextPageToken;
+
         public DecisionTaskIterator() {
             next = firstDecisionTask = poll(null);
         }
 
         @Override
         public boolean hasNext() {
-            return next != null;
+            return next != null || nextPageToken != null;
         }
 
         @Override
@@ -54,17 +56,19 @@ public class DecisionTaskPoller implements TaskPoller {
             if (!hasNext()) {
                 throw new IllegalStateException("hasNext() == false");
             }
+            // Pages are polled only when needed, as a handler may not need the
+            // whole history when it is in reverse order
             DecisionTask result = next;
-            if (next.getNextPageToken() == null) {
-                next = null;
-            }
-            else {
-                next = poll(next.getNextPageToken());
-                // Just to not keep around the history page
-                if (firstDecisionTask != result) {
-                    firstDecisionTask.setEvents(null);
+            if (result == null) {
+                result = poll(nextPageToken);
+                if (result == null) {
+                    throw new IllegalStateException("No decision task returned for page " + nextPageToken);
                 }
+                // Just to not keep around the history page
+                firstDecisionTask.setEvents(null);
             }
+            next = null;
+            nextPageToken = result.getNextPageToken();
             return result;
         }
 
@@ -89,8 +93,12 @@ public class DecisionTaskPoller implements TaskPoller {
 
     private boolean validated;
 
+    private boolean reverseOrder;
+
     private DecisionTaskHandler decisionTaskHandler;
 
+    private PollerMetrics pollerMetrics;
+
     public DecisionTaskPoller() {
         identity = ManagementFactory.getRuntimeMXBean().getName();
     }
@@ -147,6 +155,36 @@ public class DecisionTaskPoller implements TaskPoller {
         this.taskListToPoll = pollTaskList;
     }
 
+    public boolean isReverseOrder() {
+        return reverseOrder;
+    }
+
+    /**
+     * @param reverseOrder
+     *            true to poll the history of decision tasks starting with the
+     *            most recent events, so that a handler with a
+     *            {@link DeciderCache} polls only the pages with the events new
+     *            since the previous decision task; the handler polls the
+     *            history again in ascending order to replay it on a cache
+     *            miss
+     */
+    public void setReverseOrder(boolean reverseOrder) {
+        this.reverseOrder = reverseOrder;
+    }
+
+    public PollerMetrics getPollerMetrics() {
+        return pollerMetrics;
+    }
+
+    /**
+     * @param pollerMetrics
+     *            the statistics to record the polls and decided tasks in, or
+     *            null
+     */
+    public void setPollerMetrics(PollerMetrics pollerMetrics) {
+        this.pollerMetrics = pollerMetrics;
+    }
+
     /**
      * Poll for a task using {@link #getPollTimeoutInSeconds()}
      * 
@@ -162,13 +200,28 @@ public class DecisionTaskPoller implements TaskPoller {
         pollRequest.setDomain(domain);
         pollRequest.setIdentity(identity);
         pollRequest.setNextPageToken(nextResultToken);
+        if (reverseOrder) {
+            pollRequest.setReverseOrder(true);
+        }
 
         pollRequest.setTaskList(new TaskList().withName(taskListToPoll));
 
         if (log.isDebugEnabled()) {
             log.debug("poll request begin: " + pollRequest);
         }
-        DecisionTask result = service.pollForDecisionTask(pollRequest);
+        // Only the polls for new tasks are recorded, not the ones for the
+        // following pages of their history
+        boolean recordPoll = pollerMetrics != null && nextResultToken == null;
+        long pollStart = recordPoll ? pollerMetrics.pollStarted() : 0;
+        DecisionTask result = null;
+        try {
+            result = service.pollForDecisionTask(pollRequest);
+        }
+        finally {
+            if (recordPoll) {
+                pollerMetrics.pollFinished(pollStart, result == null || result.getTaskToken() == null);
+            }
+        }
         if (log.isDebugEnabled()) {
             log.debug("poll request returned decision task: workflowType=" + result.getWorkflowType() + ", workflowExecution="
                     + result.getWorkflowExecution() + ", startedEventId=" + result.getStartedEventId() + ", previousStartedEventId=" + result.getPreviousStartedEventId());
@@ -193,11 +246,16 @@ public class DecisionTaskPoller implements TaskPoller {
     public boolean pollAndProcessSingleTask() throws Exception {
         DecisionTaskIterator tasks = null;
         RespondDecisionTaskCompletedRequest taskCompletedRequest = null;
+        boolean taskStarted = false;
         try {
             tasks = new DecisionTaskIterator();
             if (!tasks.hasNext()) {
                 return false;
             }
+            if (pollerMetrics != null) {
+                pollerMetrics.taskStarted();
+                taskStarted = true;
+            }
             taskCompletedRequest = decisionTaskHandler.handleDecisionTask(tasks);
             if (decisionsLog.isTraceEnabled()) {
                 decisionsLog.trace(WorkflowExecutionUtils.prettyPrintDecisions(taskCompletedRequest.getDecisions()));
@@ -224,6 +282,11 @@ public class DecisionTaskPoller implements TaskPoller {
             }
             throw e;
         }
+        finally {
+            if (taskStarted) {
+                pollerMetrics.taskFinished();
+            }
+        }
         return true;
     }
 
@@ -97,7 +97,18 @@ public class GenericActivityWorker extends GenericWorker {
                 new SynchronousQueue<Runnable>());
         tasksExecutor.setThreadFactory(new ExecutorThreadFactory(ACTIVITY_THREAD_NAME_PREFIX + " " + getTaskListToPoll() + " "));
         tasksExecutor.setRejectedExecutionHandler(new BlockCallerPolicy());
-        return new ActivityTaskPoller(service, domain, getTaskListToPoll(), activityImplementationFactory, tasksExecutor);
+        ActivityTaskPoller result = new ActivityTaskPoller(service, domain, getTaskListToPoll(), activityImplementationFactory,
+                tasksExecutor);
+        result.setPollerMetrics(getPollerMetrics());
+        return result;
+    }
+
+    /**
+     * @return the size of the activity task executor thread pool
+     */
+    @Override
+    protected int getTaskSlotCount() {
+        return taskExecutorThreadPoolSize;
     }
 
     @Override
@@ -58,12 +58,15 @@ public abstract class GenericWorker implements WorkerBase {
 
         private final TaskPoller poller;
 
+        private boolean previousPollReturnedTask;
+
         PollServiceTask(TaskPoller poller) {
             this.poller = poller;
         }
 
         @Override
         public void run() {
+            Boolean polledTask = null;
             try {
                 if (log.isDebugEnabled()) {
                     log.debug("poll task begin");
@@ -91,7 +94,7 @@ public abstract class GenericWorker implements WorkerBase {
                 if (pollExecutor.isTerminating()) {
                     return;
                 }
-                poller.pollAndProcessSingleTask();
+                polledTask = poller.pollAndProcessSingleTask();
                 pollBackoffThrottler.success();
             }
             catch (Throwable e) {
@@ -101,10 +104,22 @@ public abstract class GenericWorker implements WorkerBase {
                 }
             }
             finally {
-                // Resubmit itself back to pollExecutor
+                // Resubmit itself back to pollExecutor, unless this poll thread
+                // is not needed anymore
                 if (!pollExecutor.isShutdown()) {
-                    pollExecutor.execute(this);
+                    if (Boolean.FALSE.equals(polledTask) && pollerMetrics.removePollThread(pollThreadCount)) {
+                        if (log.isDebugEnabled()) {
+                            log.debug("poll returned no task, removed poll thread: " + pollerMetrics.getPollThreadCount());
+                        }
+                    }
+                    else {
+                        pollExecutor.execute(this);
+                        if (Boolean.TRUE.equals(polledTask) && previousPollReturnedTask) {
+                            addPollThread(poller);
+                        }
+                    }
                 }
+                previousPollReturnedTask = Boolean.TRUE.equals(polledTask);
             }
         }
     }
@@ -145,6 +160,10 @@ public abstract class GenericWorker implements WorkerBase {
 
     private int pollThreadCount = 1;
 
+    private int maximumPollThreadCount;
+
+    private final PollerMetrics pollerMetrics = new PollerMetrics();
+
     private BackoffThrottler pollBackoffThrottler;
 
     private Throttler pollRateThrottler;
@@ -338,6 +357,45 @@ public abstract class GenericWorker implements WorkerBase {
         this.pollThreadCount = threadCount;
     }
 
+    /**
+     * @see #setMaximumPollThreadCount(int)
+     */
+    public int getMaximumPollThreadCount() {
+        return Math.max(pollThreadCount, maximumPollThreadCount);
+    }
+
+    /**
+     * Sets the maximum number of poll threads. When bigger than
+     * {@link #getPollThreadCount()}, the worker starts with
+     * {@link #getPollThreadCount()} poll threads, adds one when a poll thread
+     * gets tasks in two consecutive polls while some task slot is free, and
+     * removes one when a poll returns no task, down to
+     * {@link #getPollThreadCount()}. By default the number of poll threads
+     * doesn't change.
+     * 
+     * @see PollerMetrics
+     */
+    public void setMaximumPollThreadCount(int maximumPollThreadCount) {
+        checkStarted();
+        this.maximumPollThreadCount = maximumPollThreadCount;
+    }
+
+    /**
+     * @return the statistics of the polls and task slots of this worker
+     */
+    public PollerMetrics getPollerMetrics() {
+        return pollerMetrics;
+    }
+
+    /**
+     * @return the number of tasks this worker can execute at a time, which is
+     *         by default the maximum number of poll threads, as they execute
+     *         the tasks they poll
+     */
+    protected int getTaskSlotCount() {
+        return getMaximumPollThreadCount();
+    }
+
     @Override
     public void setDisableTypeRegistrationOnStart(boolean disableTypeRegistrationOnStart) {
         this.disableTypeRegitrationOnStart = disableTypeRegistrationOnStart;
@@ -372,15 +430,34 @@ public abstract class GenericWorker implements WorkerBase {
                     maximumPollRateIntervalMilliseconds);
         }
 
-        pollExecutor = new ThreadPoolExecutor(pollThreadCount, pollThreadCount, 1, TimeUnit.MINUTES,
-                new LinkedBlockingQueue<Runnable>(pollThreadCount));
+        int maximumPollThreads = getMaximumPollThreadCount();
+        pollExecutor = new ThreadPoolExecutor(maximumPollThreads, maximumPollThreads, 1, TimeUnit.MINUTES,
+                new LinkedBlockingQueue<Runnable>(maximumPollThreads));
+        if (maximumPollThreads > pollThreadCount) {
+            pollExecutor.allowCoreThreadTimeOut(true);
+        }
         ExecutorThreadFactory pollExecutorThreadFactory = getExecutorThreadFactory();
         pollExecutor.setThreadFactory(pollExecutorThreadFactory);
 
         pollBackoffThrottler = new BackoffThrottler(pollBackoffInitialInterval, pollBackoffMaximumInterval,
                 pollBackoffCoefficient);
+        pollerMetrics.setSlotCount(getTaskSlotCount());
         poller = createPoller();
         for (int i = 0; i < pollThreadCount; i++) {
+            pollerMetrics.addPollThread(maximumPollThreads);
+            pollExecutor.execute(new PollServiceTask(poller));
+        }
+    }
+
+    /**
+     * Adds a poll thread when tasks are backlogged, if there is a task slot
+     * left for the tasks it polls.
+     */
+    private void addPollThread(TaskPoller poller) {
+        if (pollerMetrics.getFreeSlotCount() > 0 && pollerMetrics.addPollThread(getMaximumPollThreadCount())) {
+            if (log.isDebugEnabled()) {
+                log.debug("tasks are backlogged, added poll thread: " + pollerMetrics.getPollThreadCount());
+            }
             pollExecutor.execute(new PollServiceTask(poller));
         }
     }
@@ -492,7 +569,7 @@ public abstract class GenericWorker implements WorkerBase {
         return this.getClass().getSimpleName() + "[service=" + service + ", domain=" + domain + ", taskListToPoll="
                 + taskListToPoll + ", identity=" + identity + ", backoffInitialInterval=" + pollBackoffInitialInterval
                 + ", backoffMaximumInterval=" + pollBackoffMaximumInterval + ", backoffCoefficient=" + pollBackoffCoefficient
-                + "]";
+                + ", pollThreadCount=" + pollThreadCount + ", maximumPollThreadCount=" + getMaximumPollThreadCount() + "]";
     }
 
     @Override
@@ -38,6 +38,8 @@ public class GenericWorkflowWorker extends GenericWorker {
 
     private WorkflowDefinitionFactoryFactory workflowDefinitionFactoryFactory;
 
+    private DeciderCache deciderCache;
+
     public GenericWorkflowWorker() {
         setIdentity(ManagementFactory.getRuntimeMXBean().getName());
     }
@@ -57,6 +59,22 @@ public class GenericWorkflowWorker extends GenericWorker {
         this.workflowDefinitionFactoryFactory = workflowDefinitionFactoryFactory;
     }
 
+    public DeciderCache getDeciderCache() {
+        return deciderCache;
+    }
+
+    /**
+     * Sets the cache of the deciders of open workflow executions, which
+     * decide on the events new since their previous decision task instead of
+     * replaying the whole history. With a cache, the history of decision tasks
+     * is polled in reverse order, and only the pages with new events are
+     * polled when the decider is cached; otherwise the history is polled again
+     * in ascending order to replay it. Not set by default.
+     */
+    public void setDeciderCache(DeciderCache deciderCache) {
+        this.deciderCache = deciderCache;
+    }
+
     protected DecisionTaskPoller createWorkflowPoller() {
         DecisionTaskPoller poller = new DecisionTaskPoller();
         return poller;
@@ -75,11 +93,14 @@ public class GenericWorkflowWorker extends GenericWorker {
     @Override
     protected TaskPoller createPoller() {
         DecisionTaskPoller result = new DecisionTaskPoller();
-        result.setDecisionTaskHandler(new AsyncDecisionTaskHandler(workflowDefinitionFactoryFactory));
+        result.setDecisionTaskHandler(new AsyncDecisionTaskHandler(workflowDefinitionFactoryFactory, deciderCache, getService(),
+                getDomain()));
+        result.setReverseOrder(deciderCache != null);
         result.setDomain(getDomain());
         result.setIdentity(getIdentity());
         result.setService(getService());
         result.setTaskListToPoll(getTaskListToPoll());
+        result.setPollerMetrics(getPollerMetrics());
         return result;
     }
 
@@ -91,7 +112,7 @@ public class GenericWorkflowWorker extends GenericWorker {
     @Override
     public String toString() {
         return this.getClass().getSimpleName() + "[super=" + super.toString() + ", workflowDefinitionFactoryFactory="
-                + workflowDefinitionFactoryFactory + "]";
+                + workflowDefinitionFactoryFactory + ", deciderCache=" + deciderCache + "]";
     }
 
     public static void registerWorkflowTypes(AmazonSimpleWorkflow service, String domain, String defaultTaskList,
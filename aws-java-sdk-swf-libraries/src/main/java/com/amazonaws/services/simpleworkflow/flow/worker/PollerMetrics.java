@@ -0,0 +1,196 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. A copy of the License is
+ * located at
+ * 
+ * http://aws.amazon.com/apache2.0
+ * 
+ * or in the "license" file accompanying this file. This file is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.simpleworkflow.flow.worker;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of the polls of a worker and of its task slots, which are the
+ * tasks it can execute at a time: the activity task executor threads of an
+ * activity worker, or the poll threads of a workflow worker, which decide on
+ * the decision tasks they poll.
+ * <p>
+ * A slot is in use while a task is executed, and reserved while a poll that
+ * might return a task is in progress, so a worker polls only when it has a
+ * free slot and scales its poll threads up only when some slot is left.
+ * 
+ * @see GenericWorker#getPollerMetrics()
+ */
+public class PollerMetrics {
+
+    private final AtomicLong pollCount = new AtomicLong();
+
+    private final AtomicLong emptyPollCount = new AtomicLong();
+
+    private final AtomicLong pollNanos = new AtomicLong();
+
+    private final AtomicInteger inProgressPollCount = new AtomicInteger();
+
+    private final AtomicInteger busySlotCount = new AtomicInteger();
+
+    private final AtomicInteger pollThreadCount = new AtomicInteger();
+
+    private volatile int slotCount;
+
+    /**
+     * @return the time the poll started at, to pass to
+     *         {@link #pollFinished(long, boolean)}
+     */
+    long pollStarted() {
+        inProgressPollCount.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    void pollFinished(long startNanos, boolean empty) {
+        pollNanos.addAndGet(System.nanoTime() - startNanos);
+        pollCount.incrementAndGet();
+        if (empty) {
+            emptyPollCount.incrementAndGet();
+        }
+        inProgressPollCount.decrementAndGet();
+    }
+
+    void taskStarted() {
+        busySlotCount.incrementAndGet();
+    }
+
+    void taskFinished() {
+        busySlotCount.decrementAndGet();
+    }
+
+    void setSlotCount(int slotCount) {
+        this.slotCount = slotCount;
+    }
+
+    /**
+     * @return true if a poll thread was added, false if there are already the
+     *         given maximum number of poll threads
+     */
+    boolean addPollThread(int maximum) {
+        while (true) {
+            int count = pollThreadCount.get();
+            if (count >= maximum) {
+                return false;
+            }
+            if (pollThreadCount.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return true if a poll thread was removed, false if there are already
+     *         the given minimum number of poll threads
+     */
+    boolean removePollThread(int minimum) {
+        while (true) {
+            int count = pollThreadCount.get();
+            if (count <= minimum) {
+                return false;
+            }
+            if (pollThreadCount.compareAndSet(count, count - 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return the number of completed polls, including the ones that returned
+     *         no task
+     */
+    public long getPollCount() {
+        return pollCount.get();
+    }
+
+    /**
+     * @return the number of polls that timed out without returning a task
+     */
+    public long getEmptyPollCount() {
+        return emptyPollCount.get();
+    }
+
+    /**
+     * @return the ratio of the polls that returned no task, between 0 and 1;
+     *         a high ratio means that the worker has more poll threads than
+     *         the rate of tasks requires
+     */
+    public double getEmptyPollRatio() {
+        long polls = pollCount.get();
+        return polls == 0 ? 0 : (double) emptyPollCount.get() / polls;
+    }
+
+    /**
+     * @return the average time a poll took, including long polls that timed
+     *         out, in milliseconds
+     */
+    public double getAveragePollLatencyMillis() {
+        long polls = pollCount.get();
+        return polls == 0 ? 0 : (double) TimeUnit.NANOSECONDS.toMicros(pollNanos.get()) / polls / 1000;
+    }
+
+    /**
+     * @return the number of polls in progress
+     */
+    public int getInProgressPollCount() {
+        return inProgressPollCount.get();
+    }
+
+    /**
+     * @return the number of tasks the worker can execute at a time
+     */
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    /**
+     * @return the number of tasks being executed
+     */
+    public int getBusySlotCount() {
+        return busySlotCount.get();
+    }
+
+    /**
+     * @return the number of slots that are neither executing a task nor
+     *         reserved by a poll in progress
+     */
+    public int getFreeSlotCount() {
+        return Math.max(0, slotCount - busySlotCount.get() - inProgressPollCount.get());
+    }
+
+    /**
+     * @return the ratio of the slots executing a task, between 0 and 1
+     */
+    public double getSlotUtilization() {
+        int slots = slotCount;
+        return slots == 0 ? 0 : Math.min(1.0, (double) busySlotCount.get() / slots);
+    }
+
+    /**
+     * @return the current number of poll threads of the worker
+     */
+    public int getPollThreadCount() {
+        return pollThreadCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "PollerMetrics [pollCount=" + getPollCount() + ", emptyPollRatio=" + getEmptyPollRatio()
+                + ", averagePollLatencyMillis=" + getAveragePollLatencyMillis() + ", pollThreadCount=" + getPollThreadCount()
+                + ", slotCount=" + getSlotCount() + ", busySlotCount=" + getBusySlotCount() + ", slotUtilization="
+                + getSlotUtilization() + "]";
+    }
+}
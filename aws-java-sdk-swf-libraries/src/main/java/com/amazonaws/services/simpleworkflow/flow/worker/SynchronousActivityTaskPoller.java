@@ -58,6 +58,8 @@ public class SynchronousActivityTaskPoller implements TaskPoller {
 
     private boolean initialized;
 
+    private PollerMetrics pollerMetrics;
+
     public SynchronousActivityTaskPoller(AmazonSimpleWorkflow service, String domain, String taskListToPoll,
             ActivityImplementationFactory activityImplementationFactory) {
         this();
@@ -135,6 +137,19 @@ public class SynchronousActivityTaskPoller implements TaskPoller {
         return taskListToPoll;
     }
 
+    public PollerMetrics getPollerMetrics() {
+        return pollerMetrics;
+    }
+
+    /**
+     * @param pollerMetrics
+     *            the statistics to record the polls and executed tasks in, or
+     *            null
+     */
+    public void setPollerMetrics(PollerMetrics pollerMetrics) {
+        this.pollerMetrics = pollerMetrics;
+    }
+
     /**
      * Poll for a task using {@link #getPollTimeoutInSeconds()}
      * 
@@ -155,7 +170,16 @@ public class SynchronousActivityTaskPoller implements TaskPoller {
         if (log.isDebugEnabled()) {
             log.debug("poll request begin: " + pollRequest);
         }
-        ActivityTask result = service.pollForActivityTask(pollRequest);
+        long pollStart = pollerMetrics != null ? pollerMetrics.pollStarted() : 0;
+        ActivityTask result = null;
+        try {
+            result = service.pollForActivityTask(pollRequest);
+        }
+        finally {
+            if (pollerMetrics != null) {
+                pollerMetrics.pollFinished(pollStart, result == null || result.getTaskToken() == null);
+            }
+        }
         if (result == null || result.getTaskToken() == null) {
             if (log.isDebugEnabled()) {
                 log.debug("poll request returned no task");
@@ -180,7 +204,17 @@ public class SynchronousActivityTaskPoller implements TaskPoller {
         if (task == null) {
             return false;
         }
-        execute(task);
+        if (pollerMetrics != null) {
+            pollerMetrics.taskStarted();
+        }
+        try {
+            execute(task);
+        }
+        finally {
+            if (pollerMetrics != null) {
+                pollerMetrics.taskFinished();
+            }
+        }
         return true;
     }
 
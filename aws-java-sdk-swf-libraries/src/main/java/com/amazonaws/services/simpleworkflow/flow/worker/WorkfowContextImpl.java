@@ -29,22 +29,28 @@ import com.amazonaws.services.simpleworkflow.model.WorkflowType;
 
 class WorkfowContextImpl implements WorkflowContext {
 
-    private final DecisionTask decisionTask;
+    private final WorkflowExecution workflowExecution;
+    private final WorkflowType workflowType;
+    private final WorkflowExecutionStartedEventAttributes workflowStartedEventAttributes;
     private boolean cancelRequested;
     private ContinueAsNewWorkflowExecutionParameters continueAsNewOnCompletion;
     
     public WorkfowContextImpl(DecisionTask decisionTask) {
-        this.decisionTask = decisionTask;
+        // Not keeping the task, so that a cached decider doesn't keep its history
+        this.workflowExecution = decisionTask.getWorkflowExecution();
+        this.workflowType = decisionTask.getWorkflowType();
+        HistoryEvent firstHistoryEvent = decisionTask.getEvents().get(0);
+        this.workflowStartedEventAttributes = firstHistoryEvent.getWorkflowExecutionStartedEventAttributes();
     }
     
     @Override
     public WorkflowExecution getWorkflowExecution() {
-        return decisionTask.getWorkflowExecution();
+        return workflowExecution;
     }
 
     @Override
     public WorkflowType getWorkflowType() {
-        return decisionTask.getWorkflowType();
+        return workflowType;
     }
 
     @Override
@@ -104,9 +110,7 @@ class WorkfowContextImpl implements WorkflowContext {
     }
     
     private WorkflowExecutionStartedEventAttributes getWorkflowStartedEventAttributes() {
-        HistoryEvent firstHistoryEvent = decisionTask.getEvents().get(0);
-        WorkflowExecutionStartedEventAttributes attributes = firstHistoryEvent.getWorkflowExecutionStartedEventAttributes();
-        return attributes;
+        return workflowStartedEventAttributes;
     }
 
     @Override
@@ -0,0 +1,555 @@
+/*
+ * Copyright 2012-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. A copy of the License is
+ * located at
+ *
+ * http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.simpleworkflow.flow.worker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.simpleworkflow.AmazonSimpleWorkflowClient;
+import com.amazonaws.services.simpleworkflow.flow.DecisionContext;
+import com.amazonaws.services.simpleworkflow.flow.WorkflowTypeRegistrationOptions;
+import com.amazonaws.services.simpleworkflow.flow.core.Functor;
+import com.amazonaws.services.simpleworkflow.flow.core.Promise;
+import com.amazonaws.services.simpleworkflow.flow.generic.GenericActivityClient;
+import com.amazonaws.services.simpleworkflow.flow.generic.WorkflowDefinition;
+import com.amazonaws.services.simpleworkflow.flow.generic.WorkflowDefinitionFactory;
+import com.amazonaws.services.simpleworkflow.flow.generic.WorkflowDefinitionFactoryFactory;
+import com.amazonaws.services.simpleworkflow.model.ActivityTaskCompletedEventAttributes;
+import com.amazonaws.services.simpleworkflow.model.ActivityTaskScheduledEventAttributes;
+import com.amazonaws.services.simpleworkflow.model.ActivityTaskStartedEventAttributes;
+import com.amazonaws.services.simpleworkflow.model.Decision;
+import com.amazonaws.services.simpleworkflow.model.DecisionTask;
+import com.amazonaws.services.simpleworkflow.model.DecisionTaskCompletedEventAttributes;
+import com.amazonaws.services.simpleworkflow.model.DecisionTaskScheduledEventAttributes;
+import com.amazonaws.services.simpleworkflow.model.DecisionTaskStartedEventAttributes;
+import com.amazonaws.services.simpleworkflow.model.DecisionTaskTimedOutEventAttributes;
+import com.amazonaws.services.simpleworkflow.model.DecisionType;
+import com.amazonaws.services.simpleworkflow.model.EventType;
+import com.amazonaws.services.simpleworkflow.model.GetWorkflowExecutionHistoryRequest;
+import com.amazonaws.services.simpleworkflow.model.History;
+import com.amazonaws.services.simpleworkflow.model.HistoryEvent;
+import com.amazonaws.services.simpleworkflow.model.PollForDecisionTaskRequest;
+import com.amazonaws.services.simpleworkflow.model.RespondDecisionTaskCompletedRequest;
+import com.amazonaws.services.simpleworkflow.model.ScheduleActivityTaskDecisionAttributes;
+import com.amazonaws.services.simpleworkflow.model.TaskList;
+import com.amazonaws.services.simpleworkflow.model.WorkflowExecution;
+import com.amazonaws.services.simpleworkflow.model.WorkflowExecutionCompletedEventAttributes;
+import com.amazonaws.services.simpleworkflow.model.WorkflowExecutionStartedEventAttributes;
+import com.amazonaws.services.simpleworkflow.model.WorkflowType;
+
+/**
+ * Checks that the decisions of cached deciders, applying only the events new
+ * since their previous decision task, are the ones made by replaying the whole
+ * history.
+ */
+public class DeciderCacheTest {
+
+    private static final WorkflowType TYPE = new WorkflowType().withName("Steps").withVersion("1.0");
+
+    private static final TaskList TASK_LIST = new TaskList().withName("tasks");
+
+    private static final int STEPS = 4;
+
+    /** Small, so that histories span several pages */
+    private static final int PAGE_SIZE = 3;
+
+    private StepsWorkflowFactory factory;
+
+    private WorkflowDefinitionFactoryFactory factoryFactory;
+
+    private AsyncDecisionTaskHandler replayingHandler;
+
+    private DeciderCache cache;
+
+    private StubSimpleWorkflow service;
+
+    private AsyncDecisionTaskHandler cachingHandler;
+
+    @Before
+    public void setUp() {
+        factory = new StepsWorkflowFactory();
+        factoryFactory = new WorkflowDefinitionFactoryFactory() {
+
+            @Override
+            public WorkflowDefinitionFactory getWorkflowDefinitionFactory(WorkflowType workflowType) {
+                return factory;
+            }
+
+            @Override
+            public Iterable<WorkflowType> getWorkflowTypesToRegister() {
+                return Collections.singletonList(TYPE);
+            }
+        };
+        replayingHandler = new AsyncDecisionTaskHandler(factoryFactory);
+        cache = new DeciderCache(10);
+        service = new StubSimpleWorkflow();
+        cachingHandler = new AsyncDecisionTaskHandler(factoryFactory, cache, service, "domain");
+    }
+
+    @After
+    public void tearDown() {
+        cache.invalidateAll();
+        // No workflow definition leaked by the cached deciders
+        assertEquals(factory.created.get(), factory.deleted.get());
+    }
+
+    @Test
+    public void testCacheHit() throws Exception {
+        Execution execution = new Execution("run");
+        PageIterator lastPages = null;
+        while (!execution.closed) {
+            DecisionTask task = execution.decisionTask();
+            List<Decision> expected = decide(replayingHandler, task, false);
+            lastPages = new PageIterator(task, true);
+            service.task = task;
+            assertEquals(expected, cachingHandler.handleDecisionTask(lastPages).getDecisions());
+            execution.completed(expected);
+            execution.completeActivities();
+        }
+        assertEquals("in>step1>step2>step3>step4", execution.result);
+        assertEquals(STEPS, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+        assertEquals(STEPS, cache.getIncrementalDecisionCount());
+        assertEquals(1, cache.getFullReplayCount());
+        // Released once the workflow execution completed
+        assertEquals(0, cache.getSize());
+        // Only the pages with the events of the last decision task were read
+        assertTrue(lastPages.pagesRead + " of " + lastPages.pages.size(),
+                lastPages.pagesRead < lastPages.pages.size() / 2);
+        // and the history was never polled again
+        assertEquals(0, service.historyPagesRead);
+    }
+
+    @Test
+    public void testCacheMissPollsHistoryInAscendingOrder() throws Exception {
+        Execution execution = new Execution("run");
+        for (int step = 0; step < 2; step++) {
+            execution.completed(decide(replayingHandler, execution.decisionTask(), false));
+            execution.completeActivities();
+        }
+        DecisionTask task = execution.decisionTask();
+        PageIterator reversePages = new PageIterator(task, true);
+        service.task = task;
+        assertEquals(decide(replayingHandler, task, false), cachingHandler.handleDecisionTask(reversePages).getDecisions());
+        assertEquals(1, cache.getMissCount());
+        // Only the first page of the history in reverse order was read
+        assertEquals(1, reversePages.pagesRead);
+        // and the history replayed from its pages in ascending order
+        assertEquals(pages(task, false).size(), service.historyPagesRead);
+        assertTrue(service.historyPagesRead > 1);
+        execution.completed(decide(replayingHandler, task, false));
+        finish(execution);
+        assertEquals("in>step1>step2>step3>step4", execution.result);
+    }
+
+    @Test
+    public void testTimedOutDecisionTask() throws Exception {
+        Execution execution = new Execution("run");
+        decideAndComplete(execution);
+        execution.completeActivities();
+
+        // Decided by the cached decider, but timed out
+        DecisionTask task = execution.decisionTask();
+        List<Decision> timedOutDecisions = decide(cachingHandler, task, true);
+        assertEquals(decide(replayingHandler, task, false), timedOutDecisions);
+        execution.timedOut();
+
+        // Replayed, and decided again
+        assertEquals(timedOutDecisions, decideAndComplete(execution));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        finish(execution);
+        assertEquals("in>step1>step2>step3>step4", execution.result);
+    }
+
+    @Test
+    public void testFailedRespondDecisionTaskCompleted() throws Exception {
+        DecisionTaskPoller poller = new DecisionTaskPoller(service, "domain", TASK_LIST.getName(), cachingHandler);
+        poller.setReverseOrder(true);
+        Execution execution = new Execution("run");
+        for (int step = 1; !execution.closed; step++) {
+            DecisionTask task = execution.decisionTask();
+            List<Decision> expected = decide(replayingHandler, task, false);
+            service.task = task;
+            service.failRespond = step == 3;
+            try {
+                assertTrue(poller.pollAndProcessSingleTask());
+                assertTrue(step != 3);
+            }
+            catch (AmazonServiceException e) {
+                assertEquals(3, step);
+                // Not recorded by the service, so timed out
+                assertEquals(expected, service.responded.getDecisions());
+                execution.timedOut();
+                continue;
+            }
+            assertEquals(expected, service.responded.getDecisions());
+            execution.completed(expected);
+            execution.completeActivities();
+        }
+        assertEquals("in>step1>step2>step3>step4", execution.result);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(STEPS, cache.getHitCount());
+        // Polled in reverse order
+        assertTrue(service.reverseOrder);
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        cache = new DeciderCache(1);
+        cachingHandler = new AsyncDecisionTaskHandler(factoryFactory, cache, service, "domain");
+        Execution first = new Execution("first");
+        Execution second = new Execution("second");
+        // Each execution evicts the decider of the other
+        for (int i = 0; i < 3; i++) {
+            decideAndComplete(first);
+            first.completeActivities();
+            decideAndComplete(second);
+            second.completeActivities();
+        }
+        assertEquals(5, cache.getEvictionCount());
+        assertEquals(4, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+        // Cached again after being replayed
+        finish(first);
+        assertEquals(5, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals("in>step1>step2>step3>step4", first.result);
+        finish(second);
+        assertEquals(6, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+        assertEquals("in>step1>step2>step3>step4", second.result);
+    }
+
+    /**
+     * Decides the next decision task of the execution with both handlers,
+     * checks that they agree, and completes it.
+     */
+    private List<Decision> decideAndComplete(Execution execution) throws Exception {
+        DecisionTask task = execution.decisionTask();
+        List<Decision> expected = decide(replayingHandler, task, false);
+        assertEquals(expected, decide(cachingHandler, task, true));
+        execution.completed(expected);
+        return expected;
+    }
+
+    private void finish(Execution execution) throws Exception {
+        execution.completeActivities();
+        while (!execution.closed) {
+            decideAndComplete(execution);
+            execution.completeActivities();
+        }
+    }
+
+    private List<Decision> decide(AsyncDecisionTaskHandler handler, DecisionTask task, boolean reverseOrder)
+            throws Exception {
+        service.task = task;
+        return handler.handleDecisionTask(new PageIterator(task, reverseOrder)).getDecisions();
+    }
+
+    /**
+     * Schedules the steps one after the other, each with the result of the
+     * previous one.
+     */
+    private static class StepsWorkflow extends WorkflowDefinition {
+
+        private final GenericActivityClient activities;
+
+        StepsWorkflow(DecisionContext context) {
+            activities = context.getActivityClient();
+        }
+
+        @Override
+        public Promise<String> execute(String input) {
+            return step(1, Promise.asPromise(input));
+        }
+
+        private Promise<String> step(final int step, final Promise<String> input) {
+            if (step > STEPS) {
+                return input;
+            }
+            return new Functor<String>(input) {
+
+                @Override
+                protected Promise<String> doExecute() {
+                    return step(step + 1, activities.scheduleActivityTask("step" + step, "1.0", input.get()));
+                }
+            };
+        }
+
+        @Override
+        public void signalRecieved(String signalName, String input) {
+        }
+
+        @Override
+        public String getWorkflowState() {
+            return null;
+        }
+    }
+
+    private static class StepsWorkflowFactory extends WorkflowDefinitionFactory {
+
+        final AtomicInteger created = new AtomicInteger();
+
+        final AtomicInteger deleted = new AtomicInteger();
+
+        @Override
+        public WorkflowTypeRegistrationOptions getWorkflowRegistrationOptions() {
+            return null;
+        }
+
+        @Override
+        public WorkflowDefinition getWorkflowDefinition(DecisionContext context) {
+            created.incrementAndGet();
+            return new StepsWorkflow(context);
+        }
+
+        @Override
+        public void deleteWorkflowDefinition(WorkflowDefinition instance) {
+            deleted.incrementAndGet();
+        }
+
+        @Override
+        public WorkflowType getWorkflowType() {
+            return TYPE;
+        }
+    }
+
+    /**
+     * The history of a workflow execution, recording the events Amazon SWF
+     * would for the decisions made and the activities completed.
+     */
+    private static class Execution {
+
+        final String runId;
+
+        final List<HistoryEvent> events = new ArrayList<HistoryEvent>();
+
+        /** The ActivityTaskScheduled events of the activities not completed */
+        final List<HistoryEvent> scheduledActivities = new ArrayList<HistoryEvent>();
+
+        long decisionScheduledEventId;
+
+        long decisionStartedEventId;
+
+        long previousStartedEventId;
+
+        boolean closed;
+
+        String result;
+
+        Execution(String runId) {
+            this.runId = runId;
+            addEvent(EventType.WorkflowExecutionStarted).setWorkflowExecutionStartedEventAttributes(
+                    new WorkflowExecutionStartedEventAttributes().withInput("in").withWorkflowType(TYPE)
+                            .withTaskList(TASK_LIST).withChildPolicy("TERMINATE").withExecutionStartToCloseTimeout("3600")
+                            .withTaskStartToCloseTimeout("60"));
+            scheduleDecisionTask();
+        }
+
+        DecisionTask decisionTask() {
+            return new DecisionTask().withTaskToken(runId + "-" + decisionStartedEventId)
+                    .withWorkflowExecution(new WorkflowExecution().withWorkflowId("workflow-" + runId).withRunId(runId))
+                    .withWorkflowType(TYPE).withStartedEventId(decisionStartedEventId)
+                    .withPreviousStartedEventId(previousStartedEventId).withEvents(new ArrayList<HistoryEvent>(events));
+        }
+
+        void completed(List<Decision> decisions) {
+            HistoryEvent completed = addEvent(EventType.DecisionTaskCompleted);
+            completed.setDecisionTaskCompletedEventAttributes(new DecisionTaskCompletedEventAttributes()
+                    .withScheduledEventId(decisionScheduledEventId).withStartedEventId(decisionStartedEventId));
+            previousStartedEventId = decisionStartedEventId;
+            for (Decision decision : decisions) {
+                switch (DecisionType.fromValue(decision.getDecisionType())) {
+                case ScheduleActivityTask:
+                    ScheduleActivityTaskDecisionAttributes attributes = decision.getScheduleActivityTaskDecisionAttributes();
+                    HistoryEvent scheduled = addEvent(EventType.ActivityTaskScheduled);
+                    scheduled.setActivityTaskScheduledEventAttributes(new ActivityTaskScheduledEventAttributes()
+                            .withActivityId(attributes.getActivityId()).withActivityType(attributes.getActivityType())
+                            .withInput(attributes.getInput()).withTaskList(TASK_LIST)
+                            .withDecisionTaskCompletedEventId(completed.getEventId()));
+                    scheduledActivities.add(scheduled);
+                    break;
+                case CompleteWorkflowExecution:
+                    result = decision.getCompleteWorkflowExecutionDecisionAttributes().getResult();
+                    addEvent(EventType.WorkflowExecutionCompleted).setWorkflowExecutionCompletedEventAttributes(
+                            new WorkflowExecutionCompletedEventAttributes().withResult(result)
+                                    .withDecisionTaskCompletedEventId(completed.getEventId()));
+                    closed = true;
+                    break;
+                default:
+                    fail("Unexpected decision " + decision);
+                }
+            }
+        }
+
+        void timedOut() {
+            addEvent(EventType.DecisionTaskTimedOut).setDecisionTaskTimedOutEventAttributes(
+                    new DecisionTaskTimedOutEventAttributes().withScheduledEventId(decisionScheduledEventId)
+                            .withStartedEventId(decisionStartedEventId).withTimeoutType("START_TO_CLOSE"));
+            previousStartedEventId = decisionStartedEventId;
+            scheduleDecisionTask();
+        }
+
+        /**
+         * Completes the activities scheduled, which schedules a decision task.
+         */
+        void completeActivities() {
+            if (scheduledActivities.isEmpty()) {
+                return;
+            }
+            for (HistoryEvent scheduled : scheduledActivities) {
+                ActivityTaskScheduledEventAttributes attributes = scheduled.getActivityTaskScheduledEventAttributes();
+                HistoryEvent started = addEvent(EventType.ActivityTaskStarted);
+                started.setActivityTaskStartedEventAttributes(new ActivityTaskStartedEventAttributes()
+                        .withScheduledEventId(scheduled.getEventId()));
+                addEvent(EventType.ActivityTaskCompleted).setActivityTaskCompletedEventAttributes(
+                        new ActivityTaskCompletedEventAttributes().withScheduledEventId(scheduled.getEventId())
+                                .withStartedEventId(started.getEventId())
+                                .withResult(attributes.getInput() + ">" + attributes.getActivityType().getName()));
+            }
+            scheduledActivities.clear();
+            scheduleDecisionTask();
+        }
+
+        private void scheduleDecisionTask() {
+            HistoryEvent scheduled = addEvent(EventType.DecisionTaskScheduled);
+            scheduled.setDecisionTaskScheduledEventAttributes(new DecisionTaskScheduledEventAttributes()
+                    .withTaskList(TASK_LIST).withStartToCloseTimeout("60"));
+            decisionScheduledEventId = scheduled.getEventId();
+            HistoryEvent started = addEvent(EventType.DecisionTaskStarted);
+            started.setDecisionTaskStartedEventAttributes(new DecisionTaskStartedEventAttributes()
+                    .withScheduledEventId(decisionScheduledEventId));
+            decisionStartedEventId = started.getEventId();
+        }
+
+        private HistoryEvent addEvent(EventType eventType) {
+            long eventId = events.size() + 1;
+            HistoryEvent event = new HistoryEvent().withEventId(eventId).withEventType(eventType.toString())
+                    .withEventTimestamp(new Date(1000000000000L + eventId * 1000));
+            events.add(event);
+            return event;
+        }
+    }
+
+    /**
+     * Splits the history of a decision task into pages, the way the decision
+     * task poller polls them.
+     */
+    private static List<DecisionTask> pages(DecisionTask task, boolean reverseOrder) {
+        List<HistoryEvent> events = new ArrayList<HistoryEvent>(task.getEvents());
+        if (reverseOrder) {
+            Collections.reverse(events);
+        }
+        List<DecisionTask> pages = new ArrayList<DecisionTask>();
+        for (int start = 0; start < events.size(); start += PAGE_SIZE) {
+            DecisionTask page = task.clone();
+            page.setEvents(new ArrayList<HistoryEvent>(events.subList(start, Math.min(events.size(), start + PAGE_SIZE))));
+            page.setNextPageToken(start + PAGE_SIZE < events.size() ? String.valueOf(pages.size() + 1) : null);
+            pages.add(page);
+        }
+        return pages;
+    }
+
+    /** Iterates over the pages of a decision task, counting the pages read. */
+    private static class PageIterator implements Iterator<DecisionTask> {
+
+        final List<DecisionTask> pages;
+
+        int pagesRead;
+
+        PageIterator(DecisionTask task, boolean reverseOrder) {
+            pages = pages(task, reverseOrder);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pagesRead < pages.size();
+        }
+
+        @Override
+        public DecisionTask next() {
+            return pages.get(pagesRead++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Serves the pages of one decision task and of its history, and records
+     * the decisions it is completed with, optionally failing.
+     */
+    private static class StubSimpleWorkflow extends AmazonSimpleWorkflowClient {
+
+        volatile DecisionTask task;
+
+        volatile boolean failRespond;
+
+        volatile boolean reverseOrder;
+
+        volatile RespondDecisionTaskCompletedRequest responded;
+
+        volatile int historyPagesRead;
+
+        StubSimpleWorkflow() {
+            super(new BasicAWSCredentials("access", "secret"));
+        }
+
+        @Override
+        public DecisionTask pollForDecisionTask(PollForDecisionTaskRequest request) {
+            reverseOrder = Boolean.TRUE.equals(request.getReverseOrder());
+            List<DecisionTask> pages = pages(task, reverseOrder);
+            String token = request.getNextPageToken();
+            return pages.get(token == null ? 0 : Integer.parseInt(token));
+        }
+
+        @Override
+        public History getWorkflowExecutionHistory(GetWorkflowExecutionHistoryRequest request) {
+            assertEquals(task.getWorkflowExecution(), request.getExecution());
+            assertFalse(Boolean.TRUE.equals(request.getReverseOrder()));
+            List<DecisionTask> pages = pages(task, false);
+            String token = request.getNextPageToken();
+            DecisionTask page = pages.get(token == null ? 0 : Integer.parseInt(token));
+            historyPagesRead++;
+            return new History().withEvents(page.getEvents()).withNextPageToken(page.getNextPageToken());
+        }
+
+        @Override
+        public void respondDecisionTaskCompleted(RespondDecisionTaskCompletedRequest request) {
+            responded = request;
+            if (failRespond) {
+                throw new AmazonServiceException("Internal Failure");
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2012-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. A copy of the License is
+ * located at
+ *
+ * http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.simpleworkflow.flow.worker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.simpleworkflow.AmazonSimpleWorkflowClient;
+
+/**
+ * Checks how the number of poll threads follows the backlog of tasks, with a
+ * poller simulating polls and tasks.
+ */
+public class GenericWorkerTest {
+
+    private static final long POLL_MILLIS = 5;
+
+    private static final long TASK_MILLIS = 10;
+
+    private TestWorker worker;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (worker != null) {
+            worker.shutdownNow();
+            assertTrue(worker.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testGrowsToMaximumOnBacklog() throws Exception {
+        worker = new TestWorker(0);
+        worker.setPollThreadCount(1);
+        worker.setMaximumPollThreadCount(4);
+        worker.poller.backlog = true;
+        worker.start();
+        awaitPollThreadCount(4);
+        awaitPolls(4);
+        assertEquals(4, worker.poller.maxActivePolls.get());
+        // Not beyond the maximum
+        Thread.sleep(100);
+        assertEquals(4, worker.getPollerMetrics().getPollThreadCount());
+        assertEquals(4, worker.poller.maxActivePolls.get());
+    }
+
+    @Test
+    public void testShrinksToPollThreadCountOnEmptyPolls() throws Exception {
+        worker = new TestWorker(0);
+        worker.setPollThreadCount(2);
+        worker.setMaximumPollThreadCount(5);
+        worker.poller.backlog = true;
+        worker.start();
+        awaitPollThreadCount(5);
+
+        worker.poller.backlog = false;
+        awaitPollThreadCount(2);
+        worker.poller.maxActivePolls.set(0);
+        Thread.sleep(100);
+        assertEquals(2, worker.getPollerMetrics().getPollThreadCount());
+        assertEquals(2, worker.poller.maxActivePolls.get());
+        assertTrue(worker.getPollerMetrics().getEmptyPollCount() > 0);
+
+        // And grows again
+        worker.poller.backlog = true;
+        awaitPollThreadCount(5);
+    }
+
+    @Test
+    public void testNoGrowthWithoutFreeSlots() throws Exception {
+        // A single slot, busy executing the task polled while the next poll
+        // waits for it
+        worker = new TestWorker(1);
+        worker.setPollThreadCount(1);
+        worker.setMaximumPollThreadCount(4);
+        worker.poller.backlog = true;
+        worker.start();
+        long tasks = worker.poller.tasks.get();
+        while (worker.poller.tasks.get() < tasks + 20) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, worker.getPollerMetrics().getPollThreadCount());
+        assertEquals(1, worker.poller.maxActivePolls.get());
+    }
+
+    private void awaitPollThreadCount(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (worker.getPollerMetrics().getPollThreadCount() != expected) {
+            assertTrue("poll threads: " + worker.getPollerMetrics().getPollThreadCount(),
+                    System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private void awaitPolls(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (worker.poller.maxActivePolls.get() < expected) {
+            assertTrue("concurrent polls: " + worker.poller.maxActivePolls.get(), System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static class TestWorker extends GenericWorker {
+
+        final FakePoller poller;
+
+        private final int taskSlotCount;
+
+        /**
+         * @param taskSlotCount
+         *            the number of tasks executed asynchronously, as by an
+         *            activity worker, or 0 to execute them on the poll threads,
+         *            as a workflow worker does
+         */
+        TestWorker(int taskSlotCount) {
+            this.taskSlotCount = taskSlotCount;
+            service = new AmazonSimpleWorkflowClient(new BasicAWSCredentials("access", "secret"));
+            domain = "domain";
+            setTaskListToPoll("tasks");
+            setDisableTypeRegistrationOnStart(true);
+            poller = new FakePoller(getPollerMetrics(), taskSlotCount);
+        }
+
+        @Override
+        protected int getTaskSlotCount() {
+            return taskSlotCount > 0 ? taskSlotCount : super.getTaskSlotCount();
+        }
+
+        @Override
+        protected String getPollThreadNamePrefix() {
+            return "Test Poller " + getTaskListToPoll() + " ";
+        }
+
+        @Override
+        protected TaskPoller createPoller() {
+            return poller;
+        }
+
+        @Override
+        protected void checkRequredProperties() {
+        }
+
+        @Override
+        public void registerTypesToPoll() {
+        }
+    }
+
+    /**
+     * Returns a task from each poll while there is a backlog, and times out
+     * otherwise, recording the polls and tasks the way the pollers of the
+     * workers do.
+     */
+    private static class FakePoller implements TaskPoller {
+
+        volatile boolean backlog;
+
+        final AtomicInteger activePolls = new AtomicInteger();
+
+        final AtomicInteger maxActivePolls = new AtomicInteger();
+
+        final AtomicInteger tasks = new AtomicInteger();
+
+        private final PollerMetrics pollerMetrics;
+
+        /** The slots of the tasks executed asynchronously, or null */
+        private final Semaphore slots;
+
+        private final ExecutorService taskExecutor = Executors.newCachedThreadPool();
+
+        FakePoller(PollerMetrics pollerMetrics, int taskSlotCount) {
+            this.pollerMetrics = pollerMetrics;
+            slots = taskSlotCount > 0 ? new Semaphore(taskSlotCount) : null;
+        }
+
+        @Override
+        public boolean pollAndProcessSingleTask() throws Exception {
+            if (slots != null) {
+                slots.acquire();
+            }
+            boolean releaseSlot = slots != null;
+            int active = activePolls.incrementAndGet();
+            while (true) {
+                int max = maxActivePolls.get();
+                if (active <= max || maxActivePolls.compareAndSet(max, active)) {
+                    break;
+                }
+            }
+            try {
+                long pollStart = pollerMetrics.pollStarted();
+                boolean polledTask = false;
+                try {
+                    Thread.sleep(POLL_MILLIS);
+                    polledTask = backlog;
+                }
+                finally {
+                    pollerMetrics.pollFinished(pollStart, !polledTask);
+                }
+                if (!polledTask) {
+                    return false;
+                }
+                pollerMetrics.taskStarted();
+                if (slots == null) {
+                    try {
+                        Thread.sleep(TASK_MILLIS);
+                    }
+                    finally {
+                        pollerMetrics.taskFinished();
+                    }
+                }
+                else {
+                    releaseSlot = false;
+                    taskExecutor.execute(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            try {
+                                Thread.sleep(TASK_MILLIS);
+                            }
+                            catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            finally {
+                                pollerMetrics.taskFinished();
+                                slots.release();
+                            }
+                        }
+                    });
+                }
+                tasks.incrementAndGet();
+                return true;
+            }
+            finally {
+                activePolls.decrementAndGet();
+                if (releaseSlot) {
+                    slots.release();
+                }
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            taskExecutor.shutdown();
+        }
+
+        @Override
+        public void shutdownNow() {
+            taskExecutor.shutdownNow();
+        }
+
+        @Override
+        public boolean awaitTermination(long left, TimeUnit milliseconds) throws InterruptedException {
+            return taskExecutor.awaitTermination(left, milliseconds);
+        }
+    }
+}